@@ -0,0 +1,160 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.ast;
+
+/**
+ * A matcher for term-level expressions.
+ *
+ * @param <T> The type of associated data
+ * @param <A> The type of returned values
+ * @param <E> The type of raised exceptions
+ *
+ * @see PExpressionType
+ */
+
+public interface PExpressionMatcherType<T, A, E extends Exception>
+{
+  /**
+   * Match a value.
+   *
+   * @param e An integer constant
+   *
+   * @return A value of {@code A}
+   *
+   * @throws E If required
+   */
+
+  A constantInteger(PExpressionType.PExprConstantIntegerType<T> e)
+    throws E;
+
+  /**
+   * Match a value.
+   *
+   * @param e A real constant
+   *
+   * @return A value of {@code A}
+   *
+   * @throws E If required
+   */
+
+  A constantReal(PExpressionType.PExprConstantRealType<T> e)
+    throws E;
+
+  /**
+   * Match a value.
+   *
+   * @param e A string constant
+   *
+   * @return A value of {@code A}
+   *
+   * @throws E If required
+   */
+
+  A constantString(PExpressionType.PExprConstantStringType<T> e)
+    throws E;
+
+  /**
+   * Match a value.
+   *
+   * @param e A function application
+   *
+   * @return A value of {@code A}
+   *
+   * @throws E If required
+   */
+
+  A application(PExpressionType.PExprApplicationType<T> e)
+    throws E;
+
+  /**
+   * Match a value.
+   *
+   * @param e A lambda expression
+   *
+   * @return A value of {@code A}
+   *
+   * @throws E If required
+   */
+
+  A lambda(PExpressionType.PExprLambdaType<T> e)
+    throws E;
+
+  /**
+   * Match a value.
+   *
+   * @param e A term reference
+   *
+   * @return A value of {@code A}
+   *
+   * @throws E If required
+   */
+
+  A reference(PExpressionType.PExprReferenceType<T> e)
+    throws E;
+
+  /**
+   * Match a value.
+   *
+   * @param e A local expression
+   *
+   * @return A value of {@code A}
+   *
+   * @throws E If required
+   */
+
+  A local(PExpressionType.PExprLocalType<T> e)
+    throws E;
+
+  /**
+   * Match a value.
+   *
+   * @param e A match expression
+   *
+   * @return A value of {@code A}
+   *
+   * @throws E If required
+   */
+
+  A match(PExpressionType.PExprMatchType<T> e)
+    throws E;
+
+  /**
+   * Match a value.
+   *
+   * @param e A record expression
+   *
+   * @return A value of {@code A}
+   *
+   * @throws E If required
+   */
+
+  A record(PExpressionType.PExprRecordType<T> e)
+    throws E;
+
+  /**
+   * Match a value.
+   *
+   * @param e A record update expression
+   *
+   * @return A value of {@code A}
+   *
+   * @throws E If required
+   */
+
+  A recordUpdate(PExpressionType.PExprRecordUpdateType<T> e)
+    throws E;
+}
@@ -18,6 +18,7 @@ package com.io7m.polaris.ast;
 
 import com.io7m.jaffirm.core.Preconditions;
 import com.io7m.jlexing.core.LexicalPosition;
+import com.io7m.polaris.ast.internal.PTrustedConstruction;
 import com.io7m.polaris.core.PImmutableStyleType;
 import io.vavr.collection.Map;
 import io.vavr.collection.Vector;
@@ -42,6 +43,22 @@ public interface PExpressionType<T> extends PExpressionOrDeclarationType<T>
 
   PTermExpressionKind termExpressionKind();
 
+  /**
+   * Match on the type of expression.
+   *
+   * @param m   The matcher
+   * @param <A> The type of returned values
+   * @param <E> The type of raised exceptions
+   *
+   * @return The value returned by the matcher
+   *
+   * @throws E If the matcher raises {@code E}
+   */
+
+  <A, E extends Exception> A matchExpression(
+    PExpressionMatcherType<T, A, E> m)
+    throws E;
+
   @Override
   LexicalPosition<URI> lexical();
 
@@ -137,6 +154,14 @@ public interface PExpressionType<T> extends PExpressionOrDeclarationType<T>
       return PTermExpressionKind.EXPR_CONSTANT_INTEGER;
     }
 
+    @Override
+    default <A, E extends Exception> A matchExpression(
+      final PExpressionMatcherType<T, A, E> m)
+      throws E
+    {
+      return m.constantInteger(this);
+    }
+
     @Override
     @Value.Parameter
     @Value.Auxiliary
@@ -178,6 +203,14 @@ public interface PExpressionType<T> extends PExpressionOrDeclarationType<T>
       return PTermExpressionKind.EXPR_CONSTANT_REAL;
     }
 
+    @Override
+    default <A, E extends Exception> A matchExpression(
+      final PExpressionMatcherType<T, A, E> m)
+      throws E
+    {
+      return m.constantReal(this);
+    }
+
     @Override
     @Value.Parameter
     @Value.Auxiliary
@@ -212,6 +245,14 @@ public interface PExpressionType<T> extends PExpressionOrDeclarationType<T>
       return PTermExpressionKind.EXPR_CONSTANT_STRING;
     }
 
+    @Override
+    default <A, E extends Exception> A matchExpression(
+      final PExpressionMatcherType<T, A, E> m)
+      throws E
+    {
+      return m.constantString(this);
+    }
+
     @Override
     @Value.Parameter
     @Value.Auxiliary
@@ -246,6 +287,14 @@ public interface PExpressionType<T> extends PExpressionOrDeclarationType<T>
       return PTermExpressionKind.EXPR_APPLICATION;
     }
 
+    @Override
+    default <A, E extends Exception> A matchExpression(
+      final PExpressionMatcherType<T, A, E> m)
+      throws E
+    {
+      return m.application(this);
+    }
+
     @Override
     default LexicalPosition<URI> lexical()
     {
@@ -288,6 +337,14 @@ public interface PExpressionType<T> extends PExpressionOrDeclarationType<T>
       return PTermExpressionKind.EXPR_LAMBDA;
     }
 
+    @Override
+    default <A, E extends Exception> A matchExpression(
+      final PExpressionMatcherType<T, A, E> m)
+      throws E
+    {
+      return m.lambda(this);
+    }
+
     @Override
     @Value.Parameter
     @Value.Auxiliary
@@ -319,10 +376,12 @@ public interface PExpressionType<T> extends PExpressionOrDeclarationType<T>
     @Value.Check
     default void checkPreconditions()
     {
-      Preconditions.checkPrecondition(
-        this.arguments(),
-        this.arguments().size() == this.arguments().toSet().size(),
-        d -> "Lambda parameter names must be unique");
+      if (PTrustedConstruction.isUniquenessCheckRequired(this.arguments())) {
+        Preconditions.checkPrecondition(
+          this.arguments(),
+          this.arguments().size() == this.arguments().toSet().size(),
+          d -> "Lambda parameter names must be unique");
+      }
     }
   }
 
@@ -342,6 +401,14 @@ public interface PExpressionType<T> extends PExpressionOrDeclarationType<T>
       return PTermExpressionKind.EXPR_REFERENCE;
     }
 
+    @Override
+    default <A, E extends Exception> A matchExpression(
+      final PExpressionMatcherType<T, A, E> m)
+      throws E
+    {
+      return m.reference(this);
+    }
+
     @Override
     default LexicalPosition<URI> lexical()
     {
@@ -377,6 +444,14 @@ public interface PExpressionType<T> extends PExpressionOrDeclarationType<T>
       return PTermExpressionKind.EXPR_LOCAL;
     }
 
+    @Override
+    default <A, E extends Exception> A matchExpression(
+      final PExpressionMatcherType<T, A, E> m)
+      throws E
+    {
+      return m.local(this);
+    }
+
     @Override
     @Value.Parameter
     @Value.Auxiliary
@@ -418,6 +493,14 @@ public interface PExpressionType<T> extends PExpressionOrDeclarationType<T>
       return PTermExpressionKind.EXPR_MATCH;
     }
 
+    @Override
+    default <A, E extends Exception> A matchExpression(
+      final PExpressionMatcherType<T, A, E> m)
+      throws E
+    {
+      return m.match(this);
+    }
+
     @Override
     @Value.Parameter
     @Value.Auxiliary
@@ -494,6 +577,14 @@ public interface PExpressionType<T> extends PExpressionOrDeclarationType<T>
       return PTermExpressionKind.EXPR_RECORD;
     }
 
+    @Override
+    default <A, E extends Exception> A matchExpression(
+      final PExpressionMatcherType<T, A, E> m)
+      throws E
+    {
+      return m.record(this);
+    }
+
     @Override
     @Value.Parameter
     @Value.Auxiliary
@@ -522,7 +613,7 @@ public interface PExpressionType<T> extends PExpressionOrDeclarationType<T>
      * @return The fields by name
      */
 
-    @Value.Derived
+    @Value.Lazy
     default Map<String, PExprRecordFieldType<T>> fieldsByName()
     {
       return this.fields().toMap(c -> c.field().value(), Function.identity());
@@ -535,10 +626,12 @@ public interface PExpressionType<T> extends PExpressionOrDeclarationType<T>
     @Value.Check
     default void checkPrecondition()
     {
-      Preconditions.checkPrecondition(
-        this.fields(),
-        this.fields().size() == this.fields().toSet().size(),
-        n -> "Field names must be unique");
+      if (PTrustedConstruction.isUniquenessCheckRequired(this.fields())) {
+        Preconditions.checkPrecondition(
+          this.fields(),
+          this.fields().size() == this.fields().toSet().size(),
+          n -> "Field names must be unique");
+      }
     }
   }
 
@@ -558,6 +651,14 @@ public interface PExpressionType<T> extends PExpressionOrDeclarationType<T>
       return PTermExpressionKind.EXPR_RECORD_UPDATE;
     }
 
+    @Override
+    default <A, E extends Exception> A matchExpression(
+      final PExpressionMatcherType<T, A, E> m)
+      throws E
+    {
+      return m.recordUpdate(this);
+    }
+
     @Override
     @Value.Parameter
     @Value.Auxiliary
@@ -586,7 +687,7 @@ public interface PExpressionType<T> extends PExpressionOrDeclarationType<T>
      * @return The fields by name
      */
 
-    @Value.Derived
+    @Value.Lazy
     default Map<String, PExprRecordFieldType<T>> fieldsByName()
     {
       return this.fields().toMap(c -> c.field().value(), Function.identity());
@@ -599,10 +700,12 @@ public interface PExpressionType<T> extends PExpressionOrDeclarationType<T>
     @Value.Check
     default void checkPrecondition()
     {
-      Preconditions.checkPrecondition(
-        this.fields(),
-        this.fields().size() == this.fields().toSet().size(),
-        n -> "Field names must be unique");
+      if (PTrustedConstruction.isUniquenessCheckRequired(this.fields())) {
+        Preconditions.checkPrecondition(
+          this.fields(),
+          this.fields().size() == this.fields().toSet().size(),
+          n -> "Field names must be unique");
+      }
     }
   }
 
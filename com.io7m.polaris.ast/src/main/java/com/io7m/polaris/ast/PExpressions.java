@@ -0,0 +1,576 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.ast;
+
+import com.io7m.junreachable.UnreachableCodeException;
+import com.io7m.polaris.ast.PExpressionType.PExprApplicationType;
+import com.io7m.polaris.ast.PExpressionType.PExprConstantIntegerType;
+import com.io7m.polaris.ast.PExpressionType.PExprConstantRealType;
+import com.io7m.polaris.ast.PExpressionType.PExprConstantStringType;
+import com.io7m.polaris.ast.PExpressionType.PExprLambdaType;
+import com.io7m.polaris.ast.PExpressionType.PExprLocalType;
+import com.io7m.polaris.ast.PExpressionType.PExprMatchType;
+import com.io7m.polaris.ast.PExpressionType.PExprRecordFieldType;
+import com.io7m.polaris.ast.PExpressionType.PExprRecordType;
+import com.io7m.polaris.ast.PExpressionType.PExprRecordUpdateType;
+import com.io7m.polaris.ast.PExpressionType.PExprReferenceType;
+import com.io7m.polaris.ast.PExpressionType.PMatchCaseType;
+import com.io7m.polaris.ast.PTermDeclarationType.PDeclarationFunctionType;
+import com.io7m.polaris.ast.PTermDeclarationType.PDeclarationValueType;
+import io.vavr.collection.Vector;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Functions to traverse expressions.
+ *
+ * The subexpressions of an expression include the bodies of value and
+ * function declarations that appear inside {@code local} expressions. None of
+ * the functions here use recursion, so the Java stack depth used is
+ * independent of the depth of the expression.
+ */
+
+public final class PExpressions
+{
+  private static final Object EXIT = new Object();
+
+  private PExpressions()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Fold over the given expression and all of its subexpressions, in
+   * pre-order from left to right.
+   *
+   * @param e       The expression
+   * @param initial The initial value
+   * @param f       The accumulating function
+   * @param <T>     The type of associated data
+   * @param <A>     The type of accumulated values
+   *
+   * @return The accumulated value
+   */
+
+  @SuppressWarnings("unchecked")
+  public static <T, A> A fold(
+    final PExpressionType<T> e,
+    final A initial,
+    final BiFunction<A, PExpressionType<T>, A> f)
+  {
+    Objects.requireNonNull(e, "Expression");
+    Objects.requireNonNull(f, "Function");
+
+    final ArrayDeque<Object> stack = new ArrayDeque<>(16);
+    final Children<T> children = new Children<>(stack);
+    stack.push(e);
+
+    A result = initial;
+    while (!stack.isEmpty()) {
+      final PExpressionType<T> current = (PExpressionType<T>) stack.pop();
+      result = f.apply(result, current);
+      current.matchExpression(children);
+    }
+    return result;
+  }
+
+  /**
+   * Transform the given expression bottom-up. The function {@code f} is
+   * applied to each expression after its subexpressions have been
+   * transformed. Expressions whose subexpressions are all unchanged (by
+   * reference) are not reconstructed.
+   *
+   * @param e   The expression
+   * @param f   The transformation
+   * @param <T> The type of associated data
+   *
+   * @return The transformed expression
+   */
+
+  @SuppressWarnings("unchecked")
+  public static <T> PExpressionType<T> transform(
+    final PExpressionType<T> e,
+    final Function<PExpressionType<T>, PExpressionType<T>> f)
+  {
+    Objects.requireNonNull(e, "Expression");
+    Objects.requireNonNull(f, "Function");
+
+    final ArrayDeque<Object> stack = new ArrayDeque<>(16);
+    final ArrayList<PExpressionType<T>> results = new ArrayList<>(16);
+    final Children<T> children = new Children<>(stack);
+    final Rebuild<T> rebuild = new Rebuild<>(results);
+    stack.push(e);
+
+    while (!stack.isEmpty()) {
+      final Object top = stack.pop();
+      if (top == EXIT) {
+        final PExpressionType<T> current = (PExpressionType<T>) stack.pop();
+        results.add(Objects.requireNonNull(
+          f.apply(current.matchExpression(rebuild)), "Result"));
+      } else {
+        final PExpressionType<T> current = (PExpressionType<T>) top;
+        stack.push(current);
+        stack.push(EXIT);
+        current.matchExpression(children);
+      }
+    }
+    return results.get(0);
+  }
+
+  /**
+   * @param local A local expression or declaration
+   * @param <T>   The type of associated data
+   *
+   * @return The expression contained in {@code local}, or {@code null} if
+   * {@code local} does not contain an expression
+   */
+
+  @SuppressWarnings("unchecked")
+  private static <T> PExpressionType<T> localExpression(
+    final PExpressionOrDeclarationType<T> local)
+  {
+    switch (local.expressionOrDeclarationKind()) {
+      case EXPRESSION:
+        return (PExpressionType<T>) local;
+      case DECLARATION: {
+        final PDeclarationType<T> decl = (PDeclarationType<T>) local;
+        if (decl.anyDeclarationKind() == PDeclarationType.AnyDeclarationKind.TERM_DECLARATION) {
+          return termDeclarationExpression((PTermDeclarationType<T>) decl);
+        }
+        return null;
+      }
+      default:
+        throw new UnreachableCodeException();
+    }
+  }
+
+  private static <T> PExpressionType<T> termDeclarationExpression(
+    final PTermDeclarationType<T> decl)
+  {
+    switch (decl.termDeclarationKind()) {
+      case VALUE_DECLARATION:
+        return ((PDeclarationValueType<T>) decl).expression();
+      case FUNCTION_DECLARATION:
+        return ((PDeclarationFunctionType<T>) decl).expression();
+      case SIGNATURE_DECLARATION:
+        return null;
+      default:
+        throw new UnreachableCodeException();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> PExpressionOrDeclarationType<T> localWithExpression(
+    final PExpressionOrDeclarationType<T> local,
+    final PExpressionType<T> e)
+  {
+    switch (local.expressionOrDeclarationKind()) {
+      case EXPRESSION:
+        return e;
+      case DECLARATION: {
+        final PTermDeclarationType<T> decl = (PTermDeclarationType<T>) local;
+        switch (decl.termDeclarationKind()) {
+          case VALUE_DECLARATION:
+            return PDeclarationValue.copyOf((PDeclarationValueType<T>) decl)
+              .withExpression(e);
+          case FUNCTION_DECLARATION:
+            return PDeclarationFunction.copyOf((PDeclarationFunctionType<T>) decl)
+              .withExpression(e);
+          default:
+            throw new UnreachableCodeException();
+        }
+      }
+      default:
+        throw new UnreachableCodeException();
+    }
+  }
+
+  /**
+   * A matcher that pushes the immediate subexpressions of an expression onto
+   * a stack in reverse order, so that they are popped from left to right.
+   */
+
+  static final class Children<T>
+    implements PExpressionMatcherType<T, Void, RuntimeException>
+  {
+    private final ArrayDeque<Object> stack;
+
+    Children(
+      final ArrayDeque<Object> in_stack)
+    {
+      this.stack = Objects.requireNonNull(in_stack, "Stack");
+    }
+
+    @Override
+    public Void constantInteger(
+      final PExprConstantIntegerType<T> e)
+    {
+      return null;
+    }
+
+    @Override
+    public Void constantReal(
+      final PExprConstantRealType<T> e)
+    {
+      return null;
+    }
+
+    @Override
+    public Void constantString(
+      final PExprConstantStringType<T> e)
+    {
+      return null;
+    }
+
+    @Override
+    public Void application(
+      final PExprApplicationType<T> e)
+    {
+      final Vector<PExpressionType<T>> arguments = e.arguments();
+      for (int index = arguments.size() - 1; index >= 0; --index) {
+        this.stack.push(arguments.get(index));
+      }
+      this.stack.push(e.function());
+      return null;
+    }
+
+    @Override
+    public Void lambda(
+      final PExprLambdaType<T> e)
+    {
+      this.stack.push(e.expression());
+      return null;
+    }
+
+    @Override
+    public Void reference(
+      final PExprReferenceType<T> e)
+    {
+      return null;
+    }
+
+    @Override
+    public Void local(
+      final PExprLocalType<T> e)
+    {
+      this.stack.push(e.body());
+      final Vector<PExpressionOrDeclarationType<T>> locals = e.locals();
+      for (int index = locals.size() - 1; index >= 0; --index) {
+        final PExpressionType<T> sub = localExpression(locals.get(index));
+        if (sub != null) {
+          this.stack.push(sub);
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public Void match(
+      final PExprMatchType<T> e)
+    {
+      final Vector<PMatchCaseType<T>> cases = e.cases();
+      for (int index = cases.size() - 1; index >= 0; --index) {
+        this.stack.push(cases.get(index).expression());
+      }
+      this.stack.push(e.target());
+      return null;
+    }
+
+    @Override
+    public Void record(
+      final PExprRecordType<T> e)
+    {
+      this.pushFields(e.fields());
+      return null;
+    }
+
+    @Override
+    public Void recordUpdate(
+      final PExprRecordUpdateType<T> e)
+    {
+      this.pushFields(e.fields());
+      this.stack.push(e.source());
+      return null;
+    }
+
+    private void pushFields(
+      final Vector<PExprRecordFieldType<T>> fields)
+    {
+      for (int index = fields.size() - 1; index >= 0; --index) {
+        this.stack.push(fields.get(index).expression());
+      }
+    }
+  }
+
+  /**
+   * A matcher that takes the transformed subexpressions of an expression from
+   * the top of a result stack and reconstructs the expression if any of them
+   * differ from the originals.
+   */
+
+  private static final class Rebuild<T>
+    implements PExpressionMatcherType<T, PExpressionType<T>, RuntimeException>
+  {
+    private final ArrayList<PExpressionType<T>> results;
+
+    Rebuild(
+      final ArrayList<PExpressionType<T>> in_results)
+    {
+      this.results = Objects.requireNonNull(in_results, "Results");
+    }
+
+    private void drop(
+      final int base)
+    {
+      for (int index = this.results.size() - 1; index >= base; --index) {
+        this.results.remove(index);
+      }
+    }
+
+    private Vector<PExpressionType<T>> slice(
+      final int base,
+      final int count)
+    {
+      return Vector.ofAll(this.results.subList(base, base + count));
+    }
+
+    @Override
+    public PExpressionType<T> constantInteger(
+      final PExprConstantIntegerType<T> e)
+    {
+      return e;
+    }
+
+    @Override
+    public PExpressionType<T> constantReal(
+      final PExprConstantRealType<T> e)
+    {
+      return e;
+    }
+
+    @Override
+    public PExpressionType<T> constantString(
+      final PExprConstantStringType<T> e)
+    {
+      return e;
+    }
+
+    @Override
+    public PExpressionType<T> application(
+      final PExprApplicationType<T> e)
+    {
+      final Vector<PExpressionType<T>> arguments = e.arguments();
+      final int base = this.results.size() - (arguments.size() + 1);
+      final PExpressionType<T> function = this.results.get(base);
+
+      boolean changed = function != e.function();
+      for (int index = 0; index < arguments.size(); ++index) {
+        changed = changed || this.results.get(base + 1 + index) != arguments.get(index);
+      }
+
+      final PExpressionType<T> result;
+      if (changed) {
+        result = PExprApplication.of(
+          e.data(), function, this.slice(base + 1, arguments.size()));
+      } else {
+        result = e;
+      }
+
+      this.drop(base);
+      return result;
+    }
+
+    @Override
+    public PExpressionType<T> lambda(
+      final PExprLambdaType<T> e)
+    {
+      final int base = this.results.size() - 1;
+      final PExpressionType<T> body = this.results.get(base);
+      this.drop(base);
+
+      if (body != e.expression()) {
+        return PExprLambda.of(e.lexical(), e.data(), e.arguments(), body);
+      }
+      return e;
+    }
+
+    @Override
+    public PExpressionType<T> reference(
+      final PExprReferenceType<T> e)
+    {
+      return e;
+    }
+
+    @Override
+    public PExpressionType<T> local(
+      final PExprLocalType<T> e)
+    {
+      final Vector<PExpressionOrDeclarationType<T>> locals = e.locals();
+
+      int count = 0;
+      for (int index = 0; index < locals.size(); ++index) {
+        if (localExpression(locals.get(index)) != null) {
+          ++count;
+        }
+      }
+
+      final int base = this.results.size() - (count + 1);
+      final PExpressionType<T> body = this.results.get(base + count);
+
+      boolean changed = body != e.body();
+      int taken = 0;
+      for (int index = 0; index < locals.size(); ++index) {
+        final PExpressionType<T> original = localExpression(locals.get(index));
+        if (original != null) {
+          changed = changed || this.results.get(base + taken) != original;
+          ++taken;
+        }
+      }
+
+      final PExpressionType<T> result;
+      if (changed) {
+        result = PExprLocal.of(
+          e.lexical(), e.data(), this.rebuildLocals(base, locals), body);
+      } else {
+        result = e;
+      }
+
+      this.drop(base);
+      return result;
+    }
+
+    private Vector<PExpressionOrDeclarationType<T>> rebuildLocals(
+      final int base,
+      final Vector<PExpressionOrDeclarationType<T>> locals)
+    {
+      Vector<PExpressionOrDeclarationType<T>> new_locals = Vector.empty();
+      int taken = 0;
+      for (int index = 0; index < locals.size(); ++index) {
+        final PExpressionOrDeclarationType<T> local = locals.get(index);
+        final PExpressionType<T> original = localExpression(local);
+        if (original == null) {
+          new_locals = new_locals.append(local);
+        } else {
+          final PExpressionType<T> sub = this.results.get(base + taken);
+          ++taken;
+          new_locals = new_locals.append(
+            sub == original ? local : localWithExpression(local, sub));
+        }
+      }
+      return new_locals;
+    }
+
+    @Override
+    public PExpressionType<T> match(
+      final PExprMatchType<T> e)
+    {
+      final Vector<PMatchCaseType<T>> cases = e.cases();
+      final int base = this.results.size() - (cases.size() + 1);
+      final PExpressionType<T> target = this.results.get(base);
+
+      boolean changed = target != e.target();
+      for (int index = 0; index < cases.size(); ++index) {
+        changed = changed || this.results.get(base + 1 + index) != cases.get(index).expression();
+      }
+
+      final PExpressionType<T> result;
+      if (changed) {
+        Vector<PMatchCaseType<T>> new_cases = Vector.empty();
+        for (int index = 0; index < cases.size(); ++index) {
+          final PMatchCaseType<T> c = cases.get(index);
+          final PExpressionType<T> sub = this.results.get(base + 1 + index);
+          new_cases = new_cases.append(
+            sub == c.expression()
+              ? c : PMatchCase.of(c.lexical(), c.data(), c.pattern(), sub));
+        }
+        result = PExprMatch.of(e.lexical(), e.data(), target, new_cases);
+      } else {
+        result = e;
+      }
+
+      this.drop(base);
+      return result;
+    }
+
+    @Override
+    public PExpressionType<T> record(
+      final PExprRecordType<T> e)
+    {
+      final Vector<PExprRecordFieldType<T>> fields = e.fields();
+      final int base = this.results.size() - fields.size();
+      final Vector<PExprRecordFieldType<T>> new_fields =
+        this.rebuildFields(base, fields);
+
+      this.drop(base);
+      if (new_fields != fields) {
+        return PExprRecord.of(e.lexical(), e.data(), e.target(), new_fields);
+      }
+      return e;
+    }
+
+    @Override
+    public PExpressionType<T> recordUpdate(
+      final PExprRecordUpdateType<T> e)
+    {
+      final Vector<PExprRecordFieldType<T>> fields = e.fields();
+      final int base = this.results.size() - (fields.size() + 1);
+      final PExpressionType<T> source = this.results.get(base);
+      final Vector<PExprRecordFieldType<T>> new_fields =
+        this.rebuildFields(base + 1, fields);
+
+      this.drop(base);
+      if (source != e.source() || new_fields != fields) {
+        return PExprRecordUpdate.of(e.lexical(), e.data(), source, new_fields);
+      }
+      return e;
+    }
+
+    /**
+     * @return {@code fields} if no field expressions changed, or a new vector
+     * of fields otherwise
+     */
+
+    private Vector<PExprRecordFieldType<T>> rebuildFields(
+      final int base,
+      final Vector<PExprRecordFieldType<T>> fields)
+    {
+      boolean changed = false;
+      for (int index = 0; index < fields.size(); ++index) {
+        changed = changed || this.results.get(base + index) != fields.get(index).expression();
+      }
+
+      if (!changed) {
+        return fields;
+      }
+
+      Vector<PExprRecordFieldType<T>> new_fields = Vector.empty();
+      for (int index = 0; index < fields.size(); ++index) {
+        final PExprRecordFieldType<T> field = fields.get(index);
+        final PExpressionType<T> sub = this.results.get(base + index);
+        new_fields = new_fields.append(
+          sub == field.expression()
+            ? field
+            : PExprRecordField.of(field.lexical(), field.data(), field.field(), sub));
+      }
+      return new_fields;
+    }
+  }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.ast;
+
+import com.io7m.jaffirm.core.Preconditions;
+import com.io7m.junreachable.UnreachableCodeException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**
+ * Functions to traverse expressions in parallel.
+ *
+ * The subexpressions visited are exactly those visited by
+ * {@link PExpressions#fold(PExpressionType, Object, java.util.function.BiFunction)}.
+ */
+
+public final class PExpressionsParallel
+{
+  /**
+   * The default size, in nodes, below which subtrees are traversed
+   * sequentially.
+   */
+
+  public static final int DEFAULT_CUTOFF = 1024;
+
+  private static final Object FORK = new Object();
+
+  private PExpressionsParallel()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Map each node of the given expression to a value with {@code f}, and
+   * combine the values with {@code combine}, using the default cutoff.
+   *
+   * @param pool     The pool that will execute tasks
+   * @param e        The expression
+   * @param identity The identity value for {@code combine}
+   * @param f        The function applied to each node
+   * @param combine  An associative combining function
+   * @param <T>      The type of associated data
+   * @param <A>      The type of accumulated values
+   *
+   * @return The combined value
+   *
+   * @see #DEFAULT_CUTOFF
+   */
+
+  public static <T, A> A foldParallel(
+    final ForkJoinPool pool,
+    final PExpressionType<T> e,
+    final A identity,
+    final Function<PExpressionType<T>, A> f,
+    final BinaryOperator<A> combine)
+  {
+    return foldParallel(pool, e, identity, f, combine, DEFAULT_CUTOFF);
+  }
+
+  /**
+   * Map each node of the given expression to a value with {@code f}, and
+   * combine the values with {@code combine}. Values are combined in the same
+   * order as a sequential pre-order traversal, so {@code combine} must be
+   * associative but need not be commutative. The independent subexpressions
+   * of applications, {@code match} cases and {@code local} bodies are
+   * traversed in parallel if they contain at least {@code cutoff} nodes.
+   *
+   * @param pool     The pool that will execute tasks
+   * @param e        The expression
+   * @param identity The identity value for {@code combine}
+   * @param f        The function applied to each node
+   * @param combine  An associative combining function
+   * @param cutoff   The size, in nodes, below which subtrees are traversed
+   *                 sequentially
+   * @param <T>      The type of associated data
+   * @param <A>      The type of accumulated values
+   *
+   * @return The combined value
+   */
+
+  public static <T, A> A foldParallel(
+    final ForkJoinPool pool,
+    final PExpressionType<T> e,
+    final A identity,
+    final Function<PExpressionType<T>, A> f,
+    final BinaryOperator<A> combine,
+    final int cutoff)
+  {
+    Objects.requireNonNull(pool, "Pool");
+    Objects.requireNonNull(e, "Expression");
+    Objects.requireNonNull(f, "Function");
+    Objects.requireNonNull(combine, "Combine");
+    Preconditions.checkPreconditionI(
+      cutoff, cutoff > 0, c -> "Cutoff must be positive");
+
+    final Context<T, A> context =
+      new Context<>(largeSubtrees(e, cutoff), identity, f, combine);
+    return pool.invoke(new FoldTask<>(context, e));
+  }
+
+  /**
+   * Count the nodes in each subtree of {@code e} in a single pre-order pass,
+   * and return the subtrees that contain at least {@code cutoff} nodes. A
+   * subtree is complete when the traversal stack shrinks back to the size it
+   * had when the root of the subtree was popped.
+   */
+
+  private static <T> Set<PExpressionType<T>> largeSubtrees(
+    final PExpressionType<T> e,
+    final int cutoff)
+  {
+    final Set<PExpressionType<T>> large =
+      Collections.newSetFromMap(new IdentityHashMap<>());
+    final ArrayDeque<Object> stack = new ArrayDeque<>(16);
+    final PExpressions.Children<T> children = new PExpressions.Children<>(stack);
+
+    final ArrayList<PExpressionType<T>> open = new ArrayList<>(16);
+    int[] open_start = new int[16];
+    int[] open_depth = new int[16];
+
+    int count = 0;
+    stack.push(e);
+    while (!stack.isEmpty()) {
+      @SuppressWarnings("unchecked")
+      final PExpressionType<T> current = (PExpressionType<T>) stack.pop();
+      final int depth = stack.size();
+      current.matchExpression(children);
+
+      final int top = open.size();
+      if (top == open_start.length) {
+        open_start = Arrays.copyOf(open_start, top * 2);
+        open_depth = Arrays.copyOf(open_depth, top * 2);
+      }
+      open.add(current);
+      open_start[top] = count;
+      open_depth[top] = depth;
+      ++count;
+
+      while (!open.isEmpty()) {
+        final int last = open.size() - 1;
+        if (stack.size() > open_depth[last]) {
+          break;
+        }
+        if (count - open_start[last] >= cutoff) {
+          large.add(open.get(last));
+        }
+        open.remove(last);
+      }
+    }
+    return large;
+  }
+
+  private static final class Context<T, A>
+  {
+    private final Set<PExpressionType<T>> large;
+    private final A identity;
+    private final Function<PExpressionType<T>, A> f;
+    private final BinaryOperator<A> combine;
+
+    Context(
+      final Set<PExpressionType<T>> in_large,
+      final A in_identity,
+      final Function<PExpressionType<T>, A> in_f,
+      final BinaryOperator<A> in_combine)
+    {
+      this.large = in_large;
+      this.identity = in_identity;
+      this.f = in_f;
+      this.combine = in_combine;
+    }
+
+    boolean isLarge(
+      final PExpressionType<T> e)
+    {
+      return this.large.contains(e);
+    }
+
+    A foldSequential(
+      final A initial,
+      final PExpressionType<T> e)
+    {
+      return PExpressions.fold(
+        e, initial, (acc, x) -> this.combine.apply(acc, this.f.apply(x)));
+    }
+  }
+
+  /**
+   * A task that folds over a subtree. Large nodes are expanded in place; if a
+   * large node has more than one large child, all but the last are forked as
+   * separate tasks. Chains of nodes with a single large child are therefore
+   * traversed iteratively rather than by nested tasks.
+   */
+
+  private static final class FoldTask<T, A> extends RecursiveTask<A>
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final transient Context<T, A> context;
+    private final transient PExpressionType<T> root;
+
+    FoldTask(
+      final Context<T, A> in_context,
+      final PExpressionType<T> in_root)
+    {
+      this.context = in_context;
+      this.root = in_root;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected A compute()
+    {
+      final Context<T, A> c = this.context;
+      final ArrayDeque<Object> stack = new ArrayDeque<>(16);
+      final ArrayDeque<Object> pending = new ArrayDeque<>(16);
+      final PExpressions.Children<T> children = new PExpressions.Children<>(pending);
+      final ArrayList<Object> parts = new ArrayList<>(4);
+
+      A acc = c.identity;
+      stack.push(this.root);
+
+      while (!stack.isEmpty()) {
+        final Object top = stack.pop();
+        if (top == FORK) {
+          final FoldTask<T, A> task =
+            new FoldTask<>(c, (PExpressionType<T>) stack.pop());
+          task.fork();
+          parts.add(acc);
+          parts.add(task);
+          acc = c.identity;
+          continue;
+        }
+
+        final PExpressionType<T> current = (PExpressionType<T>) top;
+        if (!c.isLarge(current)) {
+          acc = c.foldSequential(acc, current);
+          continue;
+        }
+
+        acc = c.combine.apply(acc, c.f.apply(current));
+        current.matchExpression(children);
+        pushChildren(c, stack, pending);
+      }
+
+      parts.add(acc);
+      return join(c, parts);
+    }
+
+    /**
+     * Move the children in {@code pending} (which are in left-to-right order
+     * when popped) onto {@code stack}, marking all but the last large child
+     * to be forked.
+     */
+
+    private static <T, A> void pushChildren(
+      final Context<T, A> c,
+      final ArrayDeque<Object> stack,
+      final ArrayDeque<Object> pending)
+    {
+      boolean seen_large = false;
+      while (!pending.isEmpty()) {
+        @SuppressWarnings("unchecked")
+        final PExpressionType<T> child = (PExpressionType<T>) pending.pollLast();
+        stack.push(child);
+        if (c.isLarge(child)) {
+          if (seen_large) {
+            stack.push(FORK);
+          }
+          seen_large = true;
+        }
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T, A> A join(
+      final Context<T, A> c,
+      final ArrayList<Object> parts)
+    {
+      A result = (A) parts.get(0);
+      for (int index = 1; index < parts.size(); ++index) {
+        final Object part = parts.get(index);
+        if (part instanceof ForkJoinTask) {
+          result = c.combine.apply(result, ((ForkJoinTask<A>) part).join());
+        } else {
+          result = c.combine.apply(result, (A) part);
+        }
+      }
+      return result;
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.ast;
+
+import com.io7m.jaffirm.core.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * A mutable set of boolean flags indexed by dense node identifiers. All
+ * flags are initially clear. Tables are not thread-safe.
+ *
+ * @see PNodeTable
+ */
+
+public final class PNodeFlags
+{
+  private long[] words;
+
+  private PNodeFlags(
+    final int in_capacity)
+  {
+    this.words = new long[(in_capacity + 63) >>> 6];
+  }
+
+  /**
+   * Create a new table.
+   *
+   * @param capacity The initial capacity, typically the number of nodes
+   *
+   * @return A new table with all flags clear
+   */
+
+  public static PNodeFlags create(
+    final int capacity)
+  {
+    Preconditions.checkPreconditionI(
+      capacity, capacity >= 0, c -> "Capacity must be non-negative");
+    return new PNodeFlags(capacity);
+  }
+
+  /**
+   * @param id The node identifier
+   *
+   * @return {@code true} iff the flag for {@code id} is set
+   */
+
+  public boolean isSet(
+    final int id)
+  {
+    final int word = id >>> 6;
+    return id >= 0
+      && word < this.words.length
+      && (this.words[word] & (1L << id)) != 0L;
+  }
+
+  /**
+   * Set the flag for a node.
+   *
+   * @param id The node identifier
+   */
+
+  public void set(
+    final int id)
+  {
+    Preconditions.checkPreconditionI(
+      id, id >= 0, x -> "Identifier must be non-negative");
+
+    final int word = id >>> 6;
+    if (word >= this.words.length) {
+      this.words = Arrays.copyOf(
+        this.words, PNodeTables.grow(this.words.length, word));
+    }
+    this.words[word] |= 1L << id;
+  }
+
+  /**
+   * Clear the flag for a node.
+   *
+   * @param id The node identifier
+   */
+
+  public void clear(
+    final int id)
+  {
+    final int word = id >>> 6;
+    if (id >= 0 && word < this.words.length) {
+      this.words[word] &= ~(1L << id);
+    }
+  }
+
+  /**
+   * @return The number of flags that are set
+   */
+
+  public int cardinality()
+  {
+    int count = 0;
+    for (final long w : this.words) {
+      count += Long.bitCount(w);
+    }
+    return count;
+  }
+}
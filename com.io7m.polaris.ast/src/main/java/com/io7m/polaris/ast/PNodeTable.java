@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.ast;
+
+import com.io7m.jaffirm.core.Preconditions;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A mutable table of values indexed by dense node identifiers. Tables allow
+ * compiler phases to associate information with nodes without rebuilding
+ * trees. The table grows as necessary to accommodate the largest identifier
+ * written. Tables are not thread-safe.
+ *
+ * @param <V> The type of values
+ */
+
+public final class PNodeTable<V>
+{
+  private Object[] values;
+
+  private PNodeTable(
+    final int in_capacity)
+  {
+    this.values = new Object[in_capacity];
+  }
+
+  /**
+   * Create a new table.
+   *
+   * @param capacity The initial capacity, typically the number of nodes
+   * @param <V>      The type of values
+   *
+   * @return A new empty table
+   */
+
+  public static <V> PNodeTable<V> create(
+    final int capacity)
+  {
+    Preconditions.checkPreconditionI(
+      capacity, capacity >= 0, c -> "Capacity must be non-negative");
+    return new PNodeTable<>(capacity);
+  }
+
+  /**
+   * @param id The node identifier
+   *
+   * @return The value associated with {@code id}, if any
+   */
+
+  @SuppressWarnings("unchecked")
+  public Optional<V> get(
+    final int id)
+  {
+    if (id >= 0 && id < this.values.length) {
+      return Optional.ofNullable((V) this.values[id]);
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * @param id The node identifier
+   *
+   * @return {@code true} iff a value is associated with {@code id}
+   */
+
+  public boolean contains(
+    final int id)
+  {
+    return id >= 0 && id < this.values.length && this.values[id] != null;
+  }
+
+  /**
+   * Associate a value with a node, replacing any existing value.
+   *
+   * @param id    The node identifier
+   * @param value The value
+   */
+
+  public void put(
+    final int id,
+    final V value)
+  {
+    Objects.requireNonNull(value, "Value");
+    Preconditions.checkPreconditionI(
+      id, id >= 0, x -> "Identifier must be non-negative");
+
+    if (id >= this.values.length) {
+      this.values = Arrays.copyOf(
+        this.values, PNodeTables.grow(this.values.length, id));
+    }
+    this.values[id] = value;
+  }
+
+  /**
+   * Remove the value associated with a node, if any.
+   *
+   * @param id The node identifier
+   */
+
+  public void remove(
+    final int id)
+  {
+    if (id >= 0 && id < this.values.length) {
+      this.values[id] = null;
+    }
+  }
+}
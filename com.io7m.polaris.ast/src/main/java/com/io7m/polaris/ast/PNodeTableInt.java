@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.ast;
+
+import com.io7m.jaffirm.core.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * A mutable table of {@code int} values indexed by dense node identifiers.
+ * Nodes that have not been assigned a value have the default value given
+ * when the table was created. Tables are not thread-safe.
+ *
+ * @see PNodeTable
+ */
+
+public final class PNodeTableInt
+{
+  private final int default_value;
+  private int[] values;
+
+  private PNodeTableInt(
+    final int in_capacity,
+    final int in_default_value)
+  {
+    this.default_value = in_default_value;
+    this.values = new int[in_capacity];
+    if (in_default_value != 0) {
+      Arrays.fill(this.values, in_default_value);
+    }
+  }
+
+  /**
+   * Create a new table.
+   *
+   * @param capacity      The initial capacity, typically the number of nodes
+   * @param default_value The value of nodes that have not been assigned a
+   *                      value
+   *
+   * @return A new table
+   */
+
+  public static PNodeTableInt create(
+    final int capacity,
+    final int default_value)
+  {
+    Preconditions.checkPreconditionI(
+      capacity, capacity >= 0, c -> "Capacity must be non-negative");
+    return new PNodeTableInt(capacity, default_value);
+  }
+
+  /**
+   * @return The value of nodes that have not been assigned a value
+   */
+
+  public int defaultValue()
+  {
+    return this.default_value;
+  }
+
+  /**
+   * @param id The node identifier
+   *
+   * @return The value associated with {@code id}
+   */
+
+  public int get(
+    final int id)
+  {
+    if (id >= 0 && id < this.values.length) {
+      return this.values[id];
+    }
+    return this.default_value;
+  }
+
+  /**
+   * Associate a value with a node, replacing any existing value.
+   *
+   * @param id    The node identifier
+   * @param value The value
+   */
+
+  public void put(
+    final int id,
+    final int value)
+  {
+    Preconditions.checkPreconditionI(
+      id, id >= 0, x -> "Identifier must be non-negative");
+
+    if (id >= this.values.length) {
+      final int size = this.values.length;
+      this.values = Arrays.copyOf(this.values, PNodeTables.grow(size, id));
+      if (this.default_value != 0) {
+        Arrays.fill(this.values, size, this.values.length, this.default_value);
+      }
+    }
+    this.values[id] = value;
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.ast;
+
+import com.io7m.junreachable.UnreachableCodeException;
+
+/**
+ * Functions shared by node tables.
+ */
+
+final class PNodeTables
+{
+  private PNodeTables()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * @param size  The current size of a table
+   * @param index The index that must fit into the table
+   *
+   * @return The new size of a table that must hold {@code index}
+   */
+
+  static int grow(
+    final int size,
+    final int index)
+  {
+    final long doubled = Math.max(16L, (long) size * 2L);
+    return (int) Math.min(
+      (long) Integer.MAX_VALUE - 8L, Math.max(doubled, (long) index + 1L));
+  }
+}
@@ -66,7 +66,7 @@ public interface PPackageNameType<T> extends PASTElementType<T>
    * @return The components that make up the package name in declaration order
    */
 
-  @Value.Derived
+  @Value.Lazy
   default Vector<String> nameComponents()
   {
     return Vector.of(this.value().split("\\."));
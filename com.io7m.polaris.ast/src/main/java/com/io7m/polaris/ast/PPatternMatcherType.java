@@ -0,0 +1,95 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.ast;
+
+/**
+ * A matcher for patterns.
+ *
+ * @param <T> The type of associated data
+ * @param <A> The type of returned values
+ * @param <E> The type of raised exceptions
+ *
+ * @see PPatternType
+ */
+
+public interface PPatternMatcherType<T, A, E extends Exception>
+{
+  /**
+   * Match a value.
+   *
+   * @param e An integer constant pattern
+   *
+   * @return A value of {@code A}
+   *
+   * @throws E If required
+   */
+
+  A constantInteger(PPatternType.PPatternConstantIntegerType<T> e)
+    throws E;
+
+  /**
+   * Match a value.
+   *
+   * @param e A real constant pattern
+   *
+   * @return A value of {@code A}
+   *
+   * @throws E If required
+   */
+
+  A constantReal(PPatternType.PPatternConstantRealType<T> e)
+    throws E;
+
+  /**
+   * Match a value.
+   *
+   * @param e A string constant pattern
+   *
+   * @return A value of {@code A}
+   *
+   * @throws E If required
+   */
+
+  A constantString(PPatternType.PPatternConstantStringType<T> e)
+    throws E;
+
+  /**
+   * Match a value.
+   *
+   * @param e A constructor pattern
+   *
+   * @return A value of {@code A}
+   *
+   * @throws E If required
+   */
+
+  A constructor(PPatternType.PPatternConstructorType<T> e)
+    throws E;
+
+  /**
+   * Match a value.
+   *
+   * @param e A wildcard pattern
+   *
+   * @return A value of {@code A}
+   *
+   * @throws E If required
+   */
+
+  A wildcard(PPatternType.PPatternWildcardType<T> e)
+    throws E;
+}
@@ -39,6 +39,22 @@ public interface PPatternType<T> extends PASTElementType<T>
 
   Kind kind();
 
+  /**
+   * Match on the type of pattern.
+   *
+   * @param m   The matcher
+   * @param <A> The type of returned values
+   * @param <E> The type of raised exceptions
+   *
+   * @return The value returned by the matcher
+   *
+   * @throws E If the matcher raises {@code E}
+   */
+
+  <A, E extends Exception> A matchPattern(
+    PPatternMatcherType<T, A, E> m)
+    throws E;
+
   /**
    * The kind of patterns.
    */
@@ -92,6 +108,14 @@ public interface PPatternType<T> extends PASTElementType<T>
       return Kind.PATTERN_CONSTANT_INTEGER;
     }
 
+    @Override
+    default <A, E extends Exception> A matchPattern(
+      final PPatternMatcherType<T, A, E> m)
+      throws E
+    {
+      return m.constantInteger(this);
+    }
+
     @Override
     @Value.Parameter
     @Value.Auxiliary
@@ -133,6 +157,14 @@ public interface PPatternType<T> extends PASTElementType<T>
       return Kind.PATTERN_CONSTANT_REAL;
     }
 
+    @Override
+    default <A, E extends Exception> A matchPattern(
+      final PPatternMatcherType<T, A, E> m)
+      throws E
+    {
+      return m.constantReal(this);
+    }
+
     @Override
     @Value.Parameter
     @Value.Auxiliary
@@ -167,6 +199,14 @@ public interface PPatternType<T> extends PASTElementType<T>
       return Kind.PATTERN_CONSTANT_STRING;
     }
 
+    @Override
+    default <A, E extends Exception> A matchPattern(
+      final PPatternMatcherType<T, A, E> m)
+      throws E
+    {
+      return m.constantString(this);
+    }
+
     @Override
     @Value.Parameter
     @Value.Auxiliary
@@ -201,6 +241,14 @@ public interface PPatternType<T> extends PASTElementType<T>
       return Kind.PATTERN_WILDCARD;
     }
 
+    @Override
+    default <A, E extends Exception> A matchPattern(
+      final PPatternMatcherType<T, A, E> m)
+      throws E
+    {
+      return m.wildcard(this);
+    }
+
     @Override
     @Value.Parameter
     @Value.Auxiliary
@@ -228,6 +276,14 @@ public interface PPatternType<T> extends PASTElementType<T>
       return Kind.PATTERN_CONSTRUCTOR;
     }
 
+    @Override
+    default <A, E extends Exception> A matchPattern(
+      final PPatternMatcherType<T, A, E> m)
+      throws E
+    {
+      return m.constructor(this);
+    }
+
     @Override
     @Value.Parameter
     @Value.Auxiliary
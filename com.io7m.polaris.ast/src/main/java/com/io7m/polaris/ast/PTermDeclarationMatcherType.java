@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.ast;
+
+/**
+ * A matcher for term declarations.
+ *
+ * @param <T> The type of associated data
+ * @param <A> The type of returned values
+ * @param <E> The type of raised exceptions
+ *
+ * @see PTermDeclarationType
+ */
+
+public interface PTermDeclarationMatcherType<T, A, E extends Exception>
+{
+  /**
+   * Match a value.
+   *
+   * @param e A value declaration
+   *
+   * @return A value of {@code A}
+   *
+   * @throws E If required
+   */
+
+  A value(PTermDeclarationType.PDeclarationValueType<T> e)
+    throws E;
+
+  /**
+   * Match a value.
+   *
+   * @param e A function declaration
+   *
+   * @return A value of {@code A}
+   *
+   * @throws E If required
+   */
+
+  A function(PTermDeclarationType.PDeclarationFunctionType<T> e)
+    throws E;
+
+  /**
+   * Match a value.
+   *
+   * @param e A type signature declaration
+   *
+   * @return A value of {@code A}
+   *
+   * @throws E If required
+   */
+
+  A signature(PTermDeclarationType.PDeclarationSignatureType<T> e)
+    throws E;
+}
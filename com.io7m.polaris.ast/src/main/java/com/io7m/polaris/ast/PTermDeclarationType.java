@@ -18,6 +18,7 @@ package com.io7m.polaris.ast;
 
 import com.io7m.jaffirm.core.Preconditions;
 import com.io7m.jlexing.core.LexicalPosition;
+import com.io7m.polaris.ast.internal.PTrustedConstruction;
 import com.io7m.polaris.core.PImmutableStyleType;
 import io.vavr.collection.Vector;
 import org.immutables.value.Value;
@@ -44,6 +45,22 @@ public interface PTermDeclarationType<T> extends PDeclarationType<T>
 
   TermDeclarationKind termDeclarationKind();
 
+  /**
+   * Match on the type of declaration.
+   *
+   * @param m   The matcher
+   * @param <A> The type of returned values
+   * @param <E> The type of raised exceptions
+   *
+   * @return The value returned by the matcher
+   *
+   * @throws E If the matcher raises {@code E}
+   */
+
+  <A, E extends Exception> A matchTermDeclaration(
+    PTermDeclarationMatcherType<T, A, E> m)
+    throws E;
+
   /**
    * The kind of declaration
    */
@@ -91,6 +108,14 @@ public interface PTermDeclarationType<T> extends PDeclarationType<T>
       return TermDeclarationKind.VALUE_DECLARATION;
     }
 
+    @Override
+    default <A, E extends Exception> A matchTermDeclaration(
+      final PTermDeclarationMatcherType<T, A, E> m)
+      throws E
+    {
+      return m.value(this);
+    }
+
     @Override
     @Value.Parameter
     @Value.Auxiliary
@@ -138,6 +163,14 @@ public interface PTermDeclarationType<T> extends PDeclarationType<T>
       return TermDeclarationKind.FUNCTION_DECLARATION;
     }
 
+    @Override
+    default <A, E extends Exception> A matchTermDeclaration(
+      final PTermDeclarationMatcherType<T, A, E> m)
+      throws E
+    {
+      return m.function(this);
+    }
+
     @Override
     @Value.Parameter
     @Value.Auxiliary
@@ -176,10 +209,12 @@ public interface PTermDeclarationType<T> extends PDeclarationType<T>
     @Value.Check
     default void checkPreconditions()
     {
-      Preconditions.checkPrecondition(
-        this.parameters(),
-        this.parameters().size() == this.parameters().toSet().size(),
-        d -> "Function parameter names must be unique");
+      if (PTrustedConstruction.isUniquenessCheckRequired(this.parameters())) {
+        Preconditions.checkPrecondition(
+          this.parameters(),
+          this.parameters().size() == this.parameters().toSet().size(),
+          d -> "Function parameter names must be unique");
+      }
     }
   }
 
@@ -205,6 +240,14 @@ public interface PTermDeclarationType<T> extends PDeclarationType<T>
       return TermDeclarationKind.SIGNATURE_DECLARATION;
     }
 
+    @Override
+    default <A, E extends Exception> A matchTermDeclaration(
+      final PTermDeclarationMatcherType<T, A, E> m)
+      throws E
+    {
+      return m.signature(this);
+    }
+
     @Override
     @Value.Parameter
     @Value.Auxiliary
@@ -51,6 +51,42 @@ public final class PTermVariableNames
     final String name)
   {
     Objects.requireNonNull(name, "Name");
-    return PATTERN.matcher(name).matches();
+
+    /*
+     * Names are checked on every reference parsed, so this is a direct
+     * implementation of PATTERN rather than a regular expression match.
+     */
+
+    int count = 0;
+    int index = 0;
+    while (index < name.length()) {
+      final int c = name.codePointAt(index);
+      if (isForbidden(c) || (count == 0 && c >= '0' && c <= '9')) {
+        return false;
+      }
+      ++count;
+      if (count > 128) {
+        return false;
+      }
+      index += Character.charCount(c);
+    }
+    return count > 0;
+  }
+
+  private static boolean isForbidden(
+    final int c)
+  {
+    switch (c) {
+      case '.':
+      case ';':
+      case '[':
+      case '/':
+      case '<':
+      case '>':
+      case ':':
+        return true;
+      default:
+        return false;
+    }
   }
 }
@@ -18,6 +18,7 @@ package com.io7m.polaris.ast;
 
 import com.io7m.jaffirm.core.Preconditions;
 import com.io7m.jlexing.core.LexicalPosition;
+import com.io7m.polaris.ast.internal.PTrustedConstruction;
 import com.io7m.polaris.core.PImmutableStyleType;
 import io.vavr.collection.Map;
 import io.vavr.collection.Vector;
@@ -47,6 +48,22 @@ public interface PTypeDeclarationType<T> extends PDeclarationType<T>
 
   TypeDeclarationKind typeDeclarationKind();
 
+  /**
+   * Match on the type of declaration.
+   *
+   * @param m   The matcher
+   * @param <A> The type of returned values
+   * @param <E> The type of raised exceptions
+   *
+   * @return The value returned by the matcher
+   *
+   * @throws E If the matcher raises {@code E}
+   */
+
+  <A, E extends Exception> A matchTypeDeclaration(
+    PTypeDeclarationMatcherType<T, A, E> m)
+    throws E;
+
   /**
    * The kind of declaration
    */
@@ -82,6 +99,14 @@ public interface PTypeDeclarationType<T> extends PDeclarationType<T>
       return TypeDeclarationKind.RECORD_DECLARATION;
     }
 
+    @Override
+    default <A, E extends Exception> A matchTypeDeclaration(
+      final PTypeDeclarationMatcherType<T, A, E> m)
+      throws E
+    {
+      return m.record(this);
+    }
+
     @Override
     @Value.Parameter
     @Value.Auxiliary
@@ -117,7 +142,7 @@ public interface PTypeDeclarationType<T> extends PDeclarationType<T>
      * @return The fields by name
      */
 
-    @Value.Derived
+    @Value.Lazy
     default Map<String, PRecordFieldType<T>> fieldsByName()
     {
       return this.fields().toMap(c -> c.name().value(), Function.identity());
@@ -130,10 +155,12 @@ public interface PTypeDeclarationType<T> extends PDeclarationType<T>
     @Value.Check
     default void checkPreconditions()
     {
-      Preconditions.checkPrecondition(
-        this.fields(),
-        this.fieldsByName().size() == this.fields().size(),
-        d -> "Field names must be unique");
+      if (PTrustedConstruction.isUniquenessCheckRequired(this.fields())) {
+        Preconditions.checkPrecondition(
+          this.fields(),
+          this.fieldsByName().size() == this.fields().size(),
+          d -> "Field names must be unique");
+      }
     }
   }
 
@@ -188,6 +215,14 @@ public interface PTypeDeclarationType<T> extends PDeclarationType<T>
       return TypeDeclarationKind.VARIANT_DECLARATION;
     }
 
+    @Override
+    default <A, E extends Exception> A matchTypeDeclaration(
+      final PTypeDeclarationMatcherType<T, A, E> m)
+      throws E
+    {
+      return m.variant(this);
+    }
+
     @Override
     @Value.Parameter
     @Value.Auxiliary
@@ -223,7 +258,7 @@ public interface PTypeDeclarationType<T> extends PDeclarationType<T>
      * @return The cases by name
      */
 
-    @Value.Derived
+    @Value.Lazy
     default Map<String, PVariantCaseType<T>> casesByName()
     {
       return this.cases().toMap(c -> c.name().value(), Function.identity());
@@ -236,10 +271,12 @@ public interface PTypeDeclarationType<T> extends PDeclarationType<T>
     @Value.Check
     default void checkPreconditions()
     {
-      Preconditions.checkPrecondition(
-        this.cases(),
-        this.casesByName().size() == this.cases().size(),
-        d -> "Variant case names must be unique");
+      if (PTrustedConstruction.isUniquenessCheckRequired(this.cases())) {
+        Preconditions.checkPrecondition(
+          this.cases(),
+          this.casesByName().size() == this.cases().size(),
+          d -> "Variant case names must be unique");
+      }
     }
   }
 
@@ -18,6 +18,7 @@ package com.io7m.polaris.ast;
 
 import com.io7m.jaffirm.core.Preconditions;
 import com.io7m.jlexing.core.LexicalPosition;
+import com.io7m.polaris.ast.internal.PTrustedConstruction;
 import com.io7m.polaris.core.PImmutableStyleType;
 import io.vavr.collection.Vector;
 import org.immutables.value.Value;
@@ -38,6 +39,22 @@ public interface PTypeExpressionType<T> extends PASTElementType<T>
 
   PTypeExpressionKind typeExpressionKind();
 
+  /**
+   * Match on the type of type expression.
+   *
+   * @param m   The matcher
+   * @param <A> The type of returned values
+   * @param <E> The type of raised exceptions
+   *
+   * @return The value returned by the matcher
+   *
+   * @throws E If the matcher raises {@code E}
+   */
+
+  <A, E extends Exception> A matchTypeExpression(
+    PTypeExpressionMatcherType<T, A, E> m)
+    throws E;
+
   @Override
   LexicalPosition<URI> lexical();
 
@@ -91,6 +108,14 @@ public interface PTypeExpressionType<T> extends PASTElementType<T>
       return PTypeExpressionKind.TYPE_EXPR_ARROW;
     }
 
+    @Override
+    default <A, E extends Exception> A matchTypeExpression(
+      final PTypeExpressionMatcherType<T, A, E> m)
+      throws E
+    {
+      return m.arrow(this);
+    }
+
     @Override
     @Value.Parameter
     @Value.Auxiliary
@@ -139,6 +164,14 @@ public interface PTypeExpressionType<T> extends PASTElementType<T>
       return PTypeExpressionKind.TYPE_EXPR_FOR_ALL;
     }
 
+    @Override
+    default <A, E extends Exception> A matchTypeExpression(
+      final PTypeExpressionMatcherType<T, A, E> m)
+      throws E
+    {
+      return m.forAll(this);
+    }
+
     @Override
     @Value.Parameter
     @Value.Auxiliary
@@ -175,10 +208,12 @@ public interface PTypeExpressionType<T> extends PASTElementType<T>
         !this.parameters().isEmpty(),
         p -> "Must specify at least one type parameter");
 
-      Preconditions.checkPrecondition(
-        this.parameters(),
-        this.parameters().size() == this.parameters().toSet().size(),
-        p -> "Type parameters must be uniquely named");
+      if (PTrustedConstruction.isUniquenessCheckRequired(this.parameters())) {
+        Preconditions.checkPrecondition(
+          this.parameters(),
+          this.parameters().size() == this.parameters().toSet().size(),
+          p -> "Type parameters must be uniquely named");
+      }
     }
   }
 
@@ -198,6 +233,14 @@ public interface PTypeExpressionType<T> extends PASTElementType<T>
       return PTypeExpressionKind.TYPE_EXPR_REFERENCE;
     }
 
+    @Override
+    default <A, E extends Exception> A matchTypeExpression(
+      final PTypeExpressionMatcherType<T, A, E> m)
+      throws E
+    {
+      return m.reference(this);
+    }
+
     @Override
     default LexicalPosition<URI> lexical()
     {
@@ -233,6 +276,14 @@ public interface PTypeExpressionType<T> extends PASTElementType<T>
       return PTypeExpressionKind.TYPE_EXPR_APPLICATION;
     }
 
+    @Override
+    default <A, E extends Exception> A matchTypeExpression(
+      final PTypeExpressionMatcherType<T, A, E> m)
+      throws E
+    {
+      return m.application(this);
+    }
+
     @Override
     default LexicalPosition<URI> lexical()
     {
@@ -0,0 +1,294 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.ast;
+
+import com.io7m.junreachable.UnreachableCodeException;
+import com.io7m.polaris.ast.PTypeExpressionType.PTypeExprApplicationType;
+import com.io7m.polaris.ast.PTypeExpressionType.PTypeExprArrowType;
+import com.io7m.polaris.ast.PTypeExpressionType.PTypeExprForAllType;
+import com.io7m.polaris.ast.PTypeExpressionType.PTypeExprReferenceType;
+import io.vavr.collection.Vector;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Functions to traverse type expressions.
+ *
+ * None of the functions here use recursion, so the Java stack depth used is
+ * independent of the depth of the type expression.
+ */
+
+public final class PTypeExpressions
+{
+  private static final Object EXIT = new Object();
+
+  private PTypeExpressions()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Fold over the given type expression and all of its subexpressions, in
+   * pre-order from left to right.
+   *
+   * @param e       The type expression
+   * @param initial The initial value
+   * @param f       The accumulating function
+   * @param <T>     The type of associated data
+   * @param <A>     The type of accumulated values
+   *
+   * @return The accumulated value
+   */
+
+  @SuppressWarnings("unchecked")
+  public static <T, A> A fold(
+    final PTypeExpressionType<T> e,
+    final A initial,
+    final BiFunction<A, PTypeExpressionType<T>, A> f)
+  {
+    Objects.requireNonNull(e, "Expression");
+    Objects.requireNonNull(f, "Function");
+
+    final ArrayDeque<Object> stack = new ArrayDeque<>(16);
+    final Children<T> children = new Children<>(stack);
+    stack.push(e);
+
+    A result = initial;
+    while (!stack.isEmpty()) {
+      final PTypeExpressionType<T> current = (PTypeExpressionType<T>) stack.pop();
+      result = f.apply(result, current);
+      current.matchTypeExpression(children);
+    }
+    return result;
+  }
+
+  /**
+   * Transform the given type expression bottom-up. The function {@code f} is
+   * applied to each type expression after its subexpressions have been
+   * transformed. Type expressions whose subexpressions are all unchanged (by
+   * reference) are not reconstructed.
+   *
+   * @param e   The type expression
+   * @param f   The transformation
+   * @param <T> The type of associated data
+   *
+   * @return The transformed type expression
+   */
+
+  @SuppressWarnings("unchecked")
+  public static <T> PTypeExpressionType<T> transform(
+    final PTypeExpressionType<T> e,
+    final Function<PTypeExpressionType<T>, PTypeExpressionType<T>> f)
+  {
+    Objects.requireNonNull(e, "Expression");
+    Objects.requireNonNull(f, "Function");
+
+    final ArrayDeque<Object> stack = new ArrayDeque<>(16);
+    final ArrayList<PTypeExpressionType<T>> results = new ArrayList<>(16);
+    final Children<T> children = new Children<>(stack);
+    final Rebuild<T> rebuild = new Rebuild<>(results);
+    stack.push(e);
+
+    while (!stack.isEmpty()) {
+      final Object top = stack.pop();
+      if (top == EXIT) {
+        final PTypeExpressionType<T> current = (PTypeExpressionType<T>) stack.pop();
+        results.add(Objects.requireNonNull(
+          f.apply(current.matchTypeExpression(rebuild)), "Result"));
+      } else {
+        final PTypeExpressionType<T> current = (PTypeExpressionType<T>) top;
+        stack.push(current);
+        stack.push(EXIT);
+        current.matchTypeExpression(children);
+      }
+    }
+    return results.get(0);
+  }
+
+  /**
+   * A matcher that pushes the immediate subexpressions of a type expression
+   * onto a stack in reverse order, so that they are popped from left to right.
+   */
+
+  private static final class Children<T>
+    implements PTypeExpressionMatcherType<T, Void, RuntimeException>
+  {
+    private final ArrayDeque<Object> stack;
+
+    Children(
+      final ArrayDeque<Object> in_stack)
+    {
+      this.stack = Objects.requireNonNull(in_stack, "Stack");
+    }
+
+    private void pushAll(
+      final Vector<PTypeExpressionType<T>> es)
+    {
+      for (int index = es.size() - 1; index >= 0; --index) {
+        this.stack.push(es.get(index));
+      }
+    }
+
+    @Override
+    public Void arrow(
+      final PTypeExprArrowType<T> e)
+    {
+      this.stack.push(e.returnType());
+      this.pushAll(e.parameters());
+      return null;
+    }
+
+    @Override
+    public Void forAll(
+      final PTypeExprForAllType<T> e)
+    {
+      this.stack.push(e.expression());
+      return null;
+    }
+
+    @Override
+    public Void reference(
+      final PTypeExprReferenceType<T> e)
+    {
+      return null;
+    }
+
+    @Override
+    public Void application(
+      final PTypeExprApplicationType<T> e)
+    {
+      this.pushAll(e.arguments());
+      this.stack.push(e.constructor());
+      return null;
+    }
+  }
+
+  /**
+   * A matcher that takes the transformed subexpressions of a type expression
+   * from the top of a result stack and reconstructs the type expression if any
+   * of them differ from the originals.
+   */
+
+  private static final class Rebuild<T>
+    implements PTypeExpressionMatcherType<T, PTypeExpressionType<T>, RuntimeException>
+  {
+    private final ArrayList<PTypeExpressionType<T>> results;
+
+    Rebuild(
+      final ArrayList<PTypeExpressionType<T>> in_results)
+    {
+      this.results = Objects.requireNonNull(in_results, "Results");
+    }
+
+    private void drop(
+      final int base)
+    {
+      for (int index = this.results.size() - 1; index >= base; --index) {
+        this.results.remove(index);
+      }
+    }
+
+    private boolean changed(
+      final int base,
+      final Vector<PTypeExpressionType<T>> originals)
+    {
+      for (int index = 0; index < originals.size(); ++index) {
+        if (this.results.get(base + index) != originals.get(index)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private Vector<PTypeExpressionType<T>> slice(
+      final int base,
+      final int count)
+    {
+      return Vector.ofAll(this.results.subList(base, base + count));
+    }
+
+    @Override
+    public PTypeExpressionType<T> arrow(
+      final PTypeExprArrowType<T> e)
+    {
+      final Vector<PTypeExpressionType<T>> parameters = e.parameters();
+      final int base = this.results.size() - (parameters.size() + 1);
+      final PTypeExpressionType<T> return_type =
+        this.results.get(base + parameters.size());
+
+      final PTypeExpressionType<T> result;
+      if (return_type != e.returnType() || this.changed(base, parameters)) {
+        result = PTypeExprArrow.of(
+          e.lexical(),
+          e.data(),
+          this.slice(base, parameters.size()),
+          e.isVariadic(),
+          return_type);
+      } else {
+        result = e;
+      }
+
+      this.drop(base);
+      return result;
+    }
+
+    @Override
+    public PTypeExpressionType<T> forAll(
+      final PTypeExprForAllType<T> e)
+    {
+      final int base = this.results.size() - 1;
+      final PTypeExpressionType<T> body = this.results.get(base);
+      this.drop(base);
+
+      if (body != e.expression()) {
+        return PTypeExprForAll.of(e.lexical(), e.data(), e.parameters(), body);
+      }
+      return e;
+    }
+
+    @Override
+    public PTypeExpressionType<T> reference(
+      final PTypeExprReferenceType<T> e)
+    {
+      return e;
+    }
+
+    @Override
+    public PTypeExpressionType<T> application(
+      final PTypeExprApplicationType<T> e)
+    {
+      final Vector<PTypeExpressionType<T>> arguments = e.arguments();
+      final int base = this.results.size() - (arguments.size() + 1);
+      final PTypeExpressionType<T> constructor = this.results.get(base);
+
+      final PTypeExpressionType<T> result;
+      if (constructor != e.constructor() || this.changed(base + 1, arguments)) {
+        result = PTypeExprApplication.of(
+          e.data(), constructor, this.slice(base + 1, arguments.size()));
+      } else {
+        result = e;
+      }
+
+      this.drop(base);
+      return result;
+    }
+  }
+}
@@ -19,6 +19,7 @@ package com.io7m.polaris.ast;
 import com.io7m.jaffirm.core.Preconditions;
 import com.io7m.jlexing.core.LexicalPosition;
 import com.io7m.junreachable.UnreachableCodeException;
+import com.io7m.polaris.ast.internal.PTrustedConstruction;
 import com.io7m.polaris.core.PImmutableStyleType;
 import io.vavr.collection.Vector;
 import org.immutables.value.Value;
@@ -46,6 +47,22 @@ public interface PUnitDeclarationType<T> extends PDeclarationType<T>
 
   UnitDeclarationKind unitDeclarationKind();
 
+  /**
+   * Match on the type of declaration.
+   *
+   * @param m   The matcher
+   * @param <A> The type of returned values
+   * @param <E> The type of raised exceptions
+   *
+   * @return The value returned by the matcher
+   *
+   * @throws E If the matcher raises {@code E}
+   */
+
+  <A, E extends Exception> A matchUnitDeclaration(
+    PUnitDeclarationMatcherType<T, A, E> m)
+    throws E;
+
   /**
    * The kind of declaration
    */
@@ -93,6 +110,14 @@ public interface PUnitDeclarationType<T> extends PDeclarationType<T>
       return UnitDeclarationKind.UNIT_DECLARATION;
     }
 
+    @Override
+    default <A, E extends Exception> A matchUnitDeclaration(
+      final PUnitDeclarationMatcherType<T, A, E> m)
+      throws E
+    {
+      return m.unit(this);
+    }
+
     @Override
     @Value.Parameter
     @Value.Auxiliary
@@ -134,6 +159,14 @@ public interface PUnitDeclarationType<T> extends PDeclarationType<T>
       return UnitDeclarationKind.IMPORT_DECLARATION;
     }
 
+    @Override
+    default <A, E extends Exception> A matchUnitDeclaration(
+      final PUnitDeclarationMatcherType<T, A, E> m)
+      throws E
+    {
+      return m.importUnit(this);
+    }
+
     @Override
     @Value.Parameter
     @Value.Auxiliary
@@ -182,6 +215,14 @@ public interface PUnitDeclarationType<T> extends PDeclarationType<T>
       return UnitDeclarationKind.EXPORT_TERMS_DECLARATION;
     }
 
+    @Override
+    default <A, E extends Exception> A matchUnitDeclaration(
+      final PUnitDeclarationMatcherType<T, A, E> m)
+      throws E
+    {
+      return m.exportTerms(this);
+    }
+
     @Override
     @Value.Parameter
     @Value.Auxiliary
@@ -206,10 +247,12 @@ public interface PUnitDeclarationType<T> extends PDeclarationType<T>
     @Value.Check
     default void checkPreconditions()
     {
-      Preconditions.checkPrecondition(
-        this.terms(),
-        this.terms().size() == this.terms().toSet().size(),
-        t -> "Exported term names must be unique");
+      if (PTrustedConstruction.isUniquenessCheckRequired(this.terms())) {
+        Preconditions.checkPrecondition(
+          this.terms(),
+          this.terms().size() == this.terms().toSet().size(),
+          t -> "Exported term names must be unique");
+      }
     }
   }
 
@@ -229,6 +272,14 @@ public interface PUnitDeclarationType<T> extends PDeclarationType<T>
       return UnitDeclarationKind.EXPORT_TYPES_DECLARATION;
     }
 
+    @Override
+    default <A, E extends Exception> A matchUnitDeclaration(
+      final PUnitDeclarationMatcherType<T, A, E> m)
+      throws E
+    {
+      return m.exportTypes(this);
+    }
+
     @Override
     @Value.Parameter
     @Value.Auxiliary
@@ -253,10 +304,12 @@ public interface PUnitDeclarationType<T> extends PDeclarationType<T>
     @Value.Check
     default void checkPreconditions()
     {
-      Preconditions.checkPrecondition(
-        this.types(),
-        this.types().size() == this.types().toSet().size(),
-        t -> "Exported type names must be unique");
+      if (PTrustedConstruction.isUniquenessCheckRequired(this.types())) {
+        Preconditions.checkPrecondition(
+          this.types(),
+          this.types().size() == this.types().toSet().size(),
+          t -> "Exported type names must be unique");
+      }
     }
   }
 }
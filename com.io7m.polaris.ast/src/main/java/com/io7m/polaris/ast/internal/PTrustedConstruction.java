@@ -0,0 +1,94 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.ast.internal;
+
+import com.io7m.junreachable.UnreachableCodeException;
+import io.vavr.collection.Seq;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Functions to construct AST nodes in a trusted mode. When construction is
+ * trusted, the potentially expensive uniqueness checks performed by the
+ * {@code @Value.Check} methods of the AST types are skipped. Trusted
+ * construction is only available to modules to which this package is
+ * exported, and those modules are expected to have proven the same
+ * properties before constructing nodes. Cheap checks, such as the validation
+ * of names, are always performed.
+ */
+
+public final class PTrustedConstruction
+{
+  private static final ThreadLocal<int[]> DEPTH =
+    ThreadLocal.withInitial(() -> new int[1]);
+
+  private PTrustedConstruction()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Evaluate {@code f} with trusted construction enabled on the current
+   * thread. Calls may be nested.
+   *
+   * @param f   The function
+   * @param <A> The type of returned values
+   *
+   * @return The value returned by {@code f}
+   */
+
+  public static <A> A trusted(
+    final Supplier<A> f)
+  {
+    Objects.requireNonNull(f, "Function");
+
+    final int[] depth = DEPTH.get();
+    ++depth[0];
+    try {
+      return f.get();
+    } finally {
+      --depth[0];
+    }
+  }
+
+  /**
+   * @return {@code true} iff trusted construction is enabled on the current
+   * thread
+   */
+
+  public static boolean isTrusted()
+  {
+    return DEPTH.get()[0] > 0;
+  }
+
+  /**
+   * Determine whether the elements of {@code xs} must be checked for
+   * uniqueness. Sequences of fewer than two elements are trivially unique,
+   * and the check is otherwise skipped if construction is trusted.
+   *
+   * @param xs The elements
+   *
+   * @return {@code true} iff a uniqueness check is required
+   */
+
+  public static boolean isUniquenessCheckRequired(
+    final Seq<?> xs)
+  {
+    return xs.size() > 1 && !isTrusted();
+  }
+}
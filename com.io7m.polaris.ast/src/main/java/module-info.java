@@ -29,4 +29,5 @@ module com.io7m.polaris.ast
   requires io.vavr;
 
   exports com.io7m.polaris.ast;
+  exports com.io7m.polaris.ast.internal to com.io7m.polaris.parser;
 }
@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.benchmarks;
+
+import com.io7m.jsx.lexer.JSXLexerSupplier;
+import com.io7m.jsx.parser.JSXParserSupplier;
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.ast.PUnitDeclarationType;
+import com.io7m.polaris.parser.PParsers;
+import com.io7m.polaris.parser.api.PParseError;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.parser.api.PParserProviderType;
+import com.io7m.polaris.parser.api.PParserType;
+import io.vavr.collection.Seq;
+import io.vavr.collection.Vector;
+import io.vavr.control.Validation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks comparing the header scanner with a full parse of the same
+ * unit.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PHeaderScannerBenchmark
+{
+  private static final URI UNIT = URI.create("file:///benchmark.p");
+
+  /**
+   * The number of functions declared in the unit.
+   */
+
+  @Param({"2000"})
+  public int functions;
+
+  private PParserProviderType parsers;
+  private byte[] text;
+
+  /**
+   * Construct a benchmark.
+   */
+
+  public PHeaderScannerBenchmark()
+  {
+
+  }
+
+  /**
+   * Generate a unit with a header followed by functions containing nested
+   * match, local, record and lambda forms.
+   */
+
+  @Setup(Level.Trial)
+  public void setup()
+  {
+    this.parsers =
+      PParsers.createWith(new JSXParserSupplier(), new JSXLexerSupplier());
+
+    final StringBuilder sb = new StringBuilder(this.functions * 160);
+    sb.append("(define-unit b.B)\n");
+    sb.append("(import a.A)\n");
+    sb.append("(import-qualified a.C C)\n");
+    for (int index = 0; index < this.functions; ++index) {
+      sb.append("(define-function f").append(index).append(" (x y)\n");
+      sb.append("  (match x\n");
+      sb.append("    [case (Some z) (local (define-value w (g z \"a ) string\")) w)]\n");
+      sb.append("    [case None (record P [field a y] [field b (λ (q) q)])]))\n");
+    }
+    sb.append("(export-terms f0)\n");
+    this.text = sb.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Scan the unit for header declarations.
+   *
+   * @return The header declarations
+   *
+   * @throws IOException On I/O errors
+   */
+
+  @Benchmark
+  public Validation<Seq<PParseError>, Vector<PUnitDeclarationType<PParsed>>> scan()
+    throws IOException
+  {
+    return this.parsers.createHeaderScanner(
+      UNIT, new ByteArrayInputStream(this.text)).scan();
+  }
+
+  /**
+   * Parse every form in the unit.
+   *
+   * @return The number of forms parsed
+   *
+   * @throws IOException On I/O errors
+   */
+
+  @Benchmark
+  public int parse()
+    throws IOException
+  {
+    final PParserType p =
+      this.parsers.create(UNIT, new ByteArrayInputStream(this.text));
+
+    int count = 0;
+    while (true) {
+      final Validation<Seq<PParseError>, Optional<PExpressionOrDeclarationType<PParsed>>> r =
+        p.parseExpressionOrDeclaration();
+      if (r.isInvalid() || !r.get().isPresent()) {
+        return count;
+      }
+      ++count;
+    }
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.benchmarks;
+
+import com.io7m.polaris.interpreter.PInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks comparing {@link PInteger} arithmetic with plain
+ * {@link BigInteger} arithmetic. Operands of 8 bits stay on the
+ * {@code long} path, products of 40-bit operands overflow and are promoted,
+ * and 100-bit operands are always held as {@link BigInteger}.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PIntegerBenchmark
+{
+  private static final int COUNT = 1024;
+
+  @Param({"8", "40", "100"})
+  public int bits;
+
+  private BigInteger[] big_x;
+  private BigInteger[] big_y;
+  private PInteger[] x;
+  private PInteger[] y;
+
+  /**
+   * Generate the operands.
+   */
+
+  @Setup(Level.Trial)
+  public void setup()
+  {
+    final Random random = new Random(0x5eedL);
+    this.big_x = new BigInteger[COUNT];
+    this.big_y = new BigInteger[COUNT];
+    this.x = new PInteger[COUNT];
+    this.y = new PInteger[COUNT];
+    for (int index = 0; index < COUNT; ++index) {
+      this.big_x[index] = new BigInteger(this.bits, random);
+      this.big_y[index] = new BigInteger(this.bits, random);
+      this.x[index] = PInteger.of(this.big_x[index]);
+      this.y[index] = PInteger.of(this.big_y[index]);
+    }
+  }
+
+  /**
+   * Sum the operands with {@link BigInteger}.
+   *
+   * @return The result
+   */
+
+  @Benchmark
+  public BigInteger sumBigInteger()
+  {
+    BigInteger sum = BigInteger.ZERO;
+    for (int index = 0; index < COUNT; ++index) {
+      sum = sum.add(this.big_x[index]).subtract(this.big_y[index]);
+    }
+    return sum;
+  }
+
+  /**
+   * Sum the operands with {@link PInteger}.
+   *
+   * @return The result
+   */
+
+  @Benchmark
+  public PInteger sumInteger()
+  {
+    PInteger sum = PInteger.ZERO;
+    for (int index = 0; index < COUNT; ++index) {
+      sum = sum.add(this.x[index]).subtract(this.y[index]);
+    }
+    return sum;
+  }
+
+  /**
+   * Sum the products of pairs of operands with {@link BigInteger}.
+   *
+   * @return The result
+   */
+
+  @Benchmark
+  public BigInteger productBigInteger()
+  {
+    BigInteger sum = BigInteger.ZERO;
+    for (int index = 0; index < COUNT; ++index) {
+      sum = sum.add(this.big_x[index].multiply(this.big_y[index]));
+    }
+    return sum;
+  }
+
+  /**
+   * Sum the products of pairs of operands with {@link PInteger}.
+   *
+   * @return The result
+   */
+
+  @Benchmark
+  public PInteger productInteger()
+  {
+    PInteger sum = PInteger.ZERO;
+    for (int index = 0; index < COUNT; ++index) {
+      sum = sum.add(this.x[index].multiply(this.y[index]));
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.benchmarks;
+
+import com.io7m.jsx.lexer.JSXLexerSupplier;
+import com.io7m.jsx.parser.JSXParserSupplier;
+import com.io7m.polaris.lsp.PLSPDocument;
+import com.io7m.polaris.lsp.PLSPDocuments;
+import com.io7m.polaris.lsp.PLSPSymbols;
+import com.io7m.polaris.parser.PParsers;
+import com.io7m.polaris.parser.api.PParserProviderType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks measuring the time taken by the language server to produce
+ * diagnostics for a document, and to index the document afterwards. The
+ * target for diagnostics after an edit is under 20 milliseconds for a
+ * document of 10000 lines.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PLSPDocumentBenchmark
+{
+  private static final URI DOCUMENT = URI.create("file:///benchmark.p");
+
+  /**
+   * The number of lines in the document.
+   */
+
+  @Param({"1000", "10000"})
+  public int lines;
+
+  private PParserProviderType parsers;
+  private String text;
+  private String edited;
+  private PLSPDocument analysed;
+
+  /**
+   * Construct a benchmark.
+   */
+
+  public PLSPDocumentBenchmark()
+  {
+
+  }
+
+  /**
+   * Generate a document in which a quarter of the lines contain errors.
+   */
+
+  @Setup(Level.Trial)
+  public void setup()
+  {
+    this.parsers =
+      PParsers.createWith(new JSXParserSupplier(), new JSXLexerSupplier());
+
+    final StringBuilder sb = new StringBuilder(this.lines * 48);
+    sb.append("(define-unit b.B)\n");
+    for (int index = 1; index < this.lines; ++index) {
+      switch (index % 4) {
+        case 0: {
+          sb.append("(define-function f").append(index).append(" (x y) (g x y))\n");
+          break;
+        }
+        case 1: {
+          sb.append("(define-value v").append(index).append(" (Some 23))\n");
+          break;
+        }
+        case 2: {
+          sb.append("  (define-value w").append(index).append(")\n");
+          break;
+        }
+        default: {
+          sb.append("(define-function h").append(index)
+            .append(" (o) (match o [case None 0] [case (Some x) x]))\n");
+          break;
+        }
+      }
+    }
+    this.text = sb.toString();
+
+    final int middle =
+      this.text.indexOf("(define-value v", this.text.length() / 2);
+    this.edited = new StringBuilder(this.text)
+      .insert(middle, "(define-value e (f 1 2))\n")
+      .toString();
+    this.analysed = PLSPDocuments.analyse(this.parsers, DOCUMENT, 1, this.text);
+  }
+
+  /**
+   * Parse the document and collect its errors.
+   *
+   * @return The analysed document
+   */
+
+  @Benchmark
+  public PLSPDocument analyse()
+  {
+    return PLSPDocuments.analyse(this.parsers, DOCUMENT, 1, this.text);
+  }
+
+  /**
+   * Parse the document and produce the diagnostics that the server
+   * publishes for it.
+   *
+   * @return The diagnostics
+   */
+
+  @Benchmark
+  public Map<String, Object> diagnostics()
+  {
+    return PLSPDocuments.diagnostics(
+      PLSPDocuments.analyse(this.parsers, DOCUMENT, 1, this.text));
+  }
+
+  /**
+   * Parse the document, and then index its elements and extract its
+   * declared names, as the server does after publishing diagnostics.
+   *
+   * @return The number of indexed elements and names
+   */
+
+  @Benchmark
+  public int index()
+  {
+    final PLSPDocument document =
+      PLSPDocuments.analyse(this.parsers, DOCUMENT, 1, this.text);
+    return document.nodes().size() + PLSPSymbols.symbols(document).size();
+  }
+
+  /**
+   * Insert a line into the middle of the analysed document, and produce the
+   * diagnostics that the server publishes for the new version.
+   *
+   * @return The diagnostics
+   */
+
+  @Benchmark
+  public Map<String, Object> edit()
+  {
+    return PLSPDocuments.diagnostics(
+      PLSPDocuments.analyse(this.parsers, this.analysed, 2, this.edited));
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.benchmarks;
+
+import com.io7m.polaris.lsp.PLSPPosition;
+import com.io7m.polaris.lsp.PLSPSymbol;
+import com.io7m.polaris.lsp.PLSPSymbolKind;
+import com.io7m.polaris.lsp.PLSPWorkspaceIndex;
+import io.vavr.collection.Vector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks measuring the time taken to query the workspace index for
+ * completion. The target is under a millisecond for an index of one million
+ * symbols.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PLSPWorkspaceIndexBenchmark
+{
+  private static final int SYMBOLS = 1_000_000;
+  private static final int UNITS = 16;
+  private static final int LIMIT = 50;
+
+  private static final String[] SYLLABLES = {
+    "ka", "lo", "mi", "ne", "ru", "sa", "to", "vi",
+    "xe", "zu", "bar", "qux", "map", "fold", "get", "set",
+  };
+
+  /**
+   * The query.
+   */
+
+  @Param({"mapfo", "foldget", "xxxxxxxx"})
+  public String query;
+
+  private PLSPWorkspaceIndex index;
+
+  /**
+   * Construct a benchmark.
+   */
+
+  public PLSPWorkspaceIndexBenchmark()
+  {
+
+  }
+
+  /**
+   * Generate an index of names built from a small set of syllables, so that
+   * names share long prefixes.
+   */
+
+  @Setup(Level.Trial)
+  public void setup()
+  {
+    final Random random = new Random(0L);
+    final PLSPSymbolKind[] kinds = PLSPSymbolKind.values();
+
+    this.index = PLSPWorkspaceIndex.create();
+    for (int unit = 0; unit < UNITS; ++unit) {
+      final URI uri = URI.create("file:///benchmark/u" + unit + ".p");
+      final List<PLSPSymbol> symbols = new ArrayList<>(SYMBOLS / UNITS);
+      for (int line = 0; line < SYMBOLS / UNITS; ++line) {
+        final StringBuilder sb = new StringBuilder(16);
+        final int count = 2 + random.nextInt(4);
+        for (int index = 0; index < count; ++index) {
+          sb.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        symbols.add(PLSPSymbol.of(
+          sb.toString(),
+          kinds[random.nextInt(kinds.length)],
+          uri,
+          PLSPPosition.of(line, 0)));
+      }
+      this.index.update(uri, Vector.ofAll(symbols));
+    }
+  }
+
+  /**
+   * Find names that begin with the query.
+   *
+   * @return The names
+   */
+
+  @Benchmark
+  public Vector<PLSPSymbol> prefix()
+  {
+    return this.index.prefix(this.query, LIMIT);
+  }
+
+  /**
+   * Find names that begin within two edits of the query.
+   *
+   * @return The names
+   */
+
+  @Benchmark
+  public Vector<PLSPSymbol> fuzzy()
+  {
+    return this.index.fuzzy(this.query, 2, LIMIT);
+  }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.benchmarks;
+
+import com.io7m.jsx.SExpressionType;
+import com.io7m.jsx.api.lexer.JSXLexerType;
+import com.io7m.jsx.api.parser.JSXParserConfigurationType;
+import com.io7m.jsx.api.parser.JSXParserException;
+import com.io7m.jsx.api.parser.JSXParserSupplierType;
+import com.io7m.jsx.api.parser.JSXParserType;
+import com.io7m.jsx.lexer.JSXLexerSupplier;
+import com.io7m.jsx.parser.JSXParserSupplier;
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.parser.PParsers;
+import com.io7m.polaris.parser.api.PParseError;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.parser.api.PParserProviderType;
+import com.io7m.polaris.parser.api.PParserType;
+import io.vavr.collection.Seq;
+import io.vavr.control.Validation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the construction of ASTs from s-expressions. The
+ * s-expressions are read once during setup and replayed to the parser, so
+ * that the measurements do not include lexing or s-expression parsing.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PParsingBenchmark
+{
+  private static final URI UNIT = URI.create("file:///benchmark.p");
+
+  /**
+   * The number of functions declared in the unit.
+   */
+
+  @Param({"2000"})
+  public int functions;
+
+  /**
+   * The nesting depth of the nested expression. This is kept low enough
+   * that parsers that recurse per level of nesting can also be measured.
+   */
+
+  @Param({"500"})
+  public int depth;
+
+  private PParserProviderType unit_parsers;
+  private PParserProviderType nested_parsers;
+
+  /**
+   * Construct a benchmark.
+   */
+
+  public PParsingBenchmark()
+  {
+
+  }
+
+  private static PParserProviderType replaying(
+    final String text)
+    throws IOException
+  {
+    final JSXParserType parser =
+      PParsers.createWith(new JSXParserSupplier(), new JSXLexerSupplier())
+        .createSExpressionParser(
+          UNIT, new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+
+    final List<SExpressionType> expressions;
+    try {
+      expressions = parser.parseExpressions();
+    } catch (final JSXParserException e) {
+      throw new IOException(e);
+    }
+    return PParsers.createWith(
+      new ReplayingParsers(expressions), new JSXLexerSupplier());
+  }
+
+  private static int parseAll(
+    final PParserProviderType parsers)
+    throws IOException
+  {
+    final PParserType p =
+      parsers.create(UNIT, new ByteArrayInputStream(new byte[0]));
+
+    int count = 0;
+    while (true) {
+      final Validation<Seq<PParseError>, Optional<PExpressionOrDeclarationType<PParsed>>> r =
+        p.parseExpressionOrDeclaration();
+      if (r.isInvalid()) {
+        throw new IllegalStateException(r.getError().toString());
+      }
+      if (!r.get().isPresent()) {
+        return count;
+      }
+      ++count;
+    }
+  }
+
+  /**
+   * Generate a unit of functions containing nested match, local, record and
+   * lambda forms, and a single deeply nested application.
+   *
+   * @throws IOException On I/O errors
+   */
+
+  @Setup(Level.Trial)
+  public void setup()
+    throws IOException
+  {
+    final StringBuilder unit = new StringBuilder(this.functions * 160);
+    for (int index = 0; index < this.functions; ++index) {
+      unit.append("(define-function f").append(index).append(" (x y)\n");
+      unit.append("  (match x\n");
+      unit.append("    [case (Some z) (local (define-value w (g z \"a string\")) w)]\n");
+      unit.append("    [case None (record P [field a y] [field b (λ (q) q)])]))\n");
+    }
+    this.unit_parsers = replaying(unit.toString());
+
+    final StringBuilder nested = new StringBuilder(this.depth * 8);
+    nested.append("(define-value x ");
+    for (int index = 0; index < this.depth; ++index) {
+      nested.append("(f 1 ");
+    }
+    nested.append('1');
+    for (int index = 0; index < this.depth; ++index) {
+      nested.append(')');
+    }
+    nested.append(')');
+    this.nested_parsers = replaying(nested.toString());
+  }
+
+  /**
+   * Parse a unit of typical functions.
+   *
+   * @return The number of forms parsed
+   *
+   * @throws IOException On I/O errors
+   */
+
+  @Benchmark
+  public int parseUnit()
+    throws IOException
+  {
+    return parseAll(this.unit_parsers);
+  }
+
+  /**
+   * Parse a single deeply nested expression.
+   *
+   * @return The number of forms parsed
+   *
+   * @throws IOException On I/O errors
+   */
+
+  @Benchmark
+  public int parseNested()
+    throws IOException
+  {
+    return parseAll(this.nested_parsers);
+  }
+
+  /**
+   * An s-expression parser supplier that ignores its input and yields a
+   * fixed list of s-expressions.
+   */
+
+  private static final class ReplayingParsers implements JSXParserSupplierType
+  {
+    private final List<SExpressionType> expressions;
+
+    ReplayingParsers(
+      final List<SExpressionType> in_expressions)
+    {
+      this.expressions = Objects.requireNonNull(in_expressions, "Expressions");
+    }
+
+    @Override
+    public JSXParserType create(
+      final JSXParserConfigurationType config,
+      final JSXLexerType lexer)
+    {
+      return new ReplayingParser(this.expressions);
+    }
+  }
+
+  private static final class ReplayingParser implements JSXParserType
+  {
+    private final List<SExpressionType> expressions;
+    private int index;
+
+    ReplayingParser(
+      final List<SExpressionType> in_expressions)
+    {
+      this.expressions = Objects.requireNonNull(in_expressions, "Expressions");
+      this.index = 0;
+    }
+
+    @Override
+    public SExpressionType parseExpression()
+    {
+      final SExpressionType e = this.expressions.get(this.index);
+      ++this.index;
+      return e;
+    }
+
+    @Override
+    public Optional<SExpressionType> parseExpressionOrEOF()
+    {
+      if (this.index == this.expressions.size()) {
+        return Optional.empty();
+      }
+      return Optional.of(this.parseExpression());
+    }
+
+    @Override
+    public List<SExpressionType> parseExpressions()
+    {
+      final List<SExpressionType> rest =
+        this.expressions.subList(this.index, this.expressions.size());
+      this.index = this.expressions.size();
+      return rest;
+    }
+  }
+}
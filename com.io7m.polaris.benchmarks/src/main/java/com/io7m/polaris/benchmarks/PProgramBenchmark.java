@@ -0,0 +1,240 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.benchmarks;
+
+import com.io7m.jsx.lexer.JSXLexerSupplier;
+import com.io7m.jsx.parser.JSXParserSupplier;
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.interpreter.PInteger;
+import com.io7m.polaris.interpreter.PInterpreter;
+import com.io7m.polaris.interpreter.PJVMProgram;
+import com.io7m.polaris.interpreter.PProgramType;
+import com.io7m.polaris.parser.PParsers;
+import com.io7m.polaris.parser.api.PParseError;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.parser.api.PParserType;
+import com.io7m.polaris.resolver.PResolvedUnit;
+import com.io7m.polaris.resolver.PResolver;
+import io.vavr.collection.Seq;
+import io.vavr.collection.Vector;
+import io.vavr.control.Validation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks comparing the tree-walking interpreter with the JVM bytecode
+ * backend on the same programs.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PProgramBenchmark
+{
+  private static final String PROGRAM = String.join(
+    "\n",
+    "(define-unit b.B)",
+    "(define-variant Nat [case Z] [case S Nat])",
+    "(define-variant List [∀ a] [case Nil] [case Cons (Pair a (List a))])",
+    "(define-record Pair [∀ a b] [field first a] [field second b])",
+    "(define-value zero Z)",
+    "(define-function succ (n) (S n))",
+    "(define-function add (x y)",
+    "  (match x [case Z y] [case (S m) (add m (S y))]))",
+    "(define-function count (n)",
+    "  (local",
+    "    (define-function go (m acc)",
+    "      (match m [case Z acc] [case (S k) (go k (S acc))]))",
+    "    (go n Z)))",
+    "(define-function fib (n)",
+    "  (match n",
+    "    [case Z (S Z)]",
+    "    [case (S m)",
+    "      (match m [case Z (S Z)] [case (S k) (add (fib m) (fib k))])]))",
+    "(define-function replicate (n x)",
+    "  (match n",
+    "    [case Z Nil]",
+    "    [case (S m) (Cons (record Pair [field first x] [field second (replicate m x)]))]))",
+    "(define-function map (f xs)",
+    "  (match xs",
+    "    [case Nil Nil]",
+    "    [case (Cons p) (Cons (record Pair [field first (f p.first)] [field second (map f p.second)]))]))",
+    "(define-function name (x)",
+    "  (match x [case 0 \"zero\"] [case 1 \"one\"] [case 2 \"two\"] [case 3 \"three\"] [case _ \"many\"]))");
+
+  /**
+   * The evaluation backend.
+   */
+
+  @Param({"interpreter", "jvm"})
+  public String backend;
+
+  private PProgramType program;
+  private Object nat_large;
+  private Object nat_small;
+  private Object list;
+  private Object succ;
+
+  /**
+   * Construct a benchmark.
+   */
+
+  public PProgramBenchmark()
+  {
+
+  }
+
+  private static Vector<PExpressionOrDeclarationType<PParsed>> parse(
+    final String text)
+  {
+    final PParserType p =
+      PParsers.createWith(new JSXParserSupplier(), new JSXLexerSupplier())
+        .create(
+          URI.create("urn:benchmark"),
+          new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+
+    Vector<PExpressionOrDeclarationType<PParsed>> forms = Vector.empty();
+    while (true) {
+      final Validation<Seq<PParseError>, Optional<PExpressionOrDeclarationType<PParsed>>> r;
+      try {
+        r = p.parseExpressionOrDeclaration();
+      } catch (final IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      if (r.isInvalid()) {
+        throw new IllegalStateException(r.getError().toString());
+      }
+      if (!r.get().isPresent()) {
+        return forms;
+      }
+      forms = forms.append(r.get().get());
+    }
+  }
+
+  /**
+   * Compile the program and construct the inputs.
+   */
+
+  @Setup(Level.Trial)
+  public void setup()
+  {
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    final Validation<?, Vector<PResolvedUnit>> r;
+    try {
+      r = PResolver.resolve(executor, Vector.of(parse(PROGRAM)));
+    } finally {
+      executor.shutdown();
+    }
+    if (r.isInvalid()) {
+      throw new IllegalStateException(r.getError().toString());
+    }
+
+    if ("jvm".equals(this.backend)) {
+      this.program = PJVMProgram.create(r.get());
+    } else {
+      this.program = PInterpreter.create(r.get());
+    }
+
+    this.succ = this.program.value("b.B", "succ");
+    this.nat_small = this.nat(20);
+    this.nat_large = this.nat(10_000);
+    this.list = this.program.call(
+      "b.B", "replicate", this.nat(1_000), this.nat_small);
+  }
+
+  private Object nat(
+    final int n)
+  {
+    Object x = this.program.value("b.B", "zero");
+    for (int index = 0; index < n; ++index) {
+      x = this.program.call("b.B", "succ", x);
+    }
+    return x;
+  }
+
+  /**
+   * A self-recursive local function in tail position.
+   *
+   * @return The result
+   */
+
+  @Benchmark
+  public Object tailLoop()
+  {
+    return this.program.call("b.B", "count", this.nat_large);
+  }
+
+  /**
+   * A doubly-recursive function that is dominated by calls and matches.
+   *
+   * @return The result
+   */
+
+  @Benchmark
+  public Object fibonacci()
+  {
+    return this.program.call("b.B", "fib", this.nat_small);
+  }
+
+  /**
+   * Construct and read records while traversing a list.
+   *
+   * @return The result
+   */
+
+  @Benchmark
+  public Object mapList()
+  {
+    return this.program.call("b.B", "map", this.succ, this.list);
+  }
+
+  /**
+   * Dispatch on integer constants.
+   *
+   * @return The result
+   */
+
+  @Benchmark
+  public Object integerMatch()
+  {
+    return this.program.call("b.B", "name", PInteger.of(3L));
+  }
+}
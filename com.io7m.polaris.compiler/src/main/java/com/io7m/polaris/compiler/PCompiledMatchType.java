@@ -0,0 +1,46 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.compiler;
+
+import com.io7m.polaris.core.PImmutableStyleType;
+import io.vavr.collection.Vector;
+import org.immutables.value.Value;
+
+/**
+ * A compiled {@code match} expression.
+ */
+
+@PImmutableStyleType
+@Value.Immutable
+public interface PCompiledMatchType
+{
+  /**
+   * @return The decision that selects the case that handles a value
+   */
+
+  @Value.Parameter
+  PMatchDecisionType decision();
+
+  /**
+   * @return The indices, in ascending order, of the cases that can never be
+   * selected because every value they handle is handled by an earlier case
+   */
+
+  @Value.Parameter
+  Vector<Integer> redundant();
+}
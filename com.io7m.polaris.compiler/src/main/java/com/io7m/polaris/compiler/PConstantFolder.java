@@ -0,0 +1,617 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.compiler;
+
+import com.io7m.junreachable.UnreachableCodeException;
+import com.io7m.polaris.ast.PDeclarationFunction;
+import com.io7m.polaris.ast.PDeclarationSignature;
+import com.io7m.polaris.ast.PDeclarationValue;
+import com.io7m.polaris.ast.PExprApplication;
+import com.io7m.polaris.ast.PExprConstantInteger;
+import com.io7m.polaris.ast.PExprConstantReal;
+import com.io7m.polaris.ast.PExprConstantString;
+import com.io7m.polaris.ast.PExprLambda;
+import com.io7m.polaris.ast.PExprLocal;
+import com.io7m.polaris.ast.PExprMatch;
+import com.io7m.polaris.ast.PExprRecord;
+import com.io7m.polaris.ast.PExprReference;
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.ast.PExpressionType;
+import com.io7m.polaris.ast.PExpressions;
+import com.io7m.polaris.ast.PPatternType;
+import com.io7m.polaris.ast.PTermReferenceType;
+import com.io7m.polaris.ast.PTermVariableNameType;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.resolver.PBinding;
+import com.io7m.polaris.resolver.PResolvedUnit;
+import io.vavr.collection.Vector;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Constant folding and partial evaluation of resolved units.
+ *
+ * Local values that are bound to constants, constructors, or other local
+ * variables are propagated to their uses and removed. Fields of local
+ * records are read directly from the record expression. Lambda expressions
+ * applied to arguments are reduced to {@code local} expressions. Matches on
+ * constants and on known constructors are replaced by the selected case.
+ *
+ * Folding may remove code that is never evaluated, and so must be performed
+ * after type checking. Expressions that may have effects are never removed
+ * or duplicated.
+ */
+
+public final class PConstantFolder
+{
+  private static final int MAXIMUM_PASSES = 8;
+
+  private PConstantFolder()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Fold the values and functions of the given unit.
+   *
+   * @param constructors The constructor index
+   * @param unit         The unit
+   *
+   * @return The folded unit
+   */
+
+  public static PResolvedUnit fold(
+    final PConstructorIndex constructors,
+    final PResolvedUnit unit)
+  {
+    Objects.requireNonNull(constructors, "Constructors");
+    Objects.requireNonNull(unit, "Unit");
+
+    return unit.withDeclarations(unit.declarations().map(d -> {
+      if (d instanceof PDeclarationValue) {
+        final PDeclarationValue<PParsed> v = (PDeclarationValue<PParsed>) d;
+        return v.withExpression(
+          foldExpression(constructors, unit, v.expression()));
+      }
+      if (d instanceof PDeclarationFunction) {
+        final PDeclarationFunction<PParsed> f = (PDeclarationFunction<PParsed>) d;
+        return f.withExpression(
+          foldExpression(constructors, unit, f.expression()));
+      }
+      return d;
+    }));
+  }
+
+  /**
+   * Fold the given expression. Folding is repeated until the expression no
+   * longer changes, up to a fixed number of passes.
+   *
+   * @param constructors The constructor index
+   * @param unit         The unit that contains the expression
+   * @param e            The expression
+   *
+   * @return The folded expression
+   */
+
+  public static PExpressionType<PParsed> foldExpression(
+    final PConstructorIndex constructors,
+    final PResolvedUnit unit,
+    final PExpressionType<PParsed> e)
+  {
+    Objects.requireNonNull(constructors, "Constructors");
+    Objects.requireNonNull(unit, "Unit");
+    Objects.requireNonNull(e, "Expression");
+
+    PExpressionType<PParsed> current = e;
+    for (int pass = 0; pass < MAXIMUM_PASSES; ++pass) {
+      final Pass p = new Pass(constructors, unit);
+      p.collect(current);
+      final PExpressionType<PParsed> next =
+        PExpressions.transform(current, p::fold);
+      if (next == current) {
+        break;
+      }
+      current = next;
+    }
+    return current;
+  }
+
+  private static boolean isConstant(
+    final PExpressionType<PParsed> e)
+  {
+    return e instanceof PExprConstantInteger
+      || e instanceof PExprConstantReal
+      || e instanceof PExprConstantString;
+  }
+
+  /**
+   * A single folding pass. The local values and the number of uses of each
+   * local variable are collected before the expression is transformed, and
+   * so reflect the expression as it was at the start of the pass.
+   */
+
+  private static final class Pass
+  {
+    private final PConstructorIndex constructors;
+    private final PResolvedUnit unit;
+    private final Map<Integer, PExpressionType<PParsed>> values;
+    private final Map<Integer, Integer> uses;
+    private final Set<Integer> projected;
+
+    Pass(
+      final PConstructorIndex in_constructors,
+      final PResolvedUnit in_unit)
+    {
+      this.constructors = in_constructors;
+      this.unit = in_unit;
+      this.values = new HashMap<>(16);
+      this.uses = new HashMap<>(16);
+      this.projected = new HashSet<>(16);
+    }
+
+    void collect(
+      final PExpressionType<PParsed> e)
+    {
+      PExpressions.fold(e, null, (acc, x) -> {
+        if (x instanceof PExprLocal) {
+          for (final PExpressionOrDeclarationType<PParsed> local
+            : ((PExprLocal<PParsed>) x).locals()) {
+            if (local instanceof PDeclarationValue) {
+              final PDeclarationValue<PParsed> v = (PDeclarationValue<PParsed>) local;
+              this.values.put(
+                Integer.valueOf(v.name().data().id()), v.expression());
+            }
+          }
+        } else if (x instanceof PExprReference) {
+          this.countUse(((PExprReference<PParsed>) x).reference());
+        }
+        return acc;
+      });
+    }
+
+    private void countUse(
+      final PTermReferenceType<PParsed> reference)
+    {
+      final Optional<PBinding> binding_opt = this.unit.termBinding(reference);
+      if (binding_opt.isPresent()
+        && binding_opt.get().kind() == PBinding.Kind.TERM_LOCAL) {
+        final Integer id = Integer.valueOf(binding_opt.get().declaration());
+        this.uses.merge(id, Integer.valueOf(1), Integer::sum);
+        if (isProjection(reference)) {
+          this.projected.add(id);
+        }
+      }
+    }
+
+    private static boolean isProjection(
+      final PTermReferenceType<PParsed> reference)
+    {
+      return reference instanceof PTermReferenceType.PTermReferenceVariableType
+        && !((PTermReferenceType.PTermReferenceVariableType<PParsed>) reference)
+        .recordPath().isEmpty();
+    }
+
+    PExpressionType<PParsed> fold(
+      final PExpressionType<PParsed> e)
+    {
+      if (e instanceof PExprReference) {
+        return this.reference((PExprReference<PParsed>) e);
+      }
+      if (e instanceof PExprApplication) {
+        return this.application((PExprApplication<PParsed>) e);
+      }
+      if (e instanceof PExprMatch) {
+        return this.match((PExprMatch<PParsed>) e);
+      }
+      if (e instanceof PExprLocal) {
+        return this.local((PExprLocal<PParsed>) e);
+      }
+      return e;
+    }
+
+    private Optional<PBinding> binding(
+      final PTermReferenceType<PParsed> reference)
+    {
+      return this.unit.termBinding(reference);
+    }
+
+    private Integer localDeclaration(
+      final PExpressionType<PParsed> e)
+    {
+      if (e instanceof PExprReference) {
+        final Optional<PBinding> binding_opt =
+          this.binding(((PExprReference<PParsed>) e).reference());
+        if (binding_opt.isPresent()
+          && binding_opt.get().kind() == PBinding.Kind.TERM_LOCAL) {
+          return Integer.valueOf(binding_opt.get().declaration());
+        }
+      }
+      return null;
+    }
+
+    /**
+     * @return The value of {@code e} obtained by following local variables
+     * and record fields, or {@code null} if a record field cannot be
+     * followed
+     */
+
+    private PExpressionType<PParsed> known(
+      final PExpressionType<PParsed> e)
+    {
+      final ArrayDeque<String> path = new ArrayDeque<>(4);
+      PExpressionType<PParsed> current = e;
+      int follows = 0;
+      while (true) {
+        final Integer id = this.localDeclaration(current);
+        if (id != null && this.values.containsKey(id)) {
+          if (follows > this.values.size()) {
+            return null;
+          }
+          ++follows;
+          final PTermReferenceType<PParsed> reference =
+            ((PExprReference<PParsed>) current).reference();
+          if (isProjection(reference)) {
+            ((PTermReferenceType.PTermReferenceVariableType<PParsed>) reference)
+              .recordPath().reverse()
+              .forEach(name -> path.push(name.value()));
+          }
+          current = this.values.get(id);
+          continue;
+        }
+        if (path.isEmpty()) {
+          return current;
+        }
+        if (!(current instanceof PExprRecord)) {
+          return null;
+        }
+        final PExprRecord<PParsed> record = (PExprRecord<PParsed>) current;
+        final String field = path.pop();
+        if (!record.fieldsByName().containsKey(field)) {
+          return null;
+        }
+        current = record.fieldsByName().get(field).get().expression();
+      }
+    }
+
+    /**
+     * @return {@code true} if {@code e} is a constant, or a reference to a
+     * constructor or a local variable, and may therefore be copied freely
+     */
+
+    private boolean isAtomic(
+      final PExpressionType<PParsed> e)
+    {
+      if (isConstant(e)) {
+        return true;
+      }
+      if (e instanceof PExprReference) {
+        final PTermReferenceType<PParsed> reference =
+          ((PExprReference<PParsed>) e).reference();
+        final Optional<PBinding> binding_opt = this.binding(reference);
+        if (binding_opt.isPresent() && !isProjection(reference)) {
+          final PBinding.Kind kind = binding_opt.get().kind();
+          return kind == PBinding.Kind.TERM_LOCAL
+            || kind == PBinding.Kind.TERM_CONSTRUCTOR;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * @return {@code true} if evaluating {@code e} cannot have effects or fail
+     */
+
+    private boolean isPure(
+      final PExpressionType<PParsed> e)
+    {
+      final ArrayDeque<PExpressionType<PParsed>> stack = new ArrayDeque<>(8);
+      stack.push(e);
+      while (!stack.isEmpty()) {
+        final PExpressionType<PParsed> current = stack.pop();
+        if (isConstant(current) || current instanceof PExprLambda) {
+          continue;
+        }
+        if (current instanceof PExprReference) {
+          if (!this.isAtomic(current) && this.localDeclaration(current) == null) {
+            return false;
+          }
+          continue;
+        }
+        if (current instanceof PExprRecord) {
+          ((PExprRecord<PParsed>) current).fields()
+            .forEach(f -> stack.push(f.expression()));
+          continue;
+        }
+        final PExpressionType<PParsed> payload = this.payloadOf(current);
+        if (payload == null) {
+          return false;
+        }
+        stack.push(payload);
+      }
+      return true;
+    }
+
+    /**
+     * @return The constructor that {@code e} refers to or applies, or
+     * {@code null} if {@code e} is not a constructor expression
+     */
+
+    private PConstructorInfo constructorOf(
+      final PExpressionType<PParsed> e)
+    {
+      PExpressionType<PParsed> function = e;
+      if (e instanceof PExprApplication) {
+        final PExprApplication<PParsed> a = (PExprApplication<PParsed>) e;
+        if (a.arguments().size() != 1) {
+          return null;
+        }
+        function = a.function();
+      }
+      if (function instanceof PExprReference) {
+        final PTermReferenceType<PParsed> reference =
+          ((PExprReference<PParsed>) function).reference();
+        if (reference.referenceKind()
+          == PTermReferenceType.ReferenceKind.REFERENCE_CONSTRUCTOR) {
+          final Optional<PConstructorInfo> c =
+            this.binding(reference).flatMap(this.constructors::constructor);
+          if (c.isPresent() && c.get().hasParameter() == (function != e)) {
+            return c.get();
+          }
+        }
+      }
+      return null;
+    }
+
+    /**
+     * @return The argument of a constructor application, or {@code null}
+     */
+
+    private PExpressionType<PParsed> payloadOf(
+      final PExpressionType<PParsed> e)
+    {
+      if (e instanceof PExprApplication && this.constructorOf(e) != null) {
+        return ((PExprApplication<PParsed>) e).arguments().get(0);
+      }
+      return null;
+    }
+
+    private PExpressionType<PParsed> reference(
+      final PExprReference<PParsed> e)
+    {
+      if (this.localDeclaration(e) != null) {
+        final PExpressionType<PParsed> value = this.known(e);
+        if (value != null && value != e && this.isAtomic(value)) {
+          return value;
+        }
+      }
+      return e;
+    }
+
+    /**
+     * An application of a lambda expression binds the arguments to the
+     * parameters in a {@code local} expression. The arguments are evaluated
+     * in the same order as they would be by the application.
+     */
+
+    private PExpressionType<PParsed> application(
+      final PExprApplication<PParsed> e)
+    {
+      if (!(e.function() instanceof PExprLambda)) {
+        return e;
+      }
+      final PExprLambda<PParsed> lambda = (PExprLambda<PParsed>) e.function();
+      final Vector<PTermVariableNameType<PParsed>> parameters = lambda.arguments();
+      if (parameters.size() != e.arguments().size()) {
+        return e;
+      }
+      if (parameters.isEmpty()) {
+        return lambda.expression();
+      }
+      return PExprLocal.of(
+        e.lexical(),
+        e.data(),
+        parameters.zipWith(e.arguments(), (p, a) -> declare(e.data(), p, a)),
+        lambda.expression());
+    }
+
+    private static PExpressionOrDeclarationType<PParsed> declare(
+      final PParsed data,
+      final PTermVariableNameType<PParsed> name,
+      final PExpressionType<PParsed> e)
+    {
+      return PDeclarationValue.of(name.lexical(), data, name, e);
+    }
+
+    /**
+     * A match whose target is known is replaced by the body of the selected
+     * case. A target that is written directly in the match is evaluated
+     * exactly once; a target that is only known through a local variable
+     * is discarded, and its argument, if it is bound by the case, is copied
+     * only if it is atomic.
+     */
+
+    private PExpressionType<PParsed> match(
+      final PExprMatch<PParsed> e)
+    {
+      final PExpressionType<PParsed> target = this.known(e.target());
+      if (target == null) {
+        return e;
+      }
+      final PExpressionType.PMatchCaseType<PParsed> c =
+        this.select(target, e.cases());
+      if (c == null) {
+        return e;
+      }
+
+      final PExpressionType<PParsed> body = c.expression();
+      final PExpressionType<PParsed> payload = this.payloadOf(target);
+      final Optional<PTermVariableNameType<PParsed>> argument =
+        argumentOf(c.pattern());
+      if (argument.isPresent()) {
+        if (payload == null || (target != e.target() && !this.isAtomic(payload))) {
+          return e;
+        }
+        return PExprLocal.of(
+          e.lexical(),
+          e.data(),
+          Vector.of(declare(e.data(), argument.get(), payload)),
+          body);
+      }
+      if (target != e.target() || payload == null || this.isPure(payload)) {
+        return body;
+      }
+      return PExprLocal.of(
+        e.lexical(),
+        e.data(),
+        Vector.<PExpressionOrDeclarationType<PParsed>>of(payload),
+        body);
+    }
+
+    private static Optional<PTermVariableNameType<PParsed>> argumentOf(
+      final PPatternType<PParsed> pattern)
+    {
+      if (pattern instanceof PPatternType.PPatternConstructorType) {
+        return ((PPatternType.PPatternConstructorType<PParsed>) pattern).argument();
+      }
+      return Optional.empty();
+    }
+
+    /**
+     * @return The first case that matches {@code target}, or {@code null} if
+     * the case cannot be determined
+     */
+
+    private PExpressionType.PMatchCaseType<PParsed> select(
+      final PExpressionType<PParsed> target,
+      final Vector<PExpressionType.PMatchCaseType<PParsed>> cases)
+    {
+      final PConstructorInfo constructor = this.constructorOf(target);
+      if (constructor == null && !isConstant(target)) {
+        return null;
+      }
+
+      for (final PExpressionType.PMatchCaseType<PParsed> c : cases) {
+        final Boolean matches =
+          this.matches(target, constructor, c.pattern());
+        if (matches == null) {
+          return null;
+        }
+        if (matches.booleanValue()) {
+          return c;
+        }
+      }
+      return null;
+    }
+
+    private Boolean matches(
+      final PExpressionType<PParsed> target,
+      final PConstructorInfo constructor,
+      final PPatternType<PParsed> pattern)
+    {
+      switch (pattern.kind()) {
+        case PATTERN_WILDCARD:
+          return Boolean.TRUE;
+        case PATTERN_CONSTANT_INTEGER:
+          if (target instanceof PExprConstantInteger) {
+            return Boolean.valueOf(
+              ((PExprConstantInteger<PParsed>) target).value().equals(
+                ((PPatternType.PPatternConstantIntegerType<PParsed>) pattern).value()));
+          }
+          return null;
+        case PATTERN_CONSTANT_REAL:
+          if (target instanceof PExprConstantReal) {
+            return Boolean.valueOf(
+              ((PExprConstantReal<PParsed>) target).value().compareTo(
+                ((PPatternType.PPatternConstantRealType<PParsed>) pattern).value()) == 0);
+          }
+          return null;
+        case PATTERN_CONSTANT_STRING:
+          if (target instanceof PExprConstantString) {
+            return Boolean.valueOf(
+              ((PExprConstantString<PParsed>) target).value().equals(
+                ((PPatternType.PPatternConstantStringType<PParsed>) pattern).value()));
+          }
+          return null;
+        case PATTERN_CONSTRUCTOR:
+          if (constructor != null) {
+            return this.binding(
+              ((PPatternType.PPatternConstructorType<PParsed>) pattern).constructor())
+              .map(b -> Boolean.valueOf(b.equals(constructor.binding())))
+              .orElse(null);
+          }
+          return null;
+      }
+      throw new UnreachableCodeException();
+    }
+
+    /**
+     * Remove local values that are no longer used, or whose uses have all
+     * been replaced, along with their signatures. Expressions without effects
+     * are also removed.
+     */
+
+    private PExpressionType<PParsed> local(
+      final PExprLocal<PParsed> e)
+    {
+      final Set<String> removed = new HashSet<>(4);
+      final Vector<PExpressionOrDeclarationType<PParsed>> kept =
+        e.locals().filter(local -> {
+          if (local instanceof PDeclarationValue) {
+            final PDeclarationValue<PParsed> v = (PDeclarationValue<PParsed>) local;
+            if (this.isRemovable(v)) {
+              removed.add(v.name().value());
+              return false;
+            }
+            return true;
+          }
+          if (local instanceof PExpressionType) {
+            return !this.isPure((PExpressionType<PParsed>) local);
+          }
+          return true;
+        }).filter(local -> !(local instanceof PDeclarationSignature
+          && removed.contains(((PDeclarationSignature<PParsed>) local).name().value())));
+
+      if (kept.isEmpty()) {
+        return e.body();
+      }
+      if (kept.size() == e.locals().size()) {
+        return e;
+      }
+      return PExprLocal.of(e.lexical(), e.data(), kept, e.body());
+    }
+
+    private boolean isRemovable(
+      final PDeclarationValue<PParsed> v)
+    {
+      final Integer id = Integer.valueOf(v.name().data().id());
+      if (!this.uses.containsKey(id)) {
+        return this.isPure(v.expression());
+      }
+      if (this.projected.contains(id)) {
+        return false;
+      }
+      final PExpressionType<PParsed> value = this.values.get(id);
+      return value != null && this.isAtomic(this.known(value));
+    }
+  }
+}
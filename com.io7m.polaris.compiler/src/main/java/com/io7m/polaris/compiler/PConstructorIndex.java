@@ -0,0 +1,130 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.compiler;
+
+import com.io7m.polaris.ast.PDeclarationVariant;
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.ast.PTypeDeclarationType.PVariantCaseType;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.resolver.PBinding;
+import com.io7m.polaris.resolver.PResolvedUnit;
+import io.vavr.collection.HashMap;
+import io.vavr.collection.Map;
+import io.vavr.collection.Vector;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * An index of the constructors of the variant types declared by a set of
+ * units. Indices are immutable, and may be shared between threads.
+ */
+
+public final class PConstructorIndex
+{
+  private final Map<PBinding, PConstructorInfo> constructors;
+  private final Map<PBinding, Vector<PConstructorInfo>> variants;
+
+  private PConstructorIndex(
+    final Map<PBinding, PConstructorInfo> in_constructors,
+    final Map<PBinding, Vector<PConstructorInfo>> in_variants)
+  {
+    this.constructors = Objects.requireNonNull(in_constructors, "Constructors");
+    this.variants = Objects.requireNonNull(in_variants, "Variants");
+  }
+
+  /**
+   * Index the variant types declared by the given units. The units must
+   * include every unit whose constructors are referenced by the units that
+   * will be compiled.
+   *
+   * @param units The units
+   *
+   * @return An index of the constructors declared by the units
+   */
+
+  public static PConstructorIndex of(
+    final Iterable<PResolvedUnit> units)
+  {
+    Objects.requireNonNull(units, "Units");
+
+    Map<PBinding, PConstructorInfo> constructors = HashMap.empty();
+    Map<PBinding, Vector<PConstructorInfo>> variants = HashMap.empty();
+    for (final PResolvedUnit unit : units) {
+      for (final PExpressionOrDeclarationType<PParsed> d : unit.declarations()) {
+        if (d instanceof PDeclarationVariant) {
+          final PDeclarationVariant<PParsed> v = (PDeclarationVariant<PParsed>) d;
+          final PBinding variant =
+            PBinding.of(PBinding.Kind.TYPE_UNIT, unit.name(), v.name().data().id());
+          final Vector<PConstructorInfo> cases =
+            variantConstructors(unit.name(), variant, v);
+          variants = variants.put(variant, cases);
+          for (final PConstructorInfo c : cases) {
+            constructors = constructors.put(c.binding(), c);
+          }
+        }
+      }
+    }
+    return new PConstructorIndex(constructors, variants);
+  }
+
+  private static Vector<PConstructorInfo> variantConstructors(
+    final String unit,
+    final PBinding variant,
+    final PDeclarationVariant<PParsed> v)
+  {
+    final Vector<PVariantCaseType<PParsed>> cases = v.cases();
+    return cases.zipWithIndex().map(p -> {
+      final PVariantCaseType<PParsed> c = p._1;
+      return PConstructorInfo.of(
+        PBinding.of(PBinding.Kind.TERM_CONSTRUCTOR, unit, c.name().data().id()),
+        variant,
+        c.name().value(),
+        p._2.intValue(),
+        cases.size(),
+        c.parameter().isPresent());
+    });
+  }
+
+  /**
+   * @param binding The binding of a constructor
+   *
+   * @return Information about the constructor, if it is known
+   */
+
+  public Optional<PConstructorInfo> constructor(
+    final PBinding binding)
+  {
+    return this.constructors.get(
+      Objects.requireNonNull(binding, "Binding")).toJavaOptional();
+  }
+
+  /**
+   * @param variant The binding of a variant type
+   *
+   * @return The constructors of the variant type in tag order, or an empty
+   * vector if the variant type is not known
+   */
+
+  public Vector<PConstructorInfo> constructors(
+    final PBinding variant)
+  {
+    return this.variants.get(
+      Objects.requireNonNull(variant, "Variant")).getOrElse(Vector.empty());
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.compiler;
+
+import com.io7m.polaris.core.PImmutableStyleType;
+import com.io7m.polaris.resolver.PBinding;
+import org.immutables.value.Value;
+
+/**
+ * Information about a constructor of a variant type. Constructors are tagged
+ * densely in declaration order, so the tags of a variant with {@code n}
+ * constructors are exactly {@code [0, n)}.
+ */
+
+@PImmutableStyleType
+@Value.Immutable
+public interface PConstructorInfoType
+{
+  /**
+   * @return The binding of the constructor
+   */
+
+  @Value.Parameter
+  PBinding binding();
+
+  /**
+   * @return The binding of the variant type that declares the constructor
+   */
+
+  @Value.Parameter
+  PBinding variant();
+
+  /**
+   * @return The name of the constructor
+   */
+
+  @Value.Parameter
+  String name();
+
+  /**
+   * @return The tag of the constructor
+   */
+
+  @Value.Parameter
+  int tag();
+
+  /**
+   * @return The number of constructors declared by the variant type
+   */
+
+  @Value.Parameter
+  int constructors();
+
+  /**
+   * @return {@code true} iff the constructor takes an argument
+   */
+
+  @Value.Parameter
+  boolean hasParameter();
+}
@@ -0,0 +1,389 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.compiler;
+
+import com.io7m.junreachable.UnreachableCodeException;
+import com.io7m.polaris.ast.PDeclarationExportTerms;
+import com.io7m.polaris.ast.PDeclarationExportTypes;
+import com.io7m.polaris.ast.PDeclarationFunction;
+import com.io7m.polaris.ast.PDeclarationRecord;
+import com.io7m.polaris.ast.PDeclarationSignature;
+import com.io7m.polaris.ast.PDeclarationValue;
+import com.io7m.polaris.ast.PDeclarationVariant;
+import com.io7m.polaris.ast.PExprLocal;
+import com.io7m.polaris.ast.PExprMatch;
+import com.io7m.polaris.ast.PExprRecord;
+import com.io7m.polaris.ast.PExprReference;
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.ast.PExpressionType;
+import com.io7m.polaris.ast.PExpressions;
+import com.io7m.polaris.ast.PPatternType;
+import com.io7m.polaris.ast.PTermConstructorNameType;
+import com.io7m.polaris.ast.PTermNameType;
+import com.io7m.polaris.ast.PTermVariableNameType;
+import com.io7m.polaris.ast.PTypeConstructorNameType;
+import com.io7m.polaris.ast.PTypeDeclarationType;
+import com.io7m.polaris.ast.PTypeExprReference;
+import com.io7m.polaris.ast.PTypeExpressionType;
+import com.io7m.polaris.ast.PTypeExpressions;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.resolver.PBinding;
+import com.io7m.polaris.resolver.PResolvedUnit;
+import io.vavr.collection.Vector;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Whole-program elimination of unused declarations.
+ *
+ * The exported terms and types of every unit, the top-level expressions of
+ * every unit, and the given entry points are live. Any declaration that is
+ * referenced by a live declaration, or by the signature of a live term, is
+ * also live. Values, functions, records, and variants that are not live are
+ * removed, along with the signatures of removed terms. A variant is live if
+ * the type or any of its constructors is live, and is always retained with
+ * all of its constructors.
+ *
+ * Elimination does not change the bindings of the remaining references, and
+ * so may be performed at any point between resolution and code generation.
+ * Performing it before type checking avoids checking declarations that will
+ * never be used.
+ */
+
+public final class PDeadDeclarationEliminator
+{
+  private PDeadDeclarationEliminator()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Remove the declarations of the given units that cannot be reached from
+   * the exports of the units or from the given entry points.
+   *
+   * @param units        The units of the program
+   * @param entry_points Additional terms that must be retained
+   *
+   * @return The units, in the same order, without unreachable declarations
+   *
+   * @throws IllegalArgumentException If an entry point does not name a
+   *                                  top-level value or function
+   */
+
+  public static Vector<PResolvedUnit> eliminate(
+    final Vector<PResolvedUnit> units,
+    final Vector<PEntryPoint> entry_points)
+    throws IllegalArgumentException
+  {
+    Objects.requireNonNull(units, "Units");
+    Objects.requireNonNull(entry_points, "Entry points");
+
+    final Map<String, UnitIndex> indices = new HashMap<>(units.size());
+    for (final PResolvedUnit unit : units) {
+      indices.put(unit.name(), new UnitIndex(unit));
+    }
+
+    final ArrayDeque<PBinding> pending = new ArrayDeque<>(64);
+    for (final UnitIndex index : indices.values()) {
+      index.roots(pending);
+    }
+    for (final PEntryPoint entry : entry_points) {
+      final UnitIndex index = indices.get(entry.unit());
+      if (index == null) {
+        throw new IllegalArgumentException("No such unit: " + entry.unit());
+      }
+      final PBinding binding = index.terms.get(entry.term());
+      if (binding == null) {
+        throw new IllegalArgumentException(
+          "No such term: " + entry.unit() + "." + entry.term());
+      }
+      pending.push(binding);
+    }
+
+    final Set<PBinding> live = new HashSet<>(64);
+    while (!pending.isEmpty()) {
+      final PBinding binding = pending.pop();
+      if (live.add(binding)) {
+        final UnitIndex index = indices.get(binding.unit());
+        if (index != null) {
+          index.references(binding, pending);
+        }
+      }
+    }
+
+    return units.map(unit -> indices.get(unit.name()).retain(live));
+  }
+
+  private static final class UnitIndex
+  {
+    private final PResolvedUnit unit;
+    private final Map<Integer, PExpressionOrDeclarationType<PParsed>> declarations;
+    private final Map<String, PBinding> terms;
+    private final Map<String, PBinding> constructors;
+    private final Map<String, PBinding> types;
+    private final Map<String, PDeclarationSignature<PParsed>> signatures;
+
+    UnitIndex(
+      final PResolvedUnit in_unit)
+    {
+      this.unit = in_unit;
+      this.declarations = new HashMap<>(32);
+      this.terms = new HashMap<>(32);
+      this.constructors = new HashMap<>(32);
+      this.types = new HashMap<>(16);
+      this.signatures = new HashMap<>(32);
+
+      for (final PExpressionOrDeclarationType<PParsed> d : in_unit.declarations()) {
+        if (d instanceof PDeclarationValue) {
+          this.declareTerm(((PDeclarationValue<PParsed>) d).name(), d);
+        } else if (d instanceof PDeclarationFunction) {
+          this.declareTerm(((PDeclarationFunction<PParsed>) d).name(), d);
+        } else if (d instanceof PDeclarationRecord) {
+          this.declareType(((PDeclarationRecord<PParsed>) d).name(), d);
+        } else if (d instanceof PDeclarationVariant) {
+          final PDeclarationVariant<PParsed> v = (PDeclarationVariant<PParsed>) d;
+          this.declareType(v.name(), d);
+          for (final PTypeDeclarationType.PVariantCaseType<PParsed> c : v.cases()) {
+            this.declarations.put(Integer.valueOf(c.name().data().id()), d);
+            this.constructors.put(
+              c.name().value(), this.binding(PBinding.Kind.TERM_CONSTRUCTOR, c.name().data().id()));
+          }
+        } else if (d instanceof PDeclarationSignature) {
+          final PDeclarationSignature<PParsed> s = (PDeclarationSignature<PParsed>) d;
+          this.signatures.put(s.name().value(), s);
+        }
+      }
+    }
+
+    private PBinding binding(
+      final PBinding.Kind kind,
+      final int id)
+    {
+      return PBinding.of(kind, this.unit.name(), id);
+    }
+
+    private void declareTerm(
+      final PTermVariableNameType<PParsed> name,
+      final PExpressionOrDeclarationType<PParsed> d)
+    {
+      this.declarations.put(Integer.valueOf(name.data().id()), d);
+      this.terms.put(
+        name.value(), this.binding(PBinding.Kind.TERM_UNIT, name.data().id()));
+    }
+
+    private void declareType(
+      final PTypeConstructorNameType<PParsed> name,
+      final PExpressionOrDeclarationType<PParsed> d)
+    {
+      this.declarations.put(Integer.valueOf(name.data().id()), d);
+      this.types.put(
+        name.value(), this.binding(PBinding.Kind.TYPE_UNIT, name.data().id()));
+    }
+
+    /**
+     * Add the exports and the references of the top-level expressions of the
+     * unit to {@code pending}.
+     */
+
+    void roots(
+      final ArrayDeque<PBinding> pending)
+    {
+      for (final PExpressionOrDeclarationType<PParsed> d : this.unit.declarations()) {
+        if (d instanceof PDeclarationExportTerms) {
+          for (final PTermNameType<PParsed> name
+            : ((PDeclarationExportTerms<PParsed>) d).terms()) {
+            final PBinding binding;
+            if (name instanceof PTermConstructorNameType) {
+              binding = this.constructors.get(
+                ((PTermConstructorNameType<PParsed>) name).value());
+            } else {
+              binding = this.terms.get(
+                ((PTermVariableNameType<PParsed>) name).value());
+            }
+            addBinding(pending, Optional.ofNullable(binding));
+          }
+        } else if (d instanceof PDeclarationExportTypes) {
+          for (final PTypeConstructorNameType<PParsed> name
+            : ((PDeclarationExportTypes<PParsed>) d).types()) {
+            addBinding(pending, Optional.ofNullable(this.types.get(name.value())));
+          }
+        } else if (d instanceof PExpressionType) {
+          this.expressionReferences((PExpressionType<PParsed>) d, pending);
+        }
+      }
+    }
+
+    /**
+     * Add the bindings referenced by the declaration of {@code binding} to
+     * {@code pending}. A constructor refers only to its variant type.
+     */
+
+    void references(
+      final PBinding binding,
+      final ArrayDeque<PBinding> pending)
+    {
+      final PExpressionOrDeclarationType<PParsed> d =
+        this.declarations.get(Integer.valueOf(binding.declaration()));
+
+      if (d instanceof PDeclarationValue) {
+        final PDeclarationValue<PParsed> v = (PDeclarationValue<PParsed>) d;
+        this.signatureReferences(v.name(), pending);
+        this.expressionReferences(v.expression(), pending);
+      } else if (d instanceof PDeclarationFunction) {
+        final PDeclarationFunction<PParsed> f = (PDeclarationFunction<PParsed>) d;
+        this.signatureReferences(f.name(), pending);
+        this.expressionReferences(f.expression(), pending);
+      } else if (d instanceof PDeclarationRecord) {
+        for (final PTypeDeclarationType.PRecordFieldType<PParsed> field
+          : ((PDeclarationRecord<PParsed>) d).fields()) {
+          this.typeReferences(field.type(), pending);
+        }
+      } else if (d instanceof PDeclarationVariant) {
+        final PDeclarationVariant<PParsed> v = (PDeclarationVariant<PParsed>) d;
+        if (binding.kind() == PBinding.Kind.TERM_CONSTRUCTOR) {
+          pending.push(this.binding(PBinding.Kind.TYPE_UNIT, v.name().data().id()));
+          return;
+        }
+        for (final PTypeDeclarationType.PVariantCaseType<PParsed> c : v.cases()) {
+          c.parameter().ifPresent(t -> this.typeReferences(t, pending));
+        }
+      }
+    }
+
+    private void signatureReferences(
+      final PTermVariableNameType<PParsed> name,
+      final ArrayDeque<PBinding> pending)
+    {
+      final PDeclarationSignature<PParsed> s = this.signatures.get(name.value());
+      if (s != null) {
+        this.typeReferences(s.type(), pending);
+      }
+    }
+
+    private void expressionReferences(
+      final PExpressionType<PParsed> e,
+      final ArrayDeque<PBinding> pending)
+    {
+      PExpressions.fold(e, pending, (acc, x) -> {
+        if (x instanceof PExprReference) {
+          addBinding(acc, this.unit.termBinding(((PExprReference<PParsed>) x).reference()));
+        } else if (x instanceof PExprRecord) {
+          addBinding(acc, this.unit.typeBinding(((PExprRecord<PParsed>) x).target()));
+        } else if (x instanceof PExprMatch) {
+          for (final PExpressionType.PMatchCaseType<PParsed> c
+            : ((PExprMatch<PParsed>) x).cases()) {
+            if (c.pattern() instanceof PPatternType.PPatternConstructorType) {
+              addBinding(acc, this.unit.termBinding(
+                ((PPatternType.PPatternConstructorType<PParsed>) c.pattern()).constructor()));
+            }
+          }
+        } else if (x instanceof PExprLocal) {
+          for (final PExpressionOrDeclarationType<PParsed> local
+            : ((PExprLocal<PParsed>) x).locals()) {
+            if (local instanceof PDeclarationSignature) {
+              this.typeReferences(((PDeclarationSignature<PParsed>) local).type(), acc);
+            }
+          }
+        }
+        return acc;
+      });
+    }
+
+    private void typeReferences(
+      final PTypeExpressionType<PParsed> t,
+      final ArrayDeque<PBinding> pending)
+    {
+      PTypeExpressions.fold(t, pending, (acc, x) -> {
+        if (x instanceof PTypeExprReference) {
+          addBinding(acc, this.unit.typeBinding(((PTypeExprReference<PParsed>) x).reference()));
+        }
+        return acc;
+      });
+    }
+
+    private static void addBinding(
+      final ArrayDeque<PBinding> pending,
+      final Optional<PBinding> binding_opt)
+    {
+      if (binding_opt.isPresent()) {
+        final PBinding binding = binding_opt.get();
+        switch (binding.kind()) {
+          case TERM_UNIT:
+          case TERM_CONSTRUCTOR:
+          case TYPE_UNIT:
+            pending.push(binding);
+            break;
+          case TERM_LOCAL:
+          case TYPE_BUILTIN:
+          case TYPE_VARIABLE:
+            break;
+        }
+      }
+    }
+
+    /**
+     * @return The unit without the declarations that are not in {@code live}
+     */
+
+    PResolvedUnit retain(
+      final Set<PBinding> live)
+    {
+      final Vector<PExpressionOrDeclarationType<PParsed>> retained =
+        this.unit.declarations().filter(d -> this.isRetained(live, d));
+      if (retained.size() == this.unit.declarations().size()) {
+        return this.unit;
+      }
+      return this.unit.withDeclarations(retained);
+    }
+
+    private boolean isRetained(
+      final Set<PBinding> live,
+      final PExpressionOrDeclarationType<PParsed> d)
+    {
+      if (d instanceof PDeclarationValue) {
+        return this.isLiveTerm(live, ((PDeclarationValue<PParsed>) d).name().value());
+      }
+      if (d instanceof PDeclarationFunction) {
+        return this.isLiveTerm(live, ((PDeclarationFunction<PParsed>) d).name().value());
+      }
+      if (d instanceof PDeclarationSignature) {
+        final String name = ((PDeclarationSignature<PParsed>) d).name().value();
+        return !this.terms.containsKey(name) || this.isLiveTerm(live, name);
+      }
+      if (d instanceof PDeclarationRecord) {
+        return live.contains(this.types.get(((PDeclarationRecord<PParsed>) d).name().value()));
+      }
+      if (d instanceof PDeclarationVariant) {
+        return live.contains(this.types.get(((PDeclarationVariant<PParsed>) d).name().value()));
+      }
+      return true;
+    }
+
+    private boolean isLiveTerm(
+      final Set<PBinding> live,
+      final String name)
+    {
+      return live.contains(this.terms.get(name));
+    }
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.compiler;
+
+import com.io7m.polaris.core.PImmutableStyleType;
+import org.immutables.value.Value;
+
+/**
+ * A top-level term that is used from outside of the program, and that must
+ * therefore be retained by {@link PDeadDeclarationEliminator} even if it is
+ * not exported.
+ */
+
+@PImmutableStyleType
+@Value.Immutable
+public interface PEntryPointType
+{
+  /**
+   * @return The fully qualified name of the unit that declares the term
+   */
+
+  @Value.Parameter
+  String unit();
+
+  /**
+   * @return The name of the term
+   */
+
+  @Value.Parameter
+  String term();
+}
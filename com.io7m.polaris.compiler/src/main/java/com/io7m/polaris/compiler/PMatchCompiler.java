@@ -0,0 +1,396 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.compiler;
+
+import com.io7m.junreachable.UnreachableCodeException;
+import com.io7m.polaris.ast.PDeclarationFunction;
+import com.io7m.polaris.ast.PDeclarationValue;
+import com.io7m.polaris.ast.PExprMatch;
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.ast.PExpressionType;
+import com.io7m.polaris.ast.PExpressionType.PExprMatchType;
+import com.io7m.polaris.ast.PExpressionType.PMatchCaseType;
+import com.io7m.polaris.ast.PExpressions;
+import com.io7m.polaris.ast.PNodeTable;
+import com.io7m.polaris.ast.PPatternType;
+import com.io7m.polaris.ast.PPatternType.PPatternConstantIntegerType;
+import com.io7m.polaris.ast.PPatternType.PPatternConstantRealType;
+import com.io7m.polaris.ast.PPatternType.PPatternConstantStringType;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.resolver.PBinding;
+import com.io7m.polaris.resolver.PResolvedUnit;
+import io.vavr.collection.Vector;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Functions to compile {@code match} expressions into decisions.
+ *
+ * Patterns are flat: each case examines at most the outermost constructor
+ * or constant of the matched value. A match therefore compiles to a single
+ * switch on the constructor tag or constant value, and every value that is
+ * not handled by a constructor or constant case is sent to a shared default
+ * case. Cases that can never be selected are reported as redundant, and do
+ * not appear in the decision.
+ *
+ * The functions here assume that the matches have been type checked, and
+ * raise precondition violations for matches that mix kinds of patterns.
+ *
+ * @see PMatchCoverageChecker
+ */
+
+public final class PMatchCompiler
+{
+  private PMatchCompiler()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Compile a single match expression.
+   *
+   * @param constructors An index of the constructors visible to the unit
+   * @param unit         The unit that contains the expression
+   * @param e            The expression
+   *
+   * @return A compiled match
+   */
+
+  public static PCompiledMatch compile(
+    final PConstructorIndex constructors,
+    final PResolvedUnit unit,
+    final PExprMatchType<PParsed> e)
+  {
+    Objects.requireNonNull(constructors, "Constructors");
+    Objects.requireNonNull(unit, "Unit");
+    Objects.requireNonNull(e, "Expression");
+
+    final Vector<PMatchCaseType<PParsed>> cases = e.cases();
+    final PMatchCoverage coverage =
+      PMatchCoverageChecker.coverage(constructors, unit, e);
+    final Vector<Integer> unreachable = coverage.unreachable();
+    final DecisionBuilderType builder = builderFor(constructors, unit, cases);
+
+    int default_case = PMatchDecisionType.NO_CASE;
+    int skip = 0;
+    for (int index = 0; index < cases.size(); ++index) {
+      if (skip < unreachable.size() && unreachable.get(skip).intValue() == index) {
+        ++skip;
+        continue;
+      }
+
+      final PPatternType<PParsed> pattern = cases.get(index).pattern();
+      if (pattern.kind() == PPatternType.Kind.PATTERN_WILDCARD) {
+        default_case = index;
+      } else {
+        builder.add(pattern, index);
+      }
+    }
+
+    return PCompiledMatch.of(builder.build(default_case), unreachable);
+  }
+
+  /**
+   * Compile every match expression in the given unit.
+   *
+   * @param constructors An index of the constructors visible to the unit
+   * @param unit         The unit
+   *
+   * @return The compiled matches, indexed by the node identifiers of the
+   * match expressions
+   */
+
+  public static PNodeTable<PCompiledMatch> compileUnit(
+    final PConstructorIndex constructors,
+    final PResolvedUnit unit)
+  {
+    Objects.requireNonNull(constructors, "Constructors");
+    Objects.requireNonNull(unit, "Unit");
+
+    final PNodeTable<PCompiledMatch> results = PNodeTable.create(16);
+    for (final PExpressionType<PParsed> root : expressions(unit)) {
+      PExpressions.fold(root, results, (table, x) -> {
+        if (x instanceof PExprMatch) {
+          final PExprMatch<PParsed> m = (PExprMatch<PParsed>) x;
+          table.put(m.data().id(), compile(constructors, unit, m));
+        }
+        return table;
+      });
+    }
+    return results;
+  }
+
+  /**
+   * @param unit A unit
+   *
+   * @return The top-level expressions of the unit, including the bodies of
+   * value and function declarations
+   */
+
+  static Vector<PExpressionType<PParsed>> expressions(
+    final PResolvedUnit unit)
+  {
+    return unit.declarations().flatMap(PMatchCompiler::expression);
+  }
+
+  private static Vector<PExpressionType<PParsed>> expression(
+    final PExpressionOrDeclarationType<PParsed> form)
+  {
+    if (form instanceof PExpressionType) {
+      return Vector.of((PExpressionType<PParsed>) form);
+    }
+    if (form instanceof PDeclarationValue) {
+      return Vector.of(
+        ((PDeclarationValue<PParsed>) form).expression());
+    }
+    if (form instanceof PDeclarationFunction) {
+      return Vector.of(
+        ((PDeclarationFunction<PParsed>) form).expression());
+    }
+    return Vector.empty();
+  }
+
+  private static DecisionBuilderType builderFor(
+    final PConstructorIndex constructors,
+    final PResolvedUnit unit,
+    final Vector<PMatchCaseType<PParsed>> cases)
+  {
+    final PPatternType<PParsed> first =
+      cases.map(PMatchCaseType::pattern)
+        .find(p -> p.kind() != PPatternType.Kind.PATTERN_WILDCARD)
+        .getOrNull();
+
+    if (first == null) {
+      return new DefaultDecisionBuilder();
+    }
+
+    switch (first.kind()) {
+      case PATTERN_CONSTANT_REAL:
+        return new RealDecisionBuilder();
+      case PATTERN_CONSTANT_STRING:
+        return new StringDecisionBuilder();
+      case PATTERN_CONSTANT_INTEGER:
+        return new IntegerDecisionBuilder();
+      case PATTERN_CONSTRUCTOR:
+        return new ConstructorDecisionBuilder(
+          constructors,
+          unit,
+          PMatchCoverageChecker.constructorOf(constructors, unit, first));
+      case PATTERN_WILDCARD:
+        break;
+    }
+    throw new UnreachableCodeException();
+  }
+
+  private interface DecisionBuilderType
+  {
+    /**
+     * Add a case for the given pattern. The pattern is known to be useful.
+     */
+
+    void add(
+      PPatternType<PParsed> pattern,
+      int index);
+
+    PMatchDecisionType build(
+      int default_case);
+  }
+
+  private static final class DefaultDecisionBuilder
+    implements DecisionBuilderType
+  {
+    DefaultDecisionBuilder()
+    {
+
+    }
+
+    @Override
+    public void add(
+      final PPatternType<PParsed> pattern,
+      final int index)
+    {
+      throw new UnreachableCodeException();
+    }
+
+    @Override
+    public PMatchDecisionType build(
+      final int default_case)
+    {
+      return new PMatchDecisionDefault(default_case);
+    }
+  }
+
+  private static final class ConstructorDecisionBuilder
+    implements DecisionBuilderType
+  {
+    private final PConstructorIndex constructors;
+    private final PResolvedUnit unit;
+    private final PBinding variant;
+    private final int[] table;
+
+    ConstructorDecisionBuilder(
+      final PConstructorIndex in_constructors,
+      final PResolvedUnit in_unit,
+      final PConstructorInfo in_first)
+    {
+      this.constructors = in_constructors;
+      this.unit = in_unit;
+      this.variant = in_first.variant();
+      this.table = new int[in_first.constructors()];
+      Arrays.fill(this.table, PMatchDecisionType.NO_CASE);
+    }
+
+    @Override
+    public void add(
+      final PPatternType<PParsed> pattern,
+      final int index)
+    {
+      final PConstructorInfo c =
+        PMatchCoverageChecker.constructorOf(this.constructors, this.unit, pattern);
+      this.table[c.tag()] = index;
+    }
+
+    @Override
+    public PMatchDecisionType build(
+      final int default_case)
+    {
+      for (int tag = 0; tag < this.table.length; ++tag) {
+        if (this.table[tag] == PMatchDecisionType.NO_CASE) {
+          this.table[tag] = default_case;
+        }
+      }
+      return new PMatchDecisionConstructor(this.variant, this.table, default_case);
+    }
+  }
+
+  private static final class IntegerDecisionBuilder
+    implements DecisionBuilderType
+  {
+    private final TreeMap<BigInteger, Integer> cases;
+
+    IntegerDecisionBuilder()
+    {
+      this.cases = new TreeMap<>();
+    }
+
+    @Override
+    public void add(
+      final PPatternType<PParsed> pattern,
+      final int index)
+    {
+      final BigInteger value =
+        ((PPatternConstantIntegerType<PParsed>) pattern).value();
+      this.cases.put(value, Integer.valueOf(index));
+    }
+
+    @Override
+    public PMatchDecisionType build(
+      final int default_case)
+    {
+      final ArrayList<BigInteger> small = new ArrayList<>(this.cases.size());
+      final Map<BigInteger, Integer> large = new HashMap<>(16);
+      for (final Map.Entry<BigInteger, Integer> entry : this.cases.entrySet()) {
+        if (entry.getKey().bitLength() < Long.SIZE) {
+          small.add(entry.getKey());
+        } else {
+          large.put(entry.getKey(), entry.getValue());
+        }
+      }
+
+      final long[] keys = new long[small.size()];
+      final int[] indices = new int[small.size()];
+      for (int index = 0; index < keys.length; ++index) {
+        final BigInteger key = small.get(index);
+        keys[index] = key.longValue();
+        indices[index] = this.cases.get(key).intValue();
+      }
+      return new PMatchDecisionInteger(keys, indices, large, default_case);
+    }
+  }
+
+  private static final class RealDecisionBuilder
+    implements DecisionBuilderType
+  {
+    private final TreeMap<BigDecimal, Integer> cases;
+
+    RealDecisionBuilder()
+    {
+      this.cases = new TreeMap<>();
+    }
+
+    @Override
+    public void add(
+      final PPatternType<PParsed> pattern,
+      final int index)
+    {
+      final BigDecimal value =
+        ((PPatternConstantRealType<PParsed>) pattern).value();
+      this.cases.put(value, Integer.valueOf(index));
+    }
+
+    @Override
+    public PMatchDecisionType build(
+      final int default_case)
+    {
+      final BigDecimal[] keys = new BigDecimal[this.cases.size()];
+      final int[] indices = new int[this.cases.size()];
+      int index = 0;
+      for (final Map.Entry<BigDecimal, Integer> entry : this.cases.entrySet()) {
+        keys[index] = entry.getKey();
+        indices[index] = entry.getValue().intValue();
+        ++index;
+      }
+      return new PMatchDecisionReal(keys, indices, default_case);
+    }
+  }
+
+  private static final class StringDecisionBuilder
+    implements DecisionBuilderType
+  {
+    private final Map<String, Integer> cases;
+
+    StringDecisionBuilder()
+    {
+      this.cases = new HashMap<>(16);
+    }
+
+    @Override
+    public void add(
+      final PPatternType<PParsed> pattern,
+      final int index)
+    {
+      final String value =
+        ((PPatternConstantStringType<PParsed>) pattern).value();
+      this.cases.put(value, Integer.valueOf(index));
+    }
+
+    @Override
+    public PMatchDecisionType build(
+      final int default_case)
+    {
+      return new PMatchDecisionString(this.cases, default_case);
+    }
+  }
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.compiler;
+
+import com.io7m.jaffirm.core.Preconditions;
+import com.io7m.junreachable.UnreachableCodeException;
+import com.io7m.polaris.ast.PExprMatch;
+import com.io7m.polaris.ast.PExpressionType;
+import com.io7m.polaris.ast.PExpressionType.PExprMatchType;
+import com.io7m.polaris.ast.PExpressionType.PMatchCaseType;
+import com.io7m.polaris.ast.PExpressions;
+import com.io7m.polaris.ast.PPatternType;
+import com.io7m.polaris.ast.PPatternType.PPatternConstantIntegerType;
+import com.io7m.polaris.ast.PPatternType.PPatternConstantRealType;
+import com.io7m.polaris.ast.PPatternType.PPatternConstantStringType;
+import com.io7m.polaris.ast.PPatternType.PPatternConstructorType;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.resolver.PBinding;
+import com.io7m.polaris.resolver.PResolvedUnit;
+import io.vavr.collection.Vector;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Functions to check the exhaustiveness of {@code match} expressions, and to
+ * find unreachable cases.
+ *
+ * A case is useful if it handles a value that no earlier case handles.
+ * Because patterns are flat, a constructor pattern handles every value built
+ * with its constructor, and usefulness reduces to membership of a set of
+ * constructor tags or constants. Constructor tags are held in a bitset, so
+ * checking a match takes time linear in the number of cases, plus a scan of
+ * the bitset when reporting missing constructors.
+ *
+ * The functions here assume that the matches have been type checked, and
+ * raise precondition violations for matches that mix kinds of patterns.
+ */
+
+public final class PMatchCoverageChecker
+{
+  private static final int MISSING_SHOWN = 8;
+
+  private PMatchCoverageChecker()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Determine the coverage of a single match expression.
+   *
+   * @param constructors An index of the constructors visible to the unit
+   * @param unit         The unit that contains the expression
+   * @param e            The expression
+   *
+   * @return The coverage of the match
+   */
+
+  public static PMatchCoverage coverage(
+    final PConstructorIndex constructors,
+    final PResolvedUnit unit,
+    final PExprMatchType<PParsed> e)
+  {
+    Objects.requireNonNull(constructors, "Constructors");
+    Objects.requireNonNull(unit, "Unit");
+    Objects.requireNonNull(e, "Expression");
+
+    final Vector<PMatchCaseType<PParsed>> cases = e.cases();
+    final PPatternType<PParsed> first =
+      cases.map(PMatchCaseType::pattern)
+        .find(p -> p.kind() != PPatternType.Kind.PATTERN_WILDCARD)
+        .getOrNull();
+
+    final Coverage c = new Coverage(constructors, unit, first);
+    for (int index = 0; index < cases.size(); ++index) {
+      c.add(cases.get(index).pattern(), index);
+    }
+    return c.result();
+  }
+
+  /**
+   * Check every match expression in the given unit.
+   *
+   * @param constructors An index of the constructors visible to the unit
+   * @param unit         The unit
+   *
+   * @return The errors for non-exhaustive matches and unreachable cases, in
+   * the order that the matches appear in the unit
+   */
+
+  public static Vector<PMatchError> check(
+    final PConstructorIndex constructors,
+    final PResolvedUnit unit)
+  {
+    Objects.requireNonNull(constructors, "Constructors");
+    Objects.requireNonNull(unit, "Unit");
+
+    final List<PMatchError> errors = new ArrayList<>(16);
+    for (final PExpressionType<PParsed> root : PMatchCompiler.expressions(unit)) {
+      PExpressions.fold(root, errors, (acc, x) -> {
+        if (x instanceof PExprMatch) {
+          final PExprMatch<PParsed> m = (PExprMatch<PParsed>) x;
+          errors(acc, m, coverage(constructors, unit, m));
+        }
+        return acc;
+      });
+    }
+    return Vector.ofAll(errors);
+  }
+
+  private static void errors(
+    final List<PMatchError> errors,
+    final PExprMatchType<PParsed> e,
+    final PMatchCoverage c)
+  {
+    if (!c.exhaustive()) {
+      errors.add(PMatchError.of(
+        e.lexical(),
+        PMatchErrorCode.MATCH_NOT_EXHAUSTIVE,
+        notExhaustiveMessage(c.missing())));
+    }
+
+    for (final Integer index : c.unreachable()) {
+      errors.add(PMatchError.of(
+        e.cases().get(index.intValue()).lexical(),
+        PMatchErrorCode.MATCH_CASE_UNREACHABLE,
+        "Case is unreachable: every value it matches is handled by an earlier case"));
+    }
+  }
+
+  private static String notExhaustiveMessage(
+    final Vector<PConstructorInfo> missing)
+  {
+    if (missing.isEmpty()) {
+      return "Match is not exhaustive: a wildcard case is required";
+    }
+
+    final StringBuilder text = new StringBuilder(64);
+    text.append("Match is not exhaustive: missing constructors ");
+    text.append(
+      missing.take(MISSING_SHOWN).map(PConstructorInfo::name).mkString(", "));
+    if (missing.size() > MISSING_SHOWN) {
+      text.append(", and ");
+      text.append(missing.size() - MISSING_SHOWN);
+      text.append(" more");
+    }
+    return text.toString();
+  }
+
+  static void checkKind(
+    final PPatternType<PParsed> pattern,
+    final PPatternType.Kind kind)
+  {
+    Preconditions.checkPrecondition(
+      pattern.kind(),
+      pattern.kind() == kind,
+      k -> "Patterns within a match must be of the same kind");
+  }
+
+  static PConstructorInfo constructorOf(
+    final PConstructorIndex constructors,
+    final PResolvedUnit unit,
+    final PPatternType<PParsed> pattern)
+  {
+    checkKind(pattern, PPatternType.Kind.PATTERN_CONSTRUCTOR);
+
+    final PPatternConstructorType<PParsed> p =
+      (PPatternConstructorType<PParsed>) pattern;
+    final PBinding binding =
+      unit.termBinding(p.constructor())
+        .orElseThrow(() -> new IllegalArgumentException(
+          "Constructor reference must be resolved"));
+    return constructors.constructor(binding)
+      .orElseThrow(() -> new IllegalArgumentException(
+        "Constructor must be present in the index: " + binding));
+  }
+
+  /**
+   * The coverage of the cases examined so far. The kind of the first
+   * non-wildcard pattern determines the kind of every other non-wildcard
+   * pattern; if there is no such pattern, only wildcards are present.
+   */
+
+  private static final class Coverage
+  {
+    private final PConstructorIndex constructors;
+    private final PResolvedUnit unit;
+    private final PPatternType.Kind kind;
+    private final PBinding variant;
+    private final int constructor_count;
+    private final BitSet covered;
+    private final HashSet<Object> constants;
+    private final ArrayList<Integer> unreachable;
+    private int covered_count;
+    private boolean wildcard;
+
+    Coverage(
+      final PConstructorIndex in_constructors,
+      final PResolvedUnit in_unit,
+      final PPatternType<PParsed> in_first)
+    {
+      this.constructors = in_constructors;
+      this.unit = in_unit;
+      this.kind = in_first == null ? PPatternType.Kind.PATTERN_WILDCARD : in_first.kind();
+
+      if (this.kind == PPatternType.Kind.PATTERN_CONSTRUCTOR) {
+        final PConstructorInfo c = constructorOf(in_constructors, in_unit, in_first);
+        this.variant = c.variant();
+        this.constructor_count = c.constructors();
+      } else {
+        this.variant = null;
+        this.constructor_count = 0;
+      }
+
+      this.covered = new BitSet(this.constructor_count);
+      this.constants = new HashSet<>(16);
+      this.unreachable = new ArrayList<>(4);
+      this.covered_count = 0;
+      this.wildcard = false;
+    }
+
+    private boolean isComplete()
+    {
+      return this.kind == PPatternType.Kind.PATTERN_CONSTRUCTOR
+        && this.covered_count == this.constructor_count;
+    }
+
+    void add(
+      final PPatternType<PParsed> pattern,
+      final int index)
+    {
+      final boolean useful;
+      if (this.wildcard) {
+        useful = false;
+      } else if (pattern.kind() == PPatternType.Kind.PATTERN_WILDCARD) {
+        useful = !this.isComplete();
+        this.wildcard = useful;
+      } else {
+        checkKind(pattern, this.kind);
+        useful = this.addKey(pattern);
+      }
+
+      if (!useful) {
+        this.unreachable.add(Integer.valueOf(index));
+      }
+    }
+
+    private boolean addKey(
+      final PPatternType<PParsed> pattern)
+    {
+      switch (this.kind) {
+        case PATTERN_CONSTANT_REAL:
+          return this.constants.add(
+            ((PPatternConstantRealType<PParsed>) pattern).value().stripTrailingZeros());
+        case PATTERN_CONSTANT_STRING:
+          return this.constants.add(
+            ((PPatternConstantStringType<PParsed>) pattern).value());
+        case PATTERN_CONSTANT_INTEGER:
+          return this.constants.add(
+            ((PPatternConstantIntegerType<PParsed>) pattern).value());
+        case PATTERN_CONSTRUCTOR:
+          return this.addConstructor(pattern);
+        case PATTERN_WILDCARD:
+          break;
+      }
+      throw new UnreachableCodeException();
+    }
+
+    private boolean addConstructor(
+      final PPatternType<PParsed> pattern)
+    {
+      final PConstructorInfo c =
+        constructorOf(this.constructors, this.unit, pattern);
+
+      Preconditions.checkPrecondition(
+        c.variant(),
+        Objects.equals(c.variant(), this.variant),
+        v -> "Constructors within a match must belong to the same variant");
+
+      if (this.covered.get(c.tag())) {
+        return false;
+      }
+      this.covered.set(c.tag());
+      ++this.covered_count;
+      return true;
+    }
+
+    PMatchCoverage result()
+    {
+      final boolean exhaustive = this.wildcard || this.isComplete();
+
+      Vector<PConstructorInfo> missing = Vector.empty();
+      if (!exhaustive && this.kind == PPatternType.Kind.PATTERN_CONSTRUCTOR) {
+        final Vector<PConstructorInfo> all =
+          this.constructors.constructors(this.variant);
+        for (int tag = this.covered.nextClearBit(0);
+             tag < this.constructor_count;
+             tag = this.covered.nextClearBit(tag + 1)) {
+          missing = missing.append(all.get(tag));
+        }
+      }
+
+      return PMatchCoverage.of(
+        exhaustive, missing, Vector.ofAll(this.unreachable));
+    }
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.compiler;
+
+import com.io7m.polaris.core.PImmutableStyleType;
+import io.vavr.collection.Vector;
+import org.immutables.value.Value;
+
+/**
+ * The coverage of the values of a matched type by the cases of a
+ * {@code match} expression.
+ */
+
+@PImmutableStyleType
+@Value.Immutable
+public interface PMatchCoverageType
+{
+  /**
+   * @return {@code true} iff every value of the matched type is handled by
+   * some case
+   */
+
+  @Value.Parameter
+  boolean exhaustive();
+
+  /**
+   * @return The constructors, in tag order, that are not handled by any case
+   * of a non-exhaustive match over a variant type
+   */
+
+  @Value.Parameter
+  Vector<PConstructorInfo> missing();
+
+  /**
+   * @return The indices, in ascending order, of the cases that can never be
+   * selected because every value they handle is handled by an earlier case
+   */
+
+  @Value.Parameter
+  Vector<Integer> unreachable();
+}
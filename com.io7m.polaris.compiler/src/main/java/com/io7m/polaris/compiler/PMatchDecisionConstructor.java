@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.compiler;
+
+import com.io7m.polaris.resolver.PBinding;
+
+import java.util.Objects;
+
+/**
+ * A decision that selects a case by the tag of a variant value. The decision
+ * holds one entry per constructor of the variant type, so selection takes
+ * constant time regardless of the number of constructors.
+ */
+
+public final class PMatchDecisionConstructor implements PMatchDecisionType
+{
+  private final PBinding variant;
+  private final int[] table;
+  private final int default_case;
+
+  PMatchDecisionConstructor(
+    final PBinding in_variant,
+    final int[] in_table,
+    final int in_default_case)
+  {
+    this.variant = Objects.requireNonNull(in_variant, "Variant");
+    this.table = Objects.requireNonNull(in_table, "Table");
+    this.default_case = in_default_case;
+  }
+
+  @Override
+  public Kind kind()
+  {
+    return Kind.DECISION_CONSTRUCTOR;
+  }
+
+  @Override
+  public int defaultCase()
+  {
+    return this.default_case;
+  }
+
+  /**
+   * @return The binding of the variant type being matched
+   */
+
+  public PBinding variant()
+  {
+    return this.variant;
+  }
+
+  /**
+   * @return The number of constructors of the variant type being matched
+   */
+
+  public int constructors()
+  {
+    return this.table.length;
+  }
+
+  /**
+   * @param tag The tag of a constructor
+   *
+   * @return The index of the case that handles values with the given tag, or
+   * {@link #NO_CASE} if no case handles the tag
+   *
+   * @see PConstructorInfo#tag()
+   */
+
+  public int caseForTag(
+    final int tag)
+  {
+    return this.table[tag];
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.compiler;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A decision that selects a case by the value of an integer. If the patterns
+ * that fit into a {@code long} cover a sufficiently dense range, selection
+ * uses a jump table indexed by value and takes constant time. Otherwise,
+ * selection uses a binary search over the sorted patterns and takes
+ * logarithmic time. Patterns that do not fit into a {@code long} are held in
+ * a separate hash table.
+ */
+
+public final class PMatchDecisionInteger implements PMatchDecisionType
+{
+  private static final int DENSE_LIMIT = 1 << 16;
+
+  private final long[] keys;
+  private final int[] cases;
+  private final int[] dense;
+  private final long minimum;
+  private final Map<BigInteger, Integer> large;
+  private final int default_case;
+
+  PMatchDecisionInteger(
+    final long[] in_keys,
+    final int[] in_cases,
+    final Map<BigInteger, Integer> in_large,
+    final int in_default_case)
+  {
+    this.keys = Objects.requireNonNull(in_keys, "Keys");
+    this.cases = Objects.requireNonNull(in_cases, "Cases");
+    this.large = new HashMap<>(Objects.requireNonNull(in_large, "Large"));
+    this.default_case = in_default_case;
+
+    if (in_keys.length > 0 && isDense(in_keys)) {
+      this.minimum = in_keys[0];
+      this.dense = new int[(int) (in_keys[in_keys.length - 1] - this.minimum) + 1];
+      Arrays.fill(this.dense, in_default_case);
+      for (int index = 0; index < in_keys.length; ++index) {
+        this.dense[(int) (in_keys[index] - this.minimum)] = in_cases[index];
+      }
+    } else {
+      this.minimum = 0L;
+      this.dense = null;
+    }
+  }
+
+  /**
+   * A set of sorted keys is dense if a jump table over its range would be at
+   * most twice the size of the set itself.
+   */
+
+  private static boolean isDense(
+    final long[] keys)
+  {
+    final long range = keys[keys.length - 1] - keys[0];
+    return range >= 0L
+      && range < (long) DENSE_LIMIT
+      && range < 2L * (long) keys.length;
+  }
+
+  @Override
+  public Kind kind()
+  {
+    return Kind.DECISION_INTEGER;
+  }
+
+  @Override
+  public int defaultCase()
+  {
+    return this.default_case;
+  }
+
+  /**
+   * @return {@code true} iff the decision uses a jump table
+   */
+
+  public boolean isDense()
+  {
+    return this.dense != null;
+  }
+
+  /**
+   * @return The number of patterns that fit into a {@code long}
+   */
+
+  public int keyCount()
+  {
+    return this.keys.length;
+  }
+
+  /**
+   * @param index An index in {@code [0, keyCount())}
+   *
+   * @return The value of the pattern at {@code index}, in ascending order
+   */
+
+  public long key(
+    final int index)
+  {
+    return this.keys[index];
+  }
+
+  /**
+   * @param index An index in {@code [0, keyCount())}
+   *
+   * @return The case for the pattern at {@code index}
+   */
+
+  public int keyCase(
+    final int index)
+  {
+    return this.cases[index];
+  }
+
+  /**
+   * @return {@code true} iff some patterns do not fit into a {@code long}
+   */
+
+  public boolean hasLargeKeys()
+  {
+    return !this.large.isEmpty();
+  }
+
+  /**
+   * @param value An integer
+   *
+   * @return The index of the case that handles the integer
+   */
+
+  public int caseFor(
+    final long value)
+  {
+    if (this.dense != null) {
+      final long offset = value - this.minimum;
+      if (offset >= 0L && offset < (long) this.dense.length) {
+        return this.dense[(int) offset];
+      }
+      return this.default_case;
+    }
+
+    final int index = Arrays.binarySearch(this.keys, value);
+    return index >= 0 ? this.cases[index] : this.default_case;
+  }
+
+  /**
+   * @param value An integer
+   *
+   * @return The index of the case that handles the integer
+   */
+
+  public int caseFor(
+    final BigInteger value)
+  {
+    Objects.requireNonNull(value, "Value");
+
+    if (value.bitLength() < Long.SIZE) {
+      return this.caseFor(value.longValue());
+    }
+    final Integer index = this.large.get(value);
+    return index == null ? this.default_case : index.intValue();
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.compiler;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * A decision that selects a case by the value of a real number. Values are
+ * compared numerically, so {@code 1.0} and {@code 1.00} select the same case.
+ * Selection uses a binary search, and takes logarithmic time.
+ */
+
+public final class PMatchDecisionReal implements PMatchDecisionType
+{
+  private final BigDecimal[] keys;
+  private final int[] cases;
+  private final int default_case;
+
+  PMatchDecisionReal(
+    final BigDecimal[] in_keys,
+    final int[] in_cases,
+    final int in_default_case)
+  {
+    this.keys = Objects.requireNonNull(in_keys, "Keys");
+    this.cases = Objects.requireNonNull(in_cases, "Cases");
+    this.default_case = in_default_case;
+  }
+
+  @Override
+  public Kind kind()
+  {
+    return Kind.DECISION_REAL;
+  }
+
+  @Override
+  public int defaultCase()
+  {
+    return this.default_case;
+  }
+
+  /**
+   * @param value A real number
+   *
+   * @return The index of the case that handles the number
+   */
+
+  public int caseFor(
+    final BigDecimal value)
+  {
+    Objects.requireNonNull(value, "Value");
+
+    int low = 0;
+    int high = this.keys.length - 1;
+    while (low <= high) {
+      final int middle = (low + high) >>> 1;
+      final int c = this.keys[middle].compareTo(value);
+      if (c < 0) {
+        low = middle + 1;
+      } else if (c > 0) {
+        high = middle - 1;
+      } else {
+        return this.cases[middle];
+      }
+    }
+    return this.default_case;
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.compiler;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A decision that selects a case by the value of a string. Selection uses a
+ * hash table, and takes expected constant time.
+ */
+
+public final class PMatchDecisionString implements PMatchDecisionType
+{
+  private final Map<String, Integer> cases;
+  private final int default_case;
+
+  PMatchDecisionString(
+    final Map<String, Integer> in_cases,
+    final int in_default_case)
+  {
+    this.cases = new HashMap<>(Objects.requireNonNull(in_cases, "Cases"));
+    this.default_case = in_default_case;
+  }
+
+  @Override
+  public Kind kind()
+  {
+    return Kind.DECISION_STRING;
+  }
+
+  @Override
+  public int defaultCase()
+  {
+    return this.default_case;
+  }
+
+  /**
+   * @param value A string
+   *
+   * @return The index of the case that handles the string
+   */
+
+  public int caseFor(
+    final String value)
+  {
+    final Integer index = this.cases.get(value);
+    return index == null ? this.default_case : index.intValue();
+  }
+}
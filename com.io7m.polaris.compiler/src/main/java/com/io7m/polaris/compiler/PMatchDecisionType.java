@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.compiler;
+
+/**
+ * A compiled decision that selects the case of a {@code match} expression
+ * that handles a given value. Every value not explicitly handled by a case
+ * is sent to a single shared default case, if one exists. Decisions are
+ * immutable, and may be shared between threads.
+ */
+
+public interface PMatchDecisionType
+{
+  /**
+   * The index returned when no case handles a value.
+   */
+
+  int NO_CASE = -1;
+
+  /**
+   * @return The kind of decision
+   */
+
+  Kind kind();
+
+  /**
+   * @return The index of the case that handles values not handled by any
+   * other case, or {@link #NO_CASE} if no such case exists
+   */
+
+  int defaultCase();
+
+  /**
+   * The kind of decision.
+   */
+
+  enum Kind
+  {
+    /**
+     * Every value is handled by the default case.
+     */
+
+    DECISION_DEFAULT,
+
+    /**
+     * The case is selected by the tag of a variant value.
+     *
+     * @see PMatchDecisionConstructor
+     */
+
+    DECISION_CONSTRUCTOR,
+
+    /**
+     * The case is selected by the value of an integer.
+     *
+     * @see PMatchDecisionInteger
+     */
+
+    DECISION_INTEGER,
+
+    /**
+     * The case is selected by the value of a real number.
+     *
+     * @see PMatchDecisionReal
+     */
+
+    DECISION_REAL,
+
+    /**
+     * The case is selected by the value of a string.
+     *
+     * @see PMatchDecisionString
+     */
+
+    DECISION_STRING
+  }
+}
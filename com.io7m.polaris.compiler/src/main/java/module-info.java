@@ -0,0 +1,35 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+/**
+ * Type checking.
+ */
+
+module com.io7m.polaris.compiler
+{
+  requires static org.immutables.value;
+
+  requires com.io7m.jaffirm.core;
+  requires com.io7m.jlexing.core;
+  requires com.io7m.junreachable.core;
+  requires com.io7m.polaris.ast;
+  requires com.io7m.polaris.core;
+  requires com.io7m.polaris.parser.api;
+  requires com.io7m.polaris.resolver;
+  requires io.vavr;
+
+  exports com.io7m.polaris.compiler;
+}
@@ -0,0 +1,995 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.interpreter;
+
+import com.io7m.jlexing.core.LexicalPosition;
+import com.io7m.junreachable.UnreachableCodeException;
+import com.io7m.polaris.compiler.PConstructorInfo;
+import com.io7m.polaris.compiler.PMatchDecisionConstructor;
+import com.io7m.polaris.compiler.PMatchDecisionInteger;
+import com.io7m.polaris.compiler.PMatchDecisionReal;
+import com.io7m.polaris.compiler.PMatchDecisionString;
+import com.io7m.polaris.compiler.PMatchDecisionType;
+import com.io7m.polaris.resolver.PBinding;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Executable code, produced from expressions by {@link PCodeCompiler}.
+ *
+ * The body of each function is evaluated in a frame: an array whose first
+ * element holds the frame of the lexically enclosing function, and whose
+ * remaining elements hold the parameters of the function followed by the
+ * variables bound in its body. A reference to a variable is compiled to the
+ * number of frames between the reference and the binding, and the index of
+ * the binding in its frame.
+ *
+ * Functions that are only ever called directly are lifted out of their
+ * enclosing functions by {@link PCodeLifting}. A lifted function has no
+ * enclosing frame; the values of the variables that it captures are passed
+ * to it by each call, and stored in its frame after its other slots.
+ *
+ * Evaluation of a node whose value is the value of one of its
+ * subexpressions (the body of a {@code local}, the selected case of a
+ * {@code match}, or the body of an applied function) continues in the same
+ * loop instead of recursing. Calls in tail position therefore run in constant
+ * Java stack space, and a call allocates nothing but the frame of the called
+ * function.
+ */
+
+class PCode
+{
+  private final Kind kind;
+
+  PCode(
+    final Kind in_kind)
+  {
+    this.kind = Objects.requireNonNull(in_kind, "Kind");
+  }
+
+  final Kind kind()
+  {
+    return this.kind;
+  }
+
+  /**
+   * Evaluate code in the given frame.
+   *
+   * @param code          The code
+   * @param initial_frame The frame
+   *
+   * @return The value of the code
+   */
+
+  static Object evaluate(
+    final PCode code,
+    final Object[] initial_frame)
+  {
+    PCode node = code;
+    Object[] frame = initial_frame;
+
+    while (true) {
+      switch (node.kind) {
+        case CONSTANT:
+          return ((Constant) node).value;
+        case LOCAL:
+          return ((Local) node).get(frame);
+        case GLOBAL:
+          return ((Global) node).cell.get();
+        case FIELD:
+          return ((Field) node).get(frame);
+        case CONSTRUCT:
+          return ((Construct) node).construct(frame);
+        case LAMBDA:
+          return new Closure(((Lambda) node).function, frame);
+        case RECORD:
+          return ((Record) node).construct(frame);
+        case RECORD_UPDATE:
+          return ((RecordUpdate) node).update(frame);
+
+        case APPLY: {
+          final Apply a = (Apply) node;
+          final Object f = evaluate(a.function, frame);
+          if (!(f instanceof Closure)) {
+            return a.applyOther(f, frame);
+          }
+          final Closure c = (Closure) f;
+          frame = a.enter(c, frame);
+          node = c.function.body;
+          continue;
+        }
+
+        case CALL: {
+          final Call c = (Call) node;
+          frame = c.enter(frame);
+          node = c.function.body;
+          continue;
+        }
+
+        case BLOCK: {
+          final Block b = (Block) node;
+          b.run(frame);
+          node = b.body;
+          continue;
+        }
+
+        case MATCH: {
+          node = ((Match) node).select(frame);
+          continue;
+        }
+      }
+      throw new UnreachableCodeException();
+    }
+  }
+
+  private static PEvaluationException error(
+    final LexicalPosition<URI> lexical,
+    final String message)
+  {
+    return new PEvaluationException(Optional.of(lexical), message);
+  }
+
+  /**
+   * The kind of node.
+   */
+
+  enum Kind
+  {
+    CONSTANT,
+    LOCAL,
+    GLOBAL,
+    FIELD,
+    CONSTRUCT,
+    LAMBDA,
+    RECORD,
+    RECORD_UPDATE,
+    APPLY,
+    CALL,
+    BLOCK,
+    MATCH
+  }
+
+  /**
+   * The compiled body of a function.
+   */
+
+  static final class Function
+  {
+    private final String name;
+    private final int arity;
+    private final int frame_size;
+    private final int captures;
+    private PCode body;
+
+    Function(
+      final String in_name,
+      final int in_arity,
+      final int in_frame_size,
+      final PCode in_body)
+    {
+      this.name = Objects.requireNonNull(in_name, "Name");
+      this.arity = in_arity;
+      this.frame_size = in_frame_size;
+      this.captures = 0;
+      this.body = Objects.requireNonNull(in_body, "Body");
+    }
+
+    /**
+     * Create a lifted function. The body is set separately, because it may
+     * contain calls to the function itself.
+     */
+
+    Function(
+      final String in_name,
+      final int in_arity,
+      final int in_frame_size,
+      final int in_captures)
+    {
+      this.name = Objects.requireNonNull(in_name, "Name");
+      this.arity = in_arity;
+      this.frame_size = in_frame_size;
+      this.captures = in_captures;
+    }
+
+    void setBody(
+      final PCode in_body)
+    {
+      if (this.body != null) {
+        throw new IllegalStateException("Body has already been set");
+      }
+      this.body = Objects.requireNonNull(in_body, "Body");
+    }
+
+    String name()
+    {
+      return this.name;
+    }
+
+    int arity()
+    {
+      return this.arity;
+    }
+
+    int frameSize()
+    {
+      return this.frame_size;
+    }
+
+    /**
+     * @return The number of captured variables passed to a lifted function
+     */
+
+    int captures()
+    {
+      return this.captures;
+    }
+
+    /**
+     * @return The slot of the first captured variable
+     */
+
+    int captureBase()
+    {
+      return this.frame_size - this.captures;
+    }
+
+    PCode body()
+    {
+      return this.body;
+    }
+
+    Object[] frame(
+      final Object[] parent)
+    {
+      final Object[] frame = new Object[this.frame_size];
+      frame[0] = parent;
+      return frame;
+    }
+  }
+
+  /**
+   * A function value: a function and the frame in which it was created.
+   */
+
+  static final class Closure implements PFunctionType
+  {
+    private final Function function;
+    private final Object[] frame;
+
+    Closure(
+      final Function in_function,
+      final Object[] in_frame)
+    {
+      this.function = in_function;
+      this.frame = in_frame;
+    }
+
+    @Override
+    public Object apply(
+      final Object... arguments)
+    {
+      Objects.requireNonNull(arguments, "Arguments");
+
+      if (arguments.length != this.function.arity) {
+        throw new PEvaluationException(
+          Optional.empty(),
+          "Function " + this.function.name + " requires "
+            + this.function.arity + " arguments but received "
+            + arguments.length);
+      }
+
+      final Object[] callee = this.function.frame(this.frame);
+      System.arraycopy(arguments, 0, callee, 1, arguments.length);
+      try {
+        return evaluate(this.function.body, callee);
+      } catch (final StackOverflowError e) {
+        throw new PEvaluationException(
+          Optional.empty(), "Stack exhausted evaluating " + this.function.name);
+      }
+    }
+
+    @Override
+    public String toString()
+    {
+      return "<function " + this.function.name + ">";
+    }
+  }
+
+  /**
+   * A top-level value or function. The values of cells are computed on first
+   * use, and a cell that is used during the computation of its own value
+   * indicates a cyclic definition.
+   */
+
+  static final class Cell
+  {
+    private static final int PENDING = 0;
+    private static final int EVALUATING = 1;
+    private static final int READY = 2;
+
+    private final String name;
+    private final LexicalPosition<URI> lexical;
+    private Function function;
+    private boolean is_function;
+    private Object value;
+    private int state;
+
+    Cell(
+      final String in_name,
+      final LexicalPosition<URI> in_lexical)
+    {
+      this.name = Objects.requireNonNull(in_name, "Name");
+      this.lexical = Objects.requireNonNull(in_lexical, "Lexical");
+      this.state = PENDING;
+    }
+
+    String name()
+    {
+      return this.name;
+    }
+
+    LexicalPosition<URI> lexical()
+    {
+      return this.lexical;
+    }
+
+    /**
+     * @return The body of the function for a function, or a function with no
+     * parameters that computes the value for a value
+     */
+
+    Function code()
+    {
+      return this.function;
+    }
+
+    boolean isFunction()
+    {
+      return this.is_function;
+    }
+
+    void setWrappedFunction(
+      final PFunctionType in_value)
+    {
+      this.value = Objects.requireNonNull(in_value, "Value");
+    }
+
+    void setValueCode(
+      final Function in_function)
+    {
+      this.function = Objects.requireNonNull(in_function, "Function");
+    }
+
+    void setFunctionCode(
+      final Function in_function)
+    {
+      this.function = Objects.requireNonNull(in_function, "Function");
+      this.is_function = true;
+      this.value = new Closure(in_function, null);
+      this.state = READY;
+    }
+
+    Object get()
+    {
+      if (this.state == READY) {
+        return this.value;
+      }
+      return this.force();
+    }
+
+    private Object force()
+    {
+      if (this.state == EVALUATING) {
+        throw error(
+          this.lexical, "The value of " + this.name + " depends on itself");
+      }
+
+      this.state = EVALUATING;
+      try {
+        this.value = evaluate(this.function.body, this.function.frame(null));
+        this.state = READY;
+        return this.value;
+      } finally {
+        if (this.state != READY) {
+          this.state = PENDING;
+        }
+      }
+    }
+  }
+
+  static final class Constant extends PCode
+  {
+    private final Object value;
+
+    Constant(
+      final Object in_value)
+    {
+      super(Kind.CONSTANT);
+      this.value = Objects.requireNonNull(in_value, "Value");
+    }
+
+    Object value()
+    {
+      return this.value;
+    }
+  }
+
+  static final class Local extends PCode
+  {
+    private final int depth;
+    private final int slot;
+
+    Local(
+      final int in_depth,
+      final int in_slot)
+    {
+      super(Kind.LOCAL);
+      this.depth = in_depth;
+      this.slot = in_slot;
+    }
+
+    int depth()
+    {
+      return this.depth;
+    }
+
+    int slot()
+    {
+      return this.slot;
+    }
+
+    Object get(
+      final Object[] frame)
+    {
+      Object[] f = frame;
+      for (int index = 0; index < this.depth; ++index) {
+        f = (Object[]) f[0];
+      }
+      return f[this.slot];
+    }
+  }
+
+  static final class Global extends PCode
+  {
+    private final Cell cell;
+
+    Global(
+      final Cell in_cell)
+    {
+      super(Kind.GLOBAL);
+      this.cell = Objects.requireNonNull(in_cell, "Cell");
+    }
+
+    Cell cell()
+    {
+      return this.cell;
+    }
+  }
+
+  /**
+   * An access to a field of a record. The type of the record is not known
+   * when the code is compiled, and so the slot of the field is found from
+   * the layout of the record, and cached until a record with a different
+   * layout is encountered.
+   */
+
+  static final class Field extends PCode
+  {
+    private final PCode target;
+    private final String name;
+    private final String[] names;
+    private PRecordSlots cache;
+
+    Field(
+      final PCode in_target,
+      final String in_name)
+    {
+      super(Kind.FIELD);
+      this.target = Objects.requireNonNull(in_target, "Target");
+      this.name = Objects.requireNonNull(in_name, "Name");
+      this.names = new String[]{in_name};
+    }
+
+    PCode target()
+    {
+      return this.target;
+    }
+
+    String name()
+    {
+      return this.name;
+    }
+
+    Object get(
+      final Object[] frame)
+    {
+      final PRecordValue r = (PRecordValue) evaluate(this.target, frame);
+      final PRecordSlots c =
+        PRecordSlots.forLayout(this.cache, r.layout(), this.names);
+      this.cache = c;
+      return r.get(c.indices()[0]);
+    }
+  }
+
+  static final class Construct extends PCode
+  {
+    private final PConstructorInfo constructor;
+    private final PCode argument;
+
+    Construct(
+      final PConstructorInfo in_constructor,
+      final PCode in_argument)
+    {
+      super(Kind.CONSTRUCT);
+      this.constructor = Objects.requireNonNull(in_constructor, "Constructor");
+      this.argument = Objects.requireNonNull(in_argument, "Argument");
+    }
+
+    PConstructorInfo constructor()
+    {
+      return this.constructor;
+    }
+
+    PCode argument()
+    {
+      return this.argument;
+    }
+
+    Object construct(
+      final Object[] frame)
+    {
+      return new PVariantValue(this.constructor, evaluate(this.argument, frame));
+    }
+  }
+
+  /**
+   * A constructor that takes an argument, used as a function value.
+   */
+
+  static final class ConstructorFunction implements PFunctionType
+  {
+    private final PConstructorInfo constructor;
+
+    ConstructorFunction(
+      final PConstructorInfo in_constructor)
+    {
+      this.constructor = Objects.requireNonNull(in_constructor, "Constructor");
+    }
+
+    @Override
+    public Object apply(
+      final Object... arguments)
+    {
+      if (arguments.length != 1) {
+        throw new PEvaluationException(
+          Optional.empty(),
+          "Constructor " + this.constructor.name()
+            + " requires 1 argument but received " + arguments.length);
+      }
+      return new PVariantValue(this.constructor, arguments[0]);
+    }
+
+    @Override
+    public String toString()
+    {
+      return "<constructor " + this.constructor.name() + ">";
+    }
+  }
+
+  static final class Lambda extends PCode
+  {
+    private final Function function;
+
+    Lambda(
+      final Function in_function)
+    {
+      super(Kind.LAMBDA);
+      this.function = Objects.requireNonNull(in_function, "Function");
+    }
+
+    Function function()
+    {
+      return this.function;
+    }
+  }
+
+  /**
+   * A record expression. The type of the record is known, and so the slot of
+   * each field is computed when the code is compiled.
+   */
+
+  static final class Record extends PCode
+  {
+    private final PBinding binding;
+    private final PRecordLayout layout;
+    private final String[] names;
+    private final int[] indices;
+    private final PCode[] values;
+
+    Record(
+      final PBinding in_binding,
+      final PRecordLayout in_layout,
+      final String[] in_names,
+      final PCode[] in_values)
+    {
+      super(Kind.RECORD);
+      this.binding = Objects.requireNonNull(in_binding, "Binding");
+      this.layout = Objects.requireNonNull(in_layout, "Layout");
+      this.names = Objects.requireNonNull(in_names, "Names");
+      this.values = Objects.requireNonNull(in_values, "Values");
+      this.indices = in_layout.indices(in_names);
+    }
+
+    PBinding binding()
+    {
+      return this.binding;
+    }
+
+    PRecordLayout layout()
+    {
+      return this.layout;
+    }
+
+    String[] names()
+    {
+      return this.names;
+    }
+
+    PCode[] values()
+    {
+      return this.values;
+    }
+
+    Object construct(
+      final Object[] frame)
+    {
+      final Object[] slots = new Object[this.layout.size()];
+      for (int index = 0; index < this.values.length; ++index) {
+        slots[this.indices[index]] = evaluate(this.values[index], frame);
+      }
+      return PRecordValue.create(this.layout, slots);
+    }
+  }
+
+  /**
+   * A record update. As with {@link Field}, the slots of the updated fields
+   * are cached for the most recently updated layout.
+   */
+
+  static final class RecordUpdate extends PCode
+  {
+    private final PCode source;
+    private final String[] names;
+    private final PCode[] values;
+    private PRecordSlots cache;
+
+    RecordUpdate(
+      final PCode in_source,
+      final String[] in_names,
+      final PCode[] in_values)
+    {
+      super(Kind.RECORD_UPDATE);
+      this.source = Objects.requireNonNull(in_source, "Source");
+      this.names = Objects.requireNonNull(in_names, "Names");
+      this.values = Objects.requireNonNull(in_values, "Values");
+    }
+
+    PCode source()
+    {
+      return this.source;
+    }
+
+    String[] names()
+    {
+      return this.names;
+    }
+
+    PCode[] values()
+    {
+      return this.values;
+    }
+
+    Object update(
+      final Object[] frame)
+    {
+      final PRecordValue r = (PRecordValue) evaluate(this.source, frame);
+      final Object[] updated = new Object[this.values.length];
+      for (int index = 0; index < updated.length; ++index) {
+        updated[index] = evaluate(this.values[index], frame);
+      }
+
+      final PRecordSlots c =
+        PRecordSlots.forLayout(this.cache, r.layout(), this.names);
+      this.cache = c;
+      return r.update(c.indices(), updated);
+    }
+  }
+
+  static final class Apply extends PCode
+  {
+    private final LexicalPosition<URI> lexical;
+    private final PCode function;
+    private final PCode[] arguments;
+
+    Apply(
+      final LexicalPosition<URI> in_lexical,
+      final PCode in_function,
+      final PCode[] in_arguments)
+    {
+      super(Kind.APPLY);
+      this.lexical = Objects.requireNonNull(in_lexical, "Lexical");
+      this.function = Objects.requireNonNull(in_function, "Function");
+      this.arguments = Objects.requireNonNull(in_arguments, "Arguments");
+    }
+
+    LexicalPosition<URI> lexical()
+    {
+      return this.lexical;
+    }
+
+    PCode function()
+    {
+      return this.function;
+    }
+
+    PCode[] arguments()
+    {
+      return this.arguments;
+    }
+
+    /**
+     * Evaluate the arguments directly into a new frame for {@code c}.
+     */
+
+    Object[] enter(
+      final Closure c,
+      final Object[] frame)
+    {
+      final Function f = c.function;
+      if (this.arguments.length != f.arity) {
+        throw error(
+          this.lexical,
+          "Function " + f.name + " requires " + f.arity
+            + " arguments but received " + this.arguments.length);
+      }
+
+      final Object[] callee = f.frame(c.frame);
+      for (int index = 0; index < this.arguments.length; ++index) {
+        callee[index + 1] = evaluate(this.arguments[index], frame);
+      }
+      return callee;
+    }
+
+    Object applyOther(
+      final Object f,
+      final Object[] frame)
+    {
+      final Object[] values = new Object[this.arguments.length];
+      for (int index = 0; index < values.length; ++index) {
+        values[index] = evaluate(this.arguments[index], frame);
+      }
+      return ((PFunctionType) f).apply(values);
+    }
+  }
+
+  /**
+   * A direct call to a lifted function, passing the arguments followed by the
+   * values of the variables captured by the function.
+   */
+
+  static final class Call extends PCode
+  {
+    private final LexicalPosition<URI> lexical;
+    private final Function function;
+    private final PCode[] arguments;
+    private final PCode[] captures;
+
+    Call(
+      final LexicalPosition<URI> in_lexical,
+      final Function in_function,
+      final PCode[] in_arguments,
+      final PCode[] in_captures)
+    {
+      super(Kind.CALL);
+      this.lexical = Objects.requireNonNull(in_lexical, "Lexical");
+      this.function = Objects.requireNonNull(in_function, "Function");
+      this.arguments = Objects.requireNonNull(in_arguments, "Arguments");
+      this.captures = Objects.requireNonNull(in_captures, "Captures");
+    }
+
+    LexicalPosition<URI> lexical()
+    {
+      return this.lexical;
+    }
+
+    Function function()
+    {
+      return this.function;
+    }
+
+    PCode[] arguments()
+    {
+      return this.arguments;
+    }
+
+    PCode[] captures()
+    {
+      return this.captures;
+    }
+
+    Object[] enter(
+      final Object[] frame)
+    {
+      final Object[] callee = this.function.frame(null);
+      for (int index = 0; index < this.arguments.length; ++index) {
+        callee[index + 1] = evaluate(this.arguments[index], frame);
+      }
+      final int base = this.function.captureBase();
+      for (int index = 0; index < this.captures.length; ++index) {
+        callee[base + index] = evaluate(this.captures[index], frame);
+      }
+      return callee;
+    }
+  }
+
+  /**
+   * The declarations and expressions of a {@code local} expression. The
+   * value of each step is stored in the frame at the step's slot, or
+   * discarded if the slot is zero.
+   */
+
+  static final class Block extends PCode
+  {
+    private final int[] slots;
+    private final PCode[] steps;
+    private final PCode body;
+
+    Block(
+      final int[] in_slots,
+      final PCode[] in_steps,
+      final PCode in_body)
+    {
+      super(Kind.BLOCK);
+      this.slots = Objects.requireNonNull(in_slots, "Slots");
+      this.steps = Objects.requireNonNull(in_steps, "Steps");
+      this.body = Objects.requireNonNull(in_body, "Body");
+    }
+
+    int[] slots()
+    {
+      return this.slots;
+    }
+
+    PCode[] steps()
+    {
+      return this.steps;
+    }
+
+    PCode body()
+    {
+      return this.body;
+    }
+
+    void run(
+      final Object[] frame)
+    {
+      for (int index = 0; index < this.steps.length; ++index) {
+        final Object value = evaluate(this.steps[index], frame);
+        final int slot = this.slots[index];
+        if (slot != 0) {
+          frame[slot] = value;
+        }
+      }
+    }
+  }
+
+  /**
+   * A {@code match} expression. Unreachable cases have no body. If the
+   * selected case binds the payload of a variant value, the payload is
+   * stored in the frame at the case's slot.
+   */
+
+  static final class Match extends PCode
+  {
+    private final LexicalPosition<URI> lexical;
+    private final PCode target;
+    private final PMatchDecisionType decision;
+    private final PCode[] bodies;
+    private final int[] slots;
+
+    Match(
+      final LexicalPosition<URI> in_lexical,
+      final PCode in_target,
+      final PMatchDecisionType in_decision,
+      final PCode[] in_bodies,
+      final int[] in_slots)
+    {
+      super(Kind.MATCH);
+      this.lexical = Objects.requireNonNull(in_lexical, "Lexical");
+      this.target = Objects.requireNonNull(in_target, "Target");
+      this.decision = Objects.requireNonNull(in_decision, "Decision");
+      this.bodies = Objects.requireNonNull(in_bodies, "Bodies");
+      this.slots = Objects.requireNonNull(in_slots, "Slots");
+    }
+
+    LexicalPosition<URI> lexical()
+    {
+      return this.lexical;
+    }
+
+    PCode target()
+    {
+      return this.target;
+    }
+
+    PMatchDecisionType decision()
+    {
+      return this.decision;
+    }
+
+    PCode[] bodies()
+    {
+      return this.bodies;
+    }
+
+    int[] slots()
+    {
+      return this.slots;
+    }
+
+    PCode select(
+      final Object[] frame)
+    {
+      final Object value = evaluate(this.target, frame);
+      final int index = this.caseFor(value);
+      if (index == PMatchDecisionType.NO_CASE) {
+        throw error(this.lexical, "No case matches the value " + value);
+      }
+
+      final int slot = this.slots[index];
+      if (slot != 0) {
+        frame[slot] = ((PVariantValue) value).payload();
+      }
+      return this.bodies[index];
+    }
+
+    private int caseFor(
+      final Object value)
+    {
+      switch (this.decision.kind()) {
+        case DECISION_DEFAULT:
+          return this.decision.defaultCase();
+        case DECISION_CONSTRUCTOR:
+          return ((PMatchDecisionConstructor) this.decision)
+            .caseForTag(((PVariantValue) value).tag());
+        case DECISION_INTEGER:
+          return ((PInteger) value).caseIn((PMatchDecisionInteger) this.decision);
+        case DECISION_REAL:
+          return ((PMatchDecisionReal) this.decision)
+            .caseFor((BigDecimal) value);
+        case DECISION_STRING:
+          return ((PMatchDecisionString) this.decision)
+            .caseFor((String) value);
+      }
+      throw new UnreachableCodeException();
+    }
+  }
+}
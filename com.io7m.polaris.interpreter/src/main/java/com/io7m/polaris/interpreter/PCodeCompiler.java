@@ -0,0 +1,496 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.interpreter;
+
+import com.io7m.junreachable.UnreachableCodeException;
+import com.io7m.polaris.ast.PDeclarationFunction;
+import com.io7m.polaris.ast.PDeclarationValue;
+import com.io7m.polaris.ast.PExprReference;
+import com.io7m.polaris.ast.PExpressionMatcherType;
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.ast.PExpressionType;
+import com.io7m.polaris.ast.PExpressionType.PExprRecordFieldType;
+import com.io7m.polaris.ast.PNodeTableInt;
+import com.io7m.polaris.ast.PPatternType;
+import com.io7m.polaris.ast.PTermReferenceType;
+import com.io7m.polaris.ast.PTermVariableNameType;
+import com.io7m.polaris.compiler.PCompiledMatch;
+import com.io7m.polaris.compiler.PConstructorIndex;
+import com.io7m.polaris.compiler.PConstructorInfo;
+import com.io7m.polaris.compiler.PMatchCompiler;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.resolver.PBinding;
+import com.io7m.polaris.resolver.PResolvedUnit;
+import io.vavr.collection.Vector;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A compiler from the expressions of a single unit to {@link PCode}. Each
+ * variable binding is assigned a slot in the frame of the function that
+ * contains it; slots are never reused within a function, so a closure that
+ * captures a frame always observes the values bound when it was created.
+ * Expressions are traversed using an explicit stack, and so the Java stack
+ * depth used is independent of the depth of the expressions.
+ */
+
+final class PCodeCompiler
+  implements PExpressionMatcherType<PParsed, Void, RuntimeException>
+{
+  private final PConstructorIndex constructors;
+  private final Map<PBinding, PCode.Cell> cells;
+  private final Map<PBinding, PCode> constructor_values;
+  private final Map<PBinding, PRecordLayout> records;
+  private final PResolvedUnit unit;
+  private final PNodeTableInt levels;
+  private final PNodeTableInt slots;
+  private final ArrayDeque<Object> stack;
+  private final ArrayDeque<PCode> results;
+  private int[] next_slots;
+  private int level;
+
+  PCodeCompiler(
+    final PConstructorIndex in_constructors,
+    final Map<PBinding, PCode.Cell> in_cells,
+    final Map<PBinding, PCode> in_constructor_values,
+    final Map<PBinding, PRecordLayout> in_records,
+    final PResolvedUnit in_unit)
+  {
+    this.constructors = Objects.requireNonNull(in_constructors, "Constructors");
+    this.cells = Objects.requireNonNull(in_cells, "Cells");
+    this.constructor_values =
+      Objects.requireNonNull(in_constructor_values, "Constructor values");
+    this.records = Objects.requireNonNull(in_records, "Records");
+    this.unit = Objects.requireNonNull(in_unit, "Unit");
+    this.levels = PNodeTableInt.create(16, -1);
+    this.slots = PNodeTableInt.create(16, 0);
+    this.stack = new ArrayDeque<>(16);
+    this.results = new ArrayDeque<>(16);
+    this.next_slots = new int[8];
+    this.level = -1;
+  }
+
+  /**
+   * Compile a top-level function. Values are compiled as functions with no
+   * parameters.
+   *
+   * @param name       The name of the function
+   * @param parameters The parameters
+   * @param body       The body
+   *
+   * @return The compiled function
+   */
+
+  PCode.Function compileFunction(
+    final String name,
+    final Vector<PTermVariableNameType<PParsed>> parameters,
+    final PExpressionType<PParsed> body)
+  {
+    this.enterFunction(parameters);
+    this.stack.push(body);
+    while (!this.stack.isEmpty()) {
+      final Object top = this.stack.pop();
+      if (top instanceof Runnable) {
+        ((Runnable) top).run();
+      } else {
+        @SuppressWarnings("unchecked")
+        final PExpressionType<PParsed> x = (PExpressionType<PParsed>) top;
+        x.matchExpression(this);
+      }
+    }
+    return this.leaveFunction(name, parameters.size(), this.results.pop());
+  }
+
+  private void enterFunction(
+    final Vector<PTermVariableNameType<PParsed>> parameters)
+  {
+    ++this.level;
+    if (this.level == this.next_slots.length) {
+      this.next_slots = Arrays.copyOf(this.next_slots, this.level * 2);
+    }
+    this.next_slots[this.level] = 1;
+    for (final PTermVariableNameType<PParsed> p : parameters) {
+      this.bind(p);
+    }
+  }
+
+  private PCode.Function leaveFunction(
+    final String name,
+    final int arity,
+    final PCode body)
+  {
+    final int frame_size = this.next_slots[this.level];
+    --this.level;
+    return new PCode.Function(name, arity, frame_size, body);
+  }
+
+  private int bind(
+    final PTermVariableNameType<PParsed> name)
+  {
+    final int slot = this.next_slots[this.level];
+    this.next_slots[this.level] = slot + 1;
+    final int id = name.data().id();
+    this.levels.put(id, this.level);
+    this.slots.put(id, slot);
+    return slot;
+  }
+
+  private PCode[] popResults(
+    final int count)
+  {
+    final PCode[] popped = new PCode[count];
+    for (int index = count - 1; index >= 0; --index) {
+      popped[index] = this.results.pop();
+    }
+    return popped;
+  }
+
+  private PBinding termBinding(
+    final PTermReferenceType<PParsed> reference)
+  {
+    return this.unit.termBinding(reference)
+      .orElseThrow(() -> new IllegalArgumentException(
+        "Term reference must be resolved"));
+  }
+
+  private PCode constructorValue(
+    final PBinding binding)
+  {
+    final PCode value = this.constructor_values.get(binding);
+    if (value == null) {
+      throw new IllegalArgumentException(
+        "Constructor must be present in the index: " + binding);
+    }
+    return value;
+  }
+
+  private PCode variable(
+    final PBinding binding)
+  {
+    switch (binding.kind()) {
+      case TERM_LOCAL: {
+        final int id = binding.declaration();
+        return new PCode.Local(
+          this.level - this.levels.get(id), this.slots.get(id));
+      }
+      case TERM_UNIT:
+        return new PCode.Global(this.cells.get(binding));
+      case TERM_CONSTRUCTOR:
+      case TYPE_UNIT:
+      case TYPE_BUILTIN:
+      case TYPE_VARIABLE:
+        break;
+    }
+    throw new UnreachableCodeException();
+  }
+
+  /*
+   * Constants and references.
+   */
+
+  @Override
+  public Void constantInteger(
+    final PExpressionType.PExprConstantIntegerType<PParsed> e)
+  {
+    this.results.push(new PCode.Constant(PInteger.of(e.value())));
+    return null;
+  }
+
+  @Override
+  public Void constantReal(
+    final PExpressionType.PExprConstantRealType<PParsed> e)
+  {
+    this.results.push(new PCode.Constant(e.value()));
+    return null;
+  }
+
+  @Override
+  public Void constantString(
+    final PExpressionType.PExprConstantStringType<PParsed> e)
+  {
+    this.results.push(new PCode.Constant(e.value()));
+    return null;
+  }
+
+  @Override
+  public Void reference(
+    final PExpressionType.PExprReferenceType<PParsed> e)
+  {
+    final PTermReferenceType<PParsed> reference = e.reference();
+    final PBinding binding = this.termBinding(reference);
+    switch (reference.referenceKind()) {
+      case REFERENCE_CONSTRUCTOR: {
+        this.results.push(this.constructorValue(binding));
+        break;
+      }
+      case REFERENCE_VARIABLE: {
+        final PTermReferenceType.PTermReferenceVariableType<PParsed> v =
+          (PTermReferenceType.PTermReferenceVariableType<PParsed>) reference;
+        PCode code = this.variable(binding);
+        for (final PTermVariableNameType<PParsed> field : v.recordPath()) {
+          code = new PCode.Field(code, field.value());
+        }
+        this.results.push(code);
+        break;
+      }
+    }
+    return null;
+  }
+
+  /*
+   * Functions.
+   */
+
+  /**
+   * An application of a constructor that takes an argument is compiled to
+   * direct construction of a variant value.
+   */
+
+  @Override
+  public Void application(
+    final PExpressionType.PExprApplicationType<PParsed> e)
+  {
+    final Vector<PExpressionType<PParsed>> arguments = e.arguments();
+    final PConstructorInfo constructor = this.appliedConstructor(e);
+    if (constructor != null && arguments.size() == 1) {
+      this.stack.push((Runnable) () -> this.results.push(
+        new PCode.Construct(constructor, this.results.pop())));
+      this.stack.push(arguments.get(0));
+      return null;
+    }
+
+    this.stack.push((Runnable) () -> {
+      final PCode[] args = this.popResults(arguments.size());
+      this.results.push(new PCode.Apply(e.lexical(), this.results.pop(), args));
+    });
+    for (int index = arguments.size() - 1; index >= 0; --index) {
+      this.stack.push(arguments.get(index));
+    }
+    this.stack.push(e.function());
+    return null;
+  }
+
+  private PConstructorInfo appliedConstructor(
+    final PExpressionType.PExprApplicationType<PParsed> e)
+  {
+    if (e.function() instanceof PExprReference) {
+      final PTermReferenceType<PParsed> reference =
+        ((PExprReference<PParsed>) e.function()).reference();
+      if (reference.referenceKind()
+        == PTermReferenceType.ReferenceKind.REFERENCE_CONSTRUCTOR) {
+        return this.constructors.constructor(this.termBinding(reference))
+          .filter(PConstructorInfo::hasParameter)
+          .orElse(null);
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public Void lambda(
+    final PExpressionType.PExprLambdaType<PParsed> e)
+  {
+    this.pushFunction("λ", e.arguments(), e.expression());
+    return null;
+  }
+
+  /**
+   * Compile a function in a new frame. The parameters are bound when the
+   * function is reached on the stack, not when it is pushed.
+   */
+
+  private void pushFunction(
+    final String name,
+    final Vector<PTermVariableNameType<PParsed>> parameters,
+    final PExpressionType<PParsed> body)
+  {
+    this.stack.push((Runnable) () -> {
+      this.enterFunction(parameters);
+      this.stack.push((Runnable) () -> this.results.push(
+        new PCode.Lambda(
+          this.leaveFunction(name, parameters.size(), this.results.pop()))));
+      this.stack.push(body);
+    });
+  }
+
+  /*
+   * Local declarations.
+   */
+
+  /**
+   * Each value, function, and expression in a {@code local} expression
+   * becomes one step of a block. Functions are bound before their bodies are
+   * compiled, so that they may call themselves.
+   */
+
+  @Override
+  public Void local(
+    final PExpressionType.PExprLocalType<PParsed> e)
+  {
+    final Vector<PExpressionOrDeclarationType<PParsed>> locals = e.locals();
+    final int[] step_slots = new int[locals.size()];
+    final int[] step_count = new int[1];
+
+    this.stack.push((Runnable) () -> {
+      final PCode body = this.results.pop();
+      final PCode[] steps = this.popResults(step_count[0]);
+      this.results.push(new PCode.Block(
+        Arrays.copyOf(step_slots, step_count[0]), steps, body));
+    });
+    this.stack.push(e.body());
+
+    for (int index = locals.size() - 1; index >= 0; --index) {
+      final PExpressionOrDeclarationType<PParsed> local = locals.get(index);
+      if (local instanceof PDeclarationValue) {
+        final PDeclarationValue<PParsed> v = (PDeclarationValue<PParsed>) local;
+        this.stack.push((Runnable) () -> {
+          step_slots[step_count[0]] = this.bind(v.name());
+          ++step_count[0];
+        });
+        this.stack.push(v.expression());
+      } else if (local instanceof PDeclarationFunction) {
+        final PDeclarationFunction<PParsed> f =
+          (PDeclarationFunction<PParsed>) local;
+        this.pushFunction(f.name().value(), f.parameters(), f.expression());
+        this.stack.push((Runnable) () -> {
+          step_slots[step_count[0]] = this.bind(f.name());
+          ++step_count[0];
+        });
+      } else if (local instanceof PExpressionType) {
+        this.stack.push((Runnable) () -> ++step_count[0]);
+        this.stack.push(local);
+      }
+    }
+    return null;
+  }
+
+  /*
+   * Pattern matching.
+   */
+
+  /**
+   * The cases of a match are selected by the decision produced by the match
+   * compiler. Unreachable cases are not compiled.
+   */
+
+  @Override
+  public Void match(
+    final PExpressionType.PExprMatchType<PParsed> e)
+  {
+    final PCompiledMatch compiled =
+      PMatchCompiler.compile(this.constructors, this.unit, e);
+    final Vector<PExpressionType.PMatchCaseType<PParsed>> cases = e.cases();
+    final boolean[] reachable = new boolean[cases.size()];
+    Arrays.fill(reachable, true);
+    for (final Integer index : compiled.redundant()) {
+      reachable[index.intValue()] = false;
+    }
+
+    final int[] case_slots = new int[cases.size()];
+    this.stack.push((Runnable) () -> {
+      final PCode[] bodies = new PCode[cases.size()];
+      for (int index = cases.size() - 1; index >= 0; --index) {
+        if (reachable[index]) {
+          bodies[index] = this.results.pop();
+        }
+      }
+      this.results.push(new PCode.Match(
+        e.lexical(), this.results.pop(), compiled.decision(), bodies, case_slots));
+    });
+
+    for (int index = cases.size() - 1; index >= 0; --index) {
+      if (reachable[index]) {
+        final int case_index = index;
+        final PExpressionType.PMatchCaseType<PParsed> c = cases.get(index);
+        this.stack.push(c.expression());
+        this.stack.push((Runnable) () -> this.bindCase(case_slots, case_index, c));
+      }
+    }
+    this.stack.push(e.target());
+    return null;
+  }
+
+  private void bindCase(
+    final int[] case_slots,
+    final int index,
+    final PExpressionType.PMatchCaseType<PParsed> c)
+  {
+    final PPatternType<PParsed> pattern = c.pattern();
+    if (pattern instanceof PPatternType.PPatternConstructorType) {
+      ((PPatternType.PPatternConstructorType<PParsed>) pattern).argument()
+        .ifPresent(name -> case_slots[index] = this.bind(name));
+    }
+  }
+
+  /*
+   * Records.
+   */
+
+  @Override
+  public Void record(
+    final PExpressionType.PExprRecordType<PParsed> e)
+  {
+    final Vector<PExprRecordFieldType<PParsed>> fields = e.fields();
+    final PBinding binding =
+      this.unit.typeBinding(e.target())
+        .orElseThrow(() -> new IllegalArgumentException(
+          "Type reference must be resolved"));
+    final PRecordLayout layout = this.records.get(binding);
+    if (layout == null) {
+      throw new IllegalArgumentException(
+        "Record type must be declared: " + binding);
+    }
+    this.stack.push((Runnable) () -> this.results.push(
+      new PCode.Record(
+        binding, layout, fieldNames(fields), this.popResults(fields.size()))));
+    this.pushFields(fields);
+    return null;
+  }
+
+  @Override
+  public Void recordUpdate(
+    final PExpressionType.PExprRecordUpdateType<PParsed> e)
+  {
+    final Vector<PExprRecordFieldType<PParsed>> fields = e.fields();
+    this.stack.push((Runnable) () -> {
+      final PCode[] values = this.popResults(fields.size());
+      this.results.push(
+        new PCode.RecordUpdate(this.results.pop(), fieldNames(fields), values));
+    });
+    this.pushFields(fields);
+    this.stack.push(e.source());
+    return null;
+  }
+
+  private void pushFields(
+    final Vector<PExprRecordFieldType<PParsed>> fields)
+  {
+    for (int index = fields.size() - 1; index >= 0; --index) {
+      this.stack.push(fields.get(index).expression());
+    }
+  }
+
+  private static String[] fieldNames(
+    final Vector<PExprRecordFieldType<PParsed>> fields)
+  {
+    return fields.map(f -> f.field().value()).toJavaArray(String.class);
+  }
+}
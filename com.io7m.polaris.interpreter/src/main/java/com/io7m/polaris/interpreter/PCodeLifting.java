@@ -0,0 +1,628 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.interpreter;
+
+import com.io7m.jaffirm.core.Preconditions;
+import com.io7m.junreachable.UnreachableCodeException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lambda lifting for compiled functions.
+ *
+ * A function created by a {@code lambda} expression or a local function
+ * declaration is lifted if every use of it is a direct call with the
+ * correct number of arguments: that is, if the function is bound by a
+ * {@code local} expression and the variable to which it is bound is only
+ * ever applied, or if the {@code lambda} expression is itself applied. A
+ * lifted function no longer allocates a closure when its declaration is
+ * evaluated. Instead, each call passes it the variables that it captures,
+ * and so a lifted function has no enclosing frame.
+ *
+ * The free variables of each function are computed as a set of slots for
+ * each enclosing frame. The variables captured by a lifted function are its
+ * free variables, excluding other lifted functions, together with the
+ * variables captured by the lifted functions that it calls.
+ */
+
+final class PCodeLifting
+{
+  private final List<PCode.Function> path;
+  private final Map<PCode.Function, List<PCode.Function>> ancestors;
+  private final Map<PCode.Function, Map<PCode.Function, BitSet>> free;
+  private final Map<PCode.Function, Set<PCode.Function>> calls;
+  private final Map<PCode.Function, PCode.Function[]> bound;
+  private final Set<PCode.Function> candidates;
+  private final Set<PCode.Function> escaping;
+  private final Map<PCode.Function, Lifted> lifted;
+
+  private PCodeLifting()
+  {
+    this.path = new ArrayList<>(8);
+    this.ancestors = new IdentityHashMap<>(16);
+    this.free = new IdentityHashMap<>(16);
+    this.calls = new IdentityHashMap<>(16);
+    this.bound = new IdentityHashMap<>(16);
+    this.candidates = Collections.newSetFromMap(new IdentityHashMap<>(16));
+    this.escaping = Collections.newSetFromMap(new IdentityHashMap<>(16));
+    this.lifted = new IdentityHashMap<>(16);
+  }
+
+  /**
+   * Lift the functions nested within the given top-level function.
+   *
+   * @param function The function
+   *
+   * @return The function with lifted functions replaced by direct calls, or
+   * {@code function} if no functions can be lifted
+   */
+
+  static PCode.Function lift(
+    final PCode.Function function)
+  {
+    final PCodeLifting l = new PCodeLifting();
+    l.analyseFunction(function);
+    if (!l.solve()) {
+      return function;
+    }
+    return l.rewriteFunction(function);
+  }
+
+  private int here()
+  {
+    return this.path.size() - 1;
+  }
+
+  /**
+   * @return The function bound to {@code slot} of {@code owner} by a
+   * {@code local} expression, or {@code null} if the slot does not hold a
+   * function
+   */
+
+  private PCode.Function boundFunction(
+    final PCode.Function owner,
+    final int slot)
+  {
+    final PCode.Function[] functions = this.bound.get(owner);
+    return functions == null ? null : functions[slot];
+  }
+
+  /*
+   * Analysis.
+   */
+
+  private void analyseFunction(
+    final PCode.Function f)
+  {
+    this.ancestors.put(f, new ArrayList<>(this.path));
+    this.free.put(f, new IdentityHashMap<>(4));
+    this.calls.put(f, Collections.newSetFromMap(new IdentityHashMap<>(4)));
+    this.path.add(f);
+    this.analyse(f.body());
+    this.path.remove(this.here());
+  }
+
+  private void analyseAll(
+    final PCode[] codes)
+  {
+    for (final PCode code : codes) {
+      if (code != null) {
+        this.analyse(code);
+      }
+    }
+  }
+
+  private void analyse(
+    final PCode code)
+  {
+    switch (code.kind()) {
+      case CONSTANT:
+      case GLOBAL:
+        return;
+      case LOCAL:
+        this.analyseUse((PCode.Local) code, -1);
+        return;
+      case FIELD:
+        this.analyse(((PCode.Field) code).target());
+        return;
+      case CONSTRUCT:
+        this.analyse(((PCode.Construct) code).argument());
+        return;
+      case LAMBDA:
+        this.analyseFunction(((PCode.Lambda) code).function());
+        return;
+      case RECORD:
+        this.analyseAll(((PCode.Record) code).values());
+        return;
+      case RECORD_UPDATE: {
+        final PCode.RecordUpdate u = (PCode.RecordUpdate) code;
+        this.analyse(u.source());
+        this.analyseAll(u.values());
+        return;
+      }
+      case APPLY:
+        this.analyseApply((PCode.Apply) code);
+        return;
+      case CALL: {
+        final PCode.Call c = (PCode.Call) code;
+        this.analyseAll(c.arguments());
+        this.analyseAll(c.captures());
+        return;
+      }
+      case BLOCK:
+        this.analyseBlock((PCode.Block) code);
+        return;
+      case MATCH: {
+        final PCode.Match m = (PCode.Match) code;
+        this.analyse(m.target());
+        this.analyseAll(m.bodies());
+        return;
+      }
+    }
+    throw new UnreachableCodeException();
+  }
+
+  private void analyseApply(
+    final PCode.Apply a)
+  {
+    final PCode target = a.function();
+    final int count = a.arguments().length;
+    if (target.kind() == PCode.Kind.LOCAL) {
+      this.analyseUse((PCode.Local) target, count);
+    } else if (target.kind() == PCode.Kind.LAMBDA) {
+      final PCode.Function f = ((PCode.Lambda) target).function();
+      if (f.arity() == count) {
+        this.candidates.add(f);
+        this.analyseCall(f);
+      }
+      this.analyseFunction(f);
+    } else {
+      this.analyse(target);
+    }
+    this.analyseAll(a.arguments());
+  }
+
+  private void analyseBlock(
+    final PCode.Block b)
+  {
+    final PCode.Function owner = this.path.get(this.here());
+    final int[] slots = b.slots();
+    final PCode[] steps = b.steps();
+    for (int index = 0; index < steps.length; ++index) {
+      final int slot = slots[index];
+      final PCode step = steps[index];
+      if (slot != 0 && step.kind() == PCode.Kind.LAMBDA) {
+        final PCode.Function f = ((PCode.Lambda) step).function();
+        this.candidates.add(f);
+        this.bound.computeIfAbsent(owner, o -> new PCode.Function[o.frameSize()])[slot] = f;
+      }
+      this.analyse(step);
+    }
+    this.analyse(b.body());
+  }
+
+  /**
+   * Record a call to {@code f} in every enclosing function.
+   */
+
+  private void analyseCall(
+    final PCode.Function f)
+  {
+    for (int index = 1; index <= this.here(); ++index) {
+      this.calls.get(this.path.get(index)).add(f);
+    }
+  }
+
+  /**
+   * Record a use of a variable. The use is a direct call if {@code arity}
+   * is not negative. The variable is free in every function between the
+   * use and the binding of the variable.
+   */
+
+  private void analyseUse(
+    final PCode.Local l,
+    final int arity)
+  {
+    final int here = this.here();
+    final int owner_index = here - l.depth();
+    final PCode.Function owner = this.path.get(owner_index);
+
+    final PCode.Function f = this.boundFunction(owner, l.slot());
+    if (f != null) {
+      if (f.arity() == arity) {
+        this.analyseCall(f);
+      } else {
+        this.escaping.add(f);
+      }
+    }
+
+    for (int index = owner_index + 1; index <= here; ++index) {
+      this.free.get(this.path.get(index))
+        .computeIfAbsent(owner, o -> new BitSet(o.frameSize()))
+        .set(l.slot());
+    }
+  }
+
+  /*
+   * Capture lists.
+   */
+
+  /**
+   * Determine the functions that can be lifted, and the variables that each
+   * of them captures.
+   *
+   * @return {@code true} if any function can be lifted
+   */
+
+  private boolean solve()
+  {
+    final Map<PCode.Function, Map<PCode.Function, BitSet>> captured =
+      new IdentityHashMap<>(this.candidates.size());
+    for (final PCode.Function f : this.candidates) {
+      if (!this.escaping.contains(f)) {
+        captured.put(f, new IdentityHashMap<>(4));
+      }
+    }
+    if (captured.isEmpty()) {
+      return false;
+    }
+
+    for (final Map.Entry<PCode.Function, Map<PCode.Function, BitSet>> e : captured.entrySet()) {
+      this.captureFree(e.getKey(), e.getValue(), captured);
+    }
+
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (final Map.Entry<PCode.Function, Map<PCode.Function, BitSet>> e : captured.entrySet()) {
+        changed |= this.captureCallees(e.getKey(), e.getValue(), captured);
+      }
+    }
+
+    for (final Map.Entry<PCode.Function, Map<PCode.Function, BitSet>> e : captured.entrySet()) {
+      this.lifted.put(e.getKey(), this.liftedFunction(e.getKey(), e.getValue()));
+    }
+    return true;
+  }
+
+  /**
+   * Capture the free variables of {@code f}, other than those bound to lifted
+   * functions.
+   */
+
+  private void captureFree(
+    final PCode.Function f,
+    final Map<PCode.Function, BitSet> f_captured,
+    final Map<PCode.Function, Map<PCode.Function, BitSet>> captured)
+  {
+    for (final Map.Entry<PCode.Function, BitSet> v : this.free.get(f).entrySet()) {
+      final BitSet slots = (BitSet) v.getValue().clone();
+      final PCode.Function[] functions = this.bound.get(v.getKey());
+      if (functions != null) {
+        for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+          if (captured.containsKey(functions[slot])) {
+            slots.clear(slot);
+          }
+        }
+      }
+      f_captured.put(v.getKey(), slots);
+    }
+  }
+
+  /**
+   * Add the variables captured by the lifted functions called by {@code f}
+   * that are bound outside {@code f} to the variables captured by {@code f}.
+   */
+
+  private boolean captureCallees(
+    final PCode.Function f,
+    final Map<PCode.Function, BitSet> f_captured,
+    final Map<PCode.Function, Map<PCode.Function, BitSet>> captured)
+  {
+    final List<PCode.Function> outside = this.ancestors.get(f);
+    boolean changed = false;
+    for (final PCode.Function g : this.calls.get(f)) {
+      final Map<PCode.Function, BitSet> g_captured = captured.get(g);
+      if (g == f || g_captured == null) {
+        continue;
+      }
+      for (final Map.Entry<PCode.Function, BitSet> v : g_captured.entrySet()) {
+        final PCode.Function owner = v.getKey();
+        if (outside.contains(owner)) {
+          final BitSet slots =
+            f_captured.computeIfAbsent(owner, o -> new BitSet(o.frameSize()));
+          final int before = slots.cardinality();
+          slots.or(v.getValue());
+          changed |= slots.cardinality() != before;
+        }
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Order the captured variables from the outermost frame inwards, and
+   * allocate a slot for each after the existing slots of the function.
+   */
+
+  private Lifted liftedFunction(
+    final PCode.Function f,
+    final Map<PCode.Function, BitSet> f_captured)
+  {
+    final List<PCode.Function> owners = new ArrayList<>(8);
+    final List<Integer> slots = new ArrayList<>(8);
+    for (final PCode.Function owner : this.ancestors.get(f)) {
+      final BitSet bits = f_captured.get(owner);
+      if (bits != null) {
+        for (int slot = bits.nextSetBit(0); slot >= 0; slot = bits.nextSetBit(slot + 1)) {
+          owners.add(owner);
+          slots.add(Integer.valueOf(slot));
+        }
+      }
+    }
+
+    final int count = owners.size();
+    return new Lifted(
+      new PCode.Function(f.name(), f.arity(), f.frameSize() + count, count),
+      owners,
+      slots);
+  }
+
+  /*
+   * Rewriting.
+   */
+
+  private PCode.Function rewriteFunction(
+    final PCode.Function f)
+  {
+    this.path.add(f);
+    final PCode body = this.rewrite(f.body());
+    this.path.remove(this.here());
+    return new PCode.Function(f.name(), f.arity(), f.frameSize(), body);
+  }
+
+  private void defineLifted(
+    final PCode.Function f)
+  {
+    this.path.add(f);
+    final PCode body = this.rewrite(f.body());
+    this.path.remove(this.here());
+    this.lifted.get(f).function.setBody(body);
+  }
+
+  private PCode[] rewriteAll(
+    final PCode[] codes)
+  {
+    final PCode[] results = new PCode[codes.length];
+    for (int index = 0; index < codes.length; ++index) {
+      if (codes[index] != null) {
+        results[index] = this.rewrite(codes[index]);
+      }
+    }
+    return results;
+  }
+
+  private PCode rewrite(
+    final PCode code)
+  {
+    switch (code.kind()) {
+      case CONSTANT:
+      case GLOBAL:
+        return code;
+      case LOCAL: {
+        final PCode.Local l = (PCode.Local) code;
+        return this.reference(this.here() - l.depth(), l.slot());
+      }
+      case FIELD: {
+        final PCode.Field f = (PCode.Field) code;
+        return new PCode.Field(this.rewrite(f.target()), f.name());
+      }
+      case CONSTRUCT: {
+        final PCode.Construct c = (PCode.Construct) code;
+        return new PCode.Construct(c.constructor(), this.rewrite(c.argument()));
+      }
+      case LAMBDA:
+        return new PCode.Lambda(
+          this.rewriteFunction(((PCode.Lambda) code).function()));
+      case RECORD: {
+        final PCode.Record r = (PCode.Record) code;
+        return new PCode.Record(
+          r.binding(), r.layout(), r.names(), this.rewriteAll(r.values()));
+      }
+      case RECORD_UPDATE: {
+        final PCode.RecordUpdate u = (PCode.RecordUpdate) code;
+        return new PCode.RecordUpdate(
+          this.rewrite(u.source()), u.names(), this.rewriteAll(u.values()));
+      }
+      case APPLY:
+        return this.rewriteApply((PCode.Apply) code);
+      case CALL: {
+        final PCode.Call c = (PCode.Call) code;
+        return new PCode.Call(
+          c.lexical(),
+          c.function(),
+          this.rewriteAll(c.arguments()),
+          this.rewriteAll(c.captures()));
+      }
+      case BLOCK:
+        return this.rewriteBlock((PCode.Block) code);
+      case MATCH: {
+        final PCode.Match m = (PCode.Match) code;
+        return new PCode.Match(
+          m.lexical(),
+          this.rewrite(m.target()),
+          m.decision(),
+          this.rewriteAll(m.bodies()),
+          m.slots());
+      }
+    }
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * A reference to {@code slot} of the function at {@code owner_index} in
+   * the path. If the reference crosses a lifted function, it refers to the
+   * innermost such function's copy of the variable instead.
+   */
+
+  private PCode reference(
+    final int owner_index,
+    final int slot)
+  {
+    final int here = this.here();
+    final PCode.Function owner = this.path.get(owner_index);
+    for (int index = here; index > owner_index; --index) {
+      final Lifted l = this.lifted.get(this.path.get(index));
+      if (l != null) {
+        return new PCode.Local(here - index, l.slotOf(owner, slot));
+      }
+    }
+    return new PCode.Local(here - owner_index, slot);
+  }
+
+  private PCode rewriteApply(
+    final PCode.Apply a)
+  {
+    final PCode target = a.function();
+    if (target.kind() == PCode.Kind.LOCAL) {
+      final PCode.Local l = (PCode.Local) target;
+      final int owner_index = this.here() - l.depth();
+      final PCode.Function f =
+        this.boundFunction(this.path.get(owner_index), l.slot());
+      if (f != null && this.lifted.containsKey(f)) {
+        return this.call(a, f, owner_index);
+      }
+    } else if (target.kind() == PCode.Kind.LAMBDA) {
+      final PCode.Function f = ((PCode.Lambda) target).function();
+      if (this.lifted.containsKey(f)) {
+        this.defineLifted(f);
+        return this.call(a, f, this.here());
+      }
+    }
+
+    return new PCode.Apply(
+      a.lexical(), this.rewrite(target), this.rewriteAll(a.arguments()));
+  }
+
+  /**
+   * A call to the lifted function {@code f}, declared in the function at
+   * {@code owner_index} in the path.
+   */
+
+  private PCode call(
+    final PCode.Apply a,
+    final PCode.Function f,
+    final int owner_index)
+  {
+    final Lifted l = this.lifted.get(f);
+    final PCode[] captures = new PCode[l.owners.size()];
+    for (int index = 0; index < captures.length; ++index) {
+      final int captured_index =
+        this.path.lastIndexOf(l.owners.get(index));
+      Preconditions.checkPreconditionI(
+        captured_index,
+        captured_index >= 0 && captured_index <= owner_index,
+        x -> "Captured variable must be bound in an enclosing function");
+      captures[index] =
+        this.reference(captured_index, l.slots.get(index).intValue());
+    }
+    return new PCode.Call(
+      a.lexical(), l.function, this.rewriteAll(a.arguments()), captures);
+  }
+
+  /**
+   * Lifted functions are removed from blocks. A block that is left with no
+   * steps is replaced by its body.
+   */
+
+  private PCode rewriteBlock(
+    final PCode.Block b)
+  {
+    final int[] slots = b.slots();
+    final PCode[] steps = b.steps();
+    final int[] new_slots = new int[slots.length];
+    final List<PCode> new_steps = new ArrayList<>(steps.length);
+    for (int index = 0; index < steps.length; ++index) {
+      final PCode step = steps[index];
+      if (slots[index] != 0 && step.kind() == PCode.Kind.LAMBDA) {
+        final PCode.Function f = ((PCode.Lambda) step).function();
+        if (this.lifted.containsKey(f)) {
+          this.defineLifted(f);
+          continue;
+        }
+      }
+      new_slots[new_steps.size()] = slots[index];
+      new_steps.add(this.rewrite(step));
+    }
+
+    final PCode body = this.rewrite(b.body());
+    if (new_steps.isEmpty()) {
+      return body;
+    }
+    return new PCode.Block(
+      Arrays.copyOf(new_slots, new_steps.size()),
+      new_steps.toArray(new PCode[new_steps.size()]),
+      body);
+  }
+
+  /**
+   * A lifted function, and the variables that it captures.
+   */
+
+  private static final class Lifted
+  {
+    private final PCode.Function function;
+    private final List<PCode.Function> owners;
+    private final List<Integer> slots;
+
+    Lifted(
+      final PCode.Function in_function,
+      final List<PCode.Function> in_owners,
+      final List<Integer> in_slots)
+    {
+      this.function = in_function;
+      this.owners = in_owners;
+      this.slots = in_slots;
+    }
+
+    /**
+     * @return The slot in the lifted function's frame that holds the
+     * captured {@code slot} of {@code owner}
+     */
+
+    int slotOf(
+      final PCode.Function owner,
+      final int slot)
+    {
+      for (int index = 0; index < this.owners.size(); ++index) {
+        if (this.owners.get(index) == owner
+          && this.slots.get(index).intValue() == slot) {
+          return this.function.captureBase() + index;
+        }
+      }
+      throw new UnreachableCodeException();
+    }
+  }
+}
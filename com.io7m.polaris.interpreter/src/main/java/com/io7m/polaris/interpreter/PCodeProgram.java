@@ -0,0 +1,335 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.interpreter;
+
+import com.io7m.jlexing.core.LexicalPosition;
+import com.io7m.polaris.ast.PDeclarationFunction;
+import com.io7m.polaris.ast.PDeclarationRecord;
+import com.io7m.polaris.ast.PDeclarationValue;
+import com.io7m.polaris.ast.PDeclarationVariant;
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.compiler.PConstantFolder;
+import com.io7m.polaris.compiler.PConstructorIndex;
+import com.io7m.polaris.compiler.PConstructorInfo;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.resolver.PBinding;
+import com.io7m.polaris.resolver.PResolvedUnit;
+import io.vavr.collection.Vector;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * A set of units compiled to {@link PCode}: a cell for every top-level value
+ * and function, a layout for every record type, and a constant for every
+ * constructor. Constructors that do not take an argument are preallocated as
+ * a single {@link PVariantValue} each. Units are folded by
+ * {@link PConstantFolder} before they are compiled, and functions that are
+ * only called directly are lifted by {@link PCodeLifting}. The same code is
+ * executed by {@link PInterpreter} and compiled further by
+ * {@link PJVMProgram}. Top-level functions may be wrapped before the program
+ * is executed or compiled further, so that every call to the function goes
+ * through the wrapper.
+ */
+
+final class PCodeProgram
+{
+  private final Map<String, Map<String, PCode.Cell>> units;
+  private final List<PCode.Cell> cells;
+  private final Map<PBinding, PRecordLayout> records;
+  private final Map<PCode.Cell, UnaryOperator<PFunctionType>> wrappers;
+
+  private PCodeProgram(
+    final Map<String, Map<String, PCode.Cell>> in_units,
+    final List<PCode.Cell> in_cells,
+    final Map<PBinding, PRecordLayout> in_records)
+  {
+    this.units = Objects.requireNonNull(in_units, "Units");
+    this.cells = Objects.requireNonNull(in_cells, "Cells");
+    this.records = Objects.requireNonNull(in_records, "Records");
+    this.wrappers = new HashMap<>(16);
+  }
+
+  /**
+   * Compile the given units. The units must include every unit referenced by
+   * the units, and must have been type checked.
+   *
+   * @param resolved The units
+   *
+   * @return The compiled units
+   */
+
+  static PCodeProgram compile(
+    final Vector<PResolvedUnit> resolved)
+  {
+    Objects.requireNonNull(resolved, "Units");
+
+    final PConstructorIndex constructors = PConstructorIndex.of(resolved);
+    final Vector<PResolvedUnit> units =
+      resolved.map(u -> PConstantFolder.fold(constructors, u));
+    final Map<PBinding, PCode.Cell> cells = new HashMap<>(64);
+    final List<PCode.Cell> ordered = new ArrayList<>(64);
+    final Map<String, Map<String, PCode.Cell>> by_unit = new HashMap<>(16);
+    final Map<PBinding, PRecordLayout> records = new LinkedHashMap<>(16);
+    final Map<PBinding, PCode> constructor_values = new HashMap<>(64);
+
+    for (final PResolvedUnit unit : units) {
+      final Map<String, PCode.Cell> by_name = new HashMap<>(16);
+      for (final PExpressionOrDeclarationType<PParsed> d : unit.declarations()) {
+        if (d instanceof PDeclarationValue) {
+          final PDeclarationValue<PParsed> v = (PDeclarationValue<PParsed>) d;
+          ordered.add(declare(
+            cells, by_name, unit, v.name().value(), v.name().data().id(), v.lexical()));
+        } else if (d instanceof PDeclarationFunction) {
+          final PDeclarationFunction<PParsed> f = (PDeclarationFunction<PParsed>) d;
+          ordered.add(declare(
+            cells, by_name, unit, f.name().value(), f.name().data().id(), f.lexical()));
+        } else if (d instanceof PDeclarationRecord) {
+          final PDeclarationRecord<PParsed> r = (PDeclarationRecord<PParsed>) d;
+          records.put(
+            PBinding.of(PBinding.Kind.TYPE_UNIT, unit.name(), r.name().data().id()),
+            new PRecordLayout(
+              r.name().value(),
+              r.fields().map(f -> f.name().value()).toJavaArray(String.class)));
+        } else if (d instanceof PDeclarationVariant) {
+          final PDeclarationVariant<PParsed> v = (PDeclarationVariant<PParsed>) d;
+          for (final PConstructorInfo c : constructors.constructors(
+            PBinding.of(PBinding.Kind.TYPE_UNIT, unit.name(), v.name().data().id()))) {
+            constructor_values.put(c.binding(), constructorValue(c));
+          }
+        }
+      }
+      by_unit.put(unit.name(), by_name);
+    }
+
+    for (final PResolvedUnit unit : units) {
+      for (final PExpressionOrDeclarationType<PParsed> d : unit.declarations()) {
+        if (d instanceof PDeclarationValue) {
+          final PDeclarationValue<PParsed> v = (PDeclarationValue<PParsed>) d;
+          final PCodeCompiler compiler =
+            new PCodeCompiler(
+              constructors, cells, constructor_values, records, unit);
+          final PCode.Function code = compiler.compileFunction(
+            v.name().value(), Vector.empty(), v.expression());
+          cells.get(binding(unit, v.name().data().id()))
+            .setValueCode(guardCompile(
+              v.name().value(), () -> PCodeLifting.lift(code)));
+        } else if (d instanceof PDeclarationFunction) {
+          final PDeclarationFunction<PParsed> f = (PDeclarationFunction<PParsed>) d;
+          final PCodeCompiler compiler =
+            new PCodeCompiler(
+              constructors, cells, constructor_values, records, unit);
+          final PCode.Function code = compiler.compileFunction(
+            f.name().value(), f.parameters(), f.expression());
+          cells.get(binding(unit, f.name().data().id()))
+            .setFunctionCode(guardCompile(
+              f.name().value(), () -> PCodeLifting.lift(code)));
+        }
+      }
+    }
+
+    return new PCodeProgram(
+      by_unit,
+      Collections.unmodifiableList(ordered),
+      Collections.unmodifiableMap(records));
+  }
+
+  private static PCode constructorValue(
+    final PConstructorInfo c)
+  {
+    if (c.hasParameter()) {
+      return new PCode.Constant(new PCode.ConstructorFunction(c));
+    }
+    return new PCode.Constant(new PVariantValue(c, null));
+  }
+
+  private static PCode.Cell declare(
+    final Map<PBinding, PCode.Cell> cells,
+    final Map<String, PCode.Cell> by_name,
+    final PResolvedUnit unit,
+    final String name,
+    final int id,
+    final LexicalPosition<URI> lexical)
+  {
+    final PCode.Cell cell = new PCode.Cell(name, lexical);
+    cells.put(binding(unit, id), cell);
+    by_name.put(name, cell);
+    return cell;
+  }
+
+  private static PBinding binding(
+    final PResolvedUnit unit,
+    final int id)
+  {
+    return PBinding.of(PBinding.Kind.TERM_UNIT, unit.name(), id);
+  }
+
+  /**
+   * Evaluate {@code f}, reporting exhaustion of the Java stack as an
+   * evaluation error.
+   *
+   * @param name The name of the term being evaluated
+   * @param f    The evaluation
+   *
+   * @return The result of {@code f}
+   */
+
+  static Object guard(
+    final String name,
+    final Supplier<Object> f)
+  {
+    try {
+      return f.get();
+    } catch (final StackOverflowError e) {
+      throw new PEvaluationException(
+        Optional.empty(), "Stack exhausted evaluating " + name);
+    }
+  }
+
+  /**
+   * Compile {@code f}, reporting exhaustion of the Java stack as an
+   * evaluation error. {@link PCodeCompiler} uses an explicit stack, but the
+   * passes that run over the compiled code recurse on the Java stack.
+   *
+   * @param name The name of the term being compiled
+   * @param f    The compilation
+   * @param <A>  The type of compiled code
+   *
+   * @return The result of {@code f}
+   */
+
+  static <A> A guardCompile(
+    final String name,
+    final Supplier<A> f)
+  {
+    try {
+      return f.get();
+    } catch (final StackOverflowError e) {
+      throw new PEvaluationException(
+        Optional.empty(), "Stack exhausted compiling " + name);
+    }
+  }
+
+  /**
+   * @return The cells of all top-level values and functions, in declaration
+   * order
+   */
+
+  List<PCode.Cell> cells()
+  {
+    return this.cells;
+  }
+
+  /**
+   * @return The layouts of all record types
+   */
+
+  Map<PBinding, PRecordLayout> records()
+  {
+    return this.records;
+  }
+
+  /**
+   * @param unit The name of a unit
+   * @param name The name of a top-level term in the unit
+   *
+   * @return The cell of the term
+   *
+   * @throws IllegalArgumentException If there is no such term
+   */
+
+  PCode.Cell cell(
+    final String unit,
+    final String name)
+  {
+    Objects.requireNonNull(unit, "Unit");
+    Objects.requireNonNull(name, "Name");
+
+    final Map<String, PCode.Cell> by_name = this.units.get(unit);
+    if (by_name == null) {
+      throw new IllegalArgumentException("No such unit: " + unit);
+    }
+    final PCode.Cell cell = by_name.get(name);
+    if (cell == null) {
+      throw new IllegalArgumentException(
+        "No such term: " + unit + "." + name);
+    }
+    return cell;
+  }
+
+  /**
+   * Route every call to a top-level function through a wrapper. Calls to a
+   * wrapped function are never compiled to direct calls or loops, and so are
+   * not tail calls.
+   *
+   * @param unit    The name of a unit
+   * @param name    The name of a top-level function in the unit
+   * @param wrapper A function that wraps the function
+   *
+   * @throws IllegalArgumentException If there is no such function
+   */
+
+  void wrap(
+    final String unit,
+    final String name,
+    final UnaryOperator<PFunctionType> wrapper)
+  {
+    Objects.requireNonNull(wrapper, "Wrapper");
+
+    final PCode.Cell cell = this.cell(unit, name);
+    if (!cell.isFunction()) {
+      throw new IllegalArgumentException(
+        "Term " + unit + "." + name + " is not a function");
+    }
+    this.wrappers.put(cell, wrapper);
+    cell.setWrappedFunction(wrapper.apply((PFunctionType) cell.get()));
+  }
+
+  boolean isWrapped(
+    final PCode.Cell cell)
+  {
+    return this.wrappers.containsKey(cell);
+  }
+
+  /**
+   * @param cell The cell of a top-level function
+   * @param f    The function
+   *
+   * @return {@code f} passed through the wrapper of the function, if any
+   */
+
+  PFunctionType wrapped(
+    final PCode.Cell cell,
+    final PFunctionType f)
+  {
+    final UnaryOperator<PFunctionType> wrapper = this.wrappers.get(cell);
+    if (wrapper == null) {
+      return f;
+    }
+    return wrapper.apply(f);
+  }
+}
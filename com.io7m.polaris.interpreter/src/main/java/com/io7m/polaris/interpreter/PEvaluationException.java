@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.interpreter;
+
+import com.io7m.jlexing.core.LexicalPosition;
+
+import java.net.URI;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * An exception raised when evaluation fails, such as when no case of a
+ * {@code match} expression handles a value.
+ */
+
+public final class PEvaluationException extends RuntimeException
+{
+  private static final long serialVersionUID = 1L;
+
+  private final LexicalPosition<URI> lexical;
+
+  /**
+   * Construct an exception.
+   *
+   * @param in_lexical The lexical position of the failing expression, if any
+   * @param in_message The exception message
+   */
+
+  public PEvaluationException(
+    final Optional<LexicalPosition<URI>> in_lexical,
+    final String in_message)
+  {
+    super(Objects.requireNonNull(in_message, "Message"));
+    this.lexical = Objects.requireNonNull(in_lexical, "Lexical").orElse(null);
+  }
+
+  /**
+   * @return The lexical position of the failing expression, if any
+   */
+
+  public Optional<LexicalPosition<URI>> lexical()
+  {
+    return Optional.ofNullable(this.lexical);
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.interpreter;
+
+/**
+ * A count-min sketch that estimates how often each hash has been seen
+ * recently. Each estimate is held in four 4-bit counters, and so saturates
+ * at 15. When the number of recorded occurrences reaches ten times the
+ * capacity, every counter is halved, so that the sketch forgets old
+ * occurrences.
+ */
+
+final class PFrequencySketch
+{
+  private static final long RESET_MASK = 0x7777_7777_7777_7777L;
+  private static final long[] SEEDS = {
+    0xc3a5_c85c_97cb_3127L,
+    0xb492_b66f_be98_f273L,
+    0x9ae1_6a3b_2f90_404fL,
+    0xcbf2_9ce4_8422_2325L,
+  };
+
+  private final long[] table;
+  private final int mask;
+  private final int sample_size;
+  private int size;
+
+  /**
+   * Create a sketch.
+   *
+   * @param capacity The number of entries whose frequencies will be tracked
+   */
+
+  PFrequencySketch(
+    final int capacity)
+  {
+    final int length =
+      Integer.highestOneBit(Math.max(1, Math.min(capacity, 1 << 26) - 1)) << 1;
+    this.table = new long[length];
+    this.mask = (length << 4) - 1;
+    this.sample_size = (int) Math.min(10L * (long) capacity, Integer.MAX_VALUE);
+    this.size = 0;
+  }
+
+  private int counter(
+    final int hash,
+    final int row)
+  {
+    long h = ((long) hash + SEEDS[row]) * SEEDS[row];
+    h ^= h >>> 32;
+    return (int) h & this.mask;
+  }
+
+  private long value(
+    final int counter)
+  {
+    return (this.table[counter >>> 4] >>> ((counter & 15) << 2)) & 0xfL;
+  }
+
+  /**
+   * @param hash A hash
+   *
+   * @return The estimated number of recent occurrences of the hash
+   */
+
+  int frequency(
+    final int hash)
+  {
+    long minimum = 15L;
+    for (int row = 0; row < 4; ++row) {
+      minimum = Math.min(minimum, this.value(this.counter(hash, row)));
+    }
+    return (int) minimum;
+  }
+
+  /**
+   * Record an occurrence of the hash.
+   *
+   * @param hash A hash
+   */
+
+  void increment(
+    final int hash)
+  {
+    boolean added = false;
+    for (int row = 0; row < 4; ++row) {
+      final int counter = this.counter(hash, row);
+      if (this.value(counter) < 15L) {
+        this.table[counter >>> 4] += 1L << ((counter & 15) << 2);
+        added = true;
+      }
+    }
+
+    if (added) {
+      ++this.size;
+      if (this.size >= this.sample_size) {
+        this.reset();
+      }
+    }
+  }
+
+  private void reset()
+  {
+    for (int index = 0; index < this.table.length; ++index) {
+      this.table[index] = (this.table[index] >>> 1) & RESET_MASK;
+    }
+    this.size >>>= 1;
+  }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.interpreter;
+
+import com.io7m.polaris.compiler.PMatchDecisionInteger;
+
+import java.math.BigInteger;
+import java.util.Objects;
+
+/**
+ * The runtime representation of integers. An integer that fits into a
+ * {@code long} is held unboxed, and arithmetic on such integers uses
+ * {@code long} operations. Overflow is detected with the same tests as
+ * {@link Math#addExact(long, long)} and {@link Math#multiplyExact(long, long)},
+ * but without throwing, as promotion can be frequent. A result is promoted to
+ * a {@link BigInteger} only if it overflows, and a {@link BigInteger} result
+ * that fits into a {@code long} is demoted again, so every integer has
+ * exactly one representation. Integers in {@code [-128, 1023]} are cached.
+ */
+
+public final class PInteger extends Number implements Comparable<PInteger>
+{
+  /**
+   * The integer {@code 0}.
+   */
+
+  public static final PInteger ZERO;
+
+  /**
+   * The integer {@code 1}.
+   */
+
+  public static final PInteger ONE;
+
+  private static final long serialVersionUID = 1L;
+  private static final long CACHE_MINIMUM = -128L;
+  private static final long CACHE_MAXIMUM = 1023L;
+  private static final PInteger[] CACHE;
+
+  static {
+    CACHE = new PInteger[(int) (CACHE_MAXIMUM - CACHE_MINIMUM) + 1];
+    for (int index = 0; index < CACHE.length; ++index) {
+      CACHE[index] = new PInteger((long) index + CACHE_MINIMUM, null);
+    }
+    ZERO = of(0L);
+    ONE = of(1L);
+  }
+
+  private final long small;
+  private final BigInteger large;
+
+  private PInteger(
+    final long in_small,
+    final BigInteger in_large)
+  {
+    this.small = in_small;
+    this.large = in_large;
+  }
+
+  /**
+   * @param value The value
+   *
+   * @return An integer with the given value
+   */
+
+  public static PInteger of(
+    final long value)
+  {
+    if (value >= CACHE_MINIMUM && value <= CACHE_MAXIMUM) {
+      return CACHE[(int) (value - CACHE_MINIMUM)];
+    }
+    return new PInteger(value, null);
+  }
+
+  /**
+   * @param value The value
+   *
+   * @return An integer with the given value
+   */
+
+  public static PInteger of(
+    final BigInteger value)
+  {
+    Objects.requireNonNull(value, "Value");
+    if (value.bitLength() < Long.SIZE) {
+      return of(value.longValue());
+    }
+    return new PInteger(0L, value);
+  }
+
+  /**
+   * @return {@code true} iff the value fits into a {@code long}
+   */
+
+  public boolean isLong()
+  {
+    return this.large == null;
+  }
+
+  /**
+   * @return {@code true} iff the value fits into an {@code int}
+   */
+
+  public boolean isInt()
+  {
+    return this.large == null && this.small == (long) (int) this.small;
+  }
+
+  /**
+   * @return The value as a {@link BigInteger}
+   */
+
+  public BigInteger toBigInteger()
+  {
+    if (this.large != null) {
+      return this.large;
+    }
+    return BigInteger.valueOf(this.small);
+  }
+
+  /**
+   * @param other The other integer
+   *
+   * @return {@code this + other}
+   */
+
+  public PInteger add(
+    final PInteger other)
+  {
+    if (this.large == null && other.large == null) {
+      final long x = this.small;
+      final long y = other.small;
+      final long r = x + y;
+      if (((x ^ r) & (y ^ r)) >= 0L) {
+        return of(r);
+      }
+    }
+    return of(this.toBigInteger().add(other.toBigInteger()));
+  }
+
+  /**
+   * @param other The other integer
+   *
+   * @return {@code this - other}
+   */
+
+  public PInteger subtract(
+    final PInteger other)
+  {
+    if (this.large == null && other.large == null) {
+      final long x = this.small;
+      final long y = other.small;
+      final long r = x - y;
+      if (((x ^ y) & (x ^ r)) >= 0L) {
+        return of(r);
+      }
+    }
+    return of(this.toBigInteger().subtract(other.toBigInteger()));
+  }
+
+  /**
+   * @param other The other integer
+   *
+   * @return {@code this * other}
+   */
+
+  public PInteger multiply(
+    final PInteger other)
+  {
+    if (this.large == null && other.large == null) {
+      final long x = this.small;
+      final long y = other.small;
+      final long r = x * y;
+      if (Math.multiplyHigh(x, y) == (r >> 63)) {
+        return of(r);
+      }
+    }
+    return of(this.toBigInteger().multiply(other.toBigInteger()));
+  }
+
+  /**
+   * @return {@code -this}
+   */
+
+  public PInteger negate()
+  {
+    if (this.large == null && this.small != Long.MIN_VALUE) {
+      return of(-this.small);
+    }
+    return of(this.toBigInteger().negate());
+  }
+
+  /**
+   * @return The sign of the integer: {@code -1}, {@code 0}, or {@code 1}
+   */
+
+  public int signum()
+  {
+    if (this.large != null) {
+      return this.large.signum();
+    }
+    return Long.signum(this.small);
+  }
+
+  /**
+   * @param decision A decision over integer patterns
+   *
+   * @return The case of {@code decision} that handles this integer
+   */
+
+  int caseIn(
+    final PMatchDecisionInteger decision)
+  {
+    if (this.large == null) {
+      return decision.caseFor(this.small);
+    }
+    return decision.caseFor(this.large);
+  }
+
+  @Override
+  public int compareTo(
+    final PInteger other)
+  {
+    if (this.large == null && other.large == null) {
+      return Long.compare(this.small, other.small);
+    }
+    return this.toBigInteger().compareTo(other.toBigInteger());
+  }
+
+  @Override
+  public boolean equals(
+    final Object o)
+  {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || this.getClass() != o.getClass()) {
+      return false;
+    }
+    final PInteger other = (PInteger) o;
+    return this.small == other.small && Objects.equals(this.large, other.large);
+  }
+
+  @Override
+  public int hashCode()
+  {
+    if (this.large != null) {
+      return this.large.hashCode();
+    }
+    return Long.hashCode(this.small);
+  }
+
+  @Override
+  public String toString()
+  {
+    if (this.large != null) {
+      return this.large.toString();
+    }
+    return Long.toString(this.small);
+  }
+
+  @Override
+  public int intValue()
+  {
+    return (int) this.longValue();
+  }
+
+  @Override
+  public long longValue()
+  {
+    if (this.large != null) {
+      return this.large.longValue();
+    }
+    return this.small;
+  }
+
+  @Override
+  public float floatValue()
+  {
+    if (this.large != null) {
+      return this.large.floatValue();
+    }
+    return (float) this.small;
+  }
+
+  @Override
+  public double doubleValue()
+  {
+    if (this.large != null) {
+      return this.large.doubleValue();
+    }
+    return (double) this.small;
+  }
+}
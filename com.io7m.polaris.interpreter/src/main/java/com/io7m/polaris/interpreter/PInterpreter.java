@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.interpreter;
+
+import com.io7m.polaris.resolver.PResolvedUnit;
+import io.vavr.collection.Vector;
+
+import java.util.Objects;
+
+/**
+ * A tree-walking interpreter for resolved units.
+ *
+ * Units are compiled to a tree of code in which every reference to a local
+ * variable has been replaced with a (depth, slot) pair that addresses an
+ * array frame, and every reference to a top-level term has been replaced
+ * with a direct reference to the cell that holds its value. Calling a
+ * function allocates exactly one frame. Applications in tail position
+ * reuse the evaluation loop of the caller, and so tail-recursive functions
+ * run in constant Java stack space.
+ *
+ * Integers are represented as {@link PInteger}, reals as
+ * {@link java.math.BigDecimal}, strings as {@link String}, values of
+ * variant types as {@link PVariantValue}, records as {@link PRecordValue},
+ * and functions as {@link PFunctionType}.
+ */
+
+public final class PInterpreter implements PProgramType
+{
+  private final PCodeProgram program;
+
+  private PInterpreter(
+    final PCodeProgram in_program)
+  {
+    this.program = Objects.requireNonNull(in_program, "Program");
+  }
+
+  /**
+   * Compile the given units and evaluate their top-level values. The units
+   * must include every unit referenced by the units, and must have been
+   * type checked.
+   *
+   * @param units The units
+   *
+   * @return An interpreter
+   *
+   * @throws PEvaluationException If a term is nested too deeply to compile,
+   *                              or evaluating a top-level value fails
+   */
+
+  public static PInterpreter create(
+    final Vector<PResolvedUnit> units)
+    throws PEvaluationException
+  {
+    return create(PCodeProgram.compile(units));
+  }
+
+  /**
+   * Evaluate the top-level values of compiled units.
+   *
+   * @param program The compiled units
+   *
+   * @return An interpreter
+   *
+   * @throws PEvaluationException If evaluating a top-level value fails
+   */
+
+  static PInterpreter create(
+    final PCodeProgram program)
+    throws PEvaluationException
+  {
+    for (final PCode.Cell cell : program.cells()) {
+      PCodeProgram.guard(cell.name(), cell::get);
+    }
+    return new PInterpreter(program);
+  }
+
+  @Override
+  public Object value(
+    final String unit,
+    final String name)
+  {
+    final PCode.Cell cell = this.program.cell(unit, name);
+    return PCodeProgram.guard(cell.name(), cell::get);
+  }
+
+  @Override
+  public Object call(
+    final String unit,
+    final String name,
+    final Object... arguments)
+    throws PEvaluationException
+  {
+    final Object f = this.value(unit, name);
+    if (!(f instanceof PFunctionType)) {
+      throw new IllegalArgumentException(
+        "Term " + unit + "." + name + " is not a function");
+    }
+    return ((PFunctionType) f).apply(arguments);
+  }
+}
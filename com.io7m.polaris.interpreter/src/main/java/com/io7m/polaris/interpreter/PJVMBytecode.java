@@ -0,0 +1,137 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.interpreter;
+
+import com.io7m.junreachable.UnreachableCodeException;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Names and instruction sequences shared by the class generators.
+ */
+
+final class PJVMBytecode
+{
+  static final String OBJECT = Type.getInternalName(Object.class);
+  static final String OBJECT_DESCRIPTOR = Type.getDescriptor(Object.class);
+  static final String FRAME = Type.getInternalName(Object[].class);
+  static final String FRAME_DESCRIPTOR = Type.getDescriptor(Object[].class);
+  static final String RUNTIME = Type.getInternalName(PJVMRuntime.class);
+  static final String RECORD = Type.getInternalName(PJVMRecord.class);
+  static final String LAYOUT_DESCRIPTOR = Type.getDescriptor(PRecordLayout.class);
+
+  private PJVMBytecode()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Create a class writer that computes stack map frames. Values are held in
+   * locals and on the stack as {@code Object} and cast immediately before
+   * use, so the common superclass of any two types can be taken to be
+   * {@code Object} without loading either.
+   *
+   * @return A class writer
+   */
+
+  static ClassWriter classWriter()
+  {
+    return new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+      @Override
+      protected String getCommonSuperClass(
+        final String type1,
+        final String type2)
+      {
+        return OBJECT;
+      }
+    };
+  }
+
+  /**
+   * Push an integer constant using the shortest available instruction.
+   *
+   * @param method The method
+   * @param value  The value
+   */
+
+  static void pushInt(
+    final MethodVisitor method,
+    final int value)
+  {
+    if (value >= -1 && value <= 5) {
+      method.visitInsn(Opcodes.ICONST_0 + value);
+    } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+      method.visitIntInsn(Opcodes.BIPUSH, value);
+    } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+      method.visitIntInsn(Opcodes.SIPUSH, value);
+    } else {
+      method.visitLdcInsn(Integer.valueOf(value));
+    }
+  }
+
+  /**
+   * Throw an exception indicating that unreachable code was reached.
+   *
+   * @param method The method
+   */
+
+  static void throwUnreachable(
+    final MethodVisitor method)
+  {
+    method.visitMethodInsn(
+      Opcodes.INVOKESTATIC,
+      RUNTIME,
+      "unreachable",
+      "()" + Type.getDescriptor(RuntimeException.class),
+      false);
+    method.visitInsn(Opcodes.ATHROW);
+  }
+
+  /**
+   * @param count The number of fields in a record
+   *
+   * @return The descriptor of the constructor of a generated record class
+   */
+
+  static String recordConstructorDescriptor(
+    final int count)
+  {
+    final StringBuilder sb = new StringBuilder(64);
+    sb.append('(');
+    sb.append(LAYOUT_DESCRIPTOR);
+    for (int index = 0; index < count; ++index) {
+      sb.append(OBJECT_DESCRIPTOR);
+    }
+    sb.append(")V");
+    return sb.toString();
+  }
+
+  /**
+   * @param index The index of a field in a record layout
+   *
+   * @return The name of the field in the generated record class
+   */
+
+  static String recordField(
+    final int index)
+  {
+    return "f" + index;
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.interpreter;
+
+import com.io7m.jlexing.core.LexicalPosition;
+
+import java.net.URI;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A function value produced by generated code: the index of a compiled
+ * function and the frame in which the function was created.
+ */
+
+final class PJVMClosure implements PFunctionType
+{
+  private final PJVMCodeType code;
+  private final int index;
+  private final String name;
+  private final int arity;
+  private final int frame_size;
+  private final Object[] parent;
+
+  PJVMClosure(
+    final PJVMCodeType in_code,
+    final int in_index,
+    final String in_name,
+    final int in_arity,
+    final int in_frame_size,
+    final Object[] in_parent)
+  {
+    this.code = Objects.requireNonNull(in_code, "Code");
+    this.index = in_index;
+    this.name = Objects.requireNonNull(in_name, "Name");
+    this.arity = in_arity;
+    this.frame_size = in_frame_size;
+    this.parent = in_parent;
+  }
+
+  /**
+   * Call the function from generated code.
+   *
+   * @param arguments The arguments
+   * @param lexical   The lexical position of the application, if any
+   *
+   * @return The result of the function
+   */
+
+  Object call(
+    final Object[] arguments,
+    final Optional<LexicalPosition<URI>> lexical)
+  {
+    if (arguments.length != this.arity) {
+      throw new PEvaluationException(
+        lexical,
+        "Function " + this.name + " requires " + this.arity
+          + " arguments but received " + arguments.length);
+    }
+
+    final Object[] frame = new Object[this.frame_size];
+    frame[0] = this.parent;
+    System.arraycopy(arguments, 0, frame, 1, arguments.length);
+    return this.code.invoke(this.index, frame);
+  }
+
+  @Override
+  public Object apply(
+    final Object... arguments)
+  {
+    Objects.requireNonNull(arguments, "Arguments");
+    return PCodeProgram.guard(
+      this.name, () -> this.call(arguments, Optional.empty()));
+  }
+
+  @Override
+  public String toString()
+  {
+    return "<function " + this.name + ">";
+  }
+}
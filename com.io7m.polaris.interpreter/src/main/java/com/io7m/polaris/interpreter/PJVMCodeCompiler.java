@@ -0,0 +1,884 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.interpreter;
+
+import com.io7m.junreachable.UnreachableCodeException;
+import com.io7m.polaris.compiler.PConstructorInfo;
+import com.io7m.polaris.compiler.PMatchDecisionConstructor;
+import com.io7m.polaris.compiler.PMatchDecisionInteger;
+import com.io7m.polaris.compiler.PMatchDecisionType;
+import com.io7m.polaris.resolver.PBinding;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+import java.util.Optional;
+
+import static com.io7m.polaris.interpreter.PJVMBytecode.FRAME;
+import static com.io7m.polaris.interpreter.PJVMBytecode.FRAME_DESCRIPTOR;
+import static com.io7m.polaris.interpreter.PJVMBytecode.OBJECT;
+import static com.io7m.polaris.interpreter.PJVMBytecode.OBJECT_DESCRIPTOR;
+import static com.io7m.polaris.interpreter.PJVMBytecode.RUNTIME;
+
+/**
+ * A compiler from the body of a single function to the body of a static
+ * method {@code Object f(Object[] frame)}. Frames have the same layout as
+ * those of {@link PCode}, and the generated code mirrors the evaluation
+ * performed by {@link PCode#evaluate(PCode, Object[])}:
+ *
+ * Calls to top-level and lifted functions are compiled to direct static
+ * calls. Calls in tail position from a function to itself are compiled to
+ * jumps to the start of the method, and so run in constant Java stack
+ * space; other calls use the Java stack. Matches on constructors are compiled to
+ * {@code tableswitch} on the constructor tag, and matches on integers that
+ * fit into an {@code int} are compiled to {@code tableswitch} or
+ * {@code lookupswitch} on the value. Other matches select a case using
+ * their decision, and then jump with a {@code tableswitch} on the selected
+ * case.
+ */
+
+final class PJVMCodeCompiler
+{
+  private static final String CLOSURE = Type.getInternalName(PJVMClosure.class);
+  private static final String VARIANT = Type.getInternalName(PVariantValue.class);
+  private static final String CONSTRUCTOR_INFO =
+    Type.getInternalName(PConstructorInfo.class);
+  private static final String EXCEPTION_DESCRIPTOR =
+    Type.getDescriptor(PEvaluationException.class);
+  private static final String FUNCTION_DESCRIPTOR =
+    "(" + FRAME_DESCRIPTOR + ")" + OBJECT_DESCRIPTOR;
+
+  private final PJVMProgramCompiler program;
+  private final MethodVisitor method;
+  private final PCode.Function function;
+  private final PCode.Cell self_cell;
+  private final int self_slot;
+  private final Label start;
+  private int locals;
+
+  /**
+   * @param in_program   The program being compiled
+   * @param in_method    The method
+   * @param in_function  The function
+   * @param in_self_cell The cell of the function, if it is a top-level
+   *                     function
+   * @param in_self_slot The slot of the function in its parent's frame, if
+   *                     it is a local function, or {@code 0}
+   */
+
+  PJVMCodeCompiler(
+    final PJVMProgramCompiler in_program,
+    final MethodVisitor in_method,
+    final PCode.Function in_function,
+    final PCode.Cell in_self_cell,
+    final int in_self_slot)
+  {
+    this.program = Objects.requireNonNull(in_program, "Program");
+    this.method = Objects.requireNonNull(in_method, "Method");
+    this.function = Objects.requireNonNull(in_function, "Function");
+    this.self_cell = in_self_cell;
+    this.self_slot = in_self_slot;
+    this.start = new Label();
+    this.locals = 1;
+  }
+
+  static String functionDescriptor()
+  {
+    return FUNCTION_DESCRIPTOR;
+  }
+
+  void compile()
+  {
+    this.method.visitCode();
+    this.method.visitLabel(this.start);
+    this.emit(this.function.body(), true);
+    this.method.visitMaxs(0, 0);
+    this.method.visitEnd();
+  }
+
+  private int allocate(
+    final int count)
+  {
+    final int base = this.locals;
+    this.locals = base + count;
+    return base;
+  }
+
+  private void loadConstant(
+    final Object value,
+    final String cast)
+  {
+    this.program.loadConstant(this.method, this.program.constant(value), cast);
+  }
+
+  private void emit(
+    final PCode code,
+    final boolean tail)
+  {
+    switch (code.kind()) {
+      case CONSTANT:
+        this.emitConstant((PCode.Constant) code);
+        break;
+      case LOCAL:
+        this.emitLocal((PCode.Local) code);
+        break;
+      case GLOBAL:
+        this.emitGlobal((PCode.Global) code);
+        break;
+      case FIELD:
+        this.emitField((PCode.Field) code);
+        break;
+      case CONSTRUCT:
+        this.emitConstruct((PCode.Construct) code);
+        break;
+      case LAMBDA:
+        this.emitLambda((PCode.Lambda) code, 0);
+        break;
+      case RECORD:
+        this.emitRecord((PCode.Record) code);
+        break;
+      case RECORD_UPDATE:
+        this.emitRecordUpdate((PCode.RecordUpdate) code);
+        break;
+      case APPLY:
+        this.emitApply((PCode.Apply) code, tail);
+        return;
+      case CALL:
+        this.emitCall((PCode.Call) code, tail);
+        return;
+      case BLOCK:
+        this.emitBlock((PCode.Block) code, tail);
+        return;
+      case MATCH:
+        this.emitMatch((PCode.Match) code, tail);
+        return;
+    }
+
+    if (tail) {
+      this.method.visitInsn(Opcodes.ARETURN);
+    }
+  }
+
+  private void emitConstant(
+    final PCode.Constant c)
+  {
+    final Object value = c.value();
+    if (value instanceof String) {
+      this.method.visitLdcInsn(value);
+    } else {
+      this.loadConstant(value, null);
+    }
+  }
+
+  private void emitLocal(
+    final PCode.Local l)
+  {
+    this.method.visitVarInsn(Opcodes.ALOAD, 0);
+    for (int index = 0; index < l.depth(); ++index) {
+      this.method.visitInsn(Opcodes.ICONST_0);
+      this.method.visitInsn(Opcodes.AALOAD);
+      this.method.visitTypeInsn(Opcodes.CHECKCAST, FRAME);
+    }
+    PJVMBytecode.pushInt(this.method, l.slot());
+    this.method.visitInsn(Opcodes.AALOAD);
+  }
+
+  private void emitGlobal(
+    final PCode.Global g)
+  {
+    final PCode.Cell cell = g.cell();
+    if (cell.isFunction()) {
+      this.program.loadConstant(
+        this.method, this.program.closureConstant(cell), null);
+    } else {
+      this.method.visitMethodInsn(
+        Opcodes.INVOKESTATIC,
+        this.program.className(),
+        PJVMProgramCompiler.cellMethod(this.program.cellIndex(cell)),
+        "()" + OBJECT_DESCRIPTOR,
+        false);
+    }
+  }
+
+  private void emitField(
+    final PCode.Field f)
+  {
+    this.emit(f.target(), false);
+
+    final Optional<PBinding> owner = this.program.fieldOwner(f.name());
+    if (owner.isPresent()) {
+      final String type = this.program.recordClass(owner.get());
+      this.method.visitTypeInsn(Opcodes.CHECKCAST, type);
+      this.method.visitFieldInsn(
+        Opcodes.GETFIELD,
+        type,
+        PJVMBytecode.recordField(this.program.layout(owner.get()).index(f.name())),
+        OBJECT_DESCRIPTOR);
+      return;
+    }
+
+    this.method.visitLdcInsn(f.name());
+    this.method.visitMethodInsn(
+      Opcodes.INVOKESTATIC,
+      RUNTIME,
+      "field",
+      "(" + OBJECT_DESCRIPTOR + "Ljava/lang/String;)" + OBJECT_DESCRIPTOR,
+      false);
+  }
+
+  private void emitConstruct(
+    final PCode.Construct c)
+  {
+    this.method.visitTypeInsn(Opcodes.NEW, VARIANT);
+    this.method.visitInsn(Opcodes.DUP);
+    this.loadConstant(c.constructor(), CONSTRUCTOR_INFO);
+    this.emit(c.argument(), false);
+    this.method.visitMethodInsn(
+      Opcodes.INVOKESPECIAL,
+      VARIANT,
+      "<init>",
+      "(L" + CONSTRUCTOR_INFO + ";" + OBJECT_DESCRIPTOR + ")V",
+      false);
+  }
+
+  /**
+   * Create a closure. If the closure is stored in {@code slot} of the
+   * current frame by a {@code local} declaration, references in its body to
+   * that slot are references to the closure itself.
+   */
+
+  private void emitLambda(
+    final PCode.Lambda l,
+    final int slot)
+  {
+    final PCode.Function f = l.function();
+    final int index = this.program.function(f, null, slot);
+
+    this.method.visitTypeInsn(Opcodes.NEW, CLOSURE);
+    this.method.visitInsn(Opcodes.DUP);
+    this.program.loadConstant(
+      this.method,
+      PJVMProgramCompiler.CODE_CONSTANT,
+      Type.getInternalName(PJVMCodeType.class));
+    PJVMBytecode.pushInt(this.method, index);
+    this.method.visitLdcInsn(f.name());
+    PJVMBytecode.pushInt(this.method, f.arity());
+    PJVMBytecode.pushInt(this.method, f.frameSize());
+    this.method.visitVarInsn(Opcodes.ALOAD, 0);
+    this.method.visitMethodInsn(
+      Opcodes.INVOKESPECIAL,
+      CLOSURE,
+      "<init>",
+      "(" + Type.getDescriptor(PJVMCodeType.class)
+        + "ILjava/lang/String;II" + FRAME_DESCRIPTOR + ")V",
+      false);
+  }
+
+  private static int indexOf(
+    final String[] names,
+    final String name)
+  {
+    for (int index = 0; index < names.length; ++index) {
+      if (names[index].equals(name)) {
+        return index;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Evaluate {@code values} in order into consecutive locals starting at
+   * {@code base}.
+   */
+
+  private void emitValues(
+    final PCode[] values,
+    final int base)
+  {
+    for (int index = 0; index < values.length; ++index) {
+      this.emit(values[index], false);
+      this.method.visitVarInsn(Opcodes.ASTORE, base + index);
+    }
+  }
+
+  private void emitRecord(
+    final PCode.Record r)
+  {
+    final PRecordLayout layout = this.program.layout(r.binding());
+    final String type = this.program.recordClass(r.binding());
+    final String[] names = r.names();
+
+    final int mark = this.locals;
+    final int base = this.allocate(names.length);
+    this.emitValues(r.values(), base);
+
+    this.method.visitTypeInsn(Opcodes.NEW, type);
+    this.method.visitInsn(Opcodes.DUP);
+    this.loadConstant(layout, Type.getInternalName(PRecordLayout.class));
+    for (int index = 0; index < layout.size(); ++index) {
+      final int value = indexOf(names, layout.name(index));
+      if (value >= 0) {
+        this.method.visitVarInsn(Opcodes.ALOAD, base + value);
+      } else {
+        this.method.visitInsn(Opcodes.ACONST_NULL);
+      }
+    }
+    this.method.visitMethodInsn(
+      Opcodes.INVOKESPECIAL,
+      type,
+      "<init>",
+      PJVMBytecode.recordConstructorDescriptor(layout.size()),
+      false);
+    this.locals = mark;
+  }
+
+  private void emitRecordUpdate(
+    final PCode.RecordUpdate r)
+  {
+    final String[] names = r.names();
+    final Optional<PBinding> owner = this.program.updateOwner(names);
+    this.emit(r.source(), false);
+
+    if (owner.isPresent()) {
+      final PRecordLayout layout = this.program.layout(owner.get());
+      final String type = this.program.recordClass(owner.get());
+
+      final int mark = this.locals;
+      final int source = this.allocate(1);
+      this.method.visitTypeInsn(Opcodes.CHECKCAST, type);
+      this.method.visitVarInsn(Opcodes.ASTORE, source);
+      final int base = this.allocate(names.length);
+      this.emitValues(r.values(), base);
+
+      this.method.visitTypeInsn(Opcodes.NEW, type);
+      this.method.visitInsn(Opcodes.DUP);
+      this.loadConstant(layout, Type.getInternalName(PRecordLayout.class));
+      for (int index = 0; index < layout.size(); ++index) {
+        final int value = indexOf(names, layout.name(index));
+        if (value >= 0) {
+          this.method.visitVarInsn(Opcodes.ALOAD, base + value);
+        } else {
+          this.method.visitVarInsn(Opcodes.ALOAD, source);
+          this.method.visitFieldInsn(
+            Opcodes.GETFIELD, type, PJVMBytecode.recordField(index), OBJECT_DESCRIPTOR);
+        }
+      }
+      this.method.visitMethodInsn(
+        Opcodes.INVOKESPECIAL,
+        type,
+        "<init>",
+        PJVMBytecode.recordConstructorDescriptor(layout.size()),
+        false);
+      this.locals = mark;
+      return;
+    }
+
+    this.loadConstant(names, Type.getInternalName(String[].class));
+    this.emitArray(r.values(), 0);
+    this.method.visitMethodInsn(
+      Opcodes.INVOKESTATIC,
+      RUNTIME,
+      "update",
+      "(" + OBJECT_DESCRIPTOR + Type.getDescriptor(String[].class)
+        + FRAME_DESCRIPTOR + ")" + OBJECT_DESCRIPTOR,
+      false);
+  }
+
+  /**
+   * Push an array of {@code offset + values.length} elements whose elements
+   * from {@code offset} onwards are the given values.
+   */
+
+  private void emitArray(
+    final PCode[] values,
+    final int offset)
+  {
+    PJVMBytecode.pushInt(this.method, offset + values.length);
+    this.method.visitTypeInsn(Opcodes.ANEWARRAY, OBJECT);
+    this.emitStores(values, offset);
+  }
+
+  private boolean isSelf(
+    final PCode target)
+  {
+    switch (target.kind()) {
+      case GLOBAL:
+        return this.self_cell != null
+          && !this.program.isWrapped(this.self_cell)
+          && ((PCode.Global) target).cell() == this.self_cell;
+      case LOCAL: {
+        final PCode.Local l = (PCode.Local) target;
+        return this.self_slot != 0 && l.depth() == 1 && l.slot() == this.self_slot;
+      }
+      case CONSTANT:
+      case FIELD:
+      case CONSTRUCT:
+      case LAMBDA:
+      case RECORD:
+      case RECORD_UPDATE:
+      case APPLY:
+      case CALL:
+      case BLOCK:
+      case MATCH:
+        return false;
+    }
+    throw new UnreachableCodeException();
+  }
+
+  private boolean isDirect(
+    final PCode target,
+    final int arguments)
+  {
+    if (target.kind() == PCode.Kind.GLOBAL) {
+      final PCode.Cell cell = ((PCode.Global) target).cell();
+      return cell.isFunction()
+        && !this.program.isWrapped(cell)
+        && cell.code().arity() == arguments;
+    }
+    return false;
+  }
+
+  private void emitApply(
+    final PCode.Apply a,
+    final boolean tail)
+  {
+    final PCode target = a.function();
+    final PCode[] arguments = a.arguments();
+
+    if (tail && this.isSelf(target) && arguments.length == this.function.arity()) {
+      this.emitSelfTailCall(arguments, new PCode[0]);
+      return;
+    }
+
+    if (this.isDirect(target, arguments.length)) {
+      final PCode.Cell cell = ((PCode.Global) target).cell();
+      final PCode.Function f = cell.code();
+      final int index = this.program.function(f, cell, 0);
+
+      PJVMBytecode.pushInt(this.method, f.frameSize());
+      this.method.visitTypeInsn(Opcodes.ANEWARRAY, OBJECT);
+      this.emitStores(arguments, 1);
+      this.method.visitMethodInsn(
+        Opcodes.INVOKESTATIC,
+        this.program.className(),
+        PJVMProgramCompiler.functionMethod(index),
+        FUNCTION_DESCRIPTOR,
+        false);
+    } else {
+      this.emit(target, false);
+      this.emitArray(arguments, 0);
+      this.loadConstant(a.lexical(), null);
+      this.method.visitMethodInsn(
+        Opcodes.INVOKESTATIC,
+        RUNTIME,
+        "apply",
+        "(" + OBJECT_DESCRIPTOR + FRAME_DESCRIPTOR + OBJECT_DESCRIPTOR + ")"
+          + OBJECT_DESCRIPTOR,
+        false);
+    }
+
+    if (tail) {
+      this.method.visitInsn(Opcodes.ARETURN);
+    }
+  }
+
+  /**
+   * Calls to lifted functions are compiled to direct static calls, or to
+   * jumps if the call is a call in tail position from a lifted function to
+   * itself.
+   */
+
+  private void emitCall(
+    final PCode.Call c,
+    final boolean tail)
+  {
+    final PCode.Function f = c.function();
+    if (tail && f == this.function) {
+      this.emitSelfTailCall(c.arguments(), c.captures());
+      return;
+    }
+
+    final int index = this.program.function(f, null, 0);
+    PJVMBytecode.pushInt(this.method, f.frameSize());
+    this.method.visitTypeInsn(Opcodes.ANEWARRAY, OBJECT);
+    this.emitStores(c.arguments(), 1);
+    this.emitStores(c.captures(), f.captureBase());
+    this.method.visitMethodInsn(
+      Opcodes.INVOKESTATIC,
+      this.program.className(),
+      PJVMProgramCompiler.functionMethod(index),
+      FUNCTION_DESCRIPTOR,
+      false);
+
+    if (tail) {
+      this.method.visitInsn(Opcodes.ARETURN);
+    }
+  }
+
+  /**
+   * Store {@code values} into the array on the top of the stack, starting
+   * at {@code offset}, leaving the array on the stack.
+   */
+
+  private void emitStores(
+    final PCode[] values,
+    final int offset)
+  {
+    for (int index = 0; index < values.length; ++index) {
+      this.method.visitInsn(Opcodes.DUP);
+      PJVMBytecode.pushInt(this.method, offset + index);
+      this.emit(values[index], false);
+      this.method.visitInsn(Opcodes.AASTORE);
+    }
+  }
+
+  /**
+   * Evaluate the arguments and captured variables into a new frame that
+   * shares the parent of the current frame, make the new frame current, and
+   * jump to the start of the method. The current frame is not reused,
+   * because closures created by the current call may refer to it.
+   */
+
+  private void emitSelfTailCall(
+    final PCode[] arguments,
+    final PCode[] captures)
+  {
+    final int mark = this.locals;
+    final int frame = this.allocate(1);
+
+    PJVMBytecode.pushInt(this.method, this.function.frameSize());
+    this.method.visitTypeInsn(Opcodes.ANEWARRAY, OBJECT);
+    this.method.visitVarInsn(Opcodes.ASTORE, frame);
+
+    this.method.visitVarInsn(Opcodes.ALOAD, frame);
+    this.method.visitInsn(Opcodes.ICONST_0);
+    this.method.visitVarInsn(Opcodes.ALOAD, 0);
+    this.method.visitInsn(Opcodes.ICONST_0);
+    this.method.visitInsn(Opcodes.AALOAD);
+    this.method.visitInsn(Opcodes.AASTORE);
+
+    this.method.visitVarInsn(Opcodes.ALOAD, frame);
+    this.emitStores(arguments, 1);
+    this.emitStores(captures, this.function.captureBase());
+    this.method.visitInsn(Opcodes.POP);
+
+    this.method.visitVarInsn(Opcodes.ALOAD, frame);
+    this.method.visitVarInsn(Opcodes.ASTORE, 0);
+    this.method.visitJumpInsn(Opcodes.GOTO, this.start);
+    this.locals = mark;
+  }
+
+  private void emitBlock(
+    final PCode.Block b,
+    final boolean tail)
+  {
+    final int[] slots = b.slots();
+    final PCode[] steps = b.steps();
+    for (int index = 0; index < steps.length; ++index) {
+      final int slot = slots[index];
+      final PCode step = steps[index];
+      if (slot == 0) {
+        this.emit(step, false);
+        this.method.visitInsn(Opcodes.POP);
+        continue;
+      }
+
+      this.method.visitVarInsn(Opcodes.ALOAD, 0);
+      PJVMBytecode.pushInt(this.method, slot);
+      if (step.kind() == PCode.Kind.LAMBDA) {
+        this.emitLambda((PCode.Lambda) step, slot);
+      } else {
+        this.emit(step, false);
+      }
+      this.method.visitInsn(Opcodes.AASTORE);
+    }
+    this.emit(b.body(), tail);
+  }
+
+  private void emitMatch(
+    final PCode.Match m,
+    final boolean tail)
+  {
+    final PCode[] bodies = m.bodies();
+    final int[] slots = m.slots();
+
+    final int mark = this.locals;
+    final int target = this.allocate(1);
+    this.emit(m.target(), false);
+    this.method.visitVarInsn(Opcodes.ASTORE, target);
+
+    final Label fail = new Label();
+    final Label[] cases = new Label[bodies.length];
+    for (int index = 0; index < cases.length; ++index) {
+      cases[index] = bodies[index] == null ? fail : new Label();
+    }
+
+    this.emitDecision(m.decision(), target, cases, fail);
+
+    final Label end = new Label();
+    for (int index = 0; index < bodies.length; ++index) {
+      if (bodies[index] == null) {
+        continue;
+      }
+
+      this.method.visitLabel(cases[index]);
+      if (slots[index] != 0) {
+        this.method.visitVarInsn(Opcodes.ALOAD, 0);
+        PJVMBytecode.pushInt(this.method, slots[index]);
+        this.method.visitVarInsn(Opcodes.ALOAD, target);
+        this.method.visitTypeInsn(Opcodes.CHECKCAST, VARIANT);
+        this.method.visitMethodInsn(
+          Opcodes.INVOKEVIRTUAL, VARIANT, "payload", "()" + OBJECT_DESCRIPTOR, false);
+        this.method.visitInsn(Opcodes.AASTORE);
+      }
+      this.emit(bodies[index], tail);
+      if (!tail) {
+        this.method.visitJumpInsn(Opcodes.GOTO, end);
+      }
+    }
+
+    this.method.visitLabel(fail);
+    this.loadConstant(m.lexical(), null);
+    this.method.visitVarInsn(Opcodes.ALOAD, target);
+    this.method.visitMethodInsn(
+      Opcodes.INVOKESTATIC,
+      RUNTIME,
+      "noCase",
+      "(" + OBJECT_DESCRIPTOR + OBJECT_DESCRIPTOR + ")" + EXCEPTION_DESCRIPTOR,
+      false);
+    this.method.visitInsn(Opcodes.ATHROW);
+
+    if (!tail) {
+      this.method.visitLabel(end);
+    }
+    this.locals = mark;
+  }
+
+  private static Label caseLabel(
+    final Label[] cases,
+    final Label fail,
+    final int index)
+  {
+    return index == PMatchDecisionType.NO_CASE ? fail : cases[index];
+  }
+
+  private void emitDecision(
+    final PMatchDecisionType decision,
+    final int target,
+    final Label[] cases,
+    final Label fail)
+  {
+    final Label default_case = caseLabel(cases, fail, decision.defaultCase());
+    switch (decision.kind()) {
+      case DECISION_DEFAULT: {
+        this.method.visitJumpInsn(Opcodes.GOTO, default_case);
+        return;
+      }
+      case DECISION_CONSTRUCTOR: {
+        this.emitConstructorDecision(
+          (PMatchDecisionConstructor) decision, target, cases, fail, default_case);
+        return;
+      }
+      case DECISION_INTEGER: {
+        final PMatchDecisionInteger d = (PMatchDecisionInteger) decision;
+        if (fitsInt(d)) {
+          this.emitIntegerDecision(d, target, cases, fail, default_case);
+        } else {
+          this.emitLargeIntegerDecision(d, target, cases, fail, default_case);
+        }
+        return;
+      }
+      case DECISION_REAL: {
+        this.emitIndirectDecision(
+          decision, BigDecimal.class, target, cases, fail, default_case);
+        return;
+      }
+      case DECISION_STRING: {
+        this.emitIndirectDecision(
+          decision, String.class, target, cases, fail, default_case);
+        return;
+      }
+    }
+    throw new UnreachableCodeException();
+  }
+
+  private void emitConstructorDecision(
+    final PMatchDecisionConstructor d,
+    final int target,
+    final Label[] cases,
+    final Label fail,
+    final Label default_case)
+  {
+    final int count = d.constructors();
+    if (count == 0) {
+      this.method.visitJumpInsn(Opcodes.GOTO, default_case);
+      return;
+    }
+
+    final Label[] labels = new Label[count];
+    for (int tag = 0; tag < count; ++tag) {
+      labels[tag] = caseLabel(cases, fail, d.caseForTag(tag));
+    }
+
+    this.method.visitVarInsn(Opcodes.ALOAD, target);
+    this.method.visitTypeInsn(Opcodes.CHECKCAST, VARIANT);
+    this.method.visitMethodInsn(
+      Opcodes.INVOKEVIRTUAL, VARIANT, "tag", "()I", false);
+    this.method.visitTableSwitchInsn(0, count - 1, default_case, labels);
+  }
+
+  private static boolean fitsInt(
+    final PMatchDecisionInteger d)
+  {
+    if (d.hasLargeKeys()) {
+      return false;
+    }
+    for (int index = 0; index < d.keyCount(); ++index) {
+      final long key = d.key(index);
+      if (key < (long) Integer.MIN_VALUE || key > (long) Integer.MAX_VALUE) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Switch directly on the value of an integer. Values that do not fit into
+   * an {@code int} cannot match any pattern, and go to the default case.
+   */
+
+  private void emitIntegerDecision(
+    final PMatchDecisionInteger d,
+    final int target,
+    final Label[] cases,
+    final Label fail,
+    final Label default_case)
+  {
+    final int count = d.keyCount();
+    if (count == 0) {
+      this.method.visitJumpInsn(Opcodes.GOTO, default_case);
+      return;
+    }
+
+    final String integer = Type.getInternalName(PInteger.class);
+    final Label fits = new Label();
+    this.method.visitVarInsn(Opcodes.ALOAD, target);
+    this.method.visitTypeInsn(Opcodes.CHECKCAST, integer);
+    this.method.visitInsn(Opcodes.DUP);
+    this.method.visitMethodInsn(
+      Opcodes.INVOKEVIRTUAL, integer, "isInt", "()Z", false);
+    this.method.visitJumpInsn(Opcodes.IFNE, fits);
+    this.method.visitInsn(Opcodes.POP);
+    this.method.visitJumpInsn(Opcodes.GOTO, default_case);
+    this.method.visitLabel(fits);
+    this.method.visitMethodInsn(
+      Opcodes.INVOKEVIRTUAL, integer, "intValue", "()I", false);
+
+    final int minimum = (int) d.key(0);
+    final int maximum = (int) d.key(count - 1);
+    final long range = (long) maximum - (long) minimum + 1L;
+    if (range <= 2L * (long) count) {
+      final Label[] labels = new Label[(int) range];
+      for (int index = 0; index < labels.length; ++index) {
+        labels[index] = default_case;
+      }
+      for (int index = 0; index < count; ++index) {
+        labels[(int) (d.key(index) - (long) minimum)] =
+          caseLabel(cases, fail, d.keyCase(index));
+      }
+      this.method.visitTableSwitchInsn(minimum, maximum, default_case, labels);
+      return;
+    }
+
+    final int[] keys = new int[count];
+    final Label[] labels = new Label[count];
+    for (int index = 0; index < count; ++index) {
+      keys[index] = (int) d.key(index);
+      labels[index] = caseLabel(cases, fail, d.keyCase(index));
+    }
+    this.method.visitLookupSwitchInsn(default_case, keys, labels);
+  }
+
+  /**
+   * Select a case by calling {@code caseFor} on the decision, and then switch
+   * on the index of the selected case.
+   */
+
+  private void emitIndirectDecision(
+    final PMatchDecisionType decision,
+    final Class<?> type,
+    final int target,
+    final Label[] cases,
+    final Label fail,
+    final Label default_case)
+  {
+    final String decision_type = Type.getInternalName(decision.getClass());
+    this.loadConstant(decision, decision_type);
+    this.method.visitVarInsn(Opcodes.ALOAD, target);
+    this.method.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(type));
+    this.method.visitMethodInsn(
+      Opcodes.INVOKEVIRTUAL,
+      decision_type,
+      "caseFor",
+      "(" + Type.getDescriptor(type) + ")I",
+      false);
+    this.emitCaseSwitch(cases, fail, default_case);
+  }
+
+  /**
+   * Select a case by passing the decision to the integer, which chooses
+   * between the {@code long} and {@link java.math.BigInteger} lookups of the
+   * decision, and then switch on the index of the selected case.
+   */
+
+  private void emitLargeIntegerDecision(
+    final PMatchDecisionInteger decision,
+    final int target,
+    final Label[] cases,
+    final Label fail,
+    final Label default_case)
+  {
+    final String integer = Type.getInternalName(PInteger.class);
+    final String decision_type = Type.getInternalName(decision.getClass());
+    this.method.visitVarInsn(Opcodes.ALOAD, target);
+    this.method.visitTypeInsn(Opcodes.CHECKCAST, integer);
+    this.loadConstant(decision, decision_type);
+    this.method.visitMethodInsn(
+      Opcodes.INVOKEVIRTUAL,
+      integer,
+      "caseIn",
+      "(" + Type.getDescriptor(decision.getClass()) + ")I",
+      false);
+    this.emitCaseSwitch(cases, fail, default_case);
+  }
+
+  private void emitCaseSwitch(
+    final Label[] cases,
+    final Label fail,
+    final Label default_case)
+  {
+    final Label[] labels = new Label[cases.length + 1];
+    labels[0] = fail;
+    System.arraycopy(cases, 0, labels, 1, cases.length);
+    this.method.visitTableSwitchInsn(
+      PMatchDecisionType.NO_CASE, cases.length - 1, default_case, labels);
+  }
+}
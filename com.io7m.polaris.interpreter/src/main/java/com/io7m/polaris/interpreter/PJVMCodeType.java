@@ -0,0 +1,47 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.interpreter;
+
+/**
+ * The interface implemented by classes generated by {@link PJVMProgram}.
+ */
+
+interface PJVMCodeType
+{
+  /**
+   * Evaluate the body of a function.
+   *
+   * @param function The index of the function
+   * @param frame    A frame for the function, with the arguments stored
+   *
+   * @return The result of the function
+   */
+
+  Object invoke(
+    int function,
+    Object[] frame);
+
+  /**
+   * @param cell The index of a top-level value or function
+   *
+   * @return The value of the term
+   */
+
+  Object global(
+    int cell);
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.interpreter;
+
+import com.io7m.junreachable.UnreachableCodeException;
+import com.io7m.polaris.resolver.PBinding;
+import com.io7m.polaris.resolver.PResolvedUnit;
+import io.vavr.collection.Vector;
+import org.objectweb.asm.Type;
+
+import java.lang.invoke.MethodHandles;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A program compiled to JVM bytecode.
+ *
+ * Units are compiled to the same code as that executed by
+ * {@link PInterpreter}, and that code is then compiled to a class that
+ * contains a static method for every function. Records are compiled to
+ * classes that hold their fields in final fields. The classes are defined
+ * in the package of this class, in the class loader of this class, and so
+ * may call the package-private runtime functions directly.
+ *
+ * Values are represented as they are by {@link PInterpreter}, except that
+ * records are instances of {@link PRecordValueType} that are not instances
+ * of {@link PRecordValue}.
+ */
+
+public final class PJVMProgram implements PProgramType
+{
+  private static final AtomicLong PROGRAMS = new AtomicLong(0L);
+
+  private final PCodeProgram program;
+  private final PJVMCodeType code;
+  private final Map<PCode.Cell, Integer> cells;
+
+  private PJVMProgram(
+    final PCodeProgram in_program,
+    final PJVMCodeType in_code,
+    final Map<PCode.Cell, Integer> in_cells)
+  {
+    this.program = Objects.requireNonNull(in_program, "Program");
+    this.code = Objects.requireNonNull(in_code, "Code");
+    this.cells = Objects.requireNonNull(in_cells, "Cells");
+  }
+
+  /**
+   * Compile the given units and evaluate their top-level values. The units
+   * must include every unit referenced by the units, and must have been
+   * type checked.
+   *
+   * @param units The units
+   *
+   * @return A compiled program
+   *
+   * @throws PEvaluationException If a term is nested too deeply to compile,
+   *                              or evaluating a top-level value fails
+   */
+
+  public static PJVMProgram create(
+    final Vector<PResolvedUnit> units)
+    throws PEvaluationException
+  {
+    return create(PCodeProgram.compile(units));
+  }
+
+  /**
+   * Compile units to JVM bytecode and evaluate their top-level values.
+   *
+   * @param program The compiled units
+   *
+   * @return A compiled program
+   *
+   * @throws PEvaluationException If evaluating a top-level value fails
+   */
+
+  static PJVMProgram create(
+    final PCodeProgram program)
+    throws PEvaluationException
+  {
+    final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    final String prefix =
+      Type.getInternalName(PJVMProgram.class) + "$" + PROGRAMS.incrementAndGet();
+
+    final Map<PBinding, String> record_classes = new HashMap<>(16);
+    int record = 0;
+    for (final Map.Entry<PBinding, PRecordLayout> e : program.records().entrySet()) {
+      final String name = prefix + "$Record" + record;
+      define(lookup, PJVMRecordClasses.generate(name, e.getValue()));
+      record_classes.put(e.getKey(), name);
+      ++record;
+    }
+
+    final String name = prefix + "$Code";
+    final PJVMProgramCompiler compiler =
+      new PJVMProgramCompiler(name, program, record_classes);
+    final byte[] bytes = compiler.compile();
+    PJVMRuntime.offerConstants(name, compiler.constants());
+
+    final PJVMCodeType code;
+    try {
+      code = (PJVMCodeType) define(lookup, bytes).getConstructor().newInstance();
+    } catch (final ReflectiveOperationException e) {
+      throw new UnreachableCodeException(e);
+    }
+    compiler.link(code);
+
+    final List<PCode.Cell> ordered = program.cells();
+    final Map<PCode.Cell, Integer> cells = new IdentityHashMap<>(ordered.size());
+    for (int index = 0; index < ordered.size(); ++index) {
+      cells.put(ordered.get(index), Integer.valueOf(index));
+    }
+
+    final PJVMProgram p = new PJVMProgram(program, code, cells);
+    for (final PCode.Cell cell : ordered) {
+      p.global(cell);
+    }
+    return p;
+  }
+
+  private static Class<?> define(
+    final MethodHandles.Lookup lookup,
+    final byte[] bytes)
+  {
+    try {
+      return lookup.defineClass(bytes);
+    } catch (final IllegalAccessException e) {
+      throw new UnreachableCodeException(e);
+    }
+  }
+
+  private Object global(
+    final PCode.Cell cell)
+  {
+    final int index = this.cells.get(cell).intValue();
+    return PCodeProgram.guard(cell.name(), () -> this.code.global(index));
+  }
+
+  @Override
+  public Object value(
+    final String unit,
+    final String name)
+  {
+    return this.global(this.program.cell(unit, name));
+  }
+
+  @Override
+  public Object call(
+    final String unit,
+    final String name,
+    final Object... arguments)
+    throws PEvaluationException
+  {
+    final Object f = this.value(unit, name);
+    if (!(f instanceof PFunctionType)) {
+      throw new IllegalArgumentException(
+        "Term " + unit + "." + name + " is not a function");
+    }
+    return ((PFunctionType) f).apply(arguments);
+  }
+}
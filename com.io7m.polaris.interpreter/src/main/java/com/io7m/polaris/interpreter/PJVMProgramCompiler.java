@@ -0,0 +1,625 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.interpreter;
+
+import com.io7m.polaris.resolver.PBinding;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.io7m.polaris.interpreter.PJVMBytecode.FRAME_DESCRIPTOR;
+import static com.io7m.polaris.interpreter.PJVMBytecode.OBJECT;
+import static com.io7m.polaris.interpreter.PJVMBytecode.OBJECT_DESCRIPTOR;
+import static com.io7m.polaris.interpreter.PJVMBytecode.RUNTIME;
+
+/**
+ * A compiler from a {@link PCodeProgram} to a single class that implements
+ * {@link PJVMCodeType}. The class contains:
+ *
+ * A static method {@code f<n>} for every function, including lambdas and
+ * local functions, and the functions that compute top-level values.
+ *
+ * A static method {@code g<n>} for every top-level value, that computes the
+ * value on first use and caches it in a static field.
+ *
+ * A static array of constants that holds every value that cannot be
+ * expressed as a class file constant. The array is passed to the static
+ * initializer of the class through {@link PJVMRuntime}, and its first
+ * element is the instance of the class itself.
+ */
+
+final class PJVMProgramCompiler
+{
+  /**
+   * The index of the constant that holds the instance of the class.
+   */
+
+  static final int CODE_CONSTANT = 0;
+
+  private static final String CONSTANTS = "constants";
+  private static final String CODE = Type.getInternalName(PJVMCodeType.class);
+
+  private final String name;
+  private final PCodeProgram program;
+  private final Map<PBinding, String> record_classes;
+  private final Map<String, PBinding> field_owners;
+  private final List<Object> constants;
+  private final Map<Object, Integer> constant_indices;
+  private final List<FunctionInfo> functions;
+  private final Map<PCode.Function, Integer> function_indices;
+  private final Map<PCode.Cell, Integer> cell_indices;
+  private final int[] cell_closures;
+  private Object[] constant_values;
+
+  /**
+   * @param in_name           The internal name of the class
+   * @param in_program        The program
+   * @param in_record_classes The internal names of the classes generated
+   *                          for each record type
+   */
+
+  PJVMProgramCompiler(
+    final String in_name,
+    final PCodeProgram in_program,
+    final Map<PBinding, String> in_record_classes)
+  {
+    this.name = Objects.requireNonNull(in_name, "Name");
+    this.program = Objects.requireNonNull(in_program, "Program");
+    this.record_classes = Objects.requireNonNull(in_record_classes, "Record classes");
+    this.field_owners = fieldOwners(in_program.records());
+    this.constants = new ArrayList<>(64);
+    this.constant_indices = new IdentityHashMap<>(64);
+    this.functions = new ArrayList<>(64);
+    this.function_indices = new IdentityHashMap<>(64);
+    this.cell_indices = new IdentityHashMap<>(64);
+
+    this.constants.add(null);
+
+    final List<PCode.Cell> cells = in_program.cells();
+    this.cell_closures = new int[cells.size()];
+    for (int index = 0; index < cells.size(); ++index) {
+      final PCode.Cell cell = cells.get(index);
+      this.cell_indices.put(cell, Integer.valueOf(index));
+      if (cell.isFunction()) {
+        this.cell_closures[index] = this.constants.size();
+        this.constants.add(null);
+        this.function(cell.code(), cell, 0);
+      } else {
+        this.cell_closures[index] = -1;
+        this.function(cell.code(), null, 0);
+      }
+    }
+  }
+
+  /**
+   * Find the record type that declares each field name. Field names that are
+   * declared by more than one record type have no owner.
+   */
+
+  private static Map<String, PBinding> fieldOwners(
+    final Map<PBinding, PRecordLayout> records)
+  {
+    final Map<String, PBinding> owners = new HashMap<>(16);
+    final Set<String> shared = new HashSet<>(16);
+    for (final Map.Entry<PBinding, PRecordLayout> e : records.entrySet()) {
+      final PRecordLayout layout = e.getValue();
+      for (int index = 0; index < layout.size(); ++index) {
+        final String field = layout.name(index);
+        if (owners.put(field, e.getKey()) != null) {
+          shared.add(field);
+        }
+      }
+    }
+    owners.keySet().removeAll(shared);
+    return owners;
+  }
+
+  static String functionMethod(
+    final int index)
+  {
+    return "f" + index;
+  }
+
+  static String cellMethod(
+    final int index)
+  {
+    return "g" + index;
+  }
+
+  private static String cellValue(
+    final int index)
+  {
+    return "v" + index;
+  }
+
+  private static String cellState(
+    final int index)
+  {
+    return "s" + index;
+  }
+
+  String className()
+  {
+    return this.name;
+  }
+
+  int cellIndex(
+    final PCode.Cell cell)
+  {
+    return this.cell_indices.get(cell).intValue();
+  }
+
+  boolean isWrapped(
+    final PCode.Cell cell)
+  {
+    return this.program.isWrapped(cell);
+  }
+
+  int closureConstant(
+    final PCode.Cell cell)
+  {
+    return this.cell_closures[this.cellIndex(cell)];
+  }
+
+  String recordClass(
+    final PBinding record)
+  {
+    return this.record_classes.get(record);
+  }
+
+  PRecordLayout layout(
+    final PBinding record)
+  {
+    return this.program.records().get(record);
+  }
+
+  /**
+   * @param field The name of a field
+   *
+   * @return The only record type that declares {@code field}, if any
+   */
+
+  Optional<PBinding> fieldOwner(
+    final String field)
+  {
+    return Optional.ofNullable(this.field_owners.get(field));
+  }
+
+  /**
+   * @param fields The names of some fields
+   *
+   * @return The only record type that declares all of {@code fields}, if any
+   */
+
+  Optional<PBinding> updateOwner(
+    final String[] fields)
+  {
+    PBinding owner = null;
+    for (final Map.Entry<PBinding, PRecordLayout> e : this.program.records().entrySet()) {
+      if (declaresAll(e.getValue(), fields)) {
+        if (owner != null) {
+          return Optional.empty();
+        }
+        owner = e.getKey();
+      }
+    }
+    return Optional.ofNullable(owner);
+  }
+
+  private static boolean declaresAll(
+    final PRecordLayout layout,
+    final String[] fields)
+  {
+    for (final String field : fields) {
+      if (layout.index(field) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param value A value
+   *
+   * @return The index of the value in the constant array
+   */
+
+  int constant(
+    final Object value)
+  {
+    final Integer existing = this.constant_indices.get(value);
+    if (existing != null) {
+      return existing.intValue();
+    }
+    final int index = this.constants.size();
+    this.constants.add(value);
+    this.constant_indices.put(value, Integer.valueOf(index));
+    return index;
+  }
+
+  /**
+   * Push a constant.
+   *
+   * @param method The method
+   * @param index  The index of the constant
+   * @param cast   The internal name of the type of the constant, or
+   *               {@code null} if the constant is used as an {@code Object}
+   */
+
+  void loadConstant(
+    final MethodVisitor method,
+    final int index,
+    final String cast)
+  {
+    method.visitFieldInsn(Opcodes.GETSTATIC, this.name, CONSTANTS, FRAME_DESCRIPTOR);
+    PJVMBytecode.pushInt(method, index);
+    method.visitInsn(Opcodes.AALOAD);
+    if (cast != null) {
+      method.visitTypeInsn(Opcodes.CHECKCAST, cast);
+    }
+  }
+
+  /**
+   * Assign a method to a function. Each function is compiled once, when its
+   * method is generated.
+   *
+   * @param function The function
+   * @param cell     The cell of the function, if it is a top-level function
+   * @param slot     The slot of the function in its parent's frame, if it is
+   *                 a local function, or {@code 0}
+   *
+   * @return The index of the function
+   */
+
+  int function(
+    final PCode.Function function,
+    final PCode.Cell cell,
+    final int slot)
+  {
+    final Integer existing = this.function_indices.get(function);
+    if (existing != null) {
+      return existing.intValue();
+    }
+    final int index = this.functions.size();
+    this.functions.add(new FunctionInfo(function, cell, slot));
+    this.function_indices.put(function, Integer.valueOf(index));
+    return index;
+  }
+
+  /**
+   * Generate the class.
+   *
+   * @return The class file
+   */
+
+  byte[] compile()
+  {
+    final ClassWriter writer = PJVMBytecode.classWriter();
+    writer.visit(
+      Opcodes.V9,
+      Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER | Opcodes.ACC_SYNTHETIC,
+      this.name,
+      null,
+      OBJECT,
+      new String[]{CODE});
+
+    writer.visitField(
+      Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL,
+      CONSTANTS,
+      FRAME_DESCRIPTOR,
+      null,
+      null).visitEnd();
+
+    final List<PCode.Cell> cells = this.program.cells();
+    for (int index = 0; index < cells.size(); ++index) {
+      if (!cells.get(index).isFunction()) {
+        this.generateCell(writer, index, cells.get(index));
+      }
+    }
+
+    for (int index = 0; index < this.functions.size(); ++index) {
+      final FunctionInfo info = this.functions.get(index);
+      final MethodVisitor method =
+        writer.visitMethod(
+          Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC,
+          functionMethod(index),
+          PJVMCodeCompiler.functionDescriptor(),
+          null,
+          null);
+      PCodeProgram.guardCompile(info.function.name(), () -> {
+        new PJVMCodeCompiler(this, method, info.function, info.cell, info.slot)
+          .compile();
+        return method;
+      });
+    }
+
+    this.generateStaticInitializer(writer);
+    this.generateConstructor(writer);
+    this.generateInvoke(writer);
+    this.generateGlobal(writer);
+    writer.visitEnd();
+
+    this.constant_values = this.constants.toArray();
+    return writer.toByteArray();
+  }
+
+  /**
+   * @return The constants of the class; valid after {@link #compile()}
+   */
+
+  Object[] constants()
+  {
+    return this.constant_values;
+  }
+
+  /**
+   * Store the instance of the class, and the closures of the top-level
+   * functions, in the constant array. The closures of wrapped functions are
+   * stored wrapped.
+   *
+   * @param code The instance of the class
+   */
+
+  void link(
+    final PJVMCodeType code)
+  {
+    this.constant_values[CODE_CONSTANT] = code;
+
+    final List<PCode.Cell> cells = this.program.cells();
+    for (int index = 0; index < cells.size(); ++index) {
+      final PCode.Cell cell = cells.get(index);
+      if (cell.isFunction()) {
+        final PCode.Function f = cell.code();
+        this.constant_values[this.cell_closures[index]] =
+          this.program.wrapped(cell, new PJVMClosure(
+            code,
+            this.function_indices.get(f).intValue(),
+            f.name(),
+            f.arity(),
+            f.frameSize(),
+            null));
+      }
+    }
+  }
+
+  /**
+   * Generate the method that computes a top-level value on first use. The
+   * state field is {@code 0} before evaluation, {@code 1} during evaluation,
+   * and {@code 2} once the value is available.
+   */
+
+  private void generateCell(
+    final ClassWriter writer,
+    final int index,
+    final PCode.Cell cell)
+  {
+    final String value = cellValue(index);
+    final String state = cellState(index);
+    writer.visitField(
+      Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC, value, OBJECT_DESCRIPTOR, null, null)
+      .visitEnd();
+    writer.visitField(
+      Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC, state, "I", null, null)
+      .visitEnd();
+
+    final MethodVisitor method =
+      writer.visitMethod(
+        Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC,
+        cellMethod(index),
+        "()" + OBJECT_DESCRIPTOR,
+        null,
+        null);
+    method.visitCode();
+
+    final Label not_ready = new Label();
+    method.visitFieldInsn(Opcodes.GETSTATIC, this.name, state, "I");
+    method.visitInsn(Opcodes.ICONST_2);
+    method.visitJumpInsn(Opcodes.IF_ICMPNE, not_ready);
+    method.visitFieldInsn(Opcodes.GETSTATIC, this.name, value, OBJECT_DESCRIPTOR);
+    method.visitInsn(Opcodes.ARETURN);
+
+    final Label pending = new Label();
+    method.visitLabel(not_ready);
+    method.visitFieldInsn(Opcodes.GETSTATIC, this.name, state, "I");
+    method.visitJumpInsn(Opcodes.IFEQ, pending);
+    this.loadConstant(method, this.constant(cell.name()), null);
+    this.loadConstant(method, this.constant(cell.lexical()), null);
+    method.visitMethodInsn(
+      Opcodes.INVOKESTATIC,
+      RUNTIME,
+      "cyclic",
+      "(" + OBJECT_DESCRIPTOR + OBJECT_DESCRIPTOR + ")"
+        + Type.getDescriptor(PEvaluationException.class),
+      false);
+    method.visitInsn(Opcodes.ATHROW);
+
+    final Label try_start = new Label();
+    final Label try_end = new Label();
+    final Label handler = new Label();
+    method.visitTryCatchBlock(try_start, try_end, handler, null);
+
+    method.visitLabel(pending);
+    method.visitInsn(Opcodes.ICONST_1);
+    method.visitFieldInsn(Opcodes.PUTSTATIC, this.name, state, "I");
+    method.visitLabel(try_start);
+    final PCode.Function f = cell.code();
+    PJVMBytecode.pushInt(method, f.frameSize());
+    method.visitTypeInsn(Opcodes.ANEWARRAY, OBJECT);
+    method.visitMethodInsn(
+      Opcodes.INVOKESTATIC,
+      this.name,
+      functionMethod(this.function_indices.get(f).intValue()),
+      PJVMCodeCompiler.functionDescriptor(),
+      false);
+    method.visitFieldInsn(Opcodes.PUTSTATIC, this.name, value, OBJECT_DESCRIPTOR);
+    method.visitInsn(Opcodes.ICONST_2);
+    method.visitFieldInsn(Opcodes.PUTSTATIC, this.name, state, "I");
+    method.visitLabel(try_end);
+    method.visitFieldInsn(Opcodes.GETSTATIC, this.name, value, OBJECT_DESCRIPTOR);
+    method.visitInsn(Opcodes.ARETURN);
+
+    method.visitLabel(handler);
+    method.visitInsn(Opcodes.ICONST_0);
+    method.visitFieldInsn(Opcodes.PUTSTATIC, this.name, state, "I");
+    method.visitInsn(Opcodes.ATHROW);
+
+    method.visitMaxs(0, 0);
+    method.visitEnd();
+  }
+
+  private void generateStaticInitializer(
+    final ClassWriter writer)
+  {
+    final MethodVisitor method =
+      writer.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null);
+    method.visitCode();
+    method.visitLdcInsn(this.name);
+    method.visitMethodInsn(
+      Opcodes.INVOKESTATIC,
+      RUNTIME,
+      "takeConstants",
+      "(Ljava/lang/String;)" + FRAME_DESCRIPTOR,
+      false);
+    method.visitFieldInsn(Opcodes.PUTSTATIC, this.name, CONSTANTS, FRAME_DESCRIPTOR);
+    method.visitInsn(Opcodes.RETURN);
+    method.visitMaxs(0, 0);
+    method.visitEnd();
+  }
+
+  private void generateConstructor(
+    final ClassWriter writer)
+  {
+    final MethodVisitor method =
+      writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+    method.visitCode();
+    method.visitVarInsn(Opcodes.ALOAD, 0);
+    method.visitMethodInsn(Opcodes.INVOKESPECIAL, OBJECT, "<init>", "()V", false);
+    method.visitInsn(Opcodes.RETURN);
+    method.visitMaxs(0, 0);
+    method.visitEnd();
+  }
+
+  private static Label[] labels(
+    final int count)
+  {
+    final Label[] labels = new Label[count];
+    for (int index = 0; index < count; ++index) {
+      labels[index] = new Label();
+    }
+    return labels;
+  }
+
+  private void generateInvoke(
+    final ClassWriter writer)
+  {
+    final MethodVisitor method =
+      writer.visitMethod(
+        Opcodes.ACC_PUBLIC,
+        "invoke",
+        "(I" + FRAME_DESCRIPTOR + ")" + OBJECT_DESCRIPTOR,
+        null,
+        null);
+    method.visitCode();
+
+    final Label fail = new Label();
+    final Label[] labels = labels(this.functions.size());
+    if (labels.length > 0) {
+      method.visitVarInsn(Opcodes.ILOAD, 1);
+      method.visitTableSwitchInsn(0, labels.length - 1, fail, labels);
+      for (int index = 0; index < labels.length; ++index) {
+        method.visitLabel(labels[index]);
+        method.visitVarInsn(Opcodes.ALOAD, 2);
+        method.visitMethodInsn(
+          Opcodes.INVOKESTATIC,
+          this.name,
+          functionMethod(index),
+          PJVMCodeCompiler.functionDescriptor(),
+          false);
+        method.visitInsn(Opcodes.ARETURN);
+      }
+    }
+    method.visitLabel(fail);
+    PJVMBytecode.throwUnreachable(method);
+    method.visitMaxs(0, 0);
+    method.visitEnd();
+  }
+
+  private void generateGlobal(
+    final ClassWriter writer)
+  {
+    final MethodVisitor method =
+      writer.visitMethod(
+        Opcodes.ACC_PUBLIC, "global", "(I)" + OBJECT_DESCRIPTOR, null, null);
+    method.visitCode();
+
+    final List<PCode.Cell> cells = this.program.cells();
+    final Label fail = new Label();
+    final Label[] labels = labels(cells.size());
+    if (labels.length > 0) {
+      method.visitVarInsn(Opcodes.ILOAD, 1);
+      method.visitTableSwitchInsn(0, labels.length - 1, fail, labels);
+      for (int index = 0; index < labels.length; ++index) {
+        method.visitLabel(labels[index]);
+        if (cells.get(index).isFunction()) {
+          this.loadConstant(method, this.cell_closures[index], null);
+        } else {
+          method.visitMethodInsn(
+            Opcodes.INVOKESTATIC,
+            this.name,
+            cellMethod(index),
+            "()" + OBJECT_DESCRIPTOR,
+            false);
+        }
+        method.visitInsn(Opcodes.ARETURN);
+      }
+    }
+    method.visitLabel(fail);
+    PJVMBytecode.throwUnreachable(method);
+    method.visitMaxs(0, 0);
+    method.visitEnd();
+  }
+
+  private static final class FunctionInfo
+  {
+    private final PCode.Function function;
+    private final PCode.Cell cell;
+    private final int slot;
+
+    FunctionInfo(
+      final PCode.Function in_function,
+      final PCode.Cell in_cell,
+      final int in_slot)
+    {
+      this.function = in_function;
+      this.cell = in_cell;
+      this.slot = in_slot;
+    }
+  }
+}
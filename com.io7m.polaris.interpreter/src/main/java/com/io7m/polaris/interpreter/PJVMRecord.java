@@ -0,0 +1,102 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.interpreter;
+
+import com.io7m.junreachable.UnreachableCodeException;
+
+import java.util.Objects;
+
+/**
+ * The superclass of the record classes generated by {@link PJVMProgram}.
+ * Each generated class holds the fields of one record type in final fields,
+ * and overrides {@link #get(int)} and {@link #copy(Object[])}.
+ */
+
+class PJVMRecord implements PRecordValueType
+{
+  private final PRecordLayout layout;
+
+  PJVMRecord(
+    final PRecordLayout in_layout)
+  {
+    this.layout = Objects.requireNonNull(in_layout, "Layout");
+  }
+
+  final PRecordLayout layout()
+  {
+    return this.layout;
+  }
+
+  /**
+   * @param index The index of a field in the layout
+   *
+   * @return The value of the field
+   */
+
+  Object get(
+    final int index)
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * @param values The values of all fields, in layout order
+   *
+   * @return A record of the same type with the given values
+   */
+
+  PJVMRecord copy(
+    final Object[] values)
+  {
+    throw new UnreachableCodeException();
+  }
+
+  @Override
+  public final String type()
+  {
+    return this.layout.type();
+  }
+
+  @Override
+  public final Object field(
+    final String name)
+  {
+    final int index = this.layout.index(Objects.requireNonNull(name, "Name"));
+    if (index < 0) {
+      throw new IllegalArgumentException("No such field: " + name);
+    }
+    return this.get(index);
+  }
+
+  @Override
+  public final String toString()
+  {
+    final StringBuilder sb = new StringBuilder(64);
+    sb.append("(record ");
+    sb.append(this.layout.type());
+    for (int index = 0; index < this.layout.size(); ++index) {
+      sb.append(" [field ");
+      sb.append(this.layout.name(index));
+      sb.append(' ');
+      sb.append(this.get(index));
+      sb.append(']');
+    }
+    sb.append(')');
+    return sb.toString();
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.interpreter;
+
+import com.io7m.junreachable.UnreachableCodeException;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import static com.io7m.polaris.interpreter.PJVMBytecode.FRAME_DESCRIPTOR;
+import static com.io7m.polaris.interpreter.PJVMBytecode.LAYOUT_DESCRIPTOR;
+import static com.io7m.polaris.interpreter.PJVMBytecode.OBJECT_DESCRIPTOR;
+import static com.io7m.polaris.interpreter.PJVMBytecode.RECORD;
+
+/**
+ * Generation of record classes. The class generated for a record type
+ * extends {@link PJVMRecord} and holds each field of the record in a final
+ * field, in layout order.
+ */
+
+final class PJVMRecordClasses
+{
+  private PJVMRecordClasses()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Generate a class for a record type.
+   *
+   * @param name   The internal name of the class
+   * @param layout The layout of the record type
+   *
+   * @return The class file
+   */
+
+  static byte[] generate(
+    final String name,
+    final PRecordLayout layout)
+  {
+    final ClassWriter writer = PJVMBytecode.classWriter();
+    writer.visit(
+      Opcodes.V9,
+      Opcodes.ACC_FINAL | Opcodes.ACC_SUPER | Opcodes.ACC_SYNTHETIC,
+      name,
+      null,
+      RECORD,
+      null);
+
+    for (int index = 0; index < layout.size(); ++index) {
+      writer.visitField(
+        Opcodes.ACC_FINAL,
+        PJVMBytecode.recordField(index),
+        OBJECT_DESCRIPTOR,
+        null,
+        null).visitEnd();
+    }
+
+    generateConstructor(writer, name, layout);
+    generateGet(writer, name, layout);
+    generateCopy(writer, name, layout);
+    writer.visitEnd();
+    return writer.toByteArray();
+  }
+
+  private static void generateConstructor(
+    final ClassWriter writer,
+    final String name,
+    final PRecordLayout layout)
+  {
+    final MethodVisitor method =
+      writer.visitMethod(
+        0,
+        "<init>",
+        PJVMBytecode.recordConstructorDescriptor(layout.size()),
+        null,
+        null);
+
+    method.visitCode();
+    method.visitVarInsn(Opcodes.ALOAD, 0);
+    method.visitVarInsn(Opcodes.ALOAD, 1);
+    method.visitMethodInsn(
+      Opcodes.INVOKESPECIAL, RECORD, "<init>", "(" + LAYOUT_DESCRIPTOR + ")V", false);
+    for (int index = 0; index < layout.size(); ++index) {
+      method.visitVarInsn(Opcodes.ALOAD, 0);
+      method.visitVarInsn(Opcodes.ALOAD, index + 2);
+      method.visitFieldInsn(
+        Opcodes.PUTFIELD, name, PJVMBytecode.recordField(index), OBJECT_DESCRIPTOR);
+    }
+    method.visitInsn(Opcodes.RETURN);
+    method.visitMaxs(0, 0);
+    method.visitEnd();
+  }
+
+  private static void generateGet(
+    final ClassWriter writer,
+    final String name,
+    final PRecordLayout layout)
+  {
+    final MethodVisitor method =
+      writer.visitMethod(0, "get", "(I)" + OBJECT_DESCRIPTOR, null, null);
+
+    method.visitCode();
+    final Label fail = new Label();
+    if (layout.size() > 0) {
+      final Label[] labels = new Label[layout.size()];
+      for (int index = 0; index < labels.length; ++index) {
+        labels[index] = new Label();
+      }
+
+      method.visitVarInsn(Opcodes.ILOAD, 1);
+      method.visitTableSwitchInsn(0, labels.length - 1, fail, labels);
+      for (int index = 0; index < labels.length; ++index) {
+        method.visitLabel(labels[index]);
+        method.visitVarInsn(Opcodes.ALOAD, 0);
+        method.visitFieldInsn(
+          Opcodes.GETFIELD, name, PJVMBytecode.recordField(index), OBJECT_DESCRIPTOR);
+        method.visitInsn(Opcodes.ARETURN);
+      }
+    }
+    method.visitLabel(fail);
+    PJVMBytecode.throwUnreachable(method);
+    method.visitMaxs(0, 0);
+    method.visitEnd();
+  }
+
+  private static void generateCopy(
+    final ClassWriter writer,
+    final String name,
+    final PRecordLayout layout)
+  {
+    final MethodVisitor method =
+      writer.visitMethod(
+        0,
+        "copy",
+        "(" + FRAME_DESCRIPTOR + ")L" + RECORD + ";",
+        null,
+        null);
+
+    method.visitCode();
+    method.visitTypeInsn(Opcodes.NEW, name);
+    method.visitInsn(Opcodes.DUP);
+    method.visitVarInsn(Opcodes.ALOAD, 0);
+    method.visitMethodInsn(
+      Opcodes.INVOKEVIRTUAL, RECORD, "layout", "()" + LAYOUT_DESCRIPTOR, false);
+    for (int index = 0; index < layout.size(); ++index) {
+      method.visitVarInsn(Opcodes.ALOAD, 1);
+      PJVMBytecode.pushInt(method, index);
+      method.visitInsn(Opcodes.AALOAD);
+    }
+    method.visitMethodInsn(
+      Opcodes.INVOKESPECIAL,
+      name,
+      "<init>",
+      PJVMBytecode.recordConstructorDescriptor(layout.size()),
+      false);
+    method.visitInsn(Opcodes.ARETURN);
+    method.visitMaxs(0, 0);
+    method.visitEnd();
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.interpreter;
+
+import com.io7m.jlexing.core.LexicalPosition;
+import com.io7m.junreachable.UnreachableCodeException;
+
+import java.net.URI;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Functions called by code generated by {@link PJVMProgram}.
+ */
+
+final class PJVMRuntime
+{
+  private static final ConcurrentHashMap<String, Object[]> CONSTANTS =
+    new ConcurrentHashMap<>(4);
+
+  private PJVMRuntime()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Make the constants of a generated class available to the static
+   * initializer of the class.
+   *
+   * @param name      The name of the class
+   * @param constants The constants
+   */
+
+  static void offerConstants(
+    final String name,
+    final Object[] constants)
+  {
+    CONSTANTS.put(name, constants);
+  }
+
+  /**
+   * Called from the static initializer of a generated class.
+   *
+   * @param name The name of the class
+   *
+   * @return The constants of the class
+   */
+
+  static Object[] takeConstants(
+    final String name)
+  {
+    final Object[] constants = CONSTANTS.remove(name);
+    if (constants == null) {
+      throw new IllegalStateException("No constants for class " + name);
+    }
+    return constants;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Optional<LexicalPosition<URI>> lexical(
+    final Object lexical)
+  {
+    return Optional.of((LexicalPosition<URI>) lexical);
+  }
+
+  /**
+   * Apply a function value that is not known at compilation time.
+   *
+   * @param function  The function
+   * @param arguments The arguments
+   * @param lexical   The lexical position of the application
+   *
+   * @return The result of the function
+   */
+
+  static Object apply(
+    final Object function,
+    final Object[] arguments,
+    final Object lexical)
+  {
+    if (function instanceof PJVMClosure) {
+      return ((PJVMClosure) function).call(arguments, lexical(lexical));
+    }
+    return ((PFunctionType) function).apply(arguments);
+  }
+
+  /**
+   * Access a field of a record whose type is not known at compilation time.
+   *
+   * @param record The record
+   * @param name   The name of the field
+   *
+   * @return The value of the field
+   */
+
+  static Object field(
+    final Object record,
+    final String name)
+  {
+    return ((PRecordValueType) record).field(name);
+  }
+
+  /**
+   * Update a record whose type is not known at compilation time.
+   *
+   * @param record The record
+   * @param names  The names of the updated fields
+   * @param values The new values of the fields
+   *
+   * @return The updated record
+   */
+
+  static Object update(
+    final Object record,
+    final String[] names,
+    final Object[] values)
+  {
+    final PJVMRecord r = (PJVMRecord) record;
+    final PRecordLayout layout = r.layout();
+    final Object[] fields = new Object[layout.size()];
+    for (int index = 0; index < fields.length; ++index) {
+      fields[index] = r.get(index);
+    }
+    for (int index = 0; index < names.length; ++index) {
+      fields[layout.index(names[index])] = values[index];
+    }
+    return r.copy(fields);
+  }
+
+  static PEvaluationException noCase(
+    final Object lexical,
+    final Object value)
+  {
+    return new PEvaluationException(
+      lexical(lexical), "No case matches the value " + value);
+  }
+
+  static PEvaluationException cyclic(
+    final Object name,
+    final Object lexical)
+  {
+    return new PEvaluationException(
+      lexical(lexical), "The value of " + name + " depends on itself");
+  }
+
+  static RuntimeException unreachable()
+  {
+    return new UnreachableCodeException();
+  }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.interpreter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A bounded cache using W-TinyLFU admission and eviction. New entries enter
+ * a small LRU window. Entries leaving the window become candidates for the
+ * main region, which is a segmented LRU split into a probationary and a
+ * protected segment. When the cache is full, a candidate is admitted only if
+ * it has been seen more often recently than the least recently used
+ * probationary entry, as estimated by a {@link PFrequencySketch}; otherwise
+ * the candidate is evicted. An entry that is hit while probationary is
+ * promoted to the protected segment. All operations hold the lock of the
+ * cache.
+ *
+ * @param <K> The type of keys
+ * @param <V> The type of values
+ */
+
+final class PMemoCache<K, V>
+{
+  private static final int WINDOW = 0;
+  private static final int PROBATION = 1;
+  private static final int PROTECTED = 2;
+
+  private final Map<K, Node<K, V>> nodes;
+  private final PFrequencySketch sketch;
+  private final Node<K, V> window;
+  private final Node<K, V> probation;
+  private final Node<K, V> protect;
+  private final int maximum;
+  private final int window_maximum;
+  private final int protected_maximum;
+  private int window_size;
+  private int protected_size;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  /**
+   * Create a cache.
+   *
+   * @param in_maximum The maximum number of entries
+   */
+
+  PMemoCache(
+    final int in_maximum)
+  {
+    this.maximum = in_maximum;
+    this.window_maximum = Math.max(1, in_maximum / 100);
+    this.protected_maximum = (in_maximum - this.window_maximum) * 4 / 5;
+    this.nodes = new HashMap<>(Math.min(in_maximum, 1024));
+    this.sketch = new PFrequencySketch(in_maximum);
+    this.window = Node.sentinel();
+    this.probation = Node.sentinel();
+    this.protect = Node.sentinel();
+  }
+
+  /**
+   * @param key A key
+   *
+   * @return The value associated with the key, or {@code null} if there is
+   * no such value
+   */
+
+  synchronized V get(
+    final K key)
+  {
+    this.sketch.increment(key.hashCode());
+
+    final Node<K, V> node = this.nodes.get(key);
+    if (node == null) {
+      ++this.misses;
+      return null;
+    }
+
+    ++this.hits;
+    switch (node.queue) {
+      case WINDOW: {
+        node.moveToTail(this.window);
+        break;
+      }
+      case PROBATION: {
+        this.promote(node);
+        break;
+      }
+      default: {
+        node.moveToTail(this.protect);
+        break;
+      }
+    }
+    return node.value;
+  }
+
+  /**
+   * Associate a value with a key, evicting an entry if the cache is full.
+   *
+   * @param key   A key
+   * @param value A value
+   */
+
+  synchronized void put(
+    final K key,
+    final V value)
+  {
+    Objects.requireNonNull(value, "Value");
+
+    final Node<K, V> existing = this.nodes.get(key);
+    if (existing != null) {
+      existing.value = value;
+      return;
+    }
+
+    final Node<K, V> node = new Node<>(key, value);
+    this.nodes.put(key, node);
+    node.queue = WINDOW;
+    node.moveToTail(this.window);
+    ++this.window_size;
+
+    if (this.window_size > this.window_maximum) {
+      final Node<K, V> candidate = this.window.next;
+      --this.window_size;
+      candidate.queue = PROBATION;
+      candidate.moveToTail(this.probation);
+      if (this.nodes.size() > this.maximum) {
+        this.evict(candidate);
+      }
+    }
+  }
+
+  private void promote(
+    final Node<K, V> node)
+  {
+    node.queue = PROTECTED;
+    node.moveToTail(this.protect);
+    ++this.protected_size;
+
+    if (this.protected_size > this.protected_maximum) {
+      final Node<K, V> demoted = this.protect.next;
+      --this.protected_size;
+      demoted.queue = PROBATION;
+      demoted.moveToTail(this.probation);
+    }
+  }
+
+  private void evict(
+    final Node<K, V> candidate)
+  {
+    final Node<K, V> victim = this.probation.next;
+    if (victim == candidate
+      || this.sketch.frequency(candidate.key.hashCode())
+      <= this.sketch.frequency(victim.key.hashCode())) {
+      this.remove(candidate);
+    } else {
+      this.remove(victim);
+    }
+  }
+
+  private void remove(
+    final Node<K, V> node)
+  {
+    node.unlink();
+    this.nodes.remove(node.key);
+    ++this.evictions;
+  }
+
+  /**
+   * @return The number of entries in the cache
+   */
+
+  synchronized int size()
+  {
+    return this.nodes.size();
+  }
+
+  /**
+   * @return A snapshot of the statistics of the cache
+   */
+
+  synchronized PMemoizationStatistics statistics()
+  {
+    return PMemoizationStatistics.of(this.hits, this.misses, this.evictions);
+  }
+
+  private static final class Node<K, V>
+  {
+    private final K key;
+    private V value;
+    private int queue;
+    private Node<K, V> prev;
+    private Node<K, V> next;
+
+    Node(
+      final K in_key,
+      final V in_value)
+    {
+      this.key = in_key;
+      this.value = in_value;
+    }
+
+    static <K, V> Node<K, V> sentinel()
+    {
+      final Node<K, V> node = new Node<>(null, null);
+      node.prev = node;
+      node.next = node;
+      return node;
+    }
+
+    void unlink()
+    {
+      if (this.prev != null) {
+        this.prev.next = this.next;
+        this.next.prev = this.prev;
+        this.prev = null;
+        this.next = null;
+      }
+    }
+
+    void moveToTail(
+      final Node<K, V> list)
+    {
+      this.unlink();
+      this.prev = list.prev;
+      this.next = list;
+      list.prev.next = this;
+      list.prev = this;
+    }
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.interpreter;
+
+import com.io7m.polaris.compiler.PEntryPoint;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The key of a cached call: a function and its arguments. Arguments are
+ * hashed and compared structurally: variant values by constructor and
+ * payload, records by type and fields, and reals numerically. Functions are
+ * compared by identity. Values are traversed using an explicit stack, and so
+ * the Java stack depth used is independent of the depth of the values.
+ */
+
+final class PMemoKey
+{
+  private final PEntryPoint function;
+  private final Object[] arguments;
+  private final int hash;
+
+  PMemoKey(
+    final PEntryPoint in_function,
+    final Object[] in_arguments)
+  {
+    this.function = Objects.requireNonNull(in_function, "Function");
+    this.arguments = in_arguments.clone();
+    this.hash = 31 * in_function.hashCode() + hashValue(this.arguments);
+  }
+
+  private static Object[] fields(
+    final PRecordValueType record)
+  {
+    final PRecordLayout layout;
+    if (record instanceof PRecordValue) {
+      layout = ((PRecordValue) record).layout();
+    } else {
+      layout = ((PJVMRecord) record).layout();
+    }
+
+    final Object[] values = new Object[layout.size() + 1];
+    values[0] = layout.type();
+    for (int index = 0; index < layout.size(); ++index) {
+      values[index + 1] = record.field(layout.name(index));
+    }
+    return values;
+  }
+
+  private static int hashValue(
+    final Object value)
+  {
+    final ArrayDeque<Object> stack = new ArrayDeque<>(16);
+    stack.push(value);
+
+    int h = 1;
+    while (!stack.isEmpty()) {
+      final Object current = stack.pop();
+      if (current instanceof Object[]) {
+        final Object[] values = (Object[]) current;
+        h = 31 * h + values.length;
+        for (int index = values.length - 1; index >= 0; --index) {
+          pushNonNull(stack, values[index]);
+        }
+      } else if (current instanceof PVariantValue) {
+        final PVariantValue v = (PVariantValue) current;
+        h = 31 * h + v.constructor().binding().hashCode();
+        pushNonNull(stack, v.payload());
+      } else if (current instanceof PRecordValueType) {
+        stack.push(fields((PRecordValueType) current));
+      } else if (current instanceof BigDecimal) {
+        h = 31 * h + ((BigDecimal) current).stripTrailingZeros().hashCode();
+      } else if (current instanceof PFunctionType) {
+        h = 31 * h + System.identityHashCode(current);
+      } else {
+        h = 31 * h + current.hashCode();
+      }
+    }
+    return h;
+  }
+
+  private static void pushNonNull(
+    final ArrayDeque<Object> stack,
+    final Object value)
+  {
+    stack.push(value == null ? NullValue.NULL : value);
+  }
+
+  private static boolean equalValues(
+    final Object x,
+    final Object y)
+  {
+    final ArrayDeque<Object> stack = new ArrayDeque<>(16);
+    stack.push(y);
+    stack.push(x);
+
+    while (!stack.isEmpty()) {
+      final Object a = stack.pop();
+      final Object b = stack.pop();
+      if (a == b) {
+        continue;
+      }
+
+      if (a instanceof Object[] && b instanceof Object[]) {
+        final Object[] as = (Object[]) a;
+        final Object[] bs = (Object[]) b;
+        if (as.length != bs.length) {
+          return false;
+        }
+        for (int index = as.length - 1; index >= 0; --index) {
+          pushNonNull(stack, bs[index]);
+          pushNonNull(stack, as[index]);
+        }
+      } else if (a instanceof PVariantValue && b instanceof PVariantValue) {
+        final PVariantValue av = (PVariantValue) a;
+        final PVariantValue bv = (PVariantValue) b;
+        if (!av.constructor().binding().equals(bv.constructor().binding())) {
+          return false;
+        }
+        pushNonNull(stack, bv.payload());
+        pushNonNull(stack, av.payload());
+      } else if (a instanceof PRecordValueType && b instanceof PRecordValueType) {
+        stack.push(fields((PRecordValueType) b));
+        stack.push(fields((PRecordValueType) a));
+      } else if (!equalAtoms(a, b)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean equalAtoms(
+    final Object a,
+    final Object b)
+  {
+    if (a instanceof BigDecimal && b instanceof BigDecimal) {
+      return ((BigDecimal) a).compareTo((BigDecimal) b) == 0;
+    }
+    if (a instanceof PFunctionType) {
+      return false;
+    }
+    return a.equals(b);
+  }
+
+  @Override
+  public boolean equals(
+    final Object other)
+  {
+    if (this == other) {
+      return true;
+    }
+    if (other == null || this.getClass() != other.getClass()) {
+      return false;
+    }
+    final PMemoKey k = (PMemoKey) other;
+    return this.hash == k.hash
+      && this.function.equals(k.function)
+      && equalValues(this.arguments, k.arguments);
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return this.hash;
+  }
+
+  @Override
+  public String toString()
+  {
+    return this.function.unit() + "." + this.function.term()
+      + Arrays.toString(this.arguments);
+  }
+
+  private enum NullValue
+  {
+    NULL
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.interpreter;
+
+import com.io7m.jaffirm.core.Preconditions;
+import com.io7m.polaris.compiler.PEntryPoint;
+import com.io7m.polaris.core.PImmutableStyleType;
+import io.vavr.collection.Set;
+import org.immutables.value.Value;
+
+/**
+ * The configuration of a {@link PMemoizedProgram}.
+ */
+
+@PImmutableStyleType
+@Value.Immutable
+public interface PMemoizationConfigurationType
+{
+  /**
+   * @return The top-level functions whose results will be cached
+   */
+
+  @Value.Parameter
+  Set<PEntryPoint> functions();
+
+  /**
+   * @return The maximum number of results held in the cache
+   */
+
+  @Value.Parameter
+  int maximumSize();
+
+  /**
+   * Check preconditions for the type.
+   */
+
+  @Value.Check
+  default void checkPreconditions()
+  {
+    Preconditions.checkPreconditionI(
+      this.maximumSize(),
+      this.maximumSize() > 0,
+      s -> "Maximum size must be positive");
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.interpreter;
+
+import com.io7m.polaris.core.PImmutableStyleType;
+import org.immutables.value.Value;
+
+/**
+ * Statistics for the cache of a {@link PMemoizedProgram}.
+ */
+
+@PImmutableStyleType
+@Value.Immutable
+public interface PMemoizationStatisticsType
+{
+  /**
+   * @return The number of calls that were answered from the cache
+   */
+
+  @Value.Parameter
+  long hits();
+
+  /**
+   * @return The number of calls that were evaluated
+   */
+
+  @Value.Parameter
+  long misses();
+
+  /**
+   * @return The number of results that have been evicted from the cache
+   */
+
+  @Value.Parameter
+  long evictions();
+
+  /**
+   * @return The fraction of calls that were answered from the cache, or
+   * {@code 1.0} if there have been no calls
+   */
+
+  default double hitRate()
+  {
+    final long requests = this.hits() + this.misses();
+    if (requests == 0L) {
+      return 1.0;
+    }
+    return (double) this.hits() / (double) requests;
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.interpreter;
+
+import com.io7m.polaris.compiler.PEntryPoint;
+
+import java.util.Objects;
+
+/**
+ * A function whose results are cached. A call with arguments that are
+ * structurally equal to those of an earlier call returns the earlier result.
+ */
+
+final class PMemoizedFunction implements PFunctionType
+{
+  private final PEntryPoint function;
+  private final PFunctionType delegate;
+  private final PMemoCache<PMemoKey, Object> cache;
+
+  PMemoizedFunction(
+    final PEntryPoint in_function,
+    final PFunctionType in_delegate,
+    final PMemoCache<PMemoKey, Object> in_cache)
+  {
+    this.function = Objects.requireNonNull(in_function, "Function");
+    this.delegate = Objects.requireNonNull(in_delegate, "Delegate");
+    this.cache = Objects.requireNonNull(in_cache, "Cache");
+  }
+
+  @Override
+  public Object apply(
+    final Object... arguments)
+    throws PEvaluationException
+  {
+    final PMemoKey key = new PMemoKey(this.function, arguments);
+    final Object cached = this.cache.get(key);
+    if (cached != null) {
+      return cached;
+    }
+
+    final Object result = this.delegate.apply(arguments);
+    if (result != null) {
+      this.cache.put(key, result);
+    }
+    return result;
+  }
+
+  @Override
+  public String toString()
+  {
+    return this.delegate.toString();
+  }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.interpreter;
+
+import com.io7m.polaris.compiler.PEntryPoint;
+import com.io7m.polaris.resolver.PResolvedUnit;
+import io.vavr.collection.Vector;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * A program that caches the results of calls to selected top-level
+ * functions. Evaluation is pure, and so a call to a function with arguments
+ * that are structurally equal to those of an earlier call can return the
+ * earlier result. The cache is bounded, and admits and evicts results using
+ * W-TinyLFU. Programs may be called concurrently; concurrent calls that miss
+ * the cache may evaluate the same call more than once.
+ *
+ * A program created with {@link #createInterpreted(Vector,
+ * PMemoizationConfiguration)} or {@link #createCompiled(Vector,
+ * PMemoizationConfiguration)} caches every call to a selected function,
+ * including recursive calls and calls made by other functions in the
+ * program. Calls to a selected function are then never tail calls. A program
+ * created with {@link #create(PProgramType, PMemoizationConfiguration)}
+ * caches only the calls made through
+ * {@link #call(String, String, Object...)}.
+ */
+
+public final class PMemoizedProgram implements PProgramType
+{
+  private final PProgramType program;
+  private final PMemoizationConfiguration configuration;
+  private final PMemoCache<PMemoKey, Object> cache;
+  private final boolean internal;
+
+  private PMemoizedProgram(
+    final PProgramType in_program,
+    final PMemoizationConfiguration in_configuration,
+    final PMemoCache<PMemoKey, Object> in_cache,
+    final boolean in_internal)
+  {
+    this.program = Objects.requireNonNull(in_program, "Program");
+    this.configuration =
+      Objects.requireNonNull(in_configuration, "Configuration");
+    this.cache = Objects.requireNonNull(in_cache, "Cache");
+    this.internal = in_internal;
+  }
+
+  /**
+   * Cache calls to the given program.
+   *
+   * @param program       The program
+   * @param configuration The configuration
+   *
+   * @return A program
+   */
+
+  public static PMemoizedProgram create(
+    final PProgramType program,
+    final PMemoizationConfiguration configuration)
+  {
+    return new PMemoizedProgram(
+      program,
+      configuration,
+      new PMemoCache<>(configuration.maximumSize()),
+      false);
+  }
+
+  /**
+   * Compile the given units for {@link PInterpreter}, caching every call to
+   * the selected functions. Every selected function must exist and must be a
+   * function.
+   *
+   * @param units         The units
+   * @param configuration The configuration
+   *
+   * @return A program
+   *
+   * @throws PEvaluationException If a term is nested too deeply to compile,
+   *                              or evaluating a top-level value fails
+   */
+
+  public static PMemoizedProgram createInterpreted(
+    final Vector<PResolvedUnit> units,
+    final PMemoizationConfiguration configuration)
+    throws PEvaluationException
+  {
+    return createInternal(units, configuration, PInterpreter::create);
+  }
+
+  /**
+   * Compile the given units for {@link PJVMProgram}, caching every call to
+   * the selected functions. Every selected function must exist and must be a
+   * function.
+   *
+   * @param units         The units
+   * @param configuration The configuration
+   *
+   * @return A program
+   *
+   * @throws PEvaluationException If a term is nested too deeply to compile,
+   *                              or evaluating a top-level value fails
+   */
+
+  public static PMemoizedProgram createCompiled(
+    final Vector<PResolvedUnit> units,
+    final PMemoizationConfiguration configuration)
+    throws PEvaluationException
+  {
+    return createInternal(units, configuration, PJVMProgram::create);
+  }
+
+  private static PMemoizedProgram createInternal(
+    final Vector<PResolvedUnit> units,
+    final PMemoizationConfiguration configuration,
+    final Function<PCodeProgram, PProgramType> backend)
+  {
+    Objects.requireNonNull(configuration, "Configuration");
+
+    final PCodeProgram code = PCodeProgram.compile(units);
+    final PMemoCache<PMemoKey, Object> cache =
+      new PMemoCache<>(configuration.maximumSize());
+    for (final PEntryPoint function : configuration.functions()) {
+      code.wrap(
+        function.unit(),
+        function.term(),
+        f -> new PMemoizedFunction(function, f, cache));
+    }
+    return new PMemoizedProgram(
+      backend.apply(code), configuration, cache, true);
+  }
+
+  /**
+   * @return A snapshot of the cache statistics
+   */
+
+  public PMemoizationStatistics statistics()
+  {
+    return this.cache.statistics();
+  }
+
+  @Override
+  public Object value(
+    final String unit,
+    final String name)
+    throws PEvaluationException
+  {
+    return this.program.value(unit, name);
+  }
+
+  @Override
+  public Object call(
+    final String unit,
+    final String name,
+    final Object... arguments)
+    throws PEvaluationException
+  {
+    if (this.internal) {
+      return this.program.call(unit, name, arguments);
+    }
+
+    final PEntryPoint function = PEntryPoint.of(unit, name);
+    if (!this.configuration.functions().contains(function)) {
+      return this.program.call(unit, name, arguments);
+    }
+
+    return new PMemoizedFunction(
+      function, args -> this.program.call(unit, name, args), this.cache)
+      .apply(arguments);
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.interpreter;
+
+/**
+ * The type of executable programs.
+ */
+
+public interface PProgramType
+{
+  /**
+   * @param unit The name of a unit
+   * @param name The name of a top-level value or function in the unit
+   *
+   * @return The value of the term
+   *
+   * @throws PEvaluationException If evaluation fails
+   */
+
+  Object value(
+    String unit,
+    String name)
+    throws PEvaluationException;
+
+  /**
+   * Call a top-level function.
+   *
+   * @param unit      The name of a unit
+   * @param name      The name of a top-level function in the unit
+   * @param arguments The arguments
+   *
+   * @return The result of the call
+   *
+   * @throws PEvaluationException If evaluation fails
+   */
+
+  Object call(
+    String unit,
+    String name,
+    Object... arguments)
+    throws PEvaluationException;
+}
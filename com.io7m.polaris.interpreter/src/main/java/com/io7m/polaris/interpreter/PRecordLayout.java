@@ -0,0 +1,136 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.interpreter;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The layout of a record type: the name of the type and the names of its
+ * fields, in declaration order. Each field is stored in the slot given by
+ * its index in the layout.
+ *
+ * The slots of a record with more than {@link #CHUNK_SIZE} fields are
+ * divided into chunks of {@link #CHUNK_SIZE} slots, so that an update of a
+ * record copies only the chunks that contain the updated fields.
+ */
+
+final class PRecordLayout
+{
+  /**
+   * The base two logarithm of {@link #CHUNK_SIZE}.
+   */
+
+  static final int CHUNK_BITS = 5;
+
+  /**
+   * The number of slots in a chunk.
+   */
+
+  static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+  /**
+   * The mask that yields the index of a slot within its chunk.
+   */
+
+  static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private final String type;
+  private final String[] names;
+  private final Map<String, Integer> indices;
+
+  PRecordLayout(
+    final String in_type,
+    final String[] in_names)
+  {
+    this.type = Objects.requireNonNull(in_type, "Type");
+    this.names = Objects.requireNonNull(in_names, "Names").clone();
+    this.indices = new HashMap<>(this.names.length * 2);
+    for (int index = 0; index < this.names.length; ++index) {
+      this.indices.put(this.names[index], Integer.valueOf(index));
+    }
+  }
+
+  String type()
+  {
+    return this.type;
+  }
+
+  int size()
+  {
+    return this.names.length;
+  }
+
+  String name(
+    final int index)
+  {
+    return this.names[index];
+  }
+
+  /**
+   * @param name The name of a field
+   *
+   * @return The index of the field, or {@code -1} if there is no such field
+   */
+
+  int index(
+    final String name)
+  {
+    final Integer index = this.indices.get(name);
+    return index == null ? -1 : index.intValue();
+  }
+
+  /**
+   * @param fields The names of some fields
+   *
+   * @return The indices of the fields
+   *
+   * @throws IllegalArgumentException If any field does not exist
+   */
+
+  int[] indices(
+    final String[] fields)
+  {
+    final int[] result = new int[fields.length];
+    for (int index = 0; index < fields.length; ++index) {
+      result[index] = this.index(fields[index]);
+      if (result[index] < 0) {
+        throw new IllegalArgumentException(
+          "No such field: " + this.type + "." + fields[index]);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return {@code true} if the slots of records are divided into chunks
+   */
+
+  boolean isChunked()
+  {
+    return this.names.length > CHUNK_SIZE;
+  }
+
+  @Override
+  public String toString()
+  {
+    return this.type + Arrays.toString(this.names);
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.interpreter;
+
+/**
+ * The slots of some fields in a record layout, cached by code that accesses
+ * records whose type is not known when the code is compiled. Instances are
+ * immutable, so that a cache may be safely read while another thread
+ * replaces it.
+ */
+
+final class PRecordSlots
+{
+  private final PRecordLayout layout;
+  private final int[] indices;
+
+  private PRecordSlots(
+    final PRecordLayout in_layout,
+    final int[] in_indices)
+  {
+    this.layout = in_layout;
+    this.indices = in_indices;
+  }
+
+  /**
+   * @param cached The cached slots, if any
+   * @param layout The layout of a record
+   * @param names  The names of fields
+   *
+   * @return {@code cached} if it holds the slots for {@code layout}, or the
+   * slots of the fields in {@code layout}
+   */
+
+  static PRecordSlots forLayout(
+    final PRecordSlots cached,
+    final PRecordLayout layout,
+    final String[] names)
+  {
+    if (cached != null && cached.layout == layout) {
+      return cached;
+    }
+    return new PRecordSlots(layout, layout.indices(names));
+  }
+
+  int[] indices()
+  {
+    return this.indices;
+  }
+}
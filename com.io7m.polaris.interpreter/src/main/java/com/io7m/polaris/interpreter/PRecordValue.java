@@ -0,0 +1,179 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.interpreter;
+
+import io.vavr.collection.LinkedHashMap;
+import io.vavr.collection.Map;
+
+import java.util.Objects;
+
+import static com.io7m.polaris.interpreter.PRecordLayout.CHUNK_BITS;
+import static com.io7m.polaris.interpreter.PRecordLayout.CHUNK_MASK;
+import static com.io7m.polaris.interpreter.PRecordLayout.CHUNK_SIZE;
+
+/**
+ * A value of a record type. The fields are stored in the slots given by the
+ * layout of the type.
+ */
+
+public final class PRecordValue implements PRecordValueType
+{
+  private final PRecordLayout layout;
+  private final Object[] slots;
+
+  private PRecordValue(
+    final PRecordLayout in_layout,
+    final Object[] in_slots)
+  {
+    this.layout = in_layout;
+    this.slots = in_slots;
+  }
+
+  /**
+   * Create a record.
+   *
+   * @param layout The layout of the record type
+   * @param values The values of the fields, in layout order
+   *
+   * @return A record
+   */
+
+  static PRecordValue create(
+    final PRecordLayout layout,
+    final Object[] values)
+  {
+    Objects.requireNonNull(layout, "Layout");
+    Objects.requireNonNull(values, "Values");
+
+    if (!layout.isChunked()) {
+      return new PRecordValue(layout, values);
+    }
+
+    final int count = (values.length + CHUNK_MASK) >>> CHUNK_BITS;
+    final Object[] chunks = new Object[count];
+    for (int index = 0; index < count; ++index) {
+      final Object[] chunk = new Object[CHUNK_SIZE];
+      final int base = index << CHUNK_BITS;
+      System.arraycopy(
+        values, base, chunk, 0, Math.min(CHUNK_SIZE, values.length - base));
+      chunks[index] = chunk;
+    }
+    return new PRecordValue(layout, chunks);
+  }
+
+  PRecordLayout layout()
+  {
+    return this.layout;
+  }
+
+  /**
+   * @param index The index of a field
+   *
+   * @return The value of the field
+   */
+
+  Object get(
+    final int index)
+  {
+    if (this.layout.isChunked()) {
+      return ((Object[]) this.slots[index >>> CHUNK_BITS])[index & CHUNK_MASK];
+    }
+    return this.slots[index];
+  }
+
+  /**
+   * Create a copy of this record with some fields replaced. Only the chunks
+   * that contain the replaced fields are copied.
+   *
+   * @param indices The indices of the fields
+   * @param values  The new values of the fields
+   *
+   * @return An updated record
+   */
+
+  PRecordValue update(
+    final int[] indices,
+    final Object[] values)
+  {
+    final Object[] copy = this.slots.clone();
+    if (!this.layout.isChunked()) {
+      for (int index = 0; index < indices.length; ++index) {
+        copy[indices[index]] = values[index];
+      }
+      return new PRecordValue(this.layout, copy);
+    }
+
+    for (int index = 0; index < indices.length; ++index) {
+      final int chunk_index = indices[index] >>> CHUNK_BITS;
+      Object[] chunk = (Object[]) copy[chunk_index];
+      if (chunk == this.slots[chunk_index]) {
+        chunk = chunk.clone();
+        copy[chunk_index] = chunk;
+      }
+      chunk[indices[index] & CHUNK_MASK] = values[index];
+    }
+    return new PRecordValue(this.layout, copy);
+  }
+
+  @Override
+  public String type()
+  {
+    return this.layout.type();
+  }
+
+  /**
+   * @return The fields of the record, in declaration order
+   */
+
+  public Map<String, Object> fields()
+  {
+    Map<String, Object> fields = LinkedHashMap.empty();
+    for (int index = 0; index < this.layout.size(); ++index) {
+      fields = fields.put(this.layout.name(index), this.get(index));
+    }
+    return fields;
+  }
+
+  @Override
+  public Object field(
+    final String name)
+  {
+    final int index = this.layout.index(name);
+    if (index < 0) {
+      throw new IllegalArgumentException("No such field: " + name);
+    }
+    return this.get(index);
+  }
+
+  @Override
+  public String toString()
+  {
+    final StringBuilder sb = new StringBuilder(64);
+    sb.append("(record ");
+    sb.append(this.layout.type());
+    for (int index = 0; index < this.layout.size(); ++index) {
+      sb.append(" [field ");
+      sb.append(this.layout.name(index));
+      sb.append(' ');
+      sb.append(this.get(index));
+      sb.append(']');
+    }
+    sb.append(')');
+    return sb.toString();
+  }
+}
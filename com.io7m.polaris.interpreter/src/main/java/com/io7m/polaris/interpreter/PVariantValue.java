@@ -0,0 +1,85 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.interpreter;
+
+import com.io7m.polaris.compiler.PConstructorInfo;
+
+import java.util.Objects;
+
+/**
+ * A value of a variant type: a constructor and, if the constructor takes an
+ * argument, a payload. Values are immutable. The tag of the constructor is
+ * stored in the value so that {@code match} expressions can dispatch on it
+ * without loading the constructor. A program allocates exactly one value for
+ * each constructor that does not take an argument.
+ */
+
+public final class PVariantValue
+{
+  private final PConstructorInfo constructor;
+  private final Object payload;
+  private final int tag;
+
+  PVariantValue(
+    final PConstructorInfo in_constructor,
+    final Object in_payload)
+  {
+    this.constructor = Objects.requireNonNull(in_constructor, "Constructor");
+    this.payload = in_payload;
+    this.tag = in_constructor.tag();
+  }
+
+  /**
+   * @return The constructor of the value
+   */
+
+  public PConstructorInfo constructor()
+  {
+    return this.constructor;
+  }
+
+  /**
+   * @return The tag of the constructor of the value
+   *
+   * @see PConstructorInfo#tag()
+   */
+
+  public int tag()
+  {
+    return this.tag;
+  }
+
+  /**
+   * @return The payload of the value, or {@code null} if the constructor does
+   * not take an argument
+   */
+
+  public Object payload()
+  {
+    return this.payload;
+  }
+
+  @Override
+  public String toString()
+  {
+    if (this.constructor.hasParameter()) {
+      return "(" + this.constructor.name() + " " + this.payload + ")";
+    }
+    return this.constructor.name();
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.lsp;
+
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.core.PImmutableStyleType;
+import com.io7m.polaris.parser.api.PParseError;
+import com.io7m.polaris.parser.api.PParsed;
+import io.vavr.collection.Vector;
+import org.immutables.value.Value;
+
+import java.net.URI;
+
+/**
+ * An analysed version of an open document.
+ */
+
+@PImmutableStyleType
+@Value.Immutable
+public interface PLSPDocumentType
+{
+  /**
+   * @return The URI of the document
+   */
+
+  @Value.Parameter
+  URI uri();
+
+  /**
+   * @return The version of the document assigned by the client
+   */
+
+  @Value.Parameter
+  int version();
+
+  /**
+   * @return The text of the document
+   */
+
+  @Value.Parameter
+  String text();
+
+  /**
+   * @return The forms parsed from the document, up to the first s-expression
+   * that could not be parsed
+   */
+
+  @Value.Parameter
+  Vector<PExpressionOrDeclarationType<PParsed>> forms();
+
+  /**
+   * @return The errors encountered parsing the document
+   */
+
+  @Value.Parameter
+  Vector<PParseError> errors();
+
+  /**
+   * @return A map between offsets, protocol positions, and lexical positions
+   * in the text of the document
+   */
+
+  @Value.Parameter
+  @Value.Auxiliary
+  PLSPLineMap lines();
+
+  /**
+   * @return The regions of the document, which allow the next version of the
+   * document to be analysed without parsing the unchanged text again
+   */
+
+  @Value.Parameter
+  @Value.Auxiliary
+  PLSPRegions regions();
+
+  /**
+   * @return An index from positions in the document to the elements of the
+   * parsed forms, built when first requested
+   */
+
+  @Value.Lazy
+  default PLSPNodeIndex nodes()
+  {
+    return PLSPNodeIndex.create(this.lines(), this.forms());
+  }
+}
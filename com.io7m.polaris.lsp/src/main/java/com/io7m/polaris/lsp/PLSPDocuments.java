@@ -0,0 +1,225 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.lsp;
+
+import com.io7m.jaffirm.core.Preconditions;
+import com.io7m.jlexing.core.LexicalPosition;
+import com.io7m.junreachable.UnreachableCodeException;
+import com.io7m.polaris.parser.api.PParseError;
+import com.io7m.polaris.parser.api.PParseErrorType;
+import com.io7m.polaris.parser.api.PParserProviderType;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Functions to analyse documents.
+ */
+
+public final class PLSPDocuments
+{
+  private PLSPDocuments()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Parse a document. Forms are parsed until the end of the document, or
+   * until an s-expression cannot be parsed; errors in individual forms do
+   * not stop parsing. The elements of the parsed forms are indexed by
+   * position when the index is first requested.
+   *
+   * @param parsers The parsers
+   * @param uri     The URI of the document
+   * @param version The version of the document
+   * @param text    The text of the document
+   *
+   * @return The analysed document
+   */
+
+  public static PLSPDocument analyse(
+    final PParserProviderType parsers,
+    final URI uri,
+    final int version,
+    final String text)
+  {
+    return analyse(parsers, uri, version, text, Optional.empty(), () -> false)
+      .orElseThrow(UnreachableCodeException::new);
+  }
+
+  /**
+   * Parse a new version of a document, reusing the forms of the previous
+   * version that lie in the parts of the text that did not change. The
+   * result has the same forms and errors as a document parsed from scratch,
+   * except for the identifiers and lexical lines of the parsed elements:
+   * identifiers are unique only within each run of text that is parsed
+   * together, and lexical lines are translated to lines of the text by the
+   * line map of the document.
+   *
+   * @param parsers  The parsers
+   * @param previous The previous version of the document
+   * @param version  The version of the document
+   * @param text     The text of the document
+   *
+   * @return The analysed document
+   *
+   * @see PLSPRegions
+   */
+
+  public static PLSPDocument analyse(
+    final PParserProviderType parsers,
+    final PLSPDocument previous,
+    final int version,
+    final String text)
+  {
+    Objects.requireNonNull(previous, "Previous");
+    return analyse(
+      parsers, previous.uri(), version, text, Optional.of(previous), () -> false)
+      .orElseThrow(UnreachableCodeException::new);
+  }
+
+  /**
+   * Parse a document, reusing the forms of the previous version of the
+   * document if there is one, and abandoning parsing between forms if
+   * {@code cancelled} returns {@code true}.
+   *
+   * @param parsers   The parsers
+   * @param uri       The URI of the document
+   * @param version   The version of the document
+   * @param text      The text of the document
+   * @param previous  The previous version of the document, if any
+   * @param cancelled A function that indicates that the analysis is no longer
+   *                  required
+   *
+   * @return The analysed document, or nothing if the analysis was abandoned
+   */
+
+  static Optional<PLSPDocument> analyse(
+    final PParserProviderType parsers,
+    final URI uri,
+    final int version,
+    final String text,
+    final Optional<PLSPDocument> previous,
+    final BooleanSupplier cancelled)
+  {
+    Objects.requireNonNull(parsers, "Parsers");
+    Objects.requireNonNull(uri, "URI");
+    Objects.requireNonNull(text, "Text");
+    Objects.requireNonNull(previous, "Previous");
+    Objects.requireNonNull(cancelled, "Cancelled");
+
+    Preconditions.checkPrecondition(
+      previous,
+      !previous.isPresent() || Objects.equals(previous.get().uri(), uri),
+      p -> "Previous version must be a version of the same document");
+
+    final Optional<PLSPRegions> result = PLSPRegions.analyse(
+      parsers,
+      uri,
+      text,
+      previous.map(PLSPDocument::text).orElse(""),
+      previous.map(PLSPDocument::regions).orElse(PLSPRegions.empty()),
+      cancelled);
+    if (!result.isPresent()) {
+      return Optional.empty();
+    }
+
+    final PLSPRegions regions = result.get();
+    return Optional.of(PLSPDocument.of(
+      uri,
+      version,
+      text,
+      regions.forms(),
+      regions.errors(),
+      regions.lines(text),
+      regions));
+  }
+
+  /**
+   * @param document A document
+   *
+   * @return The parameters of a {@code textDocument/publishDiagnostics}
+   * notification for the errors in the document
+   */
+
+  public static Map<String, Object> diagnostics(
+    final PLSPDocument document)
+  {
+    final List<Object> diagnostics = new ArrayList<>(document.errors().size());
+    for (final PParseError e : document.errors()) {
+      final Map<String, Object> d = new LinkedHashMap<>(8);
+      d.put("range", range(document.lines(), e.lexical()));
+      d.put("severity", Long.valueOf(
+        e.severity() == PParseErrorType.Severity.ERROR ? 1L : 2L));
+      d.put("code", e.code().name());
+      d.put("source", "polaris");
+      d.put("message", e.message());
+      diagnostics.add(d);
+    }
+
+    final Map<String, Object> params = new LinkedHashMap<>(4);
+    params.put("uri", document.uri().toString());
+    params.put("version", Long.valueOf((long) document.version()));
+    params.put("diagnostics", diagnostics);
+    return params;
+  }
+
+  /**
+   * Lexical positions have one-based lines and columns that drift from the
+   * true columns, and are mapped to protocol positions with the same column
+   * arithmetic as the lexer; a position that does not lie within the text,
+   * such as the end of the document, is taken as is. Errors carry only a
+   * start position, so the range covers a single character.
+   */
+
+  private static Map<String, Object> range(
+    final PLSPLineMap lines,
+    final LexicalPosition<URI> lexical)
+  {
+    final Optional<PLSPPosition> mapped = lines.position(lexical);
+    final long line;
+    final long column;
+    if (mapped.isPresent()) {
+      line = (long) mapped.get().line();
+      column = (long) mapped.get().character();
+    } else {
+      line = (long) Math.max(0, lines.line(lexical) - 1);
+      column = (long) Math.max(0, lexical.column() - 1);
+    }
+    final Map<String, Object> range = new LinkedHashMap<>(2);
+    range.put("start", position(line, column));
+    range.put("end", position(line, column + 1L));
+    return range;
+  }
+
+  private static Map<String, Object> position(
+    final long line,
+    final long character)
+  {
+    final Map<String, Object> position = new LinkedHashMap<>(2);
+    position.put("line", Long.valueOf(line));
+    position.put("character", Long.valueOf(character));
+    return position;
+  }
+}
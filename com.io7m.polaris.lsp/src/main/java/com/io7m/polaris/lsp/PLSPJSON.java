@@ -0,0 +1,354 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.lsp;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal JSON reader and writer. Objects are represented as {@link Map},
+ * arrays as {@link List}, strings as {@link String}, integral numbers as
+ * {@link Long}, other numbers as {@link Double}, booleans as
+ * {@link Boolean}, and {@code null} as {@code null}.
+ */
+
+final class PLSPJSON
+{
+  private final String text;
+  private int position;
+
+  private PLSPJSON(
+    final String in_text)
+  {
+    this.text = in_text;
+    this.position = 0;
+  }
+
+  /**
+   * Parse a JSON value.
+   *
+   * @param text The text
+   *
+   * @return The value
+   *
+   * @throws IllegalArgumentException If the text is not a single JSON value
+   */
+
+  static Object parse(
+    final String text)
+  {
+    final PLSPJSON p = new PLSPJSON(text);
+    final Object value = p.value();
+    p.skipSpace();
+    if (p.position != text.length()) {
+      throw p.error("Trailing characters");
+    }
+    return value;
+  }
+
+  /**
+   * Serialize a JSON value.
+   *
+   * @param value The value
+   *
+   * @return The serialized value
+   */
+
+  static String serialize(
+    final Object value)
+  {
+    final StringBuilder sb = new StringBuilder(256);
+    write(sb, value);
+    return sb.toString();
+  }
+
+  private IllegalArgumentException error(
+    final String message)
+  {
+    return new IllegalArgumentException(
+      message + " at offset " + this.position);
+  }
+
+  private void skipSpace()
+  {
+    while (this.position < this.text.length()) {
+      final char c = this.text.charAt(this.position);
+      if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+        return;
+      }
+      ++this.position;
+    }
+  }
+
+  private char peek()
+  {
+    this.skipSpace();
+    if (this.position >= this.text.length()) {
+      throw this.error("Unexpected end of input");
+    }
+    return this.text.charAt(this.position);
+  }
+
+  private void expect(
+    final char c)
+  {
+    if (this.peek() != c) {
+      throw this.error("Expected '" + c + "'");
+    }
+    ++this.position;
+  }
+
+  private void keyword(
+    final String word)
+  {
+    if (!this.text.startsWith(word, this.position)) {
+      throw this.error("Unexpected character");
+    }
+    this.position += word.length();
+  }
+
+  private Object value()
+  {
+    final char c = this.peek();
+    switch (c) {
+      case '{':
+        return this.object();
+      case '[':
+        return this.array();
+      case '"':
+        return this.string();
+      case 't':
+        this.keyword("true");
+        return Boolean.TRUE;
+      case 'f':
+        this.keyword("false");
+        return Boolean.FALSE;
+      case 'n':
+        this.keyword("null");
+        return null;
+      default:
+        return this.number();
+    }
+  }
+
+  private Map<String, Object> object()
+  {
+    final Map<String, Object> map = new LinkedHashMap<>(8);
+    this.expect('{');
+    if (this.peek() == '}') {
+      ++this.position;
+      return map;
+    }
+    while (true) {
+      if (this.peek() != '"') {
+        throw this.error("Expected a string");
+      }
+      final String key = this.string();
+      this.expect(':');
+      map.put(key, this.value());
+      if (this.peek() == ',') {
+        ++this.position;
+        continue;
+      }
+      this.expect('}');
+      return map;
+    }
+  }
+
+  private List<Object> array()
+  {
+    final List<Object> list = new ArrayList<>(8);
+    this.expect('[');
+    if (this.peek() == ']') {
+      ++this.position;
+      return list;
+    }
+    while (true) {
+      list.add(this.value());
+      if (this.peek() == ',') {
+        ++this.position;
+        continue;
+      }
+      this.expect(']');
+      return list;
+    }
+  }
+
+  private String string()
+  {
+    ++this.position;
+    final StringBuilder sb = new StringBuilder(32);
+    while (true) {
+      if (this.position >= this.text.length()) {
+        throw this.error("Unterminated string");
+      }
+      final char c = this.text.charAt(this.position);
+      ++this.position;
+      if (c == '"') {
+        return sb.toString();
+      }
+      if (c == '\\') {
+        sb.append(this.escape());
+      } else {
+        sb.append(c);
+      }
+    }
+  }
+
+  private char escape()
+  {
+    if (this.position >= this.text.length()) {
+      throw this.error("Unterminated string");
+    }
+    final char c = this.text.charAt(this.position);
+    ++this.position;
+    switch (c) {
+      case 'b':
+        return '\b';
+      case 'f':
+        return '\f';
+      case 'n':
+        return '\n';
+      case 'r':
+        return '\r';
+      case 't':
+        return '\t';
+      case 'u': {
+        if (this.position + 4 > this.text.length()) {
+          throw this.error("Truncated escape");
+        }
+        final String hex = this.text.substring(this.position, this.position + 4);
+        this.position += 4;
+        try {
+          return (char) Integer.parseInt(hex, 16);
+        } catch (final NumberFormatException e) {
+          throw this.error("Invalid escape");
+        }
+      }
+      case '"':
+      case '\\':
+      case '/':
+        return c;
+      default:
+        throw this.error("Invalid escape");
+    }
+  }
+
+  private Object number()
+  {
+    final int start = this.position;
+    boolean integral = true;
+    while (this.position < this.text.length()) {
+      final char c = this.text.charAt(this.position);
+      if (c == '.' || c == 'e' || c == 'E') {
+        integral = false;
+      } else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) {
+        break;
+      }
+      ++this.position;
+    }
+
+    final String digits = this.text.substring(start, this.position);
+    try {
+      if (integral) {
+        return Long.valueOf(Long.parseLong(digits));
+      }
+      return Double.valueOf(Double.parseDouble(digits));
+    } catch (final NumberFormatException e) {
+      this.position = start;
+      throw this.error("Invalid value");
+    }
+  }
+
+  private static void write(
+    final StringBuilder sb,
+    final Object value)
+  {
+    if (value == null) {
+      sb.append("null");
+    } else if (value instanceof String) {
+      writeString(sb, (String) value);
+    } else if (value instanceof Map) {
+      sb.append('{');
+      boolean first = true;
+      for (final Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+        if (!first) {
+          sb.append(',');
+        }
+        first = false;
+        writeString(sb, (String) e.getKey());
+        sb.append(':');
+        write(sb, e.getValue());
+      }
+      sb.append('}');
+    } else if (value instanceof List) {
+      sb.append('[');
+      boolean first = true;
+      for (final Object x : (List<?>) value) {
+        if (!first) {
+          sb.append(',');
+        }
+        first = false;
+        write(sb, x);
+      }
+      sb.append(']');
+    } else if (value instanceof Number || value instanceof Boolean) {
+      sb.append(value);
+    } else {
+      throw new IllegalArgumentException(
+        "Not a JSON value: " + value.getClass());
+    }
+  }
+
+  private static void writeString(
+    final StringBuilder sb,
+    final String s)
+  {
+    sb.append('"');
+    for (int index = 0; index < s.length(); ++index) {
+      final char c = s.charAt(index);
+      switch (c) {
+        case '"':
+          sb.append("\\\"");
+          break;
+        case '\\':
+          sb.append("\\\\");
+          break;
+        case '\n':
+          sb.append("\\n");
+          break;
+        case '\r':
+          sb.append("\\r");
+          break;
+        case '\t':
+          sb.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            sb.append(String.format("\\u%04x", Integer.valueOf(c)));
+          } else {
+            sb.append(c);
+          }
+          break;
+      }
+    }
+    sb.append('"');
+  }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.lsp;
+
+import com.io7m.jaffirm.core.Preconditions;
+import com.io7m.jlexing.core.LexicalPosition;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A map between offsets in the text of a document, protocol positions, and
+ * the lexical positions reported by the parser.
+ *
+ * Lexical positions are mapped back to offsets in the text with the same
+ * column arithmetic as the lexer, which is recorded as the offsets at which
+ * the lexer's columns drift from the true columns. Building a map requires
+ * only a pass over the text, and so it is much cheaper than indexing the
+ * elements of the document.
+ *
+ * The regions of a document that has been analysed incrementally are
+ * parsed with lexical line numbers that need not match their lines in the
+ * text, and the map translates lexical lines to lines of the text before
+ * mapping columns.
+ */
+
+public final class PLSPLineMap
+{
+  private final String text;
+  private final int[] lines;
+  private final int[] shifts;
+  private final int[] line_shifts;
+  private final int[] lexical_lines;
+  private final int[] text_lines;
+
+  private PLSPLineMap(
+    final String in_text,
+    final int[] in_lines,
+    final int[] in_shifts,
+    final int[] in_line_shifts,
+    final int[] in_lexical_lines,
+    final int[] in_text_lines)
+  {
+    this.text = Objects.requireNonNull(in_text, "Text");
+    this.lines = Objects.requireNonNull(in_lines, "Lines");
+    this.shifts = Objects.requireNonNull(in_shifts, "Shifts");
+    this.line_shifts = Objects.requireNonNull(in_line_shifts, "Line shifts");
+    this.lexical_lines =
+      Objects.requireNonNull(in_lexical_lines, "Lexical lines");
+    this.text_lines = Objects.requireNonNull(in_text_lines, "Text lines");
+  }
+
+  /**
+   * Map the given text.
+   *
+   * @param text The text of a document
+   *
+   * @return A map
+   */
+
+  public static PLSPLineMap create(
+    final String text)
+  {
+    return create(text, new int[0], new int[0]);
+  }
+
+  /**
+   * Map the given text, translating lexical lines. A lexical line {@code l}
+   * is the line {@code text_lines[i] + (l - lexical_lines[i])} of the text,
+   * where {@code lexical_lines[i]} is the greatest element of
+   * {@code lexical_lines} that is not greater than {@code l}. Lexical lines
+   * less than every element of {@code lexical_lines} are not translated.
+   *
+   * @param text          The text of a document
+   * @param lexical_lines The first lexical line of each region, in ascending
+   *                      order
+   * @param text_lines    The line of the text at which each region begins
+   *
+   * @return A map
+   */
+
+  static PLSPLineMap create(
+    final String text,
+    final int[] lexical_lines,
+    final int[] text_lines)
+  {
+    Objects.requireNonNull(text, "Text");
+    Preconditions.checkPreconditionI(
+      lexical_lines.length,
+      lexical_lines.length == text_lines.length,
+      n -> "Lexical and text lines must have the same length");
+
+    final int[] lines = lineOffsets(text);
+    final int[] shifts = shifts(text);
+    return new PLSPLineMap(
+      text,
+      lines,
+      shifts,
+      lineShifts(lines, shifts),
+      lexical_lines,
+      text_lines);
+  }
+
+  /**
+   * @param lexical A lexical position reported by the parser for the
+   *                document
+   *
+   * @return The corresponding position, if it lies within the document
+   */
+
+  public Optional<PLSPPosition> position(
+    final LexicalPosition<URI> lexical)
+  {
+    Objects.requireNonNull(lexical, "Lexical");
+
+    final int offset = this.offsetOf(lexical);
+    if (offset < 0) {
+      return Optional.empty();
+    }
+    return Optional.of(this.position(offset));
+  }
+
+  /**
+   * @return The text of the document
+   */
+
+  String text()
+  {
+    return this.text;
+  }
+
+  /**
+   * @return The line of the text, counting from one, of the given lexical
+   * position
+   */
+
+  int line(
+    final LexicalPosition<URI> lexical)
+  {
+    final int line = lexical.line();
+    int index = Arrays.binarySearch(this.lexical_lines, line);
+    if (index < 0) {
+      index = -index - 2;
+    }
+    if (index < 0) {
+      return line;
+    }
+    return this.text_lines[index] + (line - this.lexical_lines[index]);
+  }
+
+  /**
+   * @return The offset of the given lexical position, or -1 if the position
+   * does not lie within the text
+   */
+
+  int offsetOf(
+    final LexicalPosition<URI> lexical)
+  {
+    final int line = this.line(lexical) - 1;
+    final int column = lexical.column();
+    if (line < 0 || line >= this.lines.length - 1) {
+      return -1;
+    }
+
+    final int line_start = this.lines[line];
+    final int line_end = this.lines[line + 1] - 1;
+    final int first = this.line_shifts[line];
+    final int target = line_start + column - 1;
+
+    int count = 0;
+    while (first + count < this.shifts.length
+      && this.shifts[first + count] <= target - (count + 1)) {
+      ++count;
+    }
+
+    final int offset = target - count;
+    if (offset < line_start || offset >= line_end) {
+      return -1;
+    }
+    if (first + count < this.shifts.length && this.shifts[first + count] <= offset) {
+      return -1;
+    }
+    return offset;
+  }
+
+  /**
+   * @return The offset of the given position, clamped to the end of its line
+   */
+
+  int offset(
+    final PLSPPosition position)
+  {
+    final int line = position.line();
+    if (line >= this.lines.length - 1) {
+      return this.lines[this.lines.length - 1] - 1;
+    }
+    return Math.min(
+      this.lines[line] + position.character(), this.lines[line + 1] - 1);
+  }
+
+  /**
+   * @return The position of the given offset
+   */
+
+  PLSPPosition position(
+    final int offset)
+  {
+    int low = 0;
+    int high = this.lines.length - 1;
+    while (low < high - 1) {
+      final int middle = (low + high) >>> 1;
+      if (this.lines[middle] <= offset) {
+        low = middle;
+      } else {
+        high = middle;
+      }
+    }
+    return PLSPPosition.of(low, offset - this.lines[low]);
+  }
+
+  /**
+   * @return The offset of the start of each line, followed by the length
+   * of the text plus one, so that every line is terminated
+   */
+
+  private static int[] lineOffsets(
+    final String text)
+  {
+    int count = 1;
+    for (int index = 0; index < text.length(); ++index) {
+      if (text.charAt(index) == '\n') {
+        ++count;
+      }
+    }
+
+    final int[] offsets = new int[count + 1];
+    int line = 1;
+    for (int index = 0; index < text.length(); ++index) {
+      if (text.charAt(index) == '\n') {
+        offsets[line] = index + 1;
+        ++line;
+      }
+    }
+    offsets[count] = text.length() + 1;
+    return offsets;
+  }
+
+  /**
+   * Find the offsets at which the columns reported by the lexer move one
+   * place further from the true columns. The lexer counts the character
+   * that ends a symbol twice if that character is a bracket or a quote, so
+   * every such character moves the reported columns of the rest of its
+   * line one place to the right.
+   */
+
+  private static int[] shifts(
+    final String text)
+  {
+    final int length = text.length();
+    int[] shifts = new int[16];
+    int count = 0;
+    boolean symbol = false;
+    boolean string = false;
+
+    int index = 0;
+    while (index < length) {
+      final char c = text.charAt(index);
+      if (string) {
+        if (c == '\\') {
+          ++index;
+        } else if (c == '"') {
+          string = false;
+        }
+      } else {
+        final boolean delimiter = isDelimiter(c);
+        if (symbol && delimiter && !isSpace(c)) {
+          if (count == shifts.length) {
+            shifts = Arrays.copyOf(shifts, count * 2);
+          }
+          shifts[count] = index;
+          ++count;
+        }
+        symbol = !delimiter;
+        string = c == '"';
+      }
+      ++index;
+    }
+    return Arrays.copyOf(shifts, count);
+  }
+
+  /**
+   * @return The index of the first shift at or after the start of each line
+   */
+
+  private static int[] lineShifts(
+    final int[] lines,
+    final int[] shifts)
+  {
+    final int[] line_shifts = new int[lines.length];
+    int shift = 0;
+    for (int line = 0; line < lines.length; ++line) {
+      while (shift < shifts.length && shifts[shift] < lines[line]) {
+        ++shift;
+      }
+      line_shifts[line] = shift;
+    }
+    return line_shifts;
+  }
+
+  static boolean isSpace(
+    final char c)
+  {
+    return c == ' ' || c == '\n' || c == '\r';
+  }
+
+  static boolean isDelimiter(
+    final char c)
+  {
+    switch (c) {
+      case '(':
+      case ')':
+      case '[':
+      case ']':
+      case '"':
+        return true;
+      default:
+        return isSpace(c);
+    }
+  }
+}
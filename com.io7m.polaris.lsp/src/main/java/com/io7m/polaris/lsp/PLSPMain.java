@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.lsp;
+
+import com.io7m.junreachable.UnreachableCodeException;
+import com.io7m.polaris.parser.api.PParserProviderType;
+
+import java.io.IOException;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * The main entry point of the language server. The server speaks the
+ * protocol over standard input and output, using the first available
+ * {@link PParserProviderType} service.
+ */
+
+public final class PLSPMain
+{
+  private PLSPMain()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Run the server.
+   *
+   * @param args Command-line arguments (ignored)
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public static void main(
+    final String[] args)
+    throws IOException
+  {
+    final PParserProviderType parsers =
+      ServiceLoader.load(PParserProviderType.class).findFirst().orElseThrow(
+        () -> new ServiceConfigurationError(
+          "No providers available for " + PParserProviderType.class.getCanonicalName()));
+
+    final boolean clean;
+    try (PLSPServer server = PLSPServer.create(
+      PLSPServerConfiguration.of(parsers), System.in, System.out)) {
+      clean = server.run();
+    }
+    System.exit(clean ? 0 : 1);
+  }
+}
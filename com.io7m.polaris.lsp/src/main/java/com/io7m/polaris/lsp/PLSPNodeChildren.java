@@ -0,0 +1,688 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.lsp;
+
+import com.io7m.junreachable.UnreachableCodeException;
+import com.io7m.polaris.ast.PASTElementType;
+import com.io7m.polaris.ast.PDeclarationType;
+import com.io7m.polaris.ast.PExpressionMatcherType;
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.ast.PExpressionType;
+import com.io7m.polaris.ast.PPackageNameType;
+import com.io7m.polaris.ast.PPatternMatcherType;
+import com.io7m.polaris.ast.PPatternType;
+import com.io7m.polaris.ast.PTermConstructorNameType;
+import com.io7m.polaris.ast.PTermDeclarationMatcherType;
+import com.io7m.polaris.ast.PTermDeclarationType;
+import com.io7m.polaris.ast.PTermNameType;
+import com.io7m.polaris.ast.PTermReferenceType;
+import com.io7m.polaris.ast.PTermVariableNameType;
+import com.io7m.polaris.ast.PTypeConstructorNameType;
+import com.io7m.polaris.ast.PTypeDeclarationMatcherType;
+import com.io7m.polaris.ast.PTypeDeclarationType;
+import com.io7m.polaris.ast.PTypeExpressionMatcherType;
+import com.io7m.polaris.ast.PTypeExpressionType;
+import com.io7m.polaris.ast.PTypeReferenceType;
+import com.io7m.polaris.ast.PTypeVariableNameType;
+import com.io7m.polaris.ast.PUnitDeclarationMatcherType;
+import com.io7m.polaris.ast.PUnitDeclarationType;
+import com.io7m.polaris.ast.PUnitNameType;
+import io.vavr.collection.Vector;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A matcher that passes the immediate children of AST elements, in source
+ * order, to a receiver.
+ *
+ * Each child is passed along with a kind that names the interface through
+ * which it is matched when its own children are requested. The kind is
+ * known from the static type of the parent's accessor, so elements are
+ * never tested against interfaces that they do not implement; on the JVM,
+ * failed {@code instanceof} tests against interfaces are comparatively
+ * expensive, and dominate a traversal that relies on them.
+ *
+ * @param <T> The type of associated data
+ */
+
+final class PLSPNodeChildren<T> implements
+  PExpressionMatcherType<T, Void, RuntimeException>,
+  PPatternMatcherType<T, Void, RuntimeException>,
+  PTermDeclarationMatcherType<T, Void, RuntimeException>,
+  PTypeDeclarationMatcherType<T, Void, RuntimeException>,
+  PUnitDeclarationMatcherType<T, Void, RuntimeException>,
+  PTypeExpressionMatcherType<T, Void, RuntimeException>
+{
+  static final int KIND_EXPRESSION = 0;
+  static final int KIND_TERM_DECLARATION = 1;
+  static final int KIND_TYPE_DECLARATION = 2;
+  static final int KIND_UNIT_DECLARATION = 3;
+  static final int KIND_PATTERN = 4;
+  static final int KIND_TYPE_EXPRESSION = 5;
+  static final int KIND_MATCH_CASE = 6;
+  static final int KIND_EXPRESSION_RECORD_FIELD = 7;
+  static final int KIND_RECORD_FIELD = 8;
+  static final int KIND_VARIANT_CASE = 9;
+  static final int KIND_TERM_REFERENCE_CONSTRUCTOR = 10;
+  static final int KIND_TERM_REFERENCE_VARIABLE = 11;
+  static final int KIND_TYPE_REFERENCE_CONSTRUCTOR = 12;
+  static final int KIND_TYPE_REFERENCE_VARIABLE = 13;
+  static final int KIND_NAME = 14;
+
+  private final ReceiverType<T> receiver;
+
+  PLSPNodeChildren(
+    final ReceiverType<T> in_receiver)
+  {
+    this.receiver = Objects.requireNonNull(in_receiver, "Receiver");
+  }
+
+  /**
+   * A receiver of elements.
+   *
+   * @param <T> The type of associated data
+   */
+
+  interface ReceiverType<T>
+  {
+    /**
+     * Receive an element.
+     *
+     * @param node   The element
+     * @param kind   The kind of the element
+     * @param length The length of the element's name, or -1 if the element
+     *               is not a name
+     * @param list   {@code true} if the element is always written as a list
+     */
+
+    void receive(
+      PASTElementType<T> node,
+      int kind,
+      int length,
+      boolean list);
+  }
+
+  /**
+   * Pass the children of {@code node} to the receiver.
+   *
+   * @param node An element previously passed to the receiver
+   * @param kind The kind with which the element was passed
+   */
+
+  @SuppressWarnings("unchecked")
+  void children(
+    final Object node,
+    final int kind)
+  {
+    switch (kind) {
+      case KIND_EXPRESSION:
+        ((PExpressionType<T>) node).matchExpression(this);
+        break;
+      case KIND_TERM_DECLARATION:
+        ((PTermDeclarationType<T>) node).matchTermDeclaration(this);
+        break;
+      case KIND_TYPE_DECLARATION:
+        ((PTypeDeclarationType<T>) node).matchTypeDeclaration(this);
+        break;
+      case KIND_UNIT_DECLARATION:
+        ((PUnitDeclarationType<T>) node).matchUnitDeclaration(this);
+        break;
+      case KIND_PATTERN:
+        ((PPatternType<T>) node).matchPattern(this);
+        break;
+      case KIND_TYPE_EXPRESSION:
+        ((PTypeExpressionType<T>) node).matchTypeExpression(this);
+        break;
+      case KIND_MATCH_CASE:
+        this.matchCase((PExpressionType.PMatchCaseType<T>) node);
+        break;
+      case KIND_EXPRESSION_RECORD_FIELD:
+        this.expressionRecordField(
+          (PExpressionType.PExprRecordFieldType<T>) node);
+        break;
+      case KIND_RECORD_FIELD:
+        this.recordField((PTypeDeclarationType.PRecordFieldType<T>) node);
+        break;
+      case KIND_VARIANT_CASE:
+        this.variantCase((PTypeDeclarationType.PVariantCaseType<T>) node);
+        break;
+      default:
+        this.references(node, kind);
+        break;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void references(
+    final Object node,
+    final int kind)
+  {
+    switch (kind) {
+      case KIND_TERM_REFERENCE_CONSTRUCTOR: {
+        final PTermReferenceType.PTermReferenceConstructorType<T> r =
+          (PTermReferenceType.PTermReferenceConstructorType<T>) node;
+        r.unit().ifPresent(this::unitName);
+        this.termConstructorName(r.constructor());
+        break;
+      }
+      case KIND_TERM_REFERENCE_VARIABLE: {
+        final PTermReferenceType.PTermReferenceVariableType<T> r =
+          (PTermReferenceType.PTermReferenceVariableType<T>) node;
+        r.unit().ifPresent(this::unitName);
+        this.termVariableName(r.term());
+        r.recordPath().forEach(this::termVariableName);
+        break;
+      }
+      case KIND_TYPE_REFERENCE_CONSTRUCTOR: {
+        final PTypeReferenceType.PTypeReferenceConstructorType<T> r =
+          (PTypeReferenceType.PTypeReferenceConstructorType<T>) node;
+        r.unit().ifPresent(this::unitName);
+        this.typeConstructorName(r.constructor());
+        break;
+      }
+      case KIND_TYPE_REFERENCE_VARIABLE: {
+        final PTypeReferenceType.PTypeReferenceVariableType<T> r =
+          (PTypeReferenceType.PTypeReferenceVariableType<T>) node;
+        this.typeVariableName(r.variable());
+        break;
+      }
+      case KIND_NAME:
+        break;
+      default:
+        throw new UnreachableCodeException();
+    }
+  }
+
+  /**
+   * Pass a top-level or local form to the receiver.
+   *
+   * @param e The form
+   */
+
+  void expressionOrDeclaration(
+    final PExpressionOrDeclarationType<T> e)
+  {
+    switch (e.expressionOrDeclarationKind()) {
+      case EXPRESSION:
+        this.expression((PExpressionType<T>) e);
+        break;
+      case DECLARATION:
+        this.declaration((PDeclarationType<T>) e);
+        break;
+      default:
+        throw new UnreachableCodeException();
+    }
+  }
+
+  private void declaration(
+    final PDeclarationType<T> e)
+  {
+    switch (e.anyDeclarationKind()) {
+      case TERM_DECLARATION:
+        this.receiver.receive(e, KIND_TERM_DECLARATION, -1, true);
+        break;
+      case TYPE_DECLARATION:
+        this.receiver.receive(e, KIND_TYPE_DECLARATION, -1, true);
+        break;
+      case UNIT_DECLARATION:
+        this.receiver.receive(e, KIND_UNIT_DECLARATION, -1, true);
+        break;
+      default:
+        throw new UnreachableCodeException();
+    }
+  }
+
+  private void expression(
+    final PExpressionType<T> e)
+  {
+    final boolean list;
+    switch (e.termExpressionKind()) {
+      case EXPR_CONSTANT_REAL:
+      case EXPR_CONSTANT_STRING:
+      case EXPR_CONSTANT_INTEGER:
+      case EXPR_REFERENCE:
+        list = false;
+        break;
+      default:
+        list = true;
+        break;
+    }
+    this.receiver.receive(e, KIND_EXPRESSION, -1, list);
+  }
+
+  private void expressions(
+    final Vector<PExpressionType<T>> e)
+  {
+    for (int index = 0; index < e.size(); ++index) {
+      this.expression(e.get(index));
+    }
+  }
+
+  private void pattern(
+    final PPatternType<T> e)
+  {
+    this.receiver.receive(e, KIND_PATTERN, -1, false);
+  }
+
+  private void typeExpression(
+    final PTypeExpressionType<T> e)
+  {
+    this.receiver.receive(
+      e,
+      KIND_TYPE_EXPRESSION,
+      -1,
+      e.typeExpressionKind()
+        != PTypeExpressionType.PTypeExpressionKind.TYPE_EXPR_REFERENCE);
+  }
+
+  private void typeExpressions(
+    final Vector<PTypeExpressionType<T>> e)
+  {
+    for (int index = 0; index < e.size(); ++index) {
+      this.typeExpression(e.get(index));
+    }
+  }
+
+  private void termReference(
+    final PTermReferenceType<T> e)
+  {
+    switch (e.referenceKind()) {
+      case REFERENCE_CONSTRUCTOR:
+        this.receiver.receive(e, KIND_TERM_REFERENCE_CONSTRUCTOR, -1, false);
+        break;
+      case REFERENCE_VARIABLE:
+        this.receiver.receive(e, KIND_TERM_REFERENCE_VARIABLE, -1, false);
+        break;
+      default:
+        throw new UnreachableCodeException();
+    }
+  }
+
+  private void typeReference(
+    final PTypeReferenceType<T> e)
+  {
+    switch (e.referenceKind()) {
+      case REFERENCE_CONSTRUCTOR:
+        this.receiver.receive(e, KIND_TYPE_REFERENCE_CONSTRUCTOR, -1, false);
+        break;
+      case REFERENCE_VARIABLE:
+        this.receiver.receive(e, KIND_TYPE_REFERENCE_VARIABLE, -1, false);
+        break;
+      default:
+        throw new UnreachableCodeException();
+    }
+  }
+
+  private void termName(
+    final PTermNameType<T> e)
+  {
+    switch (e.termNameKind()) {
+      case TERM_NAME_VARIABLE:
+        this.termVariableName((PTermVariableNameType<T>) e);
+        break;
+      case TERM_NAME_CONSTRUCTOR:
+        this.termConstructorName((PTermConstructorNameType<T>) e);
+        break;
+      default:
+        throw new UnreachableCodeException();
+    }
+  }
+
+  private void termVariableName(
+    final PTermVariableNameType<T> e)
+  {
+    this.receiver.receive(e, KIND_NAME, e.value().length(), false);
+  }
+
+  private void termVariableNames(
+    final Vector<PTermVariableNameType<T>> e)
+  {
+    for (int index = 0; index < e.size(); ++index) {
+      this.termVariableName(e.get(index));
+    }
+  }
+
+  private void termConstructorName(
+    final PTermConstructorNameType<T> e)
+  {
+    this.receiver.receive(e, KIND_NAME, e.value().length(), false);
+  }
+
+  private void typeVariableName(
+    final PTypeVariableNameType<T> e)
+  {
+    this.receiver.receive(e, KIND_NAME, e.value().length(), false);
+  }
+
+  private void typeVariableNames(
+    final Vector<PTypeVariableNameType<T>> e)
+  {
+    for (int index = 0; index < e.size(); ++index) {
+      this.typeVariableName(e.get(index));
+    }
+  }
+
+  private void typeConstructorName(
+    final PTypeConstructorNameType<T> e)
+  {
+    this.receiver.receive(e, KIND_NAME, e.value().length(), false);
+  }
+
+  private void unitName(
+    final PUnitNameType<T> e)
+  {
+    this.receiver.receive(e, KIND_NAME, e.value().length(), false);
+  }
+
+  private void packageName(
+    final PPackageNameType<T> e)
+  {
+    this.receiver.receive(e, KIND_NAME, e.value().length(), false);
+  }
+
+  private void matchCase(
+    final PExpressionType.PMatchCaseType<T> e)
+  {
+    this.pattern(e.pattern());
+    this.expression(e.expression());
+  }
+
+  private void expressionRecordField(
+    final PExpressionType.PExprRecordFieldType<T> e)
+  {
+    this.termVariableName(e.field());
+    this.expression(e.expression());
+  }
+
+  private void expressionRecordFields(
+    final Vector<PExpressionType.PExprRecordFieldType<T>> e)
+  {
+    for (int index = 0; index < e.size(); ++index) {
+      this.receiver.receive(
+        e.get(index), KIND_EXPRESSION_RECORD_FIELD, -1, true);
+    }
+  }
+
+  private void recordField(
+    final PTypeDeclarationType.PRecordFieldType<T> e)
+  {
+    this.termVariableName(e.name());
+    this.typeExpression(e.type());
+  }
+
+  private void variantCase(
+    final PTypeDeclarationType.PVariantCaseType<T> e)
+  {
+    this.termConstructorName(e.name());
+    final Optional<PTypeExpressionType<T>> parameter = e.parameter();
+    if (parameter.isPresent()) {
+      this.typeExpression(parameter.get());
+    }
+  }
+
+  @Override
+  public Void constantInteger(
+    final PExpressionType.PExprConstantIntegerType<T> e)
+  {
+    return null;
+  }
+
+  @Override
+  public Void constantReal(
+    final PExpressionType.PExprConstantRealType<T> e)
+  {
+    return null;
+  }
+
+  @Override
+  public Void constantString(
+    final PExpressionType.PExprConstantStringType<T> e)
+  {
+    return null;
+  }
+
+  @Override
+  public Void application(
+    final PExpressionType.PExprApplicationType<T> e)
+  {
+    this.expression(e.function());
+    this.expressions(e.arguments());
+    return null;
+  }
+
+  @Override
+  public Void lambda(
+    final PExpressionType.PExprLambdaType<T> e)
+  {
+    this.termVariableNames(e.arguments());
+    this.expression(e.expression());
+    return null;
+  }
+
+  @Override
+  public Void reference(
+    final PExpressionType.PExprReferenceType<T> e)
+  {
+    this.termReference(e.reference());
+    return null;
+  }
+
+  @Override
+  public Void local(
+    final PExpressionType.PExprLocalType<T> e)
+  {
+    final Vector<PExpressionOrDeclarationType<T>> locals = e.locals();
+    for (int index = 0; index < locals.size(); ++index) {
+      this.expressionOrDeclaration(locals.get(index));
+    }
+    this.expression(e.body());
+    return null;
+  }
+
+  @Override
+  public Void match(
+    final PExpressionType.PExprMatchType<T> e)
+  {
+    this.expression(e.target());
+    final Vector<PExpressionType.PMatchCaseType<T>> cases = e.cases();
+    for (int index = 0; index < cases.size(); ++index) {
+      this.receiver.receive(cases.get(index), KIND_MATCH_CASE, -1, true);
+    }
+    return null;
+  }
+
+  @Override
+  public Void record(
+    final PExpressionType.PExprRecordType<T> e)
+  {
+    this.typeReference(e.target());
+    this.expressionRecordFields(e.fields());
+    return null;
+  }
+
+  @Override
+  public Void recordUpdate(
+    final PExpressionType.PExprRecordUpdateType<T> e)
+  {
+    this.expression(e.source());
+    this.expressionRecordFields(e.fields());
+    return null;
+  }
+
+  @Override
+  public Void constantInteger(
+    final PPatternType.PPatternConstantIntegerType<T> e)
+  {
+    return null;
+  }
+
+  @Override
+  public Void constantReal(
+    final PPatternType.PPatternConstantRealType<T> e)
+  {
+    return null;
+  }
+
+  @Override
+  public Void constantString(
+    final PPatternType.PPatternConstantStringType<T> e)
+  {
+    return null;
+  }
+
+  @Override
+  public Void constructor(
+    final PPatternType.PPatternConstructorType<T> e)
+  {
+    this.termReference(e.constructor());
+    e.argument().ifPresent(this::termVariableName);
+    return null;
+  }
+
+  @Override
+  public Void wildcard(
+    final PPatternType.PPatternWildcardType<T> e)
+  {
+    return null;
+  }
+
+  @Override
+  public Void value(
+    final PTermDeclarationType.PDeclarationValueType<T> e)
+  {
+    this.termVariableName(e.name());
+    this.expression(e.expression());
+    return null;
+  }
+
+  @Override
+  public Void function(
+    final PTermDeclarationType.PDeclarationFunctionType<T> e)
+  {
+    this.termVariableName(e.name());
+    this.termVariableNames(e.parameters());
+    this.expression(e.expression());
+    return null;
+  }
+
+  @Override
+  public Void signature(
+    final PTermDeclarationType.PDeclarationSignatureType<T> e)
+  {
+    this.termVariableName(e.name());
+    this.typeExpression(e.type());
+    return null;
+  }
+
+  @Override
+  public Void record(
+    final PTypeDeclarationType.PDeclarationRecordType<T> e)
+  {
+    this.typeConstructorName(e.name());
+    this.typeVariableNames(e.parameters());
+    final Vector<PTypeDeclarationType.PRecordFieldType<T>> fields = e.fields();
+    for (int index = 0; index < fields.size(); ++index) {
+      this.receiver.receive(fields.get(index), KIND_RECORD_FIELD, -1, true);
+    }
+    return null;
+  }
+
+  @Override
+  public Void variant(
+    final PTypeDeclarationType.PDeclarationVariantType<T> e)
+  {
+    this.typeConstructorName(e.name());
+    this.typeVariableNames(e.parameters());
+    final Vector<PTypeDeclarationType.PVariantCaseType<T>> cases = e.cases();
+    for (int index = 0; index < cases.size(); ++index) {
+      this.receiver.receive(cases.get(index), KIND_VARIANT_CASE, -1, false);
+    }
+    return null;
+  }
+
+  @Override
+  public Void unit(
+    final PUnitDeclarationType.PDeclarationUnitType<T> e)
+  {
+    this.packageName(e.packageName());
+    this.unitName(e.unit());
+    return null;
+  }
+
+  @Override
+  public Void importUnit(
+    final PUnitDeclarationType.PDeclarationImportType<T> e)
+  {
+    this.packageName(e.packageName());
+    this.unitName(e.unit());
+    e.unitQualifier().ifPresent(this::unitName);
+    return null;
+  }
+
+  @Override
+  public Void exportTerms(
+    final PUnitDeclarationType.PDeclarationExportTermsType<T> e)
+  {
+    e.terms().forEach(this::termName);
+    return null;
+  }
+
+  @Override
+  public Void exportTypes(
+    final PUnitDeclarationType.PDeclarationExportTypesType<T> e)
+  {
+    e.types().forEach(this::typeConstructorName);
+    return null;
+  }
+
+  @Override
+  public Void arrow(
+    final PTypeExpressionType.PTypeExprArrowType<T> e)
+  {
+    this.typeExpressions(e.parameters());
+    this.typeExpression(e.returnType());
+    return null;
+  }
+
+  @Override
+  public Void forAll(
+    final PTypeExpressionType.PTypeExprForAllType<T> e)
+  {
+    this.typeVariableNames(e.parameters());
+    this.typeExpression(e.expression());
+    return null;
+  }
+
+  @Override
+  public Void reference(
+    final PTypeExpressionType.PTypeExprReferenceType<T> e)
+  {
+    this.typeReference(e.reference());
+    return null;
+  }
+
+  @Override
+  public Void application(
+    final PTypeExpressionType.PTypeExprApplicationType<T> e)
+  {
+    this.typeExpression(e.constructor());
+    this.typeExpressions(e.arguments());
+    return null;
+  }
+}
@@ -0,0 +1,712 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.lsp;
+
+import com.io7m.jlexing.core.LexicalPosition;
+import com.io7m.polaris.ast.PASTElementType;
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.parser.api.PParsed;
+import io.vavr.collection.Vector;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * An index from positions in a document to the AST elements that cover them.
+ *
+ * Elements only record the position of the token at which they start, and
+ * the parser gives some elements, such as applications, the position of a
+ * token inside the list that contains them. The interval of each element is
+ * therefore taken from the text: the token at its position (a bracketed
+ * list, a string, a name, or a symbol), extended to cover its descendants,
+ * and extended to the innermost enclosing brackets if it covers more than
+ * that token or is always written as a list. The intervals are stored sorted
+ * by start offset, with the largest interval first when two start at the
+ * same offset, and each interval is clamped to the interval that encloses
+ * it, so the intervals nest. Each interval records its enclosing interval
+ * along with a skew-binary jump pointer, so that the innermost interval
+ * enclosing any position can be found in logarithmic time. Lexical
+ * positions are mapped back to offsets in the text with a
+ * {@link PLSPLineMap}.
+ */
+
+public final class PLSPNodeIndex
+{
+  private final PLSPLineMap lines;
+  private final int[] starts;
+  private final int[] ends;
+  private final int[] parents;
+  private final int[] jumps;
+  private final List<Object> nodes;
+
+  private PLSPNodeIndex(
+    final PLSPLineMap in_lines,
+    final int[] in_starts,
+    final int[] in_ends,
+    final int[] in_parents,
+    final int[] in_jumps,
+    final List<Object> in_nodes)
+  {
+    this.lines = Objects.requireNonNull(in_lines, "Lines");
+    this.starts = Objects.requireNonNull(in_starts, "Starts");
+    this.ends = Objects.requireNonNull(in_ends, "Ends");
+    this.parents = Objects.requireNonNull(in_parents, "Parents");
+    this.jumps = Objects.requireNonNull(in_jumps, "Jumps");
+    this.nodes = Objects.requireNonNull(in_nodes, "Nodes");
+  }
+
+  /**
+   * Index the elements of the given forms.
+   *
+   * @param text  The text from which the forms were parsed
+   * @param forms The forms
+   *
+   * @return An index
+   */
+
+  public static PLSPNodeIndex create(
+    final String text,
+    final Vector<PExpressionOrDeclarationType<PParsed>> forms)
+  {
+    return create(PLSPLineMap.create(text), forms);
+  }
+
+  /**
+   * Index the elements of the given forms.
+   *
+   * @param lines The map of the text from which the forms were parsed
+   * @param forms The forms
+   *
+   * @return An index
+   */
+
+  public static PLSPNodeIndex create(
+    final PLSPLineMap lines,
+    final Vector<PExpressionOrDeclarationType<PParsed>> forms)
+  {
+    Objects.requireNonNull(lines, "Lines");
+    Objects.requireNonNull(forms, "Forms");
+    return new Builder(lines).build(forms);
+  }
+
+  /**
+   * @return The number of indexed elements
+   */
+
+  public int size()
+  {
+    return this.nodes.size();
+  }
+
+  /**
+   * @param lexical A lexical position reported by the parser for the
+   *                document
+   *
+   * @return The corresponding position, if it lies within the document
+   */
+
+  public Optional<PLSPPosition> position(
+    final LexicalPosition<URI> lexical)
+  {
+    return this.lines.position(lexical);
+  }
+
+  /**
+   * Find the innermost element that covers the character at {@code position}.
+   *
+   * @param position The position
+   *
+   * @return The innermost element, if any element covers the position
+   */
+
+  public Optional<PLSPNode> nodeAt(
+    final PLSPPosition position)
+  {
+    Objects.requireNonNull(position, "Position");
+
+    final int index = this.innermost(this.lines.offset(position));
+    if (index < 0) {
+      return Optional.empty();
+    }
+    return Optional.of(this.node(index));
+  }
+
+  /**
+   * Find all elements that overlap the range {@code [start, end)}, in order
+   * of their start positions. An element comes before the elements that it
+   * encloses.
+   *
+   * @param start The start of the range
+   * @param end   The end of the range (exclusive)
+   *
+   * @return The elements that overlap the range
+   */
+
+  public Vector<PLSPNode> nodesIn(
+    final PLSPPosition start,
+    final PLSPPosition end)
+  {
+    Objects.requireNonNull(start, "Start");
+    Objects.requireNonNull(end, "End");
+
+    final int offset_start = this.lines.offset(start);
+    final int offset_end = this.lines.offset(end);
+    if (offset_start >= offset_end) {
+      return Vector.empty();
+    }
+
+    final ArrayList<PLSPNode> results = new ArrayList<>(16);
+    for (int index = this.innermost(offset_start);
+         index >= 0;
+         index = this.parents[index]) {
+      if (this.starts[index] < offset_start) {
+        results.add(this.node(index));
+      }
+    }
+    Collections.reverse(results);
+
+    final int first = this.lastStartingAtOrBefore(offset_start - 1) + 1;
+    for (int index = first;
+         index < this.starts.length && this.starts[index] < offset_end;
+         ++index) {
+      results.add(this.node(index));
+    }
+    return Vector.ofAll(results);
+  }
+
+  @SuppressWarnings("unchecked")
+  private PLSPNode node(
+    final int index)
+  {
+    return PLSPNode.of(
+      (PASTElementType<PParsed>) this.nodes.get(index),
+      this.lines.position(this.starts[index]),
+      this.lines.position(this.ends[index]));
+  }
+
+  private boolean covers(
+    final int index,
+    final int offset)
+  {
+    return index < 0 || offset < this.ends[index];
+  }
+
+  private int innermost(
+    final int offset)
+  {
+    int index = this.lastStartingAtOrBefore(offset);
+    while (!this.covers(index, offset)) {
+      final int jump = this.jumps[index];
+      if (this.covers(jump, offset)) {
+        index = this.parents[index];
+      } else {
+        index = jump;
+      }
+    }
+    return index;
+  }
+
+  private int lastStartingAtOrBefore(
+    final int offset)
+  {
+    int low = 0;
+    int high = this.starts.length;
+    while (low < high) {
+      final int middle = (low + high) >>> 1;
+      if (this.starts[middle] <= offset) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low - 1;
+  }
+
+  private static int depthOf(
+    final int[] depths,
+    final int index)
+  {
+    return index < 0 ? -1 : depths[index];
+  }
+
+  private static int jumpOf(
+    final int[] jumps,
+    final int index)
+  {
+    return index < 0 ? -1 : jumps[index];
+  }
+
+  private static final class Builder
+    implements PLSPNodeChildren.ReceiverType<PParsed>
+  {
+    private final String text;
+    private final PLSPLineMap lines;
+    private final int[] closes;
+    private final int[] enclosing;
+    private final ArrayList<Object> nodes;
+    private int[] parents;
+    private int[] token_starts;
+    private int[] token_ends;
+    private boolean[] lists;
+    private int[] starts;
+    private int[] ends;
+    private int count;
+    private Object[] stack_nodes;
+    private int[] stack_kinds;
+    private int[] stack_starts;
+    private int[] stack_ends;
+    private boolean[] stack_lists;
+    private int[] stack_parents;
+    private int stack_size;
+    private int current;
+
+    Builder(
+      final PLSPLineMap in_lines)
+    {
+      this.lines = Objects.requireNonNull(in_lines, "Lines");
+      this.text = in_lines.text();
+      this.closes = new int[this.text.length()];
+      this.enclosing = new int[this.text.length()];
+      this.nodes = new ArrayList<>(256);
+      this.parents = new int[256];
+      this.token_starts = new int[256];
+      this.token_ends = new int[256];
+      this.lists = new boolean[256];
+      this.starts = new int[256];
+      this.ends = new int[256];
+      this.count = 0;
+      this.stack_nodes = new Object[64];
+      this.stack_kinds = new int[64];
+      this.stack_starts = new int[64];
+      this.stack_ends = new int[64];
+      this.stack_lists = new boolean[64];
+      this.stack_parents = new int[64];
+      this.stack_size = 0;
+      this.current = -1;
+      this.scan();
+    }
+
+    /**
+     * Record, for every open bracket and opening quote, the offset after the
+     * matching close bracket or closing quote, and for every character, the
+     * offset of the innermost open bracket that precedes and encloses it.
+     * The innermost open bracket enclosing an open bracket is the one that
+     * becomes innermost when it is closed.
+     */
+
+    private void scan()
+    {
+      final int length = this.text.length();
+      int open = -1;
+
+      int index = 0;
+      while (index < length) {
+        this.enclosing[index] = open;
+
+        final char c = this.text.charAt(index);
+        if (c == '(' || c == '[') {
+          open = index;
+        } else if (c == ')' || c == ']') {
+          if (open >= 0) {
+            this.closes[open] = index + 1;
+            open = this.enclosing[open];
+          }
+        } else if (c == '"') {
+          final int quote = index;
+          ++index;
+          while (index < length && this.text.charAt(index) != '"') {
+            this.enclosing[index] = open;
+            if (this.text.charAt(index) == '\\' && index + 1 < length) {
+              ++index;
+              this.enclosing[index] = open;
+            }
+            ++index;
+          }
+          if (index < length) {
+            this.enclosing[index] = open;
+          }
+          this.closes[quote] = Math.min(index + 1, length);
+        }
+        ++index;
+      }
+    }
+
+    private int startOf(
+      final LexicalPosition<URI> lexical)
+    {
+      return this.lines.offsetOf(lexical);
+    }
+
+    /**
+     * @return The offset after the token that starts at {@code start}
+     */
+
+    private int endOf(
+      final int start,
+      final int length)
+    {
+      if (length >= 0) {
+        return Math.min(start + length, this.text.length());
+      }
+
+      final int close = this.closes[start];
+      if (close > 0) {
+        return close;
+      }
+
+      final char c = this.text.charAt(start);
+      if (c == ')' || c == ']') {
+        return start + 1;
+      }
+
+      int end = start + 1;
+      while (end < this.text.length()
+        && !PLSPLineMap.isDelimiter(this.text.charAt(end))) {
+        ++end;
+      }
+      return end;
+    }
+
+    @Override
+    public void receive(
+      final PASTElementType<PParsed> node,
+      final int kind,
+      final int length,
+      final boolean list)
+    {
+      if (this.stack_size == this.stack_nodes.length) {
+        final int size = this.stack_size * 2;
+        this.stack_nodes = Arrays.copyOf(this.stack_nodes, size);
+        this.stack_kinds = Arrays.copyOf(this.stack_kinds, size);
+        this.stack_starts = Arrays.copyOf(this.stack_starts, size);
+        this.stack_ends = Arrays.copyOf(this.stack_ends, size);
+        this.stack_lists = Arrays.copyOf(this.stack_lists, size);
+        this.stack_parents = Arrays.copyOf(this.stack_parents, size);
+      }
+
+      final int top = this.stack_size;
+      final int start = this.startOf(node.lexical());
+      this.stack_nodes[top] = node;
+      this.stack_kinds[top] = kind;
+      if (start >= 0) {
+        this.stack_starts[top] = start;
+        this.stack_ends[top] = this.endOf(start, length);
+      } else {
+        this.stack_starts[top] = Integer.MAX_VALUE;
+        this.stack_ends[top] = -1;
+      }
+      this.stack_lists[top] = list;
+      this.stack_parents[top] = this.current;
+      ++this.stack_size;
+    }
+
+    /**
+     * Reverse the elements pushed onto the stack since it held {@code base}
+     * elements, so that they are popped in source order.
+     */
+
+    private void reverseFrom(
+      final int base)
+    {
+      int low = base;
+      int high = this.stack_size - 1;
+      while (low < high) {
+        swap(this.stack_nodes, low, high);
+        swap(this.stack_kinds, low, high);
+        swap(this.stack_starts, low, high);
+        swap(this.stack_ends, low, high);
+        swap(this.stack_lists, low, high);
+        swap(this.stack_parents, low, high);
+        ++low;
+        --high;
+      }
+    }
+
+    private static void swap(
+      final Object[] array,
+      final int x,
+      final int y)
+    {
+      final Object t = array[x];
+      array[x] = array[y];
+      array[y] = t;
+    }
+
+    private static void swap(
+      final int[] array,
+      final int x,
+      final int y)
+    {
+      final int t = array[x];
+      array[x] = array[y];
+      array[y] = t;
+    }
+
+    private static void swap(
+      final boolean[] array,
+      final int x,
+      final int y)
+    {
+      final boolean t = array[x];
+      array[x] = array[y];
+      array[y] = t;
+    }
+
+    /**
+     * Move the element on top of the stack to the list of visited elements.
+     */
+
+    private void pop()
+    {
+      if (this.count == this.starts.length) {
+        final int size = this.count * 2;
+        this.parents = Arrays.copyOf(this.parents, size);
+        this.token_starts = Arrays.copyOf(this.token_starts, size);
+        this.token_ends = Arrays.copyOf(this.token_ends, size);
+        this.lists = Arrays.copyOf(this.lists, size);
+        this.starts = Arrays.copyOf(this.starts, size);
+        this.ends = Arrays.copyOf(this.ends, size);
+      }
+
+      --this.stack_size;
+      final int top = this.stack_size;
+      final int index = this.count;
+      this.nodes.add(this.stack_nodes[top]);
+      this.stack_nodes[top] = null;
+      this.parents[index] = this.stack_parents[top];
+      this.token_starts[index] = this.stack_starts[top];
+      this.token_ends[index] = this.stack_ends[top];
+      this.lists[index] = this.stack_lists[top];
+      this.starts[index] = this.stack_starts[top];
+      this.ends[index] = this.stack_ends[top];
+      ++this.count;
+    }
+
+    /**
+     * Visit the elements in depth-first order, recording the token that
+     * starts each element and the element's parent.
+     */
+
+    private void collect(
+      final Vector<PExpressionOrDeclarationType<PParsed>> forms)
+    {
+      final PLSPNodeChildren<PParsed> children = new PLSPNodeChildren<>(this);
+      for (int index = 0; index < forms.size(); ++index) {
+        children.expressionOrDeclaration(forms.get(index));
+      }
+      this.reverseFrom(0);
+
+      while (this.stack_size > 0) {
+        final int kind = this.stack_kinds[this.stack_size - 1];
+        this.pop();
+        this.current = this.count - 1;
+
+        final int base = this.stack_size;
+        children.children(this.nodes.get(this.current), kind);
+        this.reverseFrom(base);
+      }
+    }
+
+    /**
+     * Extend the interval of each element to cover its descendants, working
+     * from the last element visited to the first so that each element is
+     * complete before it is merged into its parent. An element that covers
+     * more than its own token, or that is always written as a list, is
+     * extended to the innermost brackets that enclose it.
+     */
+
+    private boolean widens(
+      final int index)
+    {
+      final int token_start = this.token_starts[index];
+      if (token_start > this.token_ends[index]) {
+        return false;
+      }
+      if (this.starts[index] < token_start
+        || this.ends[index] > this.token_ends[index]) {
+        return true;
+      }
+      final char c = this.text.charAt(token_start);
+      return this.lists[index] && c != '(' && c != '[';
+    }
+
+    private void extend()
+    {
+      for (int index = this.count - 1; index >= 0; --index) {
+        int start = this.starts[index];
+        int end = this.ends[index];
+        if (start > end) {
+          continue;
+        }
+
+        if (this.widens(index)) {
+          int bracket = this.enclosing[start];
+          while (bracket >= 0 && this.closes[bracket] < end) {
+            bracket = this.enclosing[bracket];
+          }
+          if (bracket >= 0) {
+            start = bracket;
+            end = this.closes[bracket];
+            this.starts[index] = start;
+            this.ends[index] = end;
+          }
+        }
+
+        final int parent = this.parents[index];
+        if (parent >= 0) {
+          this.starts[parent] = Math.min(this.starts[parent], start);
+          this.ends[parent] = Math.max(this.ends[parent], end);
+        }
+      }
+    }
+
+    /**
+     * @return The indices of the elements that have intervals, sorted by
+     * start offset and then by descending end offset; the elements are
+     * visited in source order, so they are usually sorted already
+     */
+
+    private int[] order()
+    {
+      final int[] s = this.starts;
+      final int[] e = this.ends;
+
+      int size = 0;
+      for (int index = 0; index < this.count; ++index) {
+        if (s[index] <= e[index]) {
+          ++size;
+        }
+      }
+
+      final int[] order = new int[size];
+      boolean sorted = true;
+      int next = 0;
+      for (int index = 0; index < this.count; ++index) {
+        if (s[index] <= e[index]) {
+          if (next > 0) {
+            sorted = sorted && !after(order[next - 1], index);
+          }
+          order[next] = index;
+          ++next;
+        }
+      }
+
+      if (!sorted) {
+        final Integer[] boxed = new Integer[size];
+        for (int index = 0; index < size; ++index) {
+          boxed[index] = Integer.valueOf(order[index]);
+        }
+        Arrays.sort(boxed, (x, y) -> {
+          final int c = Integer.compare(s[x.intValue()], s[y.intValue()]);
+          if (c != 0) {
+            return c;
+          }
+          return Integer.compare(e[y.intValue()], e[x.intValue()]);
+        });
+        for (int index = 0; index < size; ++index) {
+          order[index] = boxed[index].intValue();
+        }
+      }
+      return order;
+    }
+
+    private boolean after(
+      final int x,
+      final int y)
+    {
+      final int sx = this.starts[x];
+      final int sy = this.starts[y];
+      return sx > sy || (sx == sy && this.ends[x] < this.ends[y]);
+    }
+
+    /**
+     * @return The jump pointer for a new element with the given parent: the
+     * parent's jump target's jump target if the two jumps below it span the
+     * same number of levels, and the parent otherwise
+     */
+
+    private static int jumpFor(
+      final int[] jumps,
+      final int[] depths,
+      final int parent)
+    {
+      final int jump = jumpOf(jumps, parent);
+      final int jump_jump = jumpOf(jumps, jump);
+      if (depthOf(depths, parent) - depthOf(depths, jump)
+        == depthOf(depths, jump) - depthOf(depths, jump_jump)) {
+        return jump_jump;
+      }
+      return parent;
+    }
+
+    PLSPNodeIndex build(
+      final Vector<PExpressionOrDeclarationType<PParsed>> forms)
+    {
+      this.collect(forms);
+      this.extend();
+
+      final int[] s = this.starts;
+      final int[] e = this.ends;
+      final int[] order = this.order();
+      final int size = order.length;
+
+      final int[] sorted_starts = new int[size];
+      final int[] sorted_ends = new int[size];
+      final int[] sorted_parents = new int[size];
+      final int[] jumps = new int[size];
+      final int[] depths = new int[size];
+      final ArrayList<Object> sorted_nodes = new ArrayList<>(size);
+
+      final int[] open = new int[size];
+      int open_size = 0;
+      for (int index = 0; index < size; ++index) {
+        final int source = order[index];
+        final int start = s[source];
+        while (open_size > 0 && sorted_ends[open[open_size - 1]] <= start) {
+          --open_size;
+        }
+
+        final int parent = open_size > 0 ? open[open_size - 1] : -1;
+        sorted_starts[index] = start;
+        sorted_ends[index] =
+          parent >= 0 ? Math.min(e[source], sorted_ends[parent]) : e[source];
+        sorted_parents[index] = parent;
+        depths[index] = open_size;
+        sorted_nodes.add(this.nodes.get(source));
+
+        jumps[index] = jumpFor(jumps, depths, parent);
+
+        open[open_size] = index;
+        ++open_size;
+      }
+
+      return new PLSPNodeIndex(
+        this.lines,
+        sorted_starts,
+        sorted_ends,
+        sorted_parents,
+        jumps,
+        Collections.unmodifiableList(sorted_nodes));
+    }
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.lsp;
+
+import com.io7m.polaris.ast.PASTElementType;
+import com.io7m.polaris.core.PImmutableStyleType;
+import com.io7m.polaris.parser.api.PParsed;
+import org.immutables.value.Value;
+
+/**
+ * An AST element and the range of text that it covers.
+ */
+
+@PImmutableStyleType
+@Value.Immutable(builder = false)
+public interface PLSPNodeType
+{
+  /**
+   * @return The element
+   */
+
+  @Value.Parameter
+  PASTElementType<PParsed> node();
+
+  /**
+   * @return The position of the first character of the element
+   */
+
+  @Value.Parameter
+  PLSPPosition start();
+
+  /**
+   * @return The position immediately after the last character of the element
+   */
+
+  @Value.Parameter
+  PLSPPosition end();
+}
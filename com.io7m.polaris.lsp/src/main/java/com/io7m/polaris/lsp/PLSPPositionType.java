@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.lsp;
+
+import com.io7m.jaffirm.core.Preconditions;
+import com.io7m.polaris.core.PImmutableStyleType;
+import org.immutables.value.Value;
+
+/**
+ * A position in a document, in the form used by the language server
+ * protocol: lines and characters both count from zero, and characters are
+ * UTF-16 code units.
+ */
+
+@PImmutableStyleType
+@Value.Immutable(builder = false)
+public interface PLSPPositionType extends Comparable<PLSPPositionType>
+{
+  /**
+   * @return The line, starting at zero
+   */
+
+  @Value.Parameter
+  int line();
+
+  /**
+   * @return The character within the line, starting at zero
+   */
+
+  @Value.Parameter
+  int character();
+
+  /**
+   * Check preconditions for the type.
+   */
+
+  @Value.Check
+  default void checkPreconditions()
+  {
+    Preconditions.checkPreconditionI(
+      this.line(), this.line() >= 0, i -> "Line must be non-negative");
+    Preconditions.checkPreconditionI(
+      this.character(),
+      this.character() >= 0,
+      i -> "Character must be non-negative");
+  }
+
+  @Override
+  default int compareTo(
+    final PLSPPositionType other)
+  {
+    final int c = Integer.compare(this.line(), other.line());
+    if (c != 0) {
+      return c;
+    }
+    return Integer.compare(this.character(), other.character());
+  }
+}
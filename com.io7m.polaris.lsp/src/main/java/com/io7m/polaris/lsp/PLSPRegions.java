@@ -0,0 +1,683 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.lsp;
+
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.parser.api.PParseError;
+import com.io7m.polaris.parser.api.PParseErrorCode;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.parser.api.PParserProviderType;
+import com.io7m.polaris.parser.api.PParserType;
+import io.vavr.collection.Seq;
+import io.vavr.collection.Vector;
+import io.vavr.control.Validation;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The regions of an analysed document, which allow a later version of the
+ * document to be analysed without parsing the unchanged parts of its text
+ * again.
+ *
+ * A region is a run of whole lines that begins outside of any s-expression,
+ * string, or comment. The lexer is in the same state at the start of every
+ * region, and so the forms and errors of a region depend only on the text
+ * of the region. When the text of a document changes, the regions that lie
+ * entirely within the text before or after the change are reused, and only
+ * the text between them is parsed.
+ *
+ * Each run of regions that is parsed together is given lexical lines that
+ * have not been given to any region of an earlier version of the document,
+ * so that the positions of elements remain distinct, and the line map of
+ * the document translates them to lines of the text. The lexer does not
+ * count the newlines within strings, and so the translation also corrects
+ * the lines of the regions that follow a string that spans lines.
+ *
+ * Parsing stops at the first s-expression that cannot be parsed. The
+ * regions of earlier versions that follow that s-expression and lie within
+ * unchanged text are retained, so that repairing the s-expression does not
+ * require the rest of the document to be parsed again.
+ */
+
+public final class PLSPRegions
+{
+  private static final int LINE_LIMIT = Integer.MAX_VALUE / 2;
+
+  private static final PLSPRegions EMPTY =
+    new PLSPRegions(new int[0], new Region[0], 0, 1);
+
+  private final int[] offsets;
+  private final Region[] regions;
+  private final int active;
+  private final int next_line;
+
+  private PLSPRegions(
+    final int[] in_offsets,
+    final Region[] in_regions,
+    final int in_active,
+    final int in_next_line)
+  {
+    this.offsets = Objects.requireNonNull(in_offsets, "Offsets");
+    this.regions = Objects.requireNonNull(in_regions, "Regions");
+    this.active = in_active;
+    this.next_line = in_next_line;
+  }
+
+  /**
+   * Analyse a document, reusing the regions of an earlier version of the
+   * document.
+   *
+   * @param parsers       The parsers
+   * @param uri           The URI of the document
+   * @param text          The text of the document
+   * @param previous_text The text of the earlier version
+   * @param previous      The regions of the earlier version
+   * @param cancelled     A function that indicates that the analysis is no
+   *                      longer required
+   *
+   * @return The regions of the document, or nothing if the analysis was
+   * abandoned
+   */
+
+  static Optional<PLSPRegions> analyse(
+    final PParserProviderType parsers,
+    final URI uri,
+    final String text,
+    final String previous_text,
+    final PLSPRegions previous,
+    final BooleanSupplier cancelled)
+  {
+    Objects.requireNonNull(parsers, "Parsers");
+    Objects.requireNonNull(uri, "URI");
+    Objects.requireNonNull(text, "Text");
+    Objects.requireNonNull(previous_text, "Previous text");
+    Objects.requireNonNull(previous, "Previous");
+    Objects.requireNonNull(cancelled, "Cancelled");
+
+    /*
+     * Start again from the first line if the lexical lines given to new
+     * regions would otherwise grow too large.
+     */
+
+    final Analysis analysis;
+    if (previous.next_line > LINE_LIMIT) {
+      analysis = new Analysis(parsers, uri, text, "", EMPTY, cancelled);
+    } else {
+      analysis =
+        new Analysis(parsers, uri, text, previous_text, previous, cancelled);
+    }
+    return analysis.run();
+  }
+
+  /**
+   * @return The regions of a document that has not been analysed
+   */
+
+  static PLSPRegions empty()
+  {
+    return EMPTY;
+  }
+
+  /**
+   * @return The forms parsed from the document
+   */
+
+  Vector<PExpressionOrDeclarationType<PParsed>> forms()
+  {
+    final List<PExpressionOrDeclarationType<PParsed>> forms =
+      new ArrayList<>(this.active);
+    for (int index = 0; index < this.active; ++index) {
+      this.regions[index].forms.forEach(forms::add);
+    }
+    return Vector.ofAll(forms);
+  }
+
+  /**
+   * @return The errors encountered parsing the document
+   */
+
+  Vector<PParseError> errors()
+  {
+    final List<PParseError> errors = new ArrayList<>(this.active);
+    for (int index = 0; index < this.active; ++index) {
+      this.regions[index].errors.forEach(errors::add);
+    }
+    return Vector.ofAll(errors);
+  }
+
+  /**
+   * @param text The text of the document
+   *
+   * @return A line map that translates the lexical lines of the regions
+   */
+
+  PLSPLineMap lines(
+    final String text)
+  {
+    /*
+     * Sort the regions by lexical line, packing the lexical line of each
+     * region above the line of the text at which it begins.
+     */
+
+    final long[] order = new long[this.active];
+    int line = 1;
+    for (int index = 0; index < this.active; ++index) {
+      order[index] = ((long) this.regions[index].line << 32) | (long) line;
+      line += this.regions[index].newlines;
+    }
+    Arrays.sort(order);
+
+    final int[] lexical_lines = new int[this.active];
+    final int[] text_lines = new int[this.active];
+    for (int index = 0; index < this.active; ++index) {
+      lexical_lines[index] = (int) (order[index] >>> 32);
+      text_lines[index] = (int) order[index];
+    }
+    return PLSPLineMap.create(text, lexical_lines, text_lines);
+  }
+
+  /**
+   * A scanner that finds the boundaries between regions. The scanner tracks
+   * brackets, strings, and comments as the lexer does, and counts lines as
+   * the lexer does, which does not count the newlines within strings.
+   */
+
+  private static final class Scanner
+  {
+    private final String text;
+    private int position;
+
+    Scanner(
+      final String in_text,
+      final int in_position)
+    {
+      this.text = in_text;
+      this.position = in_position;
+    }
+
+    /**
+     * Advance to the next boundary, or to the end of the text. The current
+     * position must be a boundary.
+     *
+     * @return The number of lines counted by the lexer between the previous
+     * position and the new position
+     */
+
+    int next()
+    {
+      final int length = this.text.length();
+      int depth = 0;
+      int lines = 0;
+      boolean string = false;
+      boolean comment = false;
+      boolean symbol = false;
+
+      while (this.position < length) {
+        final char c = this.text.charAt(this.position);
+        ++this.position;
+        if (string) {
+          if (c == '\\') {
+            ++this.position;
+          } else if (c == '"') {
+            string = false;
+          }
+          continue;
+        }
+
+        if (c == '\n') {
+          ++lines;
+        }
+        if (comment) {
+          comment = c != '\n';
+        } else if (c == ';' && !symbol) {
+          comment = true;
+        } else {
+          depth = depth(depth, c);
+          string = c == '"';
+          symbol = !PLSPLineMap.isDelimiter(c);
+        }
+
+        if (c == '\n' && depth == 0) {
+          break;
+        }
+      }
+      this.position = Math.min(this.position, length);
+      return lines;
+    }
+
+    private static int depth(
+      final int depth,
+      final char c)
+    {
+      switch (c) {
+        case '(':
+        case '[':
+          return depth + 1;
+        case ')':
+        case ']':
+          return Math.max(0, depth - 1);
+        default:
+          return depth;
+      }
+    }
+  }
+
+  private static final class Region
+  {
+    private final int length;
+    private final int newlines;
+    private final int line;
+    private final Vector<PExpressionOrDeclarationType<PParsed>> forms;
+    private final Vector<PParseError> errors;
+    private final boolean stopped;
+
+    Region(
+      final int in_length,
+      final int in_newlines,
+      final int in_line,
+      final Vector<PExpressionOrDeclarationType<PParsed>> in_forms,
+      final Vector<PParseError> in_errors,
+      final boolean in_stopped)
+    {
+      this.length = in_length;
+      this.newlines = in_newlines;
+      this.line = in_line;
+      this.forms = Objects.requireNonNull(in_forms, "Forms");
+      this.errors = Objects.requireNonNull(in_errors, "Errors");
+      this.stopped = in_stopped;
+    }
+  }
+
+  /**
+   * The state of a single analysis. The text shared by the earlier and
+   * current versions is found by comparing the start and the end of the
+   * texts; a region of the earlier version can be reused if it lies entirely
+   * within the shared start and does not end at the end of the earlier
+   * text, or begins within the shared end.
+   */
+
+  private static final class Analysis
+  {
+    private final PParserProviderType parsers;
+    private final URI uri;
+    private final String text;
+    private final String previous_text;
+    private final PLSPRegions previous;
+    private final BooleanSupplier cancelled;
+    private final int prefix;
+    private final int suffix;
+    private final int delta;
+    private final List<Integer> offsets;
+    private final List<Region> regions;
+    private int next_line;
+
+    Analysis(
+      final PParserProviderType in_parsers,
+      final URI in_uri,
+      final String in_text,
+      final String in_previous_text,
+      final PLSPRegions in_previous,
+      final BooleanSupplier in_cancelled)
+    {
+      this.parsers = in_parsers;
+      this.uri = in_uri;
+      this.text = in_text;
+      this.previous_text = in_previous_text;
+      this.previous = in_previous;
+      this.cancelled = in_cancelled;
+      this.next_line = in_previous.next_line;
+      this.offsets = new ArrayList<>(in_previous.regions.length + 16);
+      this.regions = new ArrayList<>(in_previous.regions.length + 16);
+
+      /*
+       * The shared end is measured first, so that every region of an
+       * unchanged text can be reused, including the region that ends at the
+       * end of the text.
+       */
+
+      final int shortest = Math.min(in_text.length(), in_previous_text.length());
+      int end = 0;
+      while (end < shortest
+        && in_text.charAt(in_text.length() - 1 - end)
+        == in_previous_text.charAt(in_previous_text.length() - 1 - end)) {
+        ++end;
+      }
+      int start = 0;
+      while (start < shortest - end
+        && in_text.charAt(start) == in_previous_text.charAt(start)) {
+        ++start;
+      }
+      this.prefix = start;
+      this.suffix = end;
+      this.delta = in_text.length() - in_previous_text.length();
+    }
+
+    Optional<PLSPRegions> run()
+    {
+      final int length = this.text.length();
+      int position = 0;
+      int stopped = -1;
+
+      while (position < length) {
+        if (this.cancelled.getAsBoolean()) {
+          return Optional.empty();
+        }
+
+        final int cached = this.cached(position);
+        if (cached >= 0) {
+          final Region region = this.previous.regions[cached];
+          this.add(position, region);
+          if (region.stopped) {
+            stopped = position;
+            break;
+          }
+          position += region.length;
+          continue;
+        }
+
+        final int end = this.parse(position);
+        if (end < 0) {
+          return Optional.empty();
+        }
+        if (end == Integer.MAX_VALUE) {
+          stopped = this.offsets.get(this.offsets.size() - 1).intValue();
+          break;
+        }
+        position = end;
+      }
+
+      if (this.cancelled.getAsBoolean()) {
+        return Optional.empty();
+      }
+
+      final int active = this.regions.size();
+      if (stopped >= 0) {
+        this.retain(stopped);
+      }
+
+      final int[] result_offsets = new int[this.offsets.size()];
+      for (int index = 0; index < result_offsets.length; ++index) {
+        result_offsets[index] = this.offsets.get(index).intValue();
+      }
+      return Optional.of(new PLSPRegions(
+        result_offsets,
+        this.regions.toArray(new Region[0]),
+        active,
+        this.next_line));
+    }
+
+    private void add(
+      final int offset,
+      final Region region)
+    {
+      this.offsets.add(Integer.valueOf(offset));
+      this.regions.add(region);
+    }
+
+    /**
+     * Keep the regions of the earlier version that follow the region at
+     * which parsing stopped and can still be reused.
+     */
+
+    private void retain(
+      final int stopped)
+    {
+      final int[] previous_offsets = this.previous.offsets;
+      for (int index = 0; index < previous_offsets.length; ++index) {
+        final int offset = this.offsetOf(index);
+        if (offset > stopped) {
+          this.add(offset, this.previous.regions[index]);
+        }
+      }
+    }
+
+    /**
+     * @return The offset in the current text of the region of the earlier
+     * version with the given index, or -1 if the region cannot be reused
+     */
+
+    private int offsetOf(
+      final int index)
+    {
+      final int offset = this.previous.offsets[index];
+      if (offset >= this.previous_text.length() - this.suffix) {
+        return offset + this.delta;
+      }
+
+      /*
+       * The region that ends at the end of the earlier text may not end at a
+       * boundary, and so its meaning can depend on any text that follows it.
+       */
+
+      final int end = offset + this.previous.regions[index].length;
+      if (end <= this.prefix && end < this.previous_text.length()) {
+        return offset;
+      }
+      return -1;
+    }
+
+    /**
+     * @return The index of a region of the earlier version that begins at
+     * the given offset of the current text and can be reused, or -1 if there
+     * is no such region
+     */
+
+    private int cached(
+      final int position)
+    {
+      final int offset;
+      if (position >= this.text.length() - this.suffix) {
+        offset = position - this.delta;
+      } else {
+        offset = position;
+      }
+
+      final int index = Arrays.binarySearch(this.previous.offsets, offset);
+      if (index >= 0 && this.offsetOf(index) == position) {
+        return index;
+      }
+      return -1;
+    }
+
+    /**
+     * Parse the regions from the given offset up to the next region that
+     * can be reused, or the end of the text.
+     *
+     * @return The offset at which parsing ended, {@link Integer#MAX_VALUE}
+     * if parsing stopped at an s-expression that could not be parsed, or -1
+     * if the analysis was abandoned
+     */
+
+    private int parse(
+      final int start)
+    {
+      final Span span = this.scan(start);
+      final int first_line = this.next_line;
+      this.next_line = span.end_line + 2;
+
+      final String span_text = this.text.substring(start, span.end);
+      try (PParserType p = this.parsers.createAtLine(
+        this.uri,
+        new ByteArrayInputStream(span_text.getBytes(StandardCharsets.UTF_8)),
+        first_line)) {
+        while (!span.stopped) {
+          if (this.cancelled.getAsBoolean()) {
+            return -1;
+          }
+          if (!span.parse(p)) {
+            break;
+          }
+        }
+      } catch (final IOException e) {
+        throw new UncheckedIOException(e);
+      }
+
+      final int last = span.stopped ? span.region : span.lines.length - 1;
+      for (int index = 0; index <= last; ++index) {
+        this.add(span.starts[index], new Region(
+          span.lengths[index],
+          span.newlines[index],
+          span.lines[index],
+          span.forms[index],
+          span.errors[index],
+          span.stopped && index == last));
+      }
+      return span.stopped ? Integer.MAX_VALUE : span.end;
+    }
+
+    /**
+     * Find the regions from the given offset up to the next region that can
+     * be reused, or the end of the text, and assign lexical lines to them.
+     */
+
+    private Span scan(
+      final int start)
+    {
+      final int length = this.text.length();
+      final List<Integer> starts = new ArrayList<>(16);
+      final List<Integer> counts = new ArrayList<>(16);
+      final Scanner scanner = new Scanner(this.text, start);
+      starts.add(Integer.valueOf(start));
+      while (true) {
+        counts.add(Integer.valueOf(scanner.next()));
+        if (scanner.position >= length || this.cached(scanner.position) >= 0) {
+          break;
+        }
+        starts.add(Integer.valueOf(scanner.position));
+      }
+
+      final int count = starts.size();
+      final Span span = new Span(count, scanner.position);
+      int line = this.next_line;
+      for (int index = 0; index < count; ++index) {
+        final int region_start = starts.get(index).intValue();
+        final int region_end = index + 1 < count
+          ? starts.get(index + 1).intValue()
+          : scanner.position;
+        span.starts[index] = region_start;
+        span.lengths[index] = region_end - region_start;
+        span.newlines[index] =
+          countNewlines(this.text, region_start, region_end);
+        span.lines[index] = line;
+        line += counts.get(index).intValue();
+      }
+      span.end_line = line;
+      return span;
+    }
+
+    private static int countNewlines(
+      final String text,
+      final int start,
+      final int end)
+    {
+      int count = 0;
+      for (int index = start; index < end; ++index) {
+        if (text.charAt(index) == '\n') {
+          ++count;
+        }
+      }
+      return count;
+    }
+  }
+
+  /**
+   * A run of regions that are parsed together, and the forms and errors of
+   * the run, distributed to the regions by line.
+   */
+
+  private static final class Span
+  {
+    private final int[] starts;
+    private final int[] lengths;
+    private final int[] newlines;
+    private final int[] lines;
+    private final int end;
+    private final Vector<PExpressionOrDeclarationType<PParsed>>[] forms;
+    private final Vector<PParseError>[] errors;
+    private int end_line;
+    private int region;
+    private boolean stopped;
+
+    @SuppressWarnings("unchecked")
+    Span(
+      final int count,
+      final int in_end)
+    {
+      this.starts = new int[count];
+      this.lengths = new int[count];
+      this.newlines = new int[count];
+      this.lines = new int[count];
+      this.end = in_end;
+      this.forms = new Vector[count];
+      this.errors = new Vector[count];
+      Arrays.fill(this.forms, Vector.empty());
+      Arrays.fill(this.errors, Vector.empty());
+    }
+
+    /**
+     * Parse a form, and record it or its errors in the region that contains
+     * it. Results arrive in order, and so the region only moves forwards.
+     *
+     * @return {@code false} if there are no more forms
+     */
+
+    boolean parse(
+      final PParserType p)
+      throws IOException
+    {
+      final Validation<Seq<PParseError>, Optional<PExpressionOrDeclarationType<PParsed>>> r =
+        p.parseExpressionOrDeclaration();
+      if (r.isValid()) {
+        if (!r.get().isPresent()) {
+          return false;
+        }
+        final PExpressionOrDeclarationType<PParsed> form = r.get().get();
+        this.seek(form.lexical().line());
+        this.forms[this.region] = this.forms[this.region].append(form);
+        return true;
+      }
+
+      for (final PParseError e : r.getError()) {
+        this.seek(e.lexical().line());
+        this.errors[this.region] = this.errors[this.region].append(e);
+      }
+      this.stopped = r.getError().exists(
+        e -> e.code() == PParseErrorCode.INVALID_S_EXPRESSION);
+      return true;
+    }
+
+    private void seek(
+      final int line)
+    {
+      while (this.region + 1 < this.lines.length
+        && this.lines[this.region + 1] <= line) {
+        ++this.region;
+      }
+    }
+  }
+}
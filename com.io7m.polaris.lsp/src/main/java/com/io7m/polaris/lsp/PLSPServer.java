@@ -0,0 +1,552 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.lsp;
+
+import com.io7m.junreachable.UnreachableCodeException;
+import io.vavr.collection.Vector;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A language server that reads JSON-RPC messages from an input stream and
+ * writes responses and notifications to an output stream.
+ *
+ * Documents are synchronized in full. Each edit to a document schedules an
+ * analysis after the configured debounce delay, and cancels any analysis of
+ * an earlier version of the document that has not yet published its
+ * results; an analysis that is already parsing stops at the next form. The
+ * most recently analysed version of each open document, including its
+ * parsed forms, is kept in memory, and each analysis parses only the parts
+ * of the text that differ from that version. Analyses for all documents
+ * share a small fixed pool of threads, and so the number of threads used
+ * does not depend on the number of open documents.
+ *
+ * The names declared by each analysed document are added to a workspace
+ * index, which answers {@code workspace/symbol} requests. The index is
+ * updated after the diagnostics for the document have been published, and
+ * so does not delay them. Closing a document does not remove its names
+ * from the index.
+ */
+
+public final class PLSPServer implements Closeable
+{
+  private static final long PARSE_ERROR = -32700L;
+  private static final long INVALID_REQUEST = -32600L;
+  private static final long METHOD_NOT_FOUND = -32601L;
+  private static final long INVALID_PARAMS = -32602L;
+  private static final int WORKSPACE_SYMBOL_LIMIT = 256;
+
+  private final PLSPServerConfiguration configuration;
+  private final PLSPTransport transport;
+  private final ScheduledThreadPoolExecutor executor;
+  private final Map<URI, PLSPDocument> documents;
+  private final Map<URI, Pending> pending;
+  private final PLSPWorkspaceIndex workspace;
+  private final Object publish_lock;
+  private final Object index_lock;
+  private boolean shutdown;
+
+  private PLSPServer(
+    final PLSPServerConfiguration in_configuration,
+    final PLSPTransport in_transport)
+  {
+    this.configuration =
+      Objects.requireNonNull(in_configuration, "Configuration");
+    this.transport = Objects.requireNonNull(in_transport, "Transport");
+
+    final AtomicInteger threads = new AtomicInteger(0);
+    this.executor = new ScheduledThreadPoolExecutor(
+      in_configuration.threads(),
+      r -> {
+        final Thread t = new Thread(r);
+        t.setName("com.io7m.polaris.lsp.analysis-" + threads.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      });
+    this.executor.setRemoveOnCancelPolicy(true);
+
+    this.documents = new ConcurrentHashMap<>(16);
+    this.pending = new ConcurrentHashMap<>(16);
+    this.workspace = PLSPWorkspaceIndex.create();
+    this.publish_lock = new Object();
+    this.index_lock = new Object();
+    this.shutdown = false;
+  }
+
+  /**
+   * Create a server.
+   *
+   * @param configuration The server configuration
+   * @param input         The stream from which messages are read
+   * @param output        The stream to which messages are written
+   *
+   * @return A server
+   */
+
+  public static PLSPServer create(
+    final PLSPServerConfiguration configuration,
+    final InputStream input,
+    final OutputStream output)
+  {
+    return new PLSPServer(configuration, new PLSPTransport(input, output));
+  }
+
+  /**
+   * Read and handle messages until the client sends an {@code exit}
+   * notification or closes the input stream.
+   *
+   * @return {@code true} iff the client requested a shutdown before exiting
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public boolean run()
+    throws IOException
+  {
+    while (true) {
+      final Optional<String> message = this.transport.read();
+      if (!message.isPresent()) {
+        return false;
+      }
+      if (!this.handle(message.get())) {
+        return this.shutdown;
+      }
+    }
+  }
+
+  /**
+   * @param uri The URI of a document
+   *
+   * @return The most recently analysed version of the document, if the
+   * document is open and has been analysed
+   */
+
+  public Optional<PLSPDocument> document(
+    final URI uri)
+  {
+    return Optional.ofNullable(
+      this.documents.get(Objects.requireNonNull(uri, "URI")));
+  }
+
+  /**
+   * @return The index of the names declared by all documents that have been
+   * analysed
+   */
+
+  public PLSPWorkspaceIndex workspace()
+  {
+    return this.workspace;
+  }
+
+  @Override
+  public void close()
+  {
+    this.executor.shutdownNow();
+  }
+
+  private boolean handle(
+    final String text)
+    throws IOException
+  {
+    final Map<?, ?> message;
+    try {
+      final Object value = PLSPJSON.parse(text);
+      if (!(value instanceof Map)) {
+        this.error(null, INVALID_REQUEST, "Message must be an object");
+        return true;
+      }
+      message = (Map<?, ?>) value;
+    } catch (final IllegalArgumentException e) {
+      this.error(null, PARSE_ERROR, e.getMessage());
+      return true;
+    }
+
+    final Object method = message.get("method");
+    if (!(method instanceof String)) {
+      return true;
+    }
+
+    final boolean request = message.containsKey("id");
+    final Object id = message.get("id");
+    try {
+      return this.dispatch(
+        (String) method, request, id, message.get("params"));
+    } catch (final IllegalArgumentException e) {
+      if (request) {
+        this.error(id, INVALID_PARAMS, e.getMessage());
+      }
+      return true;
+    }
+  }
+
+  private boolean dispatch(
+    final String method,
+    final boolean request,
+    final Object id,
+    final Object params)
+    throws IOException
+  {
+    if ("exit".equals(method)) {
+      return false;
+    }
+    if (this.shutdown && request) {
+      this.error(id, INVALID_REQUEST, "Server is shut down");
+      return true;
+    }
+
+    switch (method) {
+      case "initialize": {
+        final Map<String, Object> capabilities = new LinkedHashMap<>(2);
+        capabilities.put("textDocumentSync", Long.valueOf(1L));
+        capabilities.put("workspaceSymbolProvider", Boolean.TRUE);
+        final Map<String, Object> result = new LinkedHashMap<>(2);
+        result.put("capabilities", capabilities);
+        result.put("serverInfo", Collections.singletonMap("name", "polaris"));
+        this.respond(id, result);
+        break;
+      }
+      case "shutdown": {
+        this.shutdown = true;
+        this.respond(id, null);
+        break;
+      }
+      case "textDocument/didOpen": {
+        final Map<?, ?> document = object(object(params).get("textDocument"));
+        this.edit(
+          uri(document),
+          integer(document.get("version")),
+          string(document.get("text")));
+        break;
+      }
+      case "textDocument/didChange": {
+        final Map<?, ?> document = object(object(params).get("textDocument"));
+        final Object changes = object(params).get("contentChanges");
+        if (!(changes instanceof List) || ((List<?>) changes).isEmpty()) {
+          throw new IllegalArgumentException("Expected content changes");
+        }
+        final List<?> list = (List<?>) changes;
+        this.edit(
+          uri(document),
+          integer(document.get("version")),
+          string(object(list.get(list.size() - 1)).get("text")));
+        break;
+      }
+      case "textDocument/didClose": {
+        this.closeDocument(uri(object(object(params).get("textDocument"))));
+        break;
+      }
+      case "workspace/symbol": {
+        this.respond(id, this.workspaceSymbols(string(object(params).get("query"))));
+        break;
+      }
+      default: {
+        if (request) {
+          this.error(id, METHOD_NOT_FOUND, "Unsupported method: " + method);
+        }
+        break;
+      }
+    }
+    return true;
+  }
+
+  private void edit(
+    final URI uri,
+    final int version,
+    final String text)
+  {
+    final Pending p = new Pending(uri, version, text);
+    synchronized (this.publish_lock) {
+      final Pending previous = this.pending.put(uri, p);
+      if (previous != null) {
+        previous.cancel();
+      }
+      p.future = this.executor.schedule(
+        () -> this.analyse(p),
+        this.configuration.debounce().toNanos(),
+        TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private void analyse(
+    final Pending p)
+  {
+    final Optional<PLSPDocument> result =
+      PLSPDocuments.analyse(
+        this.configuration.parsers(),
+        p.uri,
+        p.version,
+        p.text,
+        Optional.ofNullable(this.documents.get(p.uri)),
+        p::isCancelled);
+    if (!result.isPresent()) {
+      return;
+    }
+
+    final PLSPDocument document = result.get();
+    synchronized (this.publish_lock) {
+      if (p.isCancelled()) {
+        return;
+      }
+      this.pending.remove(p.uri, p);
+      this.documents.put(p.uri, document);
+      try {
+        this.sendNotification(
+          "textDocument/publishDiagnostics",
+          PLSPDocuments.diagnostics(document));
+      } catch (final IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    this.index(p.uri, document);
+  }
+
+  /**
+   * Add the names declared by a document to the workspace index, unless a
+   * later version of the document has been published in the meantime.
+   * Closing a document does not remove its names, and so a document that
+   * was closed after it was published is still indexed.
+   */
+
+  private void index(
+    final URI uri,
+    final PLSPDocument document)
+  {
+    final Vector<PLSPSymbol> symbols = PLSPSymbols.symbols(document);
+    synchronized (this.index_lock) {
+      final PLSPDocument current = this.documents.get(uri);
+      if (current == null || current == document) {
+        this.workspace.update(uri, symbols);
+      }
+    }
+  }
+
+  private void closeDocument(
+    final URI uri)
+    throws IOException
+  {
+    synchronized (this.publish_lock) {
+      final Pending previous = this.pending.remove(uri);
+      if (previous != null) {
+        previous.cancel();
+      }
+      this.documents.remove(uri);
+
+      final Map<String, Object> params = new LinkedHashMap<>(2);
+      params.put("uri", uri.toString());
+      params.put("diagnostics", Collections.emptyList());
+      this.sendNotification("textDocument/publishDiagnostics", params);
+    }
+  }
+
+  /**
+   * Names are matched approximately, allowing one edit for every four
+   * characters of the query, up to two edits.
+   */
+
+  private List<Object> workspaceSymbols(
+    final String query)
+  {
+    final int distance = Math.min(2, query.length() / 4);
+    final Vector<PLSPSymbol> symbols =
+      this.workspace.fuzzy(query, distance, WORKSPACE_SYMBOL_LIMIT);
+    final List<Object> results = new ArrayList<>(symbols.size());
+    for (final PLSPSymbol symbol : symbols) {
+      final PLSPPosition start = symbol.position();
+      final Map<String, Object> range = new LinkedHashMap<>(2);
+      range.put("start", position(start.line(), start.character()));
+      range.put("end", position(
+        start.line(), start.character() + symbol.name().length()));
+
+      final Map<String, Object> location = new LinkedHashMap<>(2);
+      location.put("uri", symbol.uri().toString());
+      location.put("range", range);
+
+      final Map<String, Object> information = new LinkedHashMap<>(4);
+      information.put("name", symbol.name());
+      information.put("kind", Long.valueOf(symbolKind(symbol.kind())));
+      information.put("location", location);
+      results.add(information);
+    }
+    return results;
+  }
+
+  private static Map<String, Object> position(
+    final int line,
+    final int character)
+  {
+    final Map<String, Object> position = new LinkedHashMap<>(2);
+    position.put("line", Long.valueOf((long) line));
+    position.put("character", Long.valueOf((long) character));
+    return position;
+  }
+
+  /**
+   * @return The protocol's {@code SymbolKind} for the given kind of name
+   */
+
+  private static long symbolKind(
+    final PLSPSymbolKind kind)
+  {
+    switch (kind) {
+      case TERM_VALUE:
+        return 13L;
+      case TERM_FUNCTION:
+      case TERM_SIGNATURE:
+        return 12L;
+      case TYPE_RECORD:
+        return 23L;
+      case TYPE_VARIANT:
+        return 10L;
+      case CONSTRUCTOR:
+        return 22L;
+      case RECORD_FIELD:
+        return 8L;
+      default:
+        throw new UnreachableCodeException();
+    }
+  }
+
+  private static Map<?, ?> object(
+    final Object value)
+  {
+    if (value instanceof Map) {
+      return (Map<?, ?>) value;
+    }
+    throw new IllegalArgumentException("Expected an object");
+  }
+
+  private static String string(
+    final Object value)
+  {
+    if (value instanceof String) {
+      return (String) value;
+    }
+    throw new IllegalArgumentException("Expected a string");
+  }
+
+  private static int integer(
+    final Object value)
+  {
+    if (value instanceof Long) {
+      return ((Long) value).intValue();
+    }
+    throw new IllegalArgumentException("Expected an integer");
+  }
+
+  private static URI uri(
+    final Map<?, ?> document)
+  {
+    return URI.create(string(document.get("uri")));
+  }
+
+  private void respond(
+    final Object id,
+    final Object result)
+    throws IOException
+  {
+    final Map<String, Object> m = new LinkedHashMap<>(4);
+    m.put("jsonrpc", "2.0");
+    m.put("id", id);
+    m.put("result", result);
+    this.transport.write(PLSPJSON.serialize(m));
+  }
+
+  private void error(
+    final Object id,
+    final long code,
+    final String message)
+    throws IOException
+  {
+    final Map<String, Object> e = new LinkedHashMap<>(2);
+    e.put("code", Long.valueOf(code));
+    e.put("message", message);
+
+    final Map<String, Object> m = new LinkedHashMap<>(4);
+    m.put("jsonrpc", "2.0");
+    m.put("id", id);
+    m.put("error", e);
+    this.transport.write(PLSPJSON.serialize(m));
+  }
+
+  private void sendNotification(
+    final String method,
+    final Object params)
+    throws IOException
+  {
+    final Map<String, Object> m = new LinkedHashMap<>(4);
+    m.put("jsonrpc", "2.0");
+    m.put("method", method);
+    m.put("params", params);
+    this.transport.write(PLSPJSON.serialize(m));
+  }
+
+  /**
+   * A version of a document that has been scheduled for analysis.
+   */
+
+  private static final class Pending
+  {
+    private final URI uri;
+    private final int version;
+    private final String text;
+    private volatile boolean cancelled;
+    private volatile ScheduledFuture<?> future;
+
+    Pending(
+      final URI in_uri,
+      final int in_version,
+      final String in_text)
+    {
+      this.uri = in_uri;
+      this.version = in_version;
+      this.text = in_text;
+    }
+
+    boolean isCancelled()
+    {
+      return this.cancelled;
+    }
+
+    void cancel()
+    {
+      this.cancelled = true;
+      final ScheduledFuture<?> f = this.future;
+      if (f != null) {
+        f.cancel(false);
+      }
+    }
+  }
+}
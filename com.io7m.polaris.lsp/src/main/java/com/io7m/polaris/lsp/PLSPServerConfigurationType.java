@@ -0,0 +1,75 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.lsp;
+
+import com.io7m.jaffirm.core.Preconditions;
+import com.io7m.polaris.core.PImmutableStyleType;
+import com.io7m.polaris.parser.api.PParserProviderType;
+import org.immutables.value.Value;
+
+import java.time.Duration;
+
+/**
+ * The configuration of a {@link PLSPServer}.
+ */
+
+@PImmutableStyleType
+@Value.Immutable
+public interface PLSPServerConfigurationType
+{
+  /**
+   * @return The parsers used to analyse documents
+   */
+
+  @Value.Parameter
+  PParserProviderType parsers();
+
+  /**
+   * @return The time to wait after an edit before analysing a document; an
+   * edit made during this time restarts the wait
+   */
+
+  @Value.Default
+  default Duration debounce()
+  {
+    return Duration.ofMillis(10L);
+  }
+
+  /**
+   * @return The number of threads shared by all documents for analysis
+   */
+
+  @Value.Default
+  default int threads()
+  {
+    return 1;
+  }
+
+  /**
+   * Check preconditions for the type.
+   */
+
+  @Value.Check
+  default void checkPreconditions()
+  {
+    Preconditions.checkPrecondition(
+      !this.debounce().isNegative(), "Debounce must be non-negative");
+    Preconditions.checkPreconditionI(
+      this.threads(), this.threads() > 0, t -> "Threads must be positive");
+  }
+}
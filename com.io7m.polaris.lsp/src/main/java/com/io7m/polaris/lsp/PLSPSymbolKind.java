@@ -0,0 +1,66 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.lsp;
+
+/**
+ * The kinds of declared names.
+ */
+
+public enum PLSPSymbolKind
+{
+  /**
+   * The name of a value declaration.
+   */
+
+  TERM_VALUE,
+
+  /**
+   * The name of a function declaration.
+   */
+
+  TERM_FUNCTION,
+
+  /**
+   * The name of a type signature declaration.
+   */
+
+  TERM_SIGNATURE,
+
+  /**
+   * The name of a record type declaration.
+   */
+
+  TYPE_RECORD,
+
+  /**
+   * The name of a variant type declaration.
+   */
+
+  TYPE_VARIANT,
+
+  /**
+   * The name of a constructor of a variant type.
+   */
+
+  CONSTRUCTOR,
+
+  /**
+   * The name of a field of a record type.
+   */
+
+  RECORD_FIELD
+}
@@ -0,0 +1,760 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.lsp;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * An immutable set of symbols stored in a single buffer, which may be a
+ * memory-mapped file.
+ *
+ * The buffer holds a header, a table of unit URIs, a table of symbols
+ * sorted by name, a radix trie over the names, and a pool of the characters
+ * of names and URIs. Each node of the trie covers the range of symbols whose
+ * names begin with the prefix of the node; the children of a node are stored
+ * contiguously in order of their first character, and the label of the edge
+ * to a node is read from the name of the first symbol in its range. When a
+ * segment is opened, the table of units is decoded and every symbol and node
+ * is checked against the bounds of the buffer, so that queries need not
+ * check them; names are only decoded when they are read.
+ */
+
+final class PLSPSymbolSegment
+{
+  private static final int MAGIC = 0x504C5359;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 24;
+  private static final int UNIT_SIZE = 8;
+  private static final int SYMBOL_SIZE = 24;
+  private static final int NODE_SIZE = 24;
+
+  private static final int SYMBOL_NAME = 0;
+  private static final int SYMBOL_LENGTH = 4;
+  private static final int SYMBOL_KIND = 8;
+  private static final int SYMBOL_UNIT = 12;
+  private static final int SYMBOL_LINE = 16;
+  private static final int SYMBOL_CHARACTER = 20;
+
+  private static final int NODE_DEPTH = 0;
+  private static final int NODE_FIRST_CHILD = 4;
+  private static final int NODE_CHILD_COUNT = 8;
+  private static final int NODE_START = 12;
+  private static final int NODE_OWN_END = 16;
+  private static final int NODE_END = 20;
+
+  private static final PLSPSymbolKind[] KINDS = PLSPSymbolKind.values();
+
+  private final ByteBuffer buffer;
+  private final int symbol_count;
+  private final int node_count;
+  private final int symbols_at;
+  private final int nodes_at;
+  private final int chars_at;
+  private final int longest;
+  private final URI[] units;
+
+  private PLSPSymbolSegment(
+    final ByteBuffer in_buffer)
+    throws IOException
+  {
+    this.buffer = Objects.requireNonNull(in_buffer, "Buffer");
+
+    if (in_buffer.capacity() < HEADER_SIZE
+      || in_buffer.getInt(0) != MAGIC
+      || in_buffer.getInt(4) != VERSION) {
+      throw new IOException("Not a symbol index");
+    }
+
+    final int unit_count = in_buffer.getInt(8);
+    this.symbol_count = in_buffer.getInt(12);
+    this.node_count = in_buffer.getInt(16);
+    final int char_count = in_buffer.getInt(20);
+
+    final long size =
+      sizeOf(unit_count, this.symbol_count, this.node_count, char_count);
+    final boolean counts_valid =
+      (unit_count | this.symbol_count | this.node_count | char_count) >= 0;
+    if (!counts_valid || size != (long) in_buffer.capacity()) {
+      throw new IOException("Symbol index is truncated or corrupt");
+    }
+
+    this.symbols_at = HEADER_SIZE + UNIT_SIZE * unit_count;
+    this.nodes_at = this.symbols_at + SYMBOL_SIZE * this.symbol_count;
+    this.chars_at = this.nodes_at + NODE_SIZE * this.node_count;
+
+    this.units = new URI[unit_count];
+    for (int index = 0; index < unit_count; ++index) {
+      final int at = HEADER_SIZE + UNIT_SIZE * index;
+      final String text =
+        this.string(char_count, in_buffer.getInt(at), in_buffer.getInt(at + 4));
+      try {
+        this.units[index] = new URI(text);
+      } catch (final URISyntaxException e) {
+        throw new IOException("Symbol index contains an invalid URI", e);
+      }
+    }
+
+    this.longest = this.checkSymbols(unit_count, char_count);
+    this.checkNodes();
+  }
+
+  /**
+   * Build a segment in memory.
+   *
+   * @param symbols The symbols
+   *
+   * @return A segment
+   */
+
+  static PLSPSymbolSegment create(
+    final List<PLSPSymbol> symbols)
+  {
+    Objects.requireNonNull(symbols, "Symbols");
+
+    final PLSPSymbol[] sorted = symbols.toArray(new PLSPSymbol[0]);
+    Arrays.sort(sorted, Comparator.comparing(PLSPSymbol::name));
+
+    final Map<URI, Integer> unit_indices = new HashMap<>(16);
+    final List<URI> unit_list = new ArrayList<>(16);
+    final StringBuilder chars = new StringBuilder(sorted.length * 8);
+    final int[] offsets = new int[sorted.length];
+    for (int index = 0; index < sorted.length; ++index) {
+      final String name = sorted[index].name();
+      if (index > 0 && name.equals(sorted[index - 1].name())) {
+        offsets[index] = offsets[index - 1];
+      } else {
+        offsets[index] = chars.length();
+        chars.append(name);
+      }
+      final URI uri = sorted[index].uri();
+      if (!unit_indices.containsKey(uri)) {
+        unit_indices.put(uri, Integer.valueOf(unit_list.size()));
+        unit_list.add(uri);
+      }
+    }
+
+    final int[] unit_offsets = new int[unit_list.size()];
+    for (int index = 0; index < unit_offsets.length; ++index) {
+      unit_offsets[index] = chars.length();
+      chars.append(unit_list.get(index).toString());
+    }
+
+    final Nodes nodes = new Nodes(sorted);
+    nodes.build();
+
+    final long size =
+      sizeOf(unit_offsets.length, sorted.length, nodes.count, chars.length());
+    if (size > (long) Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Too many symbols for a single segment");
+    }
+
+    final ByteBuffer buffer = ByteBuffer.allocate((int) size);
+    buffer.putInt(MAGIC);
+    buffer.putInt(VERSION);
+    buffer.putInt(unit_offsets.length);
+    buffer.putInt(sorted.length);
+    buffer.putInt(nodes.count);
+    buffer.putInt(chars.length());
+
+    putUnits(buffer, unit_offsets, unit_list);
+    putSymbols(buffer, sorted, offsets, unit_indices);
+    nodes.put(buffer);
+    for (int index = 0; index < chars.length(); ++index) {
+      buffer.putChar(chars.charAt(index));
+    }
+
+    buffer.flip();
+    try {
+      return new PLSPSymbolSegment(buffer);
+    } catch (final IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static long sizeOf(
+    final int unit_count,
+    final int symbol_count,
+    final int node_count,
+    final int char_count)
+  {
+    return (long) HEADER_SIZE
+      + (long) UNIT_SIZE * (long) unit_count
+      + (long) SYMBOL_SIZE * (long) symbol_count
+      + (long) NODE_SIZE * (long) node_count
+      + 2L * (long) char_count;
+  }
+
+  private static void putUnits(
+    final ByteBuffer buffer,
+    final int[] unit_offsets,
+    final List<URI> unit_list)
+  {
+    for (int index = 0; index < unit_offsets.length; ++index) {
+      buffer.putInt(unit_offsets[index]);
+      buffer.putInt(unit_list.get(index).toString().length());
+    }
+  }
+
+  private static void putSymbols(
+    final ByteBuffer buffer,
+    final PLSPSymbol[] sorted,
+    final int[] offsets,
+    final Map<URI, Integer> unit_indices)
+  {
+    for (int index = 0; index < sorted.length; ++index) {
+      final PLSPSymbol symbol = sorted[index];
+      buffer.putInt(offsets[index]);
+      buffer.putInt(symbol.name().length());
+      buffer.putInt(symbol.kind().ordinal());
+      buffer.putInt(unit_indices.get(symbol.uri()).intValue());
+      buffer.putInt(symbol.position().line());
+      buffer.putInt(symbol.position().character());
+    }
+  }
+
+  /**
+   * Map a segment that was written with {@link #write(Path)}.
+   *
+   * @param path The file
+   *
+   * @return A segment
+   *
+   * @throws IOException If the file cannot be read or is not a valid segment
+   */
+
+  static PLSPSymbolSegment map(
+    final Path path)
+    throws IOException
+  {
+    Objects.requireNonNull(path, "Path");
+
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      if (channel.size() > (long) Integer.MAX_VALUE) {
+        throw new IOException("Symbol index is too large");
+      }
+      return new PLSPSymbolSegment(
+        channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size()));
+    }
+  }
+
+  /**
+   * Write the segment to a file, replacing any existing file.
+   *
+   * @param path The file
+   *
+   * @throws IOException On I/O errors
+   */
+
+  void write(
+    final Path path)
+    throws IOException
+  {
+    Objects.requireNonNull(path, "Path");
+
+    try (FileChannel channel = FileChannel.open(
+      path,
+      StandardOpenOption.CREATE,
+      StandardOpenOption.TRUNCATE_EXISTING,
+      StandardOpenOption.WRITE)) {
+      final ByteBuffer data = this.buffer.duplicate();
+      data.clear();
+      while (data.hasRemaining()) {
+        channel.write(data);
+      }
+    }
+  }
+
+  /**
+   * @return The number of symbols
+   */
+
+  int size()
+  {
+    return this.symbol_count;
+  }
+
+  /**
+   * @return The number of units
+   */
+
+  int unitCount()
+  {
+    return this.units.length;
+  }
+
+  /**
+   * @param unit A unit index
+   *
+   * @return The URI of the unit
+   */
+
+  URI unit(
+    final int unit)
+  {
+    return this.units[unit];
+  }
+
+  /**
+   * @param symbol A symbol index
+   *
+   * @return The unit index of the symbol
+   */
+
+  int unitOf(
+    final int symbol)
+  {
+    return this.buffer.getInt(this.symbolAt(symbol) + SYMBOL_UNIT);
+  }
+
+  /**
+   * @param symbol A symbol index
+   *
+   * @return The name of the symbol
+   */
+
+  String name(
+    final int symbol)
+  {
+    final int at = this.symbolAt(symbol);
+    final int offset = this.buffer.getInt(at + SYMBOL_NAME);
+    final int length = this.buffer.getInt(at + SYMBOL_LENGTH);
+    final char[] chars = new char[length];
+    for (int index = 0; index < length; ++index) {
+      chars[index] = this.buffer.getChar(this.chars_at + 2 * (offset + index));
+    }
+    return new String(chars);
+  }
+
+  /**
+   * @param symbol A symbol index
+   *
+   * @return The symbol
+   */
+
+  PLSPSymbol symbol(
+    final int symbol)
+  {
+    final int at = this.symbolAt(symbol);
+    return PLSPSymbol.of(
+      this.name(symbol),
+      KINDS[this.buffer.getInt(at + SYMBOL_KIND)],
+      this.units[this.buffer.getInt(at + SYMBOL_UNIT)],
+      PLSPPosition.of(
+        this.buffer.getInt(at + SYMBOL_LINE),
+        this.buffer.getInt(at + SYMBOL_CHARACTER)));
+  }
+
+  /**
+   * Deliver the symbols whose names begin with {@code prefix}, in name order.
+   *
+   * @param prefix   The prefix
+   * @param receiver The receiver of symbol indices
+   */
+
+  void prefix(
+    final String prefix,
+    final ReceiverType receiver)
+  {
+    if (this.node_count == 0) {
+      return;
+    }
+
+    int node = 0;
+    int from = 0;
+    while (true) {
+      final int depth = this.node(node, NODE_DEPTH);
+      final int start = this.node(node, NODE_START);
+      final int limit = Math.min(depth, prefix.length());
+      for (int index = from; index < limit; ++index) {
+        if (this.charOf(start, index) != prefix.charAt(index)) {
+          return;
+        }
+      }
+      if (prefix.length() <= depth) {
+        this.deliver(start, this.node(node, NODE_END), receiver);
+        return;
+      }
+      node = this.child(node, depth, prefix.charAt(depth));
+      if (node < 0) {
+        return;
+      }
+      from = depth + 1;
+    }
+  }
+
+  /**
+   * Deliver the symbols that have a prefix within {@code distance} edits
+   * (insertions, deletions, or substitutions) of {@code query}, in name
+   * order. A subtree of the trie is abandoned as soon as every prefix of the
+   * query is more than {@code distance} edits from the prefix of the
+   * subtree.
+   *
+   * @param query    The query
+   * @param distance The maximum edit distance
+   * @param receiver The receiver of symbol indices
+   */
+
+  void fuzzy(
+    final String query,
+    final int distance,
+    final ReceiverType receiver)
+  {
+    if (this.node_count == 0) {
+      return;
+    }
+    if (query.length() <= distance) {
+      this.deliver(0, this.symbol_count, receiver);
+      return;
+    }
+
+    final int[][] rows = new int[this.longest + 1][query.length() + 1];
+    for (int index = 0; index <= query.length(); ++index) {
+      rows[0][index] = index;
+    }
+    this.fuzzyNode(0, 0, rows, query, distance, receiver);
+  }
+
+  private boolean fuzzyNode(
+    final int node,
+    final int from,
+    final int[][] rows,
+    final String query,
+    final int distance,
+    final ReceiverType receiver)
+  {
+    final int depth = this.node(node, NODE_DEPTH);
+    final int start = this.node(node, NODE_START);
+    final int length = query.length();
+
+    for (int p = from + 1; p <= depth; ++p) {
+      final int[] previous = rows[p - 1];
+      final int[] row = rows[p];
+      final char c = this.charOf(start, p - 1);
+      row[0] = p;
+      int minimum = p;
+      for (int j = 1; j <= length; ++j) {
+        final int cost = query.charAt(j - 1) == c ? 0 : 1;
+        final int d = Math.min(
+          Math.min(previous[j] + 1, row[j - 1] + 1), previous[j - 1] + cost);
+        row[j] = d;
+        minimum = Math.min(minimum, d);
+      }
+      if (row[length] <= distance) {
+        return this.deliver(start, this.node(node, NODE_END), receiver);
+      }
+      if (minimum > distance) {
+        return true;
+      }
+    }
+
+    final int first = this.node(node, NODE_FIRST_CHILD);
+    final int count = this.node(node, NODE_CHILD_COUNT);
+    for (int index = 0; index < count; ++index) {
+      if (!this.fuzzyNode(first + index, depth, rows, query, distance, receiver)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean deliver(
+    final int start,
+    final int end,
+    final ReceiverType receiver)
+  {
+    for (int index = start; index < end; ++index) {
+      if (!receiver.receive(index)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Find the child of {@code node} whose edge begins with {@code c}.
+   */
+
+  private int child(
+    final int node,
+    final int depth,
+    final char c)
+  {
+    int low = this.node(node, NODE_FIRST_CHILD);
+    int high = low + this.node(node, NODE_CHILD_COUNT) - 1;
+    while (low <= high) {
+      final int middle = (low + high) >>> 1;
+      final char m = this.charOf(this.node(middle, NODE_START), depth);
+      if (m < c) {
+        low = middle + 1;
+      } else if (m > c) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+    return -1;
+  }
+
+  private int symbolAt(
+    final int symbol)
+  {
+    return this.symbols_at + SYMBOL_SIZE * symbol;
+  }
+
+  private int node(
+    final int node,
+    final int field)
+  {
+    return this.buffer.getInt(this.nodes_at + NODE_SIZE * node + field);
+  }
+
+  private char charOf(
+    final int symbol,
+    final int index)
+  {
+    final int offset = this.buffer.getInt(this.symbolAt(symbol) + SYMBOL_NAME);
+    return this.buffer.getChar(this.chars_at + 2 * (offset + index));
+  }
+
+  private String string(
+    final int char_count,
+    final int offset,
+    final int length)
+    throws IOException
+  {
+    if (offset < 0 || length < 0 || (long) offset + (long) length > (long) char_count) {
+      throw new IOException("Symbol index is truncated or corrupt");
+    }
+    final char[] chars = new char[length];
+    for (int index = 0; index < length; ++index) {
+      chars[index] = this.buffer.getChar(this.chars_at + 2 * (offset + index));
+    }
+    return new String(chars);
+  }
+
+  /**
+   * Check that every symbol refers to characters, a kind, and a unit that
+   * exist.
+   *
+   * @return The length of the longest name
+   */
+
+  private int checkSymbols(
+    final int unit_count,
+    final int char_count)
+    throws IOException
+  {
+    int maximum = 0;
+    for (int index = 0; index < this.symbol_count; ++index) {
+      final int at = this.symbolAt(index);
+      final long offset = (long) this.buffer.getInt(at + SYMBOL_NAME);
+      final int length = this.buffer.getInt(at + SYMBOL_LENGTH);
+      final int kind = this.buffer.getInt(at + SYMBOL_KIND);
+      final int unit = this.buffer.getInt(at + SYMBOL_UNIT);
+      final boolean chars_valid =
+        offset >= 0L && length >= 0 && offset + (long) length <= (long) char_count;
+      final boolean kind_valid = kind >= 0 && kind < KINDS.length;
+      final boolean unit_valid = unit >= 0 && unit < unit_count;
+      if (!(chars_valid && kind_valid && unit_valid)) {
+        throw new IOException("Symbol index is truncated or corrupt");
+      }
+      maximum = Math.max(maximum, length);
+    }
+    return maximum;
+  }
+
+  /**
+   * Check that every node refers to children and symbols that exist, that
+   * its depth does not exceed the names of its symbols, and that its
+   * children are deeper than it.
+   */
+
+  private void checkNodes()
+    throws IOException
+  {
+    if (this.symbol_count > 0 && this.node_count == 0) {
+      throw new IOException("Symbol index is truncated or corrupt");
+    }
+    for (int index = 0; index < this.node_count; ++index) {
+      final long first = (long) this.node(index, NODE_FIRST_CHILD);
+      final long count = (long) this.node(index, NODE_CHILD_COUNT);
+      final int start = this.node(index, NODE_START);
+      final int end = this.node(index, NODE_END);
+      final int own_end = this.node(index, NODE_OWN_END);
+      final boolean children_valid =
+        first > (long) index && count >= 0L && first + count <= (long) this.node_count;
+      final boolean range_valid =
+        start >= 0 && start < end && end <= this.symbol_count;
+      final boolean own_valid = own_end >= start && own_end <= end;
+      if (!(children_valid && range_valid && own_valid)) {
+        throw new IOException("Symbol index is truncated or corrupt");
+      }
+      final int depth = this.node(index, NODE_DEPTH);
+      final int length = this.buffer.getInt(this.symbolAt(start) + SYMBOL_LENGTH);
+      if (depth < 0 || depth > length) {
+        throw new IOException("Symbol index is truncated or corrupt");
+      }
+      for (long child = first; child < first + count; ++child) {
+        if (this.node((int) child, NODE_DEPTH) <= depth) {
+          throw new IOException("Symbol index is truncated or corrupt");
+        }
+      }
+    }
+  }
+
+  /**
+   * A receiver of symbol indices.
+   */
+
+  interface ReceiverType
+  {
+    /**
+     * @param symbol A symbol index
+     *
+     * @return {@code true} if further symbols should be delivered
+     */
+
+    boolean receive(int symbol);
+  }
+
+  /**
+   * The construction of the trie over a sorted array of symbols. Nodes are
+   * created in breadth-first order, so the children of each node are
+   * created together.
+   */
+
+  private static final class Nodes
+  {
+    private final PLSPSymbol[] symbols;
+    private int[] depths;
+    private int[] first_children;
+    private int[] child_counts;
+    private int[] starts;
+    private int[] own_ends;
+    private int[] ends;
+    private int count;
+
+    Nodes(
+      final PLSPSymbol[] in_symbols)
+    {
+      this.symbols = in_symbols;
+      final int capacity = Math.max(16, in_symbols.length / 2);
+      this.depths = new int[capacity];
+      this.first_children = new int[capacity];
+      this.child_counts = new int[capacity];
+      this.starts = new int[capacity];
+      this.own_ends = new int[capacity];
+      this.ends = new int[capacity];
+      this.count = 0;
+    }
+
+    void build()
+    {
+      if (this.symbols.length == 0) {
+        return;
+      }
+
+      this.add(0, this.symbols.length);
+      int node = 0;
+      while (node < this.count) {
+        this.expand(node);
+        ++node;
+      }
+    }
+
+    void put(
+      final ByteBuffer buffer)
+    {
+      for (int index = 0; index < this.count; ++index) {
+        buffer.putInt(this.depths[index]);
+        buffer.putInt(this.first_children[index]);
+        buffer.putInt(this.child_counts[index]);
+        buffer.putInt(this.starts[index]);
+        buffer.putInt(this.own_ends[index]);
+        buffer.putInt(this.ends[index]);
+      }
+    }
+
+    private void expand(
+      final int node)
+    {
+      final int start = this.starts[node];
+      final int end = this.ends[node];
+      final String first = this.symbols[start].name();
+      final String last = this.symbols[end - 1].name();
+
+      final int limit = Math.min(first.length(), last.length());
+      int depth = 0;
+      while (depth < limit && first.charAt(depth) == last.charAt(depth)) {
+        ++depth;
+      }
+
+      int own_end = start;
+      while (own_end < end && this.symbols[own_end].name().length() == depth) {
+        ++own_end;
+      }
+
+      this.depths[node] = depth;
+      this.own_ends[node] = own_end;
+      this.first_children[node] = this.count;
+
+      int child = own_end;
+      while (child < end) {
+        final char c = this.symbols[child].name().charAt(depth);
+        int child_end = child + 1;
+        while (child_end < end
+          && this.symbols[child_end].name().charAt(depth) == c) {
+          ++child_end;
+        }
+        this.add(child, child_end);
+        child = child_end;
+      }
+      this.child_counts[node] = this.count - this.first_children[node];
+    }
+
+    private void add(
+      final int start,
+      final int end)
+    {
+      if (this.count == this.starts.length) {
+        final int capacity = this.count * 2;
+        this.depths = Arrays.copyOf(this.depths, capacity);
+        this.first_children = Arrays.copyOf(this.first_children, capacity);
+        this.child_counts = Arrays.copyOf(this.child_counts, capacity);
+        this.starts = Arrays.copyOf(this.starts, capacity);
+        this.own_ends = Arrays.copyOf(this.own_ends, capacity);
+        this.ends = Arrays.copyOf(this.ends, capacity);
+      }
+      this.starts[this.count] = start;
+      this.ends[this.count] = end;
+      ++this.count;
+    }
+  }
+}
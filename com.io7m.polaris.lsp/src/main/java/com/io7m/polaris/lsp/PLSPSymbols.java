@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.lsp;
+
+import com.io7m.jlexing.core.LexicalPosition;
+import com.io7m.junreachable.UnreachableCodeException;
+import com.io7m.polaris.ast.PDeclarationFunction;
+import com.io7m.polaris.ast.PDeclarationRecord;
+import com.io7m.polaris.ast.PDeclarationSignature;
+import com.io7m.polaris.ast.PDeclarationValue;
+import com.io7m.polaris.ast.PDeclarationVariant;
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.ast.PTypeDeclarationType.PRecordFieldType;
+import com.io7m.polaris.ast.PTypeDeclarationType.PVariantCaseType;
+import com.io7m.polaris.parser.api.PParsed;
+import io.vavr.collection.Vector;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Functions to extract declared names from documents.
+ */
+
+public final class PLSPSymbols
+{
+  private PLSPSymbols()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Extract the names declared by the top-level forms of a document: terms,
+   * types, the constructors of variant types, and the fields of record
+   * types.
+   *
+   * @param document The document
+   *
+   * @return The declared names in declaration order
+   */
+
+  public static Vector<PLSPSymbol> symbols(
+    final PLSPDocument document)
+  {
+    Objects.requireNonNull(document, "Document");
+
+    final List<PLSPSymbol> symbols = new ArrayList<>(document.forms().size());
+    for (final PExpressionOrDeclarationType<PParsed> form : document.forms()) {
+      if (form instanceof PDeclarationValue) {
+        final PDeclarationValue<PParsed> v = (PDeclarationValue<PParsed>) form;
+        symbols.add(symbol(
+          document, v.name().value(), PLSPSymbolKind.TERM_VALUE, v.name().lexical()));
+      } else if (form instanceof PDeclarationFunction) {
+        final PDeclarationFunction<PParsed> f = (PDeclarationFunction<PParsed>) form;
+        symbols.add(symbol(
+          document, f.name().value(), PLSPSymbolKind.TERM_FUNCTION, f.name().lexical()));
+      } else if (form instanceof PDeclarationSignature) {
+        final PDeclarationSignature<PParsed> s = (PDeclarationSignature<PParsed>) form;
+        symbols.add(symbol(
+          document, s.name().value(), PLSPSymbolKind.TERM_SIGNATURE, s.name().lexical()));
+      } else if (form instanceof PDeclarationRecord) {
+        final PDeclarationRecord<PParsed> r = (PDeclarationRecord<PParsed>) form;
+        symbols.add(symbol(
+          document, r.name().value(), PLSPSymbolKind.TYPE_RECORD, r.name().lexical()));
+        for (final PRecordFieldType<PParsed> f : r.fields()) {
+          symbols.add(symbol(
+            document, f.name().value(), PLSPSymbolKind.RECORD_FIELD, f.name().lexical()));
+        }
+      } else if (form instanceof PDeclarationVariant) {
+        final PDeclarationVariant<PParsed> v = (PDeclarationVariant<PParsed>) form;
+        symbols.add(symbol(
+          document, v.name().value(), PLSPSymbolKind.TYPE_VARIANT, v.name().lexical()));
+        for (final PVariantCaseType<PParsed> c : v.cases()) {
+          symbols.add(symbol(
+            document, c.name().value(), PLSPSymbolKind.CONSTRUCTOR, c.name().lexical()));
+        }
+      }
+    }
+    return Vector.ofAll(symbols);
+  }
+
+  /**
+   * Names are positioned using the line map of the document; a name that
+   * the map cannot place is positioned at the start of its line.
+   */
+
+  private static PLSPSymbol symbol(
+    final PLSPDocument document,
+    final String name,
+    final PLSPSymbolKind kind,
+    final LexicalPosition<URI> lexical)
+  {
+    final PLSPPosition position =
+      document.lines().position(lexical).orElseGet(
+        () -> PLSPPosition.of(
+          Math.max(0, document.lines().line(lexical) - 1), 0));
+    return PLSPSymbol.of(name, kind, document.uri(), position);
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.lsp;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * The base protocol of the Language Server Protocol: messages preceded by
+ * headers that give their length in bytes.
+ */
+
+final class PLSPTransport
+{
+  private static final String CONTENT_LENGTH = "content-length:";
+
+  private final InputStream input;
+  private final OutputStream output;
+
+  PLSPTransport(
+    final InputStream in_input,
+    final OutputStream in_output)
+  {
+    this.input = Objects.requireNonNull(in_input, "Input");
+    this.output = Objects.requireNonNull(in_output, "Output");
+  }
+
+  /**
+   * Read a message.
+   *
+   * @return The content of the message, or nothing if the input is closed
+   * before a message begins
+   *
+   * @throws IOException On I/O errors or malformed headers
+   */
+
+  Optional<String> read()
+    throws IOException
+  {
+    int length = -1;
+    while (true) {
+      final String line = this.readLine();
+      if (line == null) {
+        if (length == -1) {
+          return Optional.empty();
+        }
+        throw new EOFException("Input closed in message headers");
+      }
+      if (line.isEmpty()) {
+        break;
+      }
+      if (line.toLowerCase(Locale.ROOT).startsWith(CONTENT_LENGTH)) {
+        try {
+          length = Integer.parseInt(
+            line.substring(CONTENT_LENGTH.length()).trim());
+        } catch (final NumberFormatException e) {
+          throw new IOException("Malformed header: " + line, e);
+        }
+      }
+    }
+
+    if (length < 0) {
+      throw new IOException("Message has no Content-Length header");
+    }
+
+    final byte[] content = new byte[length];
+    int offset = 0;
+    while (offset < length) {
+      final int r = this.input.read(content, offset, length - offset);
+      if (r == -1) {
+        throw new EOFException("Input closed in message content");
+      }
+      offset += r;
+    }
+    return Optional.of(new String(content, StandardCharsets.UTF_8));
+  }
+
+  private String readLine()
+    throws IOException
+  {
+    final StringBuilder sb = new StringBuilder(32);
+    while (true) {
+      final int c = this.input.read();
+      if (c == -1) {
+        return sb.length() == 0 ? null : sb.toString();
+      }
+      if (c == '\n') {
+        final int end = sb.length();
+        if (end > 0 && sb.charAt(end - 1) == '\r') {
+          sb.setLength(end - 1);
+        }
+        return sb.toString();
+      }
+      sb.append((char) c);
+    }
+  }
+
+  /**
+   * Write a message.
+   *
+   * @param message The content of the message
+   *
+   * @throws IOException On I/O errors
+   */
+
+  synchronized void write(
+    final String message)
+    throws IOException
+  {
+    final byte[] content = message.getBytes(StandardCharsets.UTF_8);
+    final byte[] header =
+      ("Content-Length: " + content.length + "\r\n\r\n")
+        .getBytes(StandardCharsets.US_ASCII);
+    this.output.write(header);
+    this.output.write(content);
+    this.output.flush();
+  }
+}
@@ -0,0 +1,503 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.lsp;
+
+import com.io7m.jaffirm.core.Preconditions;
+import io.vavr.collection.Vector;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * An index of the names declared across a set of units, supporting prefix
+ * and approximate prefix queries.
+ *
+ * Symbols are held in a large immutable base segment, which may be mapped
+ * from a file, and a sequence of small overlay segments that hold the
+ * symbols of units updated since the base was built. Updating a unit marks
+ * its symbols in the segment that holds them as removed and adds a segment
+ * that holds only the new symbols of the unit, and so costs time
+ * proportional to the size of the unit rather than to the size of the
+ * overlay. Overlay segments are merged as they are added, so that every
+ * overlay segment is more than twice the size of the segment that follows
+ * it; there are therefore only logarithmically many overlay segments for
+ * queries to search, and each symbol is merged logarithmically many times.
+ * The symbols in the overlay and the symbols marked as removed in the base
+ * are the churn since the base was built; when the churn exceeds both a
+ * fixed size and a quarter of the size of the base, all segments are
+ * compacted into a new base. Compaction therefore costs at most a constant
+ * factor more than the updates that caused it, and a single large unit that
+ * is updated repeatedly does not rebuild a much larger base on every update.
+ * Queries read an immutable snapshot of the segments, and so may run
+ * concurrently with updates.
+ */
+
+public final class PLSPWorkspaceIndex
+{
+  private static final int CHURN_LIMIT = 16384;
+  private static final int CHURN_BASE_DIVISOR = 4;
+  private static final int OVERLAY_RATIO = 2;
+
+  private final Object lock;
+  private volatile Snapshot snapshot;
+
+  private PLSPWorkspaceIndex(
+    final PLSPSymbolSegment in_base)
+  {
+    this.lock = new Object();
+    this.snapshot = Snapshot.of(in_base);
+  }
+
+  /**
+   * @return An empty index
+   */
+
+  public static PLSPWorkspaceIndex create()
+  {
+    return new PLSPWorkspaceIndex(
+      PLSPSymbolSegment.create(Collections.emptyList()));
+  }
+
+  /**
+   * Open an index that was written with {@link #write(Path)}. The file is
+   * mapped into memory rather than read, and must not be modified while the
+   * index is in use.
+   *
+   * @param path The file
+   *
+   * @return An index
+   *
+   * @throws IOException If the file cannot be read or is not a valid index
+   */
+
+  public static PLSPWorkspaceIndex open(
+    final Path path)
+    throws IOException
+  {
+    return new PLSPWorkspaceIndex(PLSPSymbolSegment.map(path));
+  }
+
+  /**
+   * Write the index to a file, replacing any existing file.
+   *
+   * @param path The file
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public void write(
+    final Path path)
+    throws IOException
+  {
+    Objects.requireNonNull(path, "Path");
+
+    synchronized (this.lock) {
+      this.compact();
+      this.snapshot.layers[0].segment.write(path);
+    }
+  }
+
+  /**
+   * Replace the symbols of a unit.
+   *
+   * @param uri     The URI of the unit
+   * @param symbols The symbols declared by the unit
+   */
+
+  public void update(
+    final URI uri,
+    final Vector<PLSPSymbol> symbols)
+  {
+    Objects.requireNonNull(uri, "URI");
+    Objects.requireNonNull(symbols, "Symbols");
+    Preconditions.checkPrecondition(
+      symbols.forAll(s -> uri.equals(s.uri())),
+      "Symbols must be declared by the unit");
+
+    synchronized (this.lock) {
+      this.publish(uri, symbols);
+    }
+  }
+
+  /**
+   * Remove the symbols of a unit.
+   *
+   * @param uri The URI of the unit
+   */
+
+  public void remove(
+    final URI uri)
+  {
+    Objects.requireNonNull(uri, "URI");
+
+    synchronized (this.lock) {
+      this.publish(uri, Vector.empty());
+    }
+  }
+
+  /**
+   * @return The number of symbols in the index
+   */
+
+  public int size()
+  {
+    return this.snapshot.live;
+  }
+
+  /**
+   * Find the symbols whose names begin with {@code prefix}.
+   *
+   * @param prefix The prefix
+   * @param limit  The maximum number of symbols to return
+   *
+   * @return At most {@code limit} symbols, in name order
+   */
+
+  public Vector<PLSPSymbol> prefix(
+    final String prefix,
+    final int limit)
+  {
+    Objects.requireNonNull(prefix, "Prefix");
+    checkLimit(limit);
+
+    final Layer[] layers = this.snapshot.layers;
+    final Results[] results = new Results[layers.length];
+    for (int index = 0; index < layers.length; ++index) {
+      results[index] = new Results(layers[index], limit);
+      layers[index].segment.prefix(prefix, results[index]);
+    }
+    return merge(results, limit);
+  }
+
+  /**
+   * Find the symbols that have a prefix within {@code distance} edits
+   * (insertions, deletions, or substitutions of single characters) of
+   * {@code query}.
+   *
+   * @param query    The query
+   * @param distance The maximum number of edits
+   * @param limit    The maximum number of symbols to return
+   *
+   * @return At most {@code limit} symbols, in name order
+   */
+
+  public Vector<PLSPSymbol> fuzzy(
+    final String query,
+    final int distance,
+    final int limit)
+  {
+    Objects.requireNonNull(query, "Query");
+    Preconditions.checkPreconditionI(
+      distance, distance >= 0, d -> "Distance must be non-negative");
+    checkLimit(limit);
+
+    final Layer[] layers = this.snapshot.layers;
+    final Results[] results = new Results[layers.length];
+    for (int index = 0; index < layers.length; ++index) {
+      results[index] = new Results(layers[index], limit);
+      layers[index].segment.fuzzy(query, distance, results[index]);
+    }
+    return merge(results, limit);
+  }
+
+  private static void checkLimit(
+    final int limit)
+  {
+    Preconditions.checkPreconditionI(
+      limit, limit >= 0, x -> "Limit must be non-negative");
+  }
+
+  /**
+   * Every result set is in name order, and each contains at least as many
+   * of the first {@code limit} symbols of the combined order as can come
+   * from its segment. Symbols with equal names are taken from earlier
+   * segments first.
+   */
+
+  private static Vector<PLSPSymbol> merge(
+    final Results[] results,
+    final int limit)
+  {
+    final List<PLSPSymbol> out = new ArrayList<>(Math.min(limit, 64));
+    final int[] next = new int[results.length];
+    final String[] heads = new String[results.length];
+    for (int index = 0; index < results.length; ++index) {
+      heads[index] = results[index].count > 0 ? results[index].name(0) : null;
+    }
+
+    while (out.size() < limit) {
+      int best = -1;
+      for (int index = 0; index < results.length; ++index) {
+        if (heads[index] != null
+          && (best < 0 || heads[index].compareTo(heads[best]) < 0)) {
+          best = index;
+        }
+      }
+      if (best < 0) {
+        break;
+      }
+
+      final Results r = results[best];
+      out.add(r.segment.symbol(r.symbols[next[best]]));
+      ++next[best];
+      heads[best] = next[best] < r.count ? r.name(next[best]) : null;
+    }
+    return Vector.ofAll(out);
+  }
+
+  /**
+   * Publish a snapshot in which the given unit declares the given symbols,
+   * merging overlay segments and compacting the overlay into the base as
+   * necessary.
+   */
+
+  private void publish(
+    final URI uri,
+    final Vector<PLSPSymbol> symbols)
+  {
+    final Layer[] current = this.snapshot.layers;
+    final List<Layer> layers = new ArrayList<>(current.length + 1);
+    for (int index = 0; index < current.length; ++index) {
+      final Layer layer = current[index];
+      final int unit = layer.find(uri);
+      final Layer updated = unit < 0 ? layer : layer.remove(unit);
+      if (index == 0 || updated.live > 0) {
+        layers.add(updated);
+      }
+    }
+
+    if (!symbols.isEmpty()) {
+      layers.add(Layer.of(PLSPSymbolSegment.create(symbols.toJavaList())));
+    }
+
+    mergeOverlay(layers);
+    this.snapshot = new Snapshot(layers.toArray(new Layer[0]));
+
+    final Layer base = layers.get(0);
+    int churn = base.segment.size() - base.live;
+    for (int index = 1; index < layers.size(); ++index) {
+      churn += layers.get(index).segment.size();
+    }
+    final int base_size = base.segment.size();
+    if (churn > CHURN_LIMIT && churn > base_size / CHURN_BASE_DIVISOR) {
+      this.compact();
+    }
+  }
+
+  /**
+   * Merge the last two overlay segments until the last is less than half
+   * the size of the one before it.
+   */
+
+  private static void mergeOverlay(
+    final List<Layer> layers)
+  {
+    while (layers.size() > 2) {
+      final int last = layers.size() - 1;
+      final Layer older = layers.get(last - 1);
+      final Layer newer = layers.get(last);
+      if (older.segment.size() > OVERLAY_RATIO * newer.segment.size()) {
+        return;
+      }
+      final List<PLSPSymbol> merged = new ArrayList<>(older.live + newer.live);
+      older.addLive(merged);
+      newer.addLive(merged);
+      layers.remove(last);
+      layers.set(last - 1, Layer.of(PLSPSymbolSegment.create(merged)));
+    }
+  }
+
+  private void compact()
+  {
+    final Snapshot current = this.snapshot;
+    final Layer base = current.layers[0];
+    if (current.layers.length == 1 && base.live == base.segment.size()) {
+      return;
+    }
+
+    final List<PLSPSymbol> symbols = new ArrayList<>(current.live);
+    for (final Layer layer : current.layers) {
+      layer.addLive(symbols);
+    }
+    this.snapshot = Snapshot.of(PLSPSymbolSegment.create(symbols));
+  }
+
+  /**
+   * A receiver that collects the symbols of units that have not been
+   * removed, up to a limit.
+   */
+
+  private static final class Results implements PLSPSymbolSegment.ReceiverType
+  {
+    private final PLSPSymbolSegment segment;
+    private final boolean[] removed;
+    private final int[] symbols;
+    private int count;
+
+    Results(
+      final Layer in_layer,
+      final int in_limit)
+    {
+      this.segment = in_layer.segment;
+      this.removed = in_layer.removed;
+      this.symbols = new int[Math.min(in_limit, in_layer.live)];
+      this.count = 0;
+    }
+
+    @Override
+    public boolean receive(
+      final int symbol)
+    {
+      if (this.count == this.symbols.length) {
+        return false;
+      }
+      if (this.removed[this.segment.unitOf(symbol)]) {
+        return true;
+      }
+      this.symbols[this.count] = symbol;
+      ++this.count;
+      return this.count < this.symbols.length;
+    }
+
+    String name(
+      final int index)
+    {
+      return this.segment.name(this.symbols[index]);
+    }
+  }
+
+  /**
+   * An immutable segment, and the units whose symbols in the segment have
+   * been removed.
+   */
+
+  private static final class Layer
+  {
+    private final PLSPSymbolSegment segment;
+    private final Map<URI, Integer> units;
+    private final int[] counts;
+    private final boolean[] removed;
+    private final int live;
+
+    Layer(
+      final PLSPSymbolSegment in_segment,
+      final Map<URI, Integer> in_units,
+      final int[] in_counts,
+      final boolean[] in_removed,
+      final int in_live)
+    {
+      this.segment = in_segment;
+      this.units = in_units;
+      this.counts = in_counts;
+      this.removed = in_removed;
+      this.live = in_live;
+    }
+
+    static Layer of(
+      final PLSPSymbolSegment segment)
+    {
+      final Map<URI, Integer> units = new HashMap<>(segment.unitCount());
+      for (int index = 0; index < segment.unitCount(); ++index) {
+        units.put(segment.unit(index), Integer.valueOf(index));
+      }
+      final int[] counts = new int[segment.unitCount()];
+      for (int index = 0; index < segment.size(); ++index) {
+        ++counts[segment.unitOf(index)];
+      }
+      return new Layer(
+        segment,
+        units,
+        counts,
+        new boolean[segment.unitCount()],
+        segment.size());
+    }
+
+    /**
+     * @return The index of the unit if its symbols are in the layer and have
+     * not been removed, or {@code -1}
+     */
+
+    int find(
+      final URI uri)
+    {
+      final Integer unit = this.units.get(uri);
+      if (unit == null || this.removed[unit.intValue()]) {
+        return -1;
+      }
+      return unit.intValue();
+    }
+
+    Layer remove(
+      final int unit)
+    {
+      final boolean[] new_removed =
+        Arrays.copyOf(this.removed, this.removed.length);
+      new_removed[unit] = true;
+      return new Layer(
+        this.segment,
+        this.units,
+        this.counts,
+        new_removed,
+        this.live - this.counts[unit]);
+    }
+
+    void addLive(
+      final List<PLSPSymbol> out)
+    {
+      for (int index = 0; index < this.segment.size(); ++index) {
+        if (!this.removed[this.segment.unitOf(index)]) {
+          out.add(this.segment.symbol(index));
+        }
+      }
+    }
+  }
+
+  /**
+   * An immutable view of the index. The first layer is the base.
+   */
+
+  private static final class Snapshot
+  {
+    private final Layer[] layers;
+    private final int live;
+
+    Snapshot(
+      final Layer[] in_layers)
+    {
+      this.layers = in_layers;
+      int count = 0;
+      for (final Layer layer : in_layers) {
+        count += layer.live;
+      }
+      this.live = count;
+    }
+
+    static Snapshot of(
+      final PLSPSymbolSegment base)
+    {
+      return new Snapshot(new Layer[]{Layer.of(base)});
+    }
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.parser.api;
+
+import com.io7m.polaris.ast.PUnitDeclarationType;
+import io.vavr.collection.Seq;
+import io.vavr.collection.Vector;
+import io.vavr.control.Validation;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * The type of header scanners. A header scanner parses only the unit, import,
+ * and export declarations of a unit, and skips over all other top-level forms
+ * without parsing them.
+ */
+
+public interface PHeaderScannerType extends Closeable
+{
+  /**
+   * Scan the remainder of the input.
+   *
+   * @return The unit, import, and export declarations in the order that they
+   * appear, or a list of parse errors
+   *
+   * @throws IOException On I/O errors
+   */
+
+  Validation<Seq<PParseError>, Vector<PUnitDeclarationType<PParsed>>> scan()
+    throws IOException;
+
+  /**
+   * @return The number of node identifiers allocated by this scanner so far
+   *
+   * @see PParserType#nodeCount()
+   */
+
+  int nodeCount();
+}
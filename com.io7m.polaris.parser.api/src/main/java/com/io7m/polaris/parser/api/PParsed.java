@@ -16,25 +16,75 @@
 
 package com.io7m.polaris.parser.api;
 
+import com.io7m.jaffirm.core.Preconditions;
+
 /**
  * A tag indicating that an expression or declaration has just been parsed.
+ * Each parsed node is assigned an identifier that is unique among the nodes
+ * produced by a single parser. Identifiers are allocated densely starting
+ * from {@code 0}, and so are suitable for indexing side tables such as
+ * {@link com.io7m.polaris.ast.PNodeTable}.
  */
 
 public final class PParsed
 {
-  private static final PParsed INSTANCE = new PParsed();
+  private final int id;
 
-  private PParsed()
+  private PParsed(
+    final int in_id)
   {
+    this.id = in_id;
+  }
+
+  /**
+   * @param id The node identifier
+   *
+   * @return A parsed tag with the given identifier
+   */
 
+  public static PParsed of(
+    final int id)
+  {
+    Preconditions.checkPreconditionI(
+      id, id >= 0, x -> "Identifier must be non-negative");
+    return new PParsed(id);
   }
 
   /**
-   * @return The parsed tag
+   * @return The node identifier
    */
 
-  public static PParsed parsed()
+  public int id()
+  {
+    return this.id;
+  }
+
+  @Override
+  public boolean equals(
+    final Object o)
+  {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || this.getClass() != o.getClass()) {
+      return false;
+    }
+    return this.id == ((PParsed) o).id;
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return Integer.hashCode(this.id);
+  }
+
+  @Override
+  public String toString()
   {
-    return INSTANCE;
+    return new StringBuilder(16)
+      .append("[PParsed ")
+      .append(this.id)
+      .append(']')
+      .toString();
   }
 }
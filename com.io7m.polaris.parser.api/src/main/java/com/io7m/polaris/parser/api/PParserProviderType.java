@@ -40,6 +40,23 @@ public interface PParserProviderType
     URI uri,
     InputStream stream);
 
+  /**
+   * Create a parser for text that begins at the start of the given line of
+   * a larger document, so that the lexical positions of the parsed elements
+   * are those of the document.
+   *
+   * @param uri    The URI, for diagnostic messages
+   * @param stream The input stream
+   * @param line   The number of the first line of the stream
+   *
+   * @return A parser
+   */
+
+  PParserType createAtLine(
+    URI uri,
+    InputStream stream,
+    int line);
+
   /**
    * Create a parser using the given error message dictionary.
    *
@@ -55,6 +72,19 @@ public interface PParserProviderType
     URI uri,
     InputStream stream);
 
+  /**
+   * Create a header scanner.
+   *
+   * @param uri    The URI, for diagnostic messages
+   * @param stream The input stream
+   *
+   * @return A header scanner
+   */
+
+  PHeaderScannerType createHeaderScanner(
+    URI uri,
+    InputStream stream);
+
   /**
    * Create a configured s-expression parser.
    *
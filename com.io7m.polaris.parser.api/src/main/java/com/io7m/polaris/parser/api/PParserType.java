@@ -67,4 +67,14 @@ public interface PParserType extends Closeable
   Validation<Seq<PParseError>, Optional<PTypeExpressionType<PParsed>>>
   parseTypeExpression()
     throws IOException;
+
+  /**
+   * @return The number of node identifiers allocated by this parser so far;
+   * every node produced by the parser has an identifier in the range
+   * {@code [0, nodeCount())}
+   *
+   * @see PParsed#id()
+   */
+
+  int nodeCount();
 }
@@ -22,6 +22,7 @@ module com.io7m.polaris.parser.api
 {
   requires static org.immutables.value;
 
+  requires com.io7m.jaffirm.core;
   requires com.io7m.jlexing.core;
   requires com.io7m.jsx.core;
   requires com.io7m.jsx.parser.api;
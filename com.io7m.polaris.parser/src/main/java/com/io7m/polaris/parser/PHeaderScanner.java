@@ -0,0 +1,522 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.parser;
+
+import com.io7m.jlexing.core.LexicalPosition;
+import com.io7m.jsx.SExpressionType;
+import com.io7m.jsx.api.parser.JSXParserException;
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.ast.PUnitDeclarationType;
+import com.io7m.polaris.ast.internal.PTrustedConstruction;
+import com.io7m.polaris.parser.api.PHeaderScannerType;
+import com.io7m.polaris.parser.api.PParseError;
+import com.io7m.polaris.parser.api.PParseErrorCode;
+import com.io7m.polaris.parser.api.PParseErrorMessagesType;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.parser.implementation.PParsedAllocator;
+import com.io7m.polaris.parser.implementation.PParsing;
+import io.vavr.collection.Seq;
+import io.vavr.collection.Vector;
+import io.vavr.control.Validation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A header scanner. Top-level forms are examined only as far as their first
+ * symbol: forms that begin with a unit, import, or export keyword are captured
+ * as text and parsed as usual, and all other forms are skipped by matching
+ * brackets, without constructing s-expressions. Every character that is
+ * significant to the scanner is ASCII, and no byte of a multi-byte UTF-8
+ * sequence is ASCII, so the scanner works directly on the encoded bytes and
+ * never decodes the input.
+ */
+
+final class PHeaderScanner implements PHeaderScannerType
+{
+  private static final int EOF = -1;
+  private static final int KEYWORD_MAXIMUM = 16;
+  private static final boolean[] PLAIN_STOPS = stops("()[]\";");
+  private static final boolean[] STRING_STOPS = stops("\"\\");
+
+  private final PParsers parsers;
+  private final PParseErrorMessagesType errors;
+  private final URI uri;
+  private final InputStream input;
+  private final PParsedAllocator ids;
+  private final byte[] buffer;
+  private final ByteArrayOutputStream capture;
+  private final StringBuilder keyword;
+  private char[] brackets;
+  private int depth;
+  private int buffer_position;
+  private int buffer_limit;
+  private int line;
+  private int column;
+  private boolean capturing;
+
+  PHeaderScanner(
+    final PParsers in_parsers,
+    final PParseErrorMessagesType in_errors,
+    final URI in_uri,
+    final InputStream in_stream)
+  {
+    this.parsers = Objects.requireNonNull(in_parsers, "Parsers");
+    this.errors = Objects.requireNonNull(in_errors, "Errors");
+    this.uri = Objects.requireNonNull(in_uri, "URI");
+    this.input = Objects.requireNonNull(in_stream, "Stream");
+    this.ids = PParsedAllocator.create();
+    this.buffer = new byte[8192];
+    this.capture = new ByteArrayOutputStream(128);
+    this.keyword = new StringBuilder(KEYWORD_MAXIMUM);
+    this.brackets = new char[16];
+    this.depth = 0;
+    this.buffer_position = 0;
+    this.buffer_limit = 0;
+    this.line = 1;
+    this.column = 0;
+    this.capturing = false;
+  }
+
+  private static boolean[] stops(
+    final String bytes)
+  {
+    final boolean[] stops = new boolean[256];
+    for (int index = 0; index < bytes.length(); ++index) {
+      stops[bytes.charAt(index)] = true;
+    }
+    return stops;
+  }
+
+  private static boolean isHeaderKeyword(
+    final CharSequence text)
+  {
+    switch (text.toString()) {
+      case "define-unit":
+      case "import":
+      case "import-qualified":
+      case "export-terms":
+      case "export-types":
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static boolean isAtomTerminator(
+    final int c)
+  {
+    switch (c) {
+      case EOF:
+      case '(':
+      case ')':
+      case '[':
+      case ']':
+      case '"':
+      case ';':
+        return true;
+      default:
+        return isSpace(c);
+    }
+  }
+
+  private static boolean isSpace(
+    final int c)
+  {
+    return c != EOF && c < 0x80 && Character.isWhitespace(c);
+  }
+
+  /**
+   * Determine whether a byte begins a character, rather than continuing a
+   * multi-byte UTF-8 sequence. Columns are counted in characters.
+   */
+
+  private static boolean isCharacterStart(
+    final int c)
+  {
+    return (c & 0xc0) != 0x80;
+  }
+
+  @Override
+  public int nodeCount()
+  {
+    return this.ids.count();
+  }
+
+  @Override
+  public void close()
+    throws IOException
+  {
+
+  }
+
+  @Override
+  public Validation<Seq<PParseError>, Vector<PUnitDeclarationType<PParsed>>> scan()
+    throws IOException
+  {
+    Vector<PUnitDeclarationType<PParsed>> results = Vector.empty();
+    Vector<PParseError> form_errors = Vector.empty();
+
+    while (true) {
+      this.skipLayout();
+      final int c = this.peek();
+      switch (c) {
+        case EOF: {
+          if (form_errors.isEmpty()) {
+            return Validation.valid(results);
+          }
+          return Validation.invalid(form_errors);
+        }
+        case '(':
+        case '[': {
+          final Optional<Validation<Seq<PParseError>, PExpressionOrDeclarationType<PParsed>>> r =
+            this.form();
+          if (r.isPresent()) {
+            final Validation<Seq<PParseError>, PExpressionOrDeclarationType<PParsed>> v =
+              r.get();
+            if (v.isValid()) {
+              results = results.append((PUnitDeclarationType<PParsed>) v.get());
+            } else {
+              form_errors = form_errors.appendAll(v.getError());
+            }
+          }
+          break;
+        }
+        case ')':
+        case ']': {
+          form_errors = form_errors.append(
+            this.syntaxError("Unbalanced " + (char) c));
+          this.advance();
+          break;
+        }
+        case '"': {
+          if (!this.skipString()) {
+            form_errors = form_errors.append(
+              this.syntaxError("Unterminated string"));
+          }
+          break;
+        }
+        default: {
+          this.skipAtom();
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Scan a list. If the list is a header declaration, parse and return it.
+   */
+
+  private Optional<Validation<Seq<PParseError>, PExpressionOrDeclarationType<PParsed>>> form()
+    throws IOException
+  {
+    final int start_line = this.line;
+    final int start_column = this.column;
+
+    this.capture.reset();
+    this.capturing = true;
+    this.open();
+    this.skipLayout();
+
+    this.keyword.setLength(0);
+    while (!isAtomTerminator(this.peek())) {
+      if (this.keyword.length() <= KEYWORD_MAXIMUM) {
+        this.keyword.append((char) this.peek());
+      }
+      this.advance();
+    }
+
+    final boolean header = isHeaderKeyword(this.keyword);
+    this.capturing = header;
+    final Vector<PParseError> form_errors = this.skipToClose();
+    this.capturing = false;
+
+    if (!form_errors.isEmpty()) {
+      return Optional.of(Validation.invalid(form_errors));
+    }
+    if (header) {
+      return Optional.of(this.parseCaptured(start_line, start_column));
+    }
+    return Optional.empty();
+  }
+
+  private Validation<Seq<PParseError>, PExpressionOrDeclarationType<PParsed>> parseCaptured(
+    final int start_line,
+    final int start_column)
+    throws IOException
+  {
+    final byte[] text = new byte[start_column + this.capture.size()];
+    Arrays.fill(text, 0, start_column, (byte) ' ');
+    final byte[] captured = this.capture.toByteArray();
+    System.arraycopy(captured, 0, text, start_column, captured.length);
+
+    final ByteArrayInputStream stream = new ByteArrayInputStream(text);
+
+    try {
+      final SExpressionType expr =
+        this.parsers.createSExpressionParserAt(this.uri, stream, start_line)
+          .parseExpression();
+      return this.ids.with(() -> PTrustedConstruction.trusted(
+        () -> PParsing.parseExpressionOrDeclaration(this.errors, expr)));
+    } catch (final JSXParserException e) {
+      return PParsers.parseException(e);
+    }
+  }
+
+  /**
+   * Skip to the end of the current list. A mismatched closing bracket is
+   * taken to close the innermost enclosing list that it does match, or is
+   * ignored if it matches none, so that the forms that follow are still
+   * scanned at the correct depth.
+   */
+
+  private Vector<PParseError> skipToClose()
+    throws IOException
+  {
+    Vector<PParseError> form_errors = Vector.empty();
+    while (this.depth > 0) {
+      final int c = this.peek();
+      switch (c) {
+        case EOF: {
+          return form_errors.append(this.syntaxError("Unterminated list"));
+        }
+        case '(':
+        case '[': {
+          this.open();
+          break;
+        }
+        case ')':
+        case ']': {
+          final char expected = this.brackets[this.depth - 1];
+          if (c != expected) {
+            form_errors = form_errors.append(this.syntaxError(
+              "Expected " + expected + " but got " + (char) c));
+            this.resynchronize((char) c);
+          } else {
+            --this.depth;
+          }
+          this.advance();
+          break;
+        }
+        case '"': {
+          if (!this.skipString()) {
+            return form_errors.append(this.syntaxError("Unterminated string"));
+          }
+          break;
+        }
+        case ';': {
+          this.skipComment();
+          break;
+        }
+        default: {
+          this.skipPlain();
+          break;
+        }
+      }
+    }
+    return form_errors;
+  }
+
+  private void resynchronize(
+    final char close)
+  {
+    for (int index = this.depth - 1; index >= 0; --index) {
+      if (this.brackets[index] == close) {
+        this.depth = index;
+        return;
+      }
+    }
+  }
+
+  /**
+   * Consume the run of buffered bytes that cannot open or close a list,
+   * a string, or a comment. This is the bulk of the input in a typical unit,
+   * and so it is consumed directly from the buffer.
+   */
+
+  private void skipPlain()
+  {
+    this.skipRun(PLAIN_STOPS);
+  }
+
+  /**
+   * Consume buffered bytes up to the first byte marked in {@code stops}.
+   */
+
+  private void skipRun(
+    final boolean[] stops)
+  {
+    final byte[] bytes = this.buffer;
+    final int limit = this.buffer_limit;
+    final int start = this.buffer_position;
+    int position = start;
+    int line_now = this.line;
+    int column_now = this.column;
+
+    while (position < limit) {
+      final byte c = bytes[position];
+      if (stops[c & 0xff]) {
+        break;
+      }
+      if (c == '\n') {
+        ++line_now;
+        column_now = 0;
+      } else if (isCharacterStart(c)) {
+        ++column_now;
+      }
+      ++position;
+    }
+
+    if (this.capturing) {
+      this.capture.write(bytes, start, position - start);
+    }
+    this.buffer_position = position;
+    this.line = line_now;
+    this.column = column_now;
+  }
+
+  private PParseError syntaxError(
+    final String received)
+  {
+    return this.errors.errorLexical(
+      PParseErrorCode.INVALID_S_EXPRESSION,
+      LexicalPosition.of(this.line, this.column, Optional.of(this.uri)),
+      received);
+  }
+
+  private void open()
+    throws IOException
+  {
+    if (this.depth == this.brackets.length) {
+      this.brackets = Arrays.copyOf(this.brackets, this.depth * 2);
+    }
+    this.brackets[this.depth] = this.peek() == '(' ? ')' : ']';
+    ++this.depth;
+    this.advance();
+  }
+
+  private void skipLayout()
+    throws IOException
+  {
+    while (true) {
+      final int c = this.peek();
+      if (c == ';') {
+        this.skipComment();
+      } else if (isSpace(c)) {
+        this.advance();
+      } else {
+        return;
+      }
+    }
+  }
+
+  private void skipComment()
+    throws IOException
+  {
+    while (true) {
+      final int c = this.peek();
+      if (c == EOF) {
+        return;
+      }
+      this.advance();
+      if (c == '\n') {
+        return;
+      }
+    }
+  }
+
+  private void skipAtom()
+    throws IOException
+  {
+    while (!isAtomTerminator(this.peek())) {
+      this.advance();
+    }
+  }
+
+  /**
+   * Skip a quoted string.
+   *
+   * @return {@code false} if the input ended before the string was terminated
+   */
+
+  private boolean skipString()
+    throws IOException
+  {
+    this.advance();
+    while (true) {
+      if (this.peek() == EOF) {
+        return false;
+      }
+      this.skipRun(STRING_STOPS);
+      final int c = this.peek();
+      if (c == EOF) {
+        return false;
+      }
+      this.advance();
+      if (c == '"') {
+        return true;
+      }
+      if (c == '\\') {
+        if (this.peek() == EOF) {
+          return false;
+        }
+        this.advance();
+      }
+    }
+  }
+
+  private int peek()
+    throws IOException
+  {
+    if (this.buffer_position == this.buffer_limit) {
+      final int count = this.input.read(this.buffer, 0, this.buffer.length);
+      if (count <= 0) {
+        return EOF;
+      }
+      this.buffer_position = 0;
+      this.buffer_limit = count;
+    }
+    return this.buffer[this.buffer_position] & 0xff;
+  }
+
+  /**
+   * Consume the character most recently returned by {@link #peek()}, which
+   * must not have been {@link #EOF}.
+   */
+
+  private void advance()
+  {
+    final byte c = this.buffer[this.buffer_position];
+    ++this.buffer_position;
+    if (c == '\n') {
+      ++this.line;
+      this.column = 0;
+    } else if (isCharacterStart(c)) {
+      ++this.column;
+    }
+    if (this.capturing) {
+      this.capture.write(c);
+    }
+  }
+}
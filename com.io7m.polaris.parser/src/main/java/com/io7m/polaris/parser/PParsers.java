@@ -16,6 +16,7 @@
 
 package com.io7m.polaris.parser;
 
+import com.io7m.jaffirm.core.Preconditions;
 import com.io7m.jsx.SExpressionType;
 import com.io7m.jsx.api.lexer.JSXLexerComment;
 import com.io7m.jsx.api.lexer.JSXLexerConfiguration;
@@ -27,6 +28,8 @@ import com.io7m.jsx.api.parser.JSXParserType;
 import com.io7m.polaris.ast.PExpressionOrDeclarationType;
 import com.io7m.polaris.ast.PPatternType;
 import com.io7m.polaris.ast.PTypeExpressionType;
+import com.io7m.polaris.ast.internal.PTrustedConstruction;
+import com.io7m.polaris.parser.api.PHeaderScannerType;
 import com.io7m.polaris.parser.api.PParseError;
 import com.io7m.polaris.parser.api.PParseErrorCode;
 import com.io7m.polaris.parser.api.PParseErrorMessagesType;
@@ -35,20 +38,25 @@ import com.io7m.polaris.parser.api.PParsed;
 import com.io7m.polaris.parser.api.PParserProviderType;
 import com.io7m.polaris.parser.api.PParserType;
 import com.io7m.polaris.parser.implementation.PParseErrorMessagesProvider;
+import com.io7m.polaris.parser.implementation.PParsedAllocator;
 import com.io7m.polaris.parser.implementation.PParsing;
 import com.io7m.polaris.parser.implementation.PParsingTypeExpressions;
 import io.vavr.collection.Seq;
 import io.vavr.collection.Vector;
 import io.vavr.control.Validation;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.EnumSet;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.ServiceConfigurationError;
 import java.util.ServiceLoader;
+import java.util.function.Supplier;
 
 /**
  * The default parser implementation.
@@ -116,7 +124,7 @@ public final class PParsers implements PParserProviderType
     return new PParsers(in_sexpr_parsers, in_sexpr_lexers);
   }
 
-  private static <T> Validation<Seq<PParseError>, T> parseException(
+  static <T> Validation<Seq<PParseError>, T> parseException(
     final JSXParserException e)
   {
     return Validation.invalid(
@@ -142,6 +150,22 @@ public final class PParsers implements PParserProviderType
       this.createSExpressionParser(uri, stream));
   }
 
+  @Override
+  public PParserType createAtLine(
+    final URI uri,
+    final InputStream stream,
+    final int line)
+  {
+    Objects.requireNonNull(uri, "URI");
+    Objects.requireNonNull(stream, "Stream");
+    Preconditions.checkPreconditionI(
+      line, line >= 1, x -> "Line must be positive");
+    return new PParser(
+      this.error_messages.create(),
+      uri, stream,
+      this.createSExpressionParserAt(uri, stream, line));
+  }
+
   @Override
   public PParserType createWithErrors(
     final PParseErrorMessagesType errors,
@@ -158,17 +182,35 @@ public final class PParsers implements PParserProviderType
       this.createSExpressionParser(uri, stream));
   }
 
+  @Override
+  public PHeaderScannerType createHeaderScanner(
+    final URI uri,
+    final InputStream stream)
+  {
+    Objects.requireNonNull(uri, "URI");
+    Objects.requireNonNull(stream, "Stream");
+    return new PHeaderScanner(this, this.error_messages.create(), uri, stream);
+  }
+
   @Override
   public JSXParserType createSExpressionParser(
     final URI uri,
     final InputStream stream)
+  {
+    return this.createSExpressionParserAt(uri, stream, 1);
+  }
+
+  JSXParserType createSExpressionParserAt(
+    final URI uri,
+    final InputStream stream,
+    final int line)
   {
     Objects.requireNonNull(uri, "URI");
     Objects.requireNonNull(stream, "Stream");
 
     final JSXLexerConfiguration lc =
       JSXLexerConfiguration.builder()
-        .setStartAtLine(1)
+        .setStartAtLine(line)
         .setSquareBrackets(true)
         .setComments(EnumSet.of(JSXLexerComment.COMMENT_SEMICOLON))
         .setNewlinesInQuotedStrings(true)
@@ -180,8 +222,17 @@ public final class PParsers implements PParserProviderType
         .setPreserveLexical(true)
         .build();
 
-    return this.sexpr_parsers.createFromStreamUTF8(
-      pc, lc, this.sexpr_lexers, stream);
+    /*
+     * The lexer reads one character at a time, so the stream is decoded
+     * through a buffer rather than a character at a time.
+     */
+
+    return this.sexpr_parsers.create(
+      pc,
+      this.sexpr_lexers.createFromReader(
+        lc,
+        new BufferedReader(
+          new InputStreamReader(stream, StandardCharsets.UTF_8))));
   }
 
   private static final class PParser implements PParserType
@@ -190,6 +241,7 @@ public final class PParsers implements PParserProviderType
     private final InputStream stream;
     private final JSXParserType parser;
     private final PParseErrorMessagesType errors;
+    private final PParsedAllocator ids;
 
     PParser(
       final PParseErrorMessagesType in_errors,
@@ -201,6 +253,19 @@ public final class PParsers implements PParserProviderType
       this.uri = Objects.requireNonNull(in_uri, "URI");
       this.stream = Objects.requireNonNull(in_stream, "Stream");
       this.parser = Objects.requireNonNull(in_parser, "Parser");
+      this.ids = PParsedAllocator.create();
+    }
+
+    private <A> A run(
+      final Supplier<A> f)
+    {
+      return this.ids.with(() -> PTrustedConstruction.trusted(f));
+    }
+
+    @Override
+    public int nodeCount()
+    {
+      return this.ids.count();
     }
 
     @Override
@@ -219,7 +284,8 @@ public final class PParsers implements PParserProviderType
         final Optional<SExpressionType> opt = this.parser.parseExpressionOrEOF();
         if (opt.isPresent()) {
           final SExpressionType expr = opt.get();
-          return PParsing.parseExpressionOrDeclaration(this.errors, expr)
+          return this.run(
+            () -> PParsing.parseExpressionOrDeclaration(this.errors, expr))
             .map(Optional::of);
         }
         return Validation.valid(Optional.empty());
@@ -236,7 +302,8 @@ public final class PParsers implements PParserProviderType
         final Optional<SExpressionType> opt = this.parser.parseExpressionOrEOF();
         if (opt.isPresent()) {
           final SExpressionType expr = opt.get();
-          return PParsing.parsePattern(this.errors, expr)
+          return this.run(
+            () -> PParsing.parsePattern(this.errors, expr))
             .map(Optional::of);
         }
         return Validation.valid(Optional.empty());
@@ -253,7 +320,8 @@ public final class PParsers implements PParserProviderType
         final Optional<SExpressionType> opt = this.parser.parseExpressionOrEOF();
         if (opt.isPresent()) {
           final SExpressionType expr = opt.get();
-          return PParsingTypeExpressions.parseTypeExpression(this.errors, expr)
+          return this.run(
+            () -> PParsingTypeExpressions.parseTypeExpression(this.errors, expr))
             .map(Optional::of);
         }
         return Validation.valid(Optional.empty());
@@ -0,0 +1,904 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.parser;
+
+import com.io7m.junreachable.UnreachableCodeException;
+import com.io7m.polaris.ast.PDeclarationType;
+import com.io7m.polaris.ast.PExpressionMatcherType;
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.ast.PExpressionType;
+import com.io7m.polaris.ast.PPatternMatcherType;
+import com.io7m.polaris.ast.PPatternType;
+import com.io7m.polaris.ast.PTermConstructorNameType;
+import com.io7m.polaris.ast.PTermDeclarationMatcherType;
+import com.io7m.polaris.ast.PTermDeclarationType;
+import com.io7m.polaris.ast.PTermNameType;
+import com.io7m.polaris.ast.PTermReferenceType;
+import com.io7m.polaris.ast.PTermVariableNameType;
+import com.io7m.polaris.ast.PTypeConstructorNameType;
+import com.io7m.polaris.ast.PTypeDeclarationMatcherType;
+import com.io7m.polaris.ast.PTypeDeclarationType;
+import com.io7m.polaris.ast.PTypeExpressionMatcherType;
+import com.io7m.polaris.ast.PTypeExpressionType;
+import com.io7m.polaris.ast.PTypeReferenceType;
+import com.io7m.polaris.ast.PTypeVariableNameType;
+import com.io7m.polaris.ast.PUnitDeclarationMatcherType;
+import com.io7m.polaris.ast.PUnitDeclarationType;
+import com.io7m.polaris.ast.PUnitNameType;
+import com.io7m.polaris.parser.api.PParseError;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.parser.api.PParserType;
+import io.vavr.collection.Seq;
+import io.vavr.collection.Vector;
+import io.vavr.control.Validation;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Functions to print elements in canonical concrete syntax.
+ *
+ * Elements are written directly to a {@link Writer} as they are visited,
+ * and so the memory used does not depend on the size of the element beyond
+ * the depth of its nesting. Elements are visited using an explicit stack
+ * rather than recursion, so the Java stack depth used is independent of the
+ * depth of the element. The canonical syntax uses {@code lambda},
+ * {@code ∀}, {@code ->}, and {@code variadic} as keywords, and square
+ * brackets for match cases, fields, variant cases, and the type parameters
+ * of declarations. The bodies of {@code match} and {@code local}
+ * expressions, the fields of records, and the cases of variants are written
+ * one per line, indented by two spaces per level of nesting; all other
+ * elements are written on a single line. Parsing the printed form of an
+ * element produced by the parser yields an equal element.
+ */
+
+public final class PPrettyPrinter
+{
+  private PPrettyPrinter()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Print a top-level form, followed by a newline.
+   *
+   * @param output The output
+   * @param form   The form
+   * @param <T>    The type of associated data
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public static <T> void print(
+    final Writer output,
+    final PExpressionOrDeclarationType<T> form)
+    throws IOException
+  {
+    Objects.requireNonNull(output, "Output");
+    Objects.requireNonNull(form, "Form");
+
+    new Printer<T>(output).print(form);
+    output.write('\n');
+  }
+
+  /**
+   * Format a document: parse forms until the end of the input and print
+   * each as it is parsed, separating forms with blank lines. Formatting stops
+   * at the first form that cannot be parsed; the forms that preceded it will
+   * have been written.
+   *
+   * @param parser The parser
+   * @param output The output
+   *
+   * @return The errors in the first form that could not be parsed, or
+   * nothing if the whole document was formatted
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public static Seq<PParseError> format(
+    final PParserType parser,
+    final Writer output)
+    throws IOException
+  {
+    Objects.requireNonNull(parser, "Parser");
+    Objects.requireNonNull(output, "Output");
+
+    boolean first = true;
+    while (true) {
+      final Validation<Seq<PParseError>, Optional<PExpressionOrDeclarationType<PParsed>>> r =
+        parser.parseExpressionOrDeclaration();
+      if (r.isInvalid()) {
+        return r.getError();
+      }
+      if (!r.get().isPresent()) {
+        return Vector.empty();
+      }
+      if (!first) {
+        output.write('\n');
+      }
+      print(output, r.get().get());
+      first = false;
+    }
+  }
+
+  private static final class Printer<T> implements
+    PExpressionMatcherType<T, Void, IOException>,
+    PPatternMatcherType<T, Void, IOException>,
+    PTermDeclarationMatcherType<T, Void, IOException>,
+    PTypeDeclarationMatcherType<T, Void, IOException>,
+    PUnitDeclarationMatcherType<T, Void, IOException>,
+    PTypeExpressionMatcherType<T, Void, IOException>
+  {
+    private static final Object LINE = new Object();
+    private static final Object INDENT = new Object();
+    private static final Object DEDENT = new Object();
+
+    private final Writer output;
+    private final ArrayDeque<Object> stack;
+    private final ArrayList<Object> pending;
+    private int depth;
+
+    Printer(
+      final Writer in_output)
+    {
+      this.output = in_output;
+      this.stack = new ArrayDeque<>(64);
+      this.pending = new ArrayList<>(16);
+      this.depth = 0;
+    }
+
+    /**
+     * Print a form. Visiting an element appends its text, line breaks,
+     * changes of indentation, and child elements to a list of pending
+     * items, which are then pushed onto the stack in reverse order so that
+     * they are popped from left to right.
+     */
+
+    void print(
+      final PExpressionOrDeclarationType<T> form)
+      throws IOException
+    {
+      this.stack.push(form);
+      while (!this.stack.isEmpty()) {
+        final Object top = this.stack.pop();
+        if (top instanceof String) {
+          this.output.write((String) top);
+        } else if (top == LINE) {
+          this.newline();
+        } else if (top == INDENT) {
+          ++this.depth;
+        } else if (top == DEDENT) {
+          --this.depth;
+        } else {
+          this.visit(top);
+          for (int index = this.pending.size() - 1; index >= 0; --index) {
+            this.stack.push(this.pending.get(index));
+          }
+          this.pending.clear();
+        }
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void visit(
+      final Object element)
+      throws IOException
+    {
+      if (element instanceof PExpressionOrDeclarationType) {
+        this.expressionOrDeclaration((PExpressionOrDeclarationType<T>) element);
+      } else {
+        ((PTypeExpressionType<T>) element).matchTypeExpression(this);
+      }
+    }
+
+    private void newline()
+      throws IOException
+    {
+      this.output.write('\n');
+      for (int index = 0; index < this.depth; ++index) {
+        this.output.write("  ");
+      }
+    }
+
+    private static boolean isBlock(
+      final PExpressionType<?> e)
+    {
+      switch (e.termExpressionKind()) {
+        case EXPR_LOCAL:
+        case EXPR_MATCH:
+          return true;
+        default:
+          return false;
+      }
+    }
+
+    private void text(
+      final String text)
+    {
+      this.pending.add(text);
+    }
+
+    private void line()
+    {
+      this.pending.add(LINE);
+    }
+
+    private void indent()
+    {
+      this.pending.add(INDENT);
+    }
+
+    private void dedent()
+    {
+      this.pending.add(DEDENT);
+    }
+
+    private void element(
+      final Object element)
+    {
+      this.pending.add(element);
+    }
+
+    private void integer(
+      final int radix,
+      final BigInteger value)
+    {
+      switch (radix) {
+        case 16:
+          this.text("0x");
+          break;
+        case 8:
+          this.text("0o");
+          break;
+        case 2:
+          this.text("0b");
+          break;
+        default:
+          this.text(value.toString(10));
+          return;
+      }
+      this.text(value.toString(radix));
+    }
+
+    /**
+     * The parser reads only numbers that contain a decimal point as reals,
+     * so a point is inserted into forms such as {@code 1E+3} that lack one.
+     * A point after the last digit does not change the scale of the value.
+     */
+
+    private void real(
+      final BigDecimal value)
+    {
+      final String text = value.toString();
+      if (text.indexOf('.') >= 0) {
+        this.text(text);
+        return;
+      }
+
+      final int exponent = text.indexOf('E');
+      if (exponent >= 0) {
+        this.text(text.substring(0, exponent));
+        this.text(".");
+        this.text(text.substring(exponent));
+      } else {
+        this.text(text);
+        this.text(".");
+      }
+    }
+
+    private void string(
+      final String text)
+    {
+      final StringBuilder sb = new StringBuilder(text.length() + 2);
+      sb.append('"');
+      for (int index = 0; index < text.length(); ++index) {
+        final char c = text.charAt(index);
+        switch (c) {
+          case '"':
+            sb.append("\\\"");
+            break;
+          case '\\':
+            sb.append("\\\\");
+            break;
+          case '\n':
+            sb.append("\\n");
+            break;
+          case '\r':
+            sb.append("\\r");
+            break;
+          case '\t':
+            sb.append("\\t");
+            break;
+          default:
+            if (c < ' ') {
+              sb.append(String.format("\\u%04x", Integer.valueOf((int) c)));
+            } else {
+              sb.append(c);
+            }
+            break;
+        }
+      }
+      sb.append('"');
+      this.text(sb.toString());
+    }
+
+    private void unit(
+      final Optional<PUnitNameType<T>> unit)
+    {
+      if (unit.isPresent()) {
+        this.text(unit.get().value());
+        this.text(":");
+      }
+    }
+
+    private void termReference(
+      final PTermReferenceType<T> reference)
+    {
+      switch (reference.referenceKind()) {
+        case REFERENCE_CONSTRUCTOR: {
+          final PTermReferenceType.PTermReferenceConstructorType<T> r =
+            (PTermReferenceType.PTermReferenceConstructorType<T>) reference;
+          this.unit(r.unit());
+          this.text(r.constructor().value());
+          break;
+        }
+        case REFERENCE_VARIABLE: {
+          final PTermReferenceType.PTermReferenceVariableType<T> r =
+            (PTermReferenceType.PTermReferenceVariableType<T>) reference;
+          this.unit(r.unit());
+          this.text(r.term().value());
+          for (final PTermVariableNameType<T> field : r.recordPath()) {
+            this.text(".");
+            this.text(field.value());
+          }
+          break;
+        }
+        default:
+          throw new UnreachableCodeException();
+      }
+    }
+
+    private void typeReference(
+      final PTypeReferenceType<T> reference)
+    {
+      switch (reference.referenceKind()) {
+        case REFERENCE_CONSTRUCTOR: {
+          final PTypeReferenceType.PTypeReferenceConstructorType<T> r =
+            (PTypeReferenceType.PTypeReferenceConstructorType<T>) reference;
+          this.unit(r.unit());
+          this.text(r.constructor().value());
+          break;
+        }
+        case REFERENCE_VARIABLE: {
+          this.text(
+            ((PTypeReferenceType.PTypeReferenceVariableType<T>) reference)
+              .variable().value());
+          break;
+        }
+        default:
+          throw new UnreachableCodeException();
+      }
+    }
+
+    private void termName(
+      final PTermNameType<T> name)
+    {
+      switch (name.termNameKind()) {
+        case TERM_NAME_VARIABLE:
+          this.text(((PTermVariableNameType<T>) name).value());
+          break;
+        case TERM_NAME_CONSTRUCTOR:
+          this.text(((PTermConstructorNameType<T>) name).value());
+          break;
+        default:
+          throw new UnreachableCodeException();
+      }
+    }
+
+    private void termVariableNames(
+      final Vector<PTermVariableNameType<T>> names)
+    {
+      this.text("(");
+      for (int index = 0; index < names.size(); ++index) {
+        if (index > 0) {
+          this.text(" ");
+        }
+        this.text(names.get(index).value());
+      }
+      this.text(")");
+    }
+
+    /**
+     * Type parameters are written if there are any, and also if there are no
+     * fields or cases, as a declaration must have at least one of either.
+     */
+
+    private void typeParameters(
+      final Vector<PTypeVariableNameType<T>> names,
+      final boolean empty)
+    {
+      if (names.isEmpty() && !empty) {
+        return;
+      }
+      this.text(" [∀");
+      for (final PTypeVariableNameType<T> name : names) {
+        this.text(" ");
+        this.text(name.value());
+      }
+      this.text("]");
+    }
+
+    private void recordFields(
+      final Vector<PExpressionType.PExprRecordFieldType<T>> fields)
+    {
+      for (final PExpressionType.PExprRecordFieldType<T> field : fields) {
+        this.text(" [field ");
+        this.text(field.field().value());
+        this.text(" ");
+        this.element(field.expression());
+        this.text("]");
+      }
+    }
+
+    /**
+     * Write an expression that follows a keyword or name, on a new line if
+     * the expression spans several lines.
+     */
+
+    private void body(
+      final PExpressionType<T> e)
+    {
+      if (isBlock(e)) {
+        this.indent();
+        this.line();
+        this.element(e);
+        this.dedent();
+      } else {
+        this.text(" ");
+        this.element(e);
+      }
+    }
+
+    private void expressionOrDeclaration(
+      final PExpressionOrDeclarationType<T> e)
+      throws IOException
+    {
+      switch (e.expressionOrDeclarationKind()) {
+        case EXPRESSION:
+          ((PExpressionType<T>) e).matchExpression(this);
+          break;
+        case DECLARATION:
+          this.declaration((PDeclarationType<T>) e);
+          break;
+        default:
+          throw new UnreachableCodeException();
+      }
+    }
+
+    private void declaration(
+      final PDeclarationType<T> e)
+      throws IOException
+    {
+      switch (e.anyDeclarationKind()) {
+        case TERM_DECLARATION:
+          ((PTermDeclarationType<T>) e).matchTermDeclaration(this);
+          break;
+        case TYPE_DECLARATION:
+          ((PTypeDeclarationType<T>) e).matchTypeDeclaration(this);
+          break;
+        case UNIT_DECLARATION:
+          ((PUnitDeclarationType<T>) e).matchUnitDeclaration(this);
+          break;
+        default:
+          throw new UnreachableCodeException();
+      }
+    }
+
+    @Override
+    public Void constantInteger(
+      final PExpressionType.PExprConstantIntegerType<T> e)
+      throws IOException
+    {
+      this.integer(e.radix(), e.value());
+      return null;
+    }
+
+    @Override
+    public Void constantReal(
+      final PExpressionType.PExprConstantRealType<T> e)
+      throws IOException
+    {
+      this.real(e.value());
+      return null;
+    }
+
+    @Override
+    public Void constantString(
+      final PExpressionType.PExprConstantStringType<T> e)
+      throws IOException
+    {
+      this.string(e.value());
+      return null;
+    }
+
+    @Override
+    public Void application(
+      final PExpressionType.PExprApplicationType<T> e)
+      throws IOException
+    {
+      this.text("(");
+      this.element(e.function());
+      for (final PExpressionType<T> argument : e.arguments()) {
+        this.text(" ");
+        this.element(argument);
+      }
+      this.text(")");
+      return null;
+    }
+
+    @Override
+    public Void lambda(
+      final PExpressionType.PExprLambdaType<T> e)
+      throws IOException
+    {
+      this.text("(lambda ");
+      this.termVariableNames(e.arguments());
+      this.body(e.expression());
+      this.text(")");
+      return null;
+    }
+
+    @Override
+    public Void reference(
+      final PExpressionType.PExprReferenceType<T> e)
+      throws IOException
+    {
+      this.termReference(e.reference());
+      return null;
+    }
+
+    @Override
+    public Void local(
+      final PExpressionType.PExprLocalType<T> e)
+      throws IOException
+    {
+      this.text("(local");
+      this.indent();
+      for (final PExpressionOrDeclarationType<T> local : e.locals()) {
+        this.line();
+        this.element(local);
+      }
+      this.line();
+      this.element(e.body());
+      this.dedent();
+      this.text(")");
+      return null;
+    }
+
+    @Override
+    public Void match(
+      final PExpressionType.PExprMatchType<T> e)
+      throws IOException
+    {
+      this.text("(match ");
+      this.element(e.target());
+      this.indent();
+      for (final PExpressionType.PMatchCaseType<T> c : e.cases()) {
+        this.line();
+        this.text("[case ");
+        c.pattern().matchPattern(this);
+        this.body(c.expression());
+        this.text("]");
+      }
+      this.dedent();
+      this.text(")");
+      return null;
+    }
+
+    @Override
+    public Void record(
+      final PExpressionType.PExprRecordType<T> e)
+      throws IOException
+    {
+      this.text("(record ");
+      this.typeReference(e.target());
+      this.recordFields(e.fields());
+      this.text(")");
+      return null;
+    }
+
+    @Override
+    public Void recordUpdate(
+      final PExpressionType.PExprRecordUpdateType<T> e)
+      throws IOException
+    {
+      this.text("(record-update ");
+      this.element(e.source());
+      this.recordFields(e.fields());
+      this.text(")");
+      return null;
+    }
+
+    @Override
+    public Void constantInteger(
+      final PPatternType.PPatternConstantIntegerType<T> e)
+      throws IOException
+    {
+      this.integer(e.radix(), e.value());
+      return null;
+    }
+
+    @Override
+    public Void constantReal(
+      final PPatternType.PPatternConstantRealType<T> e)
+      throws IOException
+    {
+      this.real(e.value());
+      return null;
+    }
+
+    @Override
+    public Void constantString(
+      final PPatternType.PPatternConstantStringType<T> e)
+      throws IOException
+    {
+      this.string(e.value());
+      return null;
+    }
+
+    @Override
+    public Void constructor(
+      final PPatternType.PPatternConstructorType<T> e)
+      throws IOException
+    {
+      if (e.argument().isPresent()) {
+        this.text("(");
+        this.termReference(e.constructor());
+        this.text(" ");
+        this.text(e.argument().get().value());
+        this.text(")");
+      } else {
+        this.termReference(e.constructor());
+      }
+      return null;
+    }
+
+    @Override
+    public Void wildcard(
+      final PPatternType.PPatternWildcardType<T> e)
+      throws IOException
+    {
+      this.text("_");
+      return null;
+    }
+
+    @Override
+    public Void value(
+      final PTermDeclarationType.PDeclarationValueType<T> e)
+      throws IOException
+    {
+      this.text("(define-value ");
+      this.text(e.name().value());
+      this.body(e.expression());
+      this.text(")");
+      return null;
+    }
+
+    @Override
+    public Void function(
+      final PTermDeclarationType.PDeclarationFunctionType<T> e)
+      throws IOException
+    {
+      this.text("(define-function ");
+      this.text(e.name().value());
+      this.text(" ");
+      this.termVariableNames(e.parameters());
+      this.body(e.expression());
+      this.text(")");
+      return null;
+    }
+
+    @Override
+    public Void signature(
+      final PTermDeclarationType.PDeclarationSignatureType<T> e)
+      throws IOException
+    {
+      this.text("(: ");
+      this.text(e.name().value());
+      this.text(" ");
+      this.element(e.type());
+      this.text(")");
+      return null;
+    }
+
+    @Override
+    public Void record(
+      final PTypeDeclarationType.PDeclarationRecordType<T> e)
+      throws IOException
+    {
+      this.text("(define-record ");
+      this.text(e.name().value());
+      this.typeParameters(e.parameters(), e.fields().isEmpty());
+      this.indent();
+      for (final PTypeDeclarationType.PRecordFieldType<T> field : e.fields()) {
+        this.line();
+        this.text("[field ");
+        this.text(field.name().value());
+        this.text(" ");
+        this.element(field.type());
+        this.text("]");
+      }
+      this.dedent();
+      this.text(")");
+      return null;
+    }
+
+    @Override
+    public Void variant(
+      final PTypeDeclarationType.PDeclarationVariantType<T> e)
+      throws IOException
+    {
+      this.text("(define-variant ");
+      this.text(e.name().value());
+      this.typeParameters(e.parameters(), e.cases().isEmpty());
+      this.indent();
+      for (final PTypeDeclarationType.PVariantCaseType<T> c : e.cases()) {
+        this.line();
+        this.text("[case ");
+        this.text(c.name().value());
+        if (c.parameter().isPresent()) {
+          this.text(" ");
+          this.element(c.parameter().get());
+        }
+        this.text("]");
+      }
+      this.dedent();
+      this.text(")");
+      return null;
+    }
+
+    @Override
+    public Void unit(
+      final PUnitDeclarationType.PDeclarationUnitType<T> e)
+      throws IOException
+    {
+      this.text("(define-unit ");
+      this.text(e.packageName().value());
+      this.text(".");
+      this.text(e.unit().value());
+      this.text(")");
+      return null;
+    }
+
+    @Override
+    public Void importUnit(
+      final PUnitDeclarationType.PDeclarationImportType<T> e)
+      throws IOException
+    {
+      this.text(e.unitQualifier().isPresent() ? "(import-qualified " : "(import ");
+      this.text(e.packageName().value());
+      this.text(".");
+      this.text(e.unit().value());
+      if (e.unitQualifier().isPresent()) {
+        this.text(" ");
+        this.text(e.unitQualifier().get().value());
+      }
+      this.text(")");
+      return null;
+    }
+
+    @Override
+    public Void exportTerms(
+      final PUnitDeclarationType.PDeclarationExportTermsType<T> e)
+      throws IOException
+    {
+      this.text("(export-terms");
+      for (final PTermNameType<T> name : e.terms()) {
+        this.text(" ");
+        this.termName(name);
+      }
+      this.text(")");
+      return null;
+    }
+
+    @Override
+    public Void exportTypes(
+      final PUnitDeclarationType.PDeclarationExportTypesType<T> e)
+      throws IOException
+    {
+      this.text("(export-types");
+      for (final PTypeConstructorNameType<T> name : e.types()) {
+        this.text(" ");
+        this.text(name.value());
+      }
+      this.text(")");
+      return null;
+    }
+
+    @Override
+    public Void arrow(
+      final PTypeExpressionType.PTypeExprArrowType<T> e)
+      throws IOException
+    {
+      this.text("(->");
+      final Vector<PTypeExpressionType<T>> parameters = e.parameters();
+      for (int index = 0; index < parameters.size(); ++index) {
+        this.text(" ");
+        final boolean variadic =
+          e.isVariadic() && index == parameters.size() - 1;
+        if (variadic) {
+          this.text("(variadic ");
+        }
+        this.element(parameters.get(index));
+        if (variadic) {
+          this.text(")");
+        }
+      }
+      this.text(" ");
+      this.element(e.returnType());
+      this.text(")");
+      return null;
+    }
+
+    @Override
+    public Void forAll(
+      final PTypeExpressionType.PTypeExprForAllType<T> e)
+      throws IOException
+    {
+      this.text("(∀");
+      for (final PTypeVariableNameType<T> name : e.parameters()) {
+        this.text(" ");
+        this.text(name.value());
+      }
+      this.text(" ");
+      this.element(e.expression());
+      this.text(")");
+      return null;
+    }
+
+    @Override
+    public Void reference(
+      final PTypeExpressionType.PTypeExprReferenceType<T> e)
+      throws IOException
+    {
+      this.typeReference(e.reference());
+      return null;
+    }
+
+    @Override
+    public Void application(
+      final PTypeExpressionType.PTypeExprApplicationType<T> e)
+      throws IOException
+    {
+      this.text("(");
+      this.element(e.constructor());
+      for (final PTypeExpressionType<T> argument : e.arguments()) {
+        this.text(" ");
+        this.element(argument);
+      }
+      this.text(")");
+      return null;
+    }
+  }
+}
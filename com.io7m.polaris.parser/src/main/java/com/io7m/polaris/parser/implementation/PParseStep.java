@@ -0,0 +1,449 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.parser.implementation;
+
+import com.io7m.polaris.parser.api.PParseError;
+import io.vavr.Function3;
+import io.vavr.collection.Seq;
+import io.vavr.collection.Vector;
+import io.vavr.control.Validation;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+import static com.io7m.polaris.parser.implementation.PValidation.errorsFlatten;
+
+/**
+ * <p>A single step of a parse.</p>
+ *
+ * <p>A step is either complete, in which case it holds a result, or it is
+ * waiting for the results of a number of sub-steps (typically, one for each
+ * of the immediate children of the s-expression being parsed) and holds a
+ * continuation that will be applied to those results. Steps never parse the
+ * children of an expression themselves: the sub-steps are created lazily, and
+ * are evaluated by {@link #run()} using an explicit heap-allocated stack. This
+ * allows for parsing expressions of arbitrary nesting depth without consuming
+ * Java stack space proportional to that depth.</p>
+ *
+ * @param <A> The type of result values
+ */
+
+public final class PParseStep<A>
+{
+  private static final Validation<Seq<PParseError>, ?>[] NO_RESULTS =
+    newResults(0);
+
+  private final Validation<Seq<PParseError>, A> result;
+  private final int count;
+  private final IntFunction<PParseStep<?>> jobs;
+  private final Function<Validation<Seq<PParseError>, ?>[], PParseStep<A>> next;
+
+  private PParseStep(
+    final Validation<Seq<PParseError>, A> in_result,
+    final int in_count,
+    final IntFunction<PParseStep<?>> in_jobs,
+    final Function<Validation<Seq<PParseError>, ?>[], PParseStep<A>> in_next)
+  {
+    this.result = in_result;
+    this.count = in_count;
+    this.jobs = in_jobs;
+    this.next = in_next;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Validation<Seq<PParseError>, ?>[] newResults(
+    final int size)
+  {
+    return (Validation<Seq<PParseError>, ?>[]) new Validation<?, ?>[size];
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> Validation<Seq<PParseError>, T> resultAt(
+    final Validation<Seq<PParseError>, ?>[] results,
+    final int index)
+  {
+    return (Validation<Seq<PParseError>, T>) results[index];
+  }
+
+  /**
+   * @param r   The result
+   * @param <A> The type of result values
+   *
+   * @return A completed step with the given result
+   */
+
+  public static <A> PParseStep<A> done(
+    final Validation<Seq<PParseError>, A> r)
+  {
+    return new PParseStep<>(Objects.requireNonNull(r, "Result"), 0, null, null);
+  }
+
+  /**
+   * @param x   The result value
+   * @param <A> The type of result values
+   *
+   * @return A completed step with the given valid result
+   */
+
+  public static <A> PParseStep<A> valid(
+    final A x)
+  {
+    return done(Validation.valid(x));
+  }
+
+  /**
+   * @param error The error
+   * @param <A>   The type of result values
+   *
+   * @return A completed step that failed with the given error
+   */
+
+  public static <A> PParseStep<A> invalid(
+    final PParseError error)
+  {
+    return done(PValidation.invalid(error));
+  }
+
+  /**
+   * Create a step that waits for {@code count} sub-steps to complete and then
+   * passes their results to {@code next}. The sub-steps are created on demand
+   * by calling {@code jobs} with the index of each sub-step in turn.
+   *
+   * @param count The number of sub-steps
+   * @param jobs  A function that produces sub-steps
+   * @param next  The continuation
+   * @param <A>   The type of result values
+   *
+   * @return A waiting step
+   */
+
+  public static <A> PParseStep<A> await(
+    final int count,
+    final IntFunction<PParseStep<?>> jobs,
+    final Function<Validation<Seq<PParseError>, ?>[], PParseStep<A>> next)
+  {
+    Objects.requireNonNull(jobs, "Jobs");
+    Objects.requireNonNull(next, "Next");
+    return new PParseStep<>(null, count, jobs, next);
+  }
+
+  /**
+   * Safely cast a step producing values of type {@code B} to a step producing
+   * values of type {@code A}, assuming {@code B <: A}.
+   *
+   * @param s   The input step
+   * @param <A> The type of output values
+   * @param <B> The type of input values
+   *
+   * @return {@code s}
+   */
+
+  @SuppressWarnings("unchecked")
+  public static <A, B extends A> PParseStep<A> cast(
+    final PParseStep<B> s)
+  {
+    return (PParseStep<A>) s;
+  }
+
+  /**
+   * Defer the creation of a step until the step is evaluated. This is used to
+   * prevent a step from eagerly creating steps for its children.
+   *
+   * @param s   A step supplier
+   * @param <A> The type of result values
+   *
+   * @return A waiting step
+   */
+
+  public static <A> PParseStep<A> suspend(
+    final Supplier<PParseStep<A>> s)
+  {
+    Objects.requireNonNull(s, "Supplier");
+    return await(1, index -> s.get(), rs -> done(resultAt(rs, 0)));
+  }
+
+  /**
+   * Execute {@code f} for each index in {@code [0, count)}. If every step
+   * produced by {@code f} returns a valid value, the step returns a list of the
+   * results. Otherwise, it returns a list of every error encountered. This is
+   * the step equivalent of {@link PValidation#sequence(Iterable, Function)}.
+   *
+   * @param count The number of elements
+   * @param f     A function producing a step for each index
+   * @param <B>   The type of output values
+   *
+   * @return A waiting step
+   */
+
+  public static <B> PParseStep<Vector<B>> sequence(
+    final int count,
+    final IntFunction<PParseStep<B>> f)
+  {
+    Objects.requireNonNull(f, "Function");
+
+    return await(count, f::apply, rs -> {
+      final Object[] results = new Object[rs.length];
+      Vector<PParseError> errors = Vector.empty();
+
+      for (int index = 0; index < rs.length; ++index) {
+        final Validation<Seq<PParseError>, B> rr = resultAt(rs, index);
+        if (rr.isValid()) {
+          results[index] = rr.get();
+        } else {
+          errors = errors.appendAll(rr.getError());
+        }
+      }
+
+      if (!errors.isEmpty()) {
+        return done(Validation.invalid(errors));
+      }
+      return valid(PVectors.ofArray(results));
+    });
+  }
+
+  /**
+   * Execute {@code f} for each element of {@code xs}.
+   *
+   * @param xs  The sequence of values
+   * @param f   A function producing a step for each value
+   * @param <X> The type of input values
+   * @param <B> The type of output values
+   *
+   * @return A waiting step
+   *
+   * @see #sequence(int, IntFunction)
+   */
+
+  public static <X, B> PParseStep<Vector<B>> sequence(
+    final Vector<X> xs,
+    final Function<X, PParseStep<B>> f)
+  {
+    Objects.requireNonNull(xs, "Values");
+    Objects.requireNonNull(f, "Function");
+    return sequence(xs.size(), index -> f.apply(xs.get(index)));
+  }
+
+  /**
+   * Combine the results of two steps, accumulating errors. This is the step
+   * equivalent of {@link Validation#combine(Validation, Validation)}.
+   *
+   * @param a   The first step
+   * @param b   The second step
+   * @param f   A function to combine valid results
+   * @param <T> The type of the first result
+   * @param <U> The type of the second result
+   * @param <R> The type of the combined result
+   *
+   * @return A waiting step
+   */
+
+  public static <T, U, R> PParseStep<R> combine(
+    final Supplier<PParseStep<T>> a,
+    final Supplier<PParseStep<U>> b,
+    final BiFunction<T, U, R> f)
+  {
+    Objects.requireNonNull(a, "A");
+    Objects.requireNonNull(b, "B");
+    Objects.requireNonNull(f, "Function");
+
+    return await(
+      2,
+      index -> index == 0 ? a.get() : b.get(),
+      rs -> {
+        final Validation<Seq<PParseError>, T> ra = resultAt(rs, 0);
+        final Validation<Seq<PParseError>, U> rb = resultAt(rs, 1);
+        return done(errorsFlatten(Validation.combine(ra, rb).ap(f::apply)));
+      });
+  }
+
+  /**
+   * Combine the results of three steps, accumulating errors. This is the step
+   * equivalent of {@link Validation#combine(Validation, Validation,
+   * Validation)}.
+   *
+   * @param a   The first step
+   * @param b   The second step
+   * @param c   The third step
+   * @param f   A function to combine valid results
+   * @param <T> The type of the first result
+   * @param <U> The type of the second result
+   * @param <V> The type of the third result
+   * @param <R> The type of the combined result
+   *
+   * @return A waiting step
+   */
+
+  public static <T, U, V, R> PParseStep<R> combine(
+    final Supplier<PParseStep<T>> a,
+    final Supplier<PParseStep<U>> b,
+    final Supplier<PParseStep<V>> c,
+    final Function3<T, U, V, R> f)
+  {
+    Objects.requireNonNull(a, "A");
+    Objects.requireNonNull(b, "B");
+    Objects.requireNonNull(c, "C");
+    Objects.requireNonNull(f, "Function");
+
+    return await(
+      3,
+      index -> {
+        switch (index) {
+          case 0:
+            return a.get();
+          case 1:
+            return b.get();
+          default:
+            return c.get();
+        }
+      },
+      rs -> {
+        final Validation<Seq<PParseError>, T> ra = resultAt(rs, 0);
+        final Validation<Seq<PParseError>, U> rb = resultAt(rs, 1);
+        final Validation<Seq<PParseError>, V> rc = resultAt(rs, 2);
+        return done(errorsFlatten(Validation.combine(ra, rb, rc).ap(f)));
+      });
+  }
+
+  /**
+   * @return {@code true} iff this step has completed
+   */
+
+  public boolean isDone()
+  {
+    return this.result != null;
+  }
+
+  /**
+   * Transform the result of this step.
+   *
+   * @param f   The transformation function
+   * @param <B> The type of transformed result values
+   *
+   * @return A step that applies {@code f} to the result of this step
+   */
+
+  public <B> PParseStep<B> mapResult(
+    final Function<Validation<Seq<PParseError>, A>, Validation<Seq<PParseError>, B>> f)
+  {
+    Objects.requireNonNull(f, "Function");
+
+    if (this.isDone()) {
+      return done(f.apply(this.result));
+    }
+
+    final Function<Validation<Seq<PParseError>, ?>[], PParseStep<A>> k = this.next;
+    return new PParseStep<>(
+      null, this.count, this.jobs, rs -> k.apply(rs).mapResult(f));
+  }
+
+  /**
+   * Transform the valid result of this step.
+   *
+   * @param f   The transformation function
+   * @param <B> The type of transformed result values
+   *
+   * @return A step that applies {@code f} to the valid result of this step
+   *
+   * @see Validation#map(Function)
+   */
+
+  public <B> PParseStep<B> map(
+    final Function<? super A, ? extends B> f)
+  {
+    Objects.requireNonNull(f, "Function");
+    return this.mapResult(v -> v.map(f));
+  }
+
+  /**
+   * Transform the valid result of this step.
+   *
+   * @param f   The transformation function
+   * @param <B> The type of transformed result values
+   *
+   * @return A step that applies {@code f} to the valid result of this step
+   *
+   * @see Validation#flatMap(Function)
+   */
+
+  public <B> PParseStep<B> flatMap(
+    final Function<? super A, Validation<Seq<PParseError>, B>> f)
+  {
+    Objects.requireNonNull(f, "Function");
+    return this.mapResult(v -> v.flatMap(f));
+  }
+
+  /**
+   * Evaluate this step and all of its sub-steps. Evaluation uses a
+   * heap-allocated stack and so the Java stack depth used is independent of
+   * the depth of the expression being parsed.
+   *
+   * @return The result of the step
+   */
+
+  @SuppressWarnings("unchecked")
+  public Validation<Seq<PParseError>, A> run()
+  {
+    final ArrayDeque<Frame> stack = new ArrayDeque<>(16);
+    PParseStep<?> current = this;
+
+    while (true) {
+      if (current.isDone()) {
+        final Frame top = stack.peek();
+        if (top == null) {
+          return (Validation<Seq<PParseError>, A>) current.result;
+        }
+
+        top.results[top.index] = current.result;
+        ++top.index;
+
+        if (top.index < top.results.length) {
+          current = top.step.jobs.apply(top.index);
+        } else {
+          stack.pop();
+          current = top.step.next.apply(top.results);
+        }
+        continue;
+      }
+
+      if (current.count == 0) {
+        current = current.next.apply(NO_RESULTS);
+        continue;
+      }
+
+      stack.push(new Frame(current));
+      current = current.jobs.apply(0);
+    }
+  }
+
+  private static final class Frame
+  {
+    private final PParseStep<?> step;
+    private final Validation<Seq<PParseError>, ?>[] results;
+    private int index;
+
+    Frame(
+      final PParseStep<?> in_step)
+    {
+      this.step = in_step;
+      this.results = newResults(in_step.count);
+    }
+  }
+}
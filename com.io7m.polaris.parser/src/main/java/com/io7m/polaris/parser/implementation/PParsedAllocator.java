@@ -0,0 +1,116 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.parser.implementation;
+
+import com.io7m.jaffirm.core.Preconditions;
+import com.io7m.polaris.parser.api.PParsed;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * An allocator of dense node identifiers. The parsing functions obtain tags
+ * for new nodes from the allocator that is current on the calling thread;
+ * a parser makes its own allocator current for the duration of each parse
+ * so that all of the nodes it produces receive consecutive identifiers.
+ * There is no default allocator: code that calls the parsing functions
+ * directly must make an allocator current with {@link #with(Supplier)}.
+ */
+
+public final class PParsedAllocator
+{
+  private static final ThreadLocal<PParsedAllocator> CURRENT =
+    new ThreadLocal<>();
+
+  private int next;
+
+  private PParsedAllocator()
+  {
+    this.next = 0;
+  }
+
+  /**
+   * @return A new allocator that will start allocating at {@code 0}
+   */
+
+  public static PParsedAllocator create()
+  {
+    return new PParsedAllocator();
+  }
+
+  /**
+   * Allocate a tag from the allocator that is current on this thread. It is
+   * an error to call this function if no allocator is current.
+   *
+   * @return A tag with a fresh identifier
+   */
+
+  public static PParsed parsed()
+  {
+    final PParsedAllocator current = CURRENT.get();
+    Preconditions.checkPrecondition(
+      current != null, "An allocator must be current on this thread");
+    return current.allocate();
+  }
+
+  /**
+   * @return A tag with a fresh identifier
+   */
+
+  public PParsed allocate()
+  {
+    final int id = this.next;
+    this.next = Math.addExact(id, 1);
+    return PParsed.of(id);
+  }
+
+  /**
+   * @return The number of identifiers allocated so far
+   */
+
+  public int count()
+  {
+    return this.next;
+  }
+
+  /**
+   * Evaluate {@code f} with this allocator current on the calling thread.
+   *
+   * @param f   The function
+   * @param <A> The type of returned values
+   *
+   * @return The value returned by {@code f}
+   */
+
+  public <A> A with(
+    final Supplier<A> f)
+  {
+    Objects.requireNonNull(f, "Function");
+
+    final PParsedAllocator previous = CURRENT.get();
+    CURRENT.set(this);
+    try {
+      return f.get();
+    } finally {
+      if (previous == null) {
+        CURRENT.remove();
+      } else {
+        CURRENT.set(previous);
+      }
+    }
+  }
+}
@@ -18,7 +18,6 @@ package com.io7m.polaris.parser.implementation;
 
 import com.io7m.jaffirm.core.Preconditions;
 import com.io7m.jsx.SExpressionListType;
-import com.io7m.jsx.SExpressionMatcherType;
 import com.io7m.jsx.SExpressionQuotedStringType;
 import com.io7m.jsx.SExpressionSymbolType;
 import com.io7m.jsx.SExpressionType;
@@ -40,7 +39,6 @@ import com.io7m.polaris.ast.PExpressionType.PMatchCaseType;
 import com.io7m.polaris.ast.PMatchCase;
 import com.io7m.polaris.ast.PPatternType;
 import com.io7m.polaris.ast.PTermVariableName;
-import com.io7m.polaris.ast.PTypeReferenceType;
 import com.io7m.polaris.parser.api.PParseError;
 import com.io7m.polaris.parser.api.PParseErrorMessagesType;
 import com.io7m.polaris.parser.api.PParsed;
@@ -62,14 +60,19 @@ import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_RECORD_EXPRESS
 import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_RECORD_EXPRESSION_DUPLICATE_FIELD;
 import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_RECORD_EXPRESSION_FIELD;
 import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_RECORD_UPDATE_EXPRESSION;
-import static com.io7m.polaris.parser.api.PParsed.parsed;
-import static com.io7m.polaris.parser.implementation.PValidation.cast;
-import static com.io7m.polaris.parser.implementation.PValidation.errorsFlatten;
+import static com.io7m.polaris.parser.implementation.PParseStep.cast;
+import static com.io7m.polaris.parser.implementation.PParsedAllocator.parsed;
 import static com.io7m.polaris.parser.implementation.PValidation.invalid;
 import static com.io7m.polaris.parser.implementation.PValidation.sequence;
 
 /**
- * Functions to transform s-expressions to AST elements.
+ * <p>Functions to transform s-expressions to AST elements.</p>
+ *
+ * <p>The {@code step*} functions do not call each other recursively: each
+ * function inspects only the outermost structure of an s-expression and
+ * returns a {@link PParseStep} describing the sub-expressions that must be
+ * parsed. Expressions of any nesting depth can therefore be parsed in a
+ * bounded amount of Java stack space.</p>
  */
 
 public final class PParsing
@@ -109,58 +112,87 @@ public final class PParsing
   public static Validation<Seq<PParseError>, PExpressionOrDeclarationType<PParsed>> parseExpressionOrDeclaration(
     final PParseErrorMessagesType m,
     final SExpressionType ex)
+  {
+    return stepExpressionOrDeclaration(m, ex).run();
+  }
+
+  /**
+   * Parse the given s-expression as an expression.
+   *
+   * @param m An error message provider
+   * @param e The input expression
+   *
+   * @return A term-level expression
+   */
+
+  public static Validation<Seq<PParseError>, PExpressionType<PParsed>> parseExpression(
+    final PParseErrorMessagesType m,
+    final SExpressionType e)
+  {
+    return stepExpression(m, e).run();
+  }
+
+  /**
+   * Produce a step that will parse the given s-expression as a term-level
+   * expression or a declaration.
+   *
+   * @param m  An error message provider
+   * @param ex The input expression
+   *
+   * @return A parse step
+   */
+
+  public static PParseStep<PExpressionOrDeclarationType<PParsed>> stepExpressionOrDeclaration(
+    final PParseErrorMessagesType m,
+    final SExpressionType ex)
   {
     Objects.requireNonNull(m, "Messages");
     Objects.requireNonNull(ex, "Expression");
 
-    return ex.matchExpression(
-      new SExpressionMatcherType<
-        Validation<Seq<PParseError>, PExpressionOrDeclarationType<PParsed>>,
-        RuntimeException>()
-      {
-        @Override
-        public Validation<Seq<PParseError>, PExpressionOrDeclarationType<PParsed>> list(
-          final SExpressionListType e)
-        {
-          return parseExpressionOrDeclarationList(m, e);
-        }
-
-        @Override
-        public Validation<Seq<PParseError>, PExpressionOrDeclarationType<PParsed>> quotedString(
-          final SExpressionQuotedStringType e)
-        {
-          return parseExpressionOrDeclarationQuotedString(e);
-        }
+    if (ex instanceof SExpressionListType) {
+      return stepExpressionOrDeclarationList(m, (SExpressionListType) ex);
+    }
+    if (ex instanceof SExpressionQuotedStringType) {
+      return PParseStep.done(PValidation.cast(
+        onQuotedString((SExpressionQuotedStringType) ex)));
+    }
+    if (ex instanceof SExpressionSymbolType) {
+      return PParseStep.done(PValidation.cast(
+        onSymbol(m, (SExpressionSymbolType) ex)));
+    }
 
-        @Override
-        public Validation<Seq<PParseError>, PExpressionOrDeclarationType<PParsed>> symbol(
-          final SExpressionSymbolType e)
-        {
-          return parseExpressionOrDeclarationSymbol(m, e);
-        }
-      });
+    throw new UnreachableCodeException();
   }
 
   /**
-   * Parse the given s-expression as an expression.
+   * Produce a step that will parse the given s-expression as an expression.
    *
    * @param m An error message provider
    * @param e The input expression
    *
-   * @return A term-level expression
+   * @return A parse step
    */
 
-  public static Validation<Seq<PParseError>, PExpressionType<PParsed>> parseExpression(
+  public static PParseStep<PExpressionType<PParsed>> stepExpression(
     final PParseErrorMessagesType m,
     final SExpressionType e)
   {
     Objects.requireNonNull(m, "Messages");
     Objects.requireNonNull(e, "Expression");
 
-    final Validation<Seq<PParseError>, PExpressionOrDeclarationType<PParsed>> result =
-      parseExpressionOrDeclaration(m, e);
+    /*
+     * Atoms are always expressions, and are the majority of the nodes in a
+     * typical unit, so they are parsed without checking for declarations.
+     */
+
+    if (e instanceof SExpressionQuotedStringType) {
+      return PParseStep.done(onQuotedString((SExpressionQuotedStringType) e));
+    }
+    if (e instanceof SExpressionSymbolType) {
+      return PParseStep.done(onSymbol(m, (SExpressionSymbolType) e));
+    }
 
-    return result.flatMap(ex -> {
+    return stepExpressionOrDeclaration(m, e).flatMap(ex -> {
       switch (ex.expressionOrDeclarationKind()) {
         case DECLARATION: {
           return invalid(m.errorExpression(
@@ -206,23 +238,8 @@ public final class PParsing
       PExprConstantString.of(e.lexical(), parsed(), e.text()));
   }
 
-  private static Validation<Seq<PParseError>, PExpressionOrDeclarationType<PParsed>>
-  parseExpressionOrDeclarationSymbol(
-    final PParseErrorMessagesType m,
-    final SExpressionSymbolType e)
-  {
-    return cast(onSymbol(m, e));
-  }
-
-  private static Validation<Seq<PParseError>, PExpressionOrDeclarationType<PParsed>>
-  parseExpressionOrDeclarationQuotedString(
-    final SExpressionQuotedStringType e)
-  {
-    return cast(onQuotedString(e));
-  }
-
-  private static Validation<Seq<PParseError>, PExpressionOrDeclarationType<PParsed>>
-  parseExpressionOrDeclarationList(
+  private static PParseStep<PExpressionOrDeclarationType<PParsed>>
+  stepExpressionOrDeclarationList(
     final PParseErrorMessagesType m,
     final SExpressionListType e)
   {
@@ -231,7 +248,7 @@ public final class PParsing
      */
 
     if (e.size() == 0) {
-      return invalid(m.errorExpression(INVALID_APPLICATION, e));
+      return PParseStep.invalid(m.errorExpression(INVALID_APPLICATION, e));
     }
 
     /*
@@ -243,53 +260,58 @@ public final class PParsing
       switch (sym.text()) {
 
         case "lambda": {
-          return cast(parseExpressionLambda(m, e));
+          return cast(stepExpressionLambda(m, e));
         }
         case "λ": {
-          return cast(parseExpressionLambda(m, e));
+          return cast(stepExpressionLambda(m, e));
         }
         case "match": {
-          return cast(parseExpressionMatch(m, e));
+          return cast(stepExpressionMatch(m, e));
         }
         case "local": {
-          return cast(parseExpressionLocal(m, e));
+          return cast(stepExpressionLocal(m, e));
         }
         case "record": {
-          return cast(parseExpressionRecord(m, e));
+          return cast(stepExpressionRecord(m, e));
         }
         case "record-update": {
-          return cast(parseExpressionRecordUpdate(m, e));
+          return cast(stepExpressionRecordUpdate(m, e));
         }
 
         case "define-value": {
-          return cast(PParsingValues.parseValue(m, e));
+          return cast(PParsingValues.stepValue(m, e));
         }
         case "define-function": {
-          return cast(PParsingFunctions.parseFunction(m, e));
+          return cast(PParsingFunctions.stepFunction(m, e));
         }
         case "define-record": {
-          return cast(PParsingRecords.parseRecord(m, e));
+          return cast(PParsingRecords.stepRecord(m, e));
         }
         case "define-variant": {
-          return cast(PParsingVariants.parseVariant(m, e));
+          return cast(PParsingVariants.stepVariant(m, e));
         }
         case "define-unit": {
-          return cast(PParsingUnits.parseUnit(m, e));
+          return PParseStep.done(
+            PValidation.cast(PParsingUnits.parseUnit(m, e)));
         }
         case "import": {
-          return cast(PParsingUnits.parseImport(m, e));
+          return PParseStep.done(
+            PValidation.cast(PParsingUnits.parseImport(m, e)));
         }
         case "import-qualified": {
-          return cast(PParsingUnits.parseImportQualified(m, e));
+          return PParseStep.done(
+            PValidation.cast(PParsingUnits.parseImportQualified(m, e)));
         }
         case "export-terms": {
-          return cast(PParsingUnits.parseExportTerms(m, e));
+          return PParseStep.done(
+            PValidation.cast(PParsingUnits.parseExportTerms(m, e)));
         }
         case "export-types": {
-          return cast(PParsingUnits.parseExportTypes(m, e));
+          return PParseStep.done(
+            PValidation.cast(PParsingUnits.parseExportTypes(m, e)));
         }
         case ":": {
-          return cast(PParsingSignatures.parseSignature(m, e));
+          return cast(PParsingSignatures.stepSignature(m, e));
         }
 
         default: {
@@ -303,12 +325,12 @@ public final class PParsing
       e.size() > 0,
       c -> "Expression size must be > 0");
 
-    return sequence(e, se -> parseExpression(m, se))
+    return PParseStep.sequence(e.size(), index -> stepExpression(m, e.get(index)))
       .map(es -> PExprApplication.of(parsed(), es.head(), es.tail()));
   }
 
-  private static Validation<Seq<PParseError>, PExpressionType<PParsed>>
-  parseExpressionLocal(
+  private static PParseStep<PExpressionType<PParsed>>
+  stepExpressionLocal(
     final PParseErrorMessagesType m,
     final SExpressionListType e)
   {
@@ -325,27 +347,17 @@ public final class PParsing
       c -> "Local expression must begin with local keyword");
 
     if (e.size() >= 2) {
-      final Vector<SExpressionType> e_subs = Vector.ofAll(e).tail();
-      final SExpressionType e_body = e_subs.last();
-      final Vector<SExpressionType> e_locals = e_subs.dropRight(1);
-
-      final Validation<Seq<PParseError>, Vector<PExpressionOrDeclarationType<PParsed>>> r_locals =
-        sequence(e_locals, ex -> parseExpressionOrDeclaration(m, ex));
-      final Validation<Seq<PParseError>, PExpressionType<PParsed>> r_body =
-        parseExpression(m, e_body);
-
-      final Validation<Seq<Seq<PParseError>>, PExpressionType<PParsed>> r_result =
-        Validation.combine(r_locals, r_body)
-          .ap((locals, body) -> PExprLocal.of(
-            e.lexical(),
-            parsed(),
-            locals,
-            body));
-
-      return errorsFlatten(r_result);
+      final int last = e.size() - 1;
+      final SExpressionType e_body = e.get(last);
+
+      return PParseStep.combine(
+        () -> PParseStep.sequence(
+          last - 1, index -> stepExpressionOrDeclaration(m, e.get(index + 1))),
+        () -> stepExpression(m, e_body),
+        (locals, body) -> PExprLocal.of(e.lexical(), parsed(), locals, body));
     }
 
-    return invalid(m.errorExpression(INVALID_LOCAL, e));
+    return PParseStep.invalid(m.errorExpression(INVALID_LOCAL, e));
   }
 
   /*
@@ -353,8 +365,8 @@ public final class PParsing
    * any of the sub expressions are not expressions.
    */
 
-  private static Validation<Seq<PParseError>, PExpressionType<PParsed>>
-  parseExpressionMatch(
+  private static PParseStep<PExpressionType<PParsed>>
+  stepExpressionMatch(
     final PParseErrorMessagesType m,
     final SExpressionListType e)
   {
@@ -372,52 +384,40 @@ public final class PParsing
 
     if (e.size() >= 3) {
       final SExpressionType e_target = e.get(1);
-      final Vector<SExpressionType> e_rest = Vector.ofAll(e).tail().tail();
-
-      final Validation<Seq<PParseError>, PExpressionType<PParsed>> r_target =
-        parseExpression(m, e_target);
-      final Validation<Seq<PParseError>, Vector<PMatchCaseType<PParsed>>> r_cases =
-        sequence(e_rest, ex -> parseMatchCase(m, ex));
-      final Validation<Seq<Seq<PParseError>>, PExpressionType<PParsed>> r_match =
-        Validation.combine(r_target, r_cases)
-          .ap((expr, cases) ->
-                PExprMatch.of(e.lexical(), parsed(), expr, cases));
-
-      return errorsFlatten(r_match);
+
+      return PParseStep.combine(
+        () -> stepExpression(m, e_target),
+        () -> PParseStep.sequence(
+          e.size() - 2, index -> stepMatchCase(m, e.get(index + 2))),
+        (expr, cases) -> PExprMatch.of(e.lexical(), parsed(), expr, cases));
     }
 
-    return invalid(m.errorExpression(INVALID_MATCH, e));
+    return PParseStep.invalid(m.errorExpression(INVALID_MATCH, e));
   }
 
-  private static Validation<Seq<PParseError>, PMatchCaseType<PParsed>>
-  parseMatchCase(
+  private static PParseStep<PMatchCaseType<PParsed>>
+  stepMatchCase(
     final PParseErrorMessagesType m,
     final SExpressionType e)
   {
     if (e instanceof SExpressionListType) {
       final SExpressionListType e_list = (SExpressionListType) e;
       if (e_list.size() == 3) {
-        final Validation<Seq<PParseError>, String> r_keyword =
-          PParsingNames.parseKeyword(m, e_list.get(0), "case");
-        final Validation<Seq<PParseError>, PPatternType<PParsed>> r_pattern =
-          parsePattern(m, e_list.get(1));
-        final Validation<Seq<PParseError>, PExpressionType<PParsed>> r_express =
-          parseExpression(m, e_list.get(2));
-
-        final Validation<Seq<Seq<PParseError>>, PMatchCaseType<PParsed>> r_result =
-          Validation.combine(r_keyword, r_pattern, r_express)
-            .ap((keyword, pattern, expression) ->
-                  PMatchCase.of(e.lexical(), parsed(), pattern, expression));
-
-        return errorsFlatten(r_result);
+        return PParseStep.combine(
+          () -> PParseStep.done(
+            PParsingNames.parseKeyword(m, e_list.get(0), "case")),
+          () -> PParseStep.done(parsePattern(m, e_list.get(1))),
+          () -> stepExpression(m, e_list.get(2)),
+          (keyword, pattern, expression) ->
+            PMatchCase.of(e.lexical(), parsed(), pattern, expression));
       }
     }
 
-    return invalid(m.errorExpression(INVALID_MATCH_CASE, e));
+    return PParseStep.invalid(m.errorExpression(INVALID_MATCH_CASE, e));
   }
 
-  private static Validation<Seq<PParseError>, PExpressionType<PParsed>>
-  parseExpressionLambda(
+  private static PParseStep<PExpressionType<PParsed>>
+  stepExpressionLambda(
     final PParseErrorMessagesType m,
     final SExpressionListType e)
   {
@@ -437,29 +437,23 @@ public final class PParsing
       final SExpressionType e_param_list = e.get(1);
       final SExpressionType e_body = e.get(2);
       if (e_param_list instanceof SExpressionListType) {
-
-        final Validation<Seq<PParseError>, Vector<PTermVariableName<PParsed>>> r_params =
-          sequence(
-            (SExpressionListType) e_param_list,
-            ex -> PParsingNames.parseTermVariableName(m, ex))
-            .flatMap(params -> requireUniqueNames(m, params));
-
-        final Validation<Seq<PParseError>, PExpressionType<PParsed>> r_body =
-          parseExpression(m, e_body);
-
-        final Validation<Seq<Seq<PParseError>>, PExpressionType<PParsed>> rr =
-          Validation.combine(r_params, r_body)
-            .ap((names, body) ->
-                  PExprLambda.of(
-                    e.lexical(),
-                    parsed(),
-                    PVectors.vectorCast(names),
-                    body));
-        return errorsFlatten(rr);
+        return PParseStep.combine(
+          () -> PParseStep.done(
+            sequence(
+              (SExpressionListType) e_param_list,
+              ex -> PParsingNames.parseTermVariableName(m, ex))
+              .flatMap(params -> requireUniqueNames(m, params))),
+          () -> stepExpression(m, e_body),
+          (names, body) ->
+            PExprLambda.of(
+              e.lexical(),
+              parsed(),
+              PVectors.vectorCast(names),
+              body));
       }
     }
 
-    return invalid(m.errorExpression(INVALID_LAMBDA, e));
+    return PParseStep.invalid(m.errorExpression(INVALID_LAMBDA, e));
   }
 
   private static Validation<Seq<PParseError>, Vector<PTermVariableName<PParsed>>>
@@ -474,8 +468,8 @@ public final class PParsing
         INVALID_LAMBDA_DUPLICATE_PARAMETER, dup.lexical(), dup.value())));
   }
 
-  private static Validation<Seq<PParseError>, PExprRecord<PParsed>>
-  parseExpressionRecord(
+  private static PParseStep<PExprRecord<PParsed>>
+  stepExpressionRecord(
     final PParseErrorMessagesType m,
     final SExpressionListType e)
   {
@@ -493,26 +487,20 @@ public final class PParsing
 
     if (e.size() >= 3) {
       final SExpressionType e_type = e.get(1);
-      final Vector<SExpressionType> e_rest = Vector.ofAll(e).tail().tail();
-
-      final Validation<Seq<PParseError>, PTypeReferenceType<PParsed>> r_type =
-        PParsingTypeReferences.parseTypeReference(m, e_type);
-      final Validation<Seq<PParseError>, Vector<PExprRecordField<PParsed>>> r_fields =
-        sequence(e_rest, ee -> parseRecordField(m, ee));
-      final Validation<Seq<PParseError>, Vector<PExprRecordField<PParsed>>> r_unique =
-        r_fields.flatMap(names -> requireUniqueRecordFieldNames(m, names));
-      final Validation<Seq<Seq<PParseError>>, PExprRecord<PParsed>> r_result =
-        Validation.combine(r_type, r_unique)
-          .ap((t_type, t_fields) -> PExprRecord.of(
-            e.lexical(), parsed(), t_type, PVectors.vectorCast(t_fields)));
-      return errorsFlatten(r_result);
+
+      return PParseStep.combine(
+        () -> PParseStep.done(
+          PParsingTypeReferences.parseTypeReference(m, e_type)),
+        () -> stepRecordFields(m, e),
+        (t_type, t_fields) -> PExprRecord.of(
+          e.lexical(), parsed(), t_type, PVectors.vectorCast(t_fields)));
     }
 
-    return invalid(m.errorExpression(INVALID_RECORD_EXPRESSION, e));
+    return PParseStep.invalid(m.errorExpression(INVALID_RECORD_EXPRESSION, e));
   }
 
-  private static Validation<Seq<PParseError>, PExprRecordUpdate<PParsed>>
-  parseExpressionRecordUpdate(
+  private static PParseStep<PExprRecordUpdate<PParsed>>
+  stepExpressionRecordUpdate(
     final PParseErrorMessagesType m,
     final SExpressionListType e)
   {
@@ -530,21 +518,31 @@ public final class PParsing
 
     if (e.size() >= 3) {
       final SExpressionType e_source = e.get(1);
-      final Vector<SExpressionType> e_rest = Vector.ofAll(e).tail().tail();
-      final Validation<Seq<PParseError>, PExpressionType<PParsed>> r_source =
-        parseExpression(m, e_source);
-      final Validation<Seq<PParseError>, Vector<PExprRecordField<PParsed>>> r_fields =
-        sequence(e_rest, ee -> parseRecordField(m, ee));
-      final Validation<Seq<PParseError>, Vector<PExprRecordField<PParsed>>> r_unique =
-        r_fields.flatMap(names -> requireUniqueRecordFieldNames(m, names));
-      final Validation<Seq<Seq<PParseError>>, PExprRecordUpdate<PParsed>> r_result =
-        Validation.combine(r_source, r_unique)
-          .ap((t_source, t_fields) -> PExprRecordUpdate.of(
-            e.lexical(), parsed(), t_source, PVectors.vectorCast(t_fields)));
-      return errorsFlatten(r_result);
+
+      return PParseStep.combine(
+        () -> stepExpression(m, e_source),
+        () -> stepRecordFields(m, e),
+        (t_source, t_fields) -> PExprRecordUpdate.of(
+          e.lexical(), parsed(), t_source, PVectors.vectorCast(t_fields)));
     }
 
-    return invalid(m.errorExpression(INVALID_RECORD_UPDATE_EXPRESSION, e));
+    return PParseStep.invalid(
+      m.errorExpression(INVALID_RECORD_UPDATE_EXPRESSION, e));
+  }
+
+  /*
+   * Parse the fields of a record or record update expression. The fields
+   * begin at the third element of the list.
+   */
+
+  private static PParseStep<Vector<PExprRecordField<PParsed>>>
+  stepRecordFields(
+    final PParseErrorMessagesType m,
+    final SExpressionListType e)
+  {
+    return PParseStep.sequence(
+      e.size() - 2, index -> stepRecordField(m, e.get(index + 2)))
+      .flatMap(names -> requireUniqueRecordFieldNames(m, names));
   }
 
   private static Validation<Seq<PParseError>, Vector<PExprRecordField<PParsed>>>
@@ -562,28 +560,26 @@ public final class PParsing
           dup.value())));
   }
 
-  private static Validation<Seq<PParseError>, PExprRecordField<PParsed>>
-  parseRecordField(
+  private static PParseStep<PExprRecordField<PParsed>>
+  stepRecordField(
     final PParseErrorMessagesType m,
     final SExpressionType e)
   {
     if (e instanceof SExpressionListType) {
       final SExpressionListType es = (SExpressionListType) e;
       if (es.size() == 3) {
-        final Validation<Seq<PParseError>, String> r_key =
-          PParsingNames.parseKeyword(m, es.get(0), "field");
-        final Validation<Seq<PParseError>, PTermVariableName<PParsed>> r_name =
-          PParsingNames.parseTermVariableName(m, es.get(1));
-        final Validation<Seq<PParseError>, PExpressionType<PParsed>> r_expr =
-          parseExpression(m, es.get(2));
-        final Validation<Seq<Seq<PParseError>>, PExprRecordField<PParsed>> r_result =
-          Validation.combine(r_key, r_name, r_expr)
-            .ap((kw, name, expr) -> PExprRecordField.of(
-              e.lexical(), parsed(), name, expr));
-        return errorsFlatten(r_result);
+        return PParseStep.combine(
+          () -> PParseStep.done(
+            PParsingNames.parseKeyword(m, es.get(0), "field")),
+          () -> PParseStep.done(
+            PParsingNames.parseTermVariableName(m, es.get(1))),
+          () -> stepExpression(m, es.get(2)),
+          (kw, name, expr) -> PExprRecordField.of(
+            e.lexical(), parsed(), name, expr));
       }
     }
 
-    return invalid(m.errorExpression(INVALID_RECORD_EXPRESSION_FIELD, e));
+    return PParseStep.invalid(
+      m.errorExpression(INVALID_RECORD_EXPRESSION_FIELD, e));
   }
 }
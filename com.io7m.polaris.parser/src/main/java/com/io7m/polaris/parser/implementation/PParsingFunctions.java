@@ -22,7 +22,6 @@ import com.io7m.jsx.SExpressionSymbolType;
 import com.io7m.jsx.SExpressionType;
 import com.io7m.junreachable.UnreachableCodeException;
 import com.io7m.polaris.ast.PDeclarationFunction;
-import com.io7m.polaris.ast.PExpressionType;
 import com.io7m.polaris.ast.PTermVariableName;
 import com.io7m.polaris.ast.PTermVariableNameType;
 import com.io7m.polaris.parser.api.PParseError;
@@ -37,9 +36,7 @@ import java.util.function.Function;
 
 import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_FUNCTION;
 import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_FUNCTION_DUPLICATE_PARAMETER;
-import static com.io7m.polaris.parser.api.PParsed.parsed;
-import static com.io7m.polaris.parser.implementation.PValidation.errorsFlatten;
-import static com.io7m.polaris.parser.implementation.PValidation.invalid;
+import static com.io7m.polaris.parser.implementation.PParsedAllocator.parsed;
 import static com.io7m.polaris.parser.implementation.PValidation.sequence;
 
 /**
@@ -65,6 +62,23 @@ public final class PParsingFunctions
   public static Validation<Seq<PParseError>, PDeclarationFunction<PParsed>> parseFunction(
     final PParseErrorMessagesType m,
     final SExpressionListType e)
+  {
+    return stepFunction(m, e).run();
+  }
+
+  /**
+   * Produce a step that will parse the given expression as a function
+   * declaration.
+   *
+   * @param m An error message provider
+   * @param e The expression
+   *
+   * @return A parse step
+   */
+
+  public static PParseStep<PDeclarationFunction<PParsed>> stepFunction(
+    final PParseErrorMessagesType m,
+    final SExpressionListType e)
   {
     Objects.requireNonNull(m, "Messages");
     Objects.requireNonNull(e, "Expression");
@@ -90,27 +104,21 @@ public final class PParsingFunctions
         final Iterable<SExpressionType> el_params =
           (SExpressionListType) e_params;
 
-        final Validation<Seq<PParseError>, PTermVariableName<PParsed>> r_name =
-          PParsingNames.parseTermVariableName(m, e_name);
         final Validation<Seq<PParseError>, Vector<PTermVariableNameType<PParsed>>> r_params =
           sequence(el_params, x -> PParsingNames.parseTermVariableName(m, x))
             .flatMap(names -> requireUniqueNames(m, names))
             .map(PVectors::vectorCast);
 
-        final Validation<Seq<PParseError>, PExpressionType<PParsed>> r_body =
-          PParsing.parseExpression(m, e_body);
-
-        final Validation<Seq<Seq<PParseError>>, PDeclarationFunction<PParsed>> r_result =
-          Validation.combine(r_name, r_params, r_body)
-            .ap((name, params, body) ->
-                  PDeclarationFunction.of(
-                    e.lexical(), parsed(), name, params, body));
-
-        return errorsFlatten(r_result);
+        return PParseStep.combine(
+          () -> PParseStep.done(PParsingNames.parseTermVariableName(m, e_name)),
+          () -> PParseStep.done(r_params),
+          () -> PParsing.stepExpression(m, e_body),
+          (name, params, body) -> PDeclarationFunction.of(
+            e.lexical(), parsed(), name, params, body));
       }
     }
 
-    return invalid(m.errorExpression(INVALID_FUNCTION, e));
+    return PParseStep.invalid(m.errorExpression(INVALID_FUNCTION, e));
   }
 
   private static Validation<Seq<PParseError>, Vector<PTermVariableName<PParsed>>> requireUniqueNames(
@@ -54,7 +54,7 @@ import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_TERM_VARIABLE_
 import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_TYPE_CONSTRUCTOR_NAME;
 import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_TYPE_VARIABLE_NAME;
 import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_UNIT_NAME;
-import static com.io7m.polaris.parser.api.PParsed.parsed;
+import static com.io7m.polaris.parser.implementation.PParsedAllocator.parsed;
 import static com.io7m.polaris.parser.implementation.PValidation.cast;
 import static com.io7m.polaris.parser.implementation.PValidation.errorsFlatten;
 import static com.io7m.polaris.parser.implementation.PValidation.invalid;
@@ -403,7 +403,7 @@ public final class PParsingNames
       parsePackageNameRaw(m, lexical, p_name);
     final Validation<Seq<PParseError>, PUnitName<PParsed>> r_unit =
       parseUnitNameRaw(
-        m, lexical.withColumn(lexical.column() + p_name.length()), u_name);
+        m, lexical.withColumn(lexical.column() + p_name.length() + 1), u_name);
 
     return errorsFlatten(Validation.combine(r_pack, r_unit).ap(Tuple::of));
   }
@@ -40,7 +40,7 @@ import java.util.Objects;
 import java.util.Optional;
 
 import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_PATTERN;
-import static com.io7m.polaris.parser.api.PParsed.parsed;
+import static com.io7m.polaris.parser.implementation.PParsedAllocator.parsed;
 import static com.io7m.polaris.parser.implementation.PValidation.errorsFlatten;
 import static com.io7m.polaris.parser.implementation.PValidation.invalid;
 
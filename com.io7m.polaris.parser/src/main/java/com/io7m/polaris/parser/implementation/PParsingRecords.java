@@ -23,9 +23,6 @@ import com.io7m.jsx.SExpressionType;
 import com.io7m.junreachable.UnreachableCodeException;
 import com.io7m.polaris.ast.PDeclarationRecord;
 import com.io7m.polaris.ast.PRecordField;
-import com.io7m.polaris.ast.PTermVariableName;
-import com.io7m.polaris.ast.PTypeConstructorName;
-import com.io7m.polaris.ast.PTypeExpressionType;
 import com.io7m.polaris.ast.PTypeVariableName;
 import com.io7m.polaris.parser.api.PParseError;
 import com.io7m.polaris.parser.api.PParseErrorMessagesType;
@@ -40,8 +37,7 @@ import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_RECORD;
 import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_RECORD_DUPLICATE_FIELD;
 import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_RECORD_FIELD;
 import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_RECORD_TYPE_PARAMETERS;
-import static com.io7m.polaris.parser.api.PParsed.parsed;
-import static com.io7m.polaris.parser.implementation.PValidation.errorsFlatten;
+import static com.io7m.polaris.parser.implementation.PParsedAllocator.parsed;
 import static com.io7m.polaris.parser.implementation.PValidation.invalid;
 import static com.io7m.polaris.parser.implementation.PValidation.sequence;
 
@@ -68,6 +64,23 @@ public final class PParsingRecords
   public static Validation<Seq<PParseError>, PDeclarationRecord<PParsed>> parseRecord(
     final PParseErrorMessagesType m,
     final SExpressionListType e)
+  {
+    return stepRecord(m, e).run();
+  }
+
+  /**
+   * Produce a step that will parse the given expression as a record
+   * declaration.
+   *
+   * @param m An error message provider
+   * @param e The expression
+   *
+   * @return A parse step
+   */
+
+  public static PParseStep<PDeclarationRecord<PParsed>> stepRecord(
+    final PParseErrorMessagesType m,
+    final SExpressionListType e)
   {
     Objects.requireNonNull(m, "Messages");
     Objects.requireNonNull(e, "Expression");
@@ -85,50 +98,42 @@ public final class PParsingRecords
       c -> "Record declaration must begin with define-record keyword");
 
     if (e.size() >= 3) {
-      final Validation<Seq<PParseError>, PTypeConstructorName<PParsed>> r_name =
-        PParsingNames.parseTypeConstructorName(m, e.get(1));
-      final Validation<Seq<PParseError>, RecordParameters> r_rest =
-        parseForAllAndFields(m, Vector.ofAll(e).tail().tail());
-
-      final Validation<Seq<Seq<PParseError>>, PDeclarationRecord<PParsed>> r_result =
-        Validation.combine(r_name, r_rest)
-          .ap((name, params) ->
-                PDeclarationRecord.of(
-                  e.lexical(),
-                  parsed(),
-                  name,
-                  PVectors.vectorCast(params.parameters),
-                  PVectors.vectorCast(params.fields)));
-
-      return errorsFlatten(r_result);
+      return PParseStep.combine(
+        () -> PParseStep.done(
+          PParsingNames.parseTypeConstructorName(m, e.get(1))),
+        () -> stepForAllAndFields(m, Vector.ofAll(e).tail().tail()),
+        (name, params) ->
+          PDeclarationRecord.of(
+            e.lexical(),
+            parsed(),
+            name,
+            PVectors.vectorCast(params.parameters),
+            PVectors.vectorCast(params.fields)));
     }
 
-    return invalid(m.errorExpression(INVALID_RECORD, e));
+    return PParseStep.invalid(m.errorExpression(INVALID_RECORD, e));
   }
 
-  private static Validation<Seq<PParseError>, RecordParameters> parseForAllAndFields(
+  private static PParseStep<RecordParameters> stepForAllAndFields(
     final PParseErrorMessagesType messages,
     final Vector<SExpressionType> exprs)
   {
     if (hasForAll(exprs)) {
-      final Validation<Seq<PParseError>, Vector<PTypeVariableName<PParsed>>> r_forall =
-        parseForAll(messages, exprs.get(0));
-      final Validation<Seq<PParseError>, Vector<PRecordField<PParsed>>> r_fields =
-        parseFields(messages, exprs.tail());
-      final Validation<Seq<Seq<PParseError>>, RecordParameters> r_result =
-        Validation.combine(r_forall, r_fields).ap(RecordParameters::new);
-      return errorsFlatten(r_result);
+      return PParseStep.combine(
+        () -> PParseStep.done(parseForAll(messages, exprs.get(0))),
+        () -> stepFields(messages, exprs.tail()),
+        RecordParameters::new);
     }
 
-    return parseFields(messages, exprs)
+    return stepFields(messages, exprs)
       .map(fields -> new RecordParameters(Vector.empty(), fields));
   }
 
-  private static Validation<Seq<PParseError>, Vector<PRecordField<PParsed>>> parseFields(
+  private static PParseStep<Vector<PRecordField<PParsed>>> stepFields(
     final PParseErrorMessagesType m,
     final Vector<SExpressionType> exprs)
   {
-    return sequence(exprs, f -> parseField(m, f))
+    return PParseStep.sequence(exprs, f -> stepField(m, f))
       .flatMap(fields -> requireFieldsUnique(m, fields));
   }
 
@@ -143,28 +148,23 @@ public final class PParsingRecords
         INVALID_RECORD_DUPLICATE_FIELD, dup.lexical(), dup.value())));
   }
 
-  private static Validation<Seq<PParseError>, PRecordField<PParsed>> parseField(
+  private static PParseStep<PRecordField<PParsed>> stepField(
     final PParseErrorMessagesType m,
     final SExpressionType ex)
   {
     if (ex instanceof SExpressionListType) {
       final SExpressionListType exs = (SExpressionListType) ex;
       if (exs.size() == 3) {
-        final Validation<Seq<PParseError>, String> r_keyword =
-          PParsingNames.parseKeyword(m, exs.get(0), "field");
-        final Validation<Seq<PParseError>, PTermVariableName<PParsed>> r_name =
-          PParsingNames.parseTermVariableName(m, exs.get(1));
-        final Validation<Seq<PParseError>, PTypeExpressionType<PParsed>> r_expr =
-          PParsingTypeExpressions.parseTypeExpression(m, exs.get(2));
-        final Validation<Seq<Seq<PParseError>>, PRecordField<PParsed>> r_result =
-          Validation.combine(r_keyword, r_name, r_expr)
-            .ap((keyword, name, expr) ->
-                  PRecordField.of(exs.lexical(), parsed(), name, expr));
-        return errorsFlatten(r_result);
+        return PParseStep.combine(
+          () -> PParseStep.done(PParsingNames.parseKeyword(m, exs.get(0), "field")),
+          () -> PParseStep.done(PParsingNames.parseTermVariableName(m, exs.get(1))),
+          () -> PParsingTypeExpressions.stepTypeExpression(m, exs.get(2)),
+          (keyword, name, expr) ->
+            PRecordField.of(exs.lexical(), parsed(), name, expr));
       }
     }
 
-    return invalid(m.errorExpression(INVALID_RECORD_FIELD, ex));
+    return PParseStep.invalid(m.errorExpression(INVALID_RECORD_FIELD, ex));
   }
 
   private static Validation<Seq<PParseError>, Vector<PTypeVariableName<PParsed>>> parseForAll(
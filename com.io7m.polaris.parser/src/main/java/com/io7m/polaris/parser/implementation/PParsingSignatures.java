@@ -22,8 +22,6 @@ import com.io7m.jsx.SExpressionSymbolType;
 import com.io7m.jsx.SExpressionType;
 import com.io7m.junreachable.UnreachableCodeException;
 import com.io7m.polaris.ast.PDeclarationSignature;
-import com.io7m.polaris.ast.PTermVariableName;
-import com.io7m.polaris.ast.PTypeExpressionType;
 import com.io7m.polaris.parser.api.PParseError;
 import com.io7m.polaris.parser.api.PParseErrorMessagesType;
 import com.io7m.polaris.parser.api.PParsed;
@@ -33,8 +31,7 @@ import io.vavr.control.Validation;
 import java.util.Objects;
 
 import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_TYPE_SIGNATURE;
-import static com.io7m.polaris.parser.api.PParsed.parsed;
-import static com.io7m.polaris.parser.implementation.PValidation.invalid;
+import static com.io7m.polaris.parser.implementation.PParsedAllocator.parsed;
 
 /**
  * Functions to parse type signature declarations.
@@ -59,6 +56,23 @@ public final class PParsingSignatures
   public static Validation<Seq<PParseError>, PDeclarationSignature<PParsed>> parseSignature(
     final PParseErrorMessagesType m,
     final SExpressionListType e)
+  {
+    return stepSignature(m, e).run();
+  }
+
+  /**
+   * Produce a step that will parse the given expression as a type signature
+   * declaration.
+   *
+   * @param m An error message provider
+   * @param e The expression
+   *
+   * @return A parse step
+   */
+
+  public static PParseStep<PDeclarationSignature<PParsed>> stepSignature(
+    final PParseErrorMessagesType m,
+    final SExpressionListType e)
   {
     Objects.requireNonNull(m, "Messages");
     Objects.requireNonNull(e, "Expression");
@@ -79,20 +93,16 @@ public final class PParsingSignatures
       final SExpressionType e_name = e.get(1);
       final SExpressionType e_type = e.get(2);
 
-      final Validation<Seq<PParseError>, PTermVariableName<PParsed>> r_name =
-        PParsingNames.parseTermVariableName(m, e_name);
-      final Validation<Seq<PParseError>, PTypeExpressionType<PParsed>> r_type =
-        PParsingTypeExpressions.parseTypeExpression(m, e_type);
-      final Validation<Seq<Seq<PParseError>>, PDeclarationSignature<PParsed>> r_result =
-        Validation.combine(r_name, r_type)
-          .ap((name, type) -> PDeclarationSignature.of(
-            e.lexical(),
-            parsed(),
-            name,
-            type));
-      return PValidation.errorsFlatten(r_result);
+      return PParseStep.combine(
+        () -> PParseStep.done(PParsingNames.parseTermVariableName(m, e_name)),
+        () -> PParsingTypeExpressions.stepTypeExpression(m, e_type),
+        (name, type) -> PDeclarationSignature.of(
+          e.lexical(),
+          parsed(),
+          name,
+          type));
     }
 
-    return invalid(m.errorExpression(INVALID_TYPE_SIGNATURE, e));
+    return PParseStep.invalid(m.errorExpression(INVALID_TYPE_SIGNATURE, e));
   }
 }
@@ -40,9 +40,9 @@ import java.util.Objects;
 import java.util.Optional;
 
 import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_CONSTRUCTOR_REFERENCE;
-import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_TERM_VARIABLE_NAME;
 import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_TERM_REFERENCE;
-import static com.io7m.polaris.parser.api.PParsed.parsed;
+import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_TERM_VARIABLE_NAME;
+import static com.io7m.polaris.parser.implementation.PParsedAllocator.parsed;
 import static com.io7m.polaris.parser.implementation.PValidation.errorsFlatten;
 import static com.io7m.polaris.parser.implementation.PValidation.invalid;
 
@@ -84,7 +84,7 @@ public final class PParsingTermReferences
         final String text_before = text.substring(0, colon);
         final String text_after = text.substring(colon + 1);
         final LexicalPosition<URI> lex_after =
-          lex_before.withColumn(lex_before.column() + colon);
+          lex_before.withColumn(lex_before.column() + colon + 1);
 
         if (text_after.isEmpty()) {
           return invalid(m.errorLexical(
@@ -203,6 +203,11 @@ public final class PParsingTermReferences
     final LexicalPosition<URI> lexical,
     final String text)
   {
+    if (!text.isEmpty() && text.indexOf('.') == -1) {
+      return PParsingNames.parseTermVariableNameRaw(m, lexical, text)
+        .map(PVectors::singleton);
+    }
+
     final Vector<String> components = Vector.of(text.split("\\."));
 
     if (components.isEmpty()) {
@@ -216,7 +221,7 @@ public final class PParsingTermReferences
       final int offset_now = offset;
       checks = checks.append(PParsingNames.parseTermVariableNameRaw(
         m, lexical.withColumn(offset_now), component));
-      offset += component.length();
+      offset += component.length() + 1;
     }
 
     return Validation.sequence(checks).map(Vector::ofAll);
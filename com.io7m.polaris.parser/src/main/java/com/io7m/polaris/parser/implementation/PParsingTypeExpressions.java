@@ -18,8 +18,6 @@ package com.io7m.polaris.parser.implementation;
 
 import com.io7m.jaffirm.core.Preconditions;
 import com.io7m.jsx.SExpressionListType;
-import com.io7m.jsx.SExpressionMatcherType;
-import com.io7m.jsx.SExpressionQuotedStringType;
 import com.io7m.jsx.SExpressionSymbolType;
 import com.io7m.jsx.SExpressionType;
 import com.io7m.junreachable.UnreachableCodeException;
@@ -45,10 +43,7 @@ import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_TYPE_EXPRESSIO
 import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_TYPE_EXPRESSION_FORALL_DUPLICATE_NAME;
 import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_TYPE_EXPRESSION_UNEXPECTED_VARIADIC;
 import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_TYPE_EXPRESSION_VARIADIC;
-import static com.io7m.polaris.parser.api.PParsed.parsed;
-import static com.io7m.polaris.parser.implementation.PValidation.cast;
-import static com.io7m.polaris.parser.implementation.PValidation.errorsFlatten;
-import static com.io7m.polaris.parser.implementation.PValidation.invalid;
+import static com.io7m.polaris.parser.implementation.PParsedAllocator.parsed;
 import static com.io7m.polaris.parser.implementation.PValidation.sequence;
 
 /**
@@ -75,32 +70,33 @@ public final class PParsingTypeExpressions
     final PParseErrorMessagesType m,
     final SExpressionType e)
   {
-    Objects.requireNonNull(e, "Expression");
+    return stepTypeExpression(m, e).run();
+  }
 
-    return e.matchExpression(
-      new SExpressionMatcherType<Validation<Seq<PParseError>, PTypeExpressionType<PParsed>>, RuntimeException>()
-      {
-        @Override
-        public Validation<Seq<PParseError>, PTypeExpressionType<PParsed>> list(
-          final SExpressionListType el)
-        {
-          return parseTypeExpressionList(m, el);
-        }
+  /**
+   * Produce a step that will parse the given expression as a type expression.
+   *
+   * @param m An error message provider
+   * @param e The expression
+   *
+   * @return A parse step
+   */
 
-        @Override
-        public Validation<Seq<PParseError>, PTypeExpressionType<PParsed>> quotedString(
-          final SExpressionQuotedStringType eq)
-        {
-          return parseTypeExpressionQuotedString(m, eq);
-        }
+  public static PParseStep<PTypeExpressionType<PParsed>> stepTypeExpression(
+    final PParseErrorMessagesType m,
+    final SExpressionType e)
+  {
+    Objects.requireNonNull(m, "Messages");
+    Objects.requireNonNull(e, "Expression");
 
-        @Override
-        public Validation<Seq<PParseError>, PTypeExpressionType<PParsed>> symbol(
-          final SExpressionSymbolType es)
-        {
-          return parseTypeExpressionSymbol(m, es);
-        }
-      });
+    if (e instanceof SExpressionListType) {
+      return stepTypeExpressionList(m, (SExpressionListType) e);
+    }
+    if (e instanceof SExpressionSymbolType) {
+      return PParseStep.done(
+        parseTypeExpressionSymbol(m, (SExpressionSymbolType) e));
+    }
+    return PParseStep.invalid(m.errorExpression(INVALID_TYPE_EXPRESSION, e));
   }
 
   private static Validation<Seq<PParseError>, PTypeExpressionType<PParsed>> parseTypeExpressionSymbol(
@@ -111,14 +107,7 @@ public final class PParsingTypeExpressions
       .map(ref -> PTypeExprReference.of(parsed(), ref));
   }
 
-  private static Validation<Seq<PParseError>, PTypeExpressionType<PParsed>> parseTypeExpressionQuotedString(
-    final PParseErrorMessagesType m,
-    final SExpressionQuotedStringType eq)
-  {
-    return invalid(m.errorExpression(INVALID_TYPE_EXPRESSION, eq));
-  }
-
-  private static Validation<Seq<PParseError>, PTypeExpressionType<PParsed>> parseTypeExpressionList(
+  private static PParseStep<PTypeExpressionType<PParsed>> stepTypeExpressionList(
     final PParseErrorMessagesType m,
     final SExpressionListType el)
   {
@@ -127,7 +116,7 @@ public final class PParsingTypeExpressions
      */
 
     if (el.size() == 0) {
-      return invalid(m.errorExpression(INVALID_TYPE_EXPRESSION, el));
+      return PParseStep.invalid(m.errorExpression(INVALID_TYPE_EXPRESSION, el));
     }
 
     /*
@@ -139,25 +128,25 @@ public final class PParsingTypeExpressions
       switch (sym.text()) {
 
         case "for-all": {
-          return cast(parseTypeExpressionForAll(m, el));
+          return stepTypeExpressionForAll(m, el);
         }
         case "∀": {
-          return cast(parseTypeExpressionForAll(m, el));
+          return stepTypeExpressionForAll(m, el);
         }
 
         case "->": {
-          return cast(parseTypeExpressionArrow(m, el));
+          return stepTypeExpressionArrow(m, el);
         }
         case "→": {
-          return cast(parseTypeExpressionArrow(m, el));
+          return stepTypeExpressionArrow(m, el);
         }
 
         case "variadic": {
-          return invalid(m.errorExpression(
+          return PParseStep.invalid(m.errorExpression(
             INVALID_TYPE_EXPRESSION_UNEXPECTED_VARIADIC, el));
         }
         case "…": {
-          return invalid(m.errorExpression(
+          return PParseStep.invalid(m.errorExpression(
             INVALID_TYPE_EXPRESSION_UNEXPECTED_VARIADIC, el));
         }
 
@@ -172,11 +161,12 @@ public final class PParsingTypeExpressions
       el.size() > 0,
       c -> "Expression size must be > 0");
 
-    return sequence(el, se -> parseTypeExpression(m, se))
+    return PParseStep.sequence(
+      el.size(), index -> stepTypeExpression(m, el.get(index)))
       .map(es -> PTypeExprApplication.of(parsed(), es.head(), es.tail()));
   }
 
-  private static Validation<Seq<PParseError>, PTypeExpressionType<PParsed>> parseTypeExpressionArrow(
+  private static PParseStep<PTypeExpressionType<PParsed>> stepTypeExpressionArrow(
     final PParseErrorMessagesType m,
     final SExpressionListType e)
   {
@@ -202,49 +192,27 @@ public final class PParsingTypeExpressions
       final Vector<SExpressionType> es_params = es.init();
 
       if (es_params.isEmpty()) {
-        return parseTypeExpression(m, es_return)
+        return stepTypeExpression(m, es_return)
           .map(t_return -> PTypeExprArrow.of(
             e.lexical(), parsed(), Vector.empty(), false, t_return));
       }
 
       /*
        * If there's more than one argument to the arrow, then the second-to-last
-       * argument is allowed to be variadic.
+       * argument is allowed to be variadic. If the last parameter looks
+       * variadic, then parse it as if it is.
        */
 
       final Vector<SExpressionType> es_init = es_params.init();
       final SExpressionType es_last = es_params.last();
-
-      final Validation<Seq<PParseError>, Vector<PTypeExpressionType<PParsed>>> r_params =
-        sequence(es_init, ex -> parseTypeExpression(m, ex));
-      final Validation<Seq<PParseError>, PTypeExpressionType<PParsed>> r_return =
-        parseTypeExpression(m, es_return);
-
-      /*
-       * If the last parameter looks variadic, then parse it as if it is.
-       */
-
-      if (looksVariadic(es_last)) {
-        return makeArrow(
-          e, r_params, r_return, parseVariadicTypeExpression(m, es_last), true);
-      }
-
-      return makeArrow(
-        e, r_params, r_return, parseTypeExpression(m, es_last), false);
-    }
-
-    return invalid(m.errorExpression(INVALID_TYPE_EXPRESSION_ARROW, e));
-  }
-
-  private static Validation<Seq<PParseError>, PTypeExpressionType<PParsed>> makeArrow(
-    final SExpressionListType e,
-    final Validation<Seq<PParseError>, Vector<PTypeExpressionType<PParsed>>> r_params,
-    final Validation<Seq<PParseError>, PTypeExpressionType<PParsed>> r_return,
-    final Validation<Seq<PParseError>, PTypeExpressionType<PParsed>> r_last,
-    final boolean var)
-  {
-    final Validation<Seq<Seq<PParseError>>, PTypeExpressionType<PParsed>> r_result =
-      Validation.combine(r_params, r_last, r_return).ap(
+      final boolean var = looksVariadic(es_last);
+
+      return PParseStep.combine(
+        () -> PParseStep.sequence(es_init, ex -> stepTypeExpression(m, ex)),
+        () -> var
+          ? stepVariadicTypeExpression(m, es_last)
+          : stepTypeExpression(m, es_last),
+        () -> stepTypeExpression(m, es_return),
         (params, last, t_return) ->
           PTypeExprArrow.of(
             e.lexical(),
@@ -252,11 +220,12 @@ public final class PParsingTypeExpressions
             params.append(last),
             var,
             t_return));
+    }
 
-    return errorsFlatten(r_result);
+    return PParseStep.invalid(m.errorExpression(INVALID_TYPE_EXPRESSION_ARROW, e));
   }
 
-  private static Validation<Seq<PParseError>, PTypeExpressionType<PParsed>> parseVariadicTypeExpression(
+  private static PParseStep<PTypeExpressionType<PParsed>> stepVariadicTypeExpression(
     final PParseErrorMessagesType m,
     final SExpressionType e)
   {
@@ -266,13 +235,13 @@ public final class PParsingTypeExpressions
         final SExpressionType e_key = es.get(0);
         if (e_key instanceof SExpressionSymbolType) {
           if (symbolIsVariadic((SExpressionSymbolType) e_key)) {
-            return parseTypeExpression(m, es.get(1));
+            return stepTypeExpression(m, es.get(1));
           }
         }
       }
     }
 
-    return invalid(m.errorExpression(INVALID_TYPE_EXPRESSION_VARIADIC, e));
+    return PParseStep.invalid(m.errorExpression(INVALID_TYPE_EXPRESSION_VARIADIC, e));
   }
 
   private static boolean symbolIsVariadic(
@@ -297,7 +266,7 @@ public final class PParsingTypeExpressions
     return false;
   }
 
-  private static Validation<Seq<PParseError>, PTypeExpressionType<PParsed>> parseTypeExpressionForAll(
+  private static PParseStep<PTypeExpressionType<PParsed>> stepTypeExpressionForAll(
     final PParseErrorMessagesType m,
     final SExpressionListType e)
   {
@@ -322,22 +291,19 @@ public final class PParsingTypeExpressions
         sequence(e_params, n -> PParsingNames.parseTypeVariableName(m, n));
       final Validation<Seq<PParseError>, Vector<PTypeVariableName<PParsed>>> r_params_unique =
         r_params.flatMap(params -> requireUnique(m, params));
-      final Validation<Seq<PParseError>, PTypeExpressionType<PParsed>> r_last =
-        parseTypeExpression(m, e_last);
-
-      final Validation<Seq<Seq<PParseError>>, PTypeExpressionType<PParsed>> r_result =
-        Validation.combine(r_params_unique, r_last)
-          .ap((t_params, t_last) ->
-                PTypeExprForAll.of(
-                  e.lexical(),
-                  parsed(),
-                  PVectors.vectorCast(t_params),
-                  t_last));
-
-      return errorsFlatten(r_result);
+
+      return PParseStep.combine(
+        () -> PParseStep.done(r_params_unique),
+        () -> stepTypeExpression(m, e_last),
+        (t_params, t_last) ->
+          PTypeExprForAll.of(
+            e.lexical(),
+            parsed(),
+            PVectors.vectorCast(t_params),
+            t_last));
     }
 
-    return invalid(m.errorExpression(INVALID_TYPE_EXPRESSION_FORALL, e));
+    return PParseStep.invalid(m.errorExpression(INVALID_TYPE_EXPRESSION_FORALL, e));
   }
 
   private static Validation<Seq<PParseError>, Vector<PTypeVariableName<PParsed>>> requireUnique(
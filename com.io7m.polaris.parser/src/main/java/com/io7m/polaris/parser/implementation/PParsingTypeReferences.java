@@ -36,7 +36,7 @@ import java.util.Objects;
 import java.util.Optional;
 
 import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_TYPE_REFERENCE;
-import static com.io7m.polaris.parser.api.PParsed.parsed;
+import static com.io7m.polaris.parser.implementation.PParsedAllocator.parsed;
 import static com.io7m.polaris.parser.implementation.PValidation.errorsFlatten;
 import static com.io7m.polaris.parser.implementation.PValidation.invalid;
 
@@ -78,7 +78,7 @@ public final class PParsingTypeReferences
         final String text_before = text.substring(0, colon);
         final String text_after = text.substring(colon + 1);
         final LexicalPosition<URI> lex_after =
-          lex_before.withColumn(lex_before.column() + colon);
+          lex_before.withColumn(lex_before.column() + colon + 1);
 
         final Validation<Seq<PParseError>, PUnitName<PParsed>> r_unit =
           PParsingNames.parseUnitNameRaw(m, lex_before, text_before);
@@ -53,7 +53,7 @@ import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_UNIT_EXPORT_TY
 import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_UNIT_EXPORT_TYPES_DUPLICATE_NAME;
 import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_UNIT_IMPORT;
 import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_UNIT_IMPORT_QUALIFIED;
-import static com.io7m.polaris.parser.api.PParsed.parsed;
+import static com.io7m.polaris.parser.implementation.PParsedAllocator.parsed;
 import static com.io7m.polaris.parser.implementation.PValidation.invalid;
 
 /**
@@ -22,8 +22,6 @@ import com.io7m.jsx.SExpressionSymbolType;
 import com.io7m.jsx.SExpressionType;
 import com.io7m.junreachable.UnreachableCodeException;
 import com.io7m.polaris.ast.PDeclarationValue;
-import com.io7m.polaris.ast.PExpressionType;
-import com.io7m.polaris.ast.PTermVariableName;
 import com.io7m.polaris.parser.api.PParseError;
 import com.io7m.polaris.parser.api.PParseErrorMessagesType;
 import com.io7m.polaris.parser.api.PParsed;
@@ -33,8 +31,7 @@ import io.vavr.control.Validation;
 import java.util.Objects;
 
 import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_VALUE;
-import static com.io7m.polaris.parser.api.PParsed.parsed;
-import static com.io7m.polaris.parser.implementation.PValidation.invalid;
+import static com.io7m.polaris.parser.implementation.PParsedAllocator.parsed;
 
 /**
  * Functions to parse value declarations.
@@ -59,6 +56,23 @@ public final class PParsingValues
   public static Validation<Seq<PParseError>, PDeclarationValue<PParsed>> parseValue(
     final PParseErrorMessagesType m,
     final SExpressionListType e)
+  {
+    return stepValue(m, e).run();
+  }
+
+  /**
+   * Produce a step that will parse the given expression as a value
+   * declaration.
+   *
+   * @param m An error message provider
+   * @param e The expression
+   *
+   * @return A parse step
+   */
+
+  public static PParseStep<PDeclarationValue<PParsed>> stepValue(
+    final PParseErrorMessagesType m,
+    final SExpressionListType e)
   {
     Objects.requireNonNull(m, "Messages");
     Objects.requireNonNull(e, "Expression");
@@ -79,17 +93,12 @@ public final class PParsingValues
       final SExpressionType e_name = e.get(1);
       final SExpressionType e_body = e.get(2);
 
-      final Validation<Seq<PParseError>, PTermVariableName<PParsed>> r_name =
-        PParsingNames.parseTermVariableName(m, e_name);
-      final Validation<Seq<PParseError>, PExpressionType<PParsed>> r_body =
-        PParsing.parseExpression(m, e_body);
-      final Validation<Seq<Seq<PParseError>>, PDeclarationValue<PParsed>> r_result =
-        Validation.combine(r_name, r_body)
-          .ap((name, body) ->
-                PDeclarationValue.of(e.lexical(), parsed(), name, body));
-      return PValidation.errorsFlatten(r_result);
+      return PParseStep.combine(
+        () -> PParseStep.done(PParsingNames.parseTermVariableName(m, e_name)),
+        () -> PParsing.stepExpression(m, e_body),
+        (name, body) -> PDeclarationValue.of(e.lexical(), parsed(), name, body));
     }
 
-    return invalid(m.errorExpression(INVALID_VALUE, e));
+    return PParseStep.invalid(m.errorExpression(INVALID_VALUE, e));
   }
 }
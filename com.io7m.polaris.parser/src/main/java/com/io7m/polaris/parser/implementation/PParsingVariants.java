@@ -23,8 +23,6 @@ import com.io7m.jsx.SExpressionType;
 import com.io7m.junreachable.UnreachableCodeException;
 import com.io7m.polaris.ast.PDeclarationVariant;
 import com.io7m.polaris.ast.PTermConstructorName;
-import com.io7m.polaris.ast.PTypeConstructorName;
-import com.io7m.polaris.ast.PTypeExpressionType;
 import com.io7m.polaris.ast.PTypeVariableName;
 import com.io7m.polaris.ast.PVariantCase;
 import com.io7m.polaris.parser.api.PParseError;
@@ -41,7 +39,7 @@ import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_VARIANT;
 import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_VARIANT_CASE;
 import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_VARIANT_DUPLICATE_CASE;
 import static com.io7m.polaris.parser.api.PParseErrorCode.INVALID_VARIANT_TYPE_PARAMETERS;
-import static com.io7m.polaris.parser.api.PParsed.parsed;
+import static com.io7m.polaris.parser.implementation.PParsedAllocator.parsed;
 import static com.io7m.polaris.parser.implementation.PValidation.errorsFlatten;
 import static com.io7m.polaris.parser.implementation.PValidation.invalid;
 import static com.io7m.polaris.parser.implementation.PValidation.sequence;
@@ -69,6 +67,23 @@ public final class PParsingVariants
   public static Validation<Seq<PParseError>, PDeclarationVariant<PParsed>> parseVariant(
     final PParseErrorMessagesType m,
     final SExpressionListType e)
+  {
+    return stepVariant(m, e).run();
+  }
+
+  /**
+   * Produce a step that will parse the given expression as a variant
+   * declaration.
+   *
+   * @param m An error message provider
+   * @param e The expression
+   *
+   * @return A parse step
+   */
+
+  public static PParseStep<PDeclarationVariant<PParsed>> stepVariant(
+    final PParseErrorMessagesType m,
+    final SExpressionListType e)
   {
     Objects.requireNonNull(m, "Messages");
     Objects.requireNonNull(e, "Expression");
@@ -86,50 +101,42 @@ public final class PParsingVariants
       c -> "Variant declaration must begin with define-variant keyword");
 
     if (e.size() >= 3) {
-      final Validation<Seq<PParseError>, PTypeConstructorName<PParsed>> r_name =
-        PParsingNames.parseTypeConstructorName(m, e.get(1));
-      final Validation<Seq<PParseError>, VariantParameters> r_rest =
-        parseForAllAndCases(m, Vector.ofAll(e).tail().tail());
-
-      final Validation<Seq<Seq<PParseError>>, PDeclarationVariant<PParsed>> r_result =
-        Validation.combine(r_name, r_rest)
-          .ap((name, params) ->
-                PDeclarationVariant.of(
-                  e.lexical(),
-                  parsed(),
-                  name,
-                  PVectors.vectorCast(params.parameters),
-                  PVectors.vectorCast(params.cases)));
-
-      return errorsFlatten(r_result);
+      return PParseStep.combine(
+        () -> PParseStep.done(
+          PParsingNames.parseTypeConstructorName(m, e.get(1))),
+        () -> stepForAllAndCases(m, Vector.ofAll(e).tail().tail()),
+        (name, params) ->
+          PDeclarationVariant.of(
+            e.lexical(),
+            parsed(),
+            name,
+            PVectors.vectorCast(params.parameters),
+            PVectors.vectorCast(params.cases)));
     }
 
-    return invalid(m.errorExpression(INVALID_VARIANT, e));
+    return PParseStep.invalid(m.errorExpression(INVALID_VARIANT, e));
   }
 
-  private static Validation<Seq<PParseError>, VariantParameters> parseForAllAndCases(
+  private static PParseStep<VariantParameters> stepForAllAndCases(
     final PParseErrorMessagesType messages,
     final Vector<SExpressionType> exprs)
   {
     if (hasForAll(exprs)) {
-      final Validation<Seq<PParseError>, Vector<PTypeVariableName<PParsed>>> r_forall =
-        parseForAll(messages, exprs.get(0));
-      final Validation<Seq<PParseError>, Vector<PVariantCase<PParsed>>> r_cases =
-        parseCases(messages, exprs.tail());
-      final Validation<Seq<Seq<PParseError>>, VariantParameters> r_result =
-        Validation.combine(r_forall, r_cases).ap(VariantParameters::new);
-      return errorsFlatten(r_result);
+      return PParseStep.combine(
+        () -> PParseStep.done(parseForAll(messages, exprs.get(0))),
+        () -> stepCases(messages, exprs.tail()),
+        VariantParameters::new);
     }
 
-    return parseCases(messages, exprs)
+    return stepCases(messages, exprs)
       .map(cases -> new VariantParameters(Vector.empty(), cases));
   }
 
-  private static Validation<Seq<PParseError>, Vector<PVariantCase<PParsed>>> parseCases(
+  private static PParseStep<Vector<PVariantCase<PParsed>>> stepCases(
     final PParseErrorMessagesType m,
     final Vector<SExpressionType> exprs)
   {
-    return sequence(exprs, f -> parseCase(m, f))
+    return PParseStep.sequence(exprs, f -> stepCase(m, f))
       .flatMap(cases -> requireCasesUnique(m, cases));
   }
 
@@ -144,7 +151,7 @@ public final class PParsingVariants
         INVALID_VARIANT_DUPLICATE_CASE, dup.lexical(), dup.value())));
   }
 
-  private static Validation<Seq<PParseError>, PVariantCase<PParsed>> parseCase(
+  private static PParseStep<PVariantCase<PParsed>> stepCase(
     final PParseErrorMessagesType m,
     final SExpressionType ex)
   {
@@ -157,27 +164,26 @@ public final class PParsingVariants
         final Validation<Seq<PParseError>, PTermConstructorName<PParsed>> r_name =
           PParsingNames.parseTermConstructorName(m, exs.get(1));
 
-        final Validation<Seq<Seq<PParseError>>, PVariantCase<PParsed>> r_result;
         if (exs.size() == 2) {
-          r_result =
+          final Validation<Seq<Seq<PParseError>>, PVariantCase<PParsed>> r_result =
             Validation.combine(r_keyword, r_name)
               .ap((keyword, name) -> PVariantCase.of(
                 exs.lexical(), parsed(), name, Optional.empty()));
-          return errorsFlatten(r_result);
+          return PParseStep.done(errorsFlatten(r_result));
         }
 
         if (exs.size() == 3) {
-          final Validation<Seq<PParseError>, PTypeExpressionType<PParsed>> r_expr =
-            PParsingTypeExpressions.parseTypeExpression(m, exs.get(2));
-          r_result = Validation.combine(r_keyword, r_name, r_expr)
-            .ap((keyword, name, expr) -> PVariantCase.of(
+          return PParseStep.combine(
+            () -> PParseStep.done(r_keyword),
+            () -> PParseStep.done(r_name),
+            () -> PParsingTypeExpressions.stepTypeExpression(m, exs.get(2)),
+            (keyword, name, expr) -> PVariantCase.of(
               exs.lexical(), parsed(), name, Optional.of(expr)));
-          return errorsFlatten(r_result);
         }
       }
     }
 
-    return invalid(m.errorExpression(INVALID_VARIANT_CASE, ex));
+    return PParseStep.invalid(m.errorExpression(INVALID_VARIANT_CASE, ex));
   }
 
   private static Validation<Seq<PParseError>, Vector<PTypeVariableName<PParsed>>> parseForAll(
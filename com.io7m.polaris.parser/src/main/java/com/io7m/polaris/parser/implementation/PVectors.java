@@ -47,4 +47,38 @@ public final class PVectors
   {
     return (Vector<A>) v;
   }
+
+  /**
+   * Create a vector containing a single element. This is considerably
+   * cheaper than {@link Vector#of(Object)}, which constructs the vector via
+   * an iterator.
+   *
+   * @param x   The element
+   * @param <A> The type of elements
+   *
+   * @return A vector containing {@code x}
+   */
+
+  @SuppressWarnings("unchecked")
+  public static <A> Vector<A> singleton(
+    final A x)
+  {
+    return (Vector<A>) Vector.of(new Object[]{x});
+  }
+
+  /**
+   * Create a vector from the given array. The array is copied.
+   *
+   * @param xs  The elements, all of which must be of type {@code A}
+   * @param <A> The type of elements
+   *
+   * @return A vector containing {@code xs}
+   */
+
+  @SuppressWarnings("unchecked")
+  public static <A> Vector<A> ofArray(
+    final Object[] xs)
+  {
+    return (Vector<A>) Vector.of(xs);
+  }
 }
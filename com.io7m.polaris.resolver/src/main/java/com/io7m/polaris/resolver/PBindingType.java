@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.resolver;
+
+import com.io7m.polaris.core.PImmutableStyleType;
+import org.immutables.value.Value;
+
+/**
+ * The declaration to which a reference was resolved.
+ */
+
+@PImmutableStyleType
+@Value.Immutable
+public interface PBindingType
+{
+  /**
+   * @return The kind of binding
+   */
+
+  @Value.Parameter
+  Kind kind();
+
+  /**
+   * @return The fully qualified name of the unit that contains the
+   * declaration
+   */
+
+  @Value.Parameter
+  String unit();
+
+  /**
+   * @return The node identifier of the name that introduces the binding,
+   * within the unit that contains the declaration
+   *
+   * @see com.io7m.polaris.parser.api.PParsed#id()
+   */
+
+  @Value.Parameter
+  int declaration();
+
+  /**
+   * The kind of binding.
+   */
+
+  enum Kind
+  {
+    /**
+     * A term bound by a lambda, function parameter, match case, or local
+     * declaration.
+     */
+
+    TERM_LOCAL,
+
+    /**
+     * A value or function declared at the top level of a unit.
+     */
+
+    TERM_UNIT,
+
+    /**
+     * A constructor of a variant type.
+     */
+
+    TERM_CONSTRUCTOR,
+
+    /**
+     * A record or variant type declared at the top level of a unit.
+     */
+
+    TYPE_UNIT,
+
+    /**
+     * A type that is built into the language.
+     *
+     * @see PBuiltinTypes
+     */
+
+    TYPE_BUILTIN,
+
+    /**
+     * A type variable bound by a quantifier or a type declaration.
+     */
+
+    TYPE_VARIABLE
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.resolver;
+
+import com.io7m.junreachable.UnreachableCodeException;
+import io.vavr.collection.HashMap;
+import io.vavr.collection.Map;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * The types that are built into the language. A builtin type is in scope in
+ * every unit unless the unit declares a type with the same name.
+ */
+
+public final class PBuiltinTypes
+{
+  /**
+   * The name used as the unit of builtin type bindings.
+   */
+
+  public static final String UNIT = "polaris.Builtins";
+
+  /**
+   * The type of integer constants.
+   */
+
+  public static final PBinding INTEGER =
+    PBinding.of(PBinding.Kind.TYPE_BUILTIN, UNIT, 0);
+
+  /**
+   * The type of real constants.
+   */
+
+  public static final PBinding REAL =
+    PBinding.of(PBinding.Kind.TYPE_BUILTIN, UNIT, 1);
+
+  /**
+   * The type of string constants.
+   */
+
+  public static final PBinding STRING =
+    PBinding.of(PBinding.Kind.TYPE_BUILTIN, UNIT, 2);
+
+  private static final Map<String, PBinding> TYPES =
+    HashMap.of("Integer", INTEGER, "Real", REAL, "String", STRING);
+
+  private PBuiltinTypes()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * @param name A type name
+   *
+   * @return The builtin type with the given name, if any
+   */
+
+  public static Optional<PBinding> lookup(
+    final String name)
+  {
+    return TYPES.get(Objects.requireNonNull(name, "Name")).toJavaOptional();
+  }
+
+  /**
+   * @param binding A builtin type binding
+   *
+   * @return The name of the given builtin type
+   */
+
+  public static String name(
+    final PBinding binding)
+  {
+    return TYPES.find(p -> p._2.equals(binding))
+      .map(p -> p._1)
+      .getOrElseThrow(() -> new IllegalArgumentException(
+        "Not a builtin type: " + binding));
+  }
+}
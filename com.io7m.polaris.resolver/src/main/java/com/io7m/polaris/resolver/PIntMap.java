@@ -0,0 +1,251 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.resolver;
+
+import com.io7m.jaffirm.core.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * A mutable open-addressing hash map from non-negative {@code int} keys to
+ * values. Keys are stored unboxed in a flat array and collisions are
+ * resolved by linear probing, so lookups never allocate. The map is not
+ * thread-safe.
+ *
+ * @param <V> The type of values
+ */
+
+public final class PIntMap<V>
+{
+  private static final int EMPTY = -1;
+  private static final int MINIMUM_CAPACITY = 8;
+
+  private int[] keys;
+  private Object[] values;
+  private int size;
+  private int mask;
+
+  private PIntMap(
+    final int in_capacity)
+  {
+    this.keys = new int[in_capacity];
+    this.values = new Object[in_capacity];
+    this.mask = in_capacity - 1;
+    this.size = 0;
+    Arrays.fill(this.keys, EMPTY);
+  }
+
+  /**
+   * @param <V> The type of values
+   *
+   * @return A new empty map
+   */
+
+  public static <V> PIntMap<V> create()
+  {
+    return new PIntMap<>(MINIMUM_CAPACITY);
+  }
+
+  /**
+   * @param expected The expected number of keys
+   * @param <V>      The type of values
+   *
+   * @return A new empty map that can hold {@code expected} keys without
+   * resizing
+   */
+
+  public static <V> PIntMap<V> createWithExpectedSize(
+    final int expected)
+  {
+    Preconditions.checkPreconditionI(
+      expected, expected >= 0, x -> "Expected size must be non-negative");
+
+    int capacity = MINIMUM_CAPACITY;
+    while (capacity / 2 < expected) {
+      capacity = Math.multiplyExact(capacity, 2);
+    }
+    return new PIntMap<>(capacity);
+  }
+
+  private static int hash(
+    final int key)
+  {
+    final int h = key * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  private int slotOf(
+    final int key)
+  {
+    int index = hash(key) & this.mask;
+    while (true) {
+      final int k = this.keys[index];
+      if (k == key || k == EMPTY) {
+        return index;
+      }
+      index = (index + 1) & this.mask;
+    }
+  }
+
+  /**
+   * @return The number of keys in the map
+   */
+
+  public int size()
+  {
+    return this.size;
+  }
+
+  /**
+   * @return {@code true} iff the map is empty
+   */
+
+  public boolean isEmpty()
+  {
+    return this.size == 0;
+  }
+
+  /**
+   * @param key The key
+   *
+   * @return {@code true} iff the map contains {@code key}
+   */
+
+  public boolean containsKey(
+    final int key)
+  {
+    return key >= 0 && this.keys[this.slotOf(key)] == key;
+  }
+
+  /**
+   * @param key The key
+   *
+   * @return The value associated with {@code key}, or {@code null} if there
+   * is no such value
+   */
+
+  @SuppressWarnings("unchecked")
+  public V get(
+    final int key)
+  {
+    if (key < 0) {
+      return null;
+    }
+    return (V) this.values[this.slotOf(key)];
+  }
+
+  /**
+   * Associate {@code value} with {@code key}.
+   *
+   * @param key   The key
+   * @param value The value
+   *
+   * @return The value previously associated with {@code key}, or
+   * {@code null} if there was no such value
+   */
+
+  @SuppressWarnings("unchecked")
+  public V put(
+    final int key,
+    final V value)
+  {
+    Preconditions.checkPreconditionI(
+      key, key >= 0, k -> "Key must be non-negative");
+    Preconditions.checkPrecondition(
+      value, value != null, v -> "Value must be non-null");
+
+    final int index = this.slotOf(key);
+    final V previous = (V) this.values[index];
+    this.values[index] = value;
+    if (this.keys[index] == EMPTY) {
+      this.keys[index] = key;
+      ++this.size;
+      if (this.size * 2 > this.keys.length) {
+        this.resize();
+      }
+    }
+    return previous;
+  }
+
+  /**
+   * Remove the value associated with {@code key}, if any.
+   *
+   * @param key The key
+   *
+   * @return The value previously associated with {@code key}, or
+   * {@code null} if there was no such value
+   */
+
+  @SuppressWarnings("unchecked")
+  public V remove(
+    final int key)
+  {
+    if (key < 0) {
+      return null;
+    }
+
+    int index = this.slotOf(key);
+    if (this.keys[index] == EMPTY) {
+      return null;
+    }
+
+    final V previous = (V) this.values[index];
+    --this.size;
+
+    /*
+     * Shift subsequent entries in the probe sequence back into the hole so
+     * that no tombstones are required.
+     */
+
+    int next = (index + 1) & this.mask;
+    while (this.keys[next] != EMPTY) {
+      final int home = hash(this.keys[next]) & this.mask;
+      if (((next - home) & this.mask) >= ((next - index) & this.mask)) {
+        this.keys[index] = this.keys[next];
+        this.values[index] = this.values[next];
+        index = next;
+      }
+      next = (next + 1) & this.mask;
+    }
+
+    this.keys[index] = EMPTY;
+    this.values[index] = null;
+    return previous;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void resize()
+  {
+    final int[] old_keys = this.keys;
+    final Object[] old_values = this.values;
+    final int capacity = Math.multiplyExact(old_keys.length, 2);
+
+    this.keys = new int[capacity];
+    this.values = new Object[capacity];
+    this.mask = capacity - 1;
+    Arrays.fill(this.keys, EMPTY);
+
+    for (int index = 0; index < old_keys.length; ++index) {
+      final int key = old_keys[index];
+      if (key != EMPTY) {
+        final int slot = this.slotOf(key);
+        this.keys[slot] = key;
+        this.values[slot] = old_values[index];
+      }
+    }
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.resolver;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A thread-safe table that assigns a unique, dense, non-negative integer to
+ * each distinct name. Symbol tables are keyed by these integers rather than
+ * by strings, so each name is hashed as a string once per occurrence rather
+ * than once per scope searched.
+ */
+
+public final class PNameInterner
+{
+  private final ConcurrentHashMap<String, Integer> names;
+  private final AtomicInteger next;
+
+  private PNameInterner()
+  {
+    this.names = new ConcurrentHashMap<>(256);
+    this.next = new AtomicInteger(0);
+  }
+
+  /**
+   * @return A new empty interner
+   */
+
+  public static PNameInterner create()
+  {
+    return new PNameInterner();
+  }
+
+  /**
+   * @param name The name
+   *
+   * @return The integer assigned to {@code name}
+   */
+
+  public int intern(
+    final String name)
+  {
+    Objects.requireNonNull(name, "Name");
+
+    final Integer existing = this.names.get(name);
+    if (existing != null) {
+      return existing.intValue();
+    }
+    return this.names.computeIfAbsent(
+      name, k -> Integer.valueOf(this.next.getAndIncrement())).intValue();
+  }
+
+  /**
+   * @return The number of distinct names interned so far
+   */
+
+  public int size()
+  {
+    return this.names.size();
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.resolver;
+
+/**
+ * Name resolution error codes.
+ */
+
+public enum PResolveErrorCode
+{
+  /**
+   * A unit does not begin with a unit declaration.
+   */
+
+  UNIT_MISSING_DECLARATION,
+
+  /**
+   * A unit declaration appears somewhere other than the start of a unit.
+   */
+
+  UNIT_UNEXPECTED_DECLARATION,
+
+  /**
+   * More than one unit has the same fully qualified name.
+   */
+
+  UNIT_DUPLICATE,
+
+  /**
+   * An imported unit does not exist.
+   */
+
+  IMPORT_UNIT_NOT_FOUND,
+
+  /**
+   * More than one import uses the same unit name or qualifier.
+   */
+
+  IMPORT_DUPLICATE,
+
+  /**
+   * A unit imports itself, directly or indirectly.
+   */
+
+  IMPORT_CYCLE,
+
+  /**
+   * An exported term is not declared in the unit.
+   */
+
+  EXPORT_TERM_NOT_FOUND,
+
+  /**
+   * An exported type is not declared in the unit.
+   */
+
+  EXPORT_TYPE_NOT_FOUND,
+
+  /**
+   * A term is declared more than once at the top level of a unit.
+   */
+
+  TERM_DUPLICATE,
+
+  /**
+   * A type is declared more than once in a unit.
+   */
+
+  TYPE_DUPLICATE,
+
+  /**
+   * A constructor is declared more than once in a unit.
+   */
+
+  CONSTRUCTOR_DUPLICATE,
+
+  /**
+   * A unit qualifier does not name an imported unit.
+   */
+
+  UNIT_QUALIFIER_NOT_FOUND,
+
+  /**
+   * A term reference does not refer to any term in scope.
+   */
+
+  TERM_NOT_FOUND,
+
+  /**
+   * A term reference refers to a term that is not exported.
+   */
+
+  TERM_NOT_EXPORTED,
+
+  /**
+   * A constructor reference refers to a constructor of a type that is not
+   * exported.
+   */
+
+  CONSTRUCTOR_NOT_EXPORTED,
+
+  /**
+   * A constructor reference does not refer to any constructor in scope.
+   */
+
+  CONSTRUCTOR_NOT_FOUND,
+
+  /**
+   * A type reference does not refer to any type in scope.
+   */
+
+  TYPE_NOT_FOUND,
+
+  /**
+   * A type reference refers to a type that is not exported.
+   */
+
+  TYPE_NOT_EXPORTED,
+
+  /**
+   * A type variable is not bound by any enclosing quantifier or declaration.
+   */
+
+  TYPE_VARIABLE_NOT_FOUND
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.resolver;
+
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.ast.PNodeTable;
+import com.io7m.polaris.ast.PTermReferenceType;
+import com.io7m.polaris.ast.PTypeReferenceType;
+import com.io7m.polaris.parser.api.PParsed;
+import io.vavr.collection.Vector;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A unit in which every reference has been resolved. Bindings are held in
+ * side tables indexed by the node identifiers of references, and so the
+ * declarations of the unit are those that were given to the resolver, or
+ * transformations of them that keep the nodes of the references that remain.
+ */
+
+public final class PResolvedUnit
+{
+  private final String name;
+  private final Vector<PExpressionOrDeclarationType<PParsed>> declarations;
+  private final PNodeTable<PBinding> terms;
+  private final PNodeTable<PBinding> types;
+
+  PResolvedUnit(
+    final String in_name,
+    final Vector<PExpressionOrDeclarationType<PParsed>> in_declarations,
+    final PNodeTable<PBinding> in_terms,
+    final PNodeTable<PBinding> in_types)
+  {
+    this.name = Objects.requireNonNull(in_name, "Name");
+    this.declarations = Objects.requireNonNull(in_declarations, "Declarations");
+    this.terms = Objects.requireNonNull(in_terms, "Terms");
+    this.types = Objects.requireNonNull(in_types, "Types");
+  }
+
+  /**
+   * @return The fully qualified name of the unit
+   */
+
+  public String name()
+  {
+    return this.name;
+  }
+
+  /**
+   * @return The declarations of the unit, including the unit declaration
+   */
+
+  public Vector<PExpressionOrDeclarationType<PParsed>> declarations()
+  {
+    return this.declarations;
+  }
+
+  /**
+   * @param in_declarations The new declarations of the unit
+   *
+   * @return A unit with the given declarations and the bindings of this unit
+   */
+
+  public PResolvedUnit withDeclarations(
+    final Vector<PExpressionOrDeclarationType<PParsed>> in_declarations)
+  {
+    return new PResolvedUnit(this.name, in_declarations, this.terms, this.types);
+  }
+
+  /**
+   * @param reference A term reference within this unit
+   *
+   * @return The binding of the given reference
+   */
+
+  public Optional<PBinding> termBinding(
+    final PTermReferenceType<PParsed> reference)
+  {
+    return this.terms.get(reference.data().id());
+  }
+
+  /**
+   * @param reference A type reference within this unit
+   *
+   * @return The binding of the given reference
+   */
+
+  public Optional<PBinding> typeBinding(
+    final PTypeReferenceType<PParsed> reference)
+  {
+    return this.types.get(reference.data().id());
+  }
+}
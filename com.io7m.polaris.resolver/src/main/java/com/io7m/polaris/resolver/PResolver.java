@@ -0,0 +1,143 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.resolver;
+
+import com.io7m.jlexing.core.LexicalPosition;
+import com.io7m.junreachable.UnreachableCodeException;
+import com.io7m.polaris.ast.PDeclarationUnit;
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.parser.api.PParsed;
+import io.vavr.collection.Seq;
+import io.vavr.collection.Vector;
+import io.vavr.control.Validation;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Functions to resolve the names within a set of units.
+ */
+
+public final class PResolver
+{
+  private static final LexicalPosition<URI> NO_POSITION =
+    LexicalPosition.of(0, 0, Optional.empty());
+
+  private PResolver()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Resolve the names within the given units. Each unit must begin with a
+   * unit declaration. The symbol tables of the units are built, and the units
+   * are subsequently resolved, using tasks submitted to {@code executor}; a
+   * unit only observes the symbol tables of other units once they are
+   * complete, and so no synchronization is required between tasks. Errors
+   * are returned in the order of the given units.
+   *
+   * @param executor The executor that will resolve units
+   * @param units    The units
+   *
+   * @return The resolved units, or a list of errors
+   */
+
+  public static Validation<Seq<PResolveError>, Vector<PResolvedUnit>> resolve(
+    final Executor executor,
+    final Vector<Vector<PExpressionOrDeclarationType<PParsed>>> units)
+  {
+    Objects.requireNonNull(executor, "Executor");
+    Objects.requireNonNull(units, "Units");
+
+    final PNameInterner names = PNameInterner.create();
+    final Vector<PUnitSymbols> symbols =
+      join(units.map(unit -> CompletableFuture.supplyAsync(
+        () -> symbolsFor(names, unit), executor)));
+
+    Vector<PResolveError> errors = Vector.empty();
+    final PIntMap<PUnitSymbols> by_name =
+      PIntMap.createWithExpectedSize(units.size());
+
+    for (int index = 0; index < units.size(); ++index) {
+      final PUnitSymbols s = symbols.get(index);
+      if (s == null) {
+        final Vector<PExpressionOrDeclarationType<PParsed>> unit =
+          units.get(index);
+        errors = errors.append(PResolveError.of(
+          unit.headOption().map(f -> f.lexical()).getOrElse(NO_POSITION),
+          PResolveErrorCode.UNIT_MISSING_DECLARATION,
+          "A unit must begin with a unit declaration"));
+        continue;
+      }
+
+      if (by_name.put(names.intern(s.name()), s) != null) {
+        s.error(
+          s.declaration().lexical(),
+          PResolveErrorCode.UNIT_DUPLICATE,
+          "Unit already declared: " + s.name());
+      }
+    }
+
+    final Vector<PResolvedUnit> resolved =
+      join(symbols.map(s -> {
+        if (s == null) {
+          return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+          s.link(by_name);
+          return new PUnitResolver(names, s).run();
+        }, executor);
+      }));
+
+    for (final PUnitSymbols s : symbols) {
+      if (s != null) {
+        errors = errors.appendAll(s.errors());
+      }
+    }
+
+    if (errors.isEmpty()) {
+      return Validation.valid(resolved);
+    }
+    return Validation.invalid(errors);
+  }
+
+  private static PUnitSymbols symbolsFor(
+    final PNameInterner names,
+    final Vector<PExpressionOrDeclarationType<PParsed>> unit)
+  {
+    if (unit.isEmpty() || !(unit.head() instanceof PDeclarationUnit)) {
+      return null;
+    }
+
+    return PUnitSymbols.build(
+      names, (PDeclarationUnit<PParsed>) unit.head(), unit.tail());
+  }
+
+  private static <T> Vector<T> join(
+    final Vector<CompletableFuture<T>> futures)
+  {
+    final ArrayList<T> results = new ArrayList<>(futures.size());
+    for (final CompletableFuture<T> future : futures) {
+      results.add(future.join());
+    }
+    return Vector.ofAll(results);
+  }
+}
@@ -0,0 +1,395 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.resolver;
+
+import com.io7m.jaffirm.core.Preconditions;
+import com.io7m.junreachable.UnreachableCodeException;
+import com.io7m.polaris.ast.PUnitDeclarationType;
+import com.io7m.polaris.parser.api.PParsed;
+import io.vavr.collection.Seq;
+import io.vavr.collection.Vector;
+import io.vavr.control.Validation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.OptionalInt;
+
+/**
+ * An acyclic graph of the import dependencies between units. Units are
+ * identified by their index in the list of headers from which the graph was
+ * built.
+ */
+
+public final class PUnitGraph
+{
+  private static final int[] NO_EDGES = new int[0];
+
+  private final Vector<PUnitHeader> headers;
+  private final HashMap<String, Integer> by_name;
+  private final int[][] dependencies;
+  private final int[][] dependents;
+  private final Vector<Vector<Integer>> waves;
+
+  private PUnitGraph(
+    final Vector<PUnitHeader> in_headers,
+    final HashMap<String, Integer> in_by_name,
+    final int[][] in_dependencies,
+    final int[][] in_dependents,
+    final Vector<Vector<Integer>> in_waves)
+  {
+    this.headers = in_headers;
+    this.by_name = in_by_name;
+    this.dependencies = in_dependencies;
+    this.dependents = in_dependents;
+    this.waves = in_waves;
+  }
+
+  /**
+   * Build a dependency graph from the given unit headers.
+   *
+   * @param headers The unit headers
+   *
+   * @return A graph, or a list of errors if a unit name is duplicated, an
+   * import names a nonexistent unit, or the imports are cyclic
+   */
+
+  public static Validation<Seq<PResolveError>, PUnitGraph> build(
+    final Vector<PUnitHeader> headers)
+  {
+    Objects.requireNonNull(headers, "Headers");
+
+    final ArrayList<PResolveError> errors = new ArrayList<>(0);
+    final int size = headers.size();
+    final HashMap<String, Integer> by_name = new HashMap<>(size * 2);
+
+    for (int index = 0; index < size; ++index) {
+      final PUnitHeader h = headers.get(index);
+      if (by_name.putIfAbsent(h.name(), Integer.valueOf(index)) != null) {
+        errors.add(PResolveError.of(
+          h.unit().lexical(),
+          PResolveErrorCode.UNIT_DUPLICATE,
+          "Unit already declared: " + h.name()));
+      }
+    }
+
+    final int[][] dependencies = new int[size][];
+    final int[] dependent_counts = new int[size];
+    linkImports(headers, by_name, dependencies, dependent_counts, errors);
+
+    final int[][] dependents = invert(dependencies, dependent_counts);
+    final int[] remaining = new int[size];
+    for (int index = 0; index < size; ++index) {
+      remaining[index] = dependencies[index].length;
+    }
+
+    final Vector<Vector<Integer>> waves = waves(dependents, remaining);
+    if (errors.isEmpty()) {
+      checkCycles(headers, dependencies, remaining, errors);
+    }
+
+    if (!errors.isEmpty()) {
+      return Validation.invalid(Vector.ofAll(errors));
+    }
+    return Validation.valid(
+      new PUnitGraph(headers, by_name, dependencies, dependents, waves));
+  }
+
+  /**
+   * Resolve the imports of each unit to unit indices, discarding repeated
+   * imports of the same unit.
+   */
+
+  private static void linkImports(
+    final Vector<PUnitHeader> headers,
+    final HashMap<String, Integer> by_name,
+    final int[][] dependencies,
+    final int[] dependent_counts,
+    final ArrayList<PResolveError> errors)
+  {
+    final int size = headers.size();
+    final int[] seen = new int[size];
+    Arrays.fill(seen, -1);
+
+    for (int index = 0; index < size; ++index) {
+      final Vector<PUnitDeclarationType.PDeclarationImportType<PParsed>> imports =
+        headers.get(index).imports();
+      final int[] edges = new int[imports.size()];
+      int count = 0;
+
+      for (final PUnitDeclarationType.PDeclarationImportType<PParsed> i : imports) {
+        final String name = PUnitSymbols.importedName(i);
+        final Integer target = by_name.get(name);
+        if (target == null) {
+          errors.add(PResolveError.of(
+            i.lexical(),
+            PResolveErrorCode.IMPORT_UNIT_NOT_FOUND,
+            "Imported unit does not exist: " + name));
+          continue;
+        }
+
+        final int t = target.intValue();
+        if (seen[t] != index) {
+          seen[t] = index;
+          edges[count] = t;
+          ++count;
+          ++dependent_counts[t];
+        }
+      }
+      dependencies[index] = count == 0 ? NO_EDGES : Arrays.copyOf(edges, count);
+    }
+  }
+
+  private static int[][] invert(
+    final int[][] dependencies,
+    final int[] dependent_counts)
+  {
+    final int size = dependencies.length;
+    final int[][] dependents = new int[size][];
+    for (int index = 0; index < size; ++index) {
+      dependents[index] = new int[dependent_counts[index]];
+    }
+
+    final int[] fill = new int[size];
+    for (int index = 0; index < size; ++index) {
+      for (final int t : dependencies[index]) {
+        dependents[t][fill[t]] = index;
+        ++fill[t];
+      }
+    }
+    return dependents;
+  }
+
+  /**
+   * Partition the units into waves using Kahn's algorithm: each wave contains
+   * the units whose dependencies are all in earlier waves. On return,
+   * {@code remaining} is nonzero exactly for the units that are part of, or
+   * depend upon, an import cycle.
+   */
+
+  private static Vector<Vector<Integer>> waves(
+    final int[][] dependents,
+    final int[] remaining)
+  {
+    final int size = remaining.length;
+    int[] current = new int[size];
+    int current_count = 0;
+    for (int index = 0; index < size; ++index) {
+      if (remaining[index] == 0) {
+        current[current_count] = index;
+        ++current_count;
+      }
+    }
+
+    Vector<Vector<Integer>> waves = Vector.empty();
+    int[] next = new int[size];
+    while (current_count > 0) {
+      int next_count = 0;
+      final ArrayList<Integer> wave = new ArrayList<>(current_count);
+      for (int k = 0; k < current_count; ++k) {
+        final int unit = current[k];
+        wave.add(Integer.valueOf(unit));
+        for (final int d : dependents[unit]) {
+          --remaining[d];
+          if (remaining[d] == 0) {
+            next[next_count] = d;
+            ++next_count;
+          }
+        }
+      }
+
+      waves = waves.append(Vector.ofAll(wave));
+      final int[] swap = current;
+      current = next;
+      next = swap;
+      current_count = next_count;
+    }
+    return waves;
+  }
+
+  /**
+   * Report each import cycle among the units that could not be scheduled.
+   * Every such unit has at least one unscheduled dependency, so following
+   * unscheduled dependencies from any of them must eventually revisit a unit.
+   */
+
+  private static void checkCycles(
+    final Vector<PUnitHeader> headers,
+    final int[][] dependencies,
+    final int[] remaining,
+    final ArrayList<PResolveError> errors)
+  {
+    final int size = remaining.length;
+    final int[] walk_position = new int[size];
+    Arrays.fill(walk_position, -1);
+    final boolean[] done = new boolean[size];
+    final ArrayList<Integer> path = new ArrayList<>(16);
+
+    for (int start = 0; start < size; ++start) {
+      if (remaining[start] == 0 || done[start]) {
+        continue;
+      }
+
+      path.clear();
+      int current = start;
+      while (!done[current] && walk_position[current] == -1) {
+        walk_position[current] = path.size();
+        path.add(Integer.valueOf(current));
+        current = firstUnscheduled(dependencies[current], remaining);
+      }
+
+      if (!done[current]) {
+        errors.add(cycleError(
+          headers, path.subList(walk_position[current], path.size())));
+      }
+
+      for (final Integer unit : path) {
+        done[unit.intValue()] = true;
+        walk_position[unit.intValue()] = -1;
+      }
+    }
+  }
+
+  private static int firstUnscheduled(
+    final int[] edges,
+    final int[] remaining)
+  {
+    for (final int t : edges) {
+      if (remaining[t] != 0) {
+        return t;
+      }
+    }
+    throw new UnreachableCodeException();
+  }
+
+  private static PResolveError cycleError(
+    final Vector<PUnitHeader> headers,
+    final List<Integer> cycle)
+  {
+    final StringBuilder text = new StringBuilder(64);
+    text.append("Import cycle: ");
+    for (final Integer unit : cycle) {
+      text.append(headers.get(unit.intValue()).name());
+      text.append(" -> ");
+    }
+    final PUnitHeader first = headers.get(cycle.get(0).intValue());
+    text.append(first.name());
+
+    return PResolveError.of(
+      first.unit().lexical(),
+      PResolveErrorCode.IMPORT_CYCLE,
+      text.toString());
+  }
+
+  /**
+   * @return The number of units in the graph
+   */
+
+  public int size()
+  {
+    return this.headers.size();
+  }
+
+  /**
+   * @param unit A unit index
+   *
+   * @return The header of the given unit
+   */
+
+  public PUnitHeader header(
+    final int unit)
+  {
+    return this.headers.get(unit);
+  }
+
+  /**
+   * @param name A fully qualified unit name
+   *
+   * @return The index of the unit with the given name, if any
+   */
+
+  public OptionalInt indexOf(
+    final String name)
+  {
+    final Integer index = this.by_name.get(Objects.requireNonNull(name, "Name"));
+    return index == null ? OptionalInt.empty() : OptionalInt.of(index.intValue());
+  }
+
+  /**
+   * @param unit A unit index
+   *
+   * @return The units that the given unit imports
+   */
+
+  public Vector<Integer> dependencies(
+    final int unit)
+  {
+    return ofArray(this.dependencies[this.checkUnit(unit)]);
+  }
+
+  /**
+   * @param unit A unit index
+   *
+   * @return The units that import the given unit
+   */
+
+  public Vector<Integer> dependents(
+    final int unit)
+  {
+    return ofArray(this.dependents[this.checkUnit(unit)]);
+  }
+
+  int[] dependenciesArray(
+    final int unit)
+  {
+    return this.dependencies[unit];
+  }
+
+  /**
+   * The units partitioned into waves. Every dependency of a unit is in an
+   * earlier wave than the unit itself, and so the units within a wave may be
+   * processed concurrently once all earlier waves are complete.
+   *
+   * @return The units in topological waves
+   */
+
+  public Vector<Vector<Integer>> waves()
+  {
+    return this.waves;
+  }
+
+  private int checkUnit(
+    final int unit)
+  {
+    return Preconditions.checkPreconditionI(
+      unit,
+      unit >= 0 && unit < this.headers.size(),
+      u -> "Unit index must be in the range [0, " + this.headers.size() + ")");
+  }
+
+  private static Vector<Integer> ofArray(
+    final int[] edges)
+  {
+    final ArrayList<Integer> xs = new ArrayList<>(edges.length);
+    for (final int e : edges) {
+      xs.add(Integer.valueOf(e));
+    }
+    return Vector.ofAll(xs);
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.resolver;
+
+import com.io7m.polaris.ast.PUnitDeclarationType;
+import com.io7m.polaris.core.PImmutableStyleType;
+import com.io7m.polaris.parser.api.PParsed;
+import io.vavr.collection.Vector;
+import org.immutables.value.Value;
+
+/**
+ * The header of a unit: the unit declaration and the imports of the unit.
+ */
+
+@PImmutableStyleType
+@Value.Immutable
+public interface PUnitHeaderType
+{
+  /**
+   * @return The unit declaration
+   */
+
+  @Value.Parameter
+  PUnitDeclarationType.PDeclarationUnitType<PParsed> unit();
+
+  /**
+   * @return The imports of the unit, in declaration order
+   */
+
+  @Value.Parameter
+  Vector<PUnitDeclarationType.PDeclarationImportType<PParsed>> imports();
+
+  /**
+   * @return The fully qualified name of the unit
+   */
+
+  @Value.Lazy
+  default String name()
+  {
+    return this.unit().packageName().value() + "." + this.unit().unit().value();
+  }
+}
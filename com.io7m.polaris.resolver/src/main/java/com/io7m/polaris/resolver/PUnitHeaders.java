@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.resolver;
+
+import com.io7m.jlexing.core.LexicalPosition;
+import com.io7m.junreachable.UnreachableCodeException;
+import com.io7m.polaris.ast.PDeclarationImport;
+import com.io7m.polaris.ast.PDeclarationUnit;
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.ast.PUnitDeclarationType;
+import com.io7m.polaris.parser.api.PParseError;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.parser.api.PParserType;
+import io.vavr.collection.Seq;
+import io.vavr.collection.Vector;
+import io.vavr.control.Validation;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Functions to extract the headers of units.
+ */
+
+public final class PUnitHeaders
+{
+  private static final LexicalPosition<URI> NO_POSITION =
+    LexicalPosition.of(0, 0, Optional.empty());
+
+  private PUnitHeaders()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Parse the leading unit, import, and export declarations of a unit. Parsing
+   * stops at the end of the stream or at the first form that is not one of
+   * those declarations; that form is consumed but not returned.
+   *
+   * @param parser A parser
+   *
+   * @return The leading declarations, or a list of parse errors
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public static Validation<Seq<PParseError>, Vector<PExpressionOrDeclarationType<PParsed>>>
+  parse(
+    final PParserType parser)
+    throws IOException
+  {
+    Objects.requireNonNull(parser, "Parser");
+
+    Vector<PExpressionOrDeclarationType<PParsed>> forms = Vector.empty();
+    while (true) {
+      final Validation<Seq<PParseError>, Optional<PExpressionOrDeclarationType<PParsed>>> r =
+        parser.parseExpressionOrDeclaration();
+      if (r.isInvalid()) {
+        return Validation.invalid(r.getError());
+      }
+
+      final Optional<PExpressionOrDeclarationType<PParsed>> form_opt = r.get();
+      if (!form_opt.isPresent() || !(form_opt.get() instanceof PUnitDeclarationType)) {
+        return Validation.valid(forms);
+      }
+      forms = forms.append(form_opt.get());
+    }
+  }
+
+  /**
+   * Extract the header of a unit. The first form must be a unit declaration,
+   * and every import declaration among the forms is included in the header.
+   *
+   * @param forms The forms of the unit, or a subsequence of them such as that
+   *              produced by a header scanner, that begins with the unit
+   *              declaration and contains all of the import declarations
+   *
+   * @return The header, or a list of errors
+   *
+   * @see com.io7m.polaris.parser.api.PHeaderScannerType
+   */
+
+  public static Validation<Seq<PResolveError>, PUnitHeader> header(
+    final Vector<? extends PExpressionOrDeclarationType<PParsed>> forms)
+  {
+    Objects.requireNonNull(forms, "Forms");
+
+    if (forms.isEmpty() || !(forms.head() instanceof PDeclarationUnit)) {
+      return Validation.invalid(Vector.of(PResolveError.of(
+        forms.headOption().map(f -> f.lexical()).getOrElse(NO_POSITION),
+        PResolveErrorCode.UNIT_MISSING_DECLARATION,
+        "A unit must begin with a unit declaration")));
+    }
+
+    final Vector<PUnitDeclarationType.PDeclarationImportType<PParsed>> imports =
+      forms.tail()
+        .filter(f -> f instanceof PDeclarationImport)
+        .map(f -> (PUnitDeclarationType.PDeclarationImportType<PParsed>) f);
+
+    return Validation.valid(
+      PUnitHeader.of((PDeclarationUnit<PParsed>) forms.head(), imports));
+  }
+}
@@ -0,0 +1,640 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.resolver;
+
+import com.io7m.jlexing.core.LexicalPosition;
+import com.io7m.junreachable.UnreachableCodeException;
+import com.io7m.polaris.ast.PDeclarationFunction;
+import com.io7m.polaris.ast.PDeclarationRecord;
+import com.io7m.polaris.ast.PDeclarationSignature;
+import com.io7m.polaris.ast.PDeclarationValue;
+import com.io7m.polaris.ast.PDeclarationVariant;
+import com.io7m.polaris.ast.PExpressionMatcherType;
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.ast.PExpressionType;
+import com.io7m.polaris.ast.PNodeTable;
+import com.io7m.polaris.ast.PPatternType;
+import com.io7m.polaris.ast.PTermReferenceType;
+import com.io7m.polaris.ast.PTermVariableNameType;
+import com.io7m.polaris.ast.PTypeDeclarationType;
+import com.io7m.polaris.ast.PTypeExpressionMatcherType;
+import com.io7m.polaris.ast.PTypeExpressionType;
+import com.io7m.polaris.ast.PTypeReferenceType;
+import com.io7m.polaris.ast.PTypeVariableNameType;
+import com.io7m.polaris.parser.api.PParsed;
+import io.vavr.collection.Vector;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Objects;
+
+/**
+ * A resolver for the references within a single unit. Expressions are
+ * traversed using an explicit stack, and so the Java stack depth used is
+ * independent of the depth of the expressions. Local bindings are held in a
+ * single table per namespace; entering a scope records the bindings that it
+ * shadows so that they can be restored when the scope is left.
+ */
+
+final class PUnitResolver
+  implements PExpressionMatcherType<PParsed, Void, RuntimeException>,
+  PTypeExpressionMatcherType<PParsed, Void, RuntimeException>
+{
+  private final PNameInterner names;
+  private final PUnitSymbols unit;
+  private final PNodeTable<PBinding> term_bindings;
+  private final PNodeTable<PBinding> type_bindings;
+  private final PIntMap<PBinding> local_terms;
+  private final PIntMap<PBinding> local_types;
+  private final ArrayList<Undo> undo;
+  private final ArrayDeque<Object> stack;
+
+  PUnitResolver(
+    final PNameInterner in_names,
+    final PUnitSymbols in_unit)
+  {
+    this.names = Objects.requireNonNull(in_names, "Names");
+    this.unit = Objects.requireNonNull(in_unit, "Unit");
+    this.term_bindings = PNodeTable.create(256);
+    this.type_bindings = PNodeTable.create(64);
+    this.local_terms = PIntMap.create();
+    this.local_types = PIntMap.create();
+    this.undo = new ArrayList<>(16);
+    this.stack = new ArrayDeque<>(16);
+  }
+
+  /**
+   * Resolve all of the references in the unit.
+   *
+   * @return The resolved unit
+   */
+
+  PResolvedUnit run()
+  {
+    for (final PExpressionOrDeclarationType<PParsed> form : this.unit.forms()) {
+      this.pushForm(form);
+      this.drain();
+    }
+
+    return new PResolvedUnit(
+      this.unit.name(),
+      this.unit.forms().prepend(this.unit.declaration()),
+      this.term_bindings,
+      this.type_bindings);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void drain()
+  {
+    while (!this.stack.isEmpty()) {
+      final Object top = this.stack.pop();
+      if (top instanceof Runnable) {
+        ((Runnable) top).run();
+      } else if (top instanceof PExpressionType) {
+        ((PExpressionType<PParsed>) top).matchExpression(this);
+      } else {
+        ((PTypeExpressionType<PParsed>) top).matchTypeExpression(this);
+      }
+    }
+  }
+
+  private void pushForm(
+    final PExpressionOrDeclarationType<PParsed> form)
+  {
+    if (form instanceof PExpressionType) {
+      this.stack.push(form);
+    } else if (form instanceof PDeclarationValue) {
+      this.stack.push(((PDeclarationValue<PParsed>) form).expression());
+    } else if (form instanceof PDeclarationFunction) {
+      this.stack.push(this.functionBody((PDeclarationFunction<PParsed>) form));
+    } else if (form instanceof PDeclarationSignature) {
+      this.stack.push(((PDeclarationSignature<PParsed>) form).type());
+    } else if (form instanceof PDeclarationRecord) {
+      this.pushRecord((PDeclarationRecord<PParsed>) form);
+    } else if (form instanceof PDeclarationVariant) {
+      this.pushVariant((PDeclarationVariant<PParsed>) form);
+    }
+  }
+
+  private void pushRecord(
+    final PDeclarationRecord<PParsed> r)
+  {
+    final int mark = this.mark();
+    this.bindTypeVariables(r.parameters());
+    this.stack.push(this.reset(mark));
+
+    final Vector<PTypeDeclarationType.PRecordFieldType<PParsed>> fields =
+      r.fields();
+    for (int index = fields.size() - 1; index >= 0; --index) {
+      this.stack.push(fields.get(index).type());
+    }
+  }
+
+  private void pushVariant(
+    final PDeclarationVariant<PParsed> v)
+  {
+    final int mark = this.mark();
+    this.bindTypeVariables(v.parameters());
+    this.stack.push(this.reset(mark));
+
+    final Vector<PTypeDeclarationType.PVariantCaseType<PParsed>> cases =
+      v.cases();
+    for (int index = cases.size() - 1; index >= 0; --index) {
+      cases.get(index).parameter().ifPresent(this.stack::push);
+    }
+  }
+
+  private Runnable functionBody(
+    final PDeclarationFunction<PParsed> f)
+  {
+    return () -> {
+      final int mark = this.mark();
+      this.bindTerms(f.parameters());
+      this.stack.push(this.reset(mark));
+      this.stack.push(f.expression());
+    };
+  }
+
+  /*
+   * Scopes.
+   */
+
+  private int mark()
+  {
+    return this.undo.size();
+  }
+
+  private Runnable reset(
+    final int mark)
+  {
+    return () -> {
+      for (int index = this.undo.size() - 1; index >= mark; --index) {
+        final Undo u = this.undo.remove(index);
+        if (u.previous == null) {
+          u.table.remove(u.key);
+        } else {
+          u.table.put(u.key, u.previous);
+        }
+      }
+    };
+  }
+
+  private void bind(
+    final PIntMap<PBinding> table,
+    final int key,
+    final PBinding binding)
+  {
+    this.undo.add(new Undo(table, key, table.put(key, binding)));
+  }
+
+  private void bindTerm(
+    final PTermVariableNameType<PParsed> name)
+  {
+    this.bind(
+      this.local_terms,
+      this.names.intern(name.value()),
+      PBinding.of(
+        PBinding.Kind.TERM_LOCAL, this.unit.name(), name.data().id()));
+  }
+
+  private void bindTerms(
+    final Vector<PTermVariableNameType<PParsed>> names_bound)
+  {
+    for (final PTermVariableNameType<PParsed> name : names_bound) {
+      this.bindTerm(name);
+    }
+  }
+
+  private void bindTypeVariables(
+    final Vector<PTypeVariableNameType<PParsed>> names_bound)
+  {
+    for (final PTypeVariableNameType<PParsed> name : names_bound) {
+      this.bind(
+        this.local_types,
+        this.names.intern(name.value()),
+        PBinding.of(
+          PBinding.Kind.TYPE_VARIABLE, this.unit.name(), name.data().id()));
+    }
+  }
+
+  /*
+   * References.
+   */
+
+  private PUnitSymbols qualifier(
+    final String name,
+    final LexicalPosition<URI> lexical)
+  {
+    final PUnitSymbols target = this.unit.imports().get(this.names.intern(name));
+    if (target == null) {
+      this.unit.error(
+        lexical,
+        PResolveErrorCode.UNIT_QUALIFIER_NOT_FOUND,
+        "Unit qualifier does not name an imported unit: " + name);
+    }
+    return target;
+  }
+
+  private void resolveTermReference(
+    final PTermReferenceType<PParsed> reference)
+  {
+    switch (reference.referenceKind()) {
+      case REFERENCE_CONSTRUCTOR: {
+        this.resolveConstructorReference(
+          (PTermReferenceType.PTermReferenceConstructorType<PParsed>) reference);
+        return;
+      }
+      case REFERENCE_VARIABLE: {
+        this.resolveVariableReference(
+          (PTermReferenceType.PTermReferenceVariableType<PParsed>) reference);
+        return;
+      }
+    }
+
+    throw new UnreachableCodeException();
+  }
+
+  private void resolveVariableReference(
+    final PTermReferenceType.PTermReferenceVariableType<PParsed> reference)
+  {
+    final String name = reference.term().value();
+    final int key = this.names.intern(name);
+
+    if (reference.unit().isPresent()) {
+      final PUnitSymbols target =
+        this.qualifier(reference.unit().get().value(), reference.lexical());
+      if (target == null) {
+        return;
+      }
+
+      final PBinding b = target.exportedTerms().get(key);
+      if (b != null) {
+        this.term_bindings.put(reference.data().id(), b);
+      } else if (target.terms().containsKey(key)) {
+        this.unit.error(
+          reference.lexical(),
+          PResolveErrorCode.TERM_NOT_EXPORTED,
+          "Term is not exported by " + target.name() + ": " + name);
+      } else {
+        this.unit.error(
+          reference.lexical(),
+          PResolveErrorCode.TERM_NOT_FOUND,
+          "Term is not declared in " + target.name() + ": " + name);
+      }
+      return;
+    }
+
+    PBinding b = this.local_terms.get(key);
+    if (b == null) {
+      b = this.unit.terms().get(key);
+    }
+    if (b != null) {
+      this.term_bindings.put(reference.data().id(), b);
+    } else {
+      this.unit.error(
+        reference.lexical(),
+        PResolveErrorCode.TERM_NOT_FOUND,
+        "Term is not in scope: " + name);
+    }
+  }
+
+  private void resolveConstructorReference(
+    final PTermReferenceType.PTermReferenceConstructorType<PParsed> reference)
+  {
+    final String name = reference.constructor().value();
+    final int key = this.names.intern(name);
+
+    if (reference.unit().isPresent()) {
+      final PUnitSymbols target =
+        this.qualifier(reference.unit().get().value(), reference.lexical());
+      if (target == null) {
+        return;
+      }
+
+      final PBinding b = target.exportedConstructors().get(key);
+      if (b != null) {
+        this.term_bindings.put(reference.data().id(), b);
+      } else if (target.constructors().containsKey(key)) {
+        this.unit.error(
+          reference.lexical(),
+          PResolveErrorCode.CONSTRUCTOR_NOT_EXPORTED,
+          "Constructor is not exported by " + target.name() + ": " + name);
+      } else {
+        this.unit.error(
+          reference.lexical(),
+          PResolveErrorCode.CONSTRUCTOR_NOT_FOUND,
+          "Constructor is not declared in " + target.name() + ": " + name);
+      }
+      return;
+    }
+
+    final PBinding b = this.unit.constructors().get(key);
+    if (b != null) {
+      this.term_bindings.put(reference.data().id(), b);
+    } else {
+      this.unit.error(
+        reference.lexical(),
+        PResolveErrorCode.CONSTRUCTOR_NOT_FOUND,
+        "Constructor is not in scope: " + name);
+    }
+  }
+
+  private void resolveTypeReference(
+    final PTypeReferenceType<PParsed> reference)
+  {
+    switch (reference.referenceKind()) {
+      case REFERENCE_CONSTRUCTOR: {
+        this.resolveTypeConstructorReference(
+          (PTypeReferenceType.PTypeReferenceConstructorType<PParsed>) reference);
+        return;
+      }
+      case REFERENCE_VARIABLE: {
+        this.resolveTypeVariableReference(
+          (PTypeReferenceType.PTypeReferenceVariableType<PParsed>) reference);
+        return;
+      }
+    }
+
+    throw new UnreachableCodeException();
+  }
+
+  private void resolveTypeVariableReference(
+    final PTypeReferenceType.PTypeReferenceVariableType<PParsed> reference)
+  {
+    final String name = reference.variable().value();
+    final PBinding b = this.local_types.get(this.names.intern(name));
+    if (b != null) {
+      this.type_bindings.put(reference.data().id(), b);
+    } else {
+      this.unit.error(
+        reference.lexical(),
+        PResolveErrorCode.TYPE_VARIABLE_NOT_FOUND,
+        "Type variable is not in scope: " + name);
+    }
+  }
+
+  private void resolveTypeConstructorReference(
+    final PTypeReferenceType.PTypeReferenceConstructorType<PParsed> reference)
+  {
+    final String name = reference.constructor().value();
+    final int key = this.names.intern(name);
+
+    if (reference.unit().isPresent()) {
+      final PUnitSymbols target =
+        this.qualifier(reference.unit().get().value(), reference.lexical());
+      if (target == null) {
+        return;
+      }
+
+      final PBinding b = target.exportedTypes().get(key);
+      if (b != null) {
+        this.type_bindings.put(reference.data().id(), b);
+      } else if (target.types().containsKey(key)) {
+        this.unit.error(
+          reference.lexical(),
+          PResolveErrorCode.TYPE_NOT_EXPORTED,
+          "Type is not exported by " + target.name() + ": " + name);
+      } else {
+        this.unit.error(
+          reference.lexical(),
+          PResolveErrorCode.TYPE_NOT_FOUND,
+          "Type is not declared in " + target.name() + ": " + name);
+      }
+      return;
+    }
+
+    PBinding b = this.unit.types().get(key);
+    if (b == null) {
+      b = PBuiltinTypes.lookup(name).orElse(null);
+    }
+    if (b != null) {
+      this.type_bindings.put(reference.data().id(), b);
+    } else {
+      this.unit.error(
+        reference.lexical(),
+        PResolveErrorCode.TYPE_NOT_FOUND,
+        "Type is not in scope: " + name);
+    }
+  }
+
+  /*
+   * Expressions.
+   */
+
+  @Override
+  public Void constantInteger(
+    final PExpressionType.PExprConstantIntegerType<PParsed> e)
+  {
+    return null;
+  }
+
+  @Override
+  public Void constantReal(
+    final PExpressionType.PExprConstantRealType<PParsed> e)
+  {
+    return null;
+  }
+
+  @Override
+  public Void constantString(
+    final PExpressionType.PExprConstantStringType<PParsed> e)
+  {
+    return null;
+  }
+
+  @Override
+  public Void application(
+    final PExpressionType.PExprApplicationType<PParsed> e)
+  {
+    final Vector<PExpressionType<PParsed>> arguments = e.arguments();
+    for (int index = arguments.size() - 1; index >= 0; --index) {
+      this.stack.push(arguments.get(index));
+    }
+    this.stack.push(e.function());
+    return null;
+  }
+
+  @Override
+  public Void lambda(
+    final PExpressionType.PExprLambdaType<PParsed> e)
+  {
+    final int mark = this.mark();
+    this.bindTerms(e.arguments());
+    this.stack.push(this.reset(mark));
+    this.stack.push(e.expression());
+    return null;
+  }
+
+  @Override
+  public Void reference(
+    final PExpressionType.PExprReferenceType<PParsed> e)
+  {
+    this.resolveTermReference(e.reference());
+    return null;
+  }
+
+  /**
+   * Local declarations are in scope in the declarations that follow them
+   * and in the body. Functions are additionally in scope in their own
+   * bodies.
+   */
+
+  @Override
+  public Void local(
+    final PExpressionType.PExprLocalType<PParsed> e)
+  {
+    this.stack.push(this.reset(this.mark()));
+    this.stack.push(e.body());
+
+    final Vector<PExpressionOrDeclarationType<PParsed>> locals = e.locals();
+    for (int index = locals.size() - 1; index >= 0; --index) {
+      final PExpressionOrDeclarationType<PParsed> local = locals.get(index);
+      if (local instanceof PDeclarationValue) {
+        final PDeclarationValue<PParsed> v = (PDeclarationValue<PParsed>) local;
+        this.stack.push((Runnable) () -> this.bindTerm(v.name()));
+        this.stack.push(v.expression());
+      } else if (local instanceof PDeclarationFunction) {
+        final PDeclarationFunction<PParsed> f =
+          (PDeclarationFunction<PParsed>) local;
+        this.stack.push(this.functionBody(f));
+        this.stack.push((Runnable) () -> this.bindTerm(f.name()));
+      } else {
+        this.pushForm(local);
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public Void match(
+    final PExpressionType.PExprMatchType<PParsed> e)
+  {
+    final Vector<PExpressionType.PMatchCaseType<PParsed>> cases = e.cases();
+    for (int index = cases.size() - 1; index >= 0; --index) {
+      final PExpressionType.PMatchCaseType<PParsed> c = cases.get(index);
+      this.stack.push((Runnable) () -> this.matchCase(c));
+    }
+    this.stack.push(e.target());
+    return null;
+  }
+
+  private void matchCase(
+    final PExpressionType.PMatchCaseType<PParsed> c)
+  {
+    final int mark = this.mark();
+    final PPatternType<PParsed> pattern = c.pattern();
+    if (pattern instanceof PPatternType.PPatternConstructorType) {
+      final PPatternType.PPatternConstructorType<PParsed> p =
+        (PPatternType.PPatternConstructorType<PParsed>) pattern;
+      this.resolveConstructorReference(p.constructor());
+      p.argument().ifPresent(this::bindTerm);
+    }
+    this.stack.push(this.reset(mark));
+    this.stack.push(c.expression());
+  }
+
+  @Override
+  public Void record(
+    final PExpressionType.PExprRecordType<PParsed> e)
+  {
+    this.resolveTypeReference(e.target());
+    this.pushFields(e.fields());
+    return null;
+  }
+
+  @Override
+  public Void recordUpdate(
+    final PExpressionType.PExprRecordUpdateType<PParsed> e)
+  {
+    this.pushFields(e.fields());
+    this.stack.push(e.source());
+    return null;
+  }
+
+  private void pushFields(
+    final Vector<PExpressionType.PExprRecordFieldType<PParsed>> fields)
+  {
+    for (int index = fields.size() - 1; index >= 0; --index) {
+      this.stack.push(fields.get(index).expression());
+    }
+  }
+
+  /*
+   * Type expressions.
+   */
+
+  @Override
+  public Void arrow(
+    final PTypeExpressionType.PTypeExprArrowType<PParsed> e)
+  {
+    this.stack.push(e.returnType());
+    final Vector<PTypeExpressionType<PParsed>> parameters = e.parameters();
+    for (int index = parameters.size() - 1; index >= 0; --index) {
+      this.stack.push(parameters.get(index));
+    }
+    return null;
+  }
+
+  @Override
+  public Void forAll(
+    final PTypeExpressionType.PTypeExprForAllType<PParsed> e)
+  {
+    final int mark = this.mark();
+    this.bindTypeVariables(e.parameters());
+    this.stack.push(this.reset(mark));
+    this.stack.push(e.expression());
+    return null;
+  }
+
+  @Override
+  public Void reference(
+    final PTypeExpressionType.PTypeExprReferenceType<PParsed> e)
+  {
+    this.resolveTypeReference(e.reference());
+    return null;
+  }
+
+  @Override
+  public Void application(
+    final PTypeExpressionType.PTypeExprApplicationType<PParsed> e)
+  {
+    final Vector<PTypeExpressionType<PParsed>> arguments = e.arguments();
+    for (int index = arguments.size() - 1; index >= 0; --index) {
+      this.stack.push(arguments.get(index));
+    }
+    this.stack.push(e.constructor());
+    return null;
+  }
+
+  private static final class Undo
+  {
+    private final PIntMap<PBinding> table;
+    private final int key;
+    private final PBinding previous;
+
+    Undo(
+      final PIntMap<PBinding> in_table,
+      final int in_key,
+      final PBinding in_previous)
+    {
+      this.table = in_table;
+      this.key = in_key;
+      this.previous = in_previous;
+    }
+  }
+}
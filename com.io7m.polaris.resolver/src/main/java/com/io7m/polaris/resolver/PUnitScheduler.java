@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.resolver;
+
+import com.io7m.junreachable.UnreachableCodeException;
+import io.vavr.collection.Vector;
+
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Functions to execute per-unit tasks in dependency order.
+ */
+
+public final class PUnitScheduler
+{
+  private PUnitScheduler()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Execute {@code task} for every unit in {@code graph}. The task for a unit
+   * is submitted to {@code executor} as soon as the tasks for all of its
+   * dependencies have completed, rather than when the whole of the preceding
+   * wave has completed, and so the total time is bounded by the longest chain
+   * of imports rather than by the sum of the slowest unit in each wave. If any
+   * task fails, the tasks of the units that depend upon it are not executed
+   * and the returned future fails.
+   *
+   * @param executor The executor
+   * @param graph    The dependency graph
+   * @param task     The task
+   * @param <T>      The type of results
+   *
+   * @return The results of the tasks, indexed by unit
+   */
+
+  public static <T> CompletableFuture<Vector<T>> schedule(
+    final Executor executor,
+    final PUnitGraph graph,
+    final PUnitTaskType<T> task)
+  {
+    Objects.requireNonNull(executor, "Executor");
+    Objects.requireNonNull(graph, "Graph");
+    Objects.requireNonNull(task, "Task");
+
+    final int size = graph.size();
+
+    @SuppressWarnings("unchecked")
+    final CompletableFuture<T>[] futures = new CompletableFuture[size];
+
+    for (final Vector<Integer> wave : graph.waves()) {
+      for (final Integer unit_boxed : wave) {
+        final int unit = unit_boxed.intValue();
+        final int[] edges = graph.dependenciesArray(unit);
+        final ArrayList<CompletableFuture<T>> inputs =
+          new ArrayList<>(edges.length);
+        for (final int edge : edges) {
+          inputs.add(futures[edge]);
+        }
+
+        futures[unit] =
+          CompletableFuture.allOf(inputs.toArray(new CompletableFuture[0]))
+            .thenApplyAsync(
+              ignored -> run(task, unit, inputs), executor);
+      }
+    }
+
+    return CompletableFuture.allOf(futures).thenApply(ignored -> {
+      final ArrayList<T> results = new ArrayList<>(size);
+      for (final CompletableFuture<T> future : futures) {
+        results.add(future.join());
+      }
+      return Vector.ofAll(results);
+    });
+  }
+
+  private static <T> T run(
+    final PUnitTaskType<T> task,
+    final int unit,
+    final ArrayList<CompletableFuture<T>> inputs)
+  {
+    final ArrayList<T> results = new ArrayList<>(inputs.size());
+    for (final CompletableFuture<T> input : inputs) {
+      results.add(input.join());
+    }
+
+    try {
+      return task.execute(unit, Vector.ofAll(results));
+    } catch (final RuntimeException e) {
+      throw e;
+    } catch (final Exception e) {
+      throw new CompletionException(e);
+    }
+  }
+}
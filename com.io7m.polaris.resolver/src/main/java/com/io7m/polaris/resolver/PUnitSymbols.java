@@ -0,0 +1,430 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.resolver;
+
+import com.io7m.jlexing.core.LexicalPosition;
+import com.io7m.junreachable.UnreachableCodeException;
+import com.io7m.polaris.ast.PDeclarationExportTerms;
+import com.io7m.polaris.ast.PDeclarationExportTypes;
+import com.io7m.polaris.ast.PDeclarationFunction;
+import com.io7m.polaris.ast.PDeclarationImport;
+import com.io7m.polaris.ast.PDeclarationRecord;
+import com.io7m.polaris.ast.PDeclarationType;
+import com.io7m.polaris.ast.PDeclarationUnit;
+import com.io7m.polaris.ast.PDeclarationValue;
+import com.io7m.polaris.ast.PDeclarationVariant;
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.ast.PTermDeclarationType;
+import com.io7m.polaris.ast.PTermConstructorNameType;
+import com.io7m.polaris.ast.PTermNameType;
+import com.io7m.polaris.ast.PTermVariableNameType;
+import com.io7m.polaris.ast.PTypeConstructorNameType;
+import com.io7m.polaris.ast.PTypeDeclarationType;
+import com.io7m.polaris.ast.PUnitDeclarationType;
+import com.io7m.polaris.parser.api.PParsed;
+import io.vavr.collection.Vector;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Objects;
+
+/**
+ * The top-level symbol tables of a single unit.
+ */
+
+final class PUnitSymbols
+{
+  private final PNameInterner names;
+  private final PDeclarationUnit<PParsed> declaration;
+  private final Vector<PExpressionOrDeclarationType<PParsed>> forms;
+  private final String name;
+  private final ArrayList<PResolveError> errors;
+  private final ArrayList<PDeclarationImport<PParsed>> import_declarations;
+  private final PIntMap<PBinding> terms;
+  private final PIntMap<PBinding> types;
+  private final PIntMap<PBinding> constructors;
+  private final PIntMap<PDeclarationVariant<PParsed>> variants;
+  private final PIntMap<PBinding> exported_terms;
+  private final PIntMap<PBinding> exported_types;
+  private final PIntMap<PBinding> exported_constructors;
+  private final PIntMap<PUnitSymbols> imports;
+
+  private PUnitSymbols(
+    final PNameInterner in_names,
+    final PDeclarationUnit<PParsed> in_declaration,
+    final Vector<PExpressionOrDeclarationType<PParsed>> in_forms)
+  {
+    this.names = Objects.requireNonNull(in_names, "Names");
+    this.declaration = Objects.requireNonNull(in_declaration, "Declaration");
+    this.forms = Objects.requireNonNull(in_forms, "Forms");
+    this.name = qualifiedName(in_declaration);
+    this.errors = new ArrayList<>(0);
+    this.import_declarations = new ArrayList<>(4);
+
+    final int size = in_forms.size();
+    this.terms = PIntMap.createWithExpectedSize(size);
+    this.types = PIntMap.create();
+    this.constructors = PIntMap.create();
+    this.variants = PIntMap.create();
+    this.exported_terms = PIntMap.create();
+    this.exported_types = PIntMap.create();
+    this.exported_constructors = PIntMap.create();
+    this.imports = PIntMap.create();
+  }
+
+  private static String qualifiedName(
+    final PDeclarationUnit<PParsed> u)
+  {
+    return u.packageName().value() + "." + u.unit().value();
+  }
+
+  /**
+   * Build the symbol tables for the given unit. Imports are not linked until
+   * {@link #link(PIntMap)} is called.
+   *
+   * @param names The name interner
+   * @param unit  The declaration of the unit
+   * @param forms The forms that follow the unit declaration
+   *
+   * @return The symbol tables
+   */
+
+  static PUnitSymbols build(
+    final PNameInterner names,
+    final PDeclarationUnit<PParsed> unit,
+    final Vector<PExpressionOrDeclarationType<PParsed>> forms)
+  {
+    final PUnitSymbols s = new PUnitSymbols(names, unit, forms);
+    s.collectDeclarations();
+    s.collectExports();
+    return s;
+  }
+
+  static String importedName(
+    final PUnitDeclarationType.PDeclarationImportType<PParsed> i)
+  {
+    return i.packageName().value() + "." + i.unit().value();
+  }
+
+  String name()
+  {
+    return this.name;
+  }
+
+  PDeclarationUnit<PParsed> declaration()
+  {
+    return this.declaration;
+  }
+
+  Vector<PExpressionOrDeclarationType<PParsed>> forms()
+  {
+    return this.forms;
+  }
+
+  ArrayList<PResolveError> errors()
+  {
+    return this.errors;
+  }
+
+  PIntMap<PBinding> terms()
+  {
+    return this.terms;
+  }
+
+  PIntMap<PBinding> types()
+  {
+    return this.types;
+  }
+
+  PIntMap<PBinding> constructors()
+  {
+    return this.constructors;
+  }
+
+  PIntMap<PBinding> exportedTerms()
+  {
+    return this.exported_terms;
+  }
+
+  PIntMap<PBinding> exportedTypes()
+  {
+    return this.exported_types;
+  }
+
+  PIntMap<PBinding> exportedConstructors()
+  {
+    return this.exported_constructors;
+  }
+
+  PIntMap<PUnitSymbols> imports()
+  {
+    return this.imports;
+  }
+
+  void error(
+    final LexicalPosition<URI> lexical,
+    final PResolveErrorCode code,
+    final String message)
+  {
+    this.errors.add(PResolveError.of(lexical, code, message));
+  }
+
+  private void collectDeclarations()
+  {
+    for (final PExpressionOrDeclarationType<PParsed> form : this.forms) {
+      if (form.expressionOrDeclarationKind()
+        != PExpressionOrDeclarationType.PExpressionOrDeclarationKind.DECLARATION) {
+        continue;
+      }
+
+      final PDeclarationType<PParsed> d = (PDeclarationType<PParsed>) form;
+      switch (d.anyDeclarationKind()) {
+        case TERM_DECLARATION:
+          this.collectTerm((PTermDeclarationType<PParsed>) d);
+          break;
+        case TYPE_DECLARATION:
+          this.collectType((PTypeDeclarationType<PParsed>) d);
+          break;
+        case UNIT_DECLARATION:
+          this.collectUnitDeclaration((PUnitDeclarationType<PParsed>) d);
+          break;
+      }
+    }
+  }
+
+  private void collectUnitDeclaration(
+    final PUnitDeclarationType<PParsed> d)
+  {
+    switch (d.unitDeclarationKind()) {
+      case UNIT_DECLARATION:
+        this.error(
+          d.lexical(),
+          PResolveErrorCode.UNIT_UNEXPECTED_DECLARATION,
+          "A unit declaration may only appear at the start of a unit");
+        break;
+      case IMPORT_DECLARATION:
+        this.import_declarations.add((PDeclarationImport<PParsed>) d);
+        break;
+      case EXPORT_TERMS_DECLARATION:
+      case EXPORT_TYPES_DECLARATION:
+        break;
+    }
+  }
+
+  private void collectTerm(
+    final PTermDeclarationType<PParsed> d)
+  {
+    switch (d.termDeclarationKind()) {
+      case VALUE_DECLARATION: {
+        final PDeclarationValue<PParsed> v =
+          (PDeclarationValue<PParsed>) d;
+        this.declareTerm(v.name());
+        break;
+      }
+      case FUNCTION_DECLARATION: {
+        final PDeclarationFunction<PParsed> f =
+          (PDeclarationFunction<PParsed>) d;
+        this.declareTerm(f.name());
+        break;
+      }
+      case SIGNATURE_DECLARATION:
+        break;
+    }
+  }
+
+  private void declareTerm(
+    final PTermVariableNameType<PParsed> term)
+  {
+    final PBinding b =
+      PBinding.of(PBinding.Kind.TERM_UNIT, this.name, term.data().id());
+    if (this.terms.put(this.names.intern(term.value()), b) != null) {
+      this.error(
+        term.lexical(),
+        PResolveErrorCode.TERM_DUPLICATE,
+        "Term already declared: " + term.value());
+    }
+  }
+
+  private void collectType(
+    final PTypeDeclarationType<PParsed> d)
+  {
+    switch (d.typeDeclarationKind()) {
+      case RECORD_DECLARATION: {
+        final PDeclarationRecord<PParsed> r =
+          (PDeclarationRecord<PParsed>) d;
+        this.declareType(r.name());
+        break;
+      }
+      case VARIANT_DECLARATION: {
+        final PDeclarationVariant<PParsed> v =
+          (PDeclarationVariant<PParsed>) d;
+        this.declareType(v.name());
+        this.variants.put(this.names.intern(v.name().value()), v);
+        for (final PTypeDeclarationType.PVariantCaseType<PParsed> c : v.cases()) {
+          this.declareConstructor(c);
+        }
+        break;
+      }
+    }
+  }
+
+  private void declareType(
+    final PTypeConstructorNameType<PParsed> type)
+  {
+    final PBinding b =
+      PBinding.of(PBinding.Kind.TYPE_UNIT, this.name, type.data().id());
+    if (this.types.put(this.names.intern(type.value()), b) != null) {
+      this.error(
+        type.lexical(),
+        PResolveErrorCode.TYPE_DUPLICATE,
+        "Type already declared: " + type.value());
+    }
+  }
+
+  private void declareConstructor(
+    final PTypeDeclarationType.PVariantCaseType<PParsed> c)
+  {
+    final PBinding b = PBinding.of(
+      PBinding.Kind.TERM_CONSTRUCTOR, this.name, c.name().data().id());
+    if (this.constructors.put(this.names.intern(c.name().value()), b) != null) {
+      this.error(
+        c.name().lexical(),
+        PResolveErrorCode.CONSTRUCTOR_DUPLICATE,
+        "Constructor already declared: " + c.name().value());
+    }
+  }
+
+  private void collectExports()
+  {
+    for (final PExpressionOrDeclarationType<PParsed> form : this.forms) {
+      if (form instanceof PDeclarationExportTerms) {
+        this.collectExportTerms((PDeclarationExportTerms<PParsed>) form);
+      } else if (form instanceof PDeclarationExportTypes) {
+        this.collectExportTypes((PDeclarationExportTypes<PParsed>) form);
+      }
+    }
+  }
+
+  private void collectExportTerms(
+    final PDeclarationExportTerms<PParsed> e)
+  {
+    for (final PTermNameType<PParsed> term : e.terms()) {
+      switch (term.termNameKind()) {
+        case TERM_NAME_VARIABLE: {
+          this.exportTerm(
+            (PTermVariableNameType<PParsed>) term,
+            this.terms,
+            this.exported_terms);
+          break;
+        }
+        case TERM_NAME_CONSTRUCTOR: {
+          this.exportTerm(
+            (PTermConstructorNameType<PParsed>) term,
+            this.constructors,
+            this.exported_constructors);
+          break;
+        }
+      }
+    }
+  }
+
+  private void exportTerm(
+    final PTermNameType<PParsed> term,
+    final PIntMap<PBinding> declared,
+    final PIntMap<PBinding> exported)
+  {
+    final String text = termName(term);
+    final int key = this.names.intern(text);
+    final PBinding b = declared.get(key);
+    if (b == null) {
+      this.error(
+        term.lexical(),
+        PResolveErrorCode.EXPORT_TERM_NOT_FOUND,
+        "Exported term is not declared: " + text);
+    } else {
+      exported.put(key, b);
+    }
+  }
+
+  private static String termName(
+    final PTermNameType<PParsed> term)
+  {
+    switch (term.termNameKind()) {
+      case TERM_NAME_VARIABLE:
+        return ((PTermVariableNameType<PParsed>) term).value();
+      case TERM_NAME_CONSTRUCTOR:
+        return ((PTermConstructorNameType<PParsed>) term).value();
+    }
+    throw new UnreachableCodeException();
+  }
+
+  private void collectExportTypes(
+    final PDeclarationExportTypes<PParsed> e)
+  {
+    for (final PTypeConstructorNameType<PParsed> type : e.types()) {
+      final int key = this.names.intern(type.value());
+      final PBinding b = this.types.get(key);
+      if (b == null) {
+        this.error(
+          type.lexical(),
+          PResolveErrorCode.EXPORT_TYPE_NOT_FOUND,
+          "Exported type is not declared: " + type.value());
+        continue;
+      }
+
+      this.exported_types.put(key, b);
+      final PDeclarationVariant<PParsed> v = this.variants.get(key);
+      if (v != null) {
+        for (final PTypeDeclarationType.PVariantCaseType<PParsed> c : v.cases()) {
+          final int c_key = this.names.intern(c.name().value());
+          this.exported_constructors.put(c_key, this.constructors.get(c_key));
+        }
+      }
+    }
+  }
+
+  /**
+   * Link the imports of this unit against the given units.
+   *
+   * @param units The units by interned fully qualified name
+   */
+
+  void link(
+    final PIntMap<PUnitSymbols> units)
+  {
+    for (final PDeclarationImport<PParsed> i : this.import_declarations) {
+      final String target_name = importedName(i);
+      final PUnitSymbols target = units.get(this.names.intern(target_name));
+      if (target == null) {
+        this.error(
+          i.lexical(),
+          PResolveErrorCode.IMPORT_UNIT_NOT_FOUND,
+          "Imported unit does not exist: " + target_name);
+        continue;
+      }
+
+      final String local_name =
+        i.unitQualifier().map(q -> q.value()).orElse(i.unit().value());
+      if (this.imports.put(this.names.intern(local_name), target) != null) {
+        this.error(
+          i.lexical(),
+          PResolveErrorCode.IMPORT_DUPLICATE,
+          "Unit name is already used by another import: " + local_name);
+      }
+    }
+  }
+}
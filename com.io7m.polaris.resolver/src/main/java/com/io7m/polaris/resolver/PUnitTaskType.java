@@ -0,0 +1,47 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.resolver;
+
+import io.vavr.collection.Vector;
+
+/**
+ * A task executed for a single unit.
+ *
+ * @param <T> The type of results
+ */
+
+@FunctionalInterface
+public interface PUnitTaskType<T>
+{
+  /**
+   * Execute the task for the given unit.
+   *
+   * @param unit         The unit index
+   * @param dependencies The results of the tasks for the dependencies of the
+   *                     unit, in the order given by
+   *                     {@link PUnitGraph#dependencies(int)}
+   *
+   * @return A result
+   *
+   * @throws Exception On errors
+   */
+
+  T execute(
+    int unit,
+    Vector<T> dependencies)
+    throws Exception;
+}
@@ -16,18 +16,143 @@
 
 package com.io7m.polaris.tests;
 
+import com.io7m.jlexing.core.LexicalPosition;
+import com.io7m.jsx.lexer.JSXLexerSupplier;
+import com.io7m.jsx.parser.JSXParserSupplier;
+import com.io7m.polaris.ast.PExprReference;
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.ast.PExpressionType;
+import com.io7m.polaris.ast.PTermReferenceVariable;
+import com.io7m.polaris.ast.PTermVariableName;
+import com.io7m.polaris.ast.PTypeConstructorName;
+import com.io7m.polaris.ast.PTypeExprReference;
+import com.io7m.polaris.ast.PTypeExpressionType;
+import com.io7m.polaris.ast.PTypeReferenceConstructor;
+import com.io7m.polaris.interpreter.PVariantValue;
+import com.io7m.polaris.parser.PParsers;
 import com.io7m.polaris.parser.api.PParseError;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.parser.api.PParserType;
+import com.io7m.polaris.resolver.PResolveError;
+import com.io7m.polaris.resolver.PResolveErrorCode;
+import com.io7m.polaris.resolver.PResolvedUnit;
+import com.io7m.polaris.resolver.PResolver;
 import io.vavr.collection.Seq;
+import io.vavr.collection.Vector;
 import io.vavr.control.Validation;
+import org.junit.jupiter.api.Assertions;
 import org.slf4j.Logger;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
 public final class PTestUtilities
 {
+  private static final LexicalPosition<URI> LEXICAL =
+    LexicalPosition.of(1, 0, Optional.empty());
+
+  private static final ExecutorService EXECUTOR =
+    Executors.newFixedThreadPool(4, r -> {
+      final Thread thread = new Thread(r, "polaris-tests");
+      thread.setDaemon(true);
+      return thread;
+    });
+
   private PTestUtilities()
   {
 
   }
 
+  public static ExecutorService executor()
+  {
+    return EXECUTOR;
+  }
+
+  public static PExpressionType<Integer> reference(
+    final String name)
+  {
+    return PExprReference.of(
+      Integer.valueOf(0),
+      PTermReferenceVariable.of(
+        Integer.valueOf(0),
+        Optional.empty(),
+        PTermVariableName.of(LEXICAL, Integer.valueOf(0), name),
+        Vector.empty()));
+  }
+
+  public static PTypeExpressionType<Integer> typeReference(
+    final String name)
+  {
+    return PTypeExprReference.of(
+      Integer.valueOf(0),
+      PTypeReferenceConstructor.of(
+        Integer.valueOf(0),
+        Optional.empty(),
+        PTypeConstructorName.of(LEXICAL, Integer.valueOf(0), name)));
+  }
+
+  public static Vector<PExpressionOrDeclarationType<PParsed>> parse(
+    final String text)
+  {
+    final PParserType p =
+      PParsers.createWith(new JSXParserSupplier(), new JSXLexerSupplier())
+        .create(
+          URI.create("urn:test"),
+          new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+
+    Vector<PExpressionOrDeclarationType<PParsed>> forms = Vector.empty();
+    while (true) {
+      final Validation<Seq<PParseError>, Optional<PExpressionOrDeclarationType<PParsed>>> r;
+      try {
+        r = p.parseExpressionOrDeclaration();
+      } catch (final IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      Assertions.assertTrue(r.isValid(), () -> r.getError().toString());
+      if (!r.get().isPresent()) {
+        return forms;
+      }
+      forms = forms.append(r.get().get());
+    }
+  }
+
+  public static Vector<PResolvedUnit> resolveAll(
+    final String... units)
+  {
+    final Validation<?, Vector<PResolvedUnit>> r =
+      PResolver.resolve(EXECUTOR, Vector.of(units).map(PTestUtilities::parse));
+    Assertions.assertTrue(r.isValid(), () -> r.getError().toString());
+    return r.get();
+  }
+
+  public static <T> Vector<PResolveErrorCode> codes(
+    final Validation<Seq<PResolveError>, T> r)
+  {
+    Assertions.assertTrue(r.isInvalid());
+    return Vector.ofAll(r.getError()).map(PResolveError::code);
+  }
+
+  public static int natValue(
+    final Object value)
+  {
+    int count = 0;
+    PVariantValue current = (PVariantValue) value;
+    while (current.payload() != null) {
+      current = (PVariantValue) current.payload();
+      ++count;
+    }
+    Assertions.assertEquals("Z", current.constructor().name());
+    return count;
+  }
+
   public static <T> void dump(
     final Logger log,
     final Validation<Seq<PParseError>, T> r)
@@ -38,4 +163,42 @@ public final class PTestUtilities
       r.getError().forEach(e -> log.error("invalid: {}", e));
     }
   }
+
+  public static <T> T withSmallStack(
+    final Supplier<T> f)
+    throws Exception
+  {
+    return withStack(256L * 1024L, f);
+  }
+
+  public static <T> T withLargeStack(
+    final Supplier<T> f)
+    throws Exception
+  {
+    return withStack(256L * 1024L * 1024L, f);
+  }
+
+  private static <T> T withStack(
+    final long size,
+    final Supplier<T> f)
+    throws Exception
+  {
+    final AtomicReference<T> result = new AtomicReference<>();
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+    final Thread thread = new Thread(null, () -> {
+      try {
+        result.set(f.get());
+      } catch (final Throwable e) {
+        error.set(e);
+      }
+    }, "stack-" + size, size);
+
+    thread.start();
+    thread.join();
+
+    if (error.get() != null) {
+      throw new AssertionError(error.get());
+    }
+    return result.get();
+  }
 }
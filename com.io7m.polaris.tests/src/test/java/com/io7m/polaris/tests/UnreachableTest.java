@@ -17,11 +17,23 @@
 package com.io7m.polaris.tests;
 
 import com.io7m.junreachable.UnreachableCodeException;
+import com.io7m.polaris.ast.PExpressions;
+import com.io7m.polaris.ast.PExpressionsParallel;
 import com.io7m.polaris.ast.PPackageNames;
 import com.io7m.polaris.ast.PTermConstructorNames;
 import com.io7m.polaris.ast.PTermVariableNames;
 import com.io7m.polaris.ast.PTypeConstructorNames;
+import com.io7m.polaris.ast.PTypeExpressions;
 import com.io7m.polaris.ast.PUnitNames;
+import com.io7m.polaris.ast.internal.PTrustedConstruction;
+import com.io7m.polaris.compiler.PConstantFolder;
+import com.io7m.polaris.compiler.PDeadDeclarationEliminator;
+import com.io7m.polaris.compiler.PMatchCompiler;
+import com.io7m.polaris.compiler.PMatchCoverageChecker;
+import com.io7m.polaris.lsp.PLSPDocuments;
+import com.io7m.polaris.lsp.PLSPMain;
+import com.io7m.polaris.lsp.PLSPSymbols;
+import com.io7m.polaris.parser.PPrettyPrinter;
 import com.io7m.polaris.parser.implementation.PParsing;
 import com.io7m.polaris.parser.implementation.PParsingFunctions;
 import com.io7m.polaris.parser.implementation.PParsingIntegers;
@@ -35,6 +47,12 @@ import com.io7m.polaris.parser.implementation.PParsingValues;
 import com.io7m.polaris.parser.implementation.PParsingVariants;
 import com.io7m.polaris.parser.implementation.PValidation;
 import com.io7m.polaris.parser.implementation.PVectors;
+import com.io7m.polaris.resolver.PBuiltinTypes;
+import com.io7m.polaris.resolver.PResolver;
+import com.io7m.polaris.resolver.PUnitHeaders;
+import com.io7m.polaris.resolver.PUnitScheduler;
+import com.io7m.polaris.typechecker.PKindChecker;
+import com.io7m.polaris.typechecker.PTypeChecker;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.function.Executable;
@@ -81,7 +99,25 @@ public final class UnreachableTest
         PTypeConstructorNames.class,
         PTermConstructorNames.class,
         PTermVariableNames.class,
-        PUnitNames.class)
+        PUnitNames.class,
+        PExpressions.class,
+        PExpressionsParallel.class,
+        PTypeExpressions.class,
+        PTrustedConstruction.class,
+        PResolver.class,
+        PUnitHeaders.class,
+        PUnitScheduler.class,
+        PBuiltinTypes.class,
+        PTypeChecker.class,
+        PKindChecker.class,
+        PMatchCompiler.class,
+        PMatchCoverageChecker.class,
+        PConstantFolder.class,
+        PDeadDeclarationEliminator.class,
+        PLSPDocuments.class,
+        PLSPMain.class,
+        PLSPSymbols.class,
+        PPrettyPrinter.class)
         .stream()
         .map(c -> (Executable) () -> checkUnreachable(c)));
   }
@@ -0,0 +1,163 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.tests.ast;
+
+import com.io7m.jlexing.core.LexicalPosition;
+import com.io7m.polaris.ast.PExprApplication;
+import com.io7m.polaris.ast.PExprConstantInteger;
+import com.io7m.polaris.ast.PExprLocal;
+import com.io7m.polaris.ast.PExpressionType;
+import com.io7m.polaris.ast.PExpressions;
+import com.io7m.polaris.ast.PExpressionsParallel;
+import io.vavr.collection.Vector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.net.URI;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.io7m.polaris.tests.PTestUtilities.reference;
+
+public final class PExpressionsParallelTest
+{
+  private static final LexicalPosition<URI> LEXICAL =
+    LexicalPosition.of(1, 0, Optional.empty());
+
+  private ForkJoinPool pool;
+  private int next;
+
+  private PExpressionType<Integer> integer()
+  {
+    final int x = this.next;
+    ++this.next;
+    return PExprConstantInteger.of(
+      LEXICAL, Integer.valueOf(0), 10, BigInteger.valueOf((long) x));
+  }
+
+  /**
+   * Build a tree that mixes applications with several large arguments,
+   * locals, and long single-child chains.
+   */
+
+  private PExpressionType<Integer> tree(
+    final int depth)
+  {
+    if (depth == 0) {
+      return this.integer();
+    }
+
+    if (depth % 3 == 0) {
+      return PExprLocal.of(
+        LEXICAL,
+        Integer.valueOf(0),
+        Vector.of(this.tree(depth - 1), this.integer()),
+        this.tree(depth - 1));
+    }
+
+    return PExprApplication.of(
+      Integer.valueOf(0),
+      reference("f"),
+      Vector.of(this.tree(depth - 1), this.integer(), this.tree(depth - 1)));
+  }
+
+  private static Vector<Integer> leaf(
+    final PExpressionType<Integer> e)
+  {
+    if (e instanceof PExprConstantInteger) {
+      return Vector.of(
+        Integer.valueOf(((PExprConstantInteger<Integer>) e).value().intValue()));
+    }
+    return Vector.empty();
+  }
+
+  @BeforeEach
+  public void setup()
+  {
+    this.pool = new ForkJoinPool(4);
+    this.next = 0;
+  }
+
+  @AfterEach
+  public void tearDown()
+  {
+    this.pool.shutdown();
+  }
+
+  @Test
+  public void testOrderMatchesSequential()
+  {
+    final PExpressionType<Integer> e = this.tree(11);
+
+    final Vector<Integer> expected =
+      PExpressions.fold(e, Vector.empty(), (acc, x) -> acc.appendAll(leaf(x)));
+
+    for (final int cutoff : new int[]{1, 2, 16, 256, 1_000_000}) {
+      final Vector<Integer> received =
+        PExpressionsParallel.foldParallel(
+          this.pool,
+          e,
+          Vector.empty(),
+          PExpressionsParallelTest::leaf,
+          Vector::appendAll,
+          cutoff);
+      Assertions.assertEquals(expected, received, "Cutoff " + cutoff);
+    }
+  }
+
+  @Test
+  public void testCount()
+  {
+    final PExpressionType<Integer> e = this.tree(12);
+
+    final Integer expected =
+      PExpressions.fold(e, Integer.valueOf(0), (acc, x) -> Integer.valueOf(acc.intValue() + 1));
+    final Integer received =
+      PExpressionsParallel.foldParallel(
+        this.pool,
+        e,
+        Integer.valueOf(0),
+        x -> Integer.valueOf(1),
+        (x, y) -> Integer.valueOf(x.intValue() + y.intValue()),
+        64);
+
+    Assertions.assertEquals(expected, received);
+  }
+
+  @Test
+  public void testDeepChain()
+  {
+    PExpressionType<Integer> e = this.integer();
+    for (int index = 0; index < 100_000; ++index) {
+      e = PExprApplication.of(Integer.valueOf(0), reference("f"), Vector.of(e));
+    }
+
+    final Integer received =
+      PExpressionsParallel.foldParallel(
+        this.pool,
+        e,
+        Integer.valueOf(0),
+        x -> Integer.valueOf(1),
+        (x, y) -> Integer.valueOf(x.intValue() + y.intValue()),
+        16);
+
+    Assertions.assertEquals(200_001, received.intValue());
+  }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.tests.ast;
+
+import com.io7m.jlexing.core.LexicalPosition;
+import com.io7m.polaris.ast.PDeclarationSignature;
+import com.io7m.polaris.ast.PDeclarationValue;
+import com.io7m.polaris.ast.PExprApplication;
+import com.io7m.polaris.ast.PExprConstantInteger;
+import com.io7m.polaris.ast.PExprLocal;
+import com.io7m.polaris.ast.PExpressionMatcherType;
+import com.io7m.polaris.ast.PExpressionType;
+import com.io7m.polaris.ast.PExpressions;
+import com.io7m.polaris.ast.PTermVariableName;
+import com.io7m.polaris.ast.PTypeConstructorName;
+import com.io7m.polaris.ast.PTypeExprReference;
+import com.io7m.polaris.ast.PTypeReferenceConstructor;
+import io.vavr.collection.Vector;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.net.URI;
+import java.util.Optional;
+
+import static com.io7m.polaris.ast.PExpressionType.PTermExpressionKind.EXPR_APPLICATION;
+import static com.io7m.polaris.ast.PExpressionType.PTermExpressionKind.EXPR_CONSTANT_INTEGER;
+import static com.io7m.polaris.ast.PExpressionType.PTermExpressionKind.EXPR_LOCAL;
+import static com.io7m.polaris.ast.PExpressionType.PTermExpressionKind.EXPR_REFERENCE;
+import static com.io7m.polaris.tests.PTestUtilities.reference;
+import static com.io7m.polaris.tests.PTestUtilities.withSmallStack;
+
+public final class PExpressionsTest
+{
+  private static final LexicalPosition<URI> LEXICAL =
+    LexicalPosition.of(1, 0, Optional.empty());
+
+  private static PExpressionType<Integer> integer(
+    final int x)
+  {
+    return PExprConstantInteger.of(
+      LEXICAL, Integer.valueOf(0), 10, BigInteger.valueOf((long) x));
+  }
+
+  private static PExpressionType<Integer> apply(
+    final PExpressionType<Integer> f,
+    final PExpressionType<Integer>... args)
+  {
+    return PExprApplication.of(Integer.valueOf(0), f, Vector.of(args));
+  }
+
+  private static PExpressionType<Integer> increment(
+    final PExpressionType<Integer> e)
+  {
+    if (e instanceof PExprConstantInteger) {
+      final PExprConstantInteger<Integer> i = (PExprConstantInteger<Integer>) e;
+      return i.withValue(i.value().add(BigInteger.ONE));
+    }
+    return e;
+  }
+
+  @Test
+  public void testFoldOrder()
+  {
+    final PExpressionType<Integer> e =
+      apply(reference("f"), apply(reference("g"), integer(1)), integer(2));
+
+    final Vector<PExpressionType.PTermExpressionKind> kinds =
+      PExpressions.fold(
+        e, Vector.empty(), (acc, x) -> acc.append(x.termExpressionKind()));
+
+    Assertions.assertEquals(
+      Vector.of(
+        EXPR_APPLICATION,
+        EXPR_REFERENCE,
+        EXPR_APPLICATION,
+        EXPR_REFERENCE,
+        EXPR_CONSTANT_INTEGER,
+        EXPR_CONSTANT_INTEGER),
+      kinds);
+  }
+
+  @Test
+  public void testFoldLocal()
+  {
+    final PExprLocal<Integer> e =
+      PExprLocal.of(
+        LEXICAL,
+        Integer.valueOf(0),
+        Vector.of(
+          PDeclarationSignature.of(
+            LEXICAL,
+            Integer.valueOf(0),
+            PTermVariableName.of(LEXICAL, Integer.valueOf(0), "x"),
+            PTypeExprReference.of(
+              Integer.valueOf(0),
+              PTypeReferenceConstructor.of(
+                Integer.valueOf(0),
+                Optional.empty(),
+                PTypeConstructorName.of(LEXICAL, Integer.valueOf(0), "T")))),
+          PDeclarationValue.of(
+            LEXICAL,
+            Integer.valueOf(0),
+            PTermVariableName.of(LEXICAL, Integer.valueOf(0), "x"),
+            integer(1)),
+          integer(2)),
+        reference("x"));
+
+    final Vector<PExpressionType.PTermExpressionKind> kinds =
+      PExpressions.fold(
+        e, Vector.empty(), (acc, x) -> acc.append(x.termExpressionKind()));
+
+    Assertions.assertEquals(
+      Vector.of(
+        EXPR_LOCAL,
+        EXPR_CONSTANT_INTEGER,
+        EXPR_CONSTANT_INTEGER,
+        EXPR_REFERENCE),
+      kinds);
+
+    final PExprLocal<Integer> r =
+      (PExprLocal<Integer>) PExpressions.transform(e, PExpressionsTest::increment);
+
+    Assertions.assertSame(e.locals().get(0), r.locals().get(0));
+
+    final PDeclarationValue<Integer> value =
+      (PDeclarationValue<Integer>) r.locals().get(1);
+    Assertions.assertEquals(
+      BigInteger.valueOf(2L),
+      ((PExprConstantInteger<Integer>) value.expression()).value());
+    Assertions.assertEquals(
+      BigInteger.valueOf(3L),
+      ((PExprConstantInteger<Integer>) r.locals().get(2)).value());
+    Assertions.assertSame(e.body(), r.body());
+  }
+
+  @Test
+  public void testTransformIdentity()
+  {
+    final PExpressionType<Integer> e =
+      apply(reference("f"), apply(reference("g"), integer(1)), integer(2));
+
+    Assertions.assertSame(e, PExpressions.transform(e, x -> x));
+  }
+
+  @Test
+  public void testTransformSharing()
+  {
+    final PExpressionType<Integer> unchanged =
+      apply(reference("g"), reference("y"));
+    final PExprApplication<Integer> e =
+      (PExprApplication<Integer>) apply(reference("f"), unchanged, integer(2));
+
+    final PExprApplication<Integer> r =
+      (PExprApplication<Integer>) PExpressions.transform(
+        e, PExpressionsTest::increment);
+
+    Assertions.assertNotSame(e, r);
+    Assertions.assertSame(e.function(), r.function());
+    Assertions.assertSame(unchanged, r.arguments().get(0));
+    Assertions.assertEquals(
+      BigInteger.valueOf(3L),
+      ((PExprConstantInteger<Integer>) r.arguments().get(1)).value());
+  }
+
+  @Test
+  public void testDeep()
+    throws Exception
+  {
+    PExpressionType<Integer> e = integer(0);
+    for (int index = 0; index < 100_000; ++index) {
+      e = apply(reference("f"), e);
+    }
+
+    final PExpressionType<Integer> e_final = e;
+    final Integer count =
+      withSmallStack(() -> PExpressions.fold(
+        e_final, Integer.valueOf(0), (acc, x) -> Integer.valueOf(acc.intValue() + 1)));
+
+    Assertions.assertEquals(200_001, count.intValue());
+
+    final PExpressionType<Integer> r =
+      withSmallStack(() -> PExpressions.transform(
+        e_final, PExpressionsTest::increment));
+
+    PExpressionType<Integer> current = r;
+    while (current instanceof PExprApplication) {
+      current = ((PExprApplication<Integer>) current).arguments().get(0);
+    }
+
+    Assertions.assertEquals(
+      BigInteger.ONE,
+      ((PExprConstantInteger<Integer>) current).value());
+  }
+
+  @Test
+  public void testMatch()
+  {
+    final PExpressionMatcherType<Integer, String, RuntimeException> m =
+      new NameMatcher();
+
+    Assertions.assertEquals("application", apply(reference("f")).matchExpression(m));
+    Assertions.assertEquals("reference", reference("f").matchExpression(m));
+    Assertions.assertEquals("constantInteger", integer(23).matchExpression(m));
+  }
+
+  private static final class NameMatcher
+    implements PExpressionMatcherType<Integer, String, RuntimeException>
+  {
+    NameMatcher()
+    {
+
+    }
+
+    @Override
+    public String constantInteger(
+      final PExpressionType.PExprConstantIntegerType<Integer> e)
+    {
+      return "constantInteger";
+    }
+
+    @Override
+    public String constantReal(
+      final PExpressionType.PExprConstantRealType<Integer> e)
+    {
+      return "constantReal";
+    }
+
+    @Override
+    public String constantString(
+      final PExpressionType.PExprConstantStringType<Integer> e)
+    {
+      return "constantString";
+    }
+
+    @Override
+    public String application(
+      final PExpressionType.PExprApplicationType<Integer> e)
+    {
+      return "application";
+    }
+
+    @Override
+    public String lambda(
+      final PExpressionType.PExprLambdaType<Integer> e)
+    {
+      return "lambda";
+    }
+
+    @Override
+    public String reference(
+      final PExpressionType.PExprReferenceType<Integer> e)
+    {
+      return "reference";
+    }
+
+    @Override
+    public String local(
+      final PExpressionType.PExprLocalType<Integer> e)
+    {
+      return "local";
+    }
+
+    @Override
+    public String match(
+      final PExpressionType.PExprMatchType<Integer> e)
+    {
+      return "match";
+    }
+
+    @Override
+    public String record(
+      final PExpressionType.PExprRecordType<Integer> e)
+    {
+      return "record";
+    }
+
+    @Override
+    public String recordUpdate(
+      final PExpressionType.PExprRecordUpdateType<Integer> e)
+    {
+      return "recordUpdate";
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.tests.ast;
+
+import com.io7m.jaffirm.core.PreconditionViolationException;
+import com.io7m.polaris.ast.PNodeFlags;
+import com.io7m.polaris.ast.PNodeTable;
+import com.io7m.polaris.ast.PNodeTableInt;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+public final class PNodeTablesTest
+{
+  @Test
+  public void testTable()
+  {
+    final PNodeTable<String> t = PNodeTable.create(0);
+    Assertions.assertEquals(Optional.empty(), t.get(0));
+    Assertions.assertFalse(t.contains(1000));
+
+    t.put(0, "a");
+    t.put(1000, "b");
+    Assertions.assertEquals(Optional.of("a"), t.get(0));
+    Assertions.assertEquals(Optional.of("b"), t.get(1000));
+    Assertions.assertEquals(Optional.empty(), t.get(999));
+    Assertions.assertEquals(Optional.empty(), t.get(-1));
+
+    t.remove(0);
+    Assertions.assertFalse(t.contains(0));
+    Assertions.assertTrue(t.contains(1000));
+
+    Assertions.assertThrows(
+      PreconditionViolationException.class, () -> t.put(-1, "c"));
+  }
+
+  @Test
+  public void testTableInt()
+  {
+    final PNodeTableInt t = PNodeTableInt.create(4, -1);
+    Assertions.assertEquals(-1, t.defaultValue());
+    Assertions.assertEquals(-1, t.get(0));
+    Assertions.assertEquals(-1, t.get(100));
+
+    t.put(2, 23);
+    t.put(100, 47);
+    Assertions.assertEquals(23, t.get(2));
+    Assertions.assertEquals(47, t.get(100));
+    Assertions.assertEquals(-1, t.get(50));
+    Assertions.assertEquals(-1, t.get(99));
+
+    Assertions.assertThrows(
+      PreconditionViolationException.class, () -> t.put(-1, 0));
+  }
+
+  @Test
+  public void testFlags()
+  {
+    final PNodeFlags f = PNodeFlags.create(10);
+    Assertions.assertFalse(f.isSet(0));
+    Assertions.assertFalse(f.isSet(1000));
+
+    f.set(0);
+    f.set(63);
+    f.set(64);
+    f.set(1000);
+    Assertions.assertTrue(f.isSet(0));
+    Assertions.assertTrue(f.isSet(63));
+    Assertions.assertTrue(f.isSet(64));
+    Assertions.assertTrue(f.isSet(1000));
+    Assertions.assertFalse(f.isSet(1));
+    Assertions.assertFalse(f.isSet(-1));
+    Assertions.assertEquals(4, f.cardinality());
+
+    f.clear(63);
+    Assertions.assertFalse(f.isSet(63));
+    Assertions.assertEquals(3, f.cardinality());
+  }
+}
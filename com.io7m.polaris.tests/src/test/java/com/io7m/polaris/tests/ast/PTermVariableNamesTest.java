@@ -23,8 +23,10 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.net.URI;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Random;
 
 import static java.lang.Boolean.TRUE;
 
@@ -45,7 +47,11 @@ public final class PTermVariableNamesTest
         "XA",
         "X-3",
         "x_3",
-        "X_3")
+        "X_3",
+        "x0",
+        "λ",
+        "\uD835\uDD69",
+        String.join("", Collections.nCopies(128, "x")))
         .stream()
         .map(name -> () -> Assertions.assertTrue(
           PTermVariableNames.isValid(name),
@@ -66,13 +72,35 @@ public final class PTermVariableNamesTest
         "<",
         ">",
         ".",
-        ":")
+        ":",
+        "a.b",
+        "a:b",
+        String.join("", Collections.nCopies(129, "x")))
         .stream()
         .map(name -> () -> Assertions.assertFalse(
           PTermVariableNames.isValid(name),
           name)));
   }
 
+  @Test
+  public void testMatchesPattern()
+  {
+    final Random random = new Random(0L);
+    final String alphabet = "09az._;[/<>:-\u03bb\uD835\uDD69";
+    for (int index = 0; index < 10_000; ++index) {
+      final StringBuilder sb = new StringBuilder(8);
+      final int length = random.nextInt(6);
+      for (int c = 0; c < length; ++c) {
+        sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      final String name = sb.toString();
+      Assertions.assertEquals(
+        Boolean.valueOf(PTermVariableNames.PATTERN.matcher(name).matches()),
+        Boolean.valueOf(PTermVariableNames.isValid(name)),
+        name);
+    }
+  }
+
   @Test
   public void testLexical()
   {
@@ -0,0 +1,133 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.tests.ast;
+
+import com.io7m.jaffirm.core.PreconditionViolationException;
+import com.io7m.jlexing.core.LexicalPosition;
+import com.io7m.polaris.ast.PDeclarationVariant;
+import com.io7m.polaris.ast.PExprLambda;
+import com.io7m.polaris.ast.PTermConstructorName;
+import com.io7m.polaris.ast.PTermVariableName;
+import com.io7m.polaris.ast.PTypeConstructorName;
+import com.io7m.polaris.ast.PVariantCase;
+import com.io7m.polaris.ast.internal.PTrustedConstruction;
+import io.vavr.collection.Vector;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.Optional;
+
+import static com.io7m.polaris.tests.PTestUtilities.reference;
+
+public final class PTrustedConstructionTest
+{
+  private static final LexicalPosition<URI> LEXICAL =
+    LexicalPosition.of(1, 0, Optional.empty());
+
+  private static PTermVariableName<Integer> name(
+    final String name)
+  {
+    return PTermVariableName.of(LEXICAL, Integer.valueOf(0), name);
+  }
+
+  private static PExprLambda<Integer> lambda(
+    final String... names)
+  {
+    return PExprLambda.of(
+      LEXICAL,
+      Integer.valueOf(0),
+      Vector.of(names).map(PTrustedConstructionTest::name),
+      reference("x"));
+  }
+
+  private static PVariantCase<Integer> variantCase(
+    final String name)
+  {
+    return PVariantCase.of(
+      LEXICAL,
+      Integer.valueOf(0),
+      PTermConstructorName.of(LEXICAL, Integer.valueOf(0), name),
+      Optional.empty());
+  }
+
+  private static PDeclarationVariant<Integer> variant(
+    final String... names)
+  {
+    return PDeclarationVariant.of(
+      LEXICAL,
+      Integer.valueOf(0),
+      PTypeConstructorName.of(LEXICAL, Integer.valueOf(0), "T"),
+      Vector.empty(),
+      Vector.of(names).map(PTrustedConstructionTest::variantCase));
+  }
+
+  @Test
+  public void testUntrustedChecked()
+  {
+    Assertions.assertFalse(PTrustedConstruction.isTrusted());
+    Assertions.assertThrows(
+      PreconditionViolationException.class, () -> lambda("x", "y", "x"));
+    Assertions.assertThrows(
+      PreconditionViolationException.class, () -> variant("A", "B", "A"));
+  }
+
+  @Test
+  public void testTrustedUnchecked()
+  {
+    final PExprLambda<Integer> e =
+      PTrustedConstruction.trusted(() -> lambda("x", "y", "x"));
+    Assertions.assertEquals(3, e.arguments().size());
+    Assertions.assertFalse(PTrustedConstruction.isTrusted());
+  }
+
+  @Test
+  public void testTrustedNested()
+  {
+    final Boolean inner =
+      PTrustedConstruction.trusted(() -> {
+        PTrustedConstruction.trusted(() -> lambda("x"));
+        return Boolean.valueOf(PTrustedConstruction.isTrusted());
+      });
+
+    Assertions.assertTrue(inner.booleanValue());
+    Assertions.assertFalse(PTrustedConstruction.isTrusted());
+  }
+
+  @Test
+  public void testTrustedExceptionRestores()
+  {
+    Assertions.assertThrows(IllegalStateException.class, () -> {
+      PTrustedConstruction.trusted(() -> {
+        throw new IllegalStateException();
+      });
+    });
+    Assertions.assertFalse(PTrustedConstruction.isTrusted());
+  }
+
+  @Test
+  public void testLazyMap()
+  {
+    final PDeclarationVariant<Integer> v =
+      PTrustedConstruction.trusted(() -> variant("A", "B", "C"));
+
+    Assertions.assertEquals(3, v.casesByName().size());
+    Assertions.assertSame(v.casesByName(), v.casesByName());
+    Assertions.assertEquals(
+      "B", v.casesByName().get("B").get().name().value());
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.tests.ast;
+
+import com.io7m.jlexing.core.LexicalPosition;
+import com.io7m.polaris.ast.PTypeExprApplication;
+import com.io7m.polaris.ast.PTypeExprArrow;
+import com.io7m.polaris.ast.PTypeExprReference;
+import com.io7m.polaris.ast.PTypeExpressionType;
+import com.io7m.polaris.ast.PTypeExpressions;
+import com.io7m.polaris.ast.PTypeReferenceConstructor;
+import com.io7m.polaris.ast.PTypeReferenceType;
+import io.vavr.collection.Vector;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.Optional;
+
+import static com.io7m.polaris.tests.PTestUtilities.typeReference;
+import static com.io7m.polaris.tests.PTestUtilities.withSmallStack;
+
+public final class PTypeExpressionsTest
+{
+  private static final LexicalPosition<URI> LEXICAL =
+    LexicalPosition.of(1, 0, Optional.empty());
+
+  private static PTypeExpressionType<Integer> arrow(
+    final PTypeExpressionType<Integer> p,
+    final PTypeExpressionType<Integer> r)
+  {
+    return PTypeExprArrow.of(LEXICAL, Integer.valueOf(0), Vector.of(p), false, r);
+  }
+
+  private static String name(
+    final PTypeExpressionType<Integer> e)
+  {
+    final PTypeReferenceType<Integer> ref = ((PTypeExprReference<Integer>) e).reference();
+    return ((PTypeReferenceConstructor<Integer>) ref).constructor().value();
+  }
+
+  private static PTypeExpressionType<Integer> rename(
+    final PTypeExpressionType<Integer> e)
+  {
+    if (e instanceof PTypeExprReference && "A".equals(name(e))) {
+      return typeReference("Z");
+    }
+    return e;
+  }
+
+  @Test
+  public void testFoldOrder()
+  {
+    final PTypeExpressionType<Integer> e =
+      arrow(
+        PTypeExprApplication.of(
+          Integer.valueOf(0), typeReference("L"), Vector.of(typeReference("A"))),
+        typeReference("B"));
+
+    final Vector<PTypeExpressionType.PTypeExpressionKind> kinds =
+      PTypeExpressions.fold(
+        e, Vector.empty(), (acc, x) -> acc.append(x.typeExpressionKind()));
+
+    Assertions.assertEquals(
+      Vector.of(
+        PTypeExpressionType.PTypeExpressionKind.TYPE_EXPR_ARROW,
+        PTypeExpressionType.PTypeExpressionKind.TYPE_EXPR_APPLICATION,
+        PTypeExpressionType.PTypeExpressionKind.TYPE_EXPR_REFERENCE,
+        PTypeExpressionType.PTypeExpressionKind.TYPE_EXPR_REFERENCE,
+        PTypeExpressionType.PTypeExpressionKind.TYPE_EXPR_REFERENCE),
+      kinds);
+  }
+
+  @Test
+  public void testTransform()
+  {
+    final PTypeExpressionType<Integer> b = typeReference("B");
+    final PTypeExprArrow<Integer> e =
+      (PTypeExprArrow<Integer>) arrow(
+        PTypeExprApplication.of(
+          Integer.valueOf(0), typeReference("L"), Vector.of(typeReference("A"))),
+        b);
+
+    final PTypeExprArrow<Integer> r =
+      (PTypeExprArrow<Integer>) PTypeExpressions.transform(
+        e, PTypeExpressionsTest::rename);
+
+    final PTypeExprApplication<Integer> app =
+      (PTypeExprApplication<Integer>) r.parameters().get(0);
+
+    Assertions.assertEquals("Z", name(app.arguments().get(0)));
+    Assertions.assertSame(b, r.returnType());
+    Assertions.assertSame(e, PTypeExpressions.transform(e, x -> x));
+  }
+
+  @Test
+  public void testDeep()
+    throws Exception
+  {
+    PTypeExpressionType<Integer> e = typeReference("A");
+    for (int index = 0; index < 100_000; ++index) {
+      e = arrow(e, typeReference("B"));
+    }
+
+    final PTypeExpressionType<Integer> e_final = e;
+    final Integer count =
+      withSmallStack(() -> PTypeExpressions.fold(
+        e_final, Integer.valueOf(0), (acc, x) -> Integer.valueOf(acc.intValue() + 1)));
+
+    Assertions.assertEquals(200_001, count.intValue());
+
+    final PTypeExpressionType<Integer> r =
+      withSmallStack(() -> PTypeExpressions.transform(
+        e_final, PTypeExpressionsTest::rename));
+
+    PTypeExpressionType<Integer> current = r;
+    while (current instanceof PTypeExprArrow) {
+      current = ((PTypeExprArrow<Integer>) current).parameters().get(0);
+    }
+
+    Assertions.assertEquals("Z", name(current));
+  }
+}
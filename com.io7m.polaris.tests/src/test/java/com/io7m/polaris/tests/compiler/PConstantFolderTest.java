@@ -0,0 +1,227 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.tests.compiler;
+
+import com.io7m.polaris.ast.PDeclarationFunction;
+import com.io7m.polaris.ast.PDeclarationValue;
+import com.io7m.polaris.ast.PExprConstantInteger;
+import com.io7m.polaris.ast.PExprConstantString;
+import com.io7m.polaris.ast.PExprLocal;
+import com.io7m.polaris.ast.PExprMatch;
+import com.io7m.polaris.ast.PExprReference;
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.ast.PExpressionType;
+import com.io7m.polaris.compiler.PConstantFolder;
+import com.io7m.polaris.compiler.PConstructorIndex;
+import com.io7m.polaris.interpreter.PFunctionType;
+import com.io7m.polaris.interpreter.PInteger;
+import com.io7m.polaris.interpreter.PInterpreter;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.resolver.PResolvedUnit;
+import io.vavr.collection.Vector;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.io7m.polaris.tests.PTestUtilities.resolveAll;
+
+public final class PConstantFolderTest
+{
+  private static final String OPTION =
+    "(define-variant Option [∀ a] [case None] [case Some a])";
+
+  private Vector<PResolvedUnit> resolve(
+    final String... lines)
+  {
+    return resolveAll("(define-unit a.A)\n" + String.join("\n", lines));
+  }
+
+  private PResolvedUnit fold(
+    final String... lines)
+  {
+    final PResolvedUnit unit = this.resolve(lines).get(0);
+    return PConstantFolder.fold(PConstructorIndex.of(Vector.of(unit)), unit);
+  }
+
+  private static PExpressionType<PParsed> term(
+    final PResolvedUnit unit,
+    final String name)
+  {
+    for (final PExpressionOrDeclarationType<PParsed> d : unit.declarations()) {
+      if (d instanceof PDeclarationValue) {
+        final PDeclarationValue<PParsed> v = (PDeclarationValue<PParsed>) d;
+        if (v.name().value().equals(name)) {
+          return v.expression();
+        }
+      }
+      if (d instanceof PDeclarationFunction) {
+        final PDeclarationFunction<PParsed> f = (PDeclarationFunction<PParsed>) d;
+        if (f.name().value().equals(name)) {
+          return f.expression();
+        }
+      }
+    }
+    throw new AssertionError("No such term: " + name);
+  }
+
+  private static void checkInteger(
+    final long expected,
+    final PExpressionType<PParsed> e)
+  {
+    Assertions.assertTrue(e instanceof PExprConstantInteger, e::toString);
+    Assertions.assertEquals(
+      BigInteger.valueOf(expected), ((PExprConstantInteger<PParsed>) e).value());
+  }
+
+  private static void checkString(
+    final String expected,
+    final PExpressionType<PParsed> e)
+  {
+    Assertions.assertTrue(e instanceof PExprConstantString, e::toString);
+    Assertions.assertEquals(expected, ((PExprConstantString<PParsed>) e).value());
+  }
+
+  @Test
+  public void testLocalConstants()
+  {
+    final PResolvedUnit unit = this.fold(
+      "(define-value x",
+      "  (local",
+      "    (define-value y 23)",
+      "    (: z Integer)",
+      "    (define-value z y)",
+      "    z))");
+
+    checkInteger(23L, term(unit, "x"));
+  }
+
+  @Test
+  public void testMatchConstants()
+  {
+    final PResolvedUnit unit = this.fold(
+      "(define-value i (match 2 [case 1 \"a\"] [case 2 \"b\"] [case _ \"c\"]))",
+      "(define-value r (match 1.0 [case 0.5 \"a\"] [case 1.00 \"b\"]))",
+      "(define-value s (match \"y\" [case \"x\" \"a\"] [case _ \"c\"]))",
+      "(define-value t (local (define-value k 3) (match k [case 1 \"a\"] [case _ \"d\"])))");
+
+    checkString("b", term(unit, "i"));
+    checkString("b", term(unit, "r"));
+    checkString("c", term(unit, "s"));
+    checkString("d", term(unit, "t"));
+  }
+
+  @Test
+  public void testMatchConstructors()
+  {
+    final PResolvedUnit unit = this.fold(
+      OPTION,
+      "(define-function f (x) (match (Some x) [case None x] [case (Some y) y]))",
+      "(define-function g (x)",
+      "  (local",
+      "    (define-value o None)",
+      "    (match o [case (Some y) 1] [case None 2])))",
+      "(define-function h (x)",
+      "  (local",
+      "    (define-value o (Some 3))",
+      "    (match o [case None 1] [case (Some y) y])))");
+
+    final PDeclarationFunction<PParsed> fd =
+      (PDeclarationFunction<PParsed>) unit.declarations().get(2);
+    final PExpressionType<PParsed> f = fd.expression();
+    Assertions.assertTrue(f instanceof PExprReference, f::toString);
+    Assertions.assertEquals(
+      fd.parameters().get(0).data().id(),
+      unit.termBinding(((PExprReference<PParsed>) f).reference())
+        .get().declaration());
+    checkInteger(2L, term(unit, "g"));
+    checkInteger(3L, term(unit, "h"));
+  }
+
+  @Test
+  public void testRecordFields()
+  {
+    final PResolvedUnit unit = this.fold(
+      "(define-record Point [field x Integer] [field y String])",
+      "(define-value r",
+      "  (local",
+      "    (define-value p (record Point [field x 1] [field y \"q\"]))",
+      "    (define-value q p)",
+      "    q.y))");
+
+    checkString("q", term(unit, "r"));
+  }
+
+  @Test
+  public void testAppliedLambda()
+  {
+    final PResolvedUnit unit = this.fold(
+      "(define-value r",
+      "  ((lambda (x y) (match x [case 1 y] [case _ \"z\"])) 1 \"q\"))");
+
+    checkString("q", term(unit, "r"));
+  }
+
+  @Test
+  public void testUnknownTarget()
+  {
+    final PResolvedUnit original = this.resolve(
+      "(define-function f (x) (match x [case 1 \"a\"] [case _ \"b\"]))").get(0);
+    final PResolvedUnit unit =
+      PConstantFolder.fold(PConstructorIndex.of(Vector.of(original)), original);
+
+    Assertions.assertTrue(term(unit, "f") instanceof PExprMatch);
+    Assertions.assertSame(term(original, "f"), term(unit, "f"));
+  }
+
+  @Test
+  public void testEffectsKept()
+  {
+    final PResolvedUnit unit = this.fold(
+      OPTION,
+      "(define-function f (g) (local (define-value z (g 1)) 3))",
+      "(define-function h (g) (match (Some (g 1)) [case None 1] [case (Some y) 2]))");
+
+    final PExpressionType<PParsed> f = term(unit, "f");
+    Assertions.assertTrue(f instanceof PExprLocal, f::toString);
+    Assertions.assertEquals(1, ((PExprLocal<PParsed>) f).locals().size());
+    final PExpressionType<PParsed> h = term(unit, "h");
+    Assertions.assertTrue(h instanceof PExprLocal, h::toString);
+    Assertions.assertEquals(1, ((PExprLocal<PParsed>) h).locals().size());
+  }
+
+  @Test
+  public void testEffectsEvaluatedOnce()
+  {
+    final PInterpreter p = PInterpreter.create(this.resolve(
+      OPTION,
+      "(define-function f (g) (local (define-value z (g 1)) 3))",
+      "(define-function h (g) (match (Some (g 1)) [case None 1] [case (Some y) y]))"));
+
+    final AtomicInteger calls = new AtomicInteger();
+    final PFunctionType g = args -> {
+      calls.incrementAndGet();
+      return args[0];
+    };
+
+    Assertions.assertEquals(PInteger.of(3L), p.call("a.A", "f", g));
+    Assertions.assertEquals(1, calls.get());
+    Assertions.assertEquals(PInteger.ONE, p.call("a.A", "h", g));
+    Assertions.assertEquals(2, calls.get());
+  }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.tests.compiler;
+
+import com.io7m.polaris.ast.PDeclarationFunction;
+import com.io7m.polaris.ast.PDeclarationRecord;
+import com.io7m.polaris.ast.PDeclarationSignature;
+import com.io7m.polaris.ast.PDeclarationValue;
+import com.io7m.polaris.ast.PDeclarationVariant;
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.compiler.PDeadDeclarationEliminator;
+import com.io7m.polaris.compiler.PEntryPoint;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.resolver.PResolvedUnit;
+import com.io7m.polaris.resolver.PResolver;
+import com.io7m.polaris.resolver.PUnitGraph;
+import com.io7m.polaris.resolver.PUnitHeaders;
+import com.io7m.polaris.typechecker.PTypeChecker;
+import com.io7m.polaris.typechecker.PTypeError;
+import com.io7m.polaris.typechecker.PTypedUnit;
+import com.io7m.polaris.tests.PTestUtilities;
+import io.vavr.collection.Seq;
+import io.vavr.collection.Vector;
+import io.vavr.control.Validation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import static com.io7m.polaris.tests.PTestUtilities.executor;
+
+public final class PDeadDeclarationEliminatorTest
+{
+  private Vector<Vector<PExpressionOrDeclarationType<PParsed>>> parsed;
+
+  private static String unit(
+    final String name,
+    final String... lines)
+  {
+    return "(define-unit " + name + ")\n" + String.join("\n", lines);
+  }
+
+  private Vector<PResolvedUnit> resolve(
+    final String... units)
+  {
+    this.parsed = Vector.of(units).map(PTestUtilities::parse);
+    final Validation<?, Vector<PResolvedUnit>> r =
+      PResolver.resolve(executor(), this.parsed);
+    Assertions.assertTrue(r.isValid(), () -> r.getError().toString());
+    return r.get();
+  }
+
+  private void checkTypes(
+    final Vector<PResolvedUnit> units)
+  {
+    final PUnitGraph graph =
+      PUnitGraph.build(
+        this.parsed.map(forms -> PUnitHeaders.header(forms).get())).get();
+    final Validation<Seq<PTypeError>, Vector<PTypedUnit>> r =
+      PTypeChecker.check(executor(), graph, units);
+    Assertions.assertTrue(r.isValid(), () -> r.getError().toString());
+  }
+
+  private static Vector<String> names(
+    final PResolvedUnit unit)
+  {
+    return unit.declarations().flatMap(d -> {
+      if (d instanceof PDeclarationValue) {
+        return Vector.of(((PDeclarationValue<PParsed>) d).name().value());
+      }
+      if (d instanceof PDeclarationFunction) {
+        return Vector.of(((PDeclarationFunction<PParsed>) d).name().value());
+      }
+      if (d instanceof PDeclarationSignature) {
+        return Vector.of(":" + ((PDeclarationSignature<PParsed>) d).name().value());
+      }
+      if (d instanceof PDeclarationRecord) {
+        return Vector.of(((PDeclarationRecord<PParsed>) d).name().value());
+      }
+      if (d instanceof PDeclarationVariant) {
+        return Vector.of(((PDeclarationVariant<PParsed>) d).name().value());
+      }
+      return Vector.empty();
+    });
+  }
+
+  @Test
+  public void testExports()
+  {
+    final Vector<PResolvedUnit> units = this.resolve(unit(
+      "a.A",
+      "(export-terms f)",
+      "(define-record R [field x Integer])",
+      "(define-record S [field y Integer])",
+      "(define-variant Option [∀ a] [case None] [case Some a])",
+      "(define-variant Unused [case U])",
+      "(: f (-> Integer (Option R)))",
+      "(define-function f (x) (Some (g x)))",
+      "(define-function g (x) (record R [field x x]))",
+      "(: h (-> S Integer))",
+      "(define-function h (s) s.y)",
+      "(define-value k (h (record S [field y 1])))"));
+
+    final Vector<PResolvedUnit> result =
+      PDeadDeclarationEliminator.eliminate(units, Vector.empty());
+
+    Assertions.assertEquals(
+      Vector.of("R", "Option", ":f", "f", "g"), names(result.get(0)));
+    this.checkTypes(result);
+  }
+
+  @Test
+  public void testExportedTypes()
+  {
+    final Vector<PResolvedUnit> units = this.resolve(unit(
+      "a.A",
+      "(export-types P)",
+      "(export-terms Some)",
+      "(define-variant Option [∀ a] [case None] [case Some a])",
+      "(define-variant Colour [case Red] [case Blue])",
+      "(define-record P [field c Colour])",
+      "(define-record Q [field p P])"));
+
+    final Vector<PResolvedUnit> result =
+      PDeadDeclarationEliminator.eliminate(units, Vector.empty());
+
+    Assertions.assertEquals(
+      Vector.of("Option", "Colour", "P"), names(result.get(0)));
+    this.checkTypes(result);
+  }
+
+  @Test
+  public void testAcrossUnits()
+  {
+    final Vector<PResolvedUnit> units = this.resolve(
+      unit(
+        "a.A",
+        "(export-terms f)",
+        "(define-function f (x) (helper x))",
+        "(define-function helper (x) x)",
+        "(define-function unused (x) x)"),
+      unit(
+        "a.B",
+        "(import-qualified a.A A)",
+        "(export-terms k)",
+        "(define-value k (A:f 23))",
+        "(define-value unused 24)"));
+
+    final Vector<PResolvedUnit> result =
+      PDeadDeclarationEliminator.eliminate(units, Vector.empty());
+
+    Assertions.assertEquals(Vector.of("f", "helper"), names(result.get(0)));
+    Assertions.assertEquals(Vector.of("k"), names(result.get(1)));
+    this.checkTypes(result);
+  }
+
+  @Test
+  public void testEntryPoints()
+  {
+    final Vector<PResolvedUnit> units = this.resolve(unit(
+      "a.A",
+      "(define-function main (x) (f x))",
+      "(define-function f (x) x)",
+      "(define-function g (x) x)"));
+
+    final Vector<PResolvedUnit> result =
+      PDeadDeclarationEliminator.eliminate(
+        units, Vector.of(PEntryPoint.of("a.A", "main")));
+
+    Assertions.assertEquals(Vector.of("main", "f"), names(result.get(0)));
+    Assertions.assertEquals(
+      Vector.empty(),
+      names(PDeadDeclarationEliminator.eliminate(units, Vector.empty()).get(0)));
+    this.checkTypes(result);
+  }
+
+  @Test
+  public void testEntryPointsUnknown()
+  {
+    final Vector<PResolvedUnit> units =
+      this.resolve(unit("a.A", "(define-function f (x) x)"));
+
+    Assertions.assertThrows(
+      IllegalArgumentException.class,
+      () -> PDeadDeclarationEliminator.eliminate(
+        units, Vector.of(PEntryPoint.of("a.B", "f"))));
+    Assertions.assertThrows(
+      IllegalArgumentException.class,
+      () -> PDeadDeclarationEliminator.eliminate(
+        units, Vector.of(PEntryPoint.of("a.A", "g"))));
+  }
+
+  @Test
+  public void testUnchanged()
+  {
+    final Vector<PResolvedUnit> units = this.resolve(unit(
+      "a.A",
+      "(export-terms f)",
+      "(define-function f (x) x)"));
+
+    Assertions.assertSame(
+      units.get(0),
+      PDeadDeclarationEliminator.eliminate(units, Vector.empty()).get(0));
+  }
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.tests.compiler;
+
+import com.io7m.jaffirm.core.PreconditionViolationException;
+import com.io7m.polaris.ast.PDeclarationVariant;
+import com.io7m.polaris.ast.PExprMatch;
+import com.io7m.polaris.ast.PNodeTable;
+import com.io7m.polaris.compiler.PCompiledMatch;
+import com.io7m.polaris.compiler.PConstructorIndex;
+import com.io7m.polaris.compiler.PConstructorInfo;
+import com.io7m.polaris.compiler.PMatchCompiler;
+import com.io7m.polaris.compiler.PMatchDecisionConstructor;
+import com.io7m.polaris.compiler.PMatchDecisionInteger;
+import com.io7m.polaris.compiler.PMatchDecisionReal;
+import com.io7m.polaris.compiler.PMatchDecisionString;
+import com.io7m.polaris.compiler.PMatchDecisionType;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.resolver.PBinding;
+import com.io7m.polaris.resolver.PResolvedUnit;
+import io.vavr.collection.Vector;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Optional;
+
+import static com.io7m.polaris.tests.PTestUtilities.resolveAll;
+import static com.io7m.polaris.tests.compiler.PMatchTestUtilities.ints;
+import static com.io7m.polaris.tests.compiler.PMatchTestUtilities.matches;
+import static com.io7m.polaris.tests.compiler.PMatchTestUtilities.resolve;
+
+public final class PMatchCompilerTest
+{
+  private PCompiledMatch compileOne(
+    final String... lines)
+  {
+    final PResolvedUnit unit = resolve(lines);
+    final Vector<PExprMatch<PParsed>> ms = matches(unit);
+    Assertions.assertEquals(1, ms.size());
+    return PMatchCompiler.compile(
+      PConstructorIndex.of(Vector.of(unit)), unit, ms.get(0));
+  }
+
+  @Test
+  public void testConstructorIndex()
+  {
+    final PResolvedUnit unit = resolve(
+      "(define-variant Color [case Red] [case Green] [case Blue Integer])");
+    final PConstructorIndex index = PConstructorIndex.of(Vector.of(unit));
+
+    final PDeclarationVariant<PParsed> color =
+      (PDeclarationVariant<PParsed>) unit.declarations()
+        .find(d -> d instanceof PDeclarationVariant)
+        .get();
+    final PBinding variant =
+      PBinding.of(PBinding.Kind.TYPE_UNIT, "a.A", color.name().data().id());
+    final PConstructorInfo red = index.constructors(variant).get(0);
+    Assertions.assertEquals("Red", red.name());
+    Assertions.assertEquals(0, red.tag());
+    Assertions.assertEquals(3, red.constructors());
+    Assertions.assertFalse(red.hasParameter());
+
+    final Vector<PConstructorInfo> all = index.constructors(red.variant());
+    Assertions.assertEquals(
+      Vector.of("Red", "Green", "Blue"), all.map(PConstructorInfo::name));
+    Assertions.assertEquals(ints(0, 1, 2), all.map(c -> Integer.valueOf(c.tag())));
+    Assertions.assertTrue(all.get(2).hasParameter());
+    Assertions.assertEquals(Optional.of(red), index.constructor(red.binding()));
+    Assertions.assertEquals(
+      Optional.empty(),
+      index.constructor(PBinding.of(PBinding.Kind.TERM_CONSTRUCTOR, "x.X", 0)));
+  }
+
+  @Test
+  public void testConstructors()
+  {
+    final PCompiledMatch m = this.compileOne(
+      "(define-variant Color [case Red] [case Green] [case Blue])",
+      "(define-function f (c) (match c [case Blue 0] [case Red 1] [case _ 2]))");
+
+    final PMatchDecisionConstructor d =
+      (PMatchDecisionConstructor) m.decision();
+    Assertions.assertEquals(PMatchDecisionType.Kind.DECISION_CONSTRUCTOR, d.kind());
+    Assertions.assertEquals(3, d.constructors());
+    Assertions.assertEquals(1, d.caseForTag(0));
+    Assertions.assertEquals(2, d.caseForTag(1));
+    Assertions.assertEquals(0, d.caseForTag(2));
+    Assertions.assertEquals(2, d.defaultCase());
+    Assertions.assertEquals(Vector.empty(), m.redundant());
+  }
+
+  @Test
+  public void testConstructorsNoDefault()
+  {
+    final PCompiledMatch m = this.compileOne(
+      "(define-variant Option [∀ a] [case None] [case Some a])",
+      "(define-function f (o) (match o [case (Some x) x]))");
+
+    final PMatchDecisionConstructor d =
+      (PMatchDecisionConstructor) m.decision();
+    Assertions.assertEquals(PMatchDecisionType.NO_CASE, d.caseForTag(0));
+    Assertions.assertEquals(0, d.caseForTag(1));
+    Assertions.assertEquals(PMatchDecisionType.NO_CASE, d.defaultCase());
+  }
+
+  @Test
+  public void testConstructorsRedundant()
+  {
+    final PCompiledMatch m = this.compileOne(
+      "(define-variant Color [case Red] [case Green] [case Blue])",
+      "(define-function f (c)",
+      "  (match c",
+      "    [case Red 0]",
+      "    [case Green 1]",
+      "    [case Red 2]",
+      "    [case Blue 3]",
+      "    [case _ 4]",
+      "    [case Green 5]))");
+
+    final PMatchDecisionConstructor d =
+      (PMatchDecisionConstructor) m.decision();
+    Assertions.assertEquals(0, d.caseForTag(0));
+    Assertions.assertEquals(1, d.caseForTag(1));
+    Assertions.assertEquals(3, d.caseForTag(2));
+    Assertions.assertEquals(PMatchDecisionType.NO_CASE, d.defaultCase());
+    Assertions.assertEquals(ints(2, 4, 5), m.redundant());
+  }
+
+  @Test
+  public void testAfterWildcardRedundant()
+  {
+    final PCompiledMatch m = this.compileOne(
+      "(define-function f (x) (match x [case 1 0] [case _ 1] [case 2 2] [case _ 3]))");
+
+    final PMatchDecisionInteger d = (PMatchDecisionInteger) m.decision();
+    Assertions.assertEquals(0, d.caseFor(1L));
+    Assertions.assertEquals(1, d.caseFor(2L));
+    Assertions.assertEquals(ints(2, 3), m.redundant());
+  }
+
+  @Test
+  public void testWildcardOnly()
+  {
+    final PCompiledMatch m = this.compileOne(
+      "(define-function f (x) (match x [case _ 0] [case _ 1]))");
+
+    Assertions.assertEquals(
+      PMatchDecisionType.Kind.DECISION_DEFAULT, m.decision().kind());
+    Assertions.assertEquals(0, m.decision().defaultCase());
+    Assertions.assertEquals(ints(1), m.redundant());
+  }
+
+  @Test
+  public void testIntegersDense()
+  {
+    final StringBuilder text = new StringBuilder(128);
+    text.append("(define-function f (x) (match x");
+    for (int index = 0; index < 10; ++index) {
+      text.append(" [case ").append(index + 3).append(' ').append(index).append(']');
+    }
+    text.append(" [case _ 10]))");
+
+    final PCompiledMatch m = this.compileOne(text.toString());
+    final PMatchDecisionInteger d = (PMatchDecisionInteger) m.decision();
+    Assertions.assertTrue(d.isDense());
+    for (int index = 0; index < 10; ++index) {
+      Assertions.assertEquals(index, d.caseFor((long) (index + 3)));
+      Assertions.assertEquals(
+        index, d.caseFor(BigInteger.valueOf((long) (index + 3))));
+    }
+    Assertions.assertEquals(10, d.caseFor(2L));
+    Assertions.assertEquals(10, d.caseFor(13L));
+    Assertions.assertEquals(10, d.caseFor(Long.MAX_VALUE));
+    Assertions.assertEquals(10, d.caseFor(Long.MIN_VALUE));
+    Assertions.assertEquals(10, d.caseFor(BigInteger.TEN.pow(30)));
+  }
+
+  @Test
+  public void testIntegersSparse()
+  {
+    final BigInteger huge = BigInteger.ONE.shiftLeft(70);
+    final PCompiledMatch m = this.compileOne(
+      "(define-function f (x)",
+      "  (match x",
+      "    [case 1000000 0]",
+      "    [case 1 1]",
+      "    [case 0 2]",
+      "    [case " + huge + " 3]",
+      "    [case 1 4]",
+      "    [case 9223372036854775807 5]))");
+
+    final PMatchDecisionInteger d = (PMatchDecisionInteger) m.decision();
+    Assertions.assertFalse(d.isDense());
+    Assertions.assertEquals(0, d.caseFor(1_000_000L));
+    Assertions.assertEquals(1, d.caseFor(1L));
+    Assertions.assertEquals(2, d.caseFor(0L));
+    Assertions.assertEquals(
+      PMatchDecisionType.NO_CASE, d.caseFor(Long.MIN_VALUE));
+    Assertions.assertEquals(5, d.caseFor(Long.MAX_VALUE));
+    Assertions.assertEquals(3, d.caseFor(huge));
+    Assertions.assertEquals(PMatchDecisionType.NO_CASE, d.caseFor(2L));
+    Assertions.assertEquals(
+      PMatchDecisionType.NO_CASE, d.caseFor(huge.add(BigInteger.ONE)));
+    Assertions.assertEquals(ints(4), m.redundant());
+  }
+
+  @Test
+  public void testStrings()
+  {
+    final PCompiledMatch m = this.compileOne(
+      "(define-function f (x)",
+      "  (match x [case \"a\" 0] [case \"b\" 1] [case \"a\" 2] [case _ 3]))");
+
+    final PMatchDecisionString d = (PMatchDecisionString) m.decision();
+    Assertions.assertEquals(0, d.caseFor("a"));
+    Assertions.assertEquals(1, d.caseFor("b"));
+    Assertions.assertEquals(3, d.caseFor("c"));
+    Assertions.assertEquals(ints(2), m.redundant());
+  }
+
+  @Test
+  public void testReals()
+  {
+    final PCompiledMatch m = this.compileOne(
+      "(define-function f (x)",
+      "  (match x [case 2.5 0] [case 1.0 1] [case 1.00 2] [case 0.25 3]))");
+
+    final PMatchDecisionReal d = (PMatchDecisionReal) m.decision();
+    Assertions.assertEquals(0, d.caseFor(new BigDecimal("2.5")));
+    Assertions.assertEquals(1, d.caseFor(new BigDecimal("1")));
+    Assertions.assertEquals(3, d.caseFor(new BigDecimal("0.250")));
+    Assertions.assertEquals(
+      PMatchDecisionType.NO_CASE, d.caseFor(new BigDecimal("2.0")));
+    Assertions.assertEquals(ints(2), m.redundant());
+  }
+
+  @Test
+  public void testImported()
+  {
+    final Vector<PResolvedUnit> units = resolveAll(
+      String.join(
+        "\n",
+        "(define-unit a.A)",
+        "(export-types Option)",
+        "(define-variant Option [∀ a] [case None] [case Some a])"),
+      String.join(
+        "\n",
+        "(define-unit b.B)",
+        "(import-qualified a.A A)",
+        "(define-function f (o) (match o [case A:None 0] [case (A:Some z) z]))"));
+
+    final PResolvedUnit b = units.get(1);
+    final PCompiledMatch m =
+      PMatchCompiler.compile(
+        PConstructorIndex.of(units), b, matches(b).get(0));
+
+    final PMatchDecisionConstructor d =
+      (PMatchDecisionConstructor) m.decision();
+    Assertions.assertEquals("a.A", d.variant().unit());
+    Assertions.assertEquals(0, d.caseForTag(0));
+    Assertions.assertEquals(1, d.caseForTag(1));
+  }
+
+  @Test
+  public void testMixedKinds()
+  {
+    final PResolvedUnit unit = resolve(
+      "(define-function f (x) (match x [case 1 0] [case \"x\" 1]))");
+
+    Assertions.assertThrows(
+      PreconditionViolationException.class,
+      () -> PMatchCompiler.compile(
+        PConstructorIndex.of(Vector.of(unit)), unit, matches(unit).get(0)));
+  }
+
+  @Test
+  public void testCompileUnit()
+  {
+    final PResolvedUnit unit = resolve(
+      "(define-function f (x)",
+      "  (match x",
+      "    [case 0 (local (define-value y (match x [case 1 1])) y)]",
+      "    [case _ ((λ (z) (match z [case \"a\" 2])) \"b\")]))");
+
+    final PNodeTable<PCompiledMatch> table =
+      PMatchCompiler.compileUnit(PConstructorIndex.of(Vector.of(unit)), unit);
+
+    final Vector<PExprMatch<PParsed>> ms = matches(unit);
+    Assertions.assertEquals(3, ms.size());
+    Assertions.assertEquals(
+      Vector.of(
+        PMatchDecisionType.Kind.DECISION_INTEGER,
+        PMatchDecisionType.Kind.DECISION_INTEGER,
+        PMatchDecisionType.Kind.DECISION_STRING),
+      ms.map(x -> table.get(x.data().id()).get().decision().kind()));
+  }
+
+  @Test
+  public void testLargeVariant()
+  {
+    final int count = 500;
+    final StringBuilder variant = new StringBuilder(count * 16);
+    variant.append("(define-variant Large");
+    for (int index = 0; index < count; ++index) {
+      variant.append(" [case C").append(index).append(']');
+    }
+    variant.append(')');
+
+    final StringBuilder match = new StringBuilder(count * 16);
+    match.append("(define-function f (x) (match x");
+    for (int index = count - 1; index >= 0; --index) {
+      match.append(" [case C").append(index).append(' ').append(index).append(']');
+    }
+    match.append(" [case _ 0]))");
+
+    final PCompiledMatch m =
+      this.compileOne(variant.toString(), match.toString());
+    final PMatchDecisionConstructor d =
+      (PMatchDecisionConstructor) m.decision();
+
+    Assertions.assertEquals(count, d.constructors());
+    for (int tag = 0; tag < count; ++tag) {
+      Assertions.assertEquals(count - 1 - tag, d.caseForTag(tag));
+    }
+    Assertions.assertEquals(ints(count), m.redundant());
+  }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.tests.compiler;
+
+import com.io7m.jaffirm.core.PreconditionViolationException;
+import com.io7m.polaris.ast.PExprMatch;
+import com.io7m.polaris.compiler.PConstructorIndex;
+import com.io7m.polaris.compiler.PConstructorInfo;
+import com.io7m.polaris.compiler.PMatchCoverage;
+import com.io7m.polaris.compiler.PMatchCoverageChecker;
+import com.io7m.polaris.compiler.PMatchError;
+import com.io7m.polaris.compiler.PMatchErrorCode;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.resolver.PResolvedUnit;
+import io.vavr.collection.Vector;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import static com.io7m.polaris.tests.compiler.PMatchTestUtilities.ints;
+import static com.io7m.polaris.tests.compiler.PMatchTestUtilities.matches;
+import static com.io7m.polaris.tests.compiler.PMatchTestUtilities.resolve;
+
+public final class PMatchCoverageCheckerTest
+{
+  private PMatchCoverage coverageOne(
+    final String... lines)
+  {
+    final PResolvedUnit unit = resolve(lines);
+    final Vector<PExprMatch<PParsed>> ms = matches(unit);
+    Assertions.assertEquals(1, ms.size());
+    return PMatchCoverageChecker.coverage(
+      PConstructorIndex.of(Vector.of(unit)), unit, ms.get(0));
+  }
+
+  private Vector<PMatchError> check(
+    final String... lines)
+  {
+    final PResolvedUnit unit = resolve(lines);
+    return PMatchCoverageChecker.check(
+      PConstructorIndex.of(Vector.of(unit)), unit);
+  }
+
+  private static Vector<String> missing(
+    final PMatchCoverage c)
+  {
+    return c.missing().map(PConstructorInfo::name);
+  }
+
+  @Test
+  public void testExhaustiveConstructors()
+  {
+    final PMatchCoverage c = this.coverageOne(
+      "(define-variant Color [case Red] [case Green] [case Blue])",
+      "(define-function f (c) (match c [case Blue 0] [case Red 1] [case Green 2]))");
+
+    Assertions.assertTrue(c.exhaustive());
+    Assertions.assertEquals(Vector.empty(), c.missing());
+    Assertions.assertEquals(Vector.empty(), c.unreachable());
+  }
+
+  @Test
+  public void testExhaustiveWildcard()
+  {
+    final PMatchCoverage c = this.coverageOne(
+      "(define-variant Color [case Red] [case Green] [case Blue])",
+      "(define-function f (c) (match c [case Blue 0] [case _ 1]))");
+
+    Assertions.assertTrue(c.exhaustive());
+    Assertions.assertEquals(Vector.empty(), c.missing());
+    Assertions.assertEquals(Vector.empty(), c.unreachable());
+  }
+
+  @Test
+  public void testMissingConstructors()
+  {
+    final PMatchCoverage c = this.coverageOne(
+      "(define-variant Color [case Red] [case Green] [case Blue] [case Cyan])",
+      "(define-function f (c) (match c [case Cyan 0] [case Green 1]))");
+
+    Assertions.assertFalse(c.exhaustive());
+    Assertions.assertEquals(Vector.of("Red", "Blue"), missing(c));
+  }
+
+  @Test
+  public void testMissingConstructorsWithArguments()
+  {
+    final PMatchCoverage c = this.coverageOne(
+      "(define-variant Option [∀ a] [case None] [case Some a])",
+      "(define-function f (o) (match o [case (Some x) x]))");
+
+    Assertions.assertFalse(c.exhaustive());
+    Assertions.assertEquals(Vector.of("None"), missing(c));
+  }
+
+  @Test
+  public void testConstantsRequireWildcard()
+  {
+    final PMatchCoverage c = this.coverageOne(
+      "(define-function f (x) (match x [case 0 0] [case 1 1]))");
+
+    Assertions.assertFalse(c.exhaustive());
+    Assertions.assertEquals(Vector.empty(), c.missing());
+
+    final PMatchCoverage d = this.coverageOne(
+      "(define-function f (x) (match x [case \"a\" 0] [case _ 1]))");
+
+    Assertions.assertTrue(d.exhaustive());
+  }
+
+  @Test
+  public void testUnreachableConstructors()
+  {
+    final PMatchCoverage c = this.coverageOne(
+      "(define-variant Color [case Red] [case Green] [case Blue])",
+      "(define-function f (c)",
+      "  (match c",
+      "    [case Red 0]",
+      "    [case Red 1]",
+      "    [case Green 2]",
+      "    [case Blue 3]",
+      "    [case _ 4]",
+      "    [case Green 5]))");
+
+    Assertions.assertTrue(c.exhaustive());
+    Assertions.assertEquals(ints(1, 4, 5), c.unreachable());
+  }
+
+  @Test
+  public void testUnreachableConstants()
+  {
+    Assertions.assertEquals(
+      ints(2, 4),
+      this.coverageOne(
+        "(define-function f (x)",
+        "  (match x [case 1.0 0] [case 2.5 1] [case 1.00 2] [case _ 3] [case 3.0 4]))")
+        .unreachable());
+
+    Assertions.assertEquals(
+      ints(1),
+      this.coverageOne(
+        "(define-function f (x) (match x [case \"a\" 0] [case \"a\" 1]))")
+        .unreachable());
+
+    Assertions.assertEquals(
+      ints(1, 2),
+      this.coverageOne(
+        "(define-function f (x) (match x [case _ 0] [case _ 1] [case 7 2]))")
+        .unreachable());
+  }
+
+  @Test
+  public void testCheck()
+  {
+    final Vector<PMatchError> errors = this.check(
+      "(define-variant Color [case Red] [case Green] [case Blue])",
+      "(define-function f (c)",
+      "  (match c",
+      "    [case Red (match 1 [case 1 0])]",
+      "    [case Red 1]))",
+      "(define-function g (c) (match c [case _ 0]))");
+
+    Assertions.assertEquals(
+      Vector.of(
+        PMatchErrorCode.MATCH_NOT_EXHAUSTIVE,
+        PMatchErrorCode.MATCH_CASE_UNREACHABLE,
+        PMatchErrorCode.MATCH_NOT_EXHAUSTIVE),
+      errors.map(PMatchError::code));
+
+    Assertions.assertEquals(
+      "Match is not exhaustive: missing constructors Green, Blue",
+      errors.get(0).message());
+    Assertions.assertEquals(6, errors.get(1).lexical().line());
+    Assertions.assertEquals(
+      "Match is not exhaustive: a wildcard case is required",
+      errors.get(2).message());
+  }
+
+  @Test
+  public void testMixedKinds()
+  {
+    Assertions.assertThrows(
+      PreconditionViolationException.class,
+      () -> this.coverageOne(
+        "(define-function f (x) (match x [case 1 0] [case \"x\" 1]))"));
+  }
+
+  @Test
+  public void testLargeVariant()
+  {
+    final int count = 5000;
+    final StringBuilder variant = new StringBuilder(count * 16);
+    variant.append("(define-variant Large");
+    for (int index = 0; index < count; ++index) {
+      variant.append(" [case C").append(index).append(']');
+    }
+    variant.append(')');
+
+    final StringBuilder match = new StringBuilder(count * 16);
+    match.append("(define-function f (x) (match x");
+    for (int index = count - 1; index >= 0; --index) {
+      if (index % 500 != 0) {
+        match.append(" [case C").append(index).append(" 0]");
+      }
+    }
+    match.append(" [case C1 0]))");
+
+    final PResolvedUnit unit = resolve(variant.toString(), match.toString());
+    final PMatchCoverage c =
+      PMatchCoverageChecker.coverage(
+        PConstructorIndex.of(Vector.of(unit)), unit, matches(unit).get(0));
+
+    Assertions.assertFalse(c.exhaustive());
+    Assertions.assertEquals(10, c.missing().size());
+    Assertions.assertEquals(
+      Vector.range(0, 10).map(index -> "C" + (index * 500)), missing(c));
+    Assertions.assertEquals(ints(count - 10), c.unreachable());
+
+    final Vector<PMatchError> errors =
+      PMatchCoverageChecker.check(PConstructorIndex.of(Vector.of(unit)), unit);
+    Assertions.assertEquals(
+      "Match is not exhaustive: missing constructors "
+        + "C0, C500, C1000, C1500, C2000, C2500, C3000, C3500, and 2 more",
+      errors.get(0).message());
+  }
+}
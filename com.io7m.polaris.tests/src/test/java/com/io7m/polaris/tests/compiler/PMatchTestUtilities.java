@@ -0,0 +1,74 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.tests.compiler;
+
+import com.io7m.polaris.ast.PDeclarationFunction;
+import com.io7m.polaris.ast.PDeclarationValue;
+import com.io7m.polaris.ast.PExprMatch;
+import com.io7m.polaris.ast.PExpressionType;
+import com.io7m.polaris.ast.PExpressions;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.resolver.PResolvedUnit;
+import io.vavr.collection.Vector;
+
+import static com.io7m.polaris.tests.PTestUtilities.resolveAll;
+
+final class PMatchTestUtilities
+{
+  private PMatchTestUtilities()
+  {
+
+  }
+
+  static PResolvedUnit resolve(
+    final String... lines)
+  {
+    return resolveAll(
+      "(define-unit a.A)\n" + String.join("\n", lines)).get(0);
+  }
+
+  static Vector<PExprMatch<PParsed>> matches(
+    final PResolvedUnit unit)
+  {
+    return unit.declarations().flatMap(d -> {
+      final PExpressionType<PParsed> e;
+      if (d instanceof PDeclarationValue) {
+        e = ((PDeclarationValue<PParsed>) d).expression();
+      } else if (d instanceof PDeclarationFunction) {
+        e = ((PDeclarationFunction<PParsed>) d).expression();
+      } else {
+        return Vector.empty();
+      }
+      return PExpressions.fold(e, Vector.<PExprMatch<PParsed>>empty(), (acc, x) -> {
+        if (x instanceof PExprMatch) {
+          return acc.append((PExprMatch<PParsed>) x);
+        }
+        return acc;
+      });
+    });
+  }
+
+  static Vector<Integer> ints(
+    final int... xs)
+  {
+    Vector<Integer> r = Vector.empty();
+    for (final int x : xs) {
+      r = r.append(Integer.valueOf(x));
+    }
+    return r;
+  }
+}
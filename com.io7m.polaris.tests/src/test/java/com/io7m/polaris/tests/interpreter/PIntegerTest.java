@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.tests.interpreter;
+
+import com.io7m.polaris.interpreter.PInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+public final class PIntegerTest
+{
+  private static final BigInteger LONG_MAX =
+    BigInteger.valueOf(Long.MAX_VALUE);
+  private static final BigInteger LONG_MIN =
+    BigInteger.valueOf(Long.MIN_VALUE);
+
+  private static void checkValue(
+    final BigInteger expected,
+    final PInteger received)
+  {
+    Assertions.assertEquals(expected, received.toBigInteger());
+    Assertions.assertEquals(expected.toString(), received.toString());
+    Assertions.assertEquals(
+      expected.bitLength() < Long.SIZE, received.isLong(), received::toString);
+    Assertions.assertEquals(PInteger.of(expected), received);
+    Assertions.assertEquals(PInteger.of(expected).hashCode(), received.hashCode());
+  }
+
+  @Test
+  public void testCached()
+  {
+    Assertions.assertSame(PInteger.of(0L), PInteger.ZERO);
+    Assertions.assertSame(PInteger.of(1L), PInteger.ONE);
+    Assertions.assertSame(PInteger.of(-128L), PInteger.of(BigInteger.valueOf(-128L)));
+    Assertions.assertSame(PInteger.of(1023L), PInteger.of(1000L).add(PInteger.of(23L)));
+    Assertions.assertNotSame(PInteger.of(1024L), PInteger.of(1024L));
+    Assertions.assertEquals(PInteger.of(1024L), PInteger.of(1024L));
+  }
+
+  @Test
+  public void testAddOverflow()
+  {
+    final PInteger max = PInteger.of(Long.MAX_VALUE);
+    final PInteger sum = max.add(PInteger.ONE);
+    checkValue(LONG_MAX.add(BigInteger.ONE), sum);
+    checkValue(LONG_MAX, sum.subtract(PInteger.ONE));
+    checkValue(LONG_MAX.add(LONG_MAX), max.add(max));
+  }
+
+  @Test
+  public void testSubtractOverflow()
+  {
+    final PInteger min = PInteger.of(Long.MIN_VALUE);
+    final PInteger difference = min.subtract(PInteger.ONE);
+    checkValue(LONG_MIN.subtract(BigInteger.ONE), difference);
+    checkValue(LONG_MIN, difference.add(PInteger.ONE));
+  }
+
+  @Test
+  public void testMultiplyOverflow()
+  {
+    final PInteger large = PInteger.of(1L << 40);
+    final PInteger product = large.multiply(large);
+    checkValue(BigInteger.ONE.shiftLeft(80), product);
+    checkValue(
+      BigInteger.ONE.shiftLeft(40),
+      PInteger.of(BigInteger.ONE.shiftLeft(80))
+        .multiply(PInteger.ONE.negate())
+        .negate()
+        .subtract(PInteger.of(BigInteger.ONE.shiftLeft(80)))
+        .add(large));
+    checkValue(BigInteger.valueOf(-6L), PInteger.of(2L).multiply(PInteger.of(-3L)));
+  }
+
+  @Test
+  public void testNegate()
+  {
+    checkValue(LONG_MIN.negate(), PInteger.of(Long.MIN_VALUE).negate());
+    checkValue(LONG_MIN, PInteger.of(LONG_MIN.negate()).negate());
+    checkValue(BigInteger.valueOf(-5L), PInteger.of(5L).negate());
+  }
+
+  @Test
+  public void testCompare()
+  {
+    final PInteger huge = PInteger.of(BigInteger.ONE.shiftLeft(100));
+    Assertions.assertTrue(PInteger.ONE.compareTo(PInteger.ZERO) > 0);
+    Assertions.assertTrue(PInteger.ZERO.compareTo(huge) < 0);
+    Assertions.assertTrue(huge.negate().compareTo(PInteger.of(Long.MIN_VALUE)) < 0);
+    Assertions.assertEquals(0, huge.compareTo(PInteger.of(BigInteger.ONE.shiftLeft(100))));
+    Assertions.assertEquals(-1, huge.negate().signum());
+    Assertions.assertEquals(0, PInteger.ZERO.signum());
+  }
+
+  @Test
+  public void testNarrowing()
+  {
+    Assertions.assertTrue(PInteger.of((long) Integer.MAX_VALUE).isInt());
+    Assertions.assertFalse(PInteger.of((long) Integer.MAX_VALUE + 1L).isInt());
+    Assertions.assertTrue(PInteger.of((long) Integer.MIN_VALUE).isInt());
+    Assertions.assertFalse(PInteger.of(BigInteger.ONE.shiftLeft(100)).isInt());
+    Assertions.assertEquals(23, PInteger.of(23L).intValue());
+    Assertions.assertEquals(23.0, PInteger.of(23L).doubleValue(), 0.0);
+  }
+}
@@ -0,0 +1,395 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.tests.interpreter;
+
+import com.io7m.polaris.interpreter.PEvaluationException;
+import com.io7m.polaris.interpreter.PFunctionType;
+import com.io7m.polaris.interpreter.PInteger;
+import com.io7m.polaris.interpreter.PInterpreter;
+import com.io7m.polaris.interpreter.PRecordValue;
+import com.io7m.polaris.resolver.PResolvedUnit;
+import io.vavr.collection.Vector;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static com.io7m.polaris.tests.PTestUtilities.natValue;
+import static com.io7m.polaris.tests.PTestUtilities.resolveAll;
+import static com.io7m.polaris.tests.PTestUtilities.withLargeStack;
+import static com.io7m.polaris.tests.PTestUtilities.withSmallStack;
+
+public final class PInterpreterTest
+{
+  private static final String NAT =
+    "(define-variant Nat [case Z] [case S Nat])\n"
+      + "(define-value zero Z)\n"
+      + "(define-function succ (n) (S n))";
+
+  private PInterpreter interpretAll(
+    final String... units)
+  {
+    return PInterpreter.create(resolveAll(units));
+  }
+
+  private PInterpreter interpret(
+    final String... lines)
+  {
+    return this.interpretAll(
+      "(define-unit a.A)\n" + String.join("\n", lines));
+  }
+
+  @Test
+  public void testConstants()
+  {
+    final PInterpreter i = this.interpret(
+      "(define-value x 23)",
+      "(define-value y 23.5)",
+      "(define-value z \"hello\")",
+      "(define-value w x)");
+
+    Assertions.assertEquals(PInteger.of(23L), i.value("a.A", "x"));
+    Assertions.assertEquals(new BigDecimal("23.5"), i.value("a.A", "y"));
+    Assertions.assertEquals("hello", i.value("a.A", "z"));
+    Assertions.assertEquals(PInteger.of(23L), i.value("a.A", "w"));
+  }
+
+  @Test
+  public void testFunctions()
+  {
+    final PInterpreter i = this.interpret(
+      "(define-function const (x y) x)",
+      "(define-function flip (f x y) (f y x))",
+      "(define-value r (flip const 1 2))");
+
+    Assertions.assertEquals(PInteger.of(2L), i.value("a.A", "r"));
+    Assertions.assertEquals(
+      "q", i.call("a.A", "const", "q", PInteger.ONE));
+  }
+
+  @Test
+  public void testClosures()
+  {
+    final PInterpreter i = this.interpret(
+      "(define-function konst (x) (lambda (y) x))",
+      "(define-value k1 (konst 1))",
+      "(define-value k2 (konst 2))",
+      "(define-value r1 (k1 3))",
+      "(define-value r2 (k2 3))",
+      "(define-function compose (f g) (lambda (x) (f (g x))))",
+      "(define-value r3 ((compose k1 k2) 4))");
+
+    Assertions.assertEquals(PInteger.of(1L), i.value("a.A", "r1"));
+    Assertions.assertEquals(PInteger.of(2L), i.value("a.A", "r2"));
+    Assertions.assertEquals(PInteger.of(1L), i.value("a.A", "r3"));
+  }
+
+  @Test
+  public void testLocals()
+  {
+    final PInterpreter i = this.interpret(
+      NAT,
+      "(define-value r",
+      "  (local",
+      "    (define-value x (succ zero))",
+      "    (define-value y (succ x))",
+      "    (define-function twice (n) (succ (succ n)))",
+      "    (define-value x (twice y))",
+      "    x))");
+
+    Assertions.assertEquals(4, natValue(i.value("a.A", "r")));
+  }
+
+  @Test
+  public void testLocalRecursive()
+  {
+    final PInterpreter i = this.interpret(
+      NAT,
+      "(define-function double (n)",
+      "  (local",
+      "    (define-function go (m acc)",
+      "      (match m [case Z acc] [case (S k) (go k (S (S acc)))]))",
+      "    (go n Z)))");
+
+    final Object three =
+      i.call("a.A", "succ", i.call("a.A", "succ", i.call("a.A", "succ", i.value("a.A", "zero"))));
+    Assertions.assertEquals(6, natValue(i.call("a.A", "double", three)));
+  }
+
+  @Test
+  public void testMatchConstructors()
+  {
+    final PInterpreter i = this.interpret(
+      "(define-variant Option [∀ a] [case None] [case Some a])",
+      "(define-function get (o d) (match o [case None d] [case (Some x) x]))",
+      "(define-value r1 (get (Some 23) 0))",
+      "(define-value r2 (get None 0))");
+
+    Assertions.assertEquals(PInteger.of(23L), i.value("a.A", "r1"));
+    Assertions.assertEquals(PInteger.ZERO, i.value("a.A", "r2"));
+  }
+
+  @Test
+  public void testMatchConstants()
+  {
+    final PInterpreter i = this.interpret(
+      "(define-function name (x)",
+      "  (match x [case 0 \"zero\"] [case 1 \"one\"] [case _ \"many\"]))",
+      "(define-function number (x)",
+      "  (match x [case \"zero\" 0] [case \"one\" 1] [case _ 2]))");
+
+    Assertions.assertEquals("zero", i.call("a.A", "name", PInteger.ZERO));
+    Assertions.assertEquals("one", i.call("a.A", "name", PInteger.ONE));
+    Assertions.assertEquals("many", i.call("a.A", "name", PInteger.of(10L)));
+    Assertions.assertEquals(PInteger.ONE, i.call("a.A", "number", "one"));
+    Assertions.assertEquals(
+      PInteger.of(2L), i.call("a.A", "number", "other"));
+  }
+
+  @Test
+  public void testMatchFailure()
+  {
+    final PInterpreter i = this.interpret(
+      "(define-function f (x) (match x [case 0 \"zero\"]))");
+
+    final PEvaluationException e =
+      Assertions.assertThrows(
+        PEvaluationException.class,
+        () -> i.call("a.A", "f", PInteger.ONE));
+    Assertions.assertTrue(e.lexical().isPresent());
+  }
+
+  @Test
+  public void testRecords()
+  {
+    final PInterpreter i = this.interpret(
+      "(define-record Pair [∀ a b] [field first a] [field second b])",
+      "(define-value p (record Pair [field first 1] [field second \"x\"]))",
+      "(define-value q (record-update p [field first 2]))",
+      "(define-value f p.first)",
+      "(define-value g q.first)");
+
+    final PRecordValue p = (PRecordValue) i.value("a.A", "p");
+    Assertions.assertEquals("Pair", p.type());
+    Assertions.assertEquals(PInteger.ONE, p.field("first"));
+    Assertions.assertEquals("x", p.field("second"));
+
+    final PRecordValue q = (PRecordValue) i.value("a.A", "q");
+    Assertions.assertEquals(PInteger.of(2L), q.field("first"));
+    Assertions.assertEquals("x", q.field("second"));
+
+    Assertions.assertEquals(PInteger.ONE, i.value("a.A", "f"));
+    Assertions.assertEquals(PInteger.of(2L), i.value("a.A", "g"));
+  }
+
+  /**
+   * Field access and update work for any record type that declares the
+   * fields, including when the same code is used with several types.
+   */
+
+  @Test
+  public void testRecordsShared()
+  {
+    final PInterpreter i = this.interpret(
+      "(define-record P [field x Integer] [field y Integer])",
+      "(define-record Q [field z Integer] [field y Integer] [field x Integer])",
+      "(define-function px (r) r.x)",
+      "(define-function qx (r) r.x)",
+      "(define-value p (record P [field y 2] [field x 1]))",
+      "(define-value q (record Q [field x 3] [field y 4] [field z 5]))",
+      "(define-value r (record-update q [field x 6]))");
+
+    Assertions.assertEquals(PInteger.ONE, i.call("a.A", "px", i.value("a.A", "p")));
+    Assertions.assertEquals(PInteger.of(3L), i.call("a.A", "qx", i.value("a.A", "q")));
+    Assertions.assertEquals(PInteger.ONE, i.call("a.A", "px", i.value("a.A", "p")));
+
+    final PRecordValue r = (PRecordValue) i.value("a.A", "r");
+    Assertions.assertEquals(
+      "(record Q [field z 5] [field y 4] [field x 6])", r.toString());
+    Assertions.assertEquals(
+      "(record P [field x 1] [field y 2])", i.value("a.A", "p").toString());
+  }
+
+  /**
+   * Records with more fields than fit into a single chunk.
+   */
+
+  @Test
+  public void testRecordsWide()
+  {
+    final StringBuilder declaration = new StringBuilder("(define-record W");
+    final StringBuilder literal = new StringBuilder("(record W");
+    for (int index = 0; index < 100; ++index) {
+      declaration.append(" [field f").append(index).append(" Integer]");
+      literal.append(" [field f").append(index).append(' ').append(index).append(']');
+    }
+    declaration.append(')');
+    literal.append(')');
+
+    final PInterpreter i = this.interpret(
+      declaration.toString(),
+      "(define-value w " + literal + ")",
+      "(define-value v (record-update w [field f3 23] [field f70 24] [field f71 25]))",
+      "(define-value g0 v.f99)",
+      "(define-value g1 v.f70)");
+
+    final PRecordValue w = (PRecordValue) i.value("a.A", "w");
+    final PRecordValue v = (PRecordValue) i.value("a.A", "v");
+    for (int index = 0; index < 100; ++index) {
+      Assertions.assertEquals(PInteger.of((long) index), w.field("f" + index));
+    }
+    Assertions.assertEquals(PInteger.of(23L), v.field("f3"));
+    Assertions.assertEquals(PInteger.of(24L), v.field("f70"));
+    Assertions.assertEquals(PInteger.of(25L), v.field("f71"));
+    Assertions.assertEquals(PInteger.of(4L), v.field("f4"));
+    Assertions.assertEquals(PInteger.of(99L), i.value("a.A", "g0"));
+    Assertions.assertEquals(PInteger.of(24L), i.value("a.A", "g1"));
+    Assertions.assertEquals(100, v.fields().size());
+  }
+
+  @Test
+  public void testImports()
+  {
+    final PInterpreter i = this.interpretAll(
+      "(define-unit a.B)\n"
+        + "(export-terms f)\n"
+        + "(define-function f (x) (lambda (y) x))",
+      "(define-unit a.C)\n"
+        + "(import-qualified a.B Q)\n"
+        + "(define-value r ((Q:f 23) 24))");
+
+    Assertions.assertEquals(PInteger.of(23L), i.value("a.C", "r"));
+  }
+
+  @Test
+  public void testHostFunctions()
+  {
+    final PInterpreter i = this.interpret(
+      "(define-function twice (f x) (f (f x)))");
+
+    final PFunctionType twice = (PFunctionType) i.value("a.A", "twice");
+    final PFunctionType append = args -> args[0] + "!";
+    Assertions.assertEquals("x!!", twice.apply(append, "x"));
+  }
+
+  @Test
+  public void testArity()
+  {
+    final PInterpreter i = this.interpret("(define-function f (x y) x)");
+    Assertions.assertThrows(
+      PEvaluationException.class, () -> i.call("a.A", "f", PInteger.ONE));
+  }
+
+  @Test
+  public void testCyclicValue()
+  {
+    final PEvaluationException e =
+      Assertions.assertThrows(
+        PEvaluationException.class,
+        () -> this.interpret(
+          "(define-function f (x) y)",
+          "(define-value y (f 0))"));
+    Assertions.assertTrue(e.getMessage().contains("depends on itself"));
+  }
+
+  /**
+   * A tail-recursive loop of a million iterations runs on a small stack.
+   */
+
+  @Test
+  public void testTailCalls()
+    throws Exception
+  {
+    final PInterpreter i = this.interpret(
+      NAT,
+      "(define-function count (n acc)",
+      "  (match n [case Z acc] [case (S m) (count m (S acc))]))",
+      "(define-function loop (n) (local (define-value z Z) (count n z)))");
+
+    final PFunctionType succ = (PFunctionType) i.value("a.A", "succ");
+    Object n = i.value("a.A", "zero");
+    for (int index = 0; index < 1_000_000; ++index) {
+      n = succ.apply(n);
+    }
+
+    final Object n_final = n;
+    final Object r = withSmallStack(() -> i.call("a.A", "loop", n_final));
+    Assertions.assertEquals(1_000_000, natValue(r));
+  }
+
+  /**
+   * Non-tail recursion that exhausts the stack is reported as an evaluation
+   * error.
+   */
+
+  @Test
+  public void testStackExhausted()
+    throws Exception
+  {
+    final PInterpreter i = this.interpret(
+      NAT,
+      "(define-function copy (n)",
+      "  (match n [case Z Z] [case (S m) (S (copy m))]))");
+
+    final PFunctionType succ = (PFunctionType) i.value("a.A", "succ");
+    Object n = i.value("a.A", "zero");
+    for (int index = 0; index < 1_000_000; ++index) {
+      n = succ.apply(n);
+    }
+
+    final Object n_final = n;
+    final AssertionError e =
+      Assertions.assertThrows(
+        AssertionError.class,
+        () -> withSmallStack(() -> i.call("a.A", "copy", n_final)));
+    Assertions.assertEquals(PEvaluationException.class, e.getCause().getClass());
+  }
+
+  /**
+   * Programs nested too deeply to compile on the Java stack are reported as
+   * evaluation errors.
+   */
+
+  @Test
+  public void testCompileStackExhausted()
+    throws Exception
+  {
+    final StringBuilder text = new StringBuilder(1024 * 1024);
+    text.append("(define-unit a.A)\n");
+    text.append(NAT);
+    text.append("\n(define-value deep ");
+    for (int index = 0; index < 50_000; ++index) {
+      text.append("(succ ");
+    }
+    text.append("zero");
+    for (int index = 0; index < 50_000; ++index) {
+      text.append(')');
+    }
+    text.append(")\n");
+
+    final Vector<PResolvedUnit> units =
+      withLargeStack(() -> resolveAll(text.toString()));
+    final AssertionError e =
+      Assertions.assertThrows(
+        AssertionError.class,
+        () -> withSmallStack(() -> PInterpreter.create(units)));
+    Assertions.assertEquals(PEvaluationException.class, e.getCause().getClass());
+    Assertions.assertTrue(
+      e.getCause().getMessage().contains("compiling deep"),
+      e.getCause().getMessage());
+  }
+}
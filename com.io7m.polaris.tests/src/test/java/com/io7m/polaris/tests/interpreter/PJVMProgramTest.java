@@ -0,0 +1,331 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.tests.interpreter;
+
+import com.io7m.polaris.interpreter.PEvaluationException;
+import com.io7m.polaris.interpreter.PFunctionType;
+import com.io7m.polaris.interpreter.PInteger;
+import com.io7m.polaris.interpreter.PInterpreter;
+import com.io7m.polaris.interpreter.PJVMProgram;
+import com.io7m.polaris.interpreter.PProgramType;
+import com.io7m.polaris.interpreter.PRecordValueType;
+import com.io7m.polaris.interpreter.PVariantValue;
+import com.io7m.polaris.resolver.PResolvedUnit;
+import io.vavr.collection.Vector;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+import static com.io7m.polaris.tests.PTestUtilities.natValue;
+import static com.io7m.polaris.tests.PTestUtilities.resolveAll;
+import static com.io7m.polaris.tests.PTestUtilities.withSmallStack;
+
+public final class PJVMProgramTest
+{
+  private static final String NAT =
+    "(define-variant Nat [case Z] [case S Nat])\n"
+      + "(define-value zero Z)\n"
+      + "(define-function succ (n) (S n))";
+
+  private PJVMProgram compile(
+    final String... lines)
+  {
+    return PJVMProgram.create(
+      resolveAll("(define-unit a.A)\n" + String.join("\n", lines)));
+  }
+
+  /**
+   * Check that the compiled program and the interpreter agree on the values
+   * of the given terms.
+   */
+
+  private void checkAgrees(
+    final String[] lines,
+    final String... names)
+  {
+    final Vector<PResolvedUnit> units =
+      resolveAll("(define-unit a.A)\n" + String.join("\n", lines));
+    final PProgramType interpreted = PInterpreter.create(units);
+    final PProgramType compiled = PJVMProgram.create(units);
+    for (final String name : names) {
+      Assertions.assertEquals(
+        String.valueOf(interpreted.value("a.A", name)),
+        String.valueOf(compiled.value("a.A", name)),
+        name);
+    }
+  }
+
+  @Test
+  public void testAgrees()
+  {
+    this.checkAgrees(
+      new String[]{
+        NAT,
+        "(define-variant Option [∀ a] [case None] [case Some a])",
+        "(define-function konst (x) (lambda (y) x))",
+        "(define-function compose (f g) (lambda (x) (f (g x))))",
+        "(define-function get (o d) (match o [case None d] [case (Some x) x]))",
+        "(define-function name (x)",
+        "  (match x [case 0 \"zero\"] [case 1 \"one\"] [case _ \"many\"]))",
+        "(define-function real (x) (match x [case 1.5 \"a\"] [case _ \"b\"]))",
+        "(define-function string (x) (match x [case \"a\" 1] [case _ 2]))",
+        "(define-value r0 ((compose (konst 1) (konst 2)) 3))",
+        "(define-value r1 (get (Some 23) 0))",
+        "(define-value r2 (get None 0))",
+        "(define-value r3 (name 1))",
+        "(define-value r4 (name 7))",
+        "(define-value r5 (real 1.50))",
+        "(define-value r6 (string \"c\"))",
+        "(define-value r7",
+        "  (local",
+        "    (define-value x (succ zero))",
+        "    (define-function twice (n) (succ (succ n)))",
+        "    (define-value x (twice x))",
+        "    x))",
+        "(define-value r8 (Some (Some zero)))",
+      },
+      "r0", "r1", "r2", "r3", "r4", "r5", "r6", "r7", "r8");
+  }
+
+  @Test
+  public void testIntegerSwitches()
+  {
+    final PJVMProgram p = this.compile(
+      "(define-function dense (x)",
+      "  (match x [case 1 \"a\"] [case 2 \"b\"] [case 4 \"c\"] [case _ \"d\"]))",
+      "(define-function sparse (x)",
+      "  (match x [case 1 \"a\"] [case 1000 \"b\"] [case 1000000 \"c\"] [case _ \"d\"]))",
+      "(define-function large (x)",
+      "  (match x [case 1 \"a\"] [case 100000000000000000000 \"b\"] [case _ \"d\"]))");
+
+    Assertions.assertEquals("a", p.call("a.A", "dense", PInteger.ONE));
+    Assertions.assertEquals("c", p.call("a.A", "dense", PInteger.of(4L)));
+    Assertions.assertEquals("d", p.call("a.A", "dense", PInteger.of(3L)));
+    Assertions.assertEquals(
+      "d",
+      p.call(
+        "a.A", "dense", PInteger.of(BigInteger.ONE.shiftLeft(40).add(BigInteger.ONE))));
+
+    Assertions.assertEquals("b", p.call("a.A", "sparse", PInteger.of(1000L)));
+    Assertions.assertEquals("c", p.call("a.A", "sparse", PInteger.of(1000000L)));
+    Assertions.assertEquals("d", p.call("a.A", "sparse", PInteger.of(999L)));
+
+    Assertions.assertEquals("a", p.call("a.A", "large", PInteger.ONE));
+    Assertions.assertEquals(
+      "b",
+      p.call("a.A", "large", PInteger.of(new BigInteger("100000000000000000000"))));
+    Assertions.assertEquals("d", p.call("a.A", "large", PInteger.of(10L)));
+  }
+
+  /**
+   * Both backends preallocate nullary constructors and store constructor
+   * tags in variant values.
+   */
+
+  @Test
+  public void testVariantTags()
+  {
+    final Vector<PResolvedUnit> units = resolveAll(String.join(
+      "\n",
+      "(define-unit a.A)",
+      "(define-variant Colour [case Red] [case Green] [case Blue] [case Grey Integer])",
+      "(define-function green (x) Green)",
+      "(define-function name (c)",
+      "  (match c [case Red 0] [case Green 1] [case Blue 2] [case (Grey x) x]))",
+      "(define-value g0 Green)",
+      "(define-value g1 (green 0))",
+      "(define-value r0 (name Blue))",
+      "(define-value r1 (name (Grey 23)))"));
+
+    for (final PProgramType p : Vector.of(
+      PInterpreter.create(units), PJVMProgram.create(units))) {
+      final PVariantValue g0 = (PVariantValue) p.value("a.A", "g0");
+      final PVariantValue g1 = (PVariantValue) p.value("a.A", "g1");
+      Assertions.assertSame(g0, g1);
+      Assertions.assertSame(g0, p.call("a.A", "green", PInteger.ZERO));
+      Assertions.assertEquals(1, g0.tag());
+      Assertions.assertEquals(g0.constructor().tag(), g0.tag());
+
+      Assertions.assertEquals(PInteger.of(2L), p.value("a.A", "r0"));
+      Assertions.assertEquals(PInteger.of(23L), p.value("a.A", "r1"));
+      Assertions.assertEquals(PInteger.ONE, p.call("a.A", "name", g0));
+    }
+  }
+
+  @Test
+  public void testMatchFailure()
+  {
+    final PJVMProgram p = this.compile(
+      "(define-function f (x) (match x [case 0 \"zero\"]))");
+
+    final PEvaluationException e =
+      Assertions.assertThrows(
+        PEvaluationException.class,
+        () -> p.call("a.A", "f", PInteger.ONE));
+    Assertions.assertTrue(e.lexical().isPresent());
+  }
+
+  @Test
+  public void testRecords()
+  {
+    final PJVMProgram p = this.compile(
+      "(define-record Pair [∀ a b] [field first a] [field second b])",
+      "(define-record Box [∀ a] [field first a])",
+      "(define-record Point [field x Integer] [field y Integer])",
+      "(define-value p (record Pair [field second \"x\"] [field first 1]))",
+      "(define-value q (record-update p [field first 2]))",
+      "(define-value r (record Point [field x 1] [field y 2]))",
+      "(define-value s (record-update r [field y 3]))",
+      "(define-value f p.first)",
+      "(define-value g s.y)",
+      "(define-function first (b) b.first)",
+      "(define-value h (first (record Box [field first 23])))");
+
+    final PRecordValueType pv = (PRecordValueType) p.value("a.A", "p");
+    Assertions.assertEquals("Pair", pv.type());
+    Assertions.assertEquals(PInteger.ONE, pv.field("first"));
+    Assertions.assertEquals("x", pv.field("second"));
+    Assertions.assertEquals("(record Pair [field first 1] [field second x])", pv.toString());
+
+    final PRecordValueType qv = (PRecordValueType) p.value("a.A", "q");
+    Assertions.assertEquals(PInteger.of(2L), qv.field("first"));
+    Assertions.assertEquals("x", qv.field("second"));
+
+    final PRecordValueType sv = (PRecordValueType) p.value("a.A", "s");
+    Assertions.assertEquals(PInteger.ONE, sv.field("x"));
+    Assertions.assertEquals(PInteger.of(3L), sv.field("y"));
+
+    Assertions.assertEquals(PInteger.ONE, p.value("a.A", "f"));
+    Assertions.assertEquals(PInteger.of(3L), p.value("a.A", "g"));
+    Assertions.assertEquals(PInteger.of(23L), p.value("a.A", "h"));
+
+    Assertions.assertThrows(IllegalArgumentException.class, () -> sv.field("z"));
+  }
+
+  @Test
+  public void testImports()
+  {
+    final PJVMProgram p = PJVMProgram.create(resolveAll(
+      "(define-unit a.B)\n"
+        + "(export-terms f)\n"
+        + "(define-function f (x) (lambda (y) x))",
+      "(define-unit a.C)\n"
+        + "(import-qualified a.B Q)\n"
+        + "(define-value r ((Q:f 23) 24))"));
+
+    Assertions.assertEquals(PInteger.of(23L), p.value("a.C", "r"));
+  }
+
+  @Test
+  public void testHostFunctions()
+  {
+    final PJVMProgram p = this.compile(
+      "(define-function twice (f x) (f (f x)))");
+
+    final PFunctionType twice = (PFunctionType) p.value("a.A", "twice");
+    final PFunctionType append = args -> args[0] + "!";
+    Assertions.assertEquals("x!!", twice.apply(append, "x"));
+  }
+
+  @Test
+  public void testArity()
+  {
+    final PJVMProgram p = this.compile(
+      "(define-function f (x y) x)",
+      "(define-function g (h) (h 1))");
+
+    Assertions.assertThrows(
+      PEvaluationException.class, () -> p.call("a.A", "f", PInteger.ONE));
+
+    final PEvaluationException e =
+      Assertions.assertThrows(
+        PEvaluationException.class,
+        () -> p.call("a.A", "g", p.value("a.A", "f")));
+    Assertions.assertTrue(e.lexical().isPresent());
+  }
+
+  @Test
+  public void testCyclicValue()
+  {
+    final PEvaluationException e =
+      Assertions.assertThrows(
+        PEvaluationException.class,
+        () -> this.compile(
+          "(define-function f (x) y)",
+          "(define-value y (f 0))"));
+    Assertions.assertTrue(e.getMessage().contains("depends on itself"));
+  }
+
+  /**
+   * Self-recursive calls in tail position, in both top-level and local
+   * functions, run on a small stack.
+   */
+
+  @Test
+  public void testTailCalls()
+    throws Exception
+  {
+    final PJVMProgram p = this.compile(
+      NAT,
+      "(define-function count (n acc)",
+      "  (match n [case Z acc] [case (S m) (count m (S acc))]))",
+      "(define-function loop (n)",
+      "  (local",
+      "    (define-function go (m acc)",
+      "      (match m [case Z acc] [case (S k) (go k (S acc))]))",
+      "    (go n Z)))");
+
+    final PFunctionType succ = (PFunctionType) p.value("a.A", "succ");
+    Object n = p.value("a.A", "zero");
+    for (int index = 0; index < 1_000_000; ++index) {
+      n = succ.apply(n);
+    }
+
+    final Object n_final = n;
+    final Object zero = p.value("a.A", "zero");
+    Assertions.assertEquals(
+      1_000_000,
+      natValue(withSmallStack(() -> p.call("a.A", "count", n_final, zero))));
+    Assertions.assertEquals(
+      1_000_000,
+      natValue(withSmallStack(() -> p.call("a.A", "loop", n_final))));
+  }
+
+  @Test
+  public void testStackExhausted()
+    throws Exception
+  {
+    final PJVMProgram p = this.compile(
+      NAT,
+      "(define-function copy (n)",
+      "  (match n [case Z Z] [case (S m) (S (copy m))]))");
+
+    final PFunctionType succ = (PFunctionType) p.value("a.A", "succ");
+    Object n = p.value("a.A", "zero");
+    for (int index = 0; index < 1_000_000; ++index) {
+      n = succ.apply(n);
+    }
+
+    final Object n_final = n;
+    final AssertionError e =
+      Assertions.assertThrows(
+        AssertionError.class,
+        () -> withSmallStack(() -> p.call("a.A", "copy", n_final)));
+    Assertions.assertEquals(PEvaluationException.class, e.getCause().getClass());
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.tests.interpreter;
+
+import com.io7m.polaris.interpreter.PEvaluationException;
+import com.io7m.polaris.interpreter.PFunctionType;
+import com.io7m.polaris.interpreter.PInteger;
+import com.io7m.polaris.interpreter.PInterpreter;
+import com.io7m.polaris.interpreter.PJVMProgram;
+import com.io7m.polaris.interpreter.PProgramType;
+import com.io7m.polaris.resolver.PResolvedUnit;
+import io.vavr.collection.Vector;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import static com.io7m.polaris.tests.PTestUtilities.natValue;
+import static com.io7m.polaris.tests.PTestUtilities.resolveAll;
+import static com.io7m.polaris.tests.PTestUtilities.withSmallStack;
+
+/**
+ * Tests for functions that are lifted out of their enclosing functions.
+ * Each program is evaluated by both the interpreter and the JVM backend.
+ */
+
+public final class PLiftingTest
+{
+  private static final String NAT =
+    "(define-variant Nat [case Z] [case S Nat])\n"
+      + "(define-value zero Z)\n"
+      + "(define-function succ (n) (S n))";
+
+  private Vector<PProgramType> programs(
+    final String... lines)
+  {
+    final Vector<PResolvedUnit> units =
+      resolveAll("(define-unit a.A)\n" + String.join("\n", lines));
+    return Vector.of(PInterpreter.create(units), PJVMProgram.create(units));
+  }
+
+  @Test
+  public void testCaptures()
+  {
+    final Vector<PProgramType> ps = this.programs(
+      "(define-function f (x y)",
+      "  (local",
+      "    (define-function g (z) (match z [case 0 x] [case _ y]))",
+      "    (define-function h (z) (g z))",
+      "    (h 1)))",
+      "(define-value r (f \"x\" \"y\"))");
+
+    for (final PProgramType p : ps) {
+      Assertions.assertEquals("y", p.value("a.A", "r"));
+      Assertions.assertEquals(
+        PInteger.of(10L), p.call("a.A", "f", "x", PInteger.of(10L)));
+    }
+  }
+
+  /**
+   * A lifted function that calls another lifted function must pass on the
+   * variables that the other function captures, even if it does not use
+   * them itself.
+   */
+
+  @Test
+  public void testCapturesTransitive()
+  {
+    final Vector<PProgramType> ps = this.programs(
+      "(define-function f (x)",
+      "  (local",
+      "    (define-value y x)",
+      "    (define-function g (z) y)",
+      "    (define-function h (w)",
+      "      (local",
+      "        (define-function k (v) (g v))",
+      "        (k w)))",
+      "    (h 1)))");
+
+    for (final PProgramType p : ps) {
+      Assertions.assertEquals("x", p.call("a.A", "f", "x"));
+    }
+  }
+
+  @Test
+  public void testNestedLambda()
+  {
+    final Vector<PProgramType> ps = this.programs(
+      "(define-function f (x)",
+      "  (local",
+      "    (define-function g (y) (lambda (z) (match z [case 0 x] [case _ y])))",
+      "    (g \"y\")))",
+      "(define-value k (f \"x\"))");
+
+    for (final PProgramType p : ps) {
+      final PFunctionType k = (PFunctionType) p.value("a.A", "k");
+      Assertions.assertEquals("x", k.apply(PInteger.ZERO));
+      Assertions.assertEquals("y", k.apply(PInteger.ONE));
+    }
+  }
+
+  @Test
+  public void testAppliedLambda()
+  {
+    final Vector<PProgramType> ps = this.programs(
+      "(define-function f (x)",
+      "  ((lambda (y) (match y [case 0 x] [case _ \"other\"])) 0))",
+      "(define-function g (x)",
+      "  (local",
+      "    (define-value k (lambda (y) x))",
+      "    (k 23)))");
+
+    for (final PProgramType p : ps) {
+      Assertions.assertEquals("x", p.call("a.A", "f", "x"));
+      Assertions.assertEquals("x", p.call("a.A", "g", "x"));
+    }
+  }
+
+  /**
+   * Functions that are used as values are not lifted.
+   */
+
+  @Test
+  public void testEscaping()
+  {
+    final Vector<PProgramType> ps = this.programs(
+      "(define-function apply (f x) (f x))",
+      "(define-function f (x)",
+      "  (local",
+      "    (define-function g (y) (match y [case 0 x] [case _ (g 0)]))",
+      "    (define-value r0 (g 1))",
+      "    (define-value r1 (apply g 1))",
+      "    (match r0 [case \"x\" r1] [case _ \"wrong\"])))",
+      "(define-function h (x)",
+      "  (local",
+      "    (define-function g (y) x)",
+      "    g))");
+
+    for (final PProgramType p : ps) {
+      Assertions.assertEquals("x", p.call("a.A", "f", "x"));
+      final PFunctionType g = (PFunctionType) p.call("a.A", "h", "x");
+      Assertions.assertEquals("x", g.apply(PInteger.ZERO));
+    }
+  }
+
+  @Test
+  public void testArity()
+  {
+    final Vector<PProgramType> ps = this.programs(
+      "(define-function f (x)",
+      "  (local",
+      "    (define-function g (y z) x)",
+      "    (g 1)))");
+
+    for (final PProgramType p : ps) {
+      final PEvaluationException e =
+        Assertions.assertThrows(
+          PEvaluationException.class, () -> p.call("a.A", "f", "x"));
+      Assertions.assertTrue(e.lexical().isPresent());
+    }
+  }
+
+  /**
+   * A lifted function that captures variables calls itself in tail position
+   * in constant stack space.
+   */
+
+  @Test
+  public void testTailCalls()
+    throws Exception
+  {
+    final Vector<PProgramType> ps = this.programs(
+      NAT,
+      "(define-function count (n k)",
+      "  (local",
+      "    (define-function go (m acc)",
+      "      (match m [case Z (k acc)] [case (S j) (go j (S acc))]))",
+      "    (go n Z)))");
+
+    for (final PProgramType p : ps) {
+      final PFunctionType succ = (PFunctionType) p.value("a.A", "succ");
+      Object n = p.value("a.A", "zero");
+      for (int index = 0; index < 1_000_000; ++index) {
+        n = succ.apply(n);
+      }
+
+      final Object n_final = n;
+      Assertions.assertEquals(
+        1_000_001,
+        natValue(withSmallStack(() -> p.call("a.A", "count", n_final, succ))));
+    }
+  }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.tests.interpreter;
+
+import com.io7m.polaris.compiler.PEntryPoint;
+import com.io7m.polaris.interpreter.PInteger;
+import com.io7m.polaris.interpreter.PInterpreter;
+import com.io7m.polaris.interpreter.PJVMProgram;
+import com.io7m.polaris.interpreter.PMemoizationConfiguration;
+import com.io7m.polaris.interpreter.PMemoizationStatistics;
+import com.io7m.polaris.interpreter.PMemoizedProgram;
+import com.io7m.polaris.interpreter.PProgramType;
+import com.io7m.polaris.resolver.PResolvedUnit;
+import io.vavr.collection.HashSet;
+import io.vavr.collection.Vector;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.io7m.polaris.tests.PTestUtilities.executor;
+import static com.io7m.polaris.tests.PTestUtilities.natValue;
+import static com.io7m.polaris.tests.PTestUtilities.resolveAll;
+
+public final class PMemoizedProgramTest
+{
+  private static final String PROGRAM =
+    "(define-unit a.A)\n"
+      + "(define-variant Nat [case Z] [case S Nat])\n"
+      + "(define-variant Option [∀ a] [case None] [case Some a])\n"
+      + "(define-record P [field x Integer] [field y Real])\n"
+      + "(define-function add (m n) (match m [case Z n] [case (S k) (add k (S n))]))\n"
+      + "(define-function dbl (n) (add n n))\n"
+      + "(define-function pred (n) (match n [case Z Z] [case (S k) k]))\n"
+      + "(define-function wrap (x) (Some x))\n"
+      + "(define-function point (x y) (record P [field x x] [field y y]))\n"
+      + "(define-function same (x) x)\n";
+
+  private static final String FIB =
+    PROGRAM
+      + "(define-function fib (n)\n"
+      + "  (match n\n"
+      + "    [case Z Z]\n"
+      + "    [case (S k) (match k\n"
+      + "      [case Z (S Z)]\n"
+      + "      [case (S j) (add (fib k) (fib j))])]))\n"
+      + "(define-value twenty (dbl (dbl (S (dbl (dbl (S Z)))))))\n"
+      + "(define-function twice (n) (add (pred n) (pred n)))\n";
+
+  private Vector<PResolvedUnit> resolve(
+    final String text)
+  {
+    return resolveAll(text);
+  }
+
+  private static PMemoizationConfiguration configuration(
+    final int size,
+    final String... functions)
+  {
+    return PMemoizationConfiguration.of(
+      HashSet.of(functions).map(f -> PEntryPoint.of("a.A", f)), size);
+  }
+
+  /**
+   * A program that counts the calls that reach it.
+   */
+
+  private static final class Counting implements PProgramType
+  {
+    private final PProgramType program;
+    private final AtomicInteger calls;
+
+    Counting(
+      final PProgramType in_program)
+    {
+      this.program = in_program;
+      this.calls = new AtomicInteger(0);
+    }
+
+    @Override
+    public Object value(
+      final String unit,
+      final String name)
+    {
+      return this.program.value(unit, name);
+    }
+
+    @Override
+    public Object call(
+      final String unit,
+      final String name,
+      final Object... arguments)
+    {
+      this.calls.incrementAndGet();
+      return this.program.call(unit, name, arguments);
+    }
+  }
+
+  @Test
+  public void testStructuralKeys()
+  {
+    final PInterpreter i = PInterpreter.create(this.resolve(PROGRAM));
+    final Counting c = new Counting(i);
+    final PMemoizedProgram p =
+      PMemoizedProgram.create(c, configuration(100, "same", "pred"));
+
+    final Object w0 = i.call("a.A", "wrap", PInteger.of(1L << 40));
+    final Object w1 = i.call("a.A", "wrap", PInteger.of(1L << 40));
+    final Object p0 = i.call("a.A", "point", PInteger.ONE, new BigDecimal("1.5"));
+    final Object p1 = i.call("a.A", "point", PInteger.ONE, new BigDecimal("1.50"));
+    Assertions.assertNotSame(w0, w1);
+    Assertions.assertNotSame(p0, p1);
+
+    Assertions.assertSame(w0, p.call("a.A", "same", w0));
+    Assertions.assertSame(w0, p.call("a.A", "same", w1));
+    Assertions.assertSame(p0, p.call("a.A", "same", p0));
+    Assertions.assertSame(p0, p.call("a.A", "same", p1));
+    Assertions.assertEquals(
+      PInteger.ONE, p.call("a.A", "same", PInteger.ONE));
+    Assertions.assertEquals(
+      "x", p.call("a.A", "same", "x"));
+    Assertions.assertEquals(4, c.calls.get());
+
+    final PMemoizationStatistics s = p.statistics();
+    Assertions.assertEquals(2L, s.hits());
+    Assertions.assertEquals(4L, s.misses());
+    Assertions.assertEquals(2.0 / 6.0, s.hitRate(), 1.0e-9);
+  }
+
+  @Test
+  public void testUnconfigured()
+  {
+    final Counting c = new Counting(PInterpreter.create(this.resolve(PROGRAM)));
+    final PMemoizedProgram p =
+      PMemoizedProgram.create(c, configuration(100, "pred"));
+
+    p.call("a.A", "same", PInteger.ONE);
+    p.call("a.A", "same", PInteger.ONE);
+
+    Assertions.assertEquals(2, c.calls.get());
+    Assertions.assertEquals(0L, p.statistics().hits());
+    Assertions.assertEquals(0L, p.statistics().misses());
+    Assertions.assertEquals(1.0, p.statistics().hitRate(), 1.0e-9);
+  }
+
+  @Test
+  public void testDeepArguments()
+  {
+    final String big =
+      "(define-value big (dbl (dbl (dbl (dbl (dbl (dbl (dbl (dbl (dbl "
+        + "(dbl (dbl (dbl (dbl (dbl (dbl (dbl (dbl (S Z)))))))))))))))))))\n";
+    final PJVMProgram j = PJVMProgram.create(this.resolve(
+      PROGRAM + big + big.replace("big", "big2")));
+    final PMemoizedProgram p =
+      PMemoizedProgram.create(j, configuration(100, "pred"));
+
+    final Object b0 = j.value("a.A", "big");
+    final Object b1 = j.value("a.A", "big2");
+    Assertions.assertNotSame(b0, b1);
+
+    final Object r0 = p.call("a.A", "pred", b0);
+    Assertions.assertSame(r0, p.call("a.A", "pred", b1));
+    Assertions.assertEquals(1L, p.statistics().hits());
+  }
+
+  private static void checkRecursive(
+    final PMemoizedProgram p)
+  {
+    final Object twenty = p.value("a.A", "twenty");
+    Assertions.assertEquals(20, natValue(twenty));
+    Assertions.assertEquals(6765, natValue(p.call("a.A", "fib", twenty)));
+
+    final PMemoizationStatistics s0 = p.statistics();
+    Assertions.assertEquals(21L, s0.misses());
+    Assertions.assertEquals(18L, s0.hits());
+
+    Assertions.assertEquals(6765, natValue(p.call("a.A", "fib", twenty)));
+    final PMemoizationStatistics s1 = p.statistics();
+    Assertions.assertEquals(21L, s1.misses());
+    Assertions.assertEquals(19L, s1.hits());
+  }
+
+  @Test
+  public void testRecursiveInterpreted()
+  {
+    checkRecursive(PMemoizedProgram.createInterpreted(
+      this.resolve(FIB), configuration(100, "fib")));
+  }
+
+  @Test
+  public void testRecursiveCompiled()
+  {
+    checkRecursive(PMemoizedProgram.createCompiled(
+      this.resolve(FIB), configuration(100, "fib")));
+  }
+
+  @Test
+  public void testInternalCallers()
+  {
+    final PMemoizedProgram p =
+      PMemoizedProgram.createCompiled(
+        this.resolve(FIB), configuration(100, "pred"));
+
+    final Object twenty = p.value("a.A", "twenty");
+    Assertions.assertEquals(38, natValue(p.call("a.A", "twice", twenty)));
+    Assertions.assertEquals(1L, p.statistics().misses());
+    Assertions.assertEquals(1L, p.statistics().hits());
+  }
+
+  @Test
+  public void testInternalNotFunction()
+  {
+    Assertions.assertThrows(
+      IllegalArgumentException.class,
+      () -> PMemoizedProgram.createInterpreted(
+        this.resolve(FIB), configuration(100, "twenty")));
+    Assertions.assertThrows(
+      IllegalArgumentException.class,
+      () -> PMemoizedProgram.createCompiled(
+        this.resolve(FIB), configuration(100, "nonexistent")));
+  }
+
+  @Test
+  public void testFrequentSurvivesScan()
+  {
+    final Counting c = new Counting(PInterpreter.create(this.resolve(PROGRAM)));
+    final PMemoizedProgram p =
+      PMemoizedProgram.create(c, configuration(100, "same"));
+
+    final PInteger hot = PInteger.of(-1L);
+    for (int index = 0; index < 10; ++index) {
+      p.call("a.A", "same", hot);
+    }
+    for (int index = 0; index < 10_000; ++index) {
+      p.call("a.A", "same", PInteger.of((long) index));
+      if (index % 100 == 0) {
+        p.call("a.A", "same", hot);
+      }
+    }
+
+    final PMemoizationStatistics s = p.statistics();
+    Assertions.assertEquals(9L + 100L, s.hits());
+    Assertions.assertEquals(1L + 10_000L, s.misses());
+    Assertions.assertTrue(s.evictions() >= 10_000L - 100L);
+  }
+
+  @Test
+  public void testConcurrent()
+    throws Exception
+  {
+    final PMemoizedProgram p =
+      PMemoizedProgram.create(
+        PInterpreter.create(this.resolve(PROGRAM)),
+        configuration(64, "wrap"));
+
+    final List<Future<?>> futures = new ArrayList<>(4);
+    for (int thread = 0; thread < 4; ++thread) {
+      futures.add(executor().submit(() -> {
+        for (int index = 0; index < 10_000; ++index) {
+          final PInteger x = PInteger.of((long) (index % 128));
+          Assertions.assertEquals(
+            "(Some " + x + ")", String.valueOf(p.call("a.A", "wrap", x)));
+        }
+      }));
+    }
+    for (final Future<?> f : futures) {
+      f.get();
+    }
+
+    final PMemoizationStatistics s = p.statistics();
+    Assertions.assertEquals(40_000L, s.hits() + s.misses());
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.tests.lsp;
+
+import com.io7m.jsx.lexer.JSXLexerSupplier;
+import com.io7m.jsx.parser.JSXParserSupplier;
+import com.io7m.polaris.ast.PDeclarationFunction;
+import com.io7m.polaris.ast.PExprApplication;
+import com.io7m.polaris.ast.PExprConstantString;
+import com.io7m.polaris.ast.PExprMatch;
+import com.io7m.polaris.ast.PTermVariableName;
+import com.io7m.polaris.lsp.PLSPDocument;
+import com.io7m.polaris.lsp.PLSPDocuments;
+import com.io7m.polaris.lsp.PLSPNode;
+import com.io7m.polaris.lsp.PLSPNodeIndex;
+import com.io7m.polaris.lsp.PLSPPosition;
+import com.io7m.polaris.parser.PParsers;
+import com.io7m.polaris.parser.api.PParserProviderType;
+import io.vavr.collection.Vector;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.Optional;
+import java.util.Random;
+
+public final class PLSPNodeIndexTest
+{
+  private static final URI DOCUMENT = URI.create("file:///tmp/a.p");
+
+  private static final String TEXT =
+    "(define-unit a.A)\n"
+      + "(define-function f (y z)\n"
+      + "  (match (g y) [case (C w) \"a ) b\"] [case _ z]))\n"
+      + "(define-value v M:x.y)\n";
+
+  private PParserProviderType parsers;
+
+  private static PLSPPosition at(
+    final int line,
+    final int character)
+  {
+    return PLSPPosition.of(line, character);
+  }
+
+  private PLSPNodeIndex index(
+    final String text)
+  {
+    final PLSPDocument document =
+      PLSPDocuments.analyse(this.parsers, DOCUMENT, 1, text);
+    Assertions.assertEquals(Vector.empty(), document.errors());
+    return document.nodes();
+  }
+
+  @BeforeEach
+  public void setup()
+  {
+    this.parsers =
+      PParsers.createWith(new JSXParserSupplier(), new JSXLexerSupplier());
+  }
+
+  @Test
+  public void testEmpty()
+  {
+    final PLSPNodeIndex index = this.index("");
+    Assertions.assertEquals(0, index.size());
+    Assertions.assertEquals(Optional.empty(), index.nodeAt(at(0, 0)));
+    Assertions.assertEquals(
+      Vector.empty(), index.nodesIn(at(0, 0), at(10, 10)));
+  }
+
+  @Test
+  public void testInnermost()
+  {
+    final PLSPNodeIndex index = this.index(TEXT);
+
+    final PLSPNode g = index.nodeAt(at(2, 10)).get();
+    Assertions.assertEquals(PTermVariableName.class, g.node().getClass());
+    Assertions.assertEquals(at(2, 10), g.start());
+    Assertions.assertEquals(at(2, 11), g.end());
+
+    final PLSPNode a = index.nodeAt(at(2, 9)).get();
+    Assertions.assertEquals(PExprApplication.class, a.node().getClass());
+    Assertions.assertEquals(at(2, 9), a.start());
+    Assertions.assertEquals(at(2, 14), a.end());
+
+    final PLSPNode s = index.nodeAt(at(2, 30)).get();
+    Assertions.assertEquals(PExprConstantString.class, s.node().getClass());
+    Assertions.assertEquals(at(2, 27), s.start());
+    Assertions.assertEquals(at(2, 34), s.end());
+
+    final PLSPNode m = index.nodeAt(at(2, 14)).get();
+    Assertions.assertEquals(PExprMatch.class, m.node().getClass());
+    Assertions.assertEquals(at(2, 2), m.start());
+    Assertions.assertEquals(at(2, 47), m.end());
+
+    final PLSPNode f = index.nodeAt(at(2, 0)).get();
+    Assertions.assertEquals(PDeclarationFunction.class, f.node().getClass());
+    Assertions.assertEquals(at(1, 0), f.start());
+    Assertions.assertEquals(at(2, 48), f.end());
+
+    Assertions.assertEquals(Optional.empty(), index.nodeAt(at(0, 17)));
+    Assertions.assertEquals(Optional.empty(), index.nodeAt(at(9, 0)));
+  }
+
+  @Test
+  public void testQualifiedComponents()
+  {
+    final PLSPNodeIndex index = this.index(TEXT);
+
+    final PLSPNode x = index.nodeAt(at(3, 18)).get();
+    Assertions.assertEquals(
+      "x", ((PTermVariableName<?>) x.node()).value());
+    Assertions.assertEquals(at(3, 18), x.start());
+    Assertions.assertEquals(at(3, 19), x.end());
+
+    final PLSPNode y = index.nodeAt(at(3, 20)).get();
+    Assertions.assertEquals(
+      "y", ((PTermVariableName<?>) y.node()).value());
+    Assertions.assertEquals(at(3, 20), y.start());
+    Assertions.assertEquals(at(3, 21), y.end());
+  }
+
+  @Test
+  public void testRange()
+  {
+    final PLSPNodeIndex index = this.index(TEXT);
+
+    final Vector<PLSPNode> nodes = index.nodesIn(at(2, 9), at(2, 14));
+    Assertions.assertEquals(
+      PDeclarationFunction.class, nodes.get(0).node().getClass());
+    Assertions.assertEquals(PExprMatch.class, nodes.get(1).node().getClass());
+    Assertions.assertEquals(
+      PExprApplication.class, nodes.get(2).node().getClass());
+    Assertions.assertTrue(nodes.forAll(
+      n -> n.start().compareTo(at(2, 14)) < 0
+        && n.end().compareTo(at(2, 9)) > 0));
+    Assertions.assertEquals(
+      nodes, nodes.sortBy(n -> n.start().line() * 1000 + n.start().character()));
+
+    Assertions.assertEquals(Vector.empty(), index.nodesIn(at(2, 9), at(2, 9)));
+    Assertions.assertEquals(
+      index.size(), index.nodesIn(at(0, 0), at(10, 0)).size());
+  }
+
+  @Test
+  public void testMatchesLinearScan()
+  {
+    final StringBuilder text = new StringBuilder(1 << 16);
+    final Random random = new Random(0x5eedL);
+    for (int form = 0; form < 50; ++form) {
+      final int depth = random.nextInt(100);
+      text.append("(define-value v").append(form).append('\n');
+      for (int level = 0; level < depth; ++level) {
+        text.append(" (lambda (a").append(level).append(')');
+        if (random.nextBoolean()) {
+          text.append('\n');
+        }
+      }
+      text.append(" (g a0 \"s\" 23)");
+      for (int level = 0; level < depth; ++level) {
+        text.append(')');
+      }
+      text.append(")\n");
+    }
+
+    final PLSPNodeIndex index = this.index(text.toString());
+    final Vector<PLSPNode> all = index.nodesIn(at(0, 0), at(100000, 0));
+    Assertions.assertEquals(index.size(), all.size());
+
+    final String[] lines = text.toString().split("\n", -1);
+    for (int check = 0; check < 2000; ++check) {
+      final int line = random.nextInt(lines.length);
+      final PLSPPosition p =
+        at(line, random.nextInt(lines[line].length() + 1));
+      final Optional<PLSPNode> expected =
+        all.filter(n -> n.start().compareTo(p) <= 0 && n.end().compareTo(p) > 0)
+          .lastOption()
+          .toJavaOptional();
+      Assertions.assertEquals(expected, index.nodeAt(p), p.toString());
+    }
+
+    for (int check = 0; check < 200; ++check) {
+      final int line = random.nextInt(lines.length);
+      final PLSPPosition p0 =
+        at(line, random.nextInt(lines[line].length() + 1));
+      final PLSPPosition p1 =
+        at(line + random.nextInt(3), random.nextInt(20));
+      final Vector<PLSPNode> expected =
+        all.filter(n -> n.start().compareTo(p1) < 0 && n.end().compareTo(p0) > 0);
+      Assertions.assertEquals(
+        p0.compareTo(p1) < 0 ? expected : Vector.empty(),
+        index.nodesIn(p0, p1),
+        p0 + " " + p1);
+    }
+  }
+}
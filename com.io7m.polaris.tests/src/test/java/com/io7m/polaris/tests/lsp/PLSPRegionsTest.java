@@ -0,0 +1,319 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.tests.lsp;
+
+import com.io7m.jsx.lexer.JSXLexerSupplier;
+import com.io7m.jsx.parser.JSXParserSupplier;
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.lsp.PLSPDocument;
+import com.io7m.polaris.lsp.PLSPDocuments;
+import com.io7m.polaris.lsp.PLSPNode;
+import com.io7m.polaris.lsp.PLSPPosition;
+import com.io7m.polaris.lsp.PLSPSymbols;
+import com.io7m.polaris.parser.PParsers;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.parser.api.PParserProviderType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Random;
+
+import static com.io7m.polaris.parser.PPrettyPrinter.print;
+
+public final class PLSPRegionsTest
+{
+  private static final URI DOCUMENT = URI.create("file:///tmp/a.p");
+
+  private static final String TEXT =
+    "(define-unit a.A)\n"
+      + "; a comment ( with [ brackets\n"
+      + "(define-function f (y z)\n"
+      + "  (match (g y) [case (C w) \"a ) b\"] [case _ z]))\n"
+      + "(define-value v M:x.y)\n"
+      + "  (define-value w)\n"
+      + "(define-value s \"a string\n"
+      + "(that spans\n"
+      + "lines\")\n"
+      + "(define-value a;b 23)\n"
+      + "(define-function h (o)\n"
+      + "  (match o\n"
+      + "    [case None 0]\n"
+      + "    [case (Some x) x]))\n"
+      + "\n"
+      + "(define-value t (f 1 2))\n";
+
+  private static final String[] SNIPPETS = {
+    "(",
+    ")",
+    "[",
+    "]",
+    "\"",
+    "\\",
+    ";",
+    " ",
+    "\n",
+    "\t",
+    "x",
+    "a;b",
+    "(f x)",
+    "(define-value q 1)\n",
+    "(define-function k (x)\n  (f x))\n",
+  };
+
+  private PParserProviderType parsers;
+
+  /**
+   * Describe everything that the server derives from a document, in terms
+   * that do not depend on the identifiers or lexical lines of the parsed
+   * elements.
+   */
+
+  private static String describe(
+    final PLSPDocument document)
+    throws IOException
+  {
+    final StringWriter writer = new StringWriter();
+    for (final PExpressionOrDeclarationType<PParsed> form : document.forms()) {
+      print(writer, form);
+    }
+    writer.write(PLSPDocuments.diagnostics(document).toString());
+    writer.write('\n');
+    writer.write(PLSPSymbols.symbols(document).toString());
+    writer.write('\n');
+    for (final PLSPNode node : document.nodes().nodesIn(
+      PLSPPosition.of(0, 0), PLSPPosition.of(Integer.MAX_VALUE, 0))) {
+      writer.write(node.node().getClass().getSimpleName());
+      writer.write(node.start().toString());
+      writer.write(node.end().toString());
+      writer.write('\n');
+    }
+    return writer.toString();
+  }
+
+  private PLSPDocument check(
+    final PLSPDocument previous,
+    final String text)
+    throws IOException
+  {
+    final PLSPDocument incremental =
+      PLSPDocuments.analyse(this.parsers, previous, 1, text);
+    final PLSPDocument full =
+      PLSPDocuments.analyse(this.parsers, DOCUMENT, 1, text);
+    Assertions.assertEquals(text, incremental.text());
+    Assertions.assertEquals(full.forms().size(), incremental.forms().size());
+    Assertions.assertEquals(full.errors().size(), incremental.errors().size());
+    Assertions.assertEquals(describe(full), describe(incremental));
+    return incremental;
+  }
+
+  private static String generate(
+    final int lines)
+  {
+    final StringBuilder sb = new StringBuilder(lines * 48);
+    sb.append("(define-unit b.B)\n");
+    for (int index = 1; index < lines; ++index) {
+      switch (index % 4) {
+        case 0: {
+          sb.append("(define-function f").append(index)
+            .append(" (x y) (g x y))\n");
+          break;
+        }
+        case 1: {
+          sb.append("(define-value v").append(index).append(" (Some 23))\n");
+          break;
+        }
+        case 2: {
+          sb.append("  (define-value w").append(index).append(")\n");
+          break;
+        }
+        default: {
+          sb.append("(define-function h").append(index)
+            .append(" (o) (match o [case None 0] [case (Some x) x]))\n");
+          break;
+        }
+      }
+    }
+    return sb.toString();
+  }
+
+  @BeforeEach
+  public void setup()
+  {
+    this.parsers =
+      PParsers.createWith(new JSXParserSupplier(), new JSXLexerSupplier());
+  }
+
+  @Test
+  public void testUnchanged()
+    throws Exception
+  {
+    final PLSPDocument document =
+      PLSPDocuments.analyse(this.parsers, DOCUMENT, 1, TEXT);
+    final PLSPDocument next = this.check(document, TEXT);
+    Assertions.assertSame(
+      document.forms().get(0), next.forms().get(0));
+    Assertions.assertSame(
+      document.forms().last(), next.forms().last());
+  }
+
+  @Test
+  public void testReusesUnchangedForms()
+    throws Exception
+  {
+    final PLSPDocument document =
+      PLSPDocuments.analyse(this.parsers, DOCUMENT, 1, TEXT);
+    final PLSPDocument next = this.check(
+      document, TEXT.replace("(define-value v M:x.y)", "(define-value v 23)"));
+    Assertions.assertSame(
+      document.forms().get(0), next.forms().get(0));
+    Assertions.assertNotSame(
+      document.forms().get(2), next.forms().get(2));
+    Assertions.assertSame(
+      document.forms().last(), next.forms().last());
+  }
+
+  @Test
+  public void testLinesInsertedAndRemoved()
+    throws Exception
+  {
+    PLSPDocument document =
+      PLSPDocuments.analyse(this.parsers, DOCUMENT, 1, TEXT);
+    final String inserted =
+      "(define-value u 1)\n\n(define-value u 2)\n  (define-value u)\n";
+
+    String text = TEXT;
+    for (int index = 0; index < 4; ++index) {
+      final int offset = text.indexOf("(define-value v");
+      text = text.substring(0, offset) + inserted + text.substring(offset);
+      document = this.check(document, text);
+    }
+    for (int index = 0; index < 4; ++index) {
+      text = text.replaceFirst(
+        inserted.replace("(", "\\(").replace(")", "\\)"), "");
+      document = this.check(document, text);
+    }
+    document = this.check(document, inserted + text);
+    document = this.check(document, text + inserted);
+    document = this.check(document, "");
+    this.check(document, TEXT);
+  }
+
+  @Test
+  public void testUnclosedThenRepaired()
+    throws Exception
+  {
+    PLSPDocument document =
+      PLSPDocuments.analyse(this.parsers, DOCUMENT, 1, TEXT);
+
+    final int offset = TEXT.indexOf("(define-value v");
+    final String[] edits = {
+      "(",
+      "(define-value",
+      "(define-value x",
+      "(define-value x [",
+      "(define-value x [)",
+      "(define-value x ])",
+      "(define-value x \"",
+      "(define-value x \"\\\"",
+      "(define-value x 1)",
+      "(define-value x 1)\n",
+      "",
+    };
+
+    for (final String edit : edits) {
+      document = this.check(
+        document, TEXT.substring(0, offset) + edit + TEXT.substring(offset));
+    }
+    for (final String edit : edits) {
+      document = this.check(document, TEXT + edit);
+    }
+  }
+
+  @Test
+  public void testRandomEdits()
+    throws Exception
+  {
+    final Random random = new Random(0x5eedL);
+
+    PLSPDocument document =
+      PLSPDocuments.analyse(this.parsers, DOCUMENT, 1, TEXT);
+    String text = TEXT;
+
+    for (int edit = 0; edit < 2000; ++edit) {
+      final int start = random.nextInt(text.length() + 1);
+      final int end =
+        Math.min(text.length(), start + random.nextInt(6));
+
+      final StringBuilder insert = new StringBuilder(32);
+      final int count = random.nextInt(4);
+      for (int index = 0; index < count; ++index) {
+        insert.append(SNIPPETS[random.nextInt(SNIPPETS.length)]);
+      }
+
+      text = text.substring(0, start) + insert + text.substring(end);
+      if (text.length() > 4 * TEXT.length() || random.nextInt(100) == 0) {
+        text = TEXT;
+      }
+      document = this.check(document, text);
+    }
+  }
+
+  /**
+   * Edits to a document of 10000 lines should be analysed, and their
+   * diagnostics produced, in under 20 milliseconds on average, whereas a
+   * full analysis takes several times as long.
+   */
+
+  @Test
+  public void testLargeDocumentEdits()
+  {
+    final String text = generate(10000);
+    final Random random = new Random(0x5eedL);
+    final PLSPDocument initial =
+      PLSPDocuments.analyse(this.parsers, DOCUMENT, 1, text);
+    final PLSPDocument warm = this.edits(random, initial, 200);
+
+    Assertions.assertTimeout(
+      Duration.ofSeconds(2L), () -> this.edits(random, warm, 100));
+  }
+
+  private PLSPDocument edits(
+    final Random random,
+    final PLSPDocument initial,
+    final int count)
+  {
+    PLSPDocument document = initial;
+    for (int edit = 0; edit < count; ++edit) {
+      final String current = document.text();
+      final int offset = random.nextInt(current.length());
+      final String insert = (edit % 2 == 0) ? "(define-value e 1) " : "x ";
+      document = PLSPDocuments.analyse(
+        this.parsers,
+        document,
+        document.version() + 1,
+        current.substring(0, offset) + insert + current.substring(offset));
+      PLSPDocuments.diagnostics(document);
+    }
+    return document;
+  }
+}
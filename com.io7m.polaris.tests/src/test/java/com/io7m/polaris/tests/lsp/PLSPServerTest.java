@@ -0,0 +1,356 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.tests.lsp;
+
+import com.io7m.jsx.lexer.JSXLexerSupplier;
+import com.io7m.jsx.parser.JSXParserSupplier;
+import com.io7m.polaris.lsp.PLSPDocument;
+import com.io7m.polaris.lsp.PLSPDocuments;
+import com.io7m.polaris.lsp.PLSPServer;
+import com.io7m.polaris.lsp.PLSPServerConfiguration;
+import com.io7m.polaris.parser.PParsers;
+import com.io7m.polaris.parser.api.PParseErrorCode;
+import com.io7m.polaris.parser.api.PParserProviderType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public final class PLSPServerTest
+{
+  private static final URI DOCUMENT = URI.create("file:///tmp/a.p");
+
+  private static final String VALID =
+    "(define-unit a.A)\n"
+      + "(define-value x 23)\n"
+      + "(define-function f (y) y)\n";
+
+  private static final String INVALID =
+    "(define-unit a.A)\n"
+      + "(define-value x 23)\n"
+      + "(define-value)\n"
+      + "(define-function f (y) y)\n";
+
+  private ExecutorService executor;
+  private PParserProviderType parsers;
+  private PipedOutputStream client_output;
+  private InputStream client_input;
+  private PLSPServer server;
+  private Future<Boolean> running;
+
+  private static String escape(
+    final String text)
+  {
+    return text.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  private void start(
+    final Duration debounce)
+    throws IOException
+  {
+    final PipedInputStream server_input = new PipedInputStream(1 << 16);
+    this.client_output = new PipedOutputStream(server_input);
+    final PipedOutputStream server_output = new PipedOutputStream();
+    this.client_input = new PipedInputStream(server_output, 1 << 16);
+
+    this.server =
+      PLSPServer.create(
+        PLSPServerConfiguration.builder()
+          .setParsers(this.parsers)
+          .setDebounce(debounce)
+          .build(),
+        server_input,
+        server_output);
+    this.running = this.executor.submit(() -> this.server.run());
+  }
+
+  private void send(
+    final String message)
+    throws IOException
+  {
+    final byte[] content = message.getBytes(StandardCharsets.UTF_8);
+    this.client_output.write(
+      ("Content-Length: " + content.length + "\r\n\r\n")
+        .getBytes(StandardCharsets.US_ASCII));
+    this.client_output.write(content);
+    this.client_output.flush();
+  }
+
+  private String receive()
+    throws IOException
+  {
+    final ByteArrayOutputStream header = new ByteArrayOutputStream();
+    while (true) {
+      final int c = this.client_input.read();
+      Assertions.assertNotEquals(-1, c);
+      header.write(c);
+      final String text = header.toString("US-ASCII");
+      if (text.endsWith("\r\n\r\n")) {
+        final int length = Integer.parseInt(
+          text.substring("Content-Length: ".length(), text.indexOf('\r')));
+        final byte[] content = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+          final int r = this.client_input.read(content, offset, length - offset);
+          Assertions.assertNotEquals(-1, r);
+          offset += r;
+        }
+        return new String(content, StandardCharsets.UTF_8);
+      }
+    }
+  }
+
+  private void open(
+    final String text)
+    throws IOException
+  {
+    this.send(
+      "{\"jsonrpc\":\"2.0\",\"method\":\"textDocument/didOpen\",\"params\":"
+        + "{\"textDocument\":{\"uri\":\"" + DOCUMENT + "\",\"languageId\":\"polaris\","
+        + "\"version\":1,\"text\":\"" + escape(text) + "\"}}}");
+  }
+
+  private void change(
+    final int version,
+    final String text)
+    throws IOException
+  {
+    this.send(
+      "{\"jsonrpc\":\"2.0\",\"method\":\"textDocument/didChange\",\"params\":"
+        + "{\"textDocument\":{\"uri\":\"" + DOCUMENT + "\",\"version\":" + version
+        + "},\"contentChanges\":[{\"text\":\"" + escape(text) + "\"}]}}");
+  }
+
+  private void exit()
+    throws Exception
+  {
+    this.send("{\"jsonrpc\":\"2.0\",\"id\":99,\"method\":\"shutdown\"}");
+    Assertions.assertEquals(
+      "{\"jsonrpc\":\"2.0\",\"id\":99,\"result\":null}", this.receive());
+    this.send("{\"jsonrpc\":\"2.0\",\"method\":\"exit\"}");
+    Assertions.assertTrue(this.running.get(10L, TimeUnit.SECONDS).booleanValue());
+  }
+
+  @BeforeEach
+  public void setup()
+  {
+    this.executor = Executors.newFixedThreadPool(2);
+    this.parsers =
+      PParsers.createWith(new JSXParserSupplier(), new JSXLexerSupplier());
+  }
+
+  /**
+   * The workspace index is updated after diagnostics are published, so wait
+   * for the given name to be indexed at the given line.
+   */
+
+  private void awaitIndexed(
+    final String name,
+    final int line)
+    throws InterruptedException
+  {
+    for (int attempt = 0; attempt < 500; ++attempt) {
+      if (this.server.workspace().prefix(name, 16)
+        .exists(s -> s.name().equals(name) && s.position().line() == line)) {
+        return;
+      }
+      Thread.sleep(10L);
+    }
+    Assertions.fail("Name was not indexed: " + name);
+  }
+
+  @AfterEach
+  public void tearDown()
+  {
+    if (this.server != null) {
+      this.server.close();
+    }
+    this.executor.shutdownNow();
+  }
+
+  @Test
+  public void testAnalyse()
+  {
+    final PLSPDocument d =
+      PLSPDocuments.analyse(this.parsers, DOCUMENT, 3, INVALID);
+
+    Assertions.assertEquals(DOCUMENT, d.uri());
+    Assertions.assertEquals(3, d.version());
+    Assertions.assertEquals(3, d.forms().size());
+    Assertions.assertEquals(1, d.errors().size());
+    Assertions.assertEquals(3, d.errors().get(0).lexical().line());
+  }
+
+  @Test
+  public void testDiagnosticsAfterDriftedColumns()
+  {
+    final PLSPDocument d =
+      PLSPDocuments.analyse(
+        this.parsers, DOCUMENT, 1, "(define-value x (f y)) (define-value)\n");
+
+    Assertions.assertEquals(1, d.errors().size());
+    Assertions.assertEquals(25, d.errors().get(0).lexical().column());
+
+    final Map<?, ?> diagnostic = (Map<?, ?>)
+      ((List<?>) PLSPDocuments.diagnostics(d).get("diagnostics")).get(0);
+    final Map<?, ?> range = (Map<?, ?>) diagnostic.get("range");
+    final Map<?, ?> start = (Map<?, ?>) range.get("start");
+    Assertions.assertEquals(Long.valueOf(0L), start.get("line"));
+    Assertions.assertEquals(Long.valueOf(23L), start.get("character"));
+  }
+
+  @Test
+  public void testAnalyseStopsAtSExpressionErrors()
+  {
+    final PLSPDocument d =
+      PLSPDocuments.analyse(
+        this.parsers, DOCUMENT, 1, "(define-value x 23)\n(define-value y\n");
+
+    Assertions.assertEquals(1, d.forms().size());
+    Assertions.assertEquals(1, d.errors().size());
+    Assertions.assertEquals(
+      PParseErrorCode.INVALID_S_EXPRESSION, d.errors().get(0).code());
+  }
+
+  @Test
+  public void testSession()
+    throws Exception
+  {
+    this.start(Duration.ZERO);
+
+    this.send(
+      "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"initialize\",\"params\":{}}");
+    Assertions.assertEquals(
+      "{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":{\"capabilities\":"
+        + "{\"textDocumentSync\":1,\"workspaceSymbolProvider\":true},"
+        + "\"serverInfo\":{\"name\":\"polaris\"}}}",
+      this.receive());
+    this.send("{\"jsonrpc\":\"2.0\",\"method\":\"initialized\",\"params\":{}}");
+
+    this.open(INVALID);
+    final String d0 = this.receive();
+    Assertions.assertTrue(
+      d0.contains("\"method\":\"textDocument/publishDiagnostics\""), d0);
+    Assertions.assertTrue(d0.contains("\"version\":1"), d0);
+    Assertions.assertTrue(
+      d0.contains("\"range\":{\"start\":{\"line\":2,\"character\":0}"), d0);
+    Assertions.assertTrue(d0.contains("\"severity\":1"), d0);
+    Assertions.assertEquals(3, this.server.document(DOCUMENT).get().forms().size());
+
+    this.change(2, VALID);
+    final String d1 = this.receive();
+    Assertions.assertTrue(d1.contains("\"version\":2"), d1);
+    Assertions.assertTrue(d1.contains("\"diagnostics\":[]"), d1);
+    Assertions.assertEquals(2, this.server.document(DOCUMENT).get().version());
+
+    this.awaitIndexed("f", 2);
+    this.send("{\"jsonrpc\":\"2.0\",\"id\":3,\"method\":\"workspace/symbol\","
+                + "\"params\":{\"query\":\"f\"}}");
+    Assertions.assertEquals(
+      "{\"jsonrpc\":\"2.0\",\"id\":3,\"result\":[{\"name\":\"f\",\"kind\":12,"
+        + "\"location\":{\"uri\":\"" + DOCUMENT + "\",\"range\":"
+        + "{\"start\":{\"line\":2,\"character\":17},"
+        + "\"end\":{\"line\":2,\"character\":18}}}}]}",
+      this.receive());
+
+    this.send("{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"textDocument/hover\"}");
+    final String e = this.receive();
+    Assertions.assertTrue(e.contains("\"id\":2"), e);
+    Assertions.assertTrue(e.contains("\"code\":-32601"), e);
+
+    this.send("{\"jsonrpc\":\"2.0\",\"method\":\"textDocument/didClose\","
+                + "\"params\":{\"textDocument\":{\"uri\":\"" + DOCUMENT + "\"}}}");
+    Assertions.assertEquals(
+      "{\"jsonrpc\":\"2.0\",\"method\":\"textDocument/publishDiagnostics\","
+        + "\"params\":{\"uri\":\"" + DOCUMENT + "\",\"diagnostics\":[]}}",
+      this.receive());
+    Assertions.assertFalse(this.server.document(DOCUMENT).isPresent());
+
+    this.exit();
+  }
+
+  @Test
+  public void testSupersededEditsAreNotPublished()
+    throws Exception
+  {
+    this.start(Duration.ofMillis(200L));
+
+    this.open(INVALID);
+    for (int version = 2; version <= 10; ++version) {
+      this.change(version, version % 2 == 0 ? VALID : INVALID);
+    }
+
+    final String d = this.receive();
+    Assertions.assertTrue(d.contains("\"version\":10"), d);
+    Assertions.assertTrue(d.contains("\"diagnostics\":[]"), d);
+    this.exit();
+  }
+
+  @Test
+  public void testMalformed()
+    throws Exception
+  {
+    this.start(Duration.ZERO);
+
+    this.send("{\"jsonrpc\":");
+    final String e0 = this.receive();
+    Assertions.assertTrue(e0.contains("\"id\":null"), e0);
+    Assertions.assertTrue(e0.contains("\"code\":-32700"), e0);
+
+    this.send(
+      "{\"jsonrpc\":\"2.0\",\"id\":\"x\",\"method\":\"textDocument/didOpen\","
+        + "\"params\":{\"textDocument\":{}}}");
+    final String e1 = this.receive();
+    Assertions.assertTrue(e1.contains("\"id\":\"x\""), e1);
+    Assertions.assertTrue(e1.contains("\"code\":-32602"), e1);
+
+    this.exit();
+  }
+
+  @Test
+  public void testLargeDocument()
+  {
+    final StringBuilder sb = new StringBuilder(10_000 * 32);
+    sb.append("(define-unit a.A)\n");
+    for (int index = 0; index < 10_000; ++index) {
+      sb.append("(define-function f");
+      sb.append(index);
+      sb.append(" (x y) (g x y))\n");
+    }
+    final PLSPDocument d =
+      PLSPDocuments.analyse(this.parsers, DOCUMENT, 1, sb.toString());
+    Assertions.assertEquals(10_001, d.forms().size());
+    Assertions.assertEquals(0, d.errors().size());
+  }
+}
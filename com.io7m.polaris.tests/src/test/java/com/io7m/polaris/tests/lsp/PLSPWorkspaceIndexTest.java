@@ -0,0 +1,392 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.tests.lsp;
+
+import com.io7m.jsx.lexer.JSXLexerSupplier;
+import com.io7m.jsx.parser.JSXParserSupplier;
+import com.io7m.polaris.lsp.PLSPDocument;
+import com.io7m.polaris.lsp.PLSPDocuments;
+import com.io7m.polaris.lsp.PLSPPosition;
+import com.io7m.polaris.lsp.PLSPSymbol;
+import com.io7m.polaris.lsp.PLSPSymbolKind;
+import com.io7m.polaris.lsp.PLSPSymbols;
+import com.io7m.polaris.lsp.PLSPWorkspaceIndex;
+import com.io7m.polaris.parser.PParsers;
+import com.io7m.polaris.parser.api.PParserProviderType;
+import io.vavr.collection.Vector;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+public final class PLSPWorkspaceIndexTest
+{
+  private static final URI A = URI.create("file:///tmp/a.p");
+  private static final URI B = URI.create("file:///tmp/b.p");
+
+  private static final Comparator<PLSPSymbol> ORDER =
+    Comparator.comparing(PLSPSymbol::name)
+      .thenComparing(s -> s.uri().toString())
+      .thenComparing(PLSPSymbol::position);
+
+  private PParserProviderType parsers;
+
+  private static PLSPSymbol symbol(
+    final URI uri,
+    final String name,
+    final int line)
+  {
+    return PLSPSymbol.of(
+      name, PLSPSymbolKind.TERM_VALUE, uri, PLSPPosition.of(line, 0));
+  }
+
+  private static Vector<String> names(
+    final Vector<PLSPSymbol> symbols)
+  {
+    return symbols.map(PLSPSymbol::name);
+  }
+
+  private static PLSPWorkspaceIndex example()
+  {
+    final PLSPWorkspaceIndex index = PLSPWorkspaceIndex.create();
+    index.update(A, Vector.of(
+      symbol(A, "colour", 0),
+      symbol(A, "color", 1),
+      symbol(A, "collect", 2),
+      symbol(A, "map", 3)));
+    index.update(B, Vector.of(
+      symbol(B, "column", 0),
+      symbol(B, "map", 1),
+      symbol(B, "mapM", 2)));
+    return index;
+  }
+
+  /**
+   * The smallest number of edits that transform some prefix of
+   * {@code name} into {@code query}.
+   */
+
+  private static int prefixDistance(
+    final String name,
+    final String query)
+  {
+    int[] previous = new int[query.length() + 1];
+    for (int j = 0; j <= query.length(); ++j) {
+      previous[j] = j;
+    }
+    int best = previous[query.length()];
+    for (int i = 1; i <= name.length(); ++i) {
+      final int[] row = new int[query.length() + 1];
+      row[0] = i;
+      for (int j = 1; j <= query.length(); ++j) {
+        final int cost = name.charAt(i - 1) == query.charAt(j - 1) ? 0 : 1;
+        row[j] = Math.min(
+          Math.min(previous[j] + 1, row[j - 1] + 1), previous[j - 1] + cost);
+      }
+      best = Math.min(best, row[query.length()]);
+      previous = row;
+    }
+    return best;
+  }
+
+  private static String randomName(
+    final Random random)
+  {
+    final int length = 1 + random.nextInt(6);
+    final StringBuilder sb = new StringBuilder(length);
+    for (int index = 0; index < length; ++index) {
+      sb.append((char) ('a' + random.nextInt(4)));
+    }
+    return sb.toString();
+  }
+
+  @BeforeEach
+  public void setup()
+  {
+    this.parsers =
+      PParsers.createWith(new JSXParserSupplier(), new JSXLexerSupplier());
+  }
+
+  @Test
+  public void testSymbols()
+  {
+    final PLSPDocument document =
+      PLSPDocuments.analyse(
+        this.parsers,
+        A,
+        1,
+        "(define-unit a.A)\n"
+          + "(: pi Real)\n"
+          + "(define-value pi 3)\n"
+          + "(define-function f (y) y)\n"
+          + "(define-record Box [field value Integer] [field label String])\n"
+          + "(define-variant Colour [case Red] [case Green Integer])\n");
+    Assertions.assertEquals(Vector.empty(), document.errors());
+
+    Assertions.assertEquals(
+      Vector.of(
+        PLSPSymbol.of("pi", PLSPSymbolKind.TERM_SIGNATURE, A, PLSPPosition.of(1, 3)),
+        PLSPSymbol.of("pi", PLSPSymbolKind.TERM_VALUE, A, PLSPPosition.of(2, 14)),
+        PLSPSymbol.of("f", PLSPSymbolKind.TERM_FUNCTION, A, PLSPPosition.of(3, 17)),
+        PLSPSymbol.of("Box", PLSPSymbolKind.TYPE_RECORD, A, PLSPPosition.of(4, 15)),
+        PLSPSymbol.of("value", PLSPSymbolKind.RECORD_FIELD, A, PLSPPosition.of(4, 26)),
+        PLSPSymbol.of("label", PLSPSymbolKind.RECORD_FIELD, A, PLSPPosition.of(4, 48)),
+        PLSPSymbol.of("Colour", PLSPSymbolKind.TYPE_VARIANT, A, PLSPPosition.of(5, 16)),
+        PLSPSymbol.of("Red", PLSPSymbolKind.CONSTRUCTOR, A, PLSPPosition.of(5, 29)),
+        PLSPSymbol.of("Green", PLSPSymbolKind.CONSTRUCTOR, A, PLSPPosition.of(5, 40))),
+      PLSPSymbols.symbols(document));
+  }
+
+  @Test
+  public void testPrefix()
+  {
+    final PLSPWorkspaceIndex index = example();
+
+    Assertions.assertEquals(7, index.size());
+    Assertions.assertEquals(
+      Vector.of("collect", "color", "colour", "column"),
+      names(index.prefix("col", 10)));
+    Assertions.assertEquals(
+      Vector.of("color", "colour"), names(index.prefix("colo", 10)));
+    Assertions.assertEquals(
+      Vector.of("map", "map", "mapM"), names(index.prefix("map", 10)));
+    Assertions.assertEquals(
+      Vector.of("collect", "color"), names(index.prefix("", 2)));
+    Assertions.assertEquals(Vector.empty(), index.prefix("colx", 10));
+    Assertions.assertEquals(Vector.empty(), index.prefix("columns", 10));
+    Assertions.assertEquals(Vector.empty(), index.prefix("col", 0));
+  }
+
+  @Test
+  public void testFuzzy()
+  {
+    final PLSPWorkspaceIndex index = example();
+
+    Assertions.assertEquals(
+      Vector.of("color"), names(index.fuzzy("culor", 1, 10)));
+    Assertions.assertEquals(
+      Vector.of("color", "colour"), names(index.fuzzy("culor", 2, 10)));
+    Assertions.assertEquals(
+      Vector.of("collect", "color", "colour", "column"),
+      names(index.fuzzy("coll", 1, 10)));
+    Assertions.assertEquals(
+      Vector.of("map", "map", "mapM"), names(index.fuzzy("nap", 1, 10)));
+    Assertions.assertEquals(Vector.empty(), index.fuzzy("nap", 0, 10));
+    Assertions.assertEquals(7, index.fuzzy("xy", 2, 10).size());
+  }
+
+  @Test
+  public void testUpdateRemove()
+    throws IOException
+  {
+    final Path file = Files.createTempFile("polaris-", ".idx");
+    try {
+      example().write(file);
+      final PLSPWorkspaceIndex index = PLSPWorkspaceIndex.open(file);
+      Assertions.assertEquals(7, index.size());
+
+      index.update(B, Vector.of(symbol(B, "colossal", 0)));
+      Assertions.assertEquals(5, index.size());
+      Assertions.assertEquals(
+        Vector.of("collect", "color", "colossal", "colour"),
+        names(index.prefix("col", 10)));
+      Assertions.assertEquals(Vector.of("map"), names(index.prefix("map", 10)));
+
+      index.update(B, Vector.of(symbol(B, "mapM", 0)));
+      Assertions.assertEquals(
+        Vector.of("map", "mapM"), names(index.prefix("map", 10)));
+
+      index.remove(A);
+      Assertions.assertEquals(1, index.size());
+      Assertions.assertEquals(Vector.of("mapM"), names(index.prefix("", 10)));
+
+      index.remove(B);
+      Assertions.assertEquals(0, index.size());
+      Assertions.assertEquals(Vector.empty(), index.fuzzy("map", 1, 10));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  public void testWriteOpen()
+    throws IOException
+  {
+    final Path file = Files.createTempFile("polaris-", ".idx");
+    try {
+      final PLSPWorkspaceIndex index = example();
+      index.remove(B);
+      index.write(file);
+
+      final PLSPWorkspaceIndex opened = PLSPWorkspaceIndex.open(file);
+      Assertions.assertEquals(4, opened.size());
+      Assertions.assertEquals(index.prefix("", 10), opened.prefix("", 10));
+      Assertions.assertEquals(
+        symbol(A, "color", 1), opened.prefix("color", 1).get(0));
+
+      final byte[] data = Files.readAllBytes(file);
+      Files.write(file, Arrays.copyOf(data, data.length - 1));
+      Assertions.assertThrows(
+        IOException.class, () -> PLSPWorkspaceIndex.open(file));
+
+      data[0] = (byte) 0;
+      Files.write(file, data);
+      Assertions.assertThrows(
+        IOException.class, () -> PLSPWorkspaceIndex.open(file));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  public void testCompaction()
+  {
+    final PLSPWorkspaceIndex index = example();
+
+    Vector<PLSPSymbol> symbols = Vector.empty();
+    for (int line = 0; line < 20000; ++line) {
+      symbols = symbols.append(symbol(B, "v" + line, line));
+    }
+    index.update(B, symbols);
+    Assertions.assertEquals(20004, index.size());
+    Assertions.assertEquals(
+      Vector.of("v1999", "v19990", "v19991"), names(index.prefix("v1999", 3)));
+
+    index.update(B, Vector.of(symbol(B, "map", 0)));
+    Assertions.assertEquals(5, index.size());
+    Assertions.assertEquals(Vector.empty(), index.prefix("v", 10));
+  }
+
+  @Test
+  public void testLargeUnitUpdates()
+  {
+    final PLSPWorkspaceIndex index = PLSPWorkspaceIndex.create();
+    for (int unit = 0; unit < 8; ++unit) {
+      final URI uri = URI.create("file:///tmp/u" + unit + ".p");
+      Vector<PLSPSymbol> symbols = Vector.empty();
+      for (int line = 0; line < 20000; ++line) {
+        symbols = symbols.append(symbol(uri, "u" + unit + "_" + line, line));
+      }
+      index.update(uri, symbols);
+    }
+    Assertions.assertEquals(160000, index.size());
+
+    for (int round = 0; round < 3; ++round) {
+      Vector<PLSPSymbol> symbols = Vector.empty();
+      for (int line = 0; line < 20000; ++line) {
+        symbols = symbols.append(symbol(B, "b" + round + "_" + line, line));
+      }
+      index.update(B, symbols);
+
+      Assertions.assertEquals(180000, index.size());
+      Assertions.assertEquals(
+        Vector.of("b" + round + "_1999"), names(index.prefix("b" + round + "_1999", 1)));
+      Assertions.assertEquals(Vector.empty(), index.prefix("b" + (round + 1), 1));
+      Assertions.assertEquals(
+        Vector.of("u7_19999"), names(index.prefix("u7_19999", 10)));
+    }
+  }
+
+  @Test
+  public void testSmallUpdatesLargeOverlay()
+  {
+    final PLSPWorkspaceIndex index = PLSPWorkspaceIndex.create();
+    for (int unit = 0; unit < 300; ++unit) {
+      final URI uri = URI.create("file:///tmp/u" + unit + ".p");
+      Vector<PLSPSymbol> symbols = Vector.empty();
+      for (int line = 0; line < 50; ++line) {
+        symbols = symbols.append(symbol(uri, "u" + unit + "_" + line, line));
+      }
+      index.update(uri, symbols);
+    }
+    Assertions.assertEquals(15000, index.size());
+
+    /*
+     * Each update must cost time proportional to the size of the unit, not
+     * to the size of the overlay. Rebuilding the overlay on every update
+     * takes several seconds here.
+     */
+
+    Assertions.assertTimeout(Duration.ofSeconds(1L), () -> {
+      for (int round = 0; round < 2000; ++round) {
+        index.update(A, Vector.of(symbol(A, "edit" + round, 0)));
+      }
+    });
+
+    Assertions.assertEquals(15001, index.size());
+    Assertions.assertEquals(Vector.of("edit1999"), names(index.prefix("edit", 10)));
+    Assertions.assertEquals(
+      Vector.of("u299_49"), names(index.prefix("u299_49", 10)));
+    Assertions.assertEquals(
+      Vector.of("u0_0", "u0_1", "u0_10"), names(index.prefix("u0_", 3)));
+  }
+
+  @Test
+  public void testRandom()
+  {
+    final Random random = new Random(0x5eedL);
+    final PLSPWorkspaceIndex index = PLSPWorkspaceIndex.create();
+    final Map<URI, Vector<PLSPSymbol>> expected = new LinkedHashMap<>(16);
+
+    for (int round = 0; round < 200; ++round) {
+      final URI uri = URI.create("file:///tmp/u" + random.nextInt(12) + ".p");
+      if (random.nextInt(5) == 0) {
+        index.remove(uri);
+        expected.remove(uri);
+      } else {
+        Vector<PLSPSymbol> symbols = Vector.empty();
+        final int count = random.nextInt(20);
+        for (int line = 0; line < count; ++line) {
+          symbols = symbols.append(symbol(uri, randomName(random), line));
+        }
+        index.update(uri, symbols);
+        expected.put(uri, symbols);
+      }
+
+      final Vector<PLSPSymbol> all =
+        Vector.ofAll(expected.values()).flatMap(v -> v);
+      Assertions.assertEquals(all.size(), index.size());
+
+      final String name = randomName(random);
+      final String query =
+        name.substring(0, Math.min(name.length(), 1 + random.nextInt(2)));
+      Assertions.assertEquals(
+        all.filter(s -> s.name().startsWith(query)).sorted(ORDER),
+        index.prefix(query, Integer.MAX_VALUE).sorted(ORDER));
+
+      final String fuzzy = randomName(random);
+      final int distance = random.nextInt(3);
+      Assertions.assertEquals(
+        all.filter(s -> prefixDistance(s.name(), fuzzy) <= distance).sorted(ORDER),
+        index.fuzzy(fuzzy, distance, Integer.MAX_VALUE).sorted(ORDER));
+
+      final Vector<PLSPSymbol> limited = index.prefix("", 5);
+      Assertions.assertEquals(
+        all.sorted(ORDER).take(5).map(PLSPSymbol::name), names(limited));
+    }
+  }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.tests.parser;
+
+import com.io7m.jsx.lexer.JSXLexerSupplier;
+import com.io7m.jsx.parser.JSXParserSupplier;
+import com.io7m.polaris.ast.PDeclarationExportTerms;
+import com.io7m.polaris.ast.PDeclarationImport;
+import com.io7m.polaris.ast.PDeclarationUnit;
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.ast.PUnitDeclarationType;
+import com.io7m.polaris.parser.PParsers;
+import com.io7m.polaris.parser.api.PHeaderScannerType;
+import com.io7m.polaris.parser.api.PParseError;
+import com.io7m.polaris.parser.api.PParseErrorCode;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.parser.api.PParserProviderType;
+import com.io7m.polaris.parser.api.PParserType;
+import io.vavr.collection.Seq;
+import io.vavr.collection.Vector;
+import io.vavr.control.Validation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static com.io7m.polaris.tests.PTestUtilities.dump;
+
+public final class PHeaderScannerTest
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PHeaderScannerTest.class);
+
+  private static final PParserProviderType PARSERS =
+    PParsers.createWith(new JSXParserSupplier(), new JSXLexerSupplier());
+
+  private static ByteArrayInputStream stream(
+    final String text)
+  {
+    return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static Validation<Seq<PParseError>, Vector<PUnitDeclarationType<PParsed>>> scan(
+    final String text)
+    throws Exception
+  {
+    final PHeaderScannerType s =
+      PARSERS.createHeaderScanner(URI.create("urn:test"), stream(text));
+    final Validation<Seq<PParseError>, Vector<PUnitDeclarationType<PParsed>>> r =
+      s.scan();
+    dump(LOG, r);
+    return r;
+  }
+
+  private static Vector<PUnitDeclarationType<PParsed>> parseHeaders(
+    final String text)
+    throws Exception
+  {
+    final PParserType p =
+      PARSERS.create(URI.create("urn:test"), stream(text));
+
+    Vector<PUnitDeclarationType<PParsed>> forms = Vector.empty();
+    while (true) {
+      final Validation<Seq<PParseError>, Optional<PExpressionOrDeclarationType<PParsed>>> r =
+        p.parseExpressionOrDeclaration();
+      Assertions.assertTrue(r.isValid());
+      if (!r.get().isPresent()) {
+        return forms;
+      }
+      if (r.get().get() instanceof PUnitDeclarationType) {
+        forms = forms.append((PUnitDeclarationType<PParsed>) r.get().get());
+      }
+    }
+  }
+
+  @Test
+  public void testHeaders()
+    throws Exception
+  {
+    final String text = String.join(
+      "\n",
+      "; A comment (with [brackets]",
+      "(define-unit a.b.C)",
+      "(define-value \ud835\udd38 \"\u03bb\") (import x.Y)",
+      "(define-value s \"(not [a list\")",
+      "(define-record T [field a Integer]) ; )",
+      "[import-qualified x.Z Q]",
+      "(define-function f (x) (match x [case (A y) \"\\\")\"]))",
+      "23 \"string\" symbol",
+      "(export-terms f s)");
+
+    final Validation<Seq<PParseError>, Vector<PUnitDeclarationType<PParsed>>> r =
+      scan(text);
+
+    Assertions.assertTrue(r.isValid());
+    final Vector<PUnitDeclarationType<PParsed>> forms = r.get();
+    Assertions.assertEquals(4, forms.size());
+    Assertions.assertEquals(
+      "C", ((PDeclarationUnit<PParsed>) forms.get(0)).unit().value());
+    Assertions.assertEquals(
+      "Y", ((PDeclarationImport<PParsed>) forms.get(1)).unit().value());
+    Assertions.assertEquals(
+      "Q",
+      ((PDeclarationImport<PParsed>) forms.get(2)).unitQualifier().get().value());
+    Assertions.assertEquals(
+      2, ((PDeclarationExportTerms<PParsed>) forms.get(3)).terms().size());
+
+    final Vector<PUnitDeclarationType<PParsed>> expected = parseHeaders(text);
+    Assertions.assertEquals(
+      expected.map(f -> f.lexical()), forms.map(f -> f.lexical()));
+    Assertions.assertEquals(
+      expected.map(f -> f.unitDeclarationKind()),
+      forms.map(f -> f.unitDeclarationKind()));
+  }
+
+  @Test
+  public void testNodeIdentifiers()
+    throws Exception
+  {
+    final PHeaderScannerType s =
+      PARSERS.createHeaderScanner(
+        URI.create("urn:test"),
+        stream("(define-unit a.B) (f x y z) (import a.C)"));
+
+    final Validation<Seq<PParseError>, Vector<PUnitDeclarationType<PParsed>>> r =
+      s.scan();
+    Assertions.assertTrue(r.isValid());
+    Assertions.assertTrue(
+      r.get().get(0).data().id() < r.get().get(1).data().id());
+    Assertions.assertTrue(r.get().get(1).data().id() < s.nodeCount());
+  }
+
+  @Test
+  public void testInvalidHeader()
+    throws Exception
+  {
+    final Validation<Seq<PParseError>, Vector<PUnitDeclarationType<PParsed>>> r =
+      scan("(define-unit x) (import a.B) (import)");
+
+    Assertions.assertTrue(r.isInvalid());
+    Assertions.assertTrue(
+      r.getError().exists(e -> e.code() == PParseErrorCode.INVALID_PACKAGE_NAME));
+    Assertions.assertTrue(
+      r.getError().exists(e -> e.code() == PParseErrorCode.INVALID_UNIT_IMPORT));
+  }
+
+  @Test
+  public void testUnbalanced()
+    throws Exception
+  {
+    for (final String text : new String[]{
+      "(define-unit a.B))",
+      "(define-value x (f y)",
+      "(define-value x [f y)]",
+      "(define-value x \"y)",
+      "(import a.B",
+      "(define-unit a.B) \"unterminated",
+      "(define-unit a.B) \"unterminated \\\"",
+    }) {
+      final Validation<Seq<PParseError>, Vector<PUnitDeclarationType<PParsed>>> r =
+        scan(text);
+      Assertions.assertTrue(r.isInvalid(), text);
+      Assertions.assertTrue(
+        r.getError().forAll(e -> e.code() == PParseErrorCode.INVALID_S_EXPRESSION),
+        text);
+    }
+  }
+
+  @Test
+  public void testErrorsAccumulated()
+    throws Exception
+  {
+    final Validation<Seq<PParseError>, Vector<PUnitDeclarationType<PParsed>>> r =
+      scan(String.join(
+        "\n",
+        "(import)",
+        ")",
+        "(define-value x [f y)]",
+        "(import-qualified)",
+        "]",
+        "\"unterminated"));
+
+    Assertions.assertTrue(r.isInvalid());
+    Assertions.assertEquals(
+      Vector.of(
+        PParseErrorCode.INVALID_UNIT_IMPORT,
+        PParseErrorCode.INVALID_S_EXPRESSION,
+        PParseErrorCode.INVALID_S_EXPRESSION,
+        PParseErrorCode.INVALID_S_EXPRESSION,
+        PParseErrorCode.INVALID_UNIT_IMPORT_QUALIFIED,
+        PParseErrorCode.INVALID_S_EXPRESSION,
+        PParseErrorCode.INVALID_S_EXPRESSION),
+      Vector.ofAll(r.getError()).map(PParseError::code));
+    Assertions.assertEquals(
+      Vector.of(1, 2, 3, 3, 4, 5, 6),
+      Vector.ofAll(r.getError()).map(e -> Integer.valueOf(e.lexical().line())));
+  }
+
+  @Test
+  public void testMismatchResynchronized()
+    throws Exception
+  {
+    final Validation<Seq<PParseError>, Vector<PUnitDeclarationType<PParsed>>> r =
+      scan(String.join(
+        "\n",
+        "(define-value x (f [y) z)",
+        "(import)",
+        "(define-value y [g (z] w)",
+        "(import-qualified)"));
+
+    Assertions.assertTrue(r.isInvalid());
+    Assertions.assertEquals(
+      Vector.of(
+        PParseErrorCode.INVALID_S_EXPRESSION,
+        PParseErrorCode.INVALID_UNIT_IMPORT,
+        PParseErrorCode.INVALID_S_EXPRESSION,
+        PParseErrorCode.INVALID_UNIT_IMPORT_QUALIFIED),
+      Vector.ofAll(r.getError()).map(PParseError::code));
+    Assertions.assertEquals(
+      Vector.of(1, 2, 3, 4),
+      Vector.ofAll(r.getError()).map(e -> Integer.valueOf(e.lexical().line())));
+  }
+
+  @Test
+  public void testLarge()
+    throws Exception
+  {
+    final StringBuilder text = new StringBuilder(1024 * 1024);
+    text.append("(define-unit a.B)\n(import a.C)\n");
+    for (int index = 0; index < 10_000; ++index) {
+      text.append("(define-function f");
+      text.append(index);
+      text.append(" (x y) (match x [case (Some z) (g z \"a ) string\")] [case None y]))\n");
+    }
+    text.append("(export-terms f0)\n");
+
+    final Validation<Seq<PParseError>, Vector<PUnitDeclarationType<PParsed>>> r =
+      scan(text.toString());
+
+    Assertions.assertTrue(r.isValid());
+    Assertions.assertEquals(3, r.get().size());
+    Assertions.assertEquals(10_003, r.get().get(2).lexical().line());
+  }
+}
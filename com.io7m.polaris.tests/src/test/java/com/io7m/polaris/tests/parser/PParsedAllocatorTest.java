@@ -0,0 +1,54 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.tests.parser;
+
+import com.io7m.jaffirm.core.PreconditionViolationException;
+import com.io7m.polaris.parser.implementation.PParsedAllocator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public final class PParsedAllocatorTest
+{
+  @Test
+  public void testNoCurrentAllocator()
+  {
+    Assertions.assertThrows(
+      PreconditionViolationException.class, PParsedAllocator::parsed);
+  }
+
+  @Test
+  public void testScopes()
+  {
+    final PParsedAllocator outer = PParsedAllocator.create();
+    final PParsedAllocator inner = PParsedAllocator.create();
+
+    outer.with(() -> {
+      Assertions.assertEquals(0, PParsedAllocator.parsed().id());
+      inner.with(() -> {
+        Assertions.assertEquals(0, PParsedAllocator.parsed().id());
+        return null;
+      });
+      Assertions.assertEquals(1, PParsedAllocator.parsed().id());
+      return null;
+    });
+
+    Assertions.assertEquals(2, outer.count());
+    Assertions.assertEquals(1, inner.count());
+    Assertions.assertThrows(
+      PreconditionViolationException.class, PParsedAllocator::parsed);
+  }
+}
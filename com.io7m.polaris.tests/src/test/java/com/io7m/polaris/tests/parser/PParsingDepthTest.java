@@ -0,0 +1,261 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.tests.parser;
+
+import com.io7m.jlexing.core.LexicalPosition;
+import com.io7m.jsx.SExpressionListType;
+import com.io7m.jsx.SExpressionMatcherType;
+import com.io7m.jsx.SExpressionSymbolType;
+import com.io7m.jsx.SExpressionType;
+import com.io7m.polaris.ast.PExprApplication;
+import com.io7m.polaris.ast.PExprLocal;
+import com.io7m.polaris.ast.PExpressionType;
+import com.io7m.polaris.ast.PTypeExprArrow;
+import com.io7m.polaris.ast.PTypeExpressionType;
+import com.io7m.polaris.parser.api.PParseError;
+import com.io7m.polaris.parser.api.PParseErrorCode;
+import com.io7m.polaris.parser.api.PParseErrorMessagesType;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.parser.implementation.PParseErrorMessagesProvider;
+import com.io7m.polaris.parser.implementation.PParsedAllocator;
+import com.io7m.polaris.parser.implementation.PParsing;
+import com.io7m.polaris.parser.implementation.PParsingTypeExpressions;
+import io.vavr.collection.Seq;
+import io.vavr.control.Validation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+import static com.io7m.polaris.tests.PTestUtilities.withSmallStack;
+
+/**
+ * Tests that parsing deeply nested expressions does not consume Java stack
+ * proportional to the nesting depth.
+ */
+
+public final class PParsingDepthTest
+{
+  private static final LexicalPosition<URI> LEXICAL =
+    LexicalPosition.of(1, 0, Optional.empty());
+
+  private static final int DEPTH = 50_000;
+
+  private static final PParseErrorMessagesType MESSAGES =
+    new PParseErrorMessagesProvider().createWithLocale(Locale.ROOT);
+
+  private static SExpressionSymbolType symbol(
+    final String text)
+  {
+    return new Symbol(text);
+  }
+
+  private static SExpressionListType list(
+    final SExpressionType... elements)
+  {
+    return new ListExpr(List.of(elements));
+  }
+
+  @Test
+  public void testDeepApplications()
+    throws Exception
+  {
+    SExpressionType e = symbol("x");
+    for (int index = 0; index < DEPTH; ++index) {
+      e = list(symbol("f"), e);
+    }
+
+    final SExpressionType e_final = e;
+    final Validation<Seq<PParseError>, PExpressionType<PParsed>> r =
+      withSmallStack(() -> PParsedAllocator.create().with(
+        () -> PParsing.parseExpression(MESSAGES, e_final)));
+
+    Assertions.assertTrue(r.isValid());
+
+    int depth = 0;
+    PExpressionType<PParsed> current = r.get();
+    while (current instanceof PExprApplication) {
+      final PExprApplication<PParsed> app = (PExprApplication<PParsed>) current;
+      Assertions.assertEquals(1, app.arguments().size());
+      current = app.arguments().get(0);
+      ++depth;
+    }
+
+    Assertions.assertEquals(DEPTH, depth);
+  }
+
+  @Test
+  public void testDeepLocals()
+    throws Exception
+  {
+    SExpressionType e = symbol("x");
+    for (int index = 0; index < DEPTH; ++index) {
+      e = list(symbol("local"), list(symbol("y")), e);
+    }
+
+    final SExpressionType e_final = e;
+    final Validation<Seq<PParseError>, PExpressionType<PParsed>> r =
+      withSmallStack(() -> PParsedAllocator.create().with(
+        () -> PParsing.parseExpression(MESSAGES, e_final)));
+
+    Assertions.assertTrue(r.isValid());
+
+    int depth = 0;
+    PExpressionType<PParsed> current = r.get();
+    while (current instanceof PExprLocal) {
+      final PExprLocal<PParsed> local = (PExprLocal<PParsed>) current;
+      Assertions.assertEquals(1, local.locals().size());
+      current = local.body();
+      ++depth;
+    }
+
+    Assertions.assertEquals(DEPTH, depth);
+  }
+
+  @Test
+  public void testDeepArrows()
+    throws Exception
+  {
+    SExpressionType e = symbol("t");
+    for (int index = 0; index < DEPTH; ++index) {
+      e = list(symbol("->"), e, symbol("u"));
+    }
+
+    final SExpressionType e_final = e;
+    final Validation<Seq<PParseError>, PTypeExpressionType<PParsed>> r =
+      withSmallStack(() -> PParsedAllocator.create().with(
+        () -> PParsingTypeExpressions.parseTypeExpression(MESSAGES, e_final)));
+
+    Assertions.assertTrue(r.isValid());
+
+    int depth = 0;
+    PTypeExpressionType<PParsed> current = r.get();
+    while (current instanceof PTypeExprArrow) {
+      final PTypeExprArrow<PParsed> arrow = (PTypeExprArrow<PParsed>) current;
+      Assertions.assertEquals(1, arrow.parameters().size());
+      current = arrow.parameters().get(0);
+      ++depth;
+    }
+
+    Assertions.assertEquals(DEPTH, depth);
+  }
+
+  @Test
+  public void testDeepError()
+    throws Exception
+  {
+    SExpressionType e = list();
+    for (int index = 0; index < DEPTH; ++index) {
+      e = list(symbol("f"), e, list());
+    }
+
+    final SExpressionType e_final = e;
+    final Validation<Seq<PParseError>, PExpressionType<PParsed>> r =
+      withSmallStack(() -> PParsedAllocator.create().with(
+        () -> PParsing.parseExpression(MESSAGES, e_final)));
+
+    Assertions.assertTrue(r.isInvalid());
+    Assertions.assertEquals(DEPTH + 1, r.getError().size());
+    Assertions.assertTrue(r.getError().forAll(
+      error -> error.code() == PParseErrorCode.INVALID_APPLICATION));
+  }
+
+  private static final class Symbol implements SExpressionSymbolType
+  {
+    private final String text;
+
+    Symbol(
+      final String in_text)
+    {
+      this.text = in_text;
+    }
+
+    @Override
+    public String text()
+    {
+      return this.text;
+    }
+
+    @Override
+    public <A, E extends Exception> A matchExpression(
+      final SExpressionMatcherType<A, E> m)
+      throws E
+    {
+      return m.symbol(this);
+    }
+
+    @Override
+    public LexicalPosition<URI> lexical()
+    {
+      return LEXICAL;
+    }
+  }
+
+  private static final class ListExpr implements SExpressionListType
+  {
+    private final List<SExpressionType> elements;
+
+    ListExpr(
+      final List<SExpressionType> in_elements)
+    {
+      this.elements = in_elements;
+    }
+
+    @Override
+    public SExpressionType get(
+      final int index)
+    {
+      return this.elements.get(index);
+    }
+
+    @Override
+    public int size()
+    {
+      return this.elements.size();
+    }
+
+    @Override
+    public boolean isSquare()
+    {
+      return false;
+    }
+
+    @Override
+    public <A, E extends Exception> A matchExpression(
+      final SExpressionMatcherType<A, E> m)
+      throws E
+    {
+      return m.list(this);
+    }
+
+    @Override
+    public LexicalPosition<URI> lexical()
+    {
+      return LEXICAL;
+    }
+
+    @Override
+    public Iterator<SExpressionType> iterator()
+    {
+      return this.elements.iterator();
+    }
+  }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.tests.parser;
+
+import com.io7m.jsx.lexer.JSXLexerSupplier;
+import com.io7m.jsx.parser.JSXParserSupplier;
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.parser.PParsers;
+import com.io7m.polaris.parser.PPrettyPrinter;
+import com.io7m.polaris.parser.api.PParseError;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.parser.api.PParserProviderType;
+import com.io7m.polaris.parser.api.PParserType;
+import com.io7m.polaris.tests.PTestUtilities;
+import io.vavr.collection.Seq;
+import io.vavr.collection.Vector;
+import io.vavr.control.Validation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static com.io7m.polaris.tests.PTestUtilities.withLargeStack;
+import static com.io7m.polaris.tests.PTestUtilities.withSmallStack;
+
+public final class PPrettyPrinterTest
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PPrettyPrinterTest.class);
+
+  private static final int DEPTH = 50_000;
+
+  private static final PParserProviderType PARSERS =
+    PParsers.createWith(new JSXParserSupplier(), new JSXLexerSupplier());
+
+  private static PParserType parser(
+    final String text)
+  {
+    return PARSERS.create(
+      URI.create("urn:test"),
+      new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static Vector<PExpressionOrDeclarationType<PParsed>> parse(
+    final String text)
+    throws Exception
+  {
+    final PParserType p = parser(text);
+    Vector<PExpressionOrDeclarationType<PParsed>> forms = Vector.empty();
+    while (true) {
+      final Validation<Seq<PParseError>, Optional<PExpressionOrDeclarationType<PParsed>>> r =
+        p.parseExpressionOrDeclaration();
+      Assertions.assertTrue(r.isValid(), text);
+      if (!r.get().isPresent()) {
+        return forms;
+      }
+      forms = forms.append(r.get().get());
+    }
+  }
+
+  private static String print(
+    final PExpressionOrDeclarationType<PParsed> form)
+    throws Exception
+  {
+    final StringWriter w = new StringWriter();
+    PPrettyPrinter.print(w, form);
+    return w.toString();
+  }
+
+  private static String printAll(
+    final Vector<PExpressionOrDeclarationType<PParsed>> forms)
+  {
+    final StringWriter w = new StringWriter();
+    try {
+      for (final PExpressionOrDeclarationType<PParsed> form : forms) {
+        PPrettyPrinter.print(w, form);
+      }
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return w.toString();
+  }
+
+  private static void checkRoundTrip(
+    final String text)
+    throws Exception
+  {
+    final Vector<PExpressionOrDeclarationType<PParsed>> forms = parse(text);
+    Assertions.assertEquals(1, forms.size(), text);
+
+    final String printed = print(forms.get(0));
+    LOG.debug("{}", printed);
+    final Vector<PExpressionOrDeclarationType<PParsed>> reparsed =
+      parse(printed);
+    Assertions.assertEquals(forms, reparsed, printed);
+    Assertions.assertEquals(printed, print(reparsed.get(0)), printed);
+  }
+
+  @Test
+  public void testRoundTripExpressions()
+    throws Exception
+  {
+    for (final String text : new String[]{
+      "23",
+      "0x2f",
+      "0o17",
+      "0b1011",
+      "1_000_000",
+      "1.5",
+      "100.",
+      "0.0000001",
+      "2.5E+10",
+      "\"\"",
+      "\"a \\\"quoted\\\" \\\\ string\\r\\n\\twith \\u0001 and λ\"",
+      "x",
+      "x.y.z",
+      "U:x.y",
+      "Some",
+      "U:None",
+      "(f)",
+      "(f x 23 (g y))",
+      "[f x]",
+      "(λ (x y) (f x y))",
+      "(lambda () 23)",
+      "(local (define-value x 23) (define-function f (y) y) (f x))",
+      "(match x [case _ 1] [case (Some y) y] [case U:None 0] [case 23 1])",
+      "(match x [case 1.5 (match y [case \"a\" 1])])",
+      "(lambda (x) (match x [case _ (local (define-value y x) y)]))",
+      "(record T [field x 23] [field y (f z)])",
+      "(record U:T [field x 1])",
+      "(record-update r [field x 23])",
+    }) {
+      checkRoundTrip(text);
+    }
+  }
+
+  @Test
+  public void testRoundTripDeclarations()
+    throws Exception
+  {
+    for (final String text : new String[]{
+      "(define-value x 23)",
+      "(define-value x (match y [case _ 1]))",
+      "(define-function f (x y) (g x y))",
+      "(define-function f () (local (define-value x 1) x))",
+      "(: f (-> Integer String))",
+      "(: f (-> Integer (variadic String) Integer))",
+      "(: f (∀ a b (-> a (List b) U:T)))",
+      "(: f (forall (a) (-> a a)))",
+      "(define-record T [∀ a] [field x Integer] [field y (List a)])",
+      "(define-record T [∀])",
+      "(define-record T [∀ a b])",
+      "(define-variant V [case A] [case B Integer])",
+      "(define-variant V [∀ a] [case Some a] [case None])",
+      "(define-variant V [∀])",
+      "(define-unit a.b.C)",
+      "(import x.Y)",
+      "(import-qualified x.y.Z Q)",
+      "(export-terms f Some x)",
+      "(export-types T V)",
+    }) {
+      checkRoundTrip(text);
+    }
+  }
+
+  /**
+   * The parser accepts deeply nested forms, so the printer must print them
+   * without consuming Java stack proportional to the nesting depth. The
+   * s-expression parser and the equality of elements both recurse, so
+   * parsing and comparison run with a large stack.
+   */
+
+  @Test
+  public void testRoundTripDeep()
+    throws Exception
+  {
+    final StringBuilder sb = new StringBuilder(DEPTH * 12);
+    sb.append("(define-value x ");
+    for (int index = 0; index < DEPTH; ++index) {
+      sb.append("(f ");
+    }
+    sb.append("y");
+    for (int index = 0; index < DEPTH; ++index) {
+      sb.append(")");
+    }
+    sb.append(")\n(: g ");
+    for (int index = 0; index < DEPTH; ++index) {
+      sb.append("(-> ");
+    }
+    sb.append("t");
+    for (int index = 0; index < DEPTH; ++index) {
+      sb.append(" u)");
+    }
+    sb.append(")\n");
+    final String text = sb.toString();
+
+    final Vector<PExpressionOrDeclarationType<PParsed>> forms =
+      withLargeStack(() -> PTestUtilities.parse(text));
+    final String printed = withSmallStack(() -> printAll(forms));
+    Assertions.assertEquals(text, printed);
+
+    final Vector<PExpressionOrDeclarationType<PParsed>> reparsed =
+      withLargeStack(() -> PTestUtilities.parse(printed));
+    Assertions.assertTrue(
+      withLargeStack(() -> Boolean.valueOf(forms.equals(reparsed))).booleanValue());
+  }
+
+  @Test
+  public void testCanonical()
+    throws Exception
+  {
+    final Vector<PExpressionOrDeclarationType<PParsed>> forms = parse(
+      "(define-function  f [x]\n(match x (case (Some y) [local (define-value z y) (g z 0x10)]) (case _ 1.)))");
+
+    Assertions.assertEquals(
+      String.join(
+        "\n",
+        "(define-function f (x)",
+        "  (match x",
+        "    [case (Some y)",
+        "      (local",
+        "        (define-value z y)",
+        "        (g z 0x10))]",
+        "    [case _ 1.]))",
+        ""),
+      print(forms.get(0)));
+  }
+
+  @Test
+  public void testFormat()
+    throws Exception
+  {
+    final StringWriter w = new StringWriter();
+    final Seq<PParseError> errors = PPrettyPrinter.format(
+      parser(
+        "(define-unit a.B) ; A comment\n"
+          + "(define-record R [field x   Integer])\n"
+          + "(define-value  y  [f 1 2])"),
+      w);
+
+    Assertions.assertTrue(errors.isEmpty());
+    Assertions.assertEquals(
+      String.join(
+        "\n",
+        "(define-unit a.B)",
+        "",
+        "(define-record R",
+        "  [field x Integer])",
+        "",
+        "(define-value y (f 1 2))",
+        ""),
+      w.toString());
+  }
+
+  @Test
+  public void testFormatError()
+    throws Exception
+  {
+    final StringWriter w = new StringWriter();
+    final Seq<PParseError> errors = PPrettyPrinter.format(
+      parser("(define-value x 1) (define-value) (define-value y 2)"), w);
+
+    Assertions.assertFalse(errors.isEmpty());
+    Assertions.assertEquals("(define-value x 1)\n", w.toString());
+  }
+}
@@ -41,7 +41,6 @@ import org.junit.jupiter.api.Test;
 import java.net.URI;
 import java.util.Optional;
 
-import static com.io7m.polaris.parser.api.PParsed.parsed;
 import static com.io7m.polaris.tests.PTestUtilities.dump;
 
 public interface PParserContractDeclarationUnitType
@@ -61,13 +60,47 @@ public interface PParserContractDeclarationUnitType
 
     final PDeclarationUnit<PParsed> e = (PDeclarationUnit<PParsed>) r.get().get();
     Assertions.assertEquals(
-      PPackageName.of(e.lexical(), parsed(), "a.b.c"),
+      PPackageName.of(e.lexical(), PParsed.of(0), "a.b.c"),
       e.packageName());
     Assertions.assertEquals(
-      PUnitName.of(e.lexical(), parsed(), "D"),
+      PUnitName.of(e.lexical(), PParsed.of(0), "D"),
       e.unit());
   }
 
+  @Test
+  default void testDeclarationUnitColumns()
+    throws Exception
+  {
+    final PParserType p = this.parserForString("(define-unit a.b.c.D)");
+    final Validation<Seq<PParseError>, Optional<PExpressionOrDeclarationType<PParsed>>> r =
+      p.parseExpressionOrDeclaration();
+
+    dump(this.log(), r);
+
+    Assertions.assertTrue(r.isValid());
+
+    final PDeclarationUnit<PParsed> e = (PDeclarationUnit<PParsed>) r.get().get();
+    Assertions.assertEquals(14, e.packageName().lexical().column());
+    Assertions.assertEquals(20, e.unit().lexical().column());
+  }
+
+  @Test
+  default void testDeclarationUnitImportColumns()
+    throws Exception
+  {
+    final PParserType p = this.parserForString("(import a.b.c.D)");
+    final Validation<Seq<PParseError>, Optional<PExpressionOrDeclarationType<PParsed>>> r =
+      p.parseExpressionOrDeclaration();
+
+    dump(this.log(), r);
+
+    Assertions.assertTrue(r.isValid());
+
+    final PDeclarationImport<PParsed> e = (PDeclarationImport<PParsed>) r.get().get();
+    Assertions.assertEquals(9, e.packageName().lexical().column());
+    Assertions.assertEquals(15, e.unit().lexical().column());
+  }
+
   @Test
   default void testDeclarationUnitInvalid0()
     throws Exception
@@ -125,10 +158,10 @@ public interface PParserContractDeclarationUnitType
 
     final PDeclarationImport<PParsed> e = (PDeclarationImport<PParsed>) r.get().get();
     Assertions.assertEquals(
-      PPackageName.of(e.lexical(), parsed(), "a.b.c"),
+      PPackageName.of(e.lexical(), PParsed.of(0), "a.b.c"),
       e.packageName());
     Assertions.assertEquals(
-      PUnitName.of(e.lexical(), parsed(), "D"),
+      PUnitName.of(e.lexical(), PParsed.of(0), "D"),
       e.unit());
     Assertions.assertEquals(
       Optional.empty(),
@@ -192,13 +225,13 @@ public interface PParserContractDeclarationUnitType
 
     final PDeclarationImport<PParsed> e = (PDeclarationImport<PParsed>) r.get().get();
     Assertions.assertEquals(
-      PPackageName.of(e.lexical(), parsed(), "a.b.c"),
+      PPackageName.of(e.lexical(), PParsed.of(0), "a.b.c"),
       e.packageName());
     Assertions.assertEquals(
-      PUnitName.of(e.lexical(), parsed(), "D"),
+      PUnitName.of(e.lexical(), PParsed.of(0), "D"),
       e.unit());
     Assertions.assertEquals(
-      Optional.of(PUnitName.of(e.lexical(), parsed(), "A")),
+      Optional.of(PUnitName.of(e.lexical(), PParsed.of(0), "A")),
       e.unitQualifier());
   }
 
@@ -354,13 +387,13 @@ public interface PParserContractDeclarationUnitType
 
     final PDeclarationExportTypes<PParsed> e = (PDeclarationExportTypes<PParsed>) r.get().get();
     Assertions.assertEquals(
-      PTypeConstructorName.of(e.lexical(), parsed(), "A"),
+      PTypeConstructorName.of(e.lexical(), PParsed.of(0), "A"),
       e.types().get(0));
     Assertions.assertEquals(
-      PTypeConstructorName.of(e.lexical(), parsed(), "B"),
+      PTypeConstructorName.of(e.lexical(), PParsed.of(0), "B"),
       e.types().get(1));
     Assertions.assertEquals(
-      PTypeConstructorName.of(e.lexical(), parsed(), "C"),
+      PTypeConstructorName.of(e.lexical(), PParsed.of(0), "C"),
       e.types().get(2));
   }
 
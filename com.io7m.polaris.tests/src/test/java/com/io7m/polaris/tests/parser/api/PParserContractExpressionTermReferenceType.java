@@ -133,6 +133,47 @@ public interface PParserContractExpressionTermReferenceType
     Assertions.assertAll(execs);
   }
 
+  @Test
+  default void testTermReferencesColumns()
+    throws Exception
+  {
+    final PParserType p = this.parserForString("A:b.cd.e");
+    final Validation<Seq<PParseError>, Optional<PExpressionOrDeclarationType<PParsed>>> r =
+      p.parseExpressionOrDeclaration();
+
+    dump(this.log(), r);
+    Assertions.assertTrue(r.isValid());
+
+    final PExprReference<PParsed> e = (PExprReference<PParsed>) r.get().get();
+    final PTermReferenceVariable<PParsed> ref =
+      (PTermReferenceVariable<PParsed>) e.reference();
+
+    Assertions.assertEquals(1, ref.unit().get().lexical().column());
+    Assertions.assertEquals(3, ref.term().lexical().column());
+    Assertions.assertEquals(5, ref.recordPath().get(0).lexical().column());
+    Assertions.assertEquals(8, ref.recordPath().get(1).lexical().column());
+  }
+
+  @Test
+  default void testTermReferencesUnitlessColumns()
+    throws Exception
+  {
+    final PParserType p = this.parserForString("b.cd.e");
+    final Validation<Seq<PParseError>, Optional<PExpressionOrDeclarationType<PParsed>>> r =
+      p.parseExpressionOrDeclaration();
+
+    dump(this.log(), r);
+    Assertions.assertTrue(r.isValid());
+
+    final PExprReference<PParsed> e = (PExprReference<PParsed>) r.get().get();
+    final PTermReferenceVariable<PParsed> ref =
+      (PTermReferenceVariable<PParsed>) e.reference();
+
+    Assertions.assertEquals(1, ref.term().lexical().column());
+    Assertions.assertEquals(3, ref.recordPath().get(0).lexical().column());
+    Assertions.assertEquals(6, ref.recordPath().get(1).lexical().column());
+  }
+
   @Test
   default void testTermReferencesInvalid()
     throws Exception
@@ -0,0 +1,74 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.tests.parser.api;
+
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.ast.PExpressionType;
+import com.io7m.polaris.ast.PExpressions;
+import com.io7m.polaris.parser.api.PParseError;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.parser.api.PParserType;
+import io.vavr.collection.Seq;
+import io.vavr.collection.Vector;
+import io.vavr.control.Validation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static com.io7m.polaris.tests.PTestUtilities.dump;
+
+public interface PParserContractNodeIdentifiersType
+  extends PParserContractBaseType
+{
+  private static Vector<Integer> identifiers(
+    final PExpressionOrDeclarationType<PParsed> e)
+  {
+    return PExpressions.fold(
+      (PExpressionType<PParsed>) e,
+      Vector.empty(),
+      (acc, x) -> acc.append(Integer.valueOf(x.data().id())));
+  }
+
+  @Test
+  default void testNodeIdentifiersDense()
+    throws Exception
+  {
+    final PParserType p = this.parserForString("(f (g x) (λ (y) y)) (h 23)");
+    Assertions.assertEquals(0, p.nodeCount());
+
+    final Validation<Seq<PParseError>, Optional<PExpressionOrDeclarationType<PParsed>>> r0 =
+      p.parseExpressionOrDeclaration();
+    dump(this.log(), r0);
+    Assertions.assertTrue(r0.isValid());
+    final int count0 = p.nodeCount();
+
+    final Validation<Seq<PParseError>, Optional<PExpressionOrDeclarationType<PParsed>>> r1 =
+      p.parseExpressionOrDeclaration();
+    dump(this.log(), r1);
+    Assertions.assertTrue(r1.isValid());
+    final int count1 = p.nodeCount();
+
+    final Vector<Integer> ids0 = identifiers(r0.get().get());
+    final Vector<Integer> ids1 = identifiers(r1.get().get());
+    final Vector<Integer> all = ids0.appendAll(ids1);
+
+    Assertions.assertEquals(all.size(), all.distinct().size());
+    Assertions.assertTrue(ids0.forAll(x -> x.intValue() >= 0 && x.intValue() < count0));
+    Assertions.assertTrue(ids1.forAll(x -> x.intValue() >= count0 && x.intValue() < count1));
+  }
+}
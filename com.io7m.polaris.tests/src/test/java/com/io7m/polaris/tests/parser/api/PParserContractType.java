@@ -52,7 +52,8 @@ public interface PParserContractType extends
   PParserContractDeclarationSignatureType,
   PParserContractDeclarationUnitType,
   PParserContractPatternType,
-  PParserContractTypeExpressionType
+  PParserContractTypeExpressionType,
+  PParserContractNodeIdentifiersType
 {
   @Test
   default void testEOF_0()
@@ -21,6 +21,7 @@ import com.io7m.polaris.ast.PTypeExprArrow;
 import com.io7m.polaris.ast.PTypeExprForAll;
 import com.io7m.polaris.ast.PTypeExprReference;
 import com.io7m.polaris.ast.PTypeExpressionType;
+import com.io7m.polaris.ast.PTypeReferenceConstructor;
 import com.io7m.polaris.ast.PTypeReferenceVariable;
 import com.io7m.polaris.parser.api.PParseError;
 import com.io7m.polaris.parser.api.PParseErrorCode;
@@ -51,6 +52,25 @@ public interface PParserContractTypeExpressionType
     Assertions.assertTrue(r.getError().exists(e -> e.code() == PParseErrorCode.INVALID_TYPE_EXPRESSION));
   }
 
+  @Test
+  default void testTypeExpressionReferenceColumns()
+    throws Exception
+  {
+    final PParserType p = this.parserForString("A:T");
+    final Validation<Seq<PParseError>, Optional<PTypeExpressionType<PParsed>>> r =
+      p.parseTypeExpression();
+
+    dump(this.log(), r);
+    Assertions.assertTrue(r.isValid());
+
+    final PTypeExprReference<PParsed> e = (PTypeExprReference<PParsed>) r.get().get();
+    final PTypeReferenceConstructor<PParsed> ref =
+      (PTypeReferenceConstructor<PParsed>) e.reference();
+    Assertions.assertEquals("T", ref.constructor().value());
+    Assertions.assertEquals(1, ref.unit().get().lexical().column());
+    Assertions.assertEquals(3, ref.constructor().lexical().column());
+  }
+
   @Test
   default void testTypeExpressionArrow0()
     throws Exception
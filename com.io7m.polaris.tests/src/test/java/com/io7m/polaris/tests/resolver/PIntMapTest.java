@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.tests.resolver;
+
+import com.io7m.jaffirm.core.PreconditionViolationException;
+import com.io7m.polaris.resolver.PIntMap;
+import com.io7m.polaris.resolver.PNameInterner;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Random;
+
+public final class PIntMapTest
+{
+  @Test
+  public void testPutGetRemove()
+  {
+    final PIntMap<String> m = PIntMap.create();
+    Assertions.assertTrue(m.isEmpty());
+    Assertions.assertNull(m.get(0));
+
+    Assertions.assertNull(m.put(0, "a"));
+    Assertions.assertNull(m.put(23, "b"));
+    Assertions.assertEquals("a", m.put(0, "c"));
+    Assertions.assertEquals(2, m.size());
+    Assertions.assertEquals("c", m.get(0));
+    Assertions.assertEquals("b", m.get(23));
+    Assertions.assertTrue(m.containsKey(23));
+    Assertions.assertFalse(m.containsKey(24));
+
+    Assertions.assertEquals("b", m.remove(23));
+    Assertions.assertNull(m.remove(23));
+    Assertions.assertFalse(m.containsKey(23));
+    Assertions.assertEquals(1, m.size());
+
+    Assertions.assertThrows(
+      PreconditionViolationException.class, () -> m.put(-1, "x"));
+  }
+
+  @Test
+  public void testAgainstHashMap()
+  {
+    final Random random = new Random(0x50L);
+    final PIntMap<Integer> m = PIntMap.create();
+    final HashMap<Integer, Integer> expected = new HashMap<>();
+
+    for (int index = 0; index < 100_000; ++index) {
+      final int key = random.nextInt(2048);
+      if (random.nextInt(3) == 0) {
+        Assertions.assertEquals(
+          expected.remove(Integer.valueOf(key)), m.remove(key));
+      } else {
+        final Integer value = Integer.valueOf(index);
+        Assertions.assertEquals(
+          expected.put(Integer.valueOf(key), value), m.put(key, value));
+      }
+      Assertions.assertEquals(expected.size(), m.size());
+    }
+
+    for (int key = 0; key < 2048; ++key) {
+      Assertions.assertEquals(expected.get(Integer.valueOf(key)), m.get(key));
+    }
+  }
+
+  @Test
+  public void testInterner()
+  {
+    final PNameInterner names = PNameInterner.create();
+    final int x = names.intern("x");
+    final int y = names.intern("y");
+    Assertions.assertNotEquals(x, y);
+    Assertions.assertEquals(x, names.intern(new String("x")));
+    Assertions.assertEquals(2, names.size());
+  }
+}
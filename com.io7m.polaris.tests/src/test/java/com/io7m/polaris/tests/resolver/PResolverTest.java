@@ -0,0 +1,339 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.tests.resolver;
+
+import com.io7m.polaris.ast.PDeclarationFunction;
+import com.io7m.polaris.ast.PDeclarationValue;
+import com.io7m.polaris.ast.PExprReference;
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.ast.PExpressionType;
+import com.io7m.polaris.ast.PExpressions;
+import com.io7m.polaris.ast.PTermReferenceType;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.resolver.PBinding;
+import com.io7m.polaris.resolver.PResolveError;
+import com.io7m.polaris.resolver.PResolveErrorCode;
+import com.io7m.polaris.resolver.PResolvedUnit;
+import com.io7m.polaris.resolver.PResolver;
+import com.io7m.polaris.tests.PTestUtilities;
+import io.vavr.collection.Seq;
+import io.vavr.collection.Vector;
+import io.vavr.control.Validation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.io7m.polaris.tests.PTestUtilities.codes;
+import static com.io7m.polaris.tests.PTestUtilities.executor;
+import static com.io7m.polaris.tests.PTestUtilities.parse;
+import static com.io7m.polaris.tests.PTestUtilities.withSmallStack;
+
+public final class PResolverTest
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PResolverTest.class);
+
+  private static PExpressionType<PParsed> body(
+    final PResolvedUnit unit,
+    final int index)
+  {
+    final PExpressionOrDeclarationType<PParsed> d =
+      unit.declarations().get(index);
+    if (d instanceof PDeclarationValue) {
+      return ((PDeclarationValue<PParsed>) d).expression();
+    }
+    if (d instanceof PDeclarationFunction) {
+      return ((PDeclarationFunction<PParsed>) d).expression();
+    }
+    return (PExpressionType<PParsed>) d;
+  }
+
+  private static Vector<PTermReferenceType<PParsed>> references(
+    final PExpressionType<PParsed> e)
+  {
+    return PExpressions.fold(e, Vector.empty(), (acc, x) -> {
+      if (x instanceof PExprReference) {
+        return acc.append(((PExprReference<PParsed>) x).reference());
+      }
+      return acc;
+    });
+  }
+
+  private static void dump(
+    final Validation<Seq<PResolveError>, Vector<PResolvedUnit>> r)
+  {
+    if (r.isInvalid()) {
+      r.getError().forEach(e -> LOG.error("invalid: {}", e));
+    }
+  }
+
+  private Validation<Seq<PResolveError>, Vector<PResolvedUnit>> resolve(
+    final String... units)
+  {
+    final Validation<Seq<PResolveError>, Vector<PResolvedUnit>> r =
+      PResolver.resolve(
+        executor(), Vector.of(units).map(PTestUtilities::parse));
+    dump(r);
+    return r;
+  }
+
+  @Test
+  public void testLocalScopes()
+  {
+    final Validation<Seq<PResolveError>, Vector<PResolvedUnit>> r =
+      this.resolve(String.join(
+        "\n",
+        "(define-unit a.A)",
+        "(define-value x 23)",
+        "(define-function f (x) x)",
+        "(define-value y (f x))",
+        "(define-value z (local (define-value w x) (define-value x w) x))"));
+
+    Assertions.assertTrue(r.isValid());
+    final PResolvedUnit u = r.get().get(0);
+    Assertions.assertEquals("a.A", u.name());
+
+    final PTermReferenceType<PParsed> f_x = references(body(u, 2)).get(0);
+    final PBinding f_b = u.termBinding(f_x).get();
+    Assertions.assertEquals(PBinding.Kind.TERM_LOCAL, f_b.kind());
+    Assertions.assertEquals(
+      ((PDeclarationFunction<PParsed>) u.declarations().get(2))
+        .parameters().get(0).data().id(),
+      f_b.declaration());
+
+    final Vector<PTermReferenceType<PParsed>> y_refs = references(body(u, 3));
+    Assertions.assertEquals(
+      PBinding.Kind.TERM_UNIT, u.termBinding(y_refs.get(0)).get().kind());
+    Assertions.assertEquals(
+      ((PDeclarationValue<PParsed>) u.declarations().get(1))
+        .name().data().id(),
+      u.termBinding(y_refs.get(1)).get().declaration());
+
+    final Vector<PTermReferenceType<PParsed>> z_refs = references(body(u, 4));
+    Assertions.assertEquals(3, z_refs.size());
+    Assertions.assertEquals(
+      PBinding.Kind.TERM_UNIT, u.termBinding(z_refs.get(0)).get().kind());
+    Assertions.assertEquals(
+      PBinding.Kind.TERM_LOCAL, u.termBinding(z_refs.get(1)).get().kind());
+    Assertions.assertEquals(
+      PBinding.Kind.TERM_LOCAL, u.termBinding(z_refs.get(2)).get().kind());
+    Assertions.assertNotEquals(
+      u.termBinding(z_refs.get(1)).get(),
+      u.termBinding(z_refs.get(2)).get());
+  }
+
+  @Test
+  public void testLocalFunctionRecursive()
+  {
+    final Validation<Seq<PResolveError>, Vector<PResolvedUnit>> r =
+      this.resolve(String.join(
+        "\n",
+        "(define-unit a.A)",
+        "(define-value x (local (define-function g (y) (g y)) (g 23)))"));
+
+    Assertions.assertTrue(r.isValid());
+  }
+
+  @Test
+  public void testScopeEnds()
+  {
+    final Validation<Seq<PResolveError>, Vector<PResolvedUnit>> r =
+      this.resolve(String.join(
+        "\n",
+        "(define-unit a.A)",
+        "(define-value x (λ (y) y))",
+        "(define-value z y)"));
+
+    Assertions.assertEquals(Vector.of(PResolveErrorCode.TERM_NOT_FOUND), codes(r));
+  }
+
+  @Test
+  public void testTypes()
+  {
+    final Validation<Seq<PResolveError>, Vector<PResolvedUnit>> r =
+      this.resolve(String.join(
+        "\n",
+        "(define-unit a.A)",
+        "(define-variant Option [∀ a] [case None] [case Some a])",
+        "(define-record Box [∀ a] [field value (Option a)])",
+        "(: get (∀ a (-> (Box a) a)))",
+        "(define-function get (b) (match b [case (Some x) x] [case None b]))",
+        "(define-value v (record Box [field value None]))"));
+
+    Assertions.assertTrue(r.isValid());
+  }
+
+  @Test
+  public void testTypeErrors()
+  {
+    final Validation<Seq<PResolveError>, Vector<PResolvedUnit>> r =
+      this.resolve(String.join(
+        "\n",
+        "(define-unit a.A)",
+        "(define-record Box [field value a])",
+        "(: f (-> Missing Box))",
+        "(define-value v (match 23 [case (Nothing x) x]))"));
+
+    Assertions.assertEquals(
+      Vector.of(
+        PResolveErrorCode.TYPE_VARIABLE_NOT_FOUND,
+        PResolveErrorCode.TYPE_NOT_FOUND,
+        PResolveErrorCode.CONSTRUCTOR_NOT_FOUND),
+      codes(r));
+  }
+
+  @Test
+  public void testImports()
+  {
+    final Validation<Seq<PResolveError>, Vector<PResolvedUnit>> r =
+      this.resolve(
+        String.join(
+          "\n",
+          "(define-unit b.B)",
+          "(import a.A)",
+          "(import-qualified a.A Q)",
+          "(define-value x (A:f Q:y))",
+          "(define-value z (match x [case (A:Some w) w] [case Q:None x]))",
+          "(: t (A:Option A:Int))"),
+        String.join(
+          "\n",
+          "(define-unit a.A)",
+          "(export-terms f y)",
+          "(export-types Option Int)",
+          "(define-variant Int [case Zero])",
+          "(define-variant Option [case None] [case Some Int])",
+          "(define-value y 23)",
+          "(define-function f (x) x)"));
+
+    Assertions.assertTrue(r.isValid());
+
+    final PResolvedUnit b = r.get().get(0);
+    final PResolvedUnit a = r.get().get(1);
+    final Vector<PTermReferenceType<PParsed>> refs = references(body(b, 3));
+    final PBinding f = b.termBinding(refs.get(0)).get();
+    Assertions.assertEquals("a.A", f.unit());
+    Assertions.assertEquals(PBinding.Kind.TERM_UNIT, f.kind());
+    Assertions.assertEquals(
+      ((PDeclarationFunction<PParsed>) a.declarations().get(6))
+        .name().data().id(),
+      f.declaration());
+  }
+
+  @Test
+  public void testImportErrors()
+  {
+    final Validation<Seq<PResolveError>, Vector<PResolvedUnit>> r =
+      this.resolve(
+        String.join(
+          "\n",
+          "(define-unit b.B)",
+          "(import a.A)",
+          "(import c.C)",
+          "(define-value x (A:f A:g A:h))",
+          "(define-value y (match x [case A:Hidden x]))",
+          "(define-value z Q:f)",
+          "(: t A:T)"),
+        String.join(
+          "\n",
+          "(define-unit a.A)",
+          "(export-terms f)",
+          "(define-variant T [case Hidden])",
+          "(define-value f 23)",
+          "(define-value g 23)"));
+
+    Assertions.assertEquals(
+      Vector.of(
+        PResolveErrorCode.IMPORT_UNIT_NOT_FOUND,
+        PResolveErrorCode.TERM_NOT_EXPORTED,
+        PResolveErrorCode.TERM_NOT_FOUND,
+        PResolveErrorCode.CONSTRUCTOR_NOT_EXPORTED,
+        PResolveErrorCode.UNIT_QUALIFIER_NOT_FOUND,
+        PResolveErrorCode.TYPE_NOT_EXPORTED),
+      codes(r));
+  }
+
+  @Test
+  public void testUnitErrors()
+  {
+    final Validation<Seq<PResolveError>, Vector<PResolvedUnit>> r =
+      this.resolve(
+        "(define-value x 23)",
+        "(define-unit a.A) (define-value x 23) (define-value x 24)",
+        "(define-unit a.A) (export-terms y) (export-types T)",
+        "");
+
+    Assertions.assertEquals(
+      Vector.of(
+        PResolveErrorCode.UNIT_MISSING_DECLARATION,
+        PResolveErrorCode.UNIT_MISSING_DECLARATION,
+        PResolveErrorCode.TERM_DUPLICATE,
+        PResolveErrorCode.EXPORT_TERM_NOT_FOUND,
+        PResolveErrorCode.EXPORT_TYPE_NOT_FOUND,
+        PResolveErrorCode.UNIT_DUPLICATE),
+      codes(r));
+  }
+
+  @Test
+  public void testManyUnits()
+  {
+    final int count = 64;
+    final String[] units = new String[count];
+    units[0] = "(define-unit a.U0) (export-terms x) (define-value x 0)";
+    for (int index = 1; index < count; ++index) {
+      units[index] = String.format(
+        "(define-unit a.U%d) (import a.U%d) (export-terms x) (define-value x U%d:x)",
+        Integer.valueOf(index),
+        Integer.valueOf(index - 1),
+        Integer.valueOf(index - 1));
+    }
+
+    final Validation<Seq<PResolveError>, Vector<PResolvedUnit>> r =
+      this.resolve(units);
+
+    Assertions.assertTrue(r.isValid());
+    for (int index = 1; index < count; ++index) {
+      final PResolvedUnit u = r.get().get(index);
+      final PBinding b =
+        u.termBinding(references(body(u, 3)).get(0)).get();
+      Assertions.assertEquals("a.U" + (index - 1), b.unit());
+    }
+  }
+
+  @Test
+  public void testDeep()
+    throws Exception
+  {
+    final StringBuilder text = new StringBuilder(128 * 1024);
+    text.append("(define-unit a.A) (define-value x ");
+    for (int index = 0; index < 2_000; ++index) {
+      text.append("(λ (y) ");
+    }
+    text.append('y');
+    for (int index = 0; index < 2_000; ++index) {
+      text.append(')');
+    }
+    text.append(')');
+
+    final Vector<PExpressionOrDeclarationType<PParsed>> unit =
+      parse(text.toString());
+    final Validation<Seq<PResolveError>, Vector<PResolvedUnit>> r =
+      withSmallStack(() -> PResolver.resolve(Runnable::run, Vector.of(unit)));
+
+    Assertions.assertTrue(r.isValid());
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.tests.resolver;
+
+import com.io7m.jsx.lexer.JSXLexerSupplier;
+import com.io7m.jsx.parser.JSXParserSupplier;
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.parser.PParsers;
+import com.io7m.polaris.parser.api.PParseError;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.parser.api.PParserType;
+import com.io7m.polaris.resolver.PResolveError;
+import com.io7m.polaris.resolver.PResolveErrorCode;
+import com.io7m.polaris.resolver.PUnitGraph;
+import com.io7m.polaris.resolver.PUnitHeader;
+import com.io7m.polaris.resolver.PUnitHeaders;
+import com.io7m.polaris.resolver.PUnitScheduler;
+import io.vavr.collection.Seq;
+import io.vavr.collection.Vector;
+import io.vavr.control.Validation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.io7m.polaris.tests.PTestUtilities.codes;
+import static com.io7m.polaris.tests.PTestUtilities.executor;
+
+public final class PUnitGraphTest
+{
+  private static PUnitHeader header(
+    final String text)
+    throws IOException
+  {
+    final PParserType p =
+      PParsers.createWith(new JSXParserSupplier(), new JSXLexerSupplier())
+        .create(
+          URI.create("urn:test"),
+          new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+
+    final Validation<Seq<PParseError>, Vector<PExpressionOrDeclarationType<PParsed>>> r =
+      PUnitHeaders.parse(p);
+    Assertions.assertTrue(r.isValid());
+
+    final Validation<Seq<PResolveError>, PUnitHeader> h =
+      PUnitHeaders.header(r.get());
+    Assertions.assertTrue(h.isValid());
+    return h.get();
+  }
+
+  private static Validation<Seq<PResolveError>, PUnitGraph> graph(
+    final String... units)
+    throws IOException
+  {
+    Vector<PUnitHeader> headers = Vector.empty();
+    for (final String unit : units) {
+      headers = headers.append(header(unit));
+    }
+    return PUnitGraph.build(headers);
+  }
+
+  @Test
+  public void testHeader()
+    throws Exception
+  {
+    final PUnitHeader h = header(String.join(
+      "\n",
+      "(define-unit a.b.C)",
+      "(import x.Y)",
+      "(export-terms f)",
+      "(import-qualified x.Z Q)",
+      "(define-value f 23)",
+      "(import x.W)"));
+
+    Assertions.assertEquals("a.b.C", h.name());
+    Assertions.assertEquals(
+      Vector.of("Y", "Z"), h.imports().map(i -> i.unit().value()));
+  }
+
+  @Test
+  public void testHeaderMissingUnit()
+  {
+    final Validation<Seq<PResolveError>, PUnitHeader> h =
+      PUnitHeaders.header(Vector.empty());
+    Assertions.assertEquals(
+      PResolveErrorCode.UNIT_MISSING_DECLARATION,
+      h.getError().get(0).code());
+  }
+
+  @Test
+  public void testWaves()
+    throws Exception
+  {
+    final Validation<Seq<PResolveError>, PUnitGraph> r =
+      graph(
+        "(define-unit a.D) (import a.B) (import a.C) (import-qualified a.B Q)",
+        "(define-unit a.B) (import a.A)",
+        "(define-unit a.C) (import a.A)",
+        "(define-unit a.A)",
+        "(define-unit a.E)");
+
+    Assertions.assertTrue(r.isValid());
+    final PUnitGraph g = r.get();
+    Assertions.assertEquals(5, g.size());
+    Assertions.assertEquals(
+      Vector.of(Integer.valueOf(1), Integer.valueOf(2)), g.dependencies(0));
+    Assertions.assertEquals(
+      Vector.of(Integer.valueOf(1), Integer.valueOf(2)), g.dependents(3));
+    Assertions.assertEquals(2, g.indexOf("a.C").getAsInt());
+    Assertions.assertFalse(g.indexOf("a.Z").isPresent());
+
+    Assertions.assertEquals(
+      Vector.of(
+        Vector.of(Integer.valueOf(3), Integer.valueOf(4)),
+        Vector.of(Integer.valueOf(1), Integer.valueOf(2)),
+        Vector.of(Integer.valueOf(0))),
+      g.waves());
+  }
+
+  @Test
+  public void testErrors()
+    throws Exception
+  {
+    Assertions.assertEquals(
+      Vector.of(
+        PResolveErrorCode.UNIT_DUPLICATE,
+        PResolveErrorCode.IMPORT_UNIT_NOT_FOUND),
+      codes(graph(
+        "(define-unit a.A) (import a.Z)",
+        "(define-unit a.A)")));
+  }
+
+  @Test
+  public void testCycles()
+    throws Exception
+  {
+    final Validation<Seq<PResolveError>, PUnitGraph> r =
+      graph(
+        "(define-unit a.A) (import a.B)",
+        "(define-unit a.B) (import a.C)",
+        "(define-unit a.C) (import a.A)",
+        "(define-unit a.D) (import a.A)",
+        "(define-unit a.E) (import a.E)",
+        "(define-unit a.F)");
+
+    Assertions.assertEquals(
+      Vector.of(PResolveErrorCode.IMPORT_CYCLE, PResolveErrorCode.IMPORT_CYCLE),
+      codes(r));
+    Assertions.assertEquals(
+      "Import cycle: a.A -> a.B -> a.C -> a.A",
+      r.getError().get(0).message());
+    Assertions.assertEquals(
+      "Import cycle: a.E -> a.E",
+      r.getError().get(1).message());
+  }
+
+  @Test
+  public void testSchedule()
+    throws Exception
+  {
+    final PUnitGraph g =
+      graph(
+        "(define-unit a.D) (import a.B) (import a.C)",
+        "(define-unit a.B) (import a.A)",
+        "(define-unit a.C) (import a.A)",
+        "(define-unit a.A)").get();
+
+    final CompletableFuture<Vector<String>> f =
+      PUnitScheduler.schedule(
+        executor(),
+        g,
+        (unit, deps) -> g.header(unit).unit().unit().value() + deps);
+
+    Assertions.assertEquals(
+      Vector.of(
+        "DVector(BVector(AVector()), CVector(AVector()))",
+        "BVector(AVector())",
+        "CVector(AVector())",
+        "AVector()"),
+      f.get());
+  }
+
+  @Test
+  public void testScheduleFailure()
+    throws Exception
+  {
+    final PUnitGraph g =
+      graph(
+        "(define-unit a.B) (import a.A)",
+        "(define-unit a.A)",
+        "(define-unit a.C)").get();
+
+    final AtomicInteger executed = new AtomicInteger(0);
+    final CompletableFuture<Vector<Integer>> f =
+      PUnitScheduler.schedule(executor(), g, (unit, deps) -> {
+        executed.incrementAndGet();
+        if (unit == 1) {
+          throw new IOException("Failed");
+        }
+        return Integer.valueOf(unit);
+      });
+
+    final CompletionException e =
+      Assertions.assertThrows(CompletionException.class, f::join);
+    Assertions.assertTrue(e.getCause() instanceof IOException);
+    Assertions.assertEquals(2, executed.get());
+  }
+}
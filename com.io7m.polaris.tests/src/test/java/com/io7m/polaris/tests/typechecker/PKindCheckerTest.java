@@ -0,0 +1,306 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.tests.typechecker;
+
+import com.io7m.polaris.resolver.PResolvedUnit;
+import com.io7m.polaris.resolver.PResolver;
+import com.io7m.polaris.typechecker.PKind;
+import com.io7m.polaris.typechecker.PKindChecker;
+import com.io7m.polaris.typechecker.PKindEnvironment;
+import com.io7m.polaris.typechecker.PTypeChecker;
+import com.io7m.polaris.typechecker.PTypeError;
+import com.io7m.polaris.typechecker.PTypeErrorCode;
+import com.io7m.polaris.typechecker.PTypedUnit;
+import io.vavr.collection.Seq;
+import io.vavr.collection.Vector;
+import io.vavr.control.Validation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import static com.io7m.polaris.tests.PTestUtilities.executor;
+import static com.io7m.polaris.tests.PTestUtilities.parse;
+import static com.io7m.polaris.tests.PTestUtilities.resolveAll;
+import static com.io7m.polaris.tests.PTestUtilities.withSmallStack;
+
+public final class PKindCheckerTest
+{
+  private PResolvedUnit resolve(
+    final String... lines)
+  {
+    return resolveAll("(define-unit a.A)\n" + String.join("\n", lines))
+      .get(0);
+  }
+
+  private PKindEnvironment check(
+    final String... lines)
+  {
+    return PKindChecker.check(Vector.empty(), this.resolve(lines));
+  }
+
+  private static String kind(
+    final PKindEnvironment e,
+    final String name)
+  {
+    return e.kind(name).get().toString();
+  }
+
+  private static Vector<PTypeErrorCode> codes(
+    final PKindEnvironment e)
+  {
+    return e.errors().map(PTypeError::code);
+  }
+
+  private static void assertSameResult(
+    final PKindEnvironment expected,
+    final PKindEnvironment received)
+  {
+    Assertions.assertEquals(expected.names(), received.names());
+    for (final String name : expected.names()) {
+      Assertions.assertEquals(expected.kind(name), received.kind(name), name);
+    }
+    Assertions.assertEquals(codes(expected), codes(received));
+  }
+
+  @Test
+  public void testKindValues()
+  {
+    Assertions.assertEquals("*", PKind.star().toString());
+    Assertions.assertEquals("(-> * * *)", PKind.constructor(2).toString());
+    Assertions.assertEquals(
+      "(-> (-> * *) * *)",
+      PKind.arrow(PKind.constructor(1), PKind.constructor(1)).toString());
+    Assertions.assertEquals(2, PKind.constructor(2).arity());
+    Assertions.assertEquals(
+      PKind.arrow(PKind.star(), PKind.star()), PKind.constructor(1));
+    Assertions.assertNotEquals(
+      PKind.arrow(PKind.constructor(1), PKind.star()), PKind.constructor(2));
+    Assertions.assertEquals(
+      PKind.constructor(3).hashCode(), PKind.constructor(3).hashCode());
+  }
+
+  @Test
+  public void testInference()
+  {
+    final PKindEnvironment e = this.check(
+      "(define-variant Option [∀ a] [case None] [case Some a])",
+      "(define-record Pair [∀ a b] [field first a] [field second b])",
+      "(define-record Wrap [∀ f a] [field value (f a)])",
+      "(define-record Fix [∀ f] [field out (f (Fix f))])",
+      "(define-variant Tree [∀ a] [case Leaf a] [case Node (Forest a)])",
+      "(define-variant Forest [∀ a] [case Nil] [case Cons (Pair (Tree a) (Forest a))])",
+      "(define-variant Phantom [∀ a] [case P])",
+      "(define-record Boxed [field x (Wrap Option Integer)] [field y (Fix Option)])",
+      "(define-record Apply [∀ f g] [field x (f g)] [field y (g Integer)])");
+
+    Assertions.assertEquals(Vector.empty(), e.errors());
+    Assertions.assertEquals("(-> * *)", kind(e, "Option"));
+    Assertions.assertEquals("(-> * * *)", kind(e, "Pair"));
+    Assertions.assertEquals("(-> (-> * *) * *)", kind(e, "Wrap"));
+    Assertions.assertEquals("(-> (-> * *) *)", kind(e, "Fix"));
+    Assertions.assertEquals("(-> * *)", kind(e, "Tree"));
+    Assertions.assertEquals("(-> * *)", kind(e, "Forest"));
+    Assertions.assertEquals("(-> * *)", kind(e, "Phantom"));
+    Assertions.assertEquals("*", kind(e, "Boxed"));
+    Assertions.assertEquals("(-> (-> (-> * *) *) (-> * *) *)", kind(e, "Apply"));
+    Assertions.assertFalse(e.kind("Nonexistent").isPresent());
+  }
+
+  @Test
+  public void testErrors()
+  {
+    final PKindEnvironment e = this.check(
+      "(define-variant Option [∀ a] [case None] [case Some a])",
+      "(define-record Bad0 [field x (Integer Integer)])",
+      "(define-record Bad1 [field x Option])",
+      "(define-record Bad2 [field x (Option Integer Integer)])",
+      "(define-record Bad3 [∀ f] [field x (f f)])",
+      "(define-record Bad4 [field x (-> Option Integer)])");
+
+    Assertions.assertEquals(
+      Vector.of(
+        PTypeErrorCode.KIND_MISMATCH,
+        PTypeErrorCode.KIND_MISMATCH,
+        PTypeErrorCode.KIND_MISMATCH,
+        PTypeErrorCode.KIND_INFINITE,
+        PTypeErrorCode.KIND_MISMATCH),
+      codes(e));
+  }
+
+  @Test
+  public void testTypeCheckerRejects()
+  {
+    final Validation<Seq<PTypeError>, PTypedUnit> r =
+      PTypeChecker.checkUnit(
+        Vector.empty(),
+        this.resolve(
+          "(define-variant Option [∀ a] [case None] [case Some a])",
+          "(define-record Bad [field x Option])",
+          "(: f (-> Option Integer))",
+          "(define-function f (x) 23)"));
+
+    Assertions.assertTrue(r.isInvalid());
+    Assertions.assertEquals(
+      Vector.of(PTypeErrorCode.KIND_MISMATCH),
+      Vector.ofAll(r.getError()).map(PTypeError::code));
+
+    final Validation<Seq<PTypeError>, PTypedUnit> s =
+      PTypeChecker.checkUnit(
+        Vector.empty(),
+        this.resolve(
+          "(define-variant Option [∀ a] [case None] [case Some a])",
+          "(: f (-> Option Integer))",
+          "(define-function f (x) 23)"));
+
+    Assertions.assertTrue(s.isInvalid());
+    Assertions.assertEquals(
+      Vector.of(PTypeErrorCode.KIND_MISMATCH),
+      Vector.ofAll(s.getError()).map(PTypeError::code));
+  }
+
+  @Test
+  public void testHigherKindedTypes()
+  {
+    final Validation<Seq<PTypeError>, PTypedUnit> r =
+      PTypeChecker.checkUnit(
+        Vector.empty(),
+        this.resolve(
+          "(define-variant Option [∀ a] [case None] [case Some a])",
+          "(define-record Pair [∀ a b] [field first a] [field second b])",
+          "(define-record Wrap [∀ f a] [field value (f a)])",
+          "(define-function unwrap (w) w.value)",
+          "(define-value w (record Wrap [field value (Some 23)]))",
+          "(define-value p (record Wrap [field value (record Pair [field first \"x\"] [field second 1])]))",
+          "(define-value x (unwrap w))",
+          "(: rewrap (∀ f a (-> (f a) (Wrap f a))))",
+          "(define-function rewrap (v) (record Wrap [field value v]))",
+          "(define-value y (rewrap (Some 1)))"));
+
+    Assertions.assertTrue(r.isValid(), () -> r.getError().toString());
+    final PTypedUnit u = r.get();
+    Assertions.assertEquals(
+      "(∀ a b (-> (Wrap a b) (a b)))", u.termType("unwrap").get().toString());
+    Assertions.assertEquals(
+      "(Wrap Option Integer)", u.termType("w").get().toString());
+    Assertions.assertEquals(
+      "(Wrap (Pair String) Integer)", u.termType("p").get().toString());
+    Assertions.assertEquals(
+      "(Option Integer)", u.termType("x").get().toString());
+    Assertions.assertEquals(
+      "(Wrap Option Integer)", u.termType("y").get().toString());
+    Assertions.assertEquals(
+      "(-> (-> * *) * *)", u.typeKind("Wrap").get().toString());
+  }
+
+  @Test
+  public void testImportedKinds()
+    throws Exception
+  {
+    final Vector<PResolvedUnit> units = PResolver.resolve(
+      executor(),
+      Vector.of(
+        parse(String.join(
+          "\n",
+          "(define-unit a.A)",
+          "(export-types Wrap)",
+          "(define-record Wrap [∀ f a] [field value (f a)])")),
+        parse(String.join(
+          "\n",
+          "(define-unit b.B)",
+          "(import-qualified a.A A)",
+          "(define-record Bad [field x (A:Wrap Integer)])")))).get();
+
+    final PTypedUnit a =
+      PTypeChecker.checkUnit(Vector.empty(), units.get(0)).get();
+    final PKindEnvironment b = PKindChecker.check(Vector.of(a), units.get(1));
+    Assertions.assertEquals(Vector.of(PTypeErrorCode.KIND_MISMATCH), codes(b));
+  }
+
+  @Test
+  public void testRecheck()
+  {
+    final String[] original = {
+      "(define-variant A [∀ x] [case A0 x])",
+      "(define-record B [∀ y] [field b (A y)])",
+      "(define-record C [field c (B Integer)])",
+      "(define-record D [field d (Integer Integer)])",
+    };
+    final PKindEnvironment before = this.check(original);
+    Assertions.assertEquals(Vector.of(PTypeErrorCode.KIND_MISMATCH), codes(before));
+
+    final String[] arity = original.clone();
+    arity[0] = "(define-variant A [∀ x z] [case A0 x])";
+    final PResolvedUnit arity_unit = this.resolve(arity);
+    final PKindEnvironment arity_after =
+      PKindChecker.recheck(Vector.empty(), arity_unit, before, "A");
+    assertSameResult(
+      PKindChecker.check(Vector.empty(), arity_unit), arity_after);
+    Assertions.assertEquals("(-> * * *)", kind(arity_after, "A"));
+    Assertions.assertEquals(before.errors("D"), arity_after.errors("D"));
+
+    final String[] higher = original.clone();
+    higher[0] = "(define-variant A [∀ x] [case A0 (x Integer)])";
+    higher[1] = "(define-record B [∀ y] [field b (A y)])";
+    higher[2] = "(define-record C [field c (B Integer)])";
+    final PResolvedUnit higher_unit = this.resolve(higher);
+    final PKindEnvironment higher_after =
+      PKindChecker.recheck(Vector.empty(), higher_unit, before, "A");
+    assertSameResult(
+      PKindChecker.check(Vector.empty(), higher_unit), higher_after);
+    Assertions.assertEquals("(-> (-> * *) *)", kind(higher_after, "A"));
+    Assertions.assertEquals(
+      Vector.of(PTypeErrorCode.KIND_MISMATCH, PTypeErrorCode.KIND_MISMATCH),
+      codes(higher_after));
+
+    final String[] added = {
+      original[0],
+      original[1],
+      original[2],
+      original[3],
+      "(define-record E [field e (C Integer)])",
+    };
+    final PResolvedUnit added_unit = this.resolve(added);
+    assertSameResult(
+      PKindChecker.check(Vector.empty(), added_unit),
+      PKindChecker.recheck(Vector.empty(), added_unit, before, "E"));
+
+    final String[] removed = {original[0], original[1], original[2]};
+    final PResolvedUnit removed_unit = this.resolve(removed);
+    final PKindEnvironment removed_after =
+      PKindChecker.recheck(Vector.empty(), removed_unit, before, "D");
+    assertSameResult(
+      PKindChecker.check(Vector.empty(), removed_unit), removed_after);
+    Assertions.assertEquals(Vector.empty(), removed_after.errors());
+  }
+
+  @Test
+  public void testDeep()
+    throws Exception
+  {
+    final StringBuilder open = new StringBuilder(1024 * 16);
+    final StringBuilder close = new StringBuilder(1024);
+    for (int index = 0; index < 1_000; ++index) {
+      open.append("(f ");
+      close.append(')');
+    }
+
+    final PResolvedUnit unit = this.resolve(
+      "(define-record Deep [∀ f] [field x " + open + "Integer" + close + "])");
+    final PKindEnvironment e =
+      withSmallStack(() -> PKindChecker.check(Vector.empty(), unit));
+    Assertions.assertEquals("(-> (-> * *) *)", kind(e, "Deep"));
+  }
+}
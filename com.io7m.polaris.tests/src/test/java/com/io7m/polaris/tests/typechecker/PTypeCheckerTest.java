@@ -0,0 +1,357 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.tests.typechecker;
+
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.resolver.PResolvedUnit;
+import com.io7m.polaris.resolver.PResolver;
+import com.io7m.polaris.resolver.PUnitGraph;
+import com.io7m.polaris.resolver.PUnitHeader;
+import com.io7m.polaris.resolver.PUnitHeaders;
+import com.io7m.polaris.typechecker.PTypeChecker;
+import com.io7m.polaris.typechecker.PTypeError;
+import com.io7m.polaris.typechecker.PTypeErrorCode;
+import com.io7m.polaris.typechecker.PTypedUnit;
+import com.io7m.polaris.tests.PTestUtilities;
+import io.vavr.collection.Seq;
+import io.vavr.collection.Vector;
+import io.vavr.control.Validation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.io7m.polaris.tests.PTestUtilities.executor;
+import static com.io7m.polaris.tests.PTestUtilities.parse;
+import static com.io7m.polaris.tests.PTestUtilities.withSmallStack;
+
+public final class PTypeCheckerTest
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(PTypeCheckerTest.class);
+
+  private static final String TYPES = String.join(
+    "\n",
+    "(define-variant Option [∀ a] [case None] [case Some a])",
+    "(define-record Box [∀ a] [field value a] [field label String])");
+
+  private Validation<Seq<PTypeError>, Vector<PTypedUnit>> check(
+    final String... units)
+  {
+    final Vector<Vector<PExpressionOrDeclarationType<PParsed>>> parsed =
+      Vector.of(units).map(PTestUtilities::parse);
+
+    final Vector<PUnitHeader> headers =
+      parsed.map(forms -> PUnitHeaders.header(forms).get());
+    final PUnitGraph graph = PUnitGraph.build(headers).get();
+
+    final Vector<PResolvedUnit> resolved =
+      PResolver.resolve(executor(), parsed).get();
+
+    final Validation<Seq<PTypeError>, Vector<PTypedUnit>> r =
+      PTypeChecker.check(executor(), graph, resolved);
+    if (r.isInvalid()) {
+      r.getError().forEach(e -> LOG.error("invalid: {}", e));
+    }
+    return r;
+  }
+
+  private PTypedUnit checkOne(
+    final String... lines)
+  {
+    final Validation<Seq<PTypeError>, Vector<PTypedUnit>> r =
+      this.check(unit(lines));
+    Assertions.assertTrue(r.isValid());
+    return r.get().get(0);
+  }
+
+  private Vector<PTypeErrorCode> codes(
+    final String... lines)
+  {
+    final Validation<Seq<PTypeError>, Vector<PTypedUnit>> r =
+      this.check(unit(lines));
+    Assertions.assertTrue(r.isInvalid());
+    return Vector.ofAll(r.getError()).map(PTypeError::code);
+  }
+
+  private static String unit(
+    final String... lines)
+  {
+    return "(define-unit a.A)\n" + TYPES + "\n" + String.join("\n", lines);
+  }
+
+  private static String type(
+    final PTypedUnit unit,
+    final String name)
+  {
+    return unit.termType(name).get().toString();
+  }
+
+  @Test
+  public void testInference()
+  {
+    final PTypedUnit u = this.checkOne(
+      "(define-value i 23)",
+      "(define-value r 23.0)",
+      "(define-function id (x) x)",
+      "(define-function const (x y) x)",
+      "(define-value s (id \"s\"))",
+      "(define-function compose (f g x) (f (g x)))",
+      "(define-value k (λ (y) (const y i)))");
+
+    Assertions.assertEquals("Integer", type(u, "i"));
+    Assertions.assertEquals("Real", type(u, "r"));
+    Assertions.assertEquals("(∀ a (-> a a))", type(u, "id"));
+    Assertions.assertEquals("(∀ a b (-> a b a))", type(u, "const"));
+    Assertions.assertEquals("String", type(u, "s"));
+    Assertions.assertEquals(
+      "(∀ a b c (-> (-> a b) (-> c a) c b))", type(u, "compose"));
+    Assertions.assertEquals("(∀ a (-> a a))", type(u, "k"));
+    Assertions.assertFalse(u.termType("nonexistent").isPresent());
+  }
+
+  @Test
+  public void testLocalPolymorphism()
+  {
+    final PTypedUnit u = this.checkOne(
+      "(define-value q",
+      "  (local",
+      "    (define-function k (x) x)",
+      "    (define-value i (k 23))",
+      "    (define-value s (k \"s\"))",
+      "    (k k)))");
+
+    Assertions.assertEquals("(∀ a (-> a a))", type(u, "q"));
+  }
+
+  @Test
+  public void testRecursion()
+  {
+    final PTypedUnit u = this.checkOne(
+      "(define-function even (n) (odd n))",
+      "(define-function odd (n) (even n))",
+      "(define-function loop (n) (loop 23))");
+
+    Assertions.assertEquals("(∀ a b (-> a b))", type(u, "even"));
+    Assertions.assertEquals("(∀ a b (-> a b))", type(u, "odd"));
+    Assertions.assertEquals("(∀ a (-> Integer a))", type(u, "loop"));
+  }
+
+  @Test
+  public void testVariantsAndRecords()
+  {
+    final PTypedUnit u = this.checkOne(
+      "(define-value none None)",
+      "(define-value some (Some 3))",
+      "(define-function unwrap (o d) (match o [case (Some x) x] [case None d]))",
+      "(define-value box (record Box [field value 23] [field label \"x\"]))",
+      "(define-function get (b) b.value)",
+      "(define-function relabel (b) (record-update b [field label \"y\"]))",
+      "(define-value inner (record Box [field value box] [field label \"y\"]))",
+      "(define-value path inner.value.value)");
+
+    Assertions.assertEquals("(∀ a (Option a))", type(u, "none"));
+    Assertions.assertEquals("(Option Integer)", type(u, "some"));
+    Assertions.assertEquals("(∀ a (-> (Option a) a a))", type(u, "unwrap"));
+    Assertions.assertEquals("(Box Integer)", type(u, "box"));
+    Assertions.assertEquals("(∀ a (-> (Box a) a))", type(u, "get"));
+    Assertions.assertEquals("(∀ a (-> (Box a) (Box a)))", type(u, "relabel"));
+    Assertions.assertEquals("Integer", type(u, "path"));
+  }
+
+  @Test
+  public void testSignatures()
+  {
+    final PTypedUnit u = this.checkOne(
+      "(: id (∀ a (-> a a)))",
+      "(define-function id (x) x)",
+      "(: f (-> Integer Integer))",
+      "(define-function f (x) x)",
+      "(: apply-all (-> (-> (… Integer) Integer) Integer))",
+      "(define-function apply-all (g) (g 1 2 3))",
+      "(: poly (∀ a (-> a (Option a))))",
+      "(define-function poly (x) (local (define-value y (id x)) (Some y)))");
+
+    Assertions.assertEquals("(∀ a (-> a a))", type(u, "id"));
+    Assertions.assertEquals("(-> Integer Integer)", type(u, "f"));
+    Assertions.assertEquals(
+      "(-> (-> (… Integer) Integer) Integer)", type(u, "apply-all"));
+    Assertions.assertEquals("(∀ a (-> a (Option a)))", type(u, "poly"));
+  }
+
+  @Test
+  public void testImports()
+  {
+    final Validation<Seq<PTypeError>, Vector<PTypedUnit>> r = this.check(
+      unit(
+        "(export-terms id)",
+        "(export-types Option)",
+        "(define-function id (x) x)"),
+      String.join(
+        "\n",
+        "(define-unit b.B)",
+        "(import-qualified a.A A)",
+        "(define-value x (A:id (A:Some 23)))",
+        "(define-function y (o) (match o [case (A:Some z) z] [case A:None 0]))"));
+
+    Assertions.assertTrue(r.isValid());
+    final PTypedUnit b = r.get().get(1);
+    Assertions.assertEquals("b.B", b.name());
+    Assertions.assertEquals("(Option Integer)", type(b, "x"));
+    Assertions.assertEquals("(-> (Option Integer) Integer)", type(b, "y"));
+  }
+
+  @Test
+  public void testImportErrorPropagates()
+  {
+    final Validation<Seq<PTypeError>, Vector<PTypedUnit>> r = this.check(
+      unit(
+        "(export-terms id)",
+        "(define-function id (x) (x x))"),
+      String.join(
+        "\n",
+        "(define-unit b.B)",
+        "(import-qualified a.A A)",
+        "(define-value x (A:id 23))"));
+
+    Assertions.assertTrue(r.isInvalid());
+    Assertions.assertEquals(
+      Vector.of(PTypeErrorCode.TYPE_INFINITE),
+      Vector.ofAll(r.getError()).map(PTypeError::code));
+  }
+
+  @Test
+  public void testErrorMismatch()
+  {
+    Assertions.assertEquals(
+      Vector.of(PTypeErrorCode.TYPE_MISMATCH),
+      this.codes("(define-value c (match 1 [case \"s\" 2]))"));
+  }
+
+  @Test
+  public void testErrorInfinite()
+  {
+    Assertions.assertEquals(
+      Vector.of(PTypeErrorCode.TYPE_INFINITE),
+      this.codes("(define-function g (x) (x x))"));
+  }
+
+  @Test
+  public void testErrorApplication()
+  {
+    Assertions.assertEquals(
+      Vector.of(
+        PTypeErrorCode.APPLICATION_NOT_A_FUNCTION,
+        PTypeErrorCode.APPLICATION_ARITY),
+      this.codes(
+        "(define-function f (x) x)",
+        "(define-value a (23 1))",
+        "(define-value b (f 1 2))"));
+  }
+
+  @Test
+  public void testErrorPatternArity()
+  {
+    Assertions.assertEquals(
+      Vector.of(PTypeErrorCode.PATTERN_ARITY),
+      this.codes("(define-function f (o) (match o [case (None x) x] [case (Some x) x]))"));
+  }
+
+  @Test
+  public void testErrorSignatures()
+  {
+    Assertions.assertEquals(
+      Vector.of(
+        PTypeErrorCode.SIGNATURE_WITHOUT_DEFINITION,
+        PTypeErrorCode.SIGNATURE_MISMATCH,
+        PTypeErrorCode.SIGNATURE_MISMATCH),
+      this.codes(
+        "(: bad (∀ a (-> a a)))",
+        "(define-function bad (x) 23)",
+        "(: n Integer)",
+        "(define-value n \"x\")",
+        "(: lonely Integer)"));
+  }
+
+  @Test
+  public void testErrorRecords()
+  {
+    Assertions.assertEquals(
+      Vector.of(
+        PTypeErrorCode.RECORD_FIELD_MISSING,
+        PTypeErrorCode.RECORD_FIELD_UNKNOWN,
+        PTypeErrorCode.RECORD_NOT_FOUND),
+      this.codes(
+        "(define-value m (record Box [field value 1]))",
+        "(define-value u (record Box [field value 1] [field label \"x\"] [field nope 1]))",
+        "(define-function h (r) r.nothing)"));
+  }
+
+  @Test
+  public void testErrorRecordAmbiguous()
+  {
+    Assertions.assertEquals(
+      Vector.of(PTypeErrorCode.RECORD_AMBIGUOUS),
+      this.codes(
+        "(define-record Other [field value Integer])",
+        "(define-function h (r) r.value)"));
+  }
+
+  @Test
+  public void testLarge()
+  {
+    final StringBuilder text = new StringBuilder(1024 * 1024);
+    text.append("(define-unit a.A)\n");
+    text.append("(define-function f0 (x) x)\n");
+    for (int index = 1; index < 20_000; ++index) {
+      text.append("(define-function f")
+        .append(index)
+        .append(" (x) (f")
+        .append(index - 1)
+        .append(" (f0 x)))\n");
+    }
+
+    final Validation<Seq<PTypeError>, Vector<PTypedUnit>> r =
+      this.check(text.toString());
+    Assertions.assertTrue(r.isValid());
+    Assertions.assertEquals(
+      "(∀ a (-> a a))", type(r.get().get(0), "f19999"));
+  }
+
+  @Test
+  public void testDeep()
+    throws Exception
+  {
+    final StringBuilder open = new StringBuilder(1024 * 64);
+    final StringBuilder close = new StringBuilder(1024 * 4);
+    for (int index = 0; index < 2_000; ++index) {
+      open.append("(λ (y) ");
+      close.append(')');
+    }
+
+    final Vector<PExpressionOrDeclarationType<PParsed>> forms =
+      parse("(define-unit a.A) (define-value d " + open + "23" + close + ")");
+    final PResolvedUnit unit =
+      PResolver.resolve(executor(), Vector.of(forms)).get().get(0);
+
+    final Validation<Seq<PTypeError>, PTypedUnit> r =
+      withSmallStack(() -> PTypeChecker.checkUnit(Vector.empty(), unit));
+    Assertions.assertTrue(r.isValid());
+    Assertions.assertTrue(type(r.get(), "d").endsWith("Integer" + close + ")"));
+  }
+}
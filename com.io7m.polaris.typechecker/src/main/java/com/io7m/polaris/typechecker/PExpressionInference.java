@@ -0,0 +1,609 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.typechecker;
+
+import com.io7m.polaris.ast.PDeclarationFunction;
+import com.io7m.polaris.ast.PDeclarationSignature;
+import com.io7m.polaris.ast.PDeclarationValue;
+import com.io7m.polaris.ast.PExpressionMatcherType;
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.ast.PExpressionType;
+import com.io7m.polaris.ast.PPatternType;
+import com.io7m.polaris.ast.PTermReferenceType;
+import com.io7m.polaris.ast.PTermVariableNameType;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.resolver.PBuiltinTypes;
+import io.vavr.collection.Vector;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Type inference for expressions. Expressions are traversed using an
+ * explicit stack of expressions and continuations, and the inferred types of
+ * subexpressions are held on a separate stack until the continuation of
+ * their parent consumes them. The Java stack depth used is therefore
+ * independent of the depth of the expressions.
+ */
+
+final class PExpressionInference
+  implements PExpressionMatcherType<PParsed, Void, RuntimeException>
+{
+  static final PMonoType INTEGER =
+    PTypeConstructor.of(PBuiltinTypes.INTEGER, "Integer");
+  static final PMonoType REAL =
+    PTypeConstructor.of(PBuiltinTypes.REAL, "Real");
+  static final PMonoType STRING =
+    PTypeConstructor.of(PBuiltinTypes.STRING, "String");
+
+  private final PUnitChecker checker;
+  private final PTypeContext context;
+  private final ArrayDeque<Object> stack;
+  private final ArrayDeque<PMonoType> results;
+
+  PExpressionInference(
+    final PUnitChecker in_checker,
+    final PTypeContext in_context)
+  {
+    this.checker = Objects.requireNonNull(in_checker, "Checker");
+    this.context = Objects.requireNonNull(in_context, "Context");
+    this.stack = new ArrayDeque<>(16);
+    this.results = new ArrayDeque<>(16);
+  }
+
+  /**
+   * Infer the type of an expression at the current level.
+   *
+   * @param e The expression
+   *
+   * @return The type of the expression
+   */
+
+  PMonoType infer(
+    final PExpressionType<PParsed> e)
+  {
+    this.stack.push(e);
+    while (!this.stack.isEmpty()) {
+      final Object top = this.stack.pop();
+      if (top instanceof Runnable) {
+        ((Runnable) top).run();
+      } else {
+        @SuppressWarnings("unchecked")
+        final PExpressionType<PParsed> x = (PExpressionType<PParsed>) top;
+        x.matchExpression(this);
+      }
+    }
+    return this.results.pop();
+  }
+
+  /**
+   * Bind each of the given parameters to a fresh variable.
+   *
+   * @param names The parameters
+   *
+   * @return The types of the parameters
+   */
+
+  PMonoType[] bindParameters(
+    final Vector<PTermVariableNameType<PParsed>> names)
+  {
+    final PMonoType[] types = new PMonoType[names.size()];
+    for (int index = 0; index < types.length; ++index) {
+      types[index] = this.context.fresh();
+      this.checker.bindMonomorphic(names.get(index).data().id(), types[index]);
+    }
+    return types;
+  }
+
+  private PMonoType[] popResults(
+    final int count)
+  {
+    final PMonoType[] popped = new PMonoType[count];
+    for (int index = count - 1; index >= 0; --index) {
+      popped[index] = this.results.pop();
+    }
+    return popped;
+  }
+
+  /*
+   * Constants and references.
+   */
+
+  @Override
+  public Void constantInteger(
+    final PExpressionType.PExprConstantIntegerType<PParsed> e)
+  {
+    this.results.push(INTEGER);
+    return null;
+  }
+
+  @Override
+  public Void constantReal(
+    final PExpressionType.PExprConstantRealType<PParsed> e)
+  {
+    this.results.push(REAL);
+    return null;
+  }
+
+  @Override
+  public Void constantString(
+    final PExpressionType.PExprConstantStringType<PParsed> e)
+  {
+    this.results.push(STRING);
+    return null;
+  }
+
+  @Override
+  public Void reference(
+    final PExpressionType.PExprReferenceType<PParsed> e)
+  {
+    final PTermReferenceType<PParsed> reference = e.reference();
+    switch (reference.referenceKind()) {
+      case REFERENCE_CONSTRUCTOR: {
+        this.results.push(this.checker.constructorType(
+          (PTermReferenceType.PTermReferenceConstructorType<PParsed>) reference));
+        break;
+      }
+      case REFERENCE_VARIABLE: {
+        final PTermReferenceType.PTermReferenceVariableType<PParsed> v =
+          (PTermReferenceType.PTermReferenceVariableType<PParsed>) reference;
+        PMonoType t = this.checker.termType(v);
+        for (final PTermVariableNameType<PParsed> field : v.recordPath()) {
+          t = this.project(field, t);
+        }
+        this.results.push(t);
+        break;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Determine the type of {@code field} in a record of type {@code t}.
+   */
+
+  private PMonoType project(
+    final PTermVariableNameType<PParsed> field,
+    final PMonoType t)
+  {
+    final String name = field.value();
+    final PRecordInfo r =
+      this.checker.recordOf(field.lexical(), t, Vector.of(name));
+    if (r == null) {
+      return this.context.fresh();
+    }
+
+    final PMonoType f = r.fields().get(name);
+    if (f == null) {
+      this.checker.error(
+        field.lexical(),
+        PTypeErrorCode.RECORD_FIELD_UNKNOWN,
+        "Record type " + this.checker.show(r.type()) + " has no field " + name);
+      return this.context.fresh();
+    }
+    return f;
+  }
+
+  /*
+   * Functions.
+   */
+
+  @Override
+  public Void application(
+    final PExpressionType.PExprApplicationType<PParsed> e)
+  {
+    final Vector<PExpressionType<PParsed>> arguments = e.arguments();
+    this.stack.push((Runnable) () -> {
+      final PMonoType[] types = this.popResults(arguments.size());
+      this.results.push(this.apply(e, this.results.pop(), types));
+    });
+    for (int index = arguments.size() - 1; index >= 0; --index) {
+      this.stack.push(arguments.get(index));
+    }
+    this.stack.push(e.function());
+    return null;
+  }
+
+  private PMonoType apply(
+    final PExpressionType.PExprApplicationType<PParsed> e,
+    final PMonoType function,
+    final PMonoType[] arguments)
+  {
+    final PMonoType f = PTypeContext.find(function);
+    if (f instanceof PTypeArrow) {
+      return this.applyArrow(e, (PTypeArrow) f, arguments);
+    }
+
+    if (f instanceof PTypeVariable) {
+      final PMonoType result = this.context.fresh();
+      this.checker.unify(
+        e.lexical(), new PTypeArrow(arguments, false, result), f);
+      return result;
+    }
+
+    this.checker.error(
+      e.lexical(),
+      PTypeErrorCode.APPLICATION_NOT_A_FUNCTION,
+      "A term of type " + this.checker.show(f) + " cannot be applied");
+    return this.context.fresh();
+  }
+
+  private PMonoType applyArrow(
+    final PExpressionType.PExprApplicationType<PParsed> e,
+    final PTypeArrow f,
+    final PMonoType[] arguments)
+  {
+    final PMonoType[] parameters = f.parameters();
+    final int fixed = f.isVariadic() ? parameters.length - 1 : parameters.length;
+    final boolean arity_ok = f.isVariadic()
+      ? arguments.length >= fixed
+      : arguments.length == fixed;
+
+    if (!arity_ok) {
+      this.checker.error(
+        e.lexical(),
+        PTypeErrorCode.APPLICATION_ARITY,
+        "A function of type " + this.checker.show(f)
+          + " cannot be applied to " + arguments.length + " arguments");
+      return f.result();
+    }
+
+    final Vector<PExpressionType<PParsed>> exprs = e.arguments();
+    for (int index = 0; index < arguments.length; ++index) {
+      final PMonoType parameter =
+        index < fixed ? parameters[index] : parameters[parameters.length - 1];
+      this.checker.unify(
+        exprs.get(index).lexical(), parameter, arguments[index]);
+    }
+    return f.result();
+  }
+
+  @Override
+  public Void lambda(
+    final PExpressionType.PExprLambdaType<PParsed> e)
+  {
+    final PMonoType[] parameters = this.bindParameters(e.arguments());
+    this.stack.push((Runnable) () -> this.results.push(
+      new PTypeArrow(parameters, false, this.results.pop())));
+    this.stack.push(e.expression());
+    return null;
+  }
+
+  /*
+   * Local declarations.
+   */
+
+  /**
+   * The declarations of a {@code local} expression are processed in order,
+   * each pushing the next step as its continuation. A signature applies to
+   * the next value or function declaration with the same name. Each value
+   * and function is inferred at a new level and generalized.
+   */
+
+  @Override
+  public Void local(
+    final PExpressionType.PExprLocalType<PParsed> e)
+  {
+    this.stack.push(new LocalStep(e));
+    return null;
+  }
+
+  private void localDeclaration(
+    final LocalStep step,
+    final PExpressionOrDeclarationType<PParsed> local)
+  {
+    if (local instanceof PExpressionType) {
+      this.stack.push((Runnable) this.results::pop);
+      this.stack.push(local);
+    } else if (local instanceof PDeclarationSignature) {
+      final PDeclarationSignature<PParsed> s =
+        (PDeclarationSignature<PParsed>) local;
+      final String name = s.name().value();
+      if (step.signatures.containsKey(name)) {
+        this.checker.error(
+          s.lexical(),
+          PTypeErrorCode.SIGNATURE_DUPLICATE,
+          "Signature already given for " + name);
+      }
+      step.signatures.put(name, this.checker.signatureType(s));
+    } else if (local instanceof PDeclarationValue) {
+      this.localValue(step, (PDeclarationValue<PParsed>) local);
+    } else if (local instanceof PDeclarationFunction) {
+      this.localFunction(step, (PDeclarationFunction<PParsed>) local);
+    }
+  }
+
+  private void localValue(
+    final LocalStep step,
+    final PDeclarationValue<PParsed> v)
+  {
+    final PMonoType signature = step.signatures.remove(v.name().value());
+    this.context.enter();
+    final PMonoType rigid = signature == null ? null : this.checker.rigid(signature);
+    this.stack.push((Runnable) () -> this.checker.bindDeclaration(
+      v.lexical(), v.name(), this.results.pop(), signature, rigid));
+    this.stack.push(v.expression());
+  }
+
+  private void localFunction(
+    final LocalStep step,
+    final PDeclarationFunction<PParsed> f)
+  {
+    final PMonoType signature = step.signatures.remove(f.name().value());
+    final int id = f.name().data().id();
+    this.context.enter();
+
+    final PMonoType self;
+    final PMonoType rigid;
+    if (signature != null) {
+      self = signature;
+      rigid = this.checker.rigid(signature);
+      this.checker.bindPolymorphic(id, signature);
+    } else {
+      self = this.context.fresh();
+      rigid = null;
+      this.checker.bindMonomorphic(id, self);
+    }
+
+    final PMonoType[] parameters = this.bindParameters(f.parameters());
+    if (rigid != null) {
+      this.checker.bindSignatureParameters(rigid, parameters);
+    }
+
+    this.stack.push((Runnable) () -> {
+      final PMonoType t = new PTypeArrow(parameters, false, this.results.pop());
+      if (signature == null) {
+        this.checker.unify(f.lexical(), self, t);
+      }
+      this.checker.bindDeclaration(f.lexical(), f.name(), t, signature, rigid);
+    });
+    this.stack.push(f.expression());
+  }
+
+  /*
+   * Pattern matching.
+   */
+
+  @Override
+  public Void match(
+    final PExpressionType.PExprMatchType<PParsed> e)
+  {
+    final MatchState state = new MatchState(this.context.fresh());
+    this.stack.push((Runnable) () -> this.results.push(state.result));
+
+    final Vector<PExpressionType.PMatchCaseType<PParsed>> cases = e.cases();
+    for (int index = cases.size() - 1; index >= 0; --index) {
+      final PExpressionType.PMatchCaseType<PParsed> c = cases.get(index);
+      this.stack.push((Runnable) () -> this.checker.unify(
+        c.expression().lexical(), state.result, this.results.pop()));
+      this.stack.push(c.expression());
+      this.stack.push((Runnable) () -> this.pattern(c.pattern(), state.target));
+    }
+
+    this.stack.push((Runnable) () -> state.target = this.results.pop());
+    this.stack.push(e.target());
+    return null;
+  }
+
+  private void pattern(
+    final PPatternType<PParsed> p,
+    final PMonoType target)
+  {
+    switch (p.kind()) {
+      case PATTERN_CONSTANT_INTEGER:
+        this.checker.unify(p.lexical(), target, INTEGER);
+        break;
+      case PATTERN_CONSTANT_REAL:
+        this.checker.unify(p.lexical(), target, REAL);
+        break;
+      case PATTERN_CONSTANT_STRING:
+        this.checker.unify(p.lexical(), target, STRING);
+        break;
+      case PATTERN_WILDCARD:
+        break;
+      case PATTERN_CONSTRUCTOR:
+        this.patternConstructor(
+          (PPatternType.PPatternConstructorType<PParsed>) p, target);
+        break;
+    }
+  }
+
+  private void patternConstructor(
+    final PPatternType.PPatternConstructorType<PParsed> p,
+    final PMonoType target)
+  {
+    final PMonoType c = PTypeContext.find(this.checker.constructorType(p.constructor()));
+    final boolean has_parameter = c instanceof PTypeArrow;
+
+    if (has_parameter != p.argument().isPresent()) {
+      final String name = p.constructor().constructor().value();
+      this.checker.error(
+        p.lexical(),
+        PTypeErrorCode.PATTERN_ARITY,
+        has_parameter
+          ? "Constructor " + name + " requires an argument"
+          : "Constructor " + name + " does not take an argument");
+    }
+
+    if (has_parameter) {
+      final PTypeArrow a = (PTypeArrow) c;
+      p.argument().ifPresent(
+        arg -> this.checker.bindMonomorphic(arg.data().id(), a.parameters()[0]));
+      this.checker.unify(p.lexical(), target, a.result());
+    } else {
+      p.argument().ifPresent(
+        arg -> this.checker.bindMonomorphic(arg.data().id(), this.context.fresh()));
+      this.checker.unify(p.lexical(), target, c);
+    }
+  }
+
+  /*
+   * Records.
+   */
+
+  @Override
+  public Void record(
+    final PExpressionType.PExprRecordType<PParsed> e)
+  {
+    final PRecordInfo r = this.checker.recordDeclared(e.lexical(), e.target());
+    if (r == null) {
+      this.stack.push((Runnable) () -> this.results.push(this.context.fresh()));
+      this.pushFields(e.fields(), null);
+      return null;
+    }
+
+    final Map<String, PExpressionType.PExprRecordFieldType<PParsed>> given =
+      e.fieldsByName().toJavaMap();
+    for (final String name : r.fields().keySet()) {
+      if (!given.containsKey(name)) {
+        this.checker.error(
+          e.lexical(),
+          PTypeErrorCode.RECORD_FIELD_MISSING,
+          "No value given for field " + name + " of record type "
+            + this.checker.show(r.type()));
+      }
+    }
+
+    this.stack.push((Runnable) () -> this.results.push(r.type()));
+    this.pushFields(e.fields(), r);
+    return null;
+  }
+
+  @Override
+  public Void recordUpdate(
+    final PExpressionType.PExprRecordUpdateType<PParsed> e)
+  {
+    final UpdateState state = new UpdateState();
+    this.stack.push((Runnable) () -> this.results.push(state.source));
+    this.pushFieldsDeferred(e.fields(), state);
+    this.stack.push((Runnable) () -> {
+      state.source = this.results.pop();
+      state.record = this.checker.recordOf(
+        e.lexical(),
+        state.source,
+        e.fields().map(f -> f.field().value()));
+    });
+    this.stack.push(e.source());
+    return null;
+  }
+
+  private void pushFields(
+    final Vector<PExpressionType.PExprRecordFieldType<PParsed>> fields,
+    final PRecordInfo r)
+  {
+    for (int index = fields.size() - 1; index >= 0; --index) {
+      final PExpressionType.PExprRecordFieldType<PParsed> f = fields.get(index);
+      this.stack.push((Runnable) () -> this.field(r, f, this.results.pop()));
+      this.stack.push(f.expression());
+    }
+  }
+
+  private void pushFieldsDeferred(
+    final Vector<PExpressionType.PExprRecordFieldType<PParsed>> fields,
+    final UpdateState state)
+  {
+    for (int index = fields.size() - 1; index >= 0; --index) {
+      final PExpressionType.PExprRecordFieldType<PParsed> f = fields.get(index);
+      this.stack.push((Runnable) () -> this.field(state.record, f, this.results.pop()));
+      this.stack.push(f.expression());
+    }
+  }
+
+  private void field(
+    final PRecordInfo r,
+    final PExpressionType.PExprRecordFieldType<PParsed> f,
+    final PMonoType received)
+  {
+    if (r == null) {
+      return;
+    }
+
+    final String name = f.field().value();
+    final PMonoType expected = r.fields().get(name);
+    if (expected == null) {
+      this.checker.error(
+        f.lexical(),
+        PTypeErrorCode.RECORD_FIELD_UNKNOWN,
+        "Record type " + this.checker.show(r.type()) + " has no field " + name);
+      return;
+    }
+    this.checker.unify(f.expression().lexical(), expected, received);
+  }
+
+  private final class LocalStep implements Runnable
+  {
+    private final PExpressionType.PExprLocalType<PParsed> local;
+    private final HashMap<String, PMonoType> signatures;
+    private int index;
+
+    LocalStep(
+      final PExpressionType.PExprLocalType<PParsed> in_local)
+    {
+      this.local = in_local;
+      this.signatures = new HashMap<>(0);
+      this.index = 0;
+    }
+
+    @Override
+    public void run()
+    {
+      final Vector<PExpressionOrDeclarationType<PParsed>> locals =
+        this.local.locals();
+
+      if (this.index < locals.size()) {
+        final PExpressionOrDeclarationType<PParsed> next = locals.get(this.index);
+        ++this.index;
+        PExpressionInference.this.stack.push(this);
+        PExpressionInference.this.localDeclaration(this, next);
+        return;
+      }
+
+      for (final String name : this.signatures.keySet()) {
+        PExpressionInference.this.checker.error(
+          this.local.lexical(),
+          PTypeErrorCode.SIGNATURE_WITHOUT_DEFINITION,
+          "Signature given for " + name + " is not followed by a declaration");
+      }
+      PExpressionInference.this.stack.push(this.local.body());
+    }
+  }
+
+  private static final class MatchState
+  {
+    private final PMonoType result;
+    private PMonoType target;
+
+    MatchState(
+      final PMonoType in_result)
+    {
+      this.result = in_result;
+    }
+  }
+
+  private static final class UpdateState
+  {
+    private PMonoType source;
+    private PRecordInfo record;
+
+    UpdateState()
+    {
+
+    }
+  }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.typechecker;
+
+import com.io7m.jaffirm.core.Preconditions;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+
+/**
+ * The kind of a type constructor. A kind is either {@code *}, the kind of
+ * types that have values, or an arrow from the kind of a parameter to the
+ * kind of the result of applying a constructor to that parameter. Kinds are
+ * immutable, and operations on them use explicit stacks rather than
+ * recursion.
+ */
+
+public final class PKind
+{
+  private static final PKind STAR = new PKind(null, null);
+
+  private final PKind parameter;
+  private final PKind result;
+  private final int hash;
+
+  private PKind(
+    final PKind in_parameter,
+    final PKind in_result)
+  {
+    this.parameter = in_parameter;
+    this.result = in_result;
+    this.hash = in_parameter == null
+      ? 0 : 31 * (31 + in_parameter.hash) + in_result.hash + 1;
+  }
+
+  /**
+   * @return The kind {@code *}
+   */
+
+  public static PKind star()
+  {
+    return STAR;
+  }
+
+  /**
+   * @param parameter The kind of the parameter
+   * @param result    The kind of the result
+   *
+   * @return The kind {@code (-> parameter result)}
+   */
+
+  public static PKind arrow(
+    final PKind parameter,
+    final PKind result)
+  {
+    return new PKind(
+      Objects.requireNonNull(parameter, "Parameter"),
+      Objects.requireNonNull(result, "Result"));
+  }
+
+  /**
+   * @param arity The number of parameters
+   *
+   * @return The kind of a constructor that takes {@code arity} parameters of
+   * kind {@code *}
+   */
+
+  public static PKind constructor(
+    final int arity)
+  {
+    Preconditions.checkPreconditionI(
+      arity, arity >= 0, n -> "Arity must be non-negative");
+
+    PKind k = STAR;
+    for (int index = 0; index < arity; ++index) {
+      k = new PKind(STAR, k);
+    }
+    return k;
+  }
+
+  /**
+   * @return {@code true} iff this kind is {@code *}
+   */
+
+  public boolean isStar()
+  {
+    return this.parameter == null;
+  }
+
+  /**
+   * @return The kind of the parameter of this arrow
+   */
+
+  public PKind parameter()
+  {
+    Preconditions.checkPrecondition(
+      this, !this.isStar(), k -> "Kind must be an arrow");
+    return this.parameter;
+  }
+
+  /**
+   * @return The kind of the result of this arrow
+   */
+
+  public PKind result()
+  {
+    Preconditions.checkPrecondition(
+      this, !this.isStar(), k -> "Kind must be an arrow");
+    return this.result;
+  }
+
+  /**
+   * @return The number of parameters that a constructor of this kind takes
+   */
+
+  public int arity()
+  {
+    int count = 0;
+    for (PKind k = this; !k.isStar(); k = k.result) {
+      ++count;
+    }
+    return count;
+  }
+
+  @Override
+  public boolean equals(
+    final Object other)
+  {
+    if (this == other) {
+      return true;
+    }
+    if (other == null || !Objects.equals(this.getClass(), other.getClass())) {
+      return false;
+    }
+
+    final ArrayDeque<PKind> stack = new ArrayDeque<>(8);
+    stack.push(this);
+    stack.push((PKind) other);
+    while (!stack.isEmpty()) {
+      final PKind y = stack.pop();
+      final PKind x = stack.pop();
+      if (x == y) {
+        continue;
+      }
+      if (x.hash != y.hash || x.isStar() != y.isStar()) {
+        return false;
+      }
+      stack.push(x.parameter);
+      stack.push(y.parameter);
+      stack.push(x.result);
+      stack.push(y.result);
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return this.hash;
+  }
+
+  /**
+   * @return The kind in the concrete syntax of kinds, such as
+   * {@code (-> * (-> * *) *)}
+   */
+
+  @Override
+  public String toString()
+  {
+    final StringBuilder sb = new StringBuilder(16);
+    final ArrayDeque<Object> stack = new ArrayDeque<>(8);
+    stack.push(this);
+
+    while (!stack.isEmpty()) {
+      final Object top = stack.pop();
+      if (top instanceof String) {
+        sb.append((String) top);
+        continue;
+      }
+
+      final PKind k = (PKind) top;
+      if (k.isStar()) {
+        sb.append('*');
+        continue;
+      }
+
+      sb.append("(->");
+      stack.push(")");
+      PKind spine = k;
+      final ArrayDeque<PKind> parameters = new ArrayDeque<>(4);
+      while (!spine.isStar()) {
+        parameters.push(spine.parameter);
+        spine = spine.result;
+      }
+      stack.push(spine);
+      stack.push(" ");
+      while (!parameters.isEmpty()) {
+        stack.push(parameters.pop());
+        stack.push(" ");
+      }
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,390 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.typechecker;
+
+import com.io7m.junreachable.UnreachableCodeException;
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.ast.PTypeConstructorNameType;
+import com.io7m.polaris.ast.PTypeDeclarationType;
+import com.io7m.polaris.ast.PTypeExprReference;
+import com.io7m.polaris.ast.PTypeExpressionType;
+import com.io7m.polaris.ast.PTypeExpressions;
+import com.io7m.polaris.ast.PTypeReferenceType;
+import com.io7m.polaris.ast.PTypeVariableNameType;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.resolver.PBinding;
+import com.io7m.polaris.resolver.PResolvedUnit;
+import io.vavr.collection.Map;
+import io.vavr.collection.TreeMap;
+import io.vavr.collection.Vector;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Kind inference for the record and variant declarations of a unit.
+ *
+ * Declarations are inferred in strongly connected components of the graph
+ * of references between them, dependencies first, so that the kinds of the
+ * members of a component are inferred together and the kind of every other
+ * declaration is already known. Parameters whose kinds are unconstrained are
+ * given the kind {@code *}.
+ *
+ * The resulting environment caches the kind of each declaration by name,
+ * along with the names that each declaration refers to, so that a changed
+ * declaration can be rechecked without rechecking the rest of the unit.
+ */
+
+public final class PKindChecker
+{
+  private PKindChecker()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Infer the kinds of the type declarations of a unit. The typed units of
+   * every unit that it imports must be provided.
+   *
+   * @param imports The typed units imported by the unit
+   * @param unit    The unit
+   *
+   * @return The kinds of the declarations, and any errors
+   */
+
+  public static PKindEnvironment check(
+    final Vector<PTypedUnit> imports,
+    final PResolvedUnit unit)
+  {
+    Objects.requireNonNull(imports, "Imports");
+    Objects.requireNonNull(unit, "Unit");
+    return check(visibleUnits(imports), unit);
+  }
+
+  /**
+   * Recheck the type declarations of a unit after the declaration named
+   * {@code changed} has been edited, added, or removed, and no other
+   * declaration in the unit, or in any unit that it imports, has changed.
+   * The component containing {@code changed} is rechecked, and any other
+   * component is rechecked only if the kind of a declaration that it refers
+   * to has changed. The kinds and errors of every other declaration are
+   * taken from {@code previous}.
+   *
+   * @param imports  The typed units imported by the unit
+   * @param unit     The edited unit
+   * @param previous The result of checking the unit before the edit
+   * @param changed  The name of the changed declaration
+   *
+   * @return The kinds of the declarations, and any errors
+   */
+
+  public static PKindEnvironment recheck(
+    final Vector<PTypedUnit> imports,
+    final PResolvedUnit unit,
+    final PKindEnvironment previous,
+    final String changed)
+  {
+    Objects.requireNonNull(imports, "Imports");
+    Objects.requireNonNull(unit, "Unit");
+    Objects.requireNonNull(previous, "Previous");
+    Objects.requireNonNull(changed, "Changed");
+    return new Run(visibleUnits(imports), unit, previous, changed).run();
+  }
+
+  static PKindEnvironment check(
+    final Map<String, PTypedUnit> units,
+    final PResolvedUnit unit)
+  {
+    return new Run(units, unit, null, null).run();
+  }
+
+  static Map<String, PTypedUnit> visibleUnits(
+    final Vector<PTypedUnit> imports)
+  {
+    Map<String, PTypedUnit> visible = TreeMap.empty();
+    for (final PTypedUnit i : imports) {
+      visible = visible.merge(i.units()).put(i.name(), i);
+    }
+    return visible;
+  }
+
+  private static PTypeConstructorNameType<PParsed> declarationName(
+    final PTypeDeclarationType<PParsed> d)
+  {
+    if (d instanceof PTypeDeclarationType.PDeclarationRecordType) {
+      return ((PTypeDeclarationType.PDeclarationRecordType<PParsed>) d).name();
+    }
+    return ((PTypeDeclarationType.PDeclarationVariantType<PParsed>) d).name();
+  }
+
+  private static Vector<PTypeVariableNameType<PParsed>> declarationParameters(
+    final PTypeDeclarationType<PParsed> d)
+  {
+    if (d instanceof PTypeDeclarationType.PDeclarationRecordType) {
+      return ((PTypeDeclarationType.PDeclarationRecordType<PParsed>) d).parameters();
+    }
+    return ((PTypeDeclarationType.PDeclarationVariantType<PParsed>) d).parameters();
+  }
+
+  private static Vector<PTypeExpressionType<PParsed>> declarationTypes(
+    final PTypeDeclarationType<PParsed> d)
+  {
+    if (d instanceof PTypeDeclarationType.PDeclarationRecordType) {
+      return ((PTypeDeclarationType.PDeclarationRecordType<PParsed>) d)
+        .fields()
+        .map(PTypeDeclarationType.PRecordFieldType::type);
+    }
+    return ((PTypeDeclarationType.PDeclarationVariantType<PParsed>) d)
+      .cases()
+      .flatMap(c -> c.parameter().map(Vector::of).orElseGet(Vector::empty));
+  }
+
+  private static final class Run
+  {
+    private final PResolvedUnit unit;
+    private final PKindEnvironment previous;
+    private final String changed;
+    private final ArrayList<PTypeDeclarationType<PParsed>> declarations;
+    private final HashMap<String, Integer> indices;
+    private final HashMap<String, PKind> kinds;
+    private final ArrayList<PTypeError> errors;
+    private final PKindInference inference;
+
+    Run(
+      final Map<String, PTypedUnit> in_units,
+      final PResolvedUnit in_unit,
+      final PKindEnvironment in_previous,
+      final String in_changed)
+    {
+      this.unit = in_unit;
+      this.previous = in_previous;
+      this.changed = in_changed;
+      this.declarations = new ArrayList<>(16);
+      this.indices = new HashMap<>(16);
+      this.kinds = new HashMap<>(16);
+      this.errors = new ArrayList<>(0);
+      this.inference =
+        new PKindInference(in_unit, in_units, this.kinds::get, this.errors);
+    }
+
+    PKindEnvironment run()
+    {
+      this.collectDeclarations();
+
+      final int size = this.declarations.size();
+      final Vector<String>[] dependencies = this.dependencies();
+      final int[][] edges = new int[size][];
+      for (int index = 0; index < size; ++index) {
+        edges[index] = dependencies[index]
+          .map(this.indices::get)
+          .filter(Objects::nonNull)
+          .toJavaStream()
+          .mapToInt(Integer::intValue)
+          .toArray();
+      }
+
+      final HashSet<String> changed_kinds = this.removedDeclarations();
+
+      Vector<String> names = Vector.empty();
+      Map<String, Vector<String>> dependency_map = TreeMap.empty();
+      for (int index = 0; index < size; ++index) {
+        final String name = declarationName(this.declarations.get(index)).value();
+        names = names.append(name);
+        dependency_map = dependency_map.put(name, dependencies[index]);
+      }
+
+      Map<String, Vector<PTypeError>> error_map = TreeMap.empty();
+      for (final int[] component : PStronglyConnectedComponents.components(edges)) {
+        if (this.isDirty(component, dependencies, changed_kinds)) {
+          error_map = this.inferComponent(component, changed_kinds, error_map);
+        } else {
+          for (final int member : component) {
+            final String name = names.get(member);
+            this.kinds.put(name, this.previous.kind(name).get());
+            error_map = error_map.put(name, this.previous.errors(name));
+          }
+        }
+      }
+
+      return new PKindEnvironment(
+        this.unit.name(),
+        names,
+        TreeMap.ofAll(this.kinds),
+        dependency_map,
+        error_map);
+    }
+
+    private void collectDeclarations()
+    {
+      for (final PExpressionOrDeclarationType<PParsed> form : this.unit.declarations()) {
+        if (form instanceof PTypeDeclarationType) {
+          final PTypeDeclarationType<PParsed> d =
+            (PTypeDeclarationType<PParsed>) form;
+          final String name = declarationName(d).value();
+          if (!this.indices.containsKey(name)) {
+            this.indices.put(name, Integer.valueOf(this.declarations.size()));
+            this.declarations.add(d);
+          }
+        }
+      }
+    }
+
+    /**
+     * A declaration that has been removed is treated as if its kind has
+     * changed, so that every declaration that referred to it is rechecked.
+     */
+
+    private HashSet<String> removedDeclarations()
+    {
+      final HashSet<String> removed = new HashSet<>(4);
+      if (this.previous != null) {
+        for (final String name : this.previous.names()) {
+          if (!this.indices.containsKey(name)) {
+            removed.add(name);
+          }
+        }
+      }
+      return removed;
+    }
+
+    /**
+     * Find the names of the declarations in this unit that each declaration
+     * refers to. The names are taken from the previous environment for any
+     * declaration other than the changed declaration.
+     */
+
+    @SuppressWarnings("unchecked")
+    private Vector<String>[] dependencies()
+    {
+      final int size = this.declarations.size();
+      final Vector<String>[] dependencies = new Vector[size];
+      for (int index = 0; index < size; ++index) {
+        final PTypeDeclarationType<PParsed> d = this.declarations.get(index);
+        final String name = declarationName(d).value();
+        if (this.isUnchanged(name)) {
+          dependencies[index] = this.previous.dependencies(name);
+        } else {
+          dependencies[index] = this.references(d);
+        }
+      }
+      return dependencies;
+    }
+
+    private boolean isUnchanged(
+      final String name)
+    {
+      return this.previous != null
+        && !Objects.equals(this.changed, name)
+        && this.previous.contains(name);
+    }
+
+    private Vector<String> references(
+      final PTypeDeclarationType<PParsed> d)
+    {
+      final LinkedHashSet<String> names = new LinkedHashSet<>(4);
+      for (final PTypeExpressionType<PParsed> t : declarationTypes(d)) {
+        PTypeExpressions.fold(t, names, (acc, x) -> {
+          if (x instanceof PTypeExprReference) {
+            this.localName((PTypeExprReference<PParsed>) x).ifPresent(acc::add);
+          }
+          return acc;
+        });
+      }
+      return Vector.ofAll(names);
+    }
+
+    private Optional<String> localName(
+      final PTypeExprReference<PParsed> e)
+    {
+      return this.unit.typeBinding(e.reference())
+        .filter(b -> b.kind() == PBinding.Kind.TYPE_UNIT)
+        .filter(b -> Objects.equals(b.unit(), this.unit.name()))
+        .map(b -> ((PTypeReferenceType.PTypeReferenceConstructorType<PParsed>)
+          e.reference()).constructor().value());
+    }
+
+    private boolean isDirty(
+      final int[] component,
+      final Vector<String>[] dependencies,
+      final HashSet<String> changed_kinds)
+    {
+      if (this.previous == null) {
+        return true;
+      }
+
+      for (final int member : component) {
+        final String name = declarationName(this.declarations.get(member)).value();
+        if (!this.isUnchanged(name)) {
+          return true;
+        }
+        for (final String target : dependencies[member]) {
+          if (changed_kinds.contains(target)) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+
+    private Map<String, Vector<PTypeError>> inferComponent(
+      final int[] component,
+      final HashSet<String> changed_kinds,
+      final Map<String, Vector<PTypeError>> error_map)
+    {
+      final PKindTerm[] terms = new PKindTerm[component.length];
+      for (int index = 0; index < component.length; ++index) {
+        final PTypeDeclarationType<PParsed> d =
+          this.declarations.get(component[index]);
+        final PKindTerm[] parameters =
+          this.inference.bind(declarationParameters(d));
+        PKindTerm k = PKindTerm.star();
+        for (int p = parameters.length - 1; p >= 0; --p) {
+          k = PKindTerm.arrow(parameters[p], k);
+        }
+        terms[index] = k;
+        this.inference.declare(declarationName(d).data().id(), k);
+      }
+
+      Map<String, Vector<PTypeError>> result = error_map;
+      for (final int member : component) {
+        final PTypeDeclarationType<PParsed> d = this.declarations.get(member);
+        final int start = this.errors.size();
+        declarationTypes(d).forEach(this.inference::check);
+        result = result.put(
+          declarationName(d).value(),
+          Vector.ofAll(this.errors.subList(start, this.errors.size())));
+      }
+
+      for (int index = 0; index < component.length; ++index) {
+        final String name =
+          declarationName(this.declarations.get(component[index])).value();
+        final PKind k = terms[index].freeze();
+        this.kinds.put(name, k);
+        if (this.previous == null
+          || !this.previous.kind(name).map(k::equals).orElse(Boolean.FALSE).booleanValue()) {
+          changed_kinds.add(name);
+        }
+      }
+      return result;
+    }
+  }
+}
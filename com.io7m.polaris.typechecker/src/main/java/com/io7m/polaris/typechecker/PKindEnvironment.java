@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.typechecker;
+
+import io.vavr.collection.Map;
+import io.vavr.collection.Vector;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * The kinds of the type declarations of a unit, along with the information
+ * required to recheck a single declaration without rechecking the others.
+ * Environments are immutable, and may be shared between threads.
+ *
+ * @see PKindChecker
+ */
+
+public final class PKindEnvironment
+{
+  private final String unit;
+  private final Vector<String> names;
+  private final Map<String, PKind> kinds;
+  private final Map<String, Vector<String>> dependencies;
+  private final Map<String, Vector<PTypeError>> errors;
+
+  PKindEnvironment(
+    final String in_unit,
+    final Vector<String> in_names,
+    final Map<String, PKind> in_kinds,
+    final Map<String, Vector<String>> in_dependencies,
+    final Map<String, Vector<PTypeError>> in_errors)
+  {
+    this.unit = Objects.requireNonNull(in_unit, "Unit");
+    this.names = Objects.requireNonNull(in_names, "Names");
+    this.kinds = Objects.requireNonNull(in_kinds, "Kinds");
+    this.dependencies = Objects.requireNonNull(in_dependencies, "Dependencies");
+    this.errors = Objects.requireNonNull(in_errors, "Errors");
+  }
+
+  /**
+   * @return The fully qualified name of the unit
+   */
+
+  public String unit()
+  {
+    return this.unit;
+  }
+
+  /**
+   * @return The names of the type declarations of the unit, in declaration
+   * order
+   */
+
+  public Vector<String> names()
+  {
+    return this.names;
+  }
+
+  /**
+   * @param name The name of a type declared in the unit
+   *
+   * @return The kind of the type, if the type exists
+   */
+
+  public Optional<PKind> kind(
+    final String name)
+  {
+    Objects.requireNonNull(name, "Name");
+    return this.kinds.get(name).toJavaOptional();
+  }
+
+  /**
+   * @return The errors of every declaration, in declaration order
+   */
+
+  public Vector<PTypeError> errors()
+  {
+    return this.names.flatMap(n -> this.errors.get(n).getOrElse(Vector.empty()));
+  }
+
+  boolean contains(
+    final String name)
+  {
+    return this.kinds.containsKey(name);
+  }
+
+  Vector<String> dependencies(
+    final String name)
+  {
+    return this.dependencies.get(name).getOrElse(Vector.empty());
+  }
+
+  /**
+   * @param name The name of a type declared in the unit
+   *
+   * @return The errors of the declaration of the type
+   */
+
+  public Vector<PTypeError> errors(
+    final String name)
+  {
+    Objects.requireNonNull(name, "Name");
+    return this.errors.get(name).getOrElse(Vector.empty());
+  }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.typechecker;
+
+import com.io7m.jlexing.core.LexicalPosition;
+import com.io7m.polaris.ast.PNodeTable;
+import com.io7m.polaris.ast.PTypeExpressionMatcherType;
+import com.io7m.polaris.ast.PTypeExpressionType;
+import com.io7m.polaris.ast.PTypeReferenceType;
+import com.io7m.polaris.ast.PTypeVariableNameType;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.resolver.PBinding;
+import com.io7m.polaris.resolver.PResolvedUnit;
+import io.vavr.collection.Map;
+import io.vavr.collection.Vector;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Kind inference for the type expressions of a single unit. The kinds of
+ * type variables, and of the type declarations currently being inferred, are
+ * held in tables keyed by the identifiers of the names that declare them.
+ * Type expressions are traversed using an explicit stack.
+ */
+
+final class PKindInference
+  implements PTypeExpressionMatcherType<PParsed, Void, RuntimeException>
+{
+  private final PResolvedUnit unit;
+  private final Map<String, PTypedUnit> units;
+  private final Function<String, PKind> kinds;
+  private final List<PTypeError> errors;
+  private final PNodeTable<PKindTerm> declared;
+  private final PNodeTable<PKindTerm> variables;
+  private final ArrayDeque<Object> stack;
+  private final ArrayDeque<PKindTerm> results;
+
+  PKindInference(
+    final PResolvedUnit in_unit,
+    final Map<String, PTypedUnit> in_units,
+    final Function<String, PKind> in_kinds,
+    final List<PTypeError> in_errors)
+  {
+    this.unit = Objects.requireNonNull(in_unit, "Unit");
+    this.units = Objects.requireNonNull(in_units, "Units");
+    this.kinds = Objects.requireNonNull(in_kinds, "Kinds");
+    this.errors = Objects.requireNonNull(in_errors, "Errors");
+    this.declared = PNodeTable.create(16);
+    this.variables = PNodeTable.create(16);
+    this.stack = new ArrayDeque<>(16);
+    this.results = new ArrayDeque<>(16);
+  }
+
+  /**
+   * Bind each of the given type variables to a fresh kind variable.
+   *
+   * @param names The type variables
+   *
+   * @return The kind variables
+   */
+
+  PKindTerm[] bind(
+    final Vector<PTypeVariableNameType<PParsed>> names)
+  {
+    final PKindTerm[] bound = new PKindTerm[names.size()];
+    for (int index = 0; index < bound.length; ++index) {
+      bound[index] = PKindTerm.fresh();
+      this.variables.put(names.get(index).data().id(), bound[index]);
+    }
+    return bound;
+  }
+
+  /**
+   * Give a kind to a type declaration that is being inferred. Declarations
+   * whose kinds are already known are instead looked up by name using the
+   * function given to the constructor.
+   *
+   * @param id   The identifier of the name of the declaration
+   * @param kind The kind
+   */
+
+  void declare(
+    final int id,
+    final PKindTerm kind)
+  {
+    this.declared.put(id, kind);
+  }
+
+  /**
+   * Check that a type expression has kind {@code *}.
+   *
+   * @param e The type expression
+   */
+
+  void check(
+    final PTypeExpressionType<PParsed> e)
+  {
+    this.unify(e.lexical(), PKindTerm.star(), this.infer(e));
+  }
+
+  /**
+   * Check that the type of a signature has kind {@code *}. The variables of a
+   * quantifier at the outermost level of the signature are bound first.
+   *
+   * @param e The type expression
+   */
+
+  void checkScheme(
+    final PTypeExpressionType<PParsed> e)
+  {
+    if (e instanceof PTypeExpressionType.PTypeExprForAllType) {
+      final PTypeExpressionType.PTypeExprForAllType<PParsed> f =
+        (PTypeExpressionType.PTypeExprForAllType<PParsed>) e;
+      this.bind(f.parameters());
+      this.check(f.expression());
+    } else {
+      this.check(e);
+    }
+  }
+
+  private PKindTerm infer(
+    final PTypeExpressionType<PParsed> e)
+  {
+    this.stack.push(e);
+    while (!this.stack.isEmpty()) {
+      final Object top = this.stack.pop();
+      if (top instanceof Runnable) {
+        ((Runnable) top).run();
+      } else {
+        @SuppressWarnings("unchecked")
+        final PTypeExpressionType<PParsed> t = (PTypeExpressionType<PParsed>) top;
+        t.matchTypeExpression(this);
+      }
+    }
+    return this.results.pop();
+  }
+
+  private boolean unify(
+    final LexicalPosition<URI> lexical,
+    final PKindTerm expected,
+    final PKindTerm received)
+  {
+    switch (PKindTerm.unify(expected, received)) {
+      case UNIFIED:
+        return true;
+      case MISMATCH:
+        this.errors.add(PTypeError.of(
+          lexical,
+          PTypeErrorCode.KIND_MISMATCH,
+          "Kind mismatch: expected " + expected + ", received " + received));
+        return false;
+      case INFINITE:
+        this.errors.add(PTypeError.of(
+          lexical,
+          PTypeErrorCode.KIND_INFINITE,
+          "Cannot construct an infinite kind: " + expected + " = " + received));
+        return false;
+    }
+    return false;
+  }
+
+  @Override
+  public Void arrow(
+    final PTypeExpressionType.PTypeExprArrowType<PParsed> e)
+  {
+    final Vector<PTypeExpressionType<PParsed>> parameters = e.parameters();
+    this.stack.push((Runnable) () -> {
+      this.unify(e.returnType().lexical(), PKindTerm.star(), this.results.pop());
+      for (int index = parameters.size() - 1; index >= 0; --index) {
+        this.unify(
+          parameters.get(index).lexical(), PKindTerm.star(), this.results.pop());
+      }
+      this.results.push(PKindTerm.star());
+    });
+    this.stack.push(e.returnType());
+    for (int index = parameters.size() - 1; index >= 0; --index) {
+      this.stack.push(parameters.get(index));
+    }
+    return null;
+  }
+
+  @Override
+  public Void forAll(
+    final PTypeExpressionType.PTypeExprForAllType<PParsed> e)
+  {
+    this.bind(e.parameters());
+    this.stack.push(e.expression());
+    return null;
+  }
+
+  @Override
+  public Void reference(
+    final PTypeExpressionType.PTypeExprReferenceType<PParsed> e)
+  {
+    this.results.push(this.referenceKind(e.reference()));
+    return null;
+  }
+
+  private PKindTerm referenceKind(
+    final PTypeReferenceType<PParsed> reference)
+  {
+    final Optional<PBinding> binding_opt = this.unit.typeBinding(reference);
+    if (!binding_opt.isPresent()) {
+      return PKindTerm.fresh();
+    }
+
+    final PBinding binding = binding_opt.get();
+    switch (binding.kind()) {
+      case TYPE_VARIABLE:
+        return this.variables.get(binding.declaration())
+          .orElseGet(PKindTerm::fresh);
+      case TYPE_BUILTIN:
+        return PKindTerm.star();
+      case TYPE_UNIT:
+        return this.declarationKind(
+          binding,
+          ((PTypeReferenceType.PTypeReferenceConstructorType<PParsed>) reference)
+            .constructor().value());
+      case TERM_LOCAL:
+      case TERM_UNIT:
+      case TERM_CONSTRUCTOR:
+        break;
+    }
+    return PKindTerm.fresh();
+  }
+
+  private PKindTerm declarationKind(
+    final PBinding binding,
+    final String name)
+  {
+    if (Objects.equals(binding.unit(), this.unit.name())) {
+      final PKind known = this.kinds.apply(name);
+      if (known != null) {
+        return PKindTerm.of(known);
+      }
+      return this.declared.get(binding.declaration())
+        .orElseGet(PKindTerm::fresh);
+    }
+
+    final Optional<PKind> imported = this.units.get(binding.unit())
+      .toJavaOptional()
+      .flatMap(u -> u.kinds().kind(name));
+    return imported.map(PKindTerm::of).orElseGet(PKindTerm::fresh);
+  }
+
+  @Override
+  public Void application(
+    final PTypeExpressionType.PTypeExprApplicationType<PParsed> e)
+  {
+    final Vector<PTypeExpressionType<PParsed>> arguments = e.arguments();
+    this.stack.push((Runnable) () -> {
+      PKindTerm expected = PKindTerm.fresh();
+      final PKindTerm result = expected;
+      for (int index = arguments.size() - 1; index >= 0; --index) {
+        expected = PKindTerm.arrow(this.results.pop(), expected);
+      }
+      final PKindTerm received = this.results.pop();
+      if (this.unify(e.constructor().lexical(), expected, received)) {
+        this.results.push(result);
+      } else {
+        this.results.push(PKindTerm.fresh());
+      }
+    });
+    for (int index = arguments.size() - 1; index >= 0; --index) {
+      this.stack.push(arguments.get(index));
+    }
+    this.stack.push(e.constructor());
+    return null;
+  }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.typechecker;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A kind during inference: {@code *}, an arrow, or a variable. Variables are
+ * nodes in a union-find structure, as with {@link PTypeVariable}. All of the
+ * operations on kind terms use explicit stacks.
+ */
+
+final class PKindTerm
+{
+  private static final PKindTerm STAR = new PKindTerm(null, null);
+
+  private final PKindTerm parameter;
+  private final PKindTerm result;
+  private final boolean variable;
+  private PKindTerm link;
+
+  private PKindTerm(
+    final PKindTerm in_parameter,
+    final PKindTerm in_result)
+  {
+    this.parameter = in_parameter;
+    this.result = in_result;
+    this.variable = false;
+  }
+
+  private PKindTerm()
+  {
+    this.parameter = null;
+    this.result = null;
+    this.variable = true;
+  }
+
+  static PKindTerm star()
+  {
+    return STAR;
+  }
+
+  static PKindTerm arrow(
+    final PKindTerm parameter,
+    final PKindTerm result)
+  {
+    return new PKindTerm(parameter, result);
+  }
+
+  static PKindTerm fresh()
+  {
+    return new PKindTerm();
+  }
+
+  /**
+   * @param k A kind
+   *
+   * @return A term equal to {@code k}
+   */
+
+  static PKindTerm of(
+    final PKind k)
+  {
+    final ArrayDeque<Object> w = new ArrayDeque<>(8);
+    final ArrayDeque<PKindTerm> r = new ArrayDeque<>(8);
+    w.push(k);
+
+    while (!w.isEmpty()) {
+      final Object top = w.pop();
+      if (top == STAR) {
+        final PKindTerm codomain = r.pop();
+        r.push(new PKindTerm(r.pop(), codomain));
+        continue;
+      }
+
+      final PKind x = (PKind) top;
+      if (x.isStar()) {
+        r.push(STAR);
+      } else {
+        w.push(STAR);
+        w.push(x.result());
+        w.push(x.parameter());
+      }
+    }
+    return r.pop();
+  }
+
+  /**
+   * Find the representative of the equivalence class of {@code k}, and link
+   * every variable on the path directly to it.
+   *
+   * @param k A kind term
+   *
+   * @return The representative of {@code k}
+   */
+
+  static PKindTerm find(
+    final PKindTerm k)
+  {
+    PKindTerm root = k;
+    while (root.variable && root.link != null) {
+      root = root.link;
+    }
+
+    PKindTerm current = k;
+    while (current != root) {
+      final PKindTerm next = current.link;
+      current.link = root;
+      current = next;
+    }
+    return root;
+  }
+
+  /**
+   * The results of unification.
+   */
+
+  enum Unification
+  {
+    UNIFIED,
+    MISMATCH,
+    INFINITE
+  }
+
+  /**
+   * Unify two kind terms.
+   *
+   * @param a The first term
+   * @param b The second term
+   *
+   * @return The result of unification
+   */
+
+  static Unification unify(
+    final PKindTerm a,
+    final PKindTerm b)
+  {
+    final ArrayDeque<PKindTerm> p = new ArrayDeque<>(8);
+    p.push(a);
+    p.push(b);
+
+    while (!p.isEmpty()) {
+      final PKindTerm y = find(p.pop());
+      final PKindTerm x = find(p.pop());
+      if (x == y) {
+        continue;
+      }
+
+      if (x.variable || y.variable) {
+        final PKindTerm v = x.variable ? x : y;
+        final PKindTerm t = x.variable ? y : x;
+        if (occurs(v, t)) {
+          return Unification.INFINITE;
+        }
+        v.link = t;
+        continue;
+      }
+
+      if (x == STAR || y == STAR) {
+        return Unification.MISMATCH;
+      }
+
+      p.push(x.parameter);
+      p.push(y.parameter);
+      p.push(x.result);
+      p.push(y.result);
+    }
+    return Unification.UNIFIED;
+  }
+
+  private static boolean occurs(
+    final PKindTerm v,
+    final PKindTerm t)
+  {
+    final ArrayDeque<PKindTerm> w = new ArrayDeque<>(8);
+    w.push(t);
+    while (!w.isEmpty()) {
+      final PKindTerm x = find(w.pop());
+      if (x == v) {
+        return true;
+      }
+      if (!x.variable && x != STAR) {
+        w.push(x.parameter);
+        w.push(x.result);
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return The kind of this term, with each unconstrained variable taken
+   * to be {@code *}
+   */
+
+  PKind freeze()
+  {
+    final ArrayDeque<Object> w = new ArrayDeque<>(8);
+    final ArrayDeque<PKind> r = new ArrayDeque<>(8);
+    w.push(this);
+
+    while (!w.isEmpty()) {
+      final Object top = w.pop();
+      if (top instanceof PKind) {
+        final PKind codomain = r.pop();
+        r.push(PKind.arrow(r.pop(), codomain));
+        continue;
+      }
+
+      final PKindTerm x = find((PKindTerm) top);
+      if (x.variable || x == STAR) {
+        r.push(PKind.star());
+      } else {
+        w.push(PKind.star());
+        w.push(x.result);
+        w.push(x.parameter);
+      }
+    }
+    return r.pop();
+  }
+
+  /**
+   * @return This term in the concrete syntax of kinds, with variables named
+   * in order of appearance
+   */
+
+  @Override
+  public String toString()
+  {
+    final Map<PKindTerm, String> names = new IdentityHashMap<>(4);
+    final StringBuilder sb = new StringBuilder(16);
+    final ArrayDeque<Object> w = new ArrayDeque<>(8);
+    w.push(this);
+
+    while (!w.isEmpty()) {
+      final Object top = w.pop();
+      if (top instanceof String) {
+        sb.append((String) top);
+        continue;
+      }
+
+      final PKindTerm x = find((PKindTerm) top);
+      if (x.variable) {
+        sb.append(names.computeIfAbsent(x, v -> "k" + names.size()));
+      } else if (x == STAR) {
+        sb.append('*');
+      } else {
+        pushArrow(w, x);
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Push the tokens of an arrow, flattening the arrows in result position
+   * so that {@code (-> a (-> b c))} is rendered as {@code (-> a b c)}.
+   */
+
+  private static void pushArrow(
+    final ArrayDeque<Object> w,
+    final PKindTerm arrow)
+  {
+    final ArrayDeque<PKindTerm> parameters = new ArrayDeque<>(4);
+    PKindTerm spine = arrow;
+    while (!spine.variable && spine != STAR) {
+      parameters.push(spine.parameter);
+      spine = find(spine.result);
+    }
+
+    w.push(")");
+    w.push(spine);
+    while (!parameters.isEmpty()) {
+      w.push(" ");
+      w.push(parameters.pop());
+    }
+    w.push("(-> ");
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.typechecker;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The type and fields of a record type declaration. The parameters of the
+ * declaration are quantified variables in both the type and the fields.
+ */
+
+final class PRecordInfo
+{
+  private final PMonoType type;
+  private final Map<String, PMonoType> fields;
+
+  PRecordInfo(
+    final PMonoType in_type,
+    final Map<String, PMonoType> in_fields)
+  {
+    this.type = Objects.requireNonNull(in_type, "Type");
+    this.fields = Objects.requireNonNull(in_fields, "Fields");
+  }
+
+  PMonoType type()
+  {
+    return this.type;
+  }
+
+  Map<String, PMonoType> fields()
+  {
+    return this.fields;
+  }
+
+  boolean hasFields(
+    final Iterable<String> names)
+  {
+    for (final String name : names) {
+      if (!this.fields.containsKey(name)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param c The inference context
+   *
+   * @return A copy of the record with the same fresh variables substituted
+   * for the parameters in the type and in each field
+   */
+
+  PRecordInfo instantiate(
+    final PTypeContext c)
+  {
+    final Map<PTypeVariable, PMonoType> mapping = new HashMap<>(4);
+    final Map<String, PMonoType> copies = new LinkedHashMap<>(this.fields.size());
+    for (final Map.Entry<String, PMonoType> e : this.fields.entrySet()) {
+      copies.put(e.getKey(), c.instantiate(e.getValue(), mapping));
+    }
+    return new PRecordInfo(c.instantiate(this.type, mapping), copies);
+  }
+
+  /**
+   * @param c The inference context
+   *
+   * @return A frozen copy of the record
+   *
+   * @see PTypeContext#freeze(PMonoType)
+   */
+
+  PRecordInfo freeze(
+    final PTypeContext c)
+  {
+    final Map<String, PMonoType> copies = new LinkedHashMap<>(this.fields.size());
+    for (final Map.Entry<String, PMonoType> e : this.fields.entrySet()) {
+      copies.put(e.getKey(), c.freeze(e.getValue()));
+    }
+    return new PRecordInfo(c.freeze(this.type), copies);
+  }
+}
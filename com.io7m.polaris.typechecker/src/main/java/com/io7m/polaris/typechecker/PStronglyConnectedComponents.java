@@ -0,0 +1,132 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.typechecker;
+
+import com.io7m.junreachable.UnreachableCodeException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Tarjan's strongly connected components algorithm, using an explicit stack.
+ */
+
+final class PStronglyConnectedComponents
+{
+  private static final int UNVISITED = -1;
+
+  private PStronglyConnectedComponents()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Find the strongly connected components of a graph. Components are
+   * returned in reverse topological order: if there is an edge from a node
+   * in component {@code i} to a node in component {@code j}, then {@code j}
+   * is no later than {@code i}. If edges point from declarations to the
+   * declarations that they use, each component therefore follows the
+   * components that it uses. The nodes of each component are in ascending
+   * order.
+   *
+   * @param edges The successors of each node
+   *
+   * @return The components
+   */
+
+  static int[][] components(
+    final int[][] edges)
+  {
+    final int size = edges.length;
+    final int[] index = new int[size];
+    final int[] low = new int[size];
+    final boolean[] on_stack = new boolean[size];
+    Arrays.fill(index, UNVISITED);
+
+    final int[] stack = new int[size];
+    int stack_size = 0;
+    final int[] call_node = new int[size];
+    final int[] call_edge = new int[size];
+    int call_size;
+
+    final ArrayList<int[]> components = new ArrayList<>(size);
+    int next = 0;
+
+    for (int root = 0; root < size; ++root) {
+      if (index[root] != UNVISITED) {
+        continue;
+      }
+
+      call_size = 0;
+      call_node[call_size] = root;
+      call_edge[call_size] = 0;
+      ++call_size;
+      index[root] = next;
+      low[root] = next;
+      ++next;
+      stack[stack_size] = root;
+      ++stack_size;
+      on_stack[root] = true;
+
+      while (call_size > 0) {
+        final int node = call_node[call_size - 1];
+        final int edge = call_edge[call_size - 1];
+
+        if (edge < edges[node].length) {
+          call_edge[call_size - 1] = edge + 1;
+          final int target = edges[node][edge];
+          if (index[target] == UNVISITED) {
+            index[target] = next;
+            low[target] = next;
+            ++next;
+            stack[stack_size] = target;
+            ++stack_size;
+            on_stack[target] = true;
+            call_node[call_size] = target;
+            call_edge[call_size] = 0;
+            ++call_size;
+          } else if (on_stack[target]) {
+            low[node] = Math.min(low[node], index[target]);
+          }
+          continue;
+        }
+
+        --call_size;
+        if (call_size > 0) {
+          final int parent = call_node[call_size - 1];
+          low[parent] = Math.min(low[parent], low[node]);
+        }
+
+        if (low[node] == index[node]) {
+          int start = stack_size - 1;
+          while (stack[start] != node) {
+            --start;
+          }
+          final int[] component = Arrays.copyOfRange(stack, start, stack_size);
+          for (final int member : component) {
+            on_stack[member] = false;
+          }
+          stack_size = start;
+          Arrays.sort(component);
+          components.add(component);
+        }
+      }
+    }
+
+    return components.toArray(new int[0][]);
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.polaris.typechecker;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A type variable of higher kind applied to one or more arguments. Once the
+ * variable is bound to a type constructor, the application is equivalent to
+ * the constructor with the arguments appended to its own.
+ *
+ * @see PTypeContext#normalize(PMonoType)
+ */
+
+final class PTypeApplication implements PMonoType
+{
+  private final PMonoType function;
+  private final PMonoType[] arguments;
+
+  PTypeApplication(
+    final PMonoType in_function,
+    final PMonoType[] in_arguments)
+  {
+    this.function = Objects.requireNonNull(in_function, "Function");
+    this.arguments = Objects.requireNonNull(in_arguments, "Arguments");
+  }
+
+  /**
+   * Apply a type to arguments, appending the arguments to those of the type
+   * if the type is itself a constructor or an application.
+   *
+   * @param function  The applied type
+   * @param arguments The arguments
+   *
+   * @return The applied type
+   */
+
+  static PMonoType apply(
+    final PMonoType function,
+    final PMonoType[] arguments)
+  {
+    if (function instanceof PTypeConstructor) {
+      final PTypeConstructor c = (PTypeConstructor) function;
+      return c.withArguments(concat(c.arguments(), arguments));
+    }
+    if (function instanceof PTypeApplication) {
+      final PTypeApplication a = (PTypeApplication) function;
+      return new PTypeApplication(a.function, concat(a.arguments, arguments));
+    }
+    return new PTypeApplication(function, arguments);
+  }
+
+  private static PMonoType[] concat(
+    final PMonoType[] xs,
+    final PMonoType[] ys)
+  {
+    if (xs.length == 0) {
+      return ys;
+    }
+    final PMonoType[] r = Arrays.copyOf(xs, xs.length + ys.length);
+    System.arraycopy(ys, 0, r, xs.length, ys.length);
+    return r;
+  }
+
+  PMonoType function()
+  {
+    return this.function;
+  }
+
+  PMonoType[] arguments()
+  {
+    return this.arguments;
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.typechecker;
+
+import java.util.Objects;
+
+/**
+ * A function type. If the arrow is variadic, the last parameter is the type
+ * of each of the trailing arguments, of which there may be any number.
+ */
+
+final class PTypeArrow implements PMonoType
+{
+  private final PMonoType[] parameters;
+  private final boolean variadic;
+  private final PMonoType result;
+
+  PTypeArrow(
+    final PMonoType[] in_parameters,
+    final boolean in_variadic,
+    final PMonoType in_result)
+  {
+    this.parameters = Objects.requireNonNull(in_parameters, "Parameters");
+    this.variadic = in_variadic;
+    this.result = Objects.requireNonNull(in_result, "Result");
+  }
+
+  PMonoType[] parameters()
+  {
+    return this.parameters;
+  }
+
+  boolean isVariadic()
+  {
+    return this.variadic;
+  }
+
+  PMonoType result()
+  {
+    return this.result;
+  }
+}
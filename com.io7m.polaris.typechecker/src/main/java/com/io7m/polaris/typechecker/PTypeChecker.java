@@ -0,0 +1,131 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.typechecker;
+
+import com.io7m.jaffirm.core.Preconditions;
+import com.io7m.junreachable.UnreachableCodeException;
+import com.io7m.polaris.resolver.PResolvedUnit;
+import com.io7m.polaris.resolver.PUnitGraph;
+import com.io7m.polaris.resolver.PUnitScheduler;
+import io.vavr.collection.Seq;
+import io.vavr.collection.Vector;
+import io.vavr.control.Validation;
+
+import java.util.Objects;
+import java.util.OptionalInt;
+import java.util.concurrent.Executor;
+
+/**
+ * Hindley-Milner type inference.
+ *
+ * Types are inferred using union-find unification over mutable type
+ * variables, with path compression, and generalization is decided by the
+ * level of each variable rather than by searching the environment for free
+ * variables. The work done is therefore close to linear in the size of a unit
+ * for all but pathological programs.
+ */
+
+public final class PTypeChecker
+{
+  private PTypeChecker()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Check a single unit. The typed units of every unit that it imports must
+   * be provided.
+   *
+   * @param imports The typed units imported by the unit
+   * @param unit    The unit
+   *
+   * @return The typed unit, or a list of errors
+   */
+
+  public static Validation<Seq<PTypeError>, PTypedUnit> checkUnit(
+    final Vector<PTypedUnit> imports,
+    final PResolvedUnit unit)
+  {
+    Objects.requireNonNull(imports, "Imports");
+    Objects.requireNonNull(unit, "Unit");
+    return new PUnitChecker(unit, imports).run();
+  }
+
+  /**
+   * Check the given units. Each unit is checked by a task submitted to
+   * {@code executor} as soon as all of the units that it imports have been
+   * checked. A unit that imports a unit that contains errors is not checked.
+   * Errors are returned in the order of the given units.
+   *
+   * @param executor The executor that will check units
+   * @param graph    The dependency graph of the units
+   * @param units    The units, one for each unit in {@code graph}
+   *
+   * @return The typed units in the order of {@code units}, or a list of
+   * errors
+   */
+
+  public static Validation<Seq<PTypeError>, Vector<PTypedUnit>> check(
+    final Executor executor,
+    final PUnitGraph graph,
+    final Vector<PResolvedUnit> units)
+  {
+    Objects.requireNonNull(executor, "Executor");
+    Objects.requireNonNull(graph, "Graph");
+    Objects.requireNonNull(units, "Units");
+    Preconditions.checkPreconditionI(
+      units.size(),
+      units.size() == graph.size(),
+      n -> "Must provide exactly one unit for each unit in the graph");
+
+    final PResolvedUnit[] by_index = new PResolvedUnit[units.size()];
+    for (final PResolvedUnit unit : units) {
+      final OptionalInt index = graph.indexOf(unit.name());
+      Preconditions.checkPrecondition(
+        unit.name(),
+        index.isPresent(),
+        n -> "Unit must be present in the graph: " + n);
+      by_index[index.getAsInt()] = unit;
+    }
+
+    final Vector<Validation<Seq<PTypeError>, PTypedUnit>> results =
+      PUnitScheduler.<Validation<Seq<PTypeError>, PTypedUnit>>schedule(
+        executor, graph, (index, dependencies) -> {
+          if (dependencies.exists(Validation::isInvalid)) {
+            return Validation.invalid(Vector.empty());
+          }
+          return checkUnit(dependencies.map(Validation::get), by_index[index]);
+        }).join();
+
+    Vector<PTypeError> errors = Vector.empty();
+    Vector<PTypedUnit> typed = Vector.empty();
+    for (final PResolvedUnit unit : units) {
+      final Validation<Seq<PTypeError>, PTypedUnit> r =
+        results.get(graph.indexOf(unit.name()).getAsInt());
+      if (r.isValid()) {
+        typed = typed.append(r.get());
+      } else {
+        errors = errors.appendAll(r.getError());
+      }
+    }
+
+    if (typed.size() == units.size()) {
+      return Validation.valid(typed);
+    }
+    return Validation.invalid(errors);
+  }
+}
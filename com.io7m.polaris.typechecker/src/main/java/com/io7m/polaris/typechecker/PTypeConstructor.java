@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.typechecker;
+
+import java.util.Objects;
+
+/**
+ * A type constructor applied to zero or more arguments. Constructors are
+ * equal if their keys are equal: the key of a declared or builtin type is its
+ * {@link com.io7m.polaris.resolver.PBinding}, and the key of a rigid type
+ * variable introduced when checking a signature is a fresh object. A rigid
+ * variable has the level of the binding group that introduced it, and may not
+ * be unified with a variable of a lower level.
+ */
+
+final class PTypeConstructor implements PMonoType
+{
+  private static final PMonoType[] NO_ARGUMENTS = new PMonoType[0];
+
+  private final Object key;
+  private final String name;
+  private final PMonoType[] arguments;
+  private final int level;
+
+  PTypeConstructor(
+    final Object in_key,
+    final String in_name,
+    final PMonoType[] in_arguments,
+    final int in_level)
+  {
+    this.key = Objects.requireNonNull(in_key, "Key");
+    this.name = Objects.requireNonNull(in_name, "Name");
+    this.arguments = Objects.requireNonNull(in_arguments, "Arguments");
+    this.level = in_level;
+  }
+
+  static PTypeConstructor of(
+    final Object key,
+    final String name)
+  {
+    return new PTypeConstructor(key, name, NO_ARGUMENTS, 0);
+  }
+
+  static PTypeConstructor rigid(
+    final String name,
+    final int level)
+  {
+    return new PTypeConstructor(new Object(), name, NO_ARGUMENTS, level);
+  }
+
+  Object key()
+  {
+    return this.key;
+  }
+
+  String name()
+  {
+    return this.name;
+  }
+
+  PMonoType[] arguments()
+  {
+    return this.arguments;
+  }
+
+  int level()
+  {
+    return this.level;
+  }
+
+  PTypeConstructor withArguments(
+    final PMonoType[] in_arguments)
+  {
+    return new PTypeConstructor(this.key, this.name, in_arguments, this.level);
+  }
+}
@@ -0,0 +1,585 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.typechecker;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The mutable state of inference for a single unit: the current level, and
+ * the supply of fresh type variables. All of the operations on types use
+ * explicit stacks, and so the Java stack depth used is independent of the
+ * size of the types.
+ */
+
+final class PTypeContext
+{
+  private final ArrayDeque<PMonoType> pending;
+  private final ArrayDeque<Object> work;
+  private final ArrayDeque<PMonoType> results;
+  private int level;
+  private int next_id;
+
+  PTypeContext()
+  {
+    this.pending = new ArrayDeque<>(16);
+    this.work = new ArrayDeque<>(16);
+    this.results = new ArrayDeque<>(16);
+    this.level = 0;
+    this.next_id = 0;
+  }
+
+  /**
+   * The results of unification.
+   */
+
+  enum Unification
+  {
+    UNIFIED,
+    MISMATCH,
+    INFINITE,
+    ESCAPE
+  }
+
+  private enum CopyMode
+  {
+    FREEZE,
+    INSTANTIATE,
+    SKOLEMIZE
+  }
+
+  /**
+   * Find the representative of the equivalence class of {@code t}, and
+   * link every variable on the path directly to it.
+   *
+   * @param t A type
+   *
+   * @return The representative of {@code t}
+   */
+
+  static PMonoType find(
+    final PMonoType t)
+  {
+    PMonoType root = t;
+    while (root instanceof PTypeVariable) {
+      final PMonoType next = ((PTypeVariable) root).link();
+      if (next == null) {
+        break;
+      }
+      root = next;
+    }
+
+    PMonoType current = t;
+    while (current != root) {
+      final PTypeVariable v = (PTypeVariable) current;
+      current = v.link();
+      v.setLink(root);
+    }
+    return root;
+  }
+
+  /**
+   * Find the representative of {@code t} as with {@link #find(PMonoType)},
+   * and then, if it is an application of a variable that has since been
+   * bound, replace the application with the type to which it is equivalent.
+   *
+   * @param t A type
+   *
+   * @return The representative of {@code t}
+   */
+
+  static PMonoType normalize(
+    final PMonoType t)
+  {
+    PMonoType x = find(t);
+    while (x instanceof PTypeApplication) {
+      final PTypeApplication a = (PTypeApplication) x;
+      final PMonoType f = find(a.function());
+      if (!(f instanceof PTypeConstructor || f instanceof PTypeApplication)) {
+        break;
+      }
+      x = PTypeApplication.apply(f, a.arguments());
+    }
+    return x;
+  }
+
+  int level()
+  {
+    return this.level;
+  }
+
+  void enter()
+  {
+    ++this.level;
+  }
+
+  void leave()
+  {
+    --this.level;
+  }
+
+  PTypeVariable fresh()
+  {
+    final PTypeVariable v = new PTypeVariable(this.next_id, this.level);
+    ++this.next_id;
+    return v;
+  }
+
+  /**
+   * Unify two types.
+   *
+   * @param a The first type
+   * @param b The second type
+   *
+   * @return The result of unification; on failure, the variables bound
+   * before the failure remain bound
+   */
+
+  Unification unify(
+    final PMonoType a,
+    final PMonoType b)
+  {
+    final ArrayDeque<PMonoType> p = this.pending;
+    p.clear();
+    p.push(a);
+    p.push(b);
+
+    while (!p.isEmpty()) {
+      final PMonoType y = normalize(p.pop());
+      final PMonoType x = normalize(p.pop());
+      if (x == y) {
+        continue;
+      }
+
+      final Unification r;
+      if (x instanceof PTypeVariable) {
+        r = this.bind((PTypeVariable) x, y);
+      } else if (y instanceof PTypeVariable) {
+        r = this.bind((PTypeVariable) y, x);
+      } else if (x instanceof PTypeConstructor && y instanceof PTypeConstructor) {
+        r = unifyConstructors(p, (PTypeConstructor) x, (PTypeConstructor) y);
+      } else if (x instanceof PTypeArrow && y instanceof PTypeArrow) {
+        r = unifyArrows(p, (PTypeArrow) x, (PTypeArrow) y);
+      } else if (x instanceof PTypeArrow || y instanceof PTypeArrow) {
+        r = Unification.MISMATCH;
+      } else {
+        r = unifyApplications(p, x, y);
+      }
+
+      if (r != Unification.UNIFIED) {
+        p.clear();
+        return r;
+      }
+    }
+    return Unification.UNIFIED;
+  }
+
+  private static Unification unifyConstructors(
+    final ArrayDeque<PMonoType> p,
+    final PTypeConstructor x,
+    final PTypeConstructor y)
+  {
+    final PMonoType[] xs = x.arguments();
+    final PMonoType[] ys = y.arguments();
+    if (!x.key().equals(y.key()) || xs.length != ys.length) {
+      return Unification.MISMATCH;
+    }
+    for (int index = 0; index < xs.length; ++index) {
+      p.push(xs[index]);
+      p.push(ys[index]);
+    }
+    return Unification.UNIFIED;
+  }
+
+  private static Unification unifyArrows(
+    final ArrayDeque<PMonoType> p,
+    final PTypeArrow x,
+    final PTypeArrow y)
+  {
+    final PMonoType[] xs = x.parameters();
+    final PMonoType[] ys = y.parameters();
+    if (x.isVariadic() != y.isVariadic() || xs.length != ys.length) {
+      return Unification.MISMATCH;
+    }
+    for (int index = 0; index < xs.length; ++index) {
+      p.push(xs[index]);
+      p.push(ys[index]);
+    }
+    p.push(x.result());
+    p.push(y.result());
+    return Unification.UNIFIED;
+  }
+
+  /**
+   * Unify two types, at least one of which is an application of a variable
+   * and neither of which is an arrow, by unifying their trailing arguments
+   * pairwise and then unifying what remains of each type. For example,
+   * {@code (f a)} and {@code (Pair x y)} unify {@code a} with {@code y} and
+   * {@code f} with {@code (Pair x)}.
+   */
+
+  private static Unification unifyApplications(
+    final ArrayDeque<PMonoType> p,
+    final PMonoType x,
+    final PMonoType y)
+  {
+    final PMonoType[] xs = arguments(x);
+    final PMonoType[] ys = arguments(y);
+    final int count = Math.min(xs.length, ys.length);
+    if (count == 0) {
+      return Unification.MISMATCH;
+    }
+
+    p.push(dropArguments(x, count));
+    p.push(dropArguments(y, count));
+    for (int index = 0; index < count; ++index) {
+      p.push(xs[xs.length - count + index]);
+      p.push(ys[ys.length - count + index]);
+    }
+    return Unification.UNIFIED;
+  }
+
+  private static PMonoType[] arguments(
+    final PMonoType t)
+  {
+    if (t instanceof PTypeConstructor) {
+      return ((PTypeConstructor) t).arguments();
+    }
+    return ((PTypeApplication) t).arguments();
+  }
+
+  private static PMonoType dropArguments(
+    final PMonoType t,
+    final int count)
+  {
+    if (t instanceof PTypeConstructor) {
+      final PTypeConstructor c = (PTypeConstructor) t;
+      final PMonoType[] xs = c.arguments();
+      return c.withArguments(Arrays.copyOf(xs, xs.length - count));
+    }
+
+    final PTypeApplication a = (PTypeApplication) t;
+    final PMonoType[] xs = a.arguments();
+    if (xs.length == count) {
+      return a.function();
+    }
+    return new PTypeApplication(a.function(), Arrays.copyOf(xs, xs.length - count));
+  }
+
+  /**
+   * Bind {@code v} to {@code t}. Every variable in {@code t} has its level
+   * lowered to that of {@code v}, so that it will not be generalized while
+   * {@code v} is still in the environment.
+   */
+
+  private Unification bind(
+    final PTypeVariable v,
+    final PMonoType t)
+  {
+    final int v_level = v.level();
+    final ArrayDeque<Object> w = this.work;
+    w.clear();
+    w.push(t);
+
+    while (!w.isEmpty()) {
+      final PMonoType x = normalize((PMonoType) w.pop());
+      if (x == v) {
+        w.clear();
+        return Unification.INFINITE;
+      }
+
+      if (x instanceof PTypeVariable) {
+        final PTypeVariable xv = (PTypeVariable) x;
+        if (xv.level() > v_level) {
+          xv.setLevel(v_level);
+        }
+      } else if (x instanceof PTypeConstructor) {
+        final PTypeConstructor c = (PTypeConstructor) x;
+        if (c.level() > v_level) {
+          w.clear();
+          return Unification.ESCAPE;
+        }
+        for (final PMonoType a : c.arguments()) {
+          w.push(a);
+        }
+      } else {
+        pushChildren(w, x);
+      }
+    }
+
+    v.setLink(t);
+    return Unification.UNIFIED;
+  }
+
+  private static void pushChildren(
+    final ArrayDeque<Object> w,
+    final PMonoType t)
+  {
+    if (t instanceof PTypeApplication) {
+      final PTypeApplication a = (PTypeApplication) t;
+      w.push(a.function());
+      for (final PMonoType x : a.arguments()) {
+        w.push(x);
+      }
+      return;
+    }
+
+    final PTypeArrow a = (PTypeArrow) t;
+    for (final PMonoType p : a.parameters()) {
+      w.push(p);
+    }
+    w.push(a.result());
+  }
+
+  /**
+   * Generalize the variables of {@code t} whose level is greater than the
+   * current level, marking them as quantified in place. A variable with such
+   * a level cannot appear in the environment, and so it is not necessary to
+   * copy the type.
+   *
+   * @param t A type
+   *
+   * @return {@code true} iff {@code t} contains any quantified variables
+   */
+
+  boolean generalize(
+    final PMonoType t)
+  {
+    boolean generic = false;
+    final ArrayDeque<Object> w = this.work;
+    w.clear();
+    w.push(t);
+
+    while (!w.isEmpty()) {
+      final PMonoType x = normalize((PMonoType) w.pop());
+      if (x instanceof PTypeVariable) {
+        final PTypeVariable v = (PTypeVariable) x;
+        if (v.level() > this.level) {
+          v.setLevel(PTypeVariable.GENERIC);
+          generic = true;
+        }
+      } else if (x instanceof PTypeConstructor) {
+        for (final PMonoType a : ((PTypeConstructor) x).arguments()) {
+          w.push(a);
+        }
+      } else {
+        pushChildren(w, x);
+      }
+    }
+    return generic;
+  }
+
+  /**
+   * @param t A type
+   *
+   * @return {@code t} with each quantified variable replaced by a fresh
+   * variable at the current level
+   */
+
+  PMonoType instantiate(
+    final PMonoType t)
+  {
+    return this.instantiate(t, new HashMap<>(4));
+  }
+
+  /**
+   * Instantiate {@code t}, using and extending {@code mapping} so that
+   * several types may be instantiated together.
+   *
+   * @param t       A type
+   * @param mapping The fresh variables chosen for quantified variables
+   *
+   * @return {@code t} with each quantified variable replaced by a fresh
+   * variable at the current level
+   */
+
+  PMonoType instantiate(
+    final PMonoType t,
+    final Map<PTypeVariable, PMonoType> mapping)
+  {
+    return this.copy(t, CopyMode.INSTANTIATE, mapping);
+  }
+
+  /**
+   * @param t A type
+   *
+   * @return {@code t} with each quantified variable replaced by a fresh rigid
+   * variable at the current level
+   */
+
+  PMonoType skolemize(
+    final PMonoType t)
+  {
+    return this.copy(t, CopyMode.SKOLEMIZE, new HashMap<>(4));
+  }
+
+  /**
+   * @param t A type
+   *
+   * @return A copy of {@code t} containing no bound variables, which may be
+   * read concurrently by other threads because {@link #find(PMonoType)} will
+   * never modify it
+   */
+
+  PMonoType freeze(
+    final PMonoType t)
+  {
+    return this.copy(t, CopyMode.FREEZE, new HashMap<>(0));
+  }
+
+  /**
+   * Copy a type. Each subtree that does not change is shared with the
+   * original rather than copied.
+   */
+
+  private PMonoType copy(
+    final PMonoType t,
+    final CopyMode mode,
+    final Map<PTypeVariable, PMonoType> mapping)
+  {
+    final ArrayDeque<Object> w = this.work;
+    final ArrayDeque<PMonoType> r = this.results;
+    w.clear();
+    r.clear();
+    w.push(t);
+
+    while (!w.isEmpty()) {
+      final Object top = w.pop();
+      if (top instanceof Rebuild) {
+        r.push(rebuild(r, ((Rebuild) top).type));
+        continue;
+      }
+
+      final PMonoType x = normalize((PMonoType) top);
+      if (x instanceof PTypeVariable) {
+        r.push(this.copyVariable(mode, mapping, (PTypeVariable) x));
+      } else if (x instanceof PTypeConstructor) {
+        final PMonoType[] arguments = ((PTypeConstructor) x).arguments();
+        if (arguments.length == 0) {
+          r.push(x);
+        } else {
+          w.push(new Rebuild(x));
+          for (int index = arguments.length - 1; index >= 0; --index) {
+            w.push(arguments[index]);
+          }
+        }
+      } else if (x instanceof PTypeApplication) {
+        final PTypeApplication a = (PTypeApplication) x;
+        w.push(new Rebuild(x));
+        final PMonoType[] arguments = a.arguments();
+        for (int index = arguments.length - 1; index >= 0; --index) {
+          w.push(arguments[index]);
+        }
+        w.push(a.function());
+      } else {
+        final PTypeArrow a = (PTypeArrow) x;
+        w.push(new Rebuild(x));
+        w.push(a.result());
+        final PMonoType[] parameters = a.parameters();
+        for (int index = parameters.length - 1; index >= 0; --index) {
+          w.push(parameters[index]);
+        }
+      }
+    }
+    return r.pop();
+  }
+
+  private PMonoType copyVariable(
+    final CopyMode mode,
+    final Map<PTypeVariable, PMonoType> mapping,
+    final PTypeVariable v)
+  {
+    if (mode == CopyMode.FREEZE || !v.isGeneric()) {
+      return v;
+    }
+
+    final PMonoType existing = mapping.get(v);
+    if (existing != null) {
+      return existing;
+    }
+
+    final PMonoType replacement;
+    if (mode == CopyMode.INSTANTIATE) {
+      replacement = this.fresh();
+    } else {
+      replacement = PTypeConstructor.rigid(
+        PTypeNames.variableName(mapping.size()), this.level);
+    }
+    mapping.put(v, replacement);
+    return replacement;
+  }
+
+  /**
+   * Rebuild a constructor, application, or arrow from the copies of its
+   * children, which are on top of {@code r} in reverse order.
+   */
+
+  private static PMonoType rebuild(
+    final ArrayDeque<PMonoType> r,
+    final PMonoType original)
+  {
+    if (original instanceof PTypeConstructor) {
+      final PTypeConstructor c = (PTypeConstructor) original;
+      final PMonoType[] arguments = c.arguments();
+      final PMonoType[] copies = new PMonoType[arguments.length];
+      boolean changed = false;
+      for (int index = arguments.length - 1; index >= 0; --index) {
+        copies[index] = r.pop();
+        changed = changed || copies[index] != arguments[index];
+      }
+      return changed ? c.withArguments(copies) : c;
+    }
+
+    if (original instanceof PTypeApplication) {
+      final PTypeApplication a = (PTypeApplication) original;
+      final PMonoType[] arguments = a.arguments();
+      final PMonoType[] copies = new PMonoType[arguments.length];
+      boolean changed = false;
+      for (int index = arguments.length - 1; index >= 0; --index) {
+        copies[index] = r.pop();
+        changed = changed || copies[index] != arguments[index];
+      }
+      final PMonoType function = r.pop();
+      changed = changed || function != a.function();
+      return changed ? PTypeApplication.apply(function, copies) : a;
+    }
+
+    final PTypeArrow a = (PTypeArrow) original;
+    final PMonoType result = r.pop();
+    final PMonoType[] parameters = a.parameters();
+    final PMonoType[] copies = new PMonoType[parameters.length];
+    boolean changed = result != a.result();
+    for (int index = parameters.length - 1; index >= 0; --index) {
+      copies[index] = r.pop();
+      changed = changed || copies[index] != parameters[index];
+    }
+    return changed ? new PTypeArrow(copies, a.isVariadic(), result) : a;
+  }
+
+  private static final class Rebuild
+  {
+    private final PMonoType type;
+
+    Rebuild(
+      final PMonoType in_type)
+    {
+      this.type = in_type;
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.typechecker;
+
+/**
+ * Type error codes.
+ */
+
+public enum PTypeErrorCode
+{
+  /**
+   * Two types that are required to be equal cannot be unified.
+   */
+
+  TYPE_MISMATCH,
+
+  /**
+   * Unifying two types would construct an infinite type.
+   */
+
+  TYPE_INFINITE,
+
+  /**
+   * A type variable quantified by a signature would escape its scope.
+   */
+
+  TYPE_VARIABLE_ESCAPE,
+
+  /**
+   * A type expression does not have the kind required by its context, such
+   * as a type constructor applied to the wrong number of arguments.
+   */
+
+  KIND_MISMATCH,
+
+  /**
+   * Unifying two kinds would construct an infinite kind, such as when a type
+   * variable is applied to itself.
+   */
+
+  KIND_INFINITE,
+
+  /**
+   * A term that is not a function is applied to arguments.
+   */
+
+  APPLICATION_NOT_A_FUNCTION,
+
+  /**
+   * A function is applied to the wrong number of arguments.
+   */
+
+  APPLICATION_ARITY,
+
+  /**
+   * A constructor pattern does not match the parameter of the constructor.
+   */
+
+  PATTERN_ARITY,
+
+  /**
+   * A record expression names a type that is not a record type, or no record
+   * type has the fields of a record update or projection.
+   */
+
+  RECORD_NOT_FOUND,
+
+  /**
+   * More than one record type has the fields of a record update or
+   * projection.
+   */
+
+  RECORD_AMBIGUOUS,
+
+  /**
+   * A record expression names a field that the record type does not have.
+   */
+
+  RECORD_FIELD_UNKNOWN,
+
+  /**
+   * A record expression does not provide a value for every field.
+   */
+
+  RECORD_FIELD_MISSING,
+
+  /**
+   * A term does not have the type given by its signature.
+   */
+
+  SIGNATURE_MISMATCH,
+
+  /**
+   * More than one signature is given for the same term.
+   */
+
+  SIGNATURE_DUPLICATE,
+
+  /**
+   * A signature is not followed by a declaration of the same term.
+   */
+
+  SIGNATURE_WITHOUT_DEFINITION,
+
+  /**
+   * A quantifier appears somewhere other than the outermost level of a
+   * signature.
+   */
+
+  SIGNATURE_QUANTIFIER_NESTED
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.typechecker;
+
+import com.io7m.jlexing.core.LexicalPosition;
+import com.io7m.polaris.ast.PNodeTable;
+import com.io7m.polaris.ast.PTypeExpressionMatcherType;
+import com.io7m.polaris.ast.PTypeExpressionType;
+import com.io7m.polaris.ast.PTypeReferenceType;
+import com.io7m.polaris.ast.PTypeVariableNameType;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.resolver.PBinding;
+import com.io7m.polaris.resolver.PResolvedUnit;
+import io.vavr.collection.Vector;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A converter from type expressions to types. Type variables are held in a
+ * single table keyed by the identifier of the name that binds them, and so
+ * no scopes are required. Type expressions are traversed using an explicit
+ * stack.
+ */
+
+final class PTypeExpressionConverter
+  implements PTypeExpressionMatcherType<PParsed, Void, RuntimeException>
+{
+  private final PResolvedUnit unit;
+  private final PTypeContext context;
+  private final List<PTypeError> errors;
+  private final PNodeTable<PMonoType> variables;
+  private final ArrayDeque<Object> stack;
+  private final ArrayDeque<PMonoType> results;
+
+  PTypeExpressionConverter(
+    final PResolvedUnit in_unit,
+    final PTypeContext in_context,
+    final List<PTypeError> in_errors)
+  {
+    this.unit = Objects.requireNonNull(in_unit, "Unit");
+    this.context = Objects.requireNonNull(in_context, "Context");
+    this.errors = Objects.requireNonNull(in_errors, "Errors");
+    this.variables = PNodeTable.create(16);
+    this.stack = new ArrayDeque<>(16);
+    this.results = new ArrayDeque<>(16);
+  }
+
+  /**
+   * Bind each of the given type variables to a fresh quantified variable.
+   *
+   * @param names The type variables
+   *
+   * @return The quantified variables
+   */
+
+  PMonoType[] bindGeneric(
+    final Vector<PTypeVariableNameType<PParsed>> names)
+  {
+    final PMonoType[] bound = new PMonoType[names.size()];
+    for (int index = 0; index < bound.length; ++index) {
+      final PTypeVariable v = this.context.fresh();
+      v.setLevel(PTypeVariable.GENERIC);
+      this.variables.put(names.get(index).data().id(), v);
+      bound[index] = v;
+    }
+    return bound;
+  }
+
+  /**
+   * Convert the type of a signature. The variables of a quantifier at the
+   * outermost level of the signature are quantified in the resulting type.
+   *
+   * @param e The type expression
+   *
+   * @return The type
+   */
+
+  PMonoType convertScheme(
+    final PTypeExpressionType<PParsed> e)
+  {
+    if (e instanceof PTypeExpressionType.PTypeExprForAllType) {
+      final PTypeExpressionType.PTypeExprForAllType<PParsed> f =
+        (PTypeExpressionType.PTypeExprForAllType<PParsed>) e;
+      this.bindGeneric(f.parameters());
+      return this.convert(f.expression());
+    }
+    return this.convert(e);
+  }
+
+  /**
+   * Convert a type expression. Quantifiers are not permitted.
+   *
+   * @param e The type expression
+   *
+   * @return The type
+   */
+
+  PMonoType convert(
+    final PTypeExpressionType<PParsed> e)
+  {
+    this.stack.push(e);
+    while (!this.stack.isEmpty()) {
+      final Object top = this.stack.pop();
+      if (top instanceof Runnable) {
+        ((Runnable) top).run();
+      } else {
+        @SuppressWarnings("unchecked")
+        final PTypeExpressionType<PParsed> t = (PTypeExpressionType<PParsed>) top;
+        t.matchTypeExpression(this);
+      }
+    }
+    return this.results.pop();
+  }
+
+  private void error(
+    final LexicalPosition<URI> lexical,
+    final PTypeErrorCode code,
+    final String message)
+  {
+    this.errors.add(PTypeError.of(lexical, code, message));
+  }
+
+  private PMonoType[] popResults(
+    final int count)
+  {
+    final PMonoType[] popped = new PMonoType[count];
+    for (int index = count - 1; index >= 0; --index) {
+      popped[index] = this.results.pop();
+    }
+    return popped;
+  }
+
+  @Override
+  public Void arrow(
+    final PTypeExpressionType.PTypeExprArrowType<PParsed> e)
+  {
+    final Vector<PTypeExpressionType<PParsed>> parameters = e.parameters();
+    this.stack.push((Runnable) () -> {
+      final PMonoType result = this.results.pop();
+      this.results.push(new PTypeArrow(
+        this.popResults(parameters.size()), e.isVariadic(), result));
+    });
+    this.stack.push(e.returnType());
+    for (int index = parameters.size() - 1; index >= 0; --index) {
+      this.stack.push(parameters.get(index));
+    }
+    return null;
+  }
+
+  @Override
+  public Void forAll(
+    final PTypeExpressionType.PTypeExprForAllType<PParsed> e)
+  {
+    this.error(
+      e.lexical(),
+      PTypeErrorCode.SIGNATURE_QUANTIFIER_NESTED,
+      "Quantifiers may only appear at the outermost level of a signature");
+    this.bindGeneric(e.parameters());
+    this.stack.push(e.expression());
+    return null;
+  }
+
+  @Override
+  public Void reference(
+    final PTypeExpressionType.PTypeExprReferenceType<PParsed> e)
+  {
+    this.results.push(this.referenceType(e.reference()));
+    return null;
+  }
+
+  private PMonoType referenceType(
+    final PTypeReferenceType<PParsed> reference)
+  {
+    final Optional<PBinding> binding_opt = this.unit.typeBinding(reference);
+    if (!binding_opt.isPresent()) {
+      return this.context.fresh();
+    }
+
+    final PBinding binding = binding_opt.get();
+    if (binding.kind() == PBinding.Kind.TYPE_VARIABLE) {
+      return this.variables.get(binding.declaration())
+        .orElseGet(this.context::fresh);
+    }
+
+    final String name =
+      ((PTypeReferenceType.PTypeReferenceConstructorType<PParsed>) reference)
+        .constructor().value();
+    return PTypeConstructor.of(binding, name);
+  }
+
+  @Override
+  public Void application(
+    final PTypeExpressionType.PTypeExprApplicationType<PParsed> e)
+  {
+    final Vector<PTypeExpressionType<PParsed>> arguments = e.arguments();
+    this.stack.push((Runnable) () -> {
+      final PMonoType[] types = this.popResults(arguments.size());
+      this.results.push(PTypeApplication.apply(this.results.pop(), types));
+    });
+    for (int index = arguments.size() - 1; index >= 0; --index) {
+      this.stack.push(arguments.get(index));
+    }
+    this.stack.push(e.constructor());
+    return null;
+  }
+}
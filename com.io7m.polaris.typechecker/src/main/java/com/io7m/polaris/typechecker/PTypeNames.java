@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.typechecker;
+
+import com.io7m.junreachable.UnreachableCodeException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * Functions to render types in the concrete syntax of type expressions.
+ */
+
+final class PTypeNames
+{
+  private static final int LETTERS = 26;
+
+  private PTypeNames()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * @param index The index of a variable in order of appearance
+   *
+   * @return A name for the variable
+   */
+
+  static String variableName(
+    final int index)
+  {
+    if (index < LETTERS) {
+      return String.valueOf((char) ('a' + index));
+    }
+    return "t" + index;
+  }
+
+  /**
+   * Render a type. Variables are named in order of first appearance; names
+   * already present in {@code names} are reused, so that several types
+   * rendered with the same map use consistent names.
+   *
+   * @param t     The type
+   * @param names The names assigned to variables
+   *
+   * @return The rendered type
+   */
+
+  static String show(
+    final PMonoType t,
+    final Map<PTypeVariable, String> names)
+  {
+    final StringBuilder sb = new StringBuilder(64);
+    final ArrayDeque<Object> stack = new ArrayDeque<>(16);
+    final ArrayList<Object> tokens = new ArrayList<>(8);
+    stack.push(t);
+
+    while (!stack.isEmpty()) {
+      final Object top = stack.pop();
+      if (top instanceof String) {
+        sb.append((String) top);
+        continue;
+      }
+
+      final PMonoType x = PTypeContext.normalize((PMonoType) top);
+      if (x instanceof PTypeVariable) {
+        sb.append(names.computeIfAbsent(
+          (PTypeVariable) x, v -> variableName(names.size())));
+        continue;
+      }
+
+      tokens.clear();
+      if (x instanceof PTypeConstructor) {
+        constructorTokens(tokens, (PTypeConstructor) x);
+      } else if (x instanceof PTypeApplication) {
+        applicationTokens(tokens, (PTypeApplication) x);
+      } else {
+        arrowTokens(tokens, (PTypeArrow) x);
+      }
+      for (int index = tokens.size() - 1; index >= 0; --index) {
+        stack.push(tokens.get(index));
+      }
+    }
+    return sb.toString();
+  }
+
+  private static void constructorTokens(
+    final ArrayList<Object> tokens,
+    final PTypeConstructor c)
+  {
+    final PMonoType[] arguments = c.arguments();
+    if (arguments.length == 0) {
+      tokens.add(c.name());
+      return;
+    }
+
+    tokens.add("(" + c.name());
+    for (final PMonoType a : arguments) {
+      tokens.add(" ");
+      tokens.add(a);
+    }
+    tokens.add(")");
+  }
+
+  private static void applicationTokens(
+    final ArrayList<Object> tokens,
+    final PTypeApplication a)
+  {
+    tokens.add("(");
+    tokens.add(a.function());
+    for (final PMonoType x : a.arguments()) {
+      tokens.add(" ");
+      tokens.add(x);
+    }
+    tokens.add(")");
+  }
+
+  private static void arrowTokens(
+    final ArrayList<Object> tokens,
+    final PTypeArrow a)
+  {
+    final PMonoType[] parameters = a.parameters();
+    tokens.add("(->");
+    for (int index = 0; index < parameters.length; ++index) {
+      final boolean rest = a.isVariadic() && index == parameters.length - 1;
+      tokens.add(rest ? " (… " : " ");
+      tokens.add(parameters[index]);
+      if (rest) {
+        tokens.add(")");
+      }
+    }
+    tokens.add(" ");
+    tokens.add(a.result());
+    tokens.add(")");
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.typechecker;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A type scheme: a type that may be quantified over one or more type
+ * variables. Schemes are immutable.
+ */
+
+public final class PTypeScheme
+{
+  private final PMonoType type;
+
+  PTypeScheme(
+    final PMonoType in_type)
+  {
+    this.type = Objects.requireNonNull(in_type, "Type");
+  }
+
+  PMonoType type()
+  {
+    return this.type;
+  }
+
+  /**
+   * @return The scheme in the concrete syntax of type expressions, such as
+   * {@code (∀ a (-> a a))}
+   */
+
+  @Override
+  public String toString()
+  {
+    final Map<PTypeVariable, String> names = new LinkedHashMap<>(4);
+    final String body = PTypeNames.show(this.type, names);
+
+    final StringBuilder sb = new StringBuilder(body.length() + 16);
+    for (final Map.Entry<PTypeVariable, String> e : names.entrySet()) {
+      if (e.getKey().isGeneric()) {
+        sb.append(sb.length() == 0 ? "(∀ " : " ");
+        sb.append(e.getValue());
+      }
+    }
+
+    if (sb.length() == 0) {
+      return body;
+    }
+    sb.append(' ');
+    sb.append(body);
+    sb.append(')');
+    return sb.toString();
+  }
+}
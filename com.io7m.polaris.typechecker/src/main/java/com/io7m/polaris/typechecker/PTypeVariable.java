@@ -0,0 +1,79 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.typechecker;
+
+/**
+ * A type variable. An unbound variable is the representative of its own
+ * equivalence class; a bound variable is linked to another member of its
+ * class. The level of an unbound variable is the depth of the innermost
+ * {@code local} or top-level binding group in which the variable may appear
+ * in the environment, and a variable at {@link #GENERIC} is quantified by the
+ * scheme that contains it.
+ */
+
+final class PTypeVariable implements PMonoType
+{
+  /**
+   * The level of quantified variables.
+   */
+
+  static final int GENERIC = Integer.MAX_VALUE;
+
+  private final int id;
+  private PMonoType link;
+  private int level;
+
+  PTypeVariable(
+    final int in_id,
+    final int in_level)
+  {
+    this.id = in_id;
+    this.level = in_level;
+  }
+
+  int id()
+  {
+    return this.id;
+  }
+
+  PMonoType link()
+  {
+    return this.link;
+  }
+
+  void setLink(
+    final PMonoType in_link)
+  {
+    this.link = in_link;
+  }
+
+  int level()
+  {
+    return this.level;
+  }
+
+  void setLevel(
+    final int in_level)
+  {
+    this.level = in_level;
+  }
+
+  boolean isGeneric()
+  {
+    return this.level == GENERIC;
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.typechecker;
+
+import com.io7m.polaris.ast.PNodeTable;
+import io.vavr.collection.Map;
+import io.vavr.collection.Vector;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A unit whose terms have been assigned types. Typed units are immutable, and
+ * may be shared between threads.
+ */
+
+public final class PTypedUnit
+{
+  private final String name;
+  private final Map<String, PTypedUnit> units;
+  private final PKindEnvironment kinds;
+  private final Map<String, Integer> term_names;
+  private final PNodeTable<PMonoType> terms;
+  private final PNodeTable<PMonoType> constructors;
+  private final PNodeTable<PRecordInfo> records;
+  private final Vector<PRecordInfo> record_list;
+
+  PTypedUnit(
+    final String in_name,
+    final Map<String, PTypedUnit> in_units,
+    final PKindEnvironment in_kinds,
+    final Map<String, Integer> in_term_names,
+    final PNodeTable<PMonoType> in_terms,
+    final PNodeTable<PMonoType> in_constructors,
+    final PNodeTable<PRecordInfo> in_records,
+    final Vector<PRecordInfo> in_record_list)
+  {
+    this.name = Objects.requireNonNull(in_name, "Name");
+    this.units = Objects.requireNonNull(in_units, "Units");
+    this.kinds = Objects.requireNonNull(in_kinds, "Kinds");
+    this.term_names = Objects.requireNonNull(in_term_names, "Term names");
+    this.terms = Objects.requireNonNull(in_terms, "Terms");
+    this.constructors = Objects.requireNonNull(in_constructors, "Constructors");
+    this.records = Objects.requireNonNull(in_records, "Records");
+    this.record_list = Objects.requireNonNull(in_record_list, "Record list");
+  }
+
+  /**
+   * @return The fully qualified name of the unit
+   */
+
+  public String name()
+  {
+    return this.name;
+  }
+
+  /**
+   * @param term_name The name of a term declared at the top level of the unit
+   *
+   * @return The type of the term, if the term exists
+   */
+
+  public Optional<PTypeScheme> termType(
+    final String term_name)
+  {
+    Objects.requireNonNull(term_name, "Name");
+    return this.term_names.get(term_name)
+      .toJavaOptional()
+      .flatMap(id -> this.terms.get(id.intValue()))
+      .map(PTypeScheme::new);
+  }
+
+  /**
+   * @param type_name The name of a type declared at the top level of the unit
+   *
+   * @return The kind of the type, if the type exists
+   */
+
+  public Optional<PKind> typeKind(
+    final String type_name)
+  {
+    return this.kinds.kind(type_name);
+  }
+
+  /**
+   * @return The kinds of the types declared in the unit
+   */
+
+  public PKindEnvironment kinds()
+  {
+    return this.kinds;
+  }
+
+  /**
+   * @return Every unit that this unit imports, directly or indirectly, by
+   * name
+   */
+
+  Map<String, PTypedUnit> units()
+  {
+    return this.units;
+  }
+
+  PMonoType term(
+    final int id)
+  {
+    return this.terms.get(id).orElse(null);
+  }
+
+  PMonoType constructor(
+    final int id)
+  {
+    return this.constructors.get(id).orElse(null);
+  }
+
+  PRecordInfo record(
+    final int id)
+  {
+    return this.records.get(id).orElse(null);
+  }
+
+  Vector<PRecordInfo> records()
+  {
+    return this.record_list;
+  }
+}
@@ -0,0 +1,823 @@
+/*
+ * Copyright © 2017 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.polaris.typechecker;
+
+import com.io7m.jlexing.core.LexicalPosition;
+import com.io7m.polaris.ast.PDeclarationFunction;
+import com.io7m.polaris.ast.PDeclarationRecord;
+import com.io7m.polaris.ast.PDeclarationSignature;
+import com.io7m.polaris.ast.PDeclarationValue;
+import com.io7m.polaris.ast.PDeclarationVariant;
+import com.io7m.polaris.ast.PExprReference;
+import com.io7m.polaris.ast.PExpressionOrDeclarationType;
+import com.io7m.polaris.ast.PExpressionType;
+import com.io7m.polaris.ast.PExpressions;
+import com.io7m.polaris.ast.PNodeTable;
+import com.io7m.polaris.ast.PNodeTableInt;
+import com.io7m.polaris.ast.PTermDeclarationType;
+import com.io7m.polaris.ast.PTermReferenceType;
+import com.io7m.polaris.ast.PTermVariableNameType;
+import com.io7m.polaris.ast.PTypeDeclarationType;
+import com.io7m.polaris.ast.PTypeReferenceType;
+import com.io7m.polaris.parser.api.PParsed;
+import com.io7m.polaris.resolver.PBinding;
+import com.io7m.polaris.resolver.PResolvedUnit;
+import io.vavr.collection.Map;
+import io.vavr.collection.Seq;
+import io.vavr.collection.TreeMap;
+import io.vavr.collection.Vector;
+import io.vavr.control.Validation;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A type checker for a single unit.
+ *
+ * The types of terms are held in a single table keyed by the identifier of
+ * the name that declares each term, and so no scopes are required. A term
+ * whose type is polymorphic is instantiated at each reference; the type of
+ * any other term is used directly.
+ *
+ * Top-level values and functions are checked in strongly connected
+ * components of the graph of references between them, dependencies first.
+ * References to terms that have signatures are not edges in the graph,
+ * because the types of such terms are known in advance.
+ */
+
+final class PUnitChecker
+{
+  private final PResolvedUnit unit;
+  private final Vector<PTypedUnit> imports;
+  private final Map<String, PTypedUnit> units;
+  private final PTypeContext context;
+  private final ArrayList<PTypeError> errors;
+  private final PTypeExpressionConverter converter;
+  private final PExpressionInference inference;
+  private final PNodeTable<PMonoType> terms;
+  private final BitSet polymorphic;
+  private final PNodeTable<PMonoType> constructors;
+  private final PNodeTable<PRecordInfo> records;
+  private final ArrayList<PRecordInfo> record_list;
+  private PKindEnvironment kinds;
+  private PKindInference kind_inference;
+
+  PUnitChecker(
+    final PResolvedUnit in_unit,
+    final Vector<PTypedUnit> in_imports)
+  {
+    this.unit = Objects.requireNonNull(in_unit, "Unit");
+    this.imports = Objects.requireNonNull(in_imports, "Imports");
+
+    this.units = PKindChecker.visibleUnits(in_imports);
+
+    this.context = new PTypeContext();
+    this.errors = new ArrayList<>(0);
+    this.converter =
+      new PTypeExpressionConverter(in_unit, this.context, this.errors);
+    this.inference = new PExpressionInference(this, this.context);
+    this.terms = PNodeTable.create(256);
+    this.polymorphic = new BitSet(256);
+    this.constructors = PNodeTable.create(16);
+    this.records = PNodeTable.create(16);
+    this.record_list = new ArrayList<>(4);
+  }
+
+  /**
+   * Check the unit.
+   *
+   * @return The typed unit, or a list of errors
+   */
+
+  Validation<Seq<PTypeError>, PTypedUnit> run()
+  {
+    final Vector<PExpressionOrDeclarationType<PParsed>> forms =
+      this.unit.declarations();
+
+    this.kinds = PKindChecker.check(this.units, this.unit);
+    if (!this.kinds.errors().isEmpty()) {
+      return Validation.invalid(this.kinds.errors());
+    }
+    this.kind_inference = new PKindInference(
+      this.unit, this.units, n -> this.kinds.kind(n).orElse(null), this.errors);
+
+    for (final PExpressionOrDeclarationType<PParsed> form : forms) {
+      if (form instanceof PDeclarationRecord) {
+        this.declareRecord((PDeclarationRecord<PParsed>) form);
+      } else if (form instanceof PDeclarationVariant) {
+        this.declareVariant((PDeclarationVariant<PParsed>) form);
+      }
+    }
+
+    final LinkedHashMap<String, PDeclarationSignature<PParsed>> signatures =
+      new LinkedHashMap<>(16);
+    final ArrayList<PTermDeclarationType<PParsed>> declarations =
+      new ArrayList<>(forms.size());
+    final ArrayList<PExpressionType<PParsed>> expressions = new ArrayList<>(0);
+
+    for (final PExpressionOrDeclarationType<PParsed> form : forms) {
+      if (form instanceof PExpressionType) {
+        expressions.add((PExpressionType<PParsed>) form);
+      } else if (form instanceof PDeclarationSignature) {
+        this.collectSignature(signatures, (PDeclarationSignature<PParsed>) form);
+      } else if (form instanceof PDeclarationValue || form instanceof PDeclarationFunction) {
+        declarations.add((PTermDeclarationType<PParsed>) form);
+      }
+    }
+
+    this.checkDeclarations(declarations, this.signatureTypes(signatures, declarations));
+
+    for (final PExpressionType<PParsed> e : expressions) {
+      this.context.enter();
+      this.inference.infer(e);
+      this.context.leave();
+    }
+
+    if (!this.errors.isEmpty()) {
+      return Validation.invalid(Vector.ofAll(this.errors));
+    }
+    return Validation.valid(this.typedUnit(declarations));
+  }
+
+  /*
+   * Type declarations.
+   */
+
+  private PBinding typeKey(
+    final PTypeDeclarationType<PParsed> d)
+  {
+    final int id;
+    if (d instanceof PDeclarationRecord) {
+      id = ((PDeclarationRecord<PParsed>) d).name().data().id();
+    } else {
+      id = ((PDeclarationVariant<PParsed>) d).name().data().id();
+    }
+    return PBinding.of(PBinding.Kind.TYPE_UNIT, this.unit.name(), id);
+  }
+
+  private void declareRecord(
+    final PDeclarationRecord<PParsed> r)
+  {
+    final PMonoType[] parameters = this.converter.bindGeneric(r.parameters());
+    final PMonoType type = new PTypeConstructor(
+      this.typeKey(r), r.name().value(), parameters, 0);
+
+    final Vector<PTypeDeclarationType.PRecordFieldType<PParsed>> fields =
+      r.fields();
+    final LinkedHashMap<String, PMonoType> field_types =
+      new LinkedHashMap<>(fields.size());
+    for (final PTypeDeclarationType.PRecordFieldType<PParsed> f : fields) {
+      field_types.put(f.name().value(), this.converter.convert(f.type()));
+    }
+
+    final PRecordInfo info = new PRecordInfo(type, field_types);
+    this.records.put(r.name().data().id(), info);
+    this.record_list.add(info);
+  }
+
+  private void declareVariant(
+    final PDeclarationVariant<PParsed> v)
+  {
+    final PMonoType[] parameters = this.converter.bindGeneric(v.parameters());
+    final PMonoType type = new PTypeConstructor(
+      this.typeKey(v), v.name().value(), parameters, 0);
+
+    for (final PTypeDeclarationType.PVariantCaseType<PParsed> c : v.cases()) {
+      final PMonoType scheme = c.parameter()
+        .map(p -> (PMonoType) new PTypeArrow(
+          new PMonoType[]{this.converter.convert(p)}, false, type))
+        .orElse(type);
+      this.constructors.put(c.name().data().id(), scheme);
+    }
+  }
+
+  /*
+   * Signatures.
+   */
+
+  private void collectSignature(
+    final LinkedHashMap<String, PDeclarationSignature<PParsed>> signatures,
+    final PDeclarationSignature<PParsed> s)
+  {
+    final String name = s.name().value();
+    if (signatures.containsKey(name)) {
+      this.error(
+        s.lexical(),
+        PTypeErrorCode.SIGNATURE_DUPLICATE,
+        "Signature already given for " + name);
+      return;
+    }
+    signatures.put(name, s);
+  }
+
+  private HashMap<String, PMonoType> signatureTypes(
+    final LinkedHashMap<String, PDeclarationSignature<PParsed>> signatures,
+    final ArrayList<PTermDeclarationType<PParsed>> declarations)
+  {
+    final HashMap<String, PMonoType> types = new HashMap<>(signatures.size());
+    for (final PTermDeclarationType<PParsed> d : declarations) {
+      final String name = declarationName(d).value();
+      final PDeclarationSignature<PParsed> s = signatures.get(name);
+      if (s != null) {
+        types.put(name, this.signatureType(s));
+      }
+    }
+
+    for (final PDeclarationSignature<PParsed> s : signatures.values()) {
+      if (!types.containsKey(s.name().value())) {
+        this.error(
+          s.lexical(),
+          PTypeErrorCode.SIGNATURE_WITHOUT_DEFINITION,
+          "Signature given for " + s.name().value()
+            + " is not followed by a declaration");
+      }
+    }
+    return types;
+  }
+
+  PMonoType signatureType(
+    final PDeclarationSignature<PParsed> s)
+  {
+    this.kind_inference.checkScheme(s.type());
+    return this.converter.convertScheme(s.type());
+  }
+
+  /**
+   * Replace the quantified variables of a signature with rigid variables at
+   * the current level, so that they may not be unified with any other type
+   * or escape into the environment.
+   *
+   * @param declared The type given by a signature
+   *
+   * @return The type that a declaration with the signature must have
+   */
+
+  PMonoType rigid(
+    final PMonoType declared)
+  {
+    return this.context.skolemize(declared);
+  }
+
+  /**
+   * Give the parameters of a function declared with a signature the types of
+   * the parameters in the signature, so that the body is checked with those
+   * types rather than inferred without them.
+   *
+   * @param rigid      The result of {@link #rigid(PMonoType)}
+   * @param parameters The fresh types of the parameters
+   */
+
+  void bindSignatureParameters(
+    final PMonoType rigid,
+    final PMonoType[] parameters)
+  {
+    final PMonoType r = PTypeContext.find(rigid);
+    if (r instanceof PTypeArrow) {
+      final PMonoType[] expected = ((PTypeArrow) r).parameters();
+      if (expected.length == parameters.length) {
+        for (int index = 0; index < expected.length; ++index) {
+          this.context.unify(expected[index], parameters[index]);
+        }
+      }
+    }
+  }
+
+  private void checkSignature(
+    final LexicalPosition<URI> lexical,
+    final String name,
+    final PMonoType inferred,
+    final PMonoType rigid)
+  {
+    final PTypeContext.Unification r = this.context.unify(rigid, inferred);
+    switch (r) {
+      case UNIFIED:
+        return;
+      case ESCAPE:
+        this.error(
+          lexical,
+          PTypeErrorCode.TYPE_VARIABLE_ESCAPE,
+          "A type variable of the signature of " + name + " escapes its scope");
+        return;
+      case MISMATCH:
+      case INFINITE: {
+        final HashMap<PTypeVariable, String> names = new HashMap<>(4);
+        this.error(
+          lexical,
+          PTypeErrorCode.SIGNATURE_MISMATCH,
+          "The type of " + name + " does not match its signature: expected "
+            + PTypeNames.show(rigid, names) + ", received "
+            + PTypeNames.show(inferred, names));
+        return;
+      }
+    }
+  }
+
+  /*
+   * Term declarations.
+   */
+
+  private static PTermVariableNameType<PParsed> declarationName(
+    final PTermDeclarationType<PParsed> d)
+  {
+    if (d instanceof PDeclarationValue) {
+      return ((PDeclarationValue<PParsed>) d).name();
+    }
+    return ((PDeclarationFunction<PParsed>) d).name();
+  }
+
+  private void checkDeclarations(
+    final ArrayList<PTermDeclarationType<PParsed>> declarations,
+    final HashMap<String, PMonoType> signatures)
+  {
+    final int size = declarations.size();
+    final PNodeTableInt indices = PNodeTableInt.create(size * 4, -1);
+    for (int index = 0; index < size; ++index) {
+      indices.put(declarationName(declarations.get(index)).data().id(), index);
+    }
+
+    final int[][] edges = new int[size][];
+    for (int index = 0; index < size; ++index) {
+      edges[index] =
+        this.dependencies(declarations.get(index), indices, declarations, signatures);
+    }
+
+    for (final int[] group : PStronglyConnectedComponents.components(edges)) {
+      this.checkGroup(declarations, signatures, group);
+    }
+  }
+
+  /**
+   * @return The indices of the declarations without signatures that are
+   * referenced by {@code d}
+   */
+
+  private int[] dependencies(
+    final PTermDeclarationType<PParsed> d,
+    final PNodeTableInt indices,
+    final ArrayList<PTermDeclarationType<PParsed>> declarations,
+    final HashMap<String, PMonoType> signatures)
+  {
+    final PExpressionType<PParsed> body;
+    if (d instanceof PDeclarationValue) {
+      body = ((PDeclarationValue<PParsed>) d).expression();
+    } else {
+      body = ((PDeclarationFunction<PParsed>) d).expression();
+    }
+
+    final ArrayList<Integer> targets = PExpressions.fold(
+      body, new ArrayList<>(4), (acc, e) -> {
+        if (e instanceof PExprReference) {
+          final int target =
+            this.declarationIndex(((PExprReference<PParsed>) e).reference(), indices);
+          if (target >= 0
+            && !signatures.containsKey(declarationName(declarations.get(target)).value())) {
+            acc.add(Integer.valueOf(target));
+          }
+        }
+        return acc;
+      });
+
+    final int[] result = new int[targets.size()];
+    for (int index = 0; index < result.length; ++index) {
+      result[index] = targets.get(index).intValue();
+    }
+    return result;
+  }
+
+  private int declarationIndex(
+    final PTermReferenceType<PParsed> reference,
+    final PNodeTableInt indices)
+  {
+    final Optional<PBinding> b = this.unit.termBinding(reference);
+    if (b.isPresent()
+      && b.get().kind() == PBinding.Kind.TERM_UNIT
+      && Objects.equals(b.get().unit(), this.unit.name())) {
+      return indices.get(b.get().declaration());
+    }
+    return -1;
+  }
+
+  /**
+   * Check a group of mutually recursive declarations. Within the group, each
+   * declaration without a signature is monomorphic; the types of such
+   * declarations are generalized once the whole group has been checked.
+   */
+
+  private void checkGroup(
+    final ArrayList<PTermDeclarationType<PParsed>> declarations,
+    final HashMap<String, PMonoType> signatures,
+    final int[] group)
+  {
+    final PMonoType[] types = new PMonoType[group.length];
+    final PMonoType[] rigids = new PMonoType[group.length];
+
+    this.context.enter();
+    for (int index = 0; index < group.length; ++index) {
+      final PTermVariableNameType<PParsed> name =
+        declarationName(declarations.get(group[index]));
+      final PMonoType signature = signatures.get(name.value());
+      if (signature != null) {
+        this.bindPolymorphic(name.data().id(), signature);
+        rigids[index] = this.rigid(signature);
+      } else {
+        types[index] = this.context.fresh();
+        this.bindMonomorphic(name.data().id(), types[index]);
+      }
+    }
+
+    for (int index = 0; index < group.length; ++index) {
+      final PTermDeclarationType<PParsed> d = declarations.get(group[index]);
+      final PMonoType inferred = this.inferDeclaration(d, rigids[index]);
+      if (types[index] != null) {
+        this.unify(d.lexical(), types[index], inferred);
+      } else {
+        this.checkSignature(
+          d.lexical(), declarationName(d).value(), inferred, rigids[index]);
+      }
+    }
+    this.context.leave();
+
+    for (int index = 0; index < group.length; ++index) {
+      if (types[index] != null) {
+        this.bindGeneralized(
+          declarationName(declarations.get(group[index])).data().id(),
+          types[index]);
+      }
+    }
+  }
+
+  private PMonoType inferDeclaration(
+    final PTermDeclarationType<PParsed> d,
+    final PMonoType rigid)
+  {
+    if (d instanceof PDeclarationValue) {
+      return this.inference.infer(((PDeclarationValue<PParsed>) d).expression());
+    }
+
+    final PDeclarationFunction<PParsed> f = (PDeclarationFunction<PParsed>) d;
+    final PMonoType[] parameters = this.inference.bindParameters(f.parameters());
+    if (rigid != null) {
+      this.bindSignatureParameters(rigid, parameters);
+    }
+    return new PTypeArrow(parameters, false, this.inference.infer(f.expression()));
+  }
+
+  /**
+   * Bind a local declaration whose type has been inferred at a new level,
+   * and leave that level.
+   *
+   * @param lexical   The lexical position of the declaration
+   * @param name      The name of the declaration
+   * @param inferred  The inferred type
+   * @param signature The type given by the signature of the declaration, if
+   *                  any
+   * @param rigid     The result of {@link #rigid(PMonoType)} for the
+   *                  signature, if any
+   */
+
+  void bindDeclaration(
+    final LexicalPosition<URI> lexical,
+    final PTermVariableNameType<PParsed> name,
+    final PMonoType inferred,
+    final PMonoType signature,
+    final PMonoType rigid)
+  {
+    if (signature != null) {
+      this.checkSignature(lexical, name.value(), inferred, rigid);
+      this.context.leave();
+      this.bindPolymorphic(name.data().id(), signature);
+    } else {
+      this.context.leave();
+      this.bindGeneralized(name.data().id(), inferred);
+    }
+  }
+
+  /*
+   * The environment.
+   */
+
+  void bindMonomorphic(
+    final int id,
+    final PMonoType t)
+  {
+    this.terms.put(id, t);
+    this.polymorphic.clear(id);
+  }
+
+  void bindPolymorphic(
+    final int id,
+    final PMonoType t)
+  {
+    this.terms.put(id, t);
+    this.polymorphic.set(id);
+  }
+
+  private void bindGeneralized(
+    final int id,
+    final PMonoType t)
+  {
+    this.terms.put(id, t);
+    this.polymorphic.set(id, this.context.generalize(t));
+  }
+
+  PMonoType termType(
+    final PTermReferenceType.PTermReferenceVariableType<PParsed> reference)
+  {
+    final Optional<PBinding> b = this.unit.termBinding(reference);
+    if (!b.isPresent()) {
+      return this.context.fresh();
+    }
+
+    final PBinding binding = b.get();
+    final int id = binding.declaration();
+    if (Objects.equals(binding.unit(), this.unit.name())) {
+      final Optional<PMonoType> t = this.terms.get(id);
+      if (!t.isPresent()) {
+        return this.context.fresh();
+      }
+      return this.polymorphic.get(id)
+        ? this.context.instantiate(t.get())
+        : t.get();
+    }
+
+    return this.instantiateScheme(
+      this.units.get(binding.unit()).map(u -> u.term(id)).getOrNull());
+  }
+
+  PMonoType constructorType(
+    final PTermReferenceType.PTermReferenceConstructorType<PParsed> reference)
+  {
+    final Optional<PBinding> b = this.unit.termBinding(reference);
+    if (!b.isPresent()) {
+      return this.context.fresh();
+    }
+
+    final PBinding binding = b.get();
+    final int id = binding.declaration();
+    if (Objects.equals(binding.unit(), this.unit.name())) {
+      return this.instantiateScheme(this.constructors.get(id).orElse(null));
+    }
+    return this.instantiateScheme(
+      this.units.get(binding.unit()).map(u -> u.constructor(id)).getOrNull());
+  }
+
+  private PMonoType instantiateScheme(
+    final PMonoType t)
+  {
+    if (t == null) {
+      return this.context.fresh();
+    }
+    return this.context.instantiate(t);
+  }
+
+  /*
+   * Records.
+   */
+
+  private PRecordInfo recordByKey(
+    final Object key)
+  {
+    if (!(key instanceof PBinding)) {
+      return null;
+    }
+
+    final PBinding binding = (PBinding) key;
+    if (binding.kind() != PBinding.Kind.TYPE_UNIT) {
+      return null;
+    }
+    if (Objects.equals(binding.unit(), this.unit.name())) {
+      return this.records.get(binding.declaration()).orElse(null);
+    }
+    return this.units.get(binding.unit())
+      .map(u -> u.record(binding.declaration()))
+      .getOrNull();
+  }
+
+  /**
+   * @return A fresh instance of the record type named by {@code target}, or
+   * {@code null} if the type is not a record type
+   */
+
+  PRecordInfo recordDeclared(
+    final LexicalPosition<URI> lexical,
+    final PTypeReferenceType<PParsed> target)
+  {
+    final PRecordInfo r =
+      this.unit.typeBinding(target).map(this::recordByKey).orElse(null);
+    if (r == null) {
+      this.error(
+        lexical,
+        PTypeErrorCode.RECORD_NOT_FOUND,
+        "Not a record type: " + target.lexical());
+      return null;
+    }
+    return r.instantiate(this.context);
+  }
+
+  /**
+   * Determine the record type of a term of type {@code t} that is required
+   * to have the given fields. If the type of the term is not yet known, the
+   * record type is the only record type declared in the unit or its imports
+   * that has all of the fields.
+   *
+   * @return A fresh instance of the record type, unified with {@code t}, or
+   * {@code null} if no such type exists
+   */
+
+  PRecordInfo recordOf(
+    final LexicalPosition<URI> lexical,
+    final PMonoType t,
+    final Seq<String> fields)
+  {
+    final PMonoType x = PTypeContext.normalize(t);
+    if (x instanceof PTypeVariable) {
+      return this.recordByFields(lexical, x, fields);
+    }
+
+    final PRecordInfo r = x instanceof PTypeConstructor
+      ? this.recordByKey(((PTypeConstructor) x).key())
+      : null;
+    if (r == null) {
+      this.error(
+        lexical,
+        PTypeErrorCode.RECORD_NOT_FOUND,
+        "A term of type " + this.show(x) + " is not a record");
+      return null;
+    }
+
+    final PRecordInfo instance = r.instantiate(this.context);
+    this.unify(lexical, instance.type(), x);
+    return instance;
+  }
+
+  private PRecordInfo recordByFields(
+    final LexicalPosition<URI> lexical,
+    final PMonoType t,
+    final Seq<String> fields)
+  {
+    final ArrayList<PRecordInfo> candidates = new ArrayList<>(2);
+    for (final PRecordInfo r : this.record_list) {
+      if (r.hasFields(fields)) {
+        candidates.add(r);
+      }
+    }
+    for (final PTypedUnit i : this.imports) {
+      for (final PRecordInfo r : i.records()) {
+        if (r.hasFields(fields)) {
+          candidates.add(r);
+        }
+      }
+    }
+
+    final String names = fields.mkString(", ");
+    if (candidates.isEmpty()) {
+      this.error(
+        lexical,
+        PTypeErrorCode.RECORD_NOT_FOUND,
+        "No record type has the fields " + names);
+      return null;
+    }
+    if (candidates.size() > 1) {
+      this.error(
+        lexical,
+        PTypeErrorCode.RECORD_AMBIGUOUS,
+        "More than one record type has the fields " + names + ": "
+          + Vector.ofAll(candidates).map(r -> this.show(r.type())).mkString(", "));
+      return null;
+    }
+
+    final PRecordInfo instance = candidates.get(0).instantiate(this.context);
+    this.unify(lexical, instance.type(), t);
+    return instance;
+  }
+
+  /*
+   * Errors.
+   */
+
+  void error(
+    final LexicalPosition<URI> lexical,
+    final PTypeErrorCode code,
+    final String message)
+  {
+    this.errors.add(PTypeError.of(lexical, code, message));
+  }
+
+  String show(
+    final PMonoType t)
+  {
+    return PTypeNames.show(t, new HashMap<>(4));
+  }
+
+  /**
+   * Unify two types, reporting an error if unification fails.
+   *
+   * @param lexical  The lexical position of the term being checked
+   * @param expected The expected type
+   * @param received The received type
+   */
+
+  void unify(
+    final LexicalPosition<URI> lexical,
+    final PMonoType expected,
+    final PMonoType received)
+  {
+    final PTypeContext.Unification r = this.context.unify(expected, received);
+    if (r == PTypeContext.Unification.UNIFIED) {
+      return;
+    }
+
+    final HashMap<PTypeVariable, String> names = new HashMap<>(4);
+    final String e_text = PTypeNames.show(expected, names);
+    final String r_text = PTypeNames.show(received, names);
+    switch (r) {
+      case UNIFIED:
+        return;
+      case MISMATCH:
+        this.error(
+          lexical,
+          PTypeErrorCode.TYPE_MISMATCH,
+          "Type mismatch: expected " + e_text + ", received " + r_text);
+        return;
+      case INFINITE:
+        this.error(
+          lexical,
+          PTypeErrorCode.TYPE_INFINITE,
+          "Cannot construct an infinite type: " + e_text + " = " + r_text);
+        return;
+      case ESCAPE:
+        this.error(
+          lexical,
+          PTypeErrorCode.TYPE_VARIABLE_ESCAPE,
+          "A type variable of a signature escapes its scope: "
+            + e_text + " = " + r_text);
+        return;
+    }
+  }
+
+  /*
+   * Results.
+   */
+
+  private PTypedUnit typedUnit(
+    final ArrayList<PTermDeclarationType<PParsed>> declarations)
+  {
+    Map<String, Integer> names = TreeMap.empty();
+    final PNodeTable<PMonoType> frozen_terms = PNodeTable.create(declarations.size() * 4);
+    for (final PTermDeclarationType<PParsed> d : declarations) {
+      final PTermVariableNameType<PParsed> name = declarationName(d);
+      final int id = name.data().id();
+      names = names.put(name.value(), Integer.valueOf(id));
+      this.terms.get(id).ifPresent(
+        t -> frozen_terms.put(id, this.context.freeze(t)));
+    }
+
+    final PNodeTable<PMonoType> frozen_constructors = PNodeTable.create(16);
+    final PNodeTable<PRecordInfo> frozen_records = PNodeTable.create(16);
+    final ArrayList<PRecordInfo> frozen_list = new ArrayList<>(this.record_list.size());
+
+    for (final PExpressionOrDeclarationType<PParsed> form : this.unit.declarations()) {
+      if (form instanceof PDeclarationRecord) {
+        final int id = ((PDeclarationRecord<PParsed>) form).name().data().id();
+        final PRecordInfo r = this.records.get(id).get().freeze(this.context);
+        frozen_records.put(id, r);
+        frozen_list.add(r);
+      } else if (form instanceof PDeclarationVariant) {
+        for (final PTypeDeclarationType.PVariantCaseType<PParsed> c
+          : ((PDeclarationVariant<PParsed>) form).cases()) {
+          final int id = c.name().data().id();
+          frozen_constructors.put(id, this.context.freeze(this.constructors.get(id).get()));
+        }
+      }
+    }
+
+    return new PTypedUnit(
+      this.unit.name(),
+      this.units,
+      this.kinds,
+      names,
+      frozen_terms,
+      frozen_constructors,
+      frozen_records,
+      Vector.ofAll(frozen_list));
+  }
+}